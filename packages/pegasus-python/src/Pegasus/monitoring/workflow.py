@@ -903,6 +903,34 @@ class Workflow:
             except BaseException:
                 pass
 
+    def static_loaded_by_planner(self):
+        """
+        This function returns True if pegasus-plan wrote the workflow
+        and its static events straight into the stampede database,
+        instead of writing out the static bp file. The planner then
+        leaves a .static.loaded file with the database url in the
+        submit directory.
+        """
+        basename = os.path.splitext(self._dag_file_name)[0]
+        if os.path.isfile(os.path.join(self._run_dir, basename + ".static.bp")):
+            return False
+
+        loaded_file = os.path.join(self._run_dir, basename + ".static.loaded")
+        try:
+            with open(loaded_file) as f:
+                url = f.readline().strip()
+        except OSError:
+            return False
+
+        if self._database_url is not None and url != self._database_url:
+            logger.warning(
+                "static events were loaded into %s but monitord is using %s"
+                % (url, self._database_url)
+            )
+            return False
+
+        return True
+
     def __init__(
         self,
         rundir,
@@ -1231,7 +1259,17 @@ class Workflow:
         # All done... last step is to send to the database the workflow plan event,
         # along with all the static information generated by pegasus-plan
         # However, we only do this, if this is the first time we run
-        if self._sink is not None and self._last_processed_line == 0:
+        # and pegasus-plan did not already load them into the database
+        if (
+            self._sink is not None
+            and self._last_processed_line == 0
+            and self.static_loaded_by_planner()
+        ):
+            logger.info(
+                "static events for workflow %s already loaded by pegasus-plan"
+                % (self._wf_uuid)
+            )
+        elif self._sink is not None and self._last_processed_line == 0:
             # Make sure NetLogger parser is available
             if NLSimpleParser is None:
                 logger.critical("NetLogger parser is not loaded, exiting...")
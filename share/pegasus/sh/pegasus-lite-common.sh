@@ -340,11 +340,114 @@ container_init()
     cont_name="${PEGASUS_DAG_JOB_ID}-${PEGASUS_WF_UUID}"
 }
 
+container_cache_fetch()
+{
+    # Looks up a container image in the node level cache, that is keyed by the
+    # checksum of the image passed by the planner. On a hit the cached image is
+    # linked into the current directory, and does not need to be transferred or
+    # verified again.
+
+    image_file=$1
+    checksum=$2
+    pegasus_lite_container_cache_hit=false
+
+    if [ "X${pegasus_lite_container_cache_dir}" = "X" -o "X${checksum}" = "X" ]; then
+        return 1
+    fi
+
+    entry="${pegasus_lite_container_cache_dir}/${checksum}"
+    if [ ! -e "${entry}/.complete" ]; then
+        pegasus_lite_log "Container cache miss for ${image_file} in ${entry}"
+        return 1
+    fi
+
+    # a hard link keeps the image around even if the entry is evicted
+    if ! ln -f "${entry}/image" "${image_file}" 2>/dev/null; then
+        if ! cp "${entry}/image" "${image_file}"; then
+            rm -f "${image_file}"
+            return 1
+        fi
+    fi
+
+    # record the access for the LRU eviction
+    touch "${entry}/.complete"
+    pegasus_lite_container_cache_hit=true
+    pegasus_lite_log "Container cache hit for ${image_file} in ${entry}"
+    return 0
+}
+
+container_cache_store()
+{
+    # Adds a container image transferred for the job to the node level cache.
+    # An entry is populated by only one job at a time, while holding a lock
+    # directory. Failures to populate the cache are not fatal for the job.
+
+    image_file=$1
+    checksum=$2
+
+    if [ "X${pegasus_lite_container_cache_dir}" = "X" -o "X${checksum}" = "X" \
+         -o "X${pegasus_lite_container_cache_hit}" = "Xtrue" ]; then
+        return 0
+    fi
+
+    mkdir -p "${pegasus_lite_container_cache_dir}" 2>/dev/null || return 0
+
+    # remove locks left behind by jobs that were killed
+    find "${pegasus_lite_container_cache_dir}" -maxdepth 1 -name '*.lock' -mmin +60 \
+        -exec rmdir {} \; 2>/dev/null
+
+    entry="${pegasus_lite_container_cache_dir}/${checksum}"
+    if ! mkdir "${entry}.lock" 2>/dev/null; then
+        pegasus_lite_log "Container cache entry ${entry} is being populated by another job"
+        return 0
+    fi
+
+    if [ ! -e "${entry}/.complete" ]; then
+        if mkdir -p "${entry}" \
+           && cp "${image_file}" "${entry}/image.$$" \
+           && mv "${entry}/image.$$" "${entry}/image" \
+           && touch "${entry}/.complete"; then
+            pegasus_lite_log "Added ${image_file} to container cache ${entry}"
+        else
+            rm -f "${entry}/image.$$"
+        fi
+    fi
+    rmdir "${entry}.lock"
+
+    container_cache_evict
+    return 0
+}
+
+container_cache_evict()
+{
+    # Evicts the least recently used entries, till the cache is within the
+    # maximum size in MB
+
+    if [ "X${pegasus_lite_container_cache_maxsize}" = "X" ]; then
+        return 0
+    fi
+
+    # the entries ordered by last access, oldest first
+    for marker in `ls -tr "${pegasus_lite_container_cache_dir}"/*/.complete 2>/dev/null`; do
+        size=`du -sm "${pegasus_lite_container_cache_dir}" 2>/dev/null | cut -f1`
+        if [ "X${size}" = "X" ] || [ ${size} -le ${pegasus_lite_container_cache_maxsize} ]; then
+            break
+        fi
+        entry=`dirname ${marker}`
+        if mkdir "${entry}.lock" 2>/dev/null; then
+            rm -rf "${entry}"
+            rmdir "${entry}.lock"
+            pegasus_lite_log "Evicted ${entry} from container cache"
+        fi
+    done
+    return 0
+}
+
 docker_init()
 {
     set -e
 
-    if [ $# -ne 1 ]; then 
+    if [ $# -lt 1 ]; then 
         pegasus_lite_log "docker_init should be passed a docker url or a file"
         return 1
     fi
@@ -355,7 +458,22 @@ docker_init()
     image_file=$1
     cont_image=""
 
-    if [ "X${image_file}" != "X" ] ; then
+    # the image loaded from the same container file by an earlier job
+    # on the node is recorded in the container cache
+    checksum=$2
+    loaded_image=""
+    if [ "X${pegasus_lite_container_cache_dir}" != "X" -a "X${checksum}" != "X" ]; then
+        loaded_image="${pegasus_lite_container_cache_dir}/${checksum}/docker.image"
+        if [ -e ${loaded_image} ]; then
+            image=`cat ${loaded_image}`
+            if docker image inspect ${image} >/dev/null 2>&1; then
+                cont_image=$image
+                pegasus_lite_log "Reusing docker image $cont_image already loaded on the node"
+            fi
+        fi
+    fi
+
+    if [ "X${image_file}" != "X" -a "X${cont_image}" = "X" ] ; then
                 
         if [ -e ${image_file} ] ; then
             pegasus_lite_log "container file is ${image_file}"
@@ -366,6 +484,11 @@ docker_init()
             for image in $images ; do
                 cont_image=$image
             done
+
+            if [ "X${loaded_image}" != "X" -a "X${cont_image}" != "X" ] \
+               && [ -d `dirname ${loaded_image}` ]; then
+                echo ${cont_image} > ${loaded_image} || true
+            fi
         fi
         
     fi
@@ -0,0 +1,234 @@
+/**
+ * Copyright 2007-2017 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.aws.batch.impl;
+
+import edu.isi.pegasus.aws.batch.classes.AWSJob;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.batch.BatchClient;
+import software.amazon.awssdk.services.batch.model.DescribeJobsRequest;
+import software.amazon.awssdk.services.batch.model.DescribeJobsResponse;
+import software.amazon.awssdk.services.batch.model.JobDetail;
+import software.amazon.awssdk.services.batch.model.JobStatus;
+
+/**
+ * Tracks the state of the jobs submitted to AWS Batch. Only the jobs that have not reached a
+ * terminal state are queried for, using describeJobs in batches of {@link
+ * #DESCRIBE_JOBS_BATCH_SIZE}. The time to sleep between two polls adapts to the rate with which job
+ * states change.
+ *
+ * <p>The monitor is not thread safe, and is meant to be driven from a single monitoring thread.
+ */
+public class JobMonitor {
+
+    /** The maximum number of job ids AWS Batch accepts in a single describeJobs call. */
+    public static final int DESCRIBE_JOBS_BATCH_SIZE = 100;
+
+    /** The default minimum time to sleep between two polls in milliseconds */
+    public static final long DEFAULT_MIN_SLEEP_TIME = 1 * 1000;
+
+    /** The default initial time to sleep between two polls in milliseconds */
+    public static final long DEFAULT_INITIAL_SLEEP_TIME = 5 * 1000;
+
+    private final BatchClient mBatchClient;
+
+    private final Logger mLogger;
+
+    /** Map indexed by AWS job id of the jobs not yet in a terminal state, to their last status */
+    private final Map<String, String> mOutstanding;
+
+    private final long mMinSleepTime;
+
+    private final long mMaxSleepTime;
+
+    private long mSleepTime;
+
+    /** Number of jobs that started to be tracked since the last poll */
+    private int mNewlyTracked;
+
+    /**
+     * The overloaded constructor, using the default sleep times.
+     *
+     * @param client the batch client to query with
+     * @param logger the logger to use
+     */
+    public JobMonitor(BatchClient client, Logger logger) {
+        this(
+                client,
+                logger,
+                JobMonitor.DEFAULT_MIN_SLEEP_TIME,
+                JobMonitor.DEFAULT_INITIAL_SLEEP_TIME,
+                Synch.MAX_SLEEP_TIME);
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param client the batch client to query with
+     * @param logger the logger to use
+     * @param minSleepTime the minimum time to sleep between polls in milliseconds
+     * @param initialSleepTime the time to sleep after the first poll in milliseconds
+     * @param maxSleepTime the maximum time to sleep between polls in milliseconds
+     */
+    public JobMonitor(
+            BatchClient client,
+            Logger logger,
+            long minSleepTime,
+            long initialSleepTime,
+            long maxSleepTime) {
+        if (minSleepTime <= 0 || minSleepTime > maxSleepTime) {
+            throw new IllegalArgumentException(
+                    "Invalid sleep time range " + minSleepTime + " - " + maxSleepTime);
+        }
+        mBatchClient = client;
+        mLogger = logger;
+        mOutstanding = new LinkedHashMap();
+        mMinSleepTime = minSleepTime;
+        mMaxSleepTime = maxSleepTime;
+        mSleepTime = Math.max(minSleepTime, Math.min(initialSleepTime, maxSleepTime));
+        mNewlyTracked = 0;
+    }
+
+    /**
+     * Starts tracking a job submitted to AWS Batch.
+     *
+     * @param awsJobID the id assigned by AWS Batch to the job
+     */
+    public void track(String awsJobID) {
+        if (!mOutstanding.containsKey(awsJobID)) {
+            mOutstanding.put(awsJobID, JobStatus.SUBMITTED.toString());
+            mNewlyTracked++;
+        }
+    }
+
+    /**
+     * Returns the number of jobs that have not reached a terminal state.
+     *
+     * @return number of outstanding jobs
+     */
+    public int outstanding() {
+        return mOutstanding.size();
+    }
+
+    /**
+     * Queries AWS Batch for the current status of all outstanding jobs, and returns the details of
+     * the jobs whose status changed since the last poll. Jobs that succeeded or failed are no
+     * longer tracked after this call. The sleep time is updated according to the number of changes
+     * seen.
+     *
+     * @return the job details for jobs whose status changed, in the order the jobs were tracked
+     */
+    public List<JobDetail> poll() {
+        List<JobDetail> changed = new LinkedList();
+        List<String> batch = new ArrayList(JobMonitor.DESCRIBE_JOBS_BATCH_SIZE);
+        for (Iterator<String> it = mOutstanding.keySet().iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            if (batch.size() == JobMonitor.DESCRIBE_JOBS_BATCH_SIZE || !it.hasNext()) {
+                changed.addAll(this.describe(batch));
+                batch.clear();
+            }
+        }
+
+        for (JobDetail detail : changed) {
+            if (isTerminal(detail.status())) {
+                mOutstanding.remove(detail.jobId());
+            } else {
+                mOutstanding.put(detail.jobId(), detail.status());
+            }
+        }
+
+        this.adaptSleepTime(changed.size() + mNewlyTracked);
+        mNewlyTracked = 0;
+        return changed;
+    }
+
+    /**
+     * Returns the time to sleep before the next poll.
+     *
+     * @return time in milliseconds
+     */
+    public long getSleepTime() {
+        return mSleepTime;
+    }
+
+    /**
+     * Returns whether a status reported by AWS Batch is terminal.
+     *
+     * @param status the status as reported by AWS Batch
+     * @return boolean
+     */
+    public static boolean isTerminal(String status) {
+        return JobStatus.SUCCEEDED.toString().equalsIgnoreCase(status)
+                || JobStatus.FAILED.toString().equalsIgnoreCase(status);
+    }
+
+    /**
+     * Converts the status reported by AWS Batch to the corresponding job state.
+     *
+     * @param status the status as reported by AWS Batch
+     * @return the job state
+     */
+    public static AWSJob.JOBSTATE toJobState(String status) {
+        return AWSJob.JOBSTATE.valueOf(status.toLowerCase());
+    }
+
+    /**
+     * Describes a batch of jobs, and returns the details of the ones whose status changed.
+     *
+     * @param ids the AWS job ids, not more than {@link #DESCRIBE_JOBS_BATCH_SIZE}
+     * @return the changed job details
+     */
+    private List<JobDetail> describe(List<String> ids) {
+        List<JobDetail> changed = new LinkedList();
+        DescribeJobsRequest request = DescribeJobsRequest.builder().jobs(ids).build();
+        mLogger.debug("Describing " + ids.size() + " jobs");
+        DescribeJobsResponse response = mBatchClient.describeJobs(request);
+        for (JobDetail detail : response.jobs()) {
+            String previous = mOutstanding.get(detail.jobId());
+            if (previous == null || detail.status() == null) {
+                // job we are not tracking or no status yet
+                continue;
+            }
+            if (!previous.equalsIgnoreCase(detail.status())) {
+                mLogger.debug(
+                        "Status of Job "
+                                + detail.jobId()
+                                + " changed "
+                                + previous
+                                + "->"
+                                + detail.status()
+                                + " with reason "
+                                + detail.statusReason());
+                changed.add(detail);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Halves the sleep time if there was activity in the last poll, else doubles it, bounded by the
+     * minimum and maximum sleep times.
+     *
+     * @param activity number of state changes and newly tracked jobs
+     */
+    private void adaptSleepTime(int activity) {
+        long sleep = (activity > 0) ? mSleepTime / 2 : mSleepTime * 2;
+        mSleepTime = Math.max(mMinSleepTime, Math.min(sleep, mMaxSleepTime));
+    }
+}
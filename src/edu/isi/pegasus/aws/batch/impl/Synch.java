@@ -29,13 +29,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -111,9 +109,15 @@ public class Synch {
      */
     public static final String NULL_VALUE = "NULL";
 
-    /** maximum sleep time in seconds */
+    /** maximum sleep time in milliseconds */
     public static final long MAX_SLEEP_TIME = 32 * 1000;
 
+    /** The number of threads used to retrieve the logs of finished jobs */
+    public static final int LOG_RETRIEVAL_THREADS = 4;
+
+    /** The time in seconds to wait for log retrieval to complete on exit */
+    public static final long LOG_RETRIEVAL_TIMEOUT = 300;
+
     private Map<String, AWSJob> mJobMap;
 
     private String mPrefix;
@@ -488,28 +492,29 @@ public class Synch {
     }
 
     public void monitor(String basename) {
-        long sleepTime = 5 * 1000;
-        Set<String> awsJobIDs = new HashSet();
+        BatchClient batchClient = BatchClient.builder().region(mAWSRegion).build();
+        JobMonitor monitor = new JobMonitor(batchClient, mLogger);
 
         // first go through the internal job map to see if there
         // are any previously submitted jobs
+        int total = 0;
         synchronized (this.mJobMap) {
             for (Map.Entry<String, AWSJob> entry : this.mJobMap.entrySet()) {
                 AWSJob j = entry.getValue();
                 if (j.getJobState() == AWSJob.JOBSTATE.submitted) {
-                    awsJobIDs.add(j.getAWSJobID());
+                    monitor.track(j.getAWSJobID());
+                    total++;
                 }
             }
         }
 
-        int numDone = 0;
-        int total = awsJobIDs.size();
         int succeeded = 0;
         int failed = 0;
-        Set<String> doneJobs = new HashSet();
-        BatchClient batchClient = BatchClient.builder().region(mAWSRegion).build();
         CloudWatchLog cwl = new CloudWatchLog();
         cwl.initialze(mAWSRegion, mLogger.getLevel(), CLOUD_WATCH_BATCH_LOG_GROUP);
+        // logs are retrieved on a separate pool, so that monitoring
+        // is not held up by retrieving logs of finished jobs
+        ExecutorService logService = Executors.newFixedThreadPool(Synch.LOG_RETRIEVAL_THREADS);
         while (true) {
             // go through unprocessed jobs that have been submitted
             // in another thread
@@ -528,6 +533,7 @@ public class Synch {
                             total++;
                             it.remove();
                         } catch (Exception ex) {
+                            logService.shutdownNow();
                             complainAndShutdown(ex);
                             return;
                         }
@@ -540,117 +546,81 @@ public class Synch {
                     AWSJob j = mJobMap.get(tuple.getKey());
                     j.setAWSJobID(tuple.getValue());
                     j.setState(AWSJob.JOBSTATE.submitted);
-                    awsJobIDs.add(j.getAWSJobID());
+                    monitor.track(j.getAWSJobID());
                     mLogger.info("Submitted Job " + j.getID() + " with AWS id " + j.getAWSJobID());
                     mJobstateWriter.log(j.getID(), j.getAWSJobID(), AWSJob.JOBSTATE.submitted);
                 }
             }
-            // now query AWS Batch for the jobs
+            // now query AWS Batch for the jobs that are not done yet
             try {
-
-                ListJobsRequest listSucceededJobsRequest =
-                        createListJobRequest(this.mJobQueueARN, JobStatus.SUCCEEDED);
-                ListJobsRequest listFailedJobsRequest =
-                        createListJobRequest(this.mJobQueueARN, JobStatus.FAILED);
-
-                // first query for succeeded
-                mLogger.debug("Querying for successful jobs " + listSucceededJobsRequest);
-                ListJobsResponse listJobsResponse = batchClient.listJobs(listSucceededJobsRequest);
-                mLogger.debug(
-                        "Retrieved  " + listJobsResponse.jobSummaryList().size() + " responses ");
-                for (JobSummary summary : listJobsResponse.jobSummaryList()) {
-                    String succeededJobID = summary.jobId();
-                    if (awsJobIDs.contains(succeededJobID)) {
-                        if (!doneJobs.contains(succeededJobID)) {
-                            mLogger.info("Job Succeeded " + succeededJobID);
-                            AWSJob j = this.getJob(summary.jobName());
-                            j.setState(AWSJob.JOBSTATE.succeeded);
-                            mJobstateWriter.log(
-                                    summary.jobName(), summary.jobId(), AWSJob.JOBSTATE.succeeded);
-                            doneJobs.add(summary.jobId());
-                            numDone++;
-                            succeeded++;
-                            mLogger.debug("Querying for succeeded job details " + succeededJobID);
-                            Tuple<File, File> log = cwl.retrieve(j);
-                            mLogger.debug("Logs retreived for " + succeededJobID + " to " + log);
-                        }
+                for (JobDetail jobDetail : monitor.poll()) {
+                    AWSJob.JOBSTATE state = JobMonitor.toJobState(jobDetail.status());
+                    this.updateJobState(jobDetail.jobName(), state);
+                    mJobstateWriter.log(jobDetail.jobName(), jobDetail.jobId(), state);
+                    if (state == AWSJob.JOBSTATE.succeeded) {
+                        mLogger.info("Job Succeeded " + jobDetail.jobId());
+                        succeeded++;
+                    } else if (state == AWSJob.JOBSTATE.failed) {
+                        mLogger.info("Job Failed " + jobDetail.jobId());
+                        failed++;
+                    } else {
+                        continue;
                     }
+                    AWSJob j = this.getJob(jobDetail.jobName());
+                    logService.submit(
+                            () -> {
+                                // the futures are not waited on, so failures are logged here
+                                try {
+                                    Tuple<File, File> log = cwl.retrieve(j);
+                                    mLogger.debug(
+                                            "Logs retreived for " + j.getAWSJobID() + " to " + log);
+                                } catch (Exception e) {
+                                    mLogger.error(
+                                            "Unable to retrieve logs for job "
+                                                    + j.getID()
+                                                    + " with AWS id "
+                                                    + j.getAWSJobID(),
+                                            e);
+                                }
+                            });
                 }
 
-                mLogger.debug("Sleeping before querying for failure ");
-                Thread.sleep(sleepTime);
-                if (numDone < total) {
-                    // check for failed jobs
-                    mLogger.debug("Querying for failed jobs " + listFailedJobsRequest);
-                    listJobsResponse = batchClient.listJobs(listFailedJobsRequest);
-                    mLogger.debug(
-                            "Retrieved  "
-                                    + listJobsResponse.jobSummaryList().size()
-                                    + " responses ");
-                    for (JobSummary summary : listJobsResponse.jobSummaryList()) {
-                        String failedJobID = summary.jobId();
-                        if (awsJobIDs.contains(failedJobID)) {
-                            if (!doneJobs.contains(failedJobID)) {
-                                mLogger.info("Job Failed " + failedJobID);
-                                AWSJob j = this.getJob(summary.jobName());
-                                j.setState(AWSJob.JOBSTATE.failed);
-                                mJobstateWriter.log(
-                                        summary.jobName(), summary.jobId(), AWSJob.JOBSTATE.failed);
-                                doneJobs.add(summary.jobId());
-                                // remove the job so that we don't query for detail
-                                awsJobIDs.remove(failedJobID);
-                                numDone++;
-                                failed++;
-                                mLogger.debug("Querying for failed job details " + failedJobID);
-                                Tuple<File, File> log = cwl.retrieve(j);
-                                mLogger.debug("Logs retreived for " + failedJobID + " to " + log);
-                            }
+                mLogger.debug((succeeded + failed) + " jobs done of total of " + total);
+                if (monitor.outstanding() == 0 && receivedSignalToExitAfterJobsComplete()) {
+                    synchronized (this.mSubmitResponses) {
+                        if (this.mSubmitResponses.isEmpty()) {
+                            mLogger.info("*** All jobs done *** ");
+                            break;
                         }
-                    }
-                }
-
-                mLogger.debug(numDone + " jobs done of total of " + total);
-                if (numDone < total) {
-                    // still total is not done
-                    mLogger.debug("Sleeping before querying for status of remaining jobs ");
-                    Thread.sleep(sleepTime);
-                    // now we query current state for jobs
-                    DescribeJobsRequest jobsRequest =
-                            DescribeJobsRequest.builder().jobs(awsJobIDs).build();
-                    DescribeJobsResponse jobsResponse = batchClient.describeJobs(jobsRequest);
-                    for (JobDetail jobDetail : jobsResponse.jobs()) {
                         mLogger.debug(
-                                "Current Status of Job "
-                                        + jobDetail.jobId()
-                                        + "->"
-                                        + jobDetail.status()
-                                        + " with reason "
-                                        + jobDetail.statusReason());
-                        mJobstateWriter.log(
-                                jobDetail.jobName(),
-                                jobDetail.jobId(),
-                                AWSJob.JOBSTATE.valueOf(jobDetail.status().toLowerCase()));
-                        mLogger.debug("Detailed Job detail " + jobDetail);
-                    }
-                } else {
-                    if (receivedSignalToExitAfterJobsComplete()) {
-                        synchronized (this.mSubmitResponses) {
-                            if (this.mSubmitResponses.isEmpty()) {
-                                mLogger.info("*** All jobs done *** ");
-                                break;
-                            }
-                            mLogger.debug(
-                                    "Waiting for " + this.mSubmitResponses.size() + " responses ");
-                        }
+                                "Waiting for " + this.mSubmitResponses.size() + " responses ");
                     }
                 }
+                mLogger.debug(
+                        "Sleeping for "
+                                + monitor.getSleepTime()
+                                + " ms before querying for status of remaining jobs ");
+                Thread.sleep(monitor.getSleepTime());
 
             } catch (Exception ex) {
+                logService.shutdownNow();
                 complainAndShutdown(ex);
                 return;
             }
         }
 
+        mLogger.info("Waiting for retrieval of job logs to complete");
+        logService.shutdown();
+        try {
+            if (!logService.awaitTermination(Synch.LOG_RETRIEVAL_TIMEOUT, TimeUnit.SECONDS)) {
+                mLogger.error("Retrieval of job logs did not complete");
+                logService.shutdownNow();
+            }
+        } catch (InterruptedException ie) {
+            logService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
         mLogger.info("Shutting down");
         try {
             batchClient.close();
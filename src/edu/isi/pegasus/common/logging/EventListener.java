@@ -0,0 +1,37 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.logging;
+
+/**
+ * A listener that is notified whenever an event is started or completed on a LogManager. Allows
+ * tools to be driven by the events the code already logs, for e.g. to profile them.
+ *
+ * <p>The callbacks are made on the thread that logs the event, and should return quickly.
+ */
+public interface EventListener {
+
+    /**
+     * Callback for when an event is started.
+     *
+     * @param name the name of the event
+     */
+    public void eventStarted(String name);
+
+    /**
+     * Callback for when the most recently started event is completed.
+     *
+     * @param name the name of the event
+     */
+    public void eventCompleted(String name);
+}
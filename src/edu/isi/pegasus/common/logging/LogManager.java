@@ -17,8 +17,11 @@ import edu.isi.pegasus.planner.common.PegasusProperties;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 import org.apache.log4j.Level;
 
 /**
@@ -114,9 +117,13 @@ public abstract class LogManager {
     /** The LogFormatter to use to format the message. */
     protected LogFormatter mLogFormatter;
 
+    /** The listeners notified when events start and complete. */
+    private final List<EventListener> mEventListeners;
+
     /** The constructor. */
     public LogManager() {
         mDebugLevel = 0;
+        mEventListeners = new CopyOnWriteArrayList();
     }
 
     /**
@@ -337,11 +344,56 @@ public abstract class LogManager {
      * @param level the level on which the message has to be logged.
      * @see #setLevel(int)
      */
-    public void log(String message, int level) {
+    public synchronized void log(String message, int level) {
+        if (!this.isLoggable(level)) {
+            return;
+        }
         mLogFormatter.add(message);
         this.logAlreadyFormattedMessage(mLogFormatter.createLogMessageAndReset(), level);
     }
 
+    /**
+     * Logs the message supplied on the appropriate queue if the level of the message is less than
+     * or equal to the level set for the Logger. The message is only constructed, if the message is
+     * to be logged.
+     *
+     * @param message the supplier of the message to be logged.
+     * @param level the level on which the message has to be logged.
+     * @see #log(String,int)
+     */
+    public void log(Supplier<String> message, int level) {
+        if (this.isLoggable(level)) {
+            this.log(message.get(), level);
+        }
+    }
+
+    /**
+     * Logs the message supplied and the exception on the appropriate queue if the level of the
+     * message is less than or equal to the level set for the Logger. The message is only
+     * constructed, if the message is to be logged.
+     *
+     * @param message the supplier of the message to be logged.
+     * @param e the exception to be logged
+     * @param level the level on which the message has to be logged.
+     * @see #log(String,Exception,int)
+     */
+    public void log(Supplier<String> message, Exception e, int level) {
+        if (this.isLoggable(level)) {
+            this.log(message.get(), e, level);
+        }
+    }
+
+    /**
+     * Returns whether a message at a particular level will be logged. Callers can use it to avoid
+     * constructing messages that are not logged.
+     *
+     * @param level the level of the message.
+     * @return boolean
+     */
+    public boolean isLoggable(int level) {
+        return level <= this.getLevel();
+    }
+
     /**
      * Log an event start message to INFO level
      *
@@ -364,6 +416,7 @@ public abstract class LogManager {
     public void logEventStart(String name, String entityName, String entityID, int level) {
         mLogFormatter.addEvent(name, entityName, entityID);
         this.logAlreadyFormattedMessage(mLogFormatter.getStartEventMessage(), level);
+        this.notifyEventStart(name);
     }
 
     /**
@@ -386,6 +439,7 @@ public abstract class LogManager {
     public void logEventStart(String name, Map<String, String> map, int level) {
         mLogFormatter.addEvent(name, map);
         this.logAlreadyFormattedMessage(mLogFormatter.getStartEventMessage(), level);
+        this.notifyEventStart(name);
     }
 
     /** Logs the completion message on the basis of the debug level. */
@@ -401,6 +455,49 @@ public abstract class LogManager {
      */
     public abstract void logEventCompletion(int level);
 
+    /**
+     * Adds a listener to be notified when events are started and completed.
+     *
+     * @param listener the listener to add
+     */
+    public void addEventListener(EventListener listener) {
+        mEventListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener previously added.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeEventListener(EventListener listener) {
+        mEventListeners.remove(listener);
+    }
+
+    /**
+     * Notifies the listeners that an event was started.
+     *
+     * @param name the name of the event
+     */
+    protected void notifyEventStart(String name) {
+        for (EventListener listener : mEventListeners) {
+            listener.eventStarted(name);
+        }
+    }
+
+    /**
+     * Notifies the listeners that the current event is completed. Implementations should call this
+     * before popping the event from the formatter.
+     */
+    protected void notifyEventCompletion() {
+        if (mEventListeners.isEmpty()) {
+            return;
+        }
+        String name = mLogFormatter.getEventName();
+        for (EventListener listener : mEventListeners) {
+            listener.eventCompleted(name);
+        }
+    }
+
     /**
      * Log a message that connects the parent entities with the children. For e.g. can we use to
      * create the log messages connecting the jobs with the workflow they are part of.
@@ -36,6 +36,13 @@ public class LogManagerFactory {
     /** Holds a singleton instance that is populated via the loadSingletonInstance() method. */
     private static LogManager mSingletonInstance;
 
+    /**
+     * Holds the instance returned by the loadSingletonInstance() methods to a thread, and the
+     * threads it starts, in place of the singleton.
+     */
+    private static final InheritableThreadLocal<LogManager> mThreadInstance =
+            new InheritableThreadLocal();
+
     /**
      * Loads the appropriate LogManager class as specified by properties.
      *
@@ -45,13 +52,35 @@ public class LogManagerFactory {
      * @see #DEFAULT_PACKAGE_NAME
      */
     public static LogManager loadSingletonInstance() throws LogManagerFactoryException {
-
+        LogManager logger = mThreadInstance.get();
+        if (logger != null) {
+            return logger;
+        }
         return (mSingletonInstance =
                 (mSingletonInstance == null)
                         ? loadSingletonInstance(PegasusProperties.getInstance())
                         : mSingletonInstance);
     }
 
+    /**
+     * Sets the instance returned by the loadSingletonInstance() methods to the calling thread, and
+     * the threads it starts from then on. This allows a sub workflow planned in process to have the
+     * components that load the singleton log to its own log, without affecting the other threads.
+     *
+     * @param logger the instance to return in place of the singleton, null to return the singleton
+     *     again.
+     * @return the instance previously set for the thread, can be null.
+     */
+    public static LogManager setThreadInstance(LogManager logger) {
+        LogManager previous = mThreadInstance.get();
+        if (logger == null) {
+            mThreadInstance.remove();
+        } else {
+            mThreadInstance.set(logger);
+        }
+        return previous;
+    }
+
     /**
      * Loads the appropriate LogManager class as specified by properties.
      *
@@ -63,7 +92,10 @@ public class LogManagerFactory {
      */
     public static LogManager loadSingletonInstance(PegasusProperties properties)
             throws LogManagerFactoryException {
-
+        LogManager logger = mThreadInstance.get();
+        if (logger != null) {
+            return logger;
+        }
         return (mSingletonInstance =
                 (mSingletonInstance == null) ? loadInstance(properties) : mSingletonInstance);
     }
@@ -80,6 +112,28 @@ public class LogManagerFactory {
     public static LogManager loadInstance(PegasusProperties properties)
             throws LogManagerFactoryException {
 
+        LogManager result = loadNonSingletonInstance(properties);
+
+        /* store reference for singleton return */
+        mSingletonInstance = result;
+
+        return result;
+    }
+
+    /**
+     * Loads the appropriate LogManager class as specified by properties. The instance returned is
+     * not stored for singleton return, and hence can be used by components that log to their own
+     * streams such as the planners for the sub workflows planned in process.
+     *
+     * @param properties is an instance of properties to use.
+     * @return handle to the Log Manager.
+     * @throws LogManagerFactoryException that nests any error that might occur during the
+     *     instantiation
+     * @see #DEFAULT_PACKAGE_NAME
+     */
+    public static LogManager loadNonSingletonInstance(PegasusProperties properties)
+            throws LogManagerFactoryException {
+
         if (properties == null) {
             throw new LogManagerFactoryException("Invalid NULL properties passed");
         }
@@ -91,7 +145,7 @@ public class LogManagerFactory {
         Properties initialize = properties.matchingSubset(LogManager.PROPERTIES_PREFIX, false);
 
         // determine the class that implements the site catalog
-        return loadInstance(logImplementor, formatImplementor, initialize);
+        return createInstance(logImplementor, formatImplementor, initialize);
     }
 
     /**
@@ -109,6 +163,28 @@ public class LogManagerFactory {
             String implementor, String formatImplementor, Properties properties)
             throws LogManagerFactoryException {
 
+        LogManager result = createInstance(implementor, formatImplementor, properties);
+
+        /* store reference for singleton return */
+        mSingletonInstance = result;
+
+        return result;
+    }
+
+    /**
+     * Instantiates the Log Manager specified, without storing it for singleton return.
+     *
+     * @param implementor the name of the class implementing LogManager
+     * @param formatImplementor the name of the class implementing the formatting technique
+     * @param properties properties
+     * @return handle to the LogManager
+     * @throws LogManagerFactoryException that nests any error that might occur during the
+     *     instantiation
+     */
+    private static LogManager createInstance(
+            String implementor, String formatImplementor, Properties properties)
+            throws LogManagerFactoryException {
+
         // implementor = implementor == null ? "Default" : implementor;
         // formatImplementor = formatImplementor == null ? "Simple" : formatImplementor;
 
@@ -141,9 +217,6 @@ public class LogManagerFactory {
             throw new LogManagerFactoryException("Unable to instantiate Logger ", implementor, e);
         }
 
-        /* store reference for singleton return */
-        mSingletonInstance = result;
-
         return result;
     }
 }
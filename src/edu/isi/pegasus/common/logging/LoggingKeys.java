@@ -60,8 +60,10 @@ public class LoggingKeys {
     public static final String EVENT_PEGASUS_GENERATE_WORKDIR =
             "event.pegasus.generate.workdir-nodes";
     public static final String EVENT_PEGASUS_CODE_GENERATION = "event.pegasus.code.generation";
+    public static final String EVENT_PEGASUS_PLAN_CACHE = "event.pegasus.plan.cache";
     public static final String EVENT_PEGASUS_LOAD_TRANSIENT_CACHE = "event.pegasus.load.cache";
     public static final String EVENT_PEGASUS_LOAD_DIRECTORY_CACHE = "event.pegasus.load.directory";
+    public static final String EVENT_PEGASUS_LOAD_CATALOGS = "event.pegasus.load.catalogs";
     public static final String EVENT_PEGASUS_PARSE_SITE_CATALOG =
             "event.pegasus.parse.site-catalog";
     public static final String EVENT_PEGASUS_PARSE_DAX = "event.pegasus.parse.dax";
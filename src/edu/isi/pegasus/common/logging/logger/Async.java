@@ -0,0 +1,282 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.logging.logger;
+
+import edu.isi.pegasus.common.logging.LogFormatter;
+import edu.isi.pegasus.common.util.Currently;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A logger that formats and filters messages the same way as the Default logger, but hands them off
+ * to a bounded buffer instead of writing them out in the calling thread. A single writer thread
+ * drains the buffer, and writes out the messages drained together, flushing the underlying streams
+ * once per batch. Callers only block if the buffer is full.
+ *
+ * <p>Fatal and error messages are written out before the call to log them returns, and the messages
+ * remaining in the buffer are written out when the JVM shuts down.
+ *
+ * <p>To use this logger, set the property
+ *
+ * <pre>
+ * pegasus.log.manager  Async
+ * </pre>
+ *
+ * The size of the buffer can be set by the property pegasus.log.manager.async.buffer.size .
+ *
+ * @version $Revision$
+ */
+public class Async extends Default {
+
+    /** The property that specifies the number of messages the buffer can hold. */
+    public static final String BUFFER_SIZE_PROPERTY = "async.buffer.size";
+
+    /** The default number of messages the buffer can hold. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** The maximum number of messages written out by the writer thread in one batch. */
+    public static final int MAX_BATCH_SIZE = 1024;
+
+    /** The maximum time in milliseconds to wait for the buffer to be drained on shutdown. */
+    private static final long SHUTDOWN_TIMEOUT = 5000;
+
+    /** The buffer to which the messages to be logged are handed off. */
+    private BlockingQueue<Entry> mBuffer;
+
+    /** The thread that writes out the messages in the buffer. */
+    private Thread mWriter;
+
+    /** The number of messages handed off to the buffer so far. */
+    private final AtomicLong mQueued;
+
+    /** The number of messages written out so far. Guarded by mQueued. */
+    private long mWritten;
+
+    /** The formatter for the timestamps. Only accessed by the writer thread. */
+    private final Currently mTimestampFormatter;
+
+    /** The constructor. */
+    public Async() {
+        super();
+        mQueued = new AtomicLong();
+        mWritten = 0;
+        mTimestampFormatter = new Currently(TIMESTAMP_FORMAT);
+    }
+
+    /**
+     * Sets the log formatter to use for formatting the messages, and starts the writer thread.
+     *
+     * @param formatter the formatter to use.
+     * @param properties properties that the underlying implementations understand
+     */
+    public void initialize(LogFormatter formatter, Properties properties) {
+        super.initialize(formatter, properties);
+        if (mBuffer != null) {
+            // already initialized
+            return;
+        }
+
+        int size = DEFAULT_BUFFER_SIZE;
+        String value = (properties == null) ? null : properties.getProperty(BUFFER_SIZE_PROPERTY);
+        if (value != null) {
+            try {
+                size = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Invalid value " + value + " for property " + BUFFER_SIZE_PROPERTY, e);
+            }
+        }
+        mBuffer = new ArrayBlockingQueue(size);
+
+        mWriter = new Thread(this::drain, "pegasus-log-writer");
+        mWriter.setDaemon(true);
+        mWriter.start();
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(() -> this.flush(SHUTDOWN_TIMEOUT), "pegasus-log-flush"));
+    }
+
+    /**
+     * Hands off the message to the buffer, to be written out by the writer thread. Fatal and error
+     * messages are written out before the method returns.
+     *
+     * @param writer the stream to which the message is to be written.
+     * @param message the message with the prefix for the level.
+     * @param level the level on which the message is logged.
+     */
+    protected void write(PrintStream writer, String message, int level) {
+        if (mBuffer == null) {
+            // not initialized yet
+            super.write(writer, message, level);
+            return;
+        }
+
+        mQueued.incrementAndGet();
+        try {
+            mBuffer.put(new Entry(writer, System.currentTimeMillis(), message));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (mQueued) {
+                // account for the message that was never queued
+                mWritten++;
+            }
+            super.write(writer, message, level);
+            return;
+        }
+
+        if (level <= ERROR_MESSAGE_LEVEL) {
+            this.flush(0);
+        }
+    }
+
+    /**
+     * Blocks until all the messages handed off to the buffer before the invocation have been
+     * written out.
+     */
+    public void flush() {
+        this.flush(0);
+    }
+
+    /**
+     * Blocks until all the messages handed off to the buffer before the invocation have been
+     * written out, or the timeout expires.
+     *
+     * @param timeout the maximum time to wait in milliseconds. 0 means wait forever.
+     */
+    private void flush(long timeout) {
+        long target = mQueued.get();
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (mQueued) {
+            while (mWritten < target) {
+                long wait = (timeout == 0) ? 0 : deadline - System.currentTimeMillis();
+                if (timeout != 0 && wait <= 0) {
+                    return;
+                }
+                try {
+                    mQueued.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The loop run by the writer thread. Drains the messages in the buffer in batches, and writes
+     * out each batch with one write per run of messages to the same stream. A message that cannot
+     * be written out is reported on the standard error, and the thread moves on to the next one.
+     */
+    private void drain() {
+        List<Entry> batch = new ArrayList(MAX_BATCH_SIZE);
+        StringBuilder text = new StringBuilder();
+        Date date = new Date();
+        while (true) {
+            try {
+                batch.add(mBuffer.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            mBuffer.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+            try {
+                PrintStream current = batch.get(0).mStream;
+                for (Entry entry : batch) {
+                    if (entry.mStream != current) {
+                        this.write(current, text);
+                        current = entry.mStream;
+                    }
+                    try {
+                        date.setTime(entry.mTime);
+                        text.append(mTimestampFormatter.now(date))
+                                .append(entry.mMessage)
+                                .append(System.lineSeparator());
+                    } catch (RuntimeException e) {
+                        this.report(entry.mMessage, e);
+                    }
+                }
+                this.write(current, text);
+            } finally {
+                // the messages are accounted for even if they could not be
+                // written out, so that the threads flushing do not hang
+                synchronized (mQueued) {
+                    mWritten += batch.size();
+                    mQueued.notifyAll();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes out the text accumulated for a stream and resets it. Reports the text on the standard
+     * error if the stream cannot be written to.
+     *
+     * @param stream the stream
+     * @param text the text to be written
+     */
+    private void write(PrintStream stream, StringBuilder text) {
+        try {
+            stream.print(text);
+            stream.flush();
+        } catch (RuntimeException e) {
+            this.report(text, e);
+        } finally {
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Reports the messages that could not be written out on the standard error.
+     *
+     * @param messages the messages
+     * @param e the exception that prevented them from being written out
+     */
+    private void report(CharSequence messages, RuntimeException e) {
+        System.err.println("Unable to write out log messages " + messages);
+        e.printStackTrace();
+    }
+
+    /** A message to be written out by the writer thread. */
+    private static class Entry {
+
+        /** The stream to which the message is written. */
+        private final PrintStream mStream;
+
+        /** The time in milliseconds at which the message was logged. */
+        private final long mTime;
+
+        /** The message with the prefix for the level. */
+        private final String mMessage;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param stream the stream to which the message is written.
+         * @param time the time at which the message was logged.
+         * @param message the message
+         */
+        Entry(PrintStream stream, long time, String message) {
+            mStream = stream;
+            mTime = time;
+            mMessage = message;
+        }
+    }
+}
@@ -90,6 +90,9 @@ public class Default extends LogManager {
     /** The type value to indicate a DEBUG message. */
     private static final int TRACE_MESSAGE_TYPE = 0x80;
 
+    /** The format of the timestamp with which each message is prefixed. */
+    protected static final String TIMESTAMP_FORMAT = "yyyy.MM.dd HH:mm:ss.SSS zzz: ";
+
     /** Ensures only one object is created always. Implements the Singleton. */
     private static Default logger;
 
@@ -115,7 +118,7 @@ public class Default extends LogManager {
         mDebugLevel = 0;
         mOutStream = new PrintStream(System.out, true);
         mErrStream = new PrintStream(System.err, true);
-        Default.mFormatter = new Currently("yyyy.MM.dd HH:mm:ss.SSS zzz: ");
+        Default.mFormatter = new Currently(TIMESTAMP_FORMAT);
         // by default we are logging only CONSOLE
         // and all message less than WARN
         mMask = generateMask(WARNING_MESSAGE_LEVEL, false);
@@ -194,6 +197,16 @@ public class Default extends LogManager {
         return mDebugLevel;
     }
 
+    /**
+     * Returns whether a message at a particular level will be logged.
+     *
+     * @param level the level of the message.
+     * @return boolean
+     */
+    public boolean isLoggable(int level) {
+        return ((1 << level) & mMask) != 0x0;
+    }
+
     /**
      * Sets both the output writer and the error writer to the same underlying writer.
      *
@@ -333,7 +346,6 @@ public class Default extends LogManager {
             // we need to log the message
             // get hold of the writer to be used to logging the message.
             PrintStream writer = getPrintStream(level);
-            writer.print(Default.mFormatter.now());
             String prefix = getPrefix(type);
             message = prefix + " " + message;
             /*
@@ -355,11 +367,23 @@ public class Default extends LogManager {
                              writer.println(message);
                          }
                          */
-            writer.println(message);
-            writer.flush();
+            this.write(writer, message, level);
         }
     }
 
+    /**
+     * Writes out a message that is to be logged, prefixed with the current timestamp.
+     *
+     * @param writer the stream to which the message is to be written.
+     * @param message the message with the prefix for the level.
+     * @param level the level on which the message is logged.
+     */
+    protected void write(PrintStream writer, String message, int level) {
+        writer.print(Default.mFormatter.now());
+        writer.println(message);
+        writer.flush();
+    }
+
     /**
      * Gets the timestamp nicely formatted. It generates the date-timestamp in extended ISO 8601
      * format. It generates the timestamp using the local timezone not the UTC. An example of the
@@ -383,6 +407,7 @@ public class Default extends LogManager {
      */
     public void logEventCompletion(int level) {
         String message = mLogFormatter.getEndEventMessage();
+        this.notifyEventCompletion();
         mLogFormatter.popEvent();
 
         int type = (int) Math.pow(2, level);
@@ -400,8 +425,7 @@ public class Default extends LogManager {
             */
             String prefix = getPrefix(type);
             message = prefix + " " + message;
-            writer.print(Default.mFormatter.now());
-            writer.println(message);
+            this.write(writer, message, level);
             // writer.println(message + " (completed)");
         }
     }
@@ -187,6 +187,37 @@ public class Log4j extends LogManager {
         return mDebugLevel;
     }
 
+    /**
+     * Returns whether a message at a particular level will be logged, as determined by the level of
+     * the underlying log4j logger.
+     *
+     * @param level the level of the message.
+     * @return boolean
+     */
+    public boolean isLoggable(int level) {
+        switch (level) {
+            case LogManager.FATAL_MESSAGE_LEVEL:
+                return mLogger.isEnabledFor(Level.FATAL);
+
+            case LogManager.ERROR_MESSAGE_LEVEL:
+                return mLogger.isEnabledFor(Level.ERROR);
+
+            case LogManager.WARNING_MESSAGE_LEVEL:
+                return mLogger.isEnabledFor(Level.WARN);
+
+            case LogManager.CONFIG_MESSAGE_LEVEL:
+            case LogManager.INFO_MESSAGE_LEVEL:
+                return mLogger.isEnabledFor(Level.INFO);
+
+            case LogManager.DEBUG_MESSAGE_LEVEL:
+                return mLogger.isDebugEnabled();
+
+            default:
+                // console and trace messages are not logged
+                return false;
+        }
+    }
+
     /**
      * Sets both the output writer and the error writer to the same underlying writer.
      *
@@ -282,6 +313,7 @@ public class Log4j extends LogManager {
     public void logEventCompletion(int level) {
         String message = mLogFormatter.getEndEventMessage();
         logAlreadyFormattedMessage(message, level);
+        this.notifyEventCompletion();
         mLogFormatter.popEvent();
     }
 }
@@ -71,6 +71,15 @@ public interface ReplicaCatalog extends Catalog {
     /** The name of the key that indicates property prefixes for pegasus-db-admin to connect with */
     public static final String PREFIX_KEY = "prefix";
 
+    /**
+     * The name of the key that enables a bloom filter over the LFNs in the catalog, that answers
+     * lookups for LFNs not in the catalog without querying the backend.
+     */
+    public static final String NEGATIVE_CACHE_KEY = "negative.cache";
+
+    /** The name of the key that specifies the false positive probability of the bloom filter. */
+    public static final String NEGATIVE_CACHE_FPP_KEY = "negative.cache.fpp";
+
     /**
      * Retrieves the entry for a given filename and resource handle from the replica catalog.
      *
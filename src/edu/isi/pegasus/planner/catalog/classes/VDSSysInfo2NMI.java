@@ -39,7 +39,7 @@ public class VDSSysInfo2NMI {
      *
      * @return Map mapping VDS Arch to NMI architecture
      */
-    private static Map<Arch, SysInfo.Architecture> vdsArchToNMIArchMap() {
+    private static synchronized Map<Arch, SysInfo.Architecture> vdsArchToNMIArchMap() {
         // singleton access
         if (mVDSArchToNMIArch == null) {
             mVDSArchToNMIArch = new HashMap();
@@ -18,6 +18,10 @@ import edu.isi.pegasus.common.util.CommonProperties;
 import edu.isi.pegasus.common.util.DynamicLoader;
 import edu.isi.pegasus.common.util.FileDetector;
 import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.impl.MRC;
+import edu.isi.pegasus.planner.catalog.replica.impl.NegativeLookupCache;
+import edu.isi.pegasus.planner.catalog.replica.impl.Regex;
+import edu.isi.pegasus.planner.catalog.replica.impl.YAML;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import java.io.File;
@@ -249,10 +253,41 @@ public class ReplicaFactory {
                             + " with props "
                             + connectProps);
 
+        if (Boolean.parseBoolean(connectProps.getProperty(ReplicaCatalog.NEGATIVE_CACHE_KEY))) {
+            result = loadNegativeLookupCache(result, logger, connectProps);
+        }
+
         // done
         return result;
     }
 
+    /**
+     * Wraps a connected replica catalog with a negative lookup cache, if the catalog allows for it.
+     *
+     * @param catalog the connected replica catalog
+     * @param logger the logger to use
+     * @param connectProps the properties used to connect to the catalog
+     * @return the wrapped catalog, or the catalog itself if it cannot be wrapped
+     */
+    private static ReplicaCatalog loadNegativeLookupCache(
+            ReplicaCatalog catalog, LogManager logger, Properties connectProps) {
+        // the LFNs listed by these catalogs are not the LFNs they match
+        if (catalog instanceof Regex || catalog instanceof YAML || catalog instanceof MRC) {
+            logger.log(
+                    "[Replica Factory] Negative lookup cache not supported for replica catalog "
+                            + catalog.getClass().getSimpleName(),
+                    LogManager.WARNING_MESSAGE_LEVEL);
+            return catalog;
+        }
+
+        NegativeLookupCache cache = new NegativeLookupCache(catalog, logger);
+        if (!cache.connect(connectProps)) {
+            throw new RuntimeException(
+                    CONNECT_TO_RC_FAILED_MESSAGE + " " + NegativeLookupCache.class.getName());
+        }
+        return cache;
+    }
+
     public static ReplicaCatalog loadInstance(CommonProperties props) {
         throw new UnsupportedOperationException(
                 "Not supported yet."); // To change body of generated methods, choose Tools |
@@ -0,0 +1,618 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A file based replica catalog, that is stored in a compiled binary format. Unlike the SimpleFile
+ * and YAML implementations, the catalog is not parsed into memory on connect. Instead the file is
+ * memory mapped, and the LFNs are looked up by a binary search over a sorted index. This makes it
+ * suitable for very large catalogs, where the planner only looks up the LFNs referred to in the
+ * workflow.
+ *
+ * <p>The file is laid out as
+ *
+ * <pre>
+ *  header   : magic, version, segment shift, number of LFNs, offset of the index
+ *  data     : the string pool and the entries for each LFN
+ *  index    : for each LFN in sorted order, the offset of the LFN and of its entries
+ * </pre>
+ *
+ * The strings are stored as a length followed by the UTF-8 bytes. The attribute keys and values are
+ * stored only once in the string pool. The entries for a LFN are stored as a count, followed for
+ * each entry by the offset of the PFN, the number of attributes and the offsets of the attribute
+ * keys and values. The LFNs are sorted on their UTF-8 bytes. A record never crosses a segment
+ * boundary, so that catalogs bigger than 2GB can be mapped in segments.
+ *
+ * <p>The file is usually generated from a catalog in another format using pegasus-rc-converter
+ *
+ * <pre>
+ * pegasus-rc-converter -I File -i rc.txt -O Indexed -o rc.idx
+ * </pre>
+ *
+ * To use it set
+ *
+ * <pre>
+ * pegasus.catalog.replica       Indexed
+ * pegasus.catalog.replica.file  /path/to/rc.idx
+ * </pre>
+ *
+ * Any modification to the catalog results in the whole catalog being loaded in memory, and the file
+ * is rewritten on close. Variables in the catalog are not expanded, and should be expanded when
+ * converting.
+ */
+public class Indexed extends SimpleFile {
+
+    /** The magic number at the start of a compiled catalog. */
+    public static final long MAGIC = 0x5045475243494458L; // PEGRCIDX
+
+    /** The version of the format. */
+    public static final int VERSION = 1;
+
+    /** The default shift for the segment size i.e. 1GB segments. */
+    public static final int DEFAULT_SEGMENT_SHIFT = 30;
+
+    /** The size of the header in bytes. */
+    private static final int HEADER_SIZE = 32;
+
+    /** The size of a slot in the index. */
+    private static final int SLOT_SIZE = 16;
+
+    /** Whether the catalog was modified since connecting. */
+    private boolean mModified;
+
+    /** The default constructor. */
+    public Indexed() {
+        super();
+        mModified = false;
+    }
+
+    /**
+     * Maps the compiled catalog. If the file does not exist, an empty catalog is created that is
+     * written out on close.
+     *
+     * @param filename is the name of the file to read.
+     * @return true, if the index in the file is sound.
+     */
+    public boolean connect(String filename) {
+        // sanity check
+        if (filename == null) return false;
+        m_filename = filename;
+        mModified = false;
+
+        File f = new File(filename);
+        if (!f.exists()) {
+            m_lfn = new LinkedHashMap();
+            return true;
+        }
+        try {
+            m_lfn = new Index(f);
+        } catch (IOException ioe) {
+            m_lfn = null;
+            m_filename = null;
+            throw new RuntimeException("Unable to open compiled replica catalog " + filename, ioe);
+        }
+        return true;
+    }
+
+    /**
+     * Writes out the catalog if it was modified, and unmaps the file. The catalog is written to a
+     * temporary file first, that is then moved in place.
+     */
+    public void close() {
+        if (m_lfn == null) return;
+
+        try {
+            if (mModified && !m_readonly) {
+                File f = new File(m_filename);
+                File dir = f.getAbsoluteFile().getParentFile();
+                File tmp = File.createTempFile(f.getName(), ".tmp", dir);
+                try {
+                    Indexed.write(tmp, m_lfn, DEFAULT_SEGMENT_SHIFT);
+                    Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    tmp.delete();
+                }
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException(
+                    "Unable to write compiled replica catalog " + m_filename, ioe);
+        } finally {
+            this.release();
+            m_lfn = null;
+            m_filename = null;
+            mModified = false;
+        }
+    }
+
+    /**
+     * Predicate to check, if the connection with the catalog's implementation is still active.
+     *
+     * @return true, if the implementation is disassociated, false otherwise.
+     */
+    public boolean isClosed() {
+        return (m_lfn == null);
+    }
+
+    public int insert(String lfn, ReplicaCatalogEntry tuple) {
+        this.materialize();
+        return super.insert(lfn, tuple);
+    }
+
+    public int insert(Map x) {
+        this.materialize();
+        return super.insert(x);
+    }
+
+    public int delete(String lfn, String pfn) {
+        this.materialize();
+        return super.delete(lfn, pfn);
+    }
+
+    public int delete(Map<String, Collection<ReplicaCatalogEntry>> x, boolean matchAttributes) {
+        this.materialize();
+        return super.delete(x, matchAttributes);
+    }
+
+    public int delete(String lfn, ReplicaCatalogEntry tuple) {
+        this.materialize();
+        return super.delete(lfn, tuple);
+    }
+
+    public int delete(String lfn, String name, Object value) {
+        this.materialize();
+        return super.delete(lfn, name, value);
+    }
+
+    public int deleteByResource(String lfn, String handle) {
+        this.materialize();
+        return super.deleteByResource(lfn, handle);
+    }
+
+    public int remove(String lfn) {
+        this.materialize();
+        return super.remove(lfn);
+    }
+
+    public int remove(Set lfns) {
+        this.materialize();
+        return super.remove(lfns);
+    }
+
+    public int removeByAttribute(String name, Object value) {
+        this.materialize();
+        return super.removeByAttribute(name, value);
+    }
+
+    public int removeByAttribute(String handle) {
+        this.materialize();
+        return super.removeByAttribute(handle);
+    }
+
+    public int clear() {
+        this.materialize();
+        return super.clear();
+    }
+
+    /**
+     * Loads the whole catalog in memory, before it is modified. The catalog is written out on
+     * close.
+     */
+    private void materialize() {
+        if (m_lfn instanceof Index) {
+            Map<String, Collection<ReplicaCatalogEntry>> entries = new LinkedHashMap(m_lfn);
+            this.release();
+            m_lfn = entries;
+        }
+        mModified = true;
+    }
+
+    /** Closes the file backing the index if any. */
+    private void release() {
+        if (m_lfn instanceof Index) {
+            ((Index) m_lfn).close();
+        }
+    }
+
+    /**
+     * Writes out the entries as a compiled catalog.
+     *
+     * @param file the file to write to
+     * @param entries map indexed by LFN, with the replica catalog entries for each LFN.
+     * @param shift the segment size as a power of two
+     * @throws IOException in case of error while writing, or a record larger than the segment size
+     */
+    public static void write(
+            File file, Map<String, Collection<ReplicaCatalogEntry>> entries, int shift)
+            throws IOException {
+        if (shift < 6 || shift > 30) {
+            throw new IllegalArgumentException("Invalid segment shift " + shift);
+        }
+
+        List<byte[]> lfns = new ArrayList(entries.size());
+        for (String lfn : entries.keySet()) {
+            lfns.add(lfn.getBytes(StandardCharsets.UTF_8));
+        }
+        Collections.sort(lfns, new UnsignedComparator());
+
+        long[] slots = new long[lfns.size() * 2];
+        long indexOffset;
+        try (Writer writer = new Writer(file, shift)) {
+            int i = 0;
+            for (byte[] lfn : lfns) {
+                Collection<ReplicaCatalogEntry> rces =
+                        entries.get(new String(lfn, StandardCharsets.UTF_8));
+                slots[i++] = writer.writeString(lfn);
+                slots[i++] = writer.writeEntries(rces);
+            }
+            indexOffset = writer.writeIndex(slots);
+        }
+
+        // update the header with the index location
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeLong(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(shift);
+            raf.writeLong(lfns.size());
+            raf.writeLong(indexOffset);
+        }
+    }
+
+    /** Writes the records to the compiled catalog, making sure no record crosses a segment. */
+    private static class Writer implements AutoCloseable {
+
+        private final DataOutputStream mOut;
+
+        private final int mShift;
+
+        /** The current position in the file */
+        private long mPosition;
+
+        /** The offsets of the attribute keys and values already written out */
+        private final Map<String, Long> mPool;
+
+        Writer(File file, int shift) throws IOException {
+            mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            mShift = shift;
+            mPool = new HashMap();
+            // placeholder for the header
+            mOut.write(new byte[HEADER_SIZE]);
+            mPosition = HEADER_SIZE;
+        }
+
+        long writeString(byte[] value) throws IOException {
+            long offset = this.align(4 + value.length);
+            mOut.writeInt(value.length);
+            mOut.write(value);
+            mPosition += 4 + value.length;
+            return offset;
+        }
+
+        long writePooledString(Object value) throws IOException {
+            String s = value.toString();
+            Long offset = mPool.get(s);
+            if (offset == null) {
+                offset = this.writeString(s.getBytes(StandardCharsets.UTF_8));
+                mPool.put(s, offset);
+            }
+            return offset;
+        }
+
+        long writeEntries(Collection<ReplicaCatalogEntry> rces) throws IOException {
+            if (rces == null) {
+                rces = Collections.EMPTY_LIST;
+            }
+            // write out the strings first
+            List<long[]> records = new ArrayList(rces.size());
+            int size = 4;
+            for (ReplicaCatalogEntry rce : rces) {
+                List<Long> offsets = new ArrayList();
+                offsets.add(this.writeString(rce.getPFN().getBytes(StandardCharsets.UTF_8)));
+                for (Iterator it = rce.getAttributeIterator(); it.hasNext(); ) {
+                    String key = (String) it.next();
+                    Object value = rce.getAttribute(key);
+                    if (value != null) {
+                        offsets.add(this.writePooledString(key));
+                        offsets.add(this.writePooledString(value));
+                    }
+                }
+                long[] record = new long[offsets.size()];
+                for (int i = 0; i < record.length; i++) {
+                    record[i] = offsets.get(i);
+                }
+                records.add(record);
+                size += 8 + 4 + (record.length - 1) * 8;
+            }
+
+            long offset = this.align(size);
+            mOut.writeInt(records.size());
+            for (long[] record : records) {
+                mOut.writeLong(record[0]);
+                mOut.writeInt((record.length - 1) / 2);
+                for (int i = 1; i < record.length; i++) {
+                    mOut.writeLong(record[i]);
+                }
+            }
+            mPosition += size;
+            return offset;
+        }
+
+        long writeIndex(long[] slots) throws IOException {
+            // slots are aligned, and hence never cross a segment
+            long offset = this.align(0);
+            while (offset % SLOT_SIZE != 0) {
+                mOut.write(0);
+                offset = ++mPosition;
+            }
+            for (long slot : slots) {
+                mOut.writeLong(slot);
+            }
+            mPosition += slots.length * 8L;
+            return offset;
+        }
+
+        /**
+         * Pads the file to the next segment, if a record of the given size does not fit in the
+         * current one.
+         *
+         * @return the offset at which the record is to be written
+         */
+        private long align(int size) throws IOException {
+            if (size > (1L << mShift)) {
+                throw new IOException(
+                        "Record of size "
+                                + size
+                                + " is larger than the segment size "
+                                + (1L << mShift));
+            }
+            if (size > 0 && (mPosition >>> mShift) != ((mPosition + size - 1) >>> mShift)) {
+                long next = ((mPosition >>> mShift) + 1) << mShift;
+                while (mPosition < next) {
+                    mOut.write(0);
+                    mPosition++;
+                }
+            }
+            return mPosition;
+        }
+
+        public void close() throws IOException {
+            mOut.close();
+        }
+    }
+
+    /** Compares byte arrays as unsigned bytes, that is the order of the UTF-8 encoded strings. */
+    private static class UnsignedComparator implements Comparator<byte[]> {
+
+        public int compare(byte[] a, byte[] b) {
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                int diff = (a[i] & 0xff) - (b[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return a.length - b.length;
+        }
+    }
+
+    /**
+     * A read only map view of a compiled catalog. Lookups for a LFN do a binary search over the
+     * memory mapped index, while iteration walks the index in sorted order.
+     */
+    static class Index extends AbstractMap<String, Collection<ReplicaCatalogEntry>> {
+
+        private final RandomAccessFile mFile;
+
+        private final MappedByteBuffer[] mSegments;
+
+        private final int mShift;
+
+        private final int mCount;
+
+        private final long mIndexOffset;
+
+        private final UnsignedComparator mComparator;
+
+        Index(File file) throws IOException {
+            mFile = new RandomAccessFile(file, "r");
+            mComparator = new UnsignedComparator();
+            try {
+                long magic = mFile.readLong();
+                int version = mFile.readInt();
+                if (magic != MAGIC || version != VERSION) {
+                    throw new IOException(
+                            "File "
+                                    + file
+                                    + " is not a compiled replica catalog of version "
+                                    + VERSION);
+                }
+                mShift = mFile.readInt();
+                long count = mFile.readLong();
+                if (count > Integer.MAX_VALUE) {
+                    throw new IOException("Too many LFNs in compiled replica catalog " + count);
+                }
+                mCount = (int) count;
+                mIndexOffset = mFile.readLong();
+
+                FileChannel channel = mFile.getChannel();
+                long size = channel.size();
+                long segment = 1L << mShift;
+                mSegments = new MappedByteBuffer[(int) ((size + segment - 1) >>> mShift)];
+                for (int i = 0; i < mSegments.length; i++) {
+                    long start = i * segment;
+                    mSegments[i] =
+                            channel.map(
+                                    FileChannel.MapMode.READ_ONLY,
+                                    start,
+                                    Math.min(segment, size - start));
+                }
+            } catch (IOException e) {
+                mFile.close();
+                throw e;
+            }
+        }
+
+        public int size() {
+            return mCount;
+        }
+
+        public boolean containsKey(Object key) {
+            return this.find(key) >= 0;
+        }
+
+        public Collection<ReplicaCatalogEntry> get(Object key) {
+            int slot = this.find(key);
+            return (slot < 0) ? null : this.readEntries(this.getLong(this.slot(slot) + 8));
+        }
+
+        public Set<Map.Entry<String, Collection<ReplicaCatalogEntry>>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Collection<ReplicaCatalogEntry>>>() {
+                public int size() {
+                    return mCount;
+                }
+
+                public Iterator<Map.Entry<String, Collection<ReplicaCatalogEntry>>> iterator() {
+                    return new Iterator<Map.Entry<String, Collection<ReplicaCatalogEntry>>>() {
+                        private int mNext = 0;
+
+                        public boolean hasNext() {
+                            return mNext < mCount;
+                        }
+
+                        public Map.Entry<String, Collection<ReplicaCatalogEntry>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            long slot = slot(mNext++);
+                            return new AbstractMap.SimpleImmutableEntry(
+                                    readString(getLong(slot)), readEntries(getLong(slot + 8)));
+                        }
+                    };
+                }
+            };
+        }
+
+        /** Unmaps the file. The mapping is released once the buffers are garbage collected. */
+        void close() {
+            try {
+                mFile.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        /**
+         * Does a binary search for a LFN over the index.
+         *
+         * @return the slot for the LFN, else -1
+         */
+        private int find(Object key) {
+            if (!(key instanceof String)) {
+                return -1;
+            }
+            byte[] lfn = ((String) key).getBytes(StandardCharsets.UTF_8);
+            int low = 0;
+            int high = mCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = mComparator.compare(this.readBytes(this.getLong(this.slot(mid))), lfn);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private long slot(int i) {
+            return mIndexOffset + (long) i * SLOT_SIZE;
+        }
+
+        private List<ReplicaCatalogEntry> readEntries(long offset) {
+            int count = this.getInt(offset);
+            List<ReplicaCatalogEntry> result = new ArrayList(count);
+            offset += 4;
+            for (int i = 0; i < count; i++) {
+                ReplicaCatalogEntry rce = new ReplicaCatalogEntry(this.readString(getLong(offset)));
+                int attributes = this.getInt(offset + 8);
+                offset += 12;
+                for (int j = 0; j < attributes; j++) {
+                    rce.addAttribute(
+                            this.readString(getLong(offset)), this.readString(getLong(offset + 8)));
+                    offset += 16;
+                }
+                result.add(rce);
+            }
+            return result;
+        }
+
+        private String readString(long offset) {
+            return new String(this.readBytes(offset), StandardCharsets.UTF_8);
+        }
+
+        private byte[] readBytes(long offset) {
+            ByteBuffer buffer = this.segment(offset).duplicate();
+            int position = this.position(offset);
+            byte[] result = new byte[buffer.getInt(position)];
+            buffer.position(position + 4);
+            buffer.get(result);
+            return result;
+        }
+
+        private int getInt(long offset) {
+            return this.segment(offset).getInt(this.position(offset));
+        }
+
+        private long getLong(long offset) {
+            return this.segment(offset).getLong(this.position(offset));
+        }
+
+        private MappedByteBuffer segment(long offset) {
+            return mSegments[(int) (offset >>> mShift)];
+        }
+
+        private int position(long offset) {
+            return (int) (offset & ((1L << mShift) - 1));
+        }
+    }
+}
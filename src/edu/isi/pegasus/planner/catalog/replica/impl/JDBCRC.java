@@ -1104,7 +1104,7 @@ public class JDBCRC implements ReplicaCatalog {
         // sanity checks
         if (x == null || x.size() == 0) return result;
         if (mConnection == null) throw new RuntimeException(c_error);
-        String query = "";
+        StringBuilder query = new StringBuilder();
 
         try {
             Statement st = mConnection.createStatement();
@@ -1112,13 +1112,14 @@ public class JDBCRC implements ReplicaCatalog {
 
             // check if the lfn already exists
             for (String lfn : lfns) {
-                query +=
-                        query.isEmpty()
-                                ? "SELECT lfn_id, lfn FROM rc_lfn WHERE lfn='" + lfn + "'"
-                                : " OR lfn='" + lfn + "'";
+                query.append(
+                        query.length() == 0
+                                ? "SELECT lfn_id, lfn FROM rc_lfn WHERE lfn='"
+                                : " OR lfn='");
+                query.append(lfn).append("'");
             }
-            if (!query.isEmpty()) {
-                ResultSet rs = st.executeQuery(query);
+            if (query.length() > 0) {
+                ResultSet rs = st.executeQuery(query.toString());
                 Map<String, List<ReplicaCatalogEntry>> ids =
                         new HashMap<String, List<ReplicaCatalogEntry>>();
                 Map<String, String> lfnToID = new HashMap<String, String>();
@@ -1130,7 +1131,7 @@ public class JDBCRC implements ReplicaCatalog {
 
                 // delete previous mappings associated to the lfns
                 st = mConnection.createStatement();
-                query = "";
+                query.setLength(0);
 
                 for (String lfn : lfns) {
                     List<ReplicaCatalogEntry> value = (List<ReplicaCatalogEntry>) x.get(lfn);
@@ -1145,21 +1146,23 @@ public class JDBCRC implements ReplicaCatalog {
                                     tuple.getResourceHandle() == null
                                             ? " IS NULL"
                                             : "='" + quote(tuple.getResourceHandle());
-                            query += query.isEmpty() ? "SELECT lfn_id FROM rc_pfn WHERE " : " OR ";
-                            query +=
-                                    "(lfn_id="
-                                            + lfnToID.get(lfn)
-                                            + " AND pfn='"
-                                            + quote(tuple.getPFN())
-                                            + "' AND site"
-                                            + rh
-                                            + "')";
+                            query.append(
+                                    query.length() == 0
+                                            ? "SELECT lfn_id FROM rc_pfn WHERE "
+                                            : " OR ");
+                            query.append("(lfn_id=")
+                                    .append(lfnToID.get(lfn))
+                                    .append(" AND pfn='")
+                                    .append(quote(tuple.getPFN()))
+                                    .append("' AND site")
+                                    .append(rh)
+                                    .append("')");
                         }
                     }
                 }
                 List<String> lfnsToDelete = new ArrayList<String>();
-                if (!query.isEmpty()) {
-                    rs = st.executeQuery(query);
+                if (query.length() > 0) {
+                    rs = st.executeQuery(query.toString());
                     while (rs.next()) {
                         lfnsToDelete.add(rs.getString(1));
                     }
@@ -1167,17 +1170,17 @@ public class JDBCRC implements ReplicaCatalog {
 
                     // check meta table
                     st = mConnection.createStatement();
-                    query = "";
+                    query.setLength(0);
 
                     for (String lfnID : lfnsToDelete) {
-                        query +=
-                                query.isEmpty()
+                        query.append(
+                                query.length() == 0
                                         ? "SELECT lfn_id, `key`, value FROM rc_meta WHERE "
-                                        : " OR ";
-                        query += "lfn_id=" + lfnID;
+                                        : " OR ");
+                        query.append("lfn_id=").append(lfnID);
                     }
-                    if (!query.isEmpty()) {
-                        rs = st.executeQuery(query);
+                    if (query.length() > 0) {
+                        rs = st.executeQuery(query.toString());
                         while (rs.next()) {
                             String id = rs.getString(1);
                             String key = rs.getString(2);
@@ -1201,17 +1204,43 @@ public class JDBCRC implements ReplicaCatalog {
                 }
 
                 // delete LFNs
-                query = "";
+                query.setLength(0);
                 for (String lfnID : lfnsToDelete) {
-                    query += query.isEmpty() ? "DELETE FROM rc_lfn WHERE " : " OR ";
-                    query += "lfn_id=" + lfnID;
+                    query.append(query.length() == 0 ? "DELETE FROM rc_lfn WHERE " : " OR ");
+                    query.append("lfn_id=").append(lfnID);
                 }
-                if (!query.isEmpty()) {
-                    st.executeUpdate(query);
+                if (query.length() > 0) {
+                    st.executeUpdate(query.toString());
                 }
             }
+            result = this.insertInTransaction(st, lfns, x);
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Unable to tell database: " + e.getMessage());
+        }
+
+        // done
+        return result;
+    }
+
+    /**
+     * Inserts the LFNs, and their PFNs and attributes as JDBC batches, in a single transaction. The
+     * transaction is rolled back if any of the batches fail, so that a failed bulk insert does not
+     * leave partial mappings behind.
+     *
+     * @param st the statement to use for the LFN batch
+     * @param lfns the LFNs to insert
+     * @param x is a map from logical filename string to list of replica catalog entries.
+     * @return the number of insertions.
+     * @throws SQLException in case of error while inserting
+     */
+    private int insertInTransaction(Statement st, List<String> lfns, Map x) throws SQLException {
+        boolean autoCommitWasOn = mConnection.getAutoCommit();
+        if (autoCommitWasOn) {
             mConnection.setAutoCommit(false);
+        }
 
+        try {
             // insert LFNs
             int countInserts = 0;
             int totalInserts = 0;
@@ -1284,15 +1313,25 @@ public class JDBCRC implements ReplicaCatalog {
                 index++;
             }
             st.executeBatch();
-            result = totalInserts;
-            mConnection.setAutoCommit(true);
-
+            mConnection.commit();
+            return totalInserts;
         } catch (SQLException e) {
-            throw new RuntimeException("Unable to tell database: " + e.getMessage());
+            try {
+                mConnection.rollback();
+            } catch (SQLException e2) {
+                // ignore rollback problems
+            }
+            throw e;
+        } finally {
+            // restore original auto-commit state
+            if (autoCommitWasOn) {
+                try {
+                    mConnection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    // ignore
+                }
+            }
         }
-
-        // done
-        return result;
     }
 
     /**
@@ -0,0 +1,531 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A replica catalog that wraps another replica catalog implementation, and answers the lookups for
+ * LFNs that are not in the wrapped catalog without querying it. Most of the LFNs looked up by the
+ * planner are intermediate files of the workflow, that are not in any catalog. For database backed
+ * catalogs, each such lookup is otherwise a round trip to the database.
+ *
+ * <p>On connect, the LFNs in the wrapped catalog are listed once, and a bloom filter is built over
+ * them. A LFN not in the filter is guaranteed not to be in the catalog. A LFN in the filter is
+ * looked up in the wrapped catalog, which happens for the LFNs in the catalog, and for a fraction
+ * of the other LFNs determined by the false positive probability of the filter. LFNs inserted
+ * through this catalog are added to the filter. LFNs deleted are not removed from the filter, and
+ * result in a lookup in the wrapped catalog as before.
+ *
+ * <p>The catalog is not loaded directly, but by the replica factory if the negative cache is
+ * enabled for the replica catalog
+ *
+ * <pre>
+ * pegasus.catalog.replica.negative.cache      true
+ * pegasus.catalog.replica.negative.cache.fpp  0.01
+ * </pre>
+ *
+ * Only catalogs where the LFNs listed are the LFNs matched can be wrapped. Hence, the Regex and
+ * YAML implementations that allow for regular expressions as LFNs are never wrapped. For the MRC
+ * implementation, the negative cache needs to be enabled for the individual catalogs.
+ */
+public class NegativeLookupCache implements ReplicaCatalog {
+
+    /** The default false positive probability for the bloom filter. */
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    /** The catalog being wrapped. */
+    private final ReplicaCatalog mCatalog;
+
+    /** The handle to the logging manager. */
+    private final LogManager mLogger;
+
+    /** The bloom filter over the LFNs in the wrapped catalog. */
+    private BloomFilter<CharSequence> mFilter;
+
+    /** The number of LFNs looked up. */
+    private final AtomicLong mLookups;
+
+    /** The number of LFNs looked up, that were answered without querying the wrapped catalog. */
+    private final AtomicLong mFilteredLookups;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param catalog the connected replica catalog to wrap.
+     * @param logger the logger to use.
+     */
+    public NegativeLookupCache(ReplicaCatalog catalog, LogManager logger) {
+        mCatalog = catalog;
+        mLogger = logger;
+        mLookups = new AtomicLong(0);
+        mFilteredLookups = new AtomicLong(0);
+    }
+
+    /**
+     * Builds the bloom filter over the LFNs in the wrapped catalog. The wrapped catalog is already
+     * connected, and the only property looked at is the false positive probability of the filter.
+     *
+     * @param props contains all necessary data to establish the link.
+     * @return true if connected now, or false to indicate a failure.
+     */
+    public boolean connect(Properties props) {
+        if (mCatalog == null || mCatalog.isClosed()) {
+            return false;
+        }
+        double fpp = DEFAULT_FALSE_POSITIVE_PROBABILITY;
+        String value = props.getProperty(ReplicaCatalog.NEGATIVE_CACHE_FPP_KEY);
+        if (value != null) {
+            try {
+                fpp = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                fpp = -1;
+            }
+            if (!(fpp > 0 && fpp < 1)) {
+                throw new IllegalArgumentException(
+                        "Invalid false positive probability for the replica catalog negative cache "
+                                + value);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        Set lfns = mCatalog.list();
+        mFilter =
+                BloomFilter.create(
+                        Funnels.stringFunnel(Charsets.UTF_8), Math.max(lfns.size(), 1), fpp);
+        for (Iterator it = lfns.iterator(); it.hasNext(); ) {
+            mFilter.put((String) it.next());
+        }
+        mLogger.log(
+                "[Negative Lookup Cache] Built bloom filter over "
+                        + lfns.size()
+                        + " LFNs with false positive probability "
+                        + fpp
+                        + " in "
+                        + (System.currentTimeMillis() - start)
+                        + " ms",
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        return true;
+    }
+
+    /** Explicitely free resources before the garbage collection hits. */
+    public void close() {
+        mLogger.log(
+                "[Negative Lookup Cache] "
+                        + mFilteredLookups.get()
+                        + " of "
+                        + mLookups.get()
+                        + " LFN lookups answered without querying the replica catalog",
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        mCatalog.close();
+    }
+
+    /**
+     * Predicate to check, if the connection with the catalog's implementation is still active.
+     *
+     * @return true, if the implementation is disassociated, false otherwise.
+     */
+    public boolean isClosed() {
+        return mCatalog.isClosed();
+    }
+
+    /**
+     * Returns the wrapped replica catalog.
+     *
+     * @return the wrapped catalog
+     */
+    public ReplicaCatalog getWrappedCatalog() {
+        return mCatalog;
+    }
+
+    /**
+     * Returns the number of LFNs looked up so far.
+     *
+     * @return the number of lookups
+     */
+    public long getLookups() {
+        return mLookups.get();
+    }
+
+    /**
+     * Returns the number of LFNs looked up so far, that were answered without querying the wrapped
+     * catalog.
+     *
+     * @return the number of lookups saved
+     */
+    public long getFilteredLookups() {
+        return mFilteredLookups.get();
+    }
+
+    /**
+     * Retrieves the entry for a given filename and resource handle from the replica catalog.
+     *
+     * @param lfn is the logical filename to obtain information for.
+     * @param handle is the resource handle to obtain entries for.
+     * @return the (first) matching physical filename, or <code>null</code> if no match was found.
+     */
+    public String lookup(String lfn, String handle) {
+        return this.mightContain(lfn) ? mCatalog.lookup(lfn, handle) : null;
+    }
+
+    /**
+     * Retrieves all entries for a given LFN from the replica catalog.
+     *
+     * @param lfn is the logical filename to obtain information for.
+     * @return a collection of replica catalog entries
+     */
+    public Collection lookup(String lfn) {
+        return this.mightContain(lfn) ? mCatalog.lookup(lfn) : new ArrayList();
+    }
+
+    /**
+     * Retrieves all entries for a given LFN from the replica catalog.
+     *
+     * @param lfn is the logical filename to obtain information for.
+     * @return a set of PFN strings
+     */
+    public Set lookupNoAttributes(String lfn) {
+        return this.mightContain(lfn) ? mCatalog.lookupNoAttributes(lfn) : new HashSet();
+    }
+
+    /**
+     * Retrieves multiple entries for a given logical filename. Only the LFNs that might be in the
+     * wrapped catalog are looked up in it.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @return a map indexed by the LFN. Each value is a collection of replica catalog entries for
+     *     the LFN.
+     */
+    public Map lookup(Set lfns) {
+        Set candidates = new HashSet();
+        Map result = this.filter(lfns, candidates, false);
+        if (!candidates.isEmpty()) {
+            result.putAll(mCatalog.lookup(candidates));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves multiple entries for a given logical filename. Only the LFNs that might be in the
+     * wrapped catalog are looked up in it.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @return a map indexed by the LFN. Each value is a set of PFN strings.
+     */
+    public Map lookupNoAttributes(Set lfns) {
+        Set candidates = new HashSet();
+        Map result = this.filter(lfns, candidates, true);
+        if (!candidates.isEmpty()) {
+            result.putAll(mCatalog.lookupNoAttributes(candidates));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves multiple entries for a given logical filename and resource handle. Only the LFNs
+     * that might be in the wrapped catalog are looked up in it.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @param handle is the resource handle, restricting the LFNs.
+     * @return a map indexed by the LFN. Each value is a collection of replica catalog entries.
+     */
+    public Map lookup(Set lfns, String handle) {
+        Set candidates = new HashSet();
+        Map result = this.filter(lfns, candidates, false);
+        if (!candidates.isEmpty()) {
+            result.putAll(mCatalog.lookup(candidates, handle));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves multiple entries for a given logical filename and resource handle. Only the LFNs
+     * that might be in the wrapped catalog are looked up in it.
+     *
+     * @param lfns is a set of logical filename strings to look up.
+     * @param handle is the resource handle, restricting the LFNs.
+     * @return a map indexed by the LFN. Each value is a set of physical filenames.
+     */
+    public Map lookupNoAttributes(Set lfns, String handle) {
+        Set candidates = new HashSet();
+        Map result = this.filter(lfns, candidates, true);
+        if (!candidates.isEmpty()) {
+            result.putAll(mCatalog.lookupNoAttributes(candidates, handle));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves multiple entries for a given logical filename, matching the constraints. The
+     * constraints may match LFNs in any way, and hence are always passed to the wrapped catalog.
+     *
+     * @param constraints is mapping of keys 'lfn', 'pfn', or any attribute name, e.g. the resource
+     *     handle 'site', to a string that has some meaning to the implementing system.
+     * @return a map indexed by the LFN. Each value is a collection of replica catalog entries.
+     */
+    public Map lookup(Map constraints) {
+        return mCatalog.lookup(constraints);
+    }
+
+    /**
+     * Lists all logical filenames in the catalog.
+     *
+     * @return a set of all logical filenames known to the catalog.
+     */
+    public Set list() {
+        return mCatalog.list();
+    }
+
+    /**
+     * Lists a subset of all logical filenames in the catalog.
+     *
+     * @param constraint is a constraint for the logical filename only.
+     * @return a set of logical filenames that match.
+     */
+    public Set list(String constraint) {
+        return mCatalog.list(constraint);
+    }
+
+    /**
+     * Inserts a new mapping into the replica catalog, and adds the LFN to the filter.
+     *
+     * @param lfn is the logical filename under which to book the entry.
+     * @param tuple is the physical filename and associated PFN attributes.
+     * @return number of insertions, should always be 1. On failure, throw an exception.
+     */
+    public int insert(String lfn, ReplicaCatalogEntry tuple) {
+        this.put(lfn);
+        return mCatalog.insert(lfn, tuple);
+    }
+
+    /**
+     * Inserts a new mapping into the replica catalog, and adds the LFN to the filter.
+     *
+     * @param lfn is the logical filename under which to book the entry.
+     * @param pfn is the physical filename associated with it.
+     * @param handle is a resource handle where the PFN resides.
+     * @return number of insertions, should always be 1. On failure, throw an exception.
+     */
+    public int insert(String lfn, String pfn, String handle) {
+        this.put(lfn);
+        return mCatalog.insert(lfn, pfn, handle);
+    }
+
+    /**
+     * Inserts multiple mappings into the replica catalog, and adds the LFNs to the filter.
+     *
+     * @param x is a map from logical filename string to list of replica catalog entries.
+     * @return the number of insertions.
+     */
+    public int insert(Map x) {
+        for (Iterator it = x.keySet().iterator(); it.hasNext(); ) {
+            this.put((String) it.next());
+        }
+        return mCatalog.insert(x);
+    }
+
+    /**
+     * Deletes multiple mappings into the replica catalog.
+     *
+     * @param x is a map from logical filename string to list of replica catalog entries.
+     * @param matchAttributes whether mapping should be deleted only if all attributes match.
+     * @return the number of deletions.
+     */
+    public int delete(Map<String, Collection<ReplicaCatalogEntry>> x, boolean matchAttributes) {
+        return mCatalog.delete(x, matchAttributes);
+    }
+
+    /**
+     * Deletes a specific mapping from the replica catalog.
+     *
+     * @param lfn is the logical filename in the tuple.
+     * @param pfn is the physical filename in the tuple.
+     * @return the number of removed entries.
+     */
+    public int delete(String lfn, String pfn) {
+        return mCatalog.delete(lfn, pfn);
+    }
+
+    /**
+     * Deletes a very specific mapping from the replica catalog.
+     *
+     * @param lfn is the logical directory in the tuple.
+     * @param tuple is all PFN attributes that are required to match.
+     * @return the number of removed entries.
+     */
+    public int delete(String lfn, ReplicaCatalogEntry tuple) {
+        return mCatalog.delete(lfn, tuple);
+    }
+
+    /**
+     * Deletes all PFN entries for a given LFN from the replica catalog where the PFN attribute is
+     * found, and matches exactly the object value.
+     *
+     * @param lfn is the logical filename to look for.
+     * @param name is the PFN attribute name to look for.
+     * @param value is an exact match of the attribute value to match.
+     * @return the number of removed entries.
+     */
+    public int delete(String lfn, String name, Object value) {
+        return mCatalog.delete(lfn, name, value);
+    }
+
+    /**
+     * Deletes all PFN entries for a given LFN from the replica catalog where the resource handle is
+     * found.
+     *
+     * @param lfn is the logical filename to look for.
+     * @param handle is the resource handle
+     * @return the number of entries removed.
+     */
+    public int deleteByResource(String lfn, String handle) {
+        return mCatalog.deleteByResource(lfn, handle);
+    }
+
+    /**
+     * Removes all mappings for an LFN from the replica catalog.
+     *
+     * @param lfn is the logical filename to remove all mappings for.
+     * @return the number of removed entries.
+     */
+    public int remove(String lfn) {
+        return mCatalog.remove(lfn);
+    }
+
+    /**
+     * Removes all mappings for a set of LFNs.
+     *
+     * @param lfns is a set of logical filename to remove all mappings for.
+     * @return the number of removed entries.
+     */
+    public int remove(Set lfns) {
+        return mCatalog.remove(lfns);
+    }
+
+    /**
+     * Removes all entries from the replica catalog where the PFN attribute is found, and matches
+     * exactly the object value.
+     *
+     * @param name is the PFN attribute name to look for.
+     * @param value is an exact match of the attribute value to match.
+     * @return the number of removed entries.
+     */
+    public int removeByAttribute(String name, Object value) {
+        return mCatalog.removeByAttribute(name, value);
+    }
+
+    /**
+     * Removes all entries associated with a particular resource handle.
+     *
+     * @param handle is the site handle to remove all entries for.
+     * @return the number of removed entries.
+     */
+    public int removeByAttribute(String handle) {
+        return mCatalog.removeByAttribute(handle);
+    }
+
+    /**
+     * Removes everything from the wrapped catalog.
+     *
+     * @return the number of removed entries.
+     */
+    public int clear() {
+        return mCatalog.clear();
+    }
+
+    /**
+     * Returns the file source of the wrapped catalog.
+     *
+     * @return the file source if it exists, else null
+     */
+    public File getFileSource() {
+        return mCatalog.getFileSource();
+    }
+
+    /**
+     * Set the catalog to read-only mode.
+     *
+     * @param readonly whether the catalog is read-only
+     */
+    public void setReadOnly(boolean readonly) {
+        mCatalog.setReadOnly(readonly);
+    }
+
+    /**
+     * Returns whether a LFN might be in the wrapped catalog, and updates the lookup counts.
+     *
+     * @param lfn the LFN
+     * @return false if the LFN is guaranteed not to be in the catalog, else true
+     */
+    private boolean mightContain(String lfn) {
+        mLookups.incrementAndGet();
+        if (lfn == null || mFilter.mightContain(lfn)) {
+            return true;
+        }
+        mFilteredLookups.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Splits the LFNs to be looked up into the ones that might be in the wrapped catalog, and the
+     * ones that are not. The ones that are not are mapped to an empty collection, as the backend
+     * implementations do for LFNs that they don't have entries for.
+     *
+     * @param lfns the LFNs to be looked up
+     * @param candidates the set to which the LFNs that might be in the catalog are added
+     * @param noAttributes whether the values are sets of PFN strings
+     * @return a map indexed by the LFNs not in the catalog
+     */
+    private Map filter(Set lfns, Set candidates, boolean noAttributes) {
+        Map result = new HashMap();
+        if (lfns == null) {
+            return result;
+        }
+        for (Iterator it = lfns.iterator(); it.hasNext(); ) {
+            String lfn = (String) it.next();
+            if (this.mightContain(lfn)) {
+                candidates.add(lfn);
+            } else {
+                result.put(lfn, noAttributes ? new HashSet() : new ArrayList());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a LFN to the filter.
+     *
+     * @param lfn the LFN
+     */
+    private synchronized void put(String lfn) {
+        if (lfn != null) {
+            mFilter.put(lfn);
+        }
+    }
+}
@@ -19,7 +19,9 @@
 package edu.isi.pegasus.planner.catalog.site.classes;
 
 import edu.isi.pegasus.planner.catalog.site.classes.FileServerType.OPERATION;
+import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.common.PegRandom;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -135,6 +137,29 @@ public abstract class DirectoryLayout extends AbstractSiteData {
          */
     }
 
+    /**
+     * Selects a file server matching an operation type using the file server selector passed. If
+     * not found matching the operation type it defaults back to the all operation server.
+     *
+     * @param operation the operation for which the file server is required
+     * @param selector the selector to use for selecting amongst the matching file servers
+     * @param job the job for which the file server is required, can be null
+     * @param lfn the lfn of the file for which the file server is required, can be null
+     * @return FileServer else null
+     */
+    public FileServer selectFileServer(
+            FileServer.OPERATION operation, FileServerSelector selector, Job job, String lfn) {
+        List<FileServer> servers = getFileServers(operation);
+
+        if (servers == null || servers.isEmpty()) {
+            servers = getFileServers(FileServer.OPERATION.all);
+        }
+
+        return (servers == null || servers.isEmpty())
+                ? null
+                : selector.selectFileServer(servers, job, lfn);
+    }
+
     /**
      * Selects all file servers and returns it matching an operation type.
      *
@@ -35,11 +35,13 @@ import edu.isi.pegasus.planner.catalog.classes.VDSSysInfo2NMI;
 import edu.isi.pegasus.planner.catalog.site.classes.GridGateway.JOB_TYPE;
 import edu.isi.pegasus.planner.catalog.transformation.classes.NMI2VDSSysInfo;
 import edu.isi.pegasus.planner.catalog.transformation.classes.VDSSysInfo;
+import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.Profile;
 import edu.isi.pegasus.planner.common.PegRandom;
 import edu.isi.pegasus.planner.common.PegasusJsonSerializer;
 import edu.isi.pegasus.planner.namespace.Namespace;
 import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
@@ -551,6 +553,31 @@ public class SiteCatalogEntry extends AbstractSiteData {
         return dir.selectFileServer(operation);
     }
 
+    /**
+     * A convenience method to select the FileServer for the shared scratch space on the HeadNode,
+     * using the file server selector passed.
+     *
+     * <p>For get and put operations, the results default back to searching for an ALL operation
+     * server.
+     *
+     * @param operation the operation for which the file server is required
+     * @param selector the selector to use for selecting amongst the matching file servers
+     * @param job the job for which the file server is required, can be null
+     * @param lfn the lfn of the file for which the file server is required, can be null
+     * @return FileServer for the shared scratch space , else null
+     */
+    public FileServer selectHeadNodeScratchSharedFileServer(
+            FileServer.OPERATION operation, FileServerSelector selector, Job job, String lfn) {
+        Directory dir = this.getDirectory(Directory.TYPE.shared_scratch);
+
+        // sanity check
+        if (dir == null) {
+            return null;
+        }
+
+        return dir.selectFileServer(operation, selector, job, lfn);
+    }
+
     /**
      * A convenience method that selects a file server for staging the data out to a site. It
      * returns the file server to which the generated data is staged out / published.
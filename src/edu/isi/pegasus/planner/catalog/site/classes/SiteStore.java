@@ -39,6 +39,8 @@ import edu.isi.pegasus.planner.common.PegasusJsonSerializer;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.mapper.OutputMapperFactory;
 import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
+import edu.isi.pegasus.planner.selector.fileserver.FileServerSelectorFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
@@ -84,6 +86,12 @@ public class SiteStore extends AbstractSiteData {
      */
     protected boolean mDeepStorageStructure;
 
+    /**
+     * The selector for the file servers of the work directories, loaded when the store is set up
+     * for use by the planner.
+     */
+    private FileServerSelector mFileServerSelector;
+
     /** The default constructor. */
     public SiteStore() {
         initialize();
@@ -106,7 +114,7 @@ public class SiteStore extends AbstractSiteData {
         mWorkDir = properties.getExecDirectory();
         mDeepStorageStructure = properties.useDeepStorageDirectoryStructure();
         // ||hashedOutputMapperUsed( properties );
-
+        mFileServerSelector = FileServerSelectorFactory.loadInstance(properties);
     }
 
     /**
@@ -328,7 +336,11 @@ public class SiteStore extends AbstractSiteData {
         }
 
         // select a file server
-        FileServer fs = site.selectHeadNodeScratchSharedFileServer(operation);
+        FileServer fs =
+                (mFileServerSelector == null)
+                        ? site.selectHeadNodeScratchSharedFileServer(operation)
+                        : site.selectHeadNodeScratchSharedFileServer(
+                                operation, mFileServerSelector, null, null);
 
         return this.getExternalWorkDirectoryURL(fs, siteHandle);
     }
@@ -61,7 +61,7 @@ public class Container implements Cloneable {
     /** Singularity is picky about extensions as it uses that for loading the container image */
     protected static Set<String> mSupportedSingularityExtensions = null;
 
-    protected static Set<String> getsupportedSingularityExtensions() {
+    protected static synchronized Set<String> getsupportedSingularityExtensions() {
         if (mSupportedSingularityExtensions == null) {
             // from http://singularity.lbl.gov/user-guide#other-container-formats-supported
             mSupportedSingularityExtensions = new HashSet<String>();
@@ -451,6 +451,17 @@ public class Container implements Cloneable {
         return has;
     }
 
+    /**
+     * Returns the checksum associated with the container image.
+     *
+     * @return the checksum value, else null if not specified
+     */
+    public String getCheckSum() {
+        Profiles p = this.getAllProfiles();
+        Metadata m = (Metadata) p.get(Profiles.NAMESPACES.metadata);
+        return (m == null) ? null : (String) m.get(Metadata.CHECKSUM_VALUE_KEY);
+    }
+
     /** Sets the bypass flag denoting the file should be bypassed */
     public void setForBypassStaging() {
         mBypassStaging = true;
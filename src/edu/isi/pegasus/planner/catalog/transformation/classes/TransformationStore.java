@@ -422,6 +422,23 @@ public class TransformationStore {
         return mTCStore.isEmpty();
     }
 
+    /**
+     * Returns a copy of the store, with clones of the entries and the containers.
+     *
+     * @return the copy
+     */
+    public Object clone() {
+        TransformationStore result = new TransformationStore();
+        result.setVersion(this.getVersion());
+        for (Container c : this.getAllContainers()) {
+            result.addContainer((Container) c.clone());
+        }
+        for (TransformationCatalogEntry entry : this.getAllEntries()) {
+            result.addEntry((TransformationCatalogEntry) entry.clone());
+        }
+        return result;
+    }
+
     /**
      * Custom deserializer for YAML representation of TransformationCatalog
      *
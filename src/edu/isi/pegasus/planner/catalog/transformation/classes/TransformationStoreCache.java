@@ -0,0 +1,101 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.transformation.classes;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches the transformation stores parsed from transformation catalog files, so that the planners
+ * for the sub workflows planned in process parse a file only once. The planner updates the store of
+ * the catalog it loads, and hence copies of the stores are cached and handed out. A store is handed
+ * out only if the file has not been modified since it was parsed.
+ */
+public class TransformationStoreCache {
+
+    /** The cached stores indexed by the parser and the path to the file. */
+    private final Map<String, CachedStore> mStores;
+
+    /** The default constructor. */
+    public TransformationStoreCache() {
+        mStores = new HashMap();
+    }
+
+    /**
+     * Returns a copy of the store parsed from a file.
+     *
+     * @param file the transformation catalog file
+     * @param parser identifies the parser and the options it was invoked with
+     * @return the copy, else null if the file has not been parsed or has been modified since
+     */
+    public TransformationStore get(File file, String parser) {
+        CachedStore cached;
+        synchronized (mStores) {
+            cached = mStores.get(key(file, parser));
+        }
+        if (cached == null
+                || cached.mLastModified != file.lastModified()
+                || cached.mLength != file.length()) {
+            return null;
+        }
+        return (TransformationStore) cached.mStore.clone();
+    }
+
+    /**
+     * Caches a copy of the store parsed from a file.
+     *
+     * @param file the transformation catalog file
+     * @param parser identifies the parser and the options it was invoked with
+     * @param store the store parsed
+     */
+    public void put(File file, String parser, TransformationStore store) {
+        CachedStore cached =
+                new CachedStore(
+                        (TransformationStore) store.clone(), file.lastModified(), file.length());
+        synchronized (mStores) {
+            mStores.put(key(file, parser), cached);
+        }
+    }
+
+    /**
+     * Returns the key for the store parsed from a file.
+     *
+     * @param file the transformation catalog file
+     * @param parser identifies the parser and the options it was invoked with
+     * @return the key
+     */
+    private String key(File file, String parser) {
+        return parser + ":" + file.getAbsolutePath();
+    }
+
+    /** A store along with the state of the file it was parsed from. */
+    private static class CachedStore {
+
+        /** The store */
+        private final TransformationStore mStore;
+
+        /** The modification time of the file */
+        private final long mLastModified;
+
+        /** The length of the file */
+        private final long mLength;
+
+        CachedStore(TransformationStore store, long lastModified, long length) {
+            mStore = store;
+            mLastModified = lastModified;
+            mLength = length;
+        }
+    }
+}
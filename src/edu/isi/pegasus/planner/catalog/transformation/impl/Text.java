@@ -21,6 +21,7 @@ import edu.isi.pegasus.planner.catalog.classes.SysInfo;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
 import edu.isi.pegasus.planner.catalog.transformation.classes.TCType;
 import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStore;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStoreCache;
 import edu.isi.pegasus.planner.catalog.transformation.client.TCFormatUtility;
 import edu.isi.pegasus.planner.classes.Notifications;
 import edu.isi.pegasus.planner.classes.PegasusBag;
@@ -126,6 +127,11 @@ public class Text extends Abstract implements TransformationCatalog {
     /** Boolean indicating whether to modify the file URL or not */
     private boolean modifyFileURL = true;
 
+    /**
+     * The cache of stores shared by the planners of sub workflows planned in process, can be null
+     */
+    private TransformationStoreCache mStoreCache;
+
     /** Default constructor. */
     public Text() {}
 
@@ -140,6 +146,7 @@ public class Text extends Abstract implements TransformationCatalog {
         mLogger = bag.getLogger();
         mFlushOnClose = false;
         modifyFileURL = true;
+        mStoreCache = (TransformationStoreCache) bag.get(PegasusBag.TRANSFORMATION_STORE_CACHE);
         mLogger.log(
                 "Transformation Catalog Type used " + this.getDescription(),
                 LogManager.CONFIG_MESSAGE_LEVEL);
@@ -168,10 +175,21 @@ public class Text extends Abstract implements TransformationCatalog {
                         Boolean.parse(
                                 props.getProperty(TransformationCatalog.VARIABLE_EXPANSION_KEY),
                                 true);
-                mTextParser =
-                        new TransformationCatalogTextParser(
-                                new FileReader(f), mLogger, variableExpansion);
-                mTCStore = mTextParser.parse(modifyFileURL);
+                String parser = "Text:" + variableExpansion + ":" + modifyFileURL;
+                mTCStore = (mStoreCache == null) ? null : mStoreCache.get(f, parser);
+                if (mTCStore == null) {
+                    mTextParser =
+                            new TransformationCatalogTextParser(
+                                    new FileReader(f), mLogger, variableExpansion);
+                    mTCStore = mTextParser.parse(modifyFileURL);
+                    if (mStoreCache != null) {
+                        mStoreCache.put(f, parser, mTCStore);
+                    }
+                } else {
+                    mLogger.log(
+                            "Reusing transformations parsed from " + mTCFile,
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                }
             } else {
                 // empty TCStore
                 mTCStore = new TransformationStore();
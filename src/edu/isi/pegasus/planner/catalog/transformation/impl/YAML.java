@@ -26,6 +26,7 @@ import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry
 import edu.isi.pegasus.planner.catalog.transformation.classes.Container;
 import edu.isi.pegasus.planner.catalog.transformation.classes.TCType;
 import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStore;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStoreCache;
 import edu.isi.pegasus.planner.classes.Notifications;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.Profile;
@@ -133,6 +134,11 @@ public class YAML extends Abstract implements TransformationCatalog {
     /** Boolean indicating whether to modify the file URL or not */
     private boolean modifyFileURL = true;
 
+    /**
+     * The cache of stores shared by the planners of sub workflows planned in process, can be null
+     */
+    private TransformationStoreCache mStoreCache;
+
     private PegasusBag mBag;
 
     /** Default constructor. */
@@ -150,6 +156,7 @@ public class YAML extends Abstract implements TransformationCatalog {
         mLogger = bag.getLogger();
         mFlushOnClose = false;
         modifyFileURL = true;
+        mStoreCache = (TransformationStoreCache) bag.get(PegasusBag.TRANSFORMATION_STORE_CACHE);
         mLogger.log(
                 "Transformation Catalog Type used " + this.getDescription(),
                 LogManager.CONFIG_MESSAGE_LEVEL);
@@ -174,9 +181,20 @@ public class YAML extends Abstract implements TransformationCatalog {
             java.io.File f = new java.io.File(mTCFile);
 
             if (f.exists() && f.length() > 0) {
-                File schemaDir = this.mProps.getSchemaDir();
-                yamlParser = new TransformationCatalogYAMLParser(mBag, schemaDir);
-                mTCStore = yamlParser.parse(mTCFile, modifyFileURL);
+                String parser = "YAML:" + modifyFileURL;
+                mTCStore = (mStoreCache == null) ? null : mStoreCache.get(f, parser);
+                if (mTCStore == null) {
+                    File schemaDir = this.mProps.getSchemaDir();
+                    yamlParser = new TransformationCatalogYAMLParser(mBag, schemaDir);
+                    mTCStore = yamlParser.parse(mTCFile, modifyFileURL);
+                    if (mStoreCache != null) {
+                        mStoreCache.put(f, parser, mTCStore);
+                    }
+                } else {
+                    mLogger.log(
+                            "Reusing transformations parsed from " + mTCFile,
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                }
             } else {
                 // empty TCStore
                 mTCStore = new TransformationStore();
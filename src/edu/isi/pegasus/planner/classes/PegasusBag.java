@@ -17,10 +17,13 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.catalog.transformation.Mapper;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStoreCache;
+import edu.isi.pegasus.planner.client.SubWorkflowPlanner;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.mapper.StagingMapper;
 import edu.isi.pegasus.planner.mapper.SubmitMapper;
 import edu.isi.pegasus.planner.partitioner.graph.Bag;
+import edu.isi.pegasus.planner.refiner.ReplicaCatalogBridge;
 import java.io.File;
 import java.util.Map;
 
@@ -38,7 +41,8 @@ public class PegasusBag implements Bag, Cloneable {
         "pegasus-properties", "planner-options", "replica-catalog", "site-catalog",
         "transformation-catalog", "transformation-mapper", "pegasus-logger", "site-store",
         "planner-cache", "worker-package-map", "uses-pmc", "planner-metrics",
-        "submit-mapper", "staging-mapper", "planner-directory"
+        "submit-mapper", "staging-mapper", "planner-directory", "subworkflow-planner",
+        "replica-catalog-bridge", "transformation-store-cache"
     };
 
     /** The constant to be passed to the accessor functions to get or set the PegasusProperties. */
@@ -125,6 +129,24 @@ public class PegasusBag implements Bag, Cloneable {
     /** The directory from which the planner is invoked */
     public static final Integer PLANNER_DIRECTORY = 14;
 
+    /**
+     * The handle to the planner that plans the sub workflows in the same JVM, if sub workflows are
+     * to be planned in process.
+     */
+    public static final Integer SUBWORKFLOW_PLANNER = 15;
+
+    /**
+     * The handle to the bridge to the replica catalogs, that is used to look up the locations of
+     * the input files of the workflow.
+     */
+    public static final Integer REPLICA_CATALOG_BRIDGE = 16;
+
+    /**
+     * The handle to the cache of transformation stores parsed from transformation catalog files,
+     * that is shared by the planners of the sub workflows planned in process.
+     */
+    public static final Integer TRANSFORMATION_STORE_CACHE = 17;
+
     /** The handle to the <code>PegasusProperties</code>. */
     private PegasusProperties mProps;
 
@@ -176,6 +198,15 @@ public class PegasusBag implements Bag, Cloneable {
     /** the directory from which the planner is invoked */
     private File mPlannerDirectory;
 
+    /** the planner for planning sub workflows in process */
+    private SubWorkflowPlanner mSubWorkflowPlanner;
+
+    /** the bridge to the replica catalogs */
+    private ReplicaCatalogBridge mRCBridge;
+
+    /** the cache of transformation stores parsed from transformation catalog files */
+    private TransformationStoreCache mTransformationStoreCache;
+
     /** The default constructor. */
     public PegasusBag() {
         // by default uses PMC is set to false
@@ -277,6 +308,24 @@ public class PegasusBag implements Bag, Cloneable {
                 else valid = false;
                 break;
 
+            case 15: // Sub Workflow Planner
+                if (value != null && value instanceof SubWorkflowPlanner)
+                    mSubWorkflowPlanner = (SubWorkflowPlanner) value;
+                else valid = false;
+                break;
+
+            case 16: // Replica Catalog Bridge
+                if (value != null && value instanceof ReplicaCatalogBridge)
+                    mRCBridge = (ReplicaCatalogBridge) value;
+                else valid = false;
+                break;
+
+            case 17: // Transformation Store Cache
+                if (value != null && value instanceof TransformationStoreCache)
+                    mTransformationStoreCache = (TransformationStoreCache) value;
+                else valid = false;
+                break;
+
             default:
                 throw new RuntimeException(
                         " Wrong Pegasus Bag key. Please use one of the predefined Integer key types");
@@ -367,6 +416,15 @@ public class PegasusBag implements Bag, Cloneable {
             case 14: // Staging Mapper
                 return this.mPlannerDirectory;
 
+            case 15: // Sub Workflow Planner
+                return this.mSubWorkflowPlanner;
+
+            case 16: // Replica Catalog Bridge
+                return this.mRCBridge;
+
+            case 17: // Transformation Store Cache
+                return this.mTransformationStoreCache;
+
             default:
                 throw new RuntimeException(
                         " Wrong Pegasus Bag key. Please use one of the predefined Integer key types");
@@ -500,6 +558,15 @@ public class PegasusBag implements Bag, Cloneable {
         return (File) get(PegasusBag.PLANNER_DIRECTORY);
     }
 
+    /**
+     * A convenience method to get the bridge to the replica catalogs
+     *
+     * @return the handle to the replica catalog bridge, null if not yet set
+     */
+    public ReplicaCatalogBridge getHandleToReplicaCatalogBridge() {
+        return (ReplicaCatalogBridge) get(PegasusBag.REPLICA_CATALOG_BRIDGE);
+    }
+
     /**
      * Returns a new copy of the Object. It is only a shallow clone.
      *
@@ -1385,6 +1385,32 @@ public class PlannerOptions extends Data implements Cloneable {
         return sb.toString();
     }
 
+    /**
+     * Returns the vds properties and the properties specified in the dax elements, that are
+     * otherwise passed to the jvm as options.
+     *
+     * @return the properties
+     * @see #toJVMOptions()
+     */
+    public Properties getJVMProperties() {
+        Properties result = new Properties();
+
+        if (mVDSProps != null) {
+            for (Iterator it = mVDSProps.iterator(); it.hasNext(); ) {
+                NameValue nv = (NameValue) it.next();
+                result.setProperty((String) nv.getKey(), (String) nv.getValue());
+            }
+        }
+
+        // add all the properties specified in the dax elements
+        for (Iterator<Object> it = mProperties.keySet().iterator(); it.hasNext(); ) {
+            String key = (String) it.next();
+            result.setProperty(key, mProperties.getProperty(key));
+        }
+
+        return result;
+    }
+
     /**
      * Converts the vds properties that need to be passed to the jvm as an option.
      *
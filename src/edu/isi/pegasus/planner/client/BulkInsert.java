@@ -0,0 +1,279 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inserts batches of mappings into a replica catalog in parallel. The batches are submitted by a
+ * single thread, usually the one parsing the input file, and are built and inserted by a fixed
+ * number of worker threads. The replica catalog implementations are not thread safe, so each worker
+ * inserts over a connection of its own, that is opened on first use and reused for later batches.
+ *
+ * <p>A batch is submitted to the lane of a worker, and the batches of a lane are inserted one after
+ * the other. Checking for, deleting and inserting existing mappings is not atomic in the database
+ * backed catalogs, so all the mappings for an LFN have to be submitted to the same lane, as
+ * returned by {@link #getLane(String)}. Mappings for the same LFN are then never inserted
+ * concurrently.
+ *
+ * <p>The number of batches pending is bounded to twice the number of threads, so that the
+ * submitting thread blocks instead of reading the whole input into memory. A failed batch is logged
+ * and does not stop the remaining batches from being inserted.
+ *
+ * <p>Parallel inserts only pay off for database backed catalogs, where each connection inserts a
+ * batch in a transaction of its own. File based catalogs should never be loaded in parallel, as
+ * each connection writes back the whole file on close.
+ */
+public class BulkInsert {
+
+    /** Opens a new connection to the replica catalog backend. */
+    private final Callable<ReplicaCatalog> mConnector;
+
+    /** The single threaded executor of each lane. */
+    private final ExecutorService[] mLanes;
+
+    /** The connection of each lane, only accessed by the thread of the lane. */
+    private final ReplicaCatalog[] mConnections;
+
+    /** Bounds the number of batches submitted, but not yet inserted. */
+    private final Semaphore mPending;
+
+    /** The handle to the logging object. */
+    private final LogManager mLogger;
+
+    /** The number of entries inserted so far. */
+    private final AtomicLong mInserted;
+
+    /** The number of batches submitted so far. */
+    private final AtomicInteger mBatches;
+
+    /** The number of batches that failed to insert. */
+    private final AtomicInteger mFailed;
+
+    /** The time at which the bulk insert was started. */
+    private final long mStart;
+
+    /** The time taken in milliseconds, or -1 if the bulk insert has not been closed yet. */
+    private long mElapsed;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param connector opens a new connection to the replica catalog backend, for each worker.
+     * @param threads the number of worker threads
+     * @param logger the logger to log failed batches to
+     */
+    public BulkInsert(Callable<ReplicaCatalog> connector, int threads, LogManager logger) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads for insert " + threads);
+        }
+        mConnector = connector;
+        mLanes = new ExecutorService[threads];
+        for (int i = 0; i < threads; i++) {
+            mLanes[i] = Executors.newSingleThreadExecutor();
+        }
+        mConnections = new ReplicaCatalog[threads];
+        mPending = new Semaphore(2 * threads);
+        mLogger = logger;
+        mInserted = new AtomicLong(0);
+        mBatches = new AtomicInteger(0);
+        mFailed = new AtomicInteger(0);
+        mStart = System.currentTimeMillis();
+        mElapsed = -1;
+    }
+
+    /**
+     * Returns the lane that the mappings for an LFN have to be submitted to.
+     *
+     * @param lfn the logical file name
+     * @return the lane, between 0 and the number of threads
+     */
+    public int getLane(String lfn) {
+        return Math.floorMod(lfn.hashCode(), mLanes.length);
+    }
+
+    /**
+     * Returns the number of lanes, that is the number of worker threads.
+     *
+     * @return the number of lanes
+     */
+    public int getLanes() {
+        return mLanes.length;
+    }
+
+    /**
+     * Submits a batch for insertion to a lane. The batch is built and inserted on the worker thread
+     * of the lane, after the batches submitted to the lane earlier. Blocks if too many batches are
+     * pending.
+     *
+     * @param lane the lane, as returned by {@link #getLane(String)} for all the LFNs in the batch
+     * @param batch builds the map indexed by LFN, with each value a collection of replica catalog
+     *     entries to insert for the LFN.
+     * @throws InterruptedException if interrupted while waiting for pending batches
+     */
+    public void submit(int lane, Callable<Map<String, Collection<ReplicaCatalogEntry>>> batch)
+            throws InterruptedException {
+        if (mElapsed != -1) {
+            throw new IllegalStateException("Bulk insert has already been closed");
+        }
+        final int id = mBatches.incrementAndGet();
+        mPending.acquire();
+        mLanes[lane].execute(
+                () -> {
+                    try {
+                        insert(lane, id, batch);
+                    } finally {
+                        mPending.release();
+                    }
+                });
+    }
+
+    /**
+     * Waits for all the batches submitted to be inserted, and closes the connections to the
+     * backend.
+     *
+     * @return the number of entries inserted
+     * @throws InterruptedException if interrupted while waiting for the pending batches
+     */
+    public long close() throws InterruptedException {
+        if (mElapsed == -1) {
+            for (ExecutorService lane : mLanes) {
+                lane.shutdown();
+            }
+            try {
+                for (ExecutorService lane : mLanes) {
+                    while (!lane.awaitTermination(1, TimeUnit.MINUTES)) {
+                        mLogger.log(
+                                "Waiting for pending batches to be inserted. Inserted "
+                                        + mInserted.get()
+                                        + " entries so far",
+                                LogManager.DEBUG_MESSAGE_LEVEL);
+                    }
+                }
+            } finally {
+                for (ExecutorService lane : mLanes) {
+                    lane.shutdownNow();
+                }
+                mElapsed = System.currentTimeMillis() - mStart;
+                for (ReplicaCatalog catalog : mConnections) {
+                    if (catalog != null) {
+                        catalog.close();
+                    }
+                }
+            }
+        }
+        return mInserted.get();
+    }
+    /**
+     * Returns the number of entries inserted so far.
+     *
+     * @return the number of entries
+     */
+    public long getInserted() {
+        return mInserted.get();
+    }
+
+    /**
+     * Returns the number of batches submitted so far.
+     *
+     * @return the number of batches
+     */
+    public int getBatches() {
+        return mBatches.get();
+    }
+
+    /**
+     * Returns the number of batches that failed to insert.
+     *
+     * @return the number of failed batches
+     */
+    public int getFailedBatches() {
+        return mFailed.get();
+    }
+
+    /**
+     * Returns the number of connections opened to the backend.
+     *
+     * @return the number of connections
+     */
+    public int getConnections() {
+        int count = 0;
+        for (ReplicaCatalog catalog : mConnections) {
+            count += (catalog == null) ? 0 : 1;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time taken from the start till the bulk insert was closed, or till now if it is
+     * not closed yet.
+     *
+     * @return the time in milliseconds
+     */
+    public long getElapsedTime() {
+        return mElapsed == -1 ? System.currentTimeMillis() - mStart : mElapsed;
+    }
+
+    /**
+     * Builds and inserts a batch, over the connection of the lane.
+     *
+     * @param lane the lane the batch was submitted to
+     * @param id the id of the batch
+     * @param batch builds the entries to insert
+     */
+    private void insert(
+            int lane, int id, Callable<Map<String, Collection<ReplicaCatalogEntry>>> batch) {
+        try {
+            Map<String, Collection<ReplicaCatalogEntry>> entries = batch.call();
+            if (entries == null || entries.isEmpty()) {
+                return;
+            }
+            mInserted.addAndGet(this.connection(lane).insert(entries));
+        } catch (Exception e) {
+            mFailed.incrementAndGet();
+            mLogger.log("Unable to insert batch " + id, e, LogManager.ERROR_MESSAGE_LEVEL);
+        }
+    }
+
+    /**
+     * Returns the connection of a lane, opening it on first use.
+     *
+     * @param lane the lane
+     * @return the connection
+     * @throws Exception if unable to connect
+     */
+    private ReplicaCatalog connection(int lane) throws Exception {
+        ReplicaCatalog catalog = mConnections[lane];
+        if (catalog == null) {
+            catalog = mConnector.call();
+            if (catalog == null || catalog.isClosed()) {
+                throw new ReplicaCatalogException("Unable to connect to replica catalog backend");
+            }
+            mConnections[lane] = catalog;
+        }
+        return catalog;
+    }
+}
@@ -20,8 +20,11 @@ import edu.isi.pegasus.common.util.DefaultStreamGobblerCallback;
 import edu.isi.pegasus.common.util.FactoryException;
 import edu.isi.pegasus.common.util.StreamGobbler;
 import edu.isi.pegasus.common.util.Version;
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
 import edu.isi.pegasus.planner.catalog.SiteCatalog;
 import edu.isi.pegasus.planner.catalog.TransformationCatalog;
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
 import edu.isi.pegasus.planner.catalog.site.SiteCatalogException;
 import edu.isi.pegasus.planner.catalog.site.SiteFactory;
 import edu.isi.pegasus.planner.catalog.site.SiteFactoryException;
@@ -41,9 +44,12 @@ import edu.isi.pegasus.planner.code.CodeGenerator;
 import edu.isi.pegasus.planner.code.CodeGeneratorFactory;
 import edu.isi.pegasus.planner.code.GridStartFactory;
 import edu.isi.pegasus.planner.code.generator.Braindump;
+import edu.isi.pegasus.planner.code.generator.Stampede;
 import edu.isi.pegasus.planner.common.PegasusConfiguration;
 import edu.isi.pegasus.planner.common.PegasusDBAdmin;
 import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.common.PlanCache;
+import edu.isi.pegasus.planner.common.PlannerProfiler;
 import edu.isi.pegasus.planner.common.RunDirectoryFilenameFilter;
 import edu.isi.pegasus.planner.namespace.Dagman;
 import edu.isi.pegasus.planner.namespace.Metadata;
@@ -72,13 +78,21 @@ import java.lang.management.MemoryUsage;
 import java.nio.channels.FileChannel;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 /**
@@ -104,6 +118,16 @@ public class CPlanner extends Executable {
     /** The name of the property key that determines whether pegasus-run should monitord or not. */
     public static final String PEGASUS_MONITORD_LAUNCH_PROPERTY_KEY = "pegasus.monitord";
 
+    /** The attribute in the plan cache recording whether the cached workflow was empty. */
+    private static final String PLAN_CACHE_EMPTY_WORKFLOW_ATTRIBUTE = "empty";
+
+    /** The attribute in the plan cache listing the files generated by the code generators. */
+    private static final String PLAN_CACHE_FILES_ATTRIBUTE = "files";
+
+    /** The replica catalog implementations that read all their mappings from a single file. */
+    private static final Set<String> FILE_BASED_REPLICA_CATALOGS =
+            new HashSet(Arrays.asList("File", "SimpleFile", "Regex", "YAML", "Meta", "Indexed"));
+
     /** default dax file to parse if user does not specify one * */
     public static final String DEFAULT_WORKFLOW_DAX_FILE = "workflow.yml";
 
@@ -148,6 +172,29 @@ public class CPlanner extends Executable {
     /** A boolean indicating whether metrics should be sent to metrics server or not */
     private boolean mSendMetrics;
 
+    /** The profiler for the planner phases, if profiling is enabled. */
+    private PlannerProfiler mProfiler;
+
+    /** The file in the submit directory to which the phase timings are written out. */
+    private File mProfilerFile;
+
+    /**
+     * The directory from which the planner is launched. If null, the current working directory is
+     * used.
+     */
+    private File mPlannerDirectory;
+
+    /**
+     * The planner for the outer level workflow, if this planner plans a sub workflow in process.
+     */
+    private SubWorkflowPlanner mParentPlanner;
+
+    /**
+     * The files outside the submit directory the plan is computed from, if this planner plans a sub
+     * workflow in process. Null if one of them is not file based.
+     */
+    private Collection<File> mPlanSources;
+
     /** Default constructor. */
     public CPlanner() {
         this(null);
@@ -195,7 +242,6 @@ public class CPlanner extends Executable {
         int result = 0;
         Date startDate = new Date();
         Date endDate = null;
-        double starttime = startDate.getTime();
         double duration = -1;
 
         Exception plannerException = null;
@@ -233,29 +279,107 @@ public class CPlanner extends Executable {
             endDate = new Date();
         }
 
+        duration = cPlanner.logMetrics(startDate, endDate, result, plannerException);
+
+        cPlanner.completeProfiling();
+
+        if (result == 0) {
+            cPlanner.copyDAXToSubmitDirectory();
+        }
+
+        // warn about non zero exit code
+        if (result != 0) {
+            cPlanner.log(
+                    "Exiting with non-zero exit-code " + result, LogManager.DEBUG_MESSAGE_LEVEL);
+        } else {
+            // log the time taken to execute
+            cPlanner.log(
+                    "Time taken to execute is " + duration + " seconds",
+                    LogManager.CONSOLE_MESSAGE_LEVEL);
+        }
+
+        cPlanner.mLogger.logEventCompletion();
+        System.exit(result);
+    }
+
+    /**
+     * Plans a sub workflow within the JVM of the planner for the outer level workflow, with the
+     * logger passed to the constructor. This is the in process equivalent of the pegasus-plan
+     * invocation in the prescript of the DAG job for a DAX job.
+     *
+     * @param conf the properties file to use
+     * @param properties the properties that are passed to pegasus-plan as jvm options
+     * @param options the options for the sub workflow
+     * @param plannerDirectory the directory from which the prescript would have been launched
+     * @param parent the planner for the outer level workflow, used to share the site and
+     *     transformation catalogs
+     * @return the Collection of <code>File</code> objects for the files written out.
+     */
+    public Collection<File> planSubWorkflow(
+            String conf,
+            Properties properties,
+            PlannerOptions options,
+            File plannerDirectory,
+            SubWorkflowPlanner parent) {
+        Date startDate = new Date();
+        this.initialize(new String[] {"--conf", conf}, '6');
+        for (String key : properties.stringPropertyNames()) {
+            mProps.setProperty(key, properties.getProperty(key));
+        }
+        mPlannerDirectory = plannerDirectory;
+        mParentPlanner = parent;
+        mPMetrics.setStartTime(startDate);
+
+        Collection<File> result = null;
+        int exitcode = 1;
+        Exception plannerException = null;
         try {
-            cPlanner.mPMetrics.setEndTime(endDate);
-            double endtime = endDate.getTime();
-            duration = (endtime - starttime) / 1000;
-            cPlanner.mPMetrics.setDuration(duration);
-            cPlanner.mPMetrics.setExitcode(result);
+            result = this.executeCommand(options);
+            exitcode = 0;
+        } catch (RuntimeException rte) {
+            plannerException = rte;
+            throw rte;
+        } finally {
+            this.logMetrics(startDate, new Date(), exitcode, plannerException);
+            this.completeProfiling();
+        }
+        this.copyDAXToSubmitDirectory();
+        return result;
+    }
+
+    /**
+     * Logs the planner metrics at the end of a planner run.
+     *
+     * @param startDate the time the planner was launched
+     * @param endDate the time the planner finished
+     * @param result the exitcode of the planner
+     * @param plannerException the exception that caused the planner to fail, can be null
+     * @return the duration of the planner run in seconds
+     */
+    private double logMetrics(
+            Date startDate, Date endDate, int result, Exception plannerException) {
+        double duration = (endDate.getTime() - startDate.getTime()) / 1000.0;
+        try {
+            mPMetrics.setEndTime(endDate);
+            mPMetrics.setDuration(duration);
+            mPMetrics.setExitcode(result);
 
             if (plannerException != null) {
                 // we want the stack trace to a String Writer.
                 StringWriter sw = new StringWriter();
                 plannerException.printStackTrace(new PrintWriter(sw));
-                cPlanner.mPMetrics.setMetricsTypeToError();
-                cPlanner.mPMetrics.setErrorMessage(sw.toString());
+                mPMetrics.setMetricsTypeToError();
+                mPMetrics.setErrorMessage(sw.toString());
             }
             // lets write out the metrics
-            if (cPlanner.mSendMetrics) {
+            if (mSendMetrics) {
                 edu.isi.pegasus.planner.code.generator.Metrics metrics =
                         new edu.isi.pegasus.planner.code.generator.Metrics();
-                metrics.initialize(cPlanner.mBag);
-                metrics.logMetrics(cPlanner.mPMetrics);
+                metrics.initialize(mBag);
+                metrics.logMetrics(mPMetrics);
             } else {
                 // log
-                cPlanner.log(
+                this.log(
                         "No metrics logged or sent to the metrics server",
                         LogManager.DEBUG_MESSAGE_LEVEL);
             }
@@ -263,47 +387,34 @@ public class CPlanner extends Executable {
         } catch (Exception e) {
             System.out.println("ERROR while logging metrics " + e.getMessage());
         }
+        return duration;
+    }
 
+    /** Copies the DAX file to the submit directory. The copy is best effort. */
+    private void copyDAXToSubmitDirectory() {
         // 2012-03-06 (jsv): Copy dax file to submit directory. It's
         // MUCH SIMPLER to use the parsed CLI options at this point than
         // drill open the shell wrapper without messing up everything.
-        if (result == 0) {
-            try {
-                File src_file = new File(cPlanner.mPOptions.getDAX());
-                File dst_file =
-                        new File(cPlanner.mPOptions.getSubmitDirectory(), src_file.getName());
-                if (!dst_file.exists()) dst_file.createNewFile();
+        try {
+            File src_file = new File(mPOptions.getDAX());
+            File dst_file = new File(mPOptions.getSubmitDirectory(), src_file.getName());
+            if (!dst_file.exists()) dst_file.createNewFile();
 
-                FileChannel fc_src = null;
-                FileChannel fc_dst = null;
-                try {
-                    fc_src = new FileInputStream(src_file).getChannel();
-                    fc_dst = new FileOutputStream(dst_file).getChannel();
-                    fc_dst.transferFrom(fc_src, 0, fc_src.size());
-                } finally {
-                    if (fc_src != null) fc_src.close();
-                    if (fc_dst != null) fc_dst.close();
-                }
-            } catch (IOException ieo) {
-                // ignore -- copy is best effort for now
-            } catch (NullPointerException npe) {
-                // also ignore
+            FileChannel fc_src = null;
+            FileChannel fc_dst = null;
+            try {
+                fc_src = new FileInputStream(src_file).getChannel();
+                fc_dst = new FileOutputStream(dst_file).getChannel();
+                fc_dst.transferFrom(fc_src, 0, fc_src.size());
+            } finally {
+                if (fc_src != null) fc_src.close();
+                if (fc_dst != null) fc_dst.close();
             }
+        } catch (IOException ieo) {
+            // ignore -- copy is best effort for now
+        } catch (NullPointerException npe) {
+            // also ignore
         }
-
-        // warn about non zero exit code
-        if (result != 0) {
-            cPlanner.log(
-                    "Exiting with non-zero exit-code " + result, LogManager.DEBUG_MESSAGE_LEVEL);
-        } else {
-            // log the time taken to execute
-            cPlanner.log(
-                    "Time taken to execute is " + duration + " seconds",
-                    LogManager.CONSOLE_MESSAGE_LEVEL);
-        }
-
-        cPlanner.mLogger.logEventCompletion();
-        System.exit(result);
     }
 
     /** Loads all the properties that are needed by this class. */
@@ -332,7 +443,18 @@ public class CPlanner extends Executable {
         mBag.add(PegasusBag.PLANNER_OPTIONS, mPOptions);
         mBag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
         // PM-1486 set the planner directory
-        mBag.add(PegasusBag.PLANNER_DIRECTORY, new File(System.getProperty("user.dir")));
+        File plannerDirectory =
+                (mPlannerDirectory == null)
+                        ? new File(System.getProperty("user.dir"))
+                        : mPlannerDirectory;
+        mBag.add(PegasusBag.PLANNER_DIRECTORY, plannerDirectory);
+        if (mParentPlanner != null) {
+            // share the transformation catalog files parsed with
+            // the planners for the other sub workflows
+            mBag.add(
+                    PegasusBag.TRANSFORMATION_STORE_CACHE,
+                    mParentPlanner.getTransformationStoreCache());
+        }
 
         Collection result = null;
 
@@ -355,8 +477,13 @@ public class CPlanner extends Executable {
         PegasusConfiguration configurator = new PegasusConfiguration(mLogger);
         configurator.loadConfigurationPropertiesAndOptions(mProps, mPOptions);
 
+        if (mProps.profilePlannerPhases()) {
+            mProfiler = new PlannerProfiler();
+            mLogger.addEventListener(mProfiler);
+        }
+
         mLogger.log(
-                "Planner launched in the following directory " + System.getProperty("user.dir"),
+                "Planner launched in the following directory " + plannerDirectory,
                 LogManager.INFO_MESSAGE_LEVEL);
         mLogger.log(
                 "Planner invoked with following arguments " + mPOptions.getOriginalArgString(),
@@ -400,8 +527,33 @@ public class CPlanner extends Executable {
             eSites.add("*");
         }
 
-        // load the site catalog
-        SiteStore s = loadSiteStore(orgDag.getSiteStore());
+        // load the site catalog, while the transformation catalog is loaded
+        // in the background. loading the transformation catalog does not
+        // depend on the site store, or the options updated from it below
+        mLogger.logEventStart(
+                LoggingKeys.EVENT_PEGASUS_LOAD_CATALOGS,
+                LoggingKeys.DAX_ID,
+                orgDag.getAbstractWorkflowName());
+        ExecutorService executor =
+                mProps.loadCatalogsInParallel() ? Executors.newSingleThreadExecutor() : null;
+        TransformationCatalog tc = null;
+        SiteStore s = null;
+        try {
+            Future<TransformationCatalog> future =
+                    (executor == null)
+                            ? null
+                            : executor.submit(() -> loadTransformationCatalog(mBag, orgDag));
+            s = loadSiteStore(orgDag.getSiteStore());
+            tc =
+                    (future == null)
+                            ? loadTransformationCatalog(mBag, orgDag)
+                            : this.getTransformationCatalog(future);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        mLogger.logEventCompletion();
         s.setForPlannerUse(mProps, mPOptions);
 
         // update the local/output site entry if required
@@ -427,7 +579,7 @@ public class CPlanner extends Executable {
         }
 
         mBag.add(PegasusBag.SITE_STORE, s);
-        mBag.add(PegasusBag.TRANSFORMATION_CATALOG, loadTransformationCatalog(mBag, orgDag));
+        mBag.add(PegasusBag.TRANSFORMATION_CATALOG, tc);
 
         // populate planner metrics
         mPMetrics.setVOGroup(mPOptions.getVOGroup());
@@ -558,6 +710,16 @@ public class CPlanner extends Executable {
                 "Metrics file will be written out to "
                         + mPMetrics.getMetricsFileLocationInSubmitDirectory(),
                 LogManager.CONFIG_MESSAGE_LEVEL);
+        if (mProfiler != null) {
+            mProfilerFile =
+                    new File(
+                            mPOptions.getSubmitDirectory(),
+                            edu.isi.pegasus.planner.code.generator.Abstract.getDAGFilename(
+                                    mPOptions,
+                                    orgDag.getLabel(),
+                                    orgDag.getIndex(),
+                                    PlannerProfiler.TIMINGS_FILE_SUFFIX));
+        }
 
         // PM-1113 check if a relativeExec dir needs to be updated because of --random-dir option
         if (mPOptions.generateRandomDirectory() && mPOptions.getRandomDir() == null) {
@@ -580,6 +742,53 @@ public class CPlanner extends Executable {
                 LogManager.CONFIG_MESSAGE_LEVEL);
         mPOptions.setRandomDir(relativeExecDir);
 
+        // check if an earlier plan for the same inputs can be reused
+        PlanCache planCache = null;
+        String planKey = null;
+        Map<String, String> planTokens = null;
+        if (mProps.usePlanCache()) {
+            planCache =
+                    new PlanCache(
+                            new File(mProps.getPlanCacheDirectory()),
+                            mProps.getPlanCacheMaxSize(),
+                            mLogger,
+                            mProps.linkPlanCacheFiles());
+            planKey = this.computePlanCacheKey(dax, orgDag, mPOptions);
+            planTokens = this.getPlanCacheTokens(orgDag, relativeExecDir);
+        }
+        if (mParentPlanner != null) {
+            // the planner of the outer workflow records them in its cached plan
+            Collection<String> uncacheable = new LinkedList();
+            mPlanSources = this.getPlanSources(dax, orgDag, mPOptions, uncacheable);
+            if (!uncacheable.isEmpty()) {
+                mPlanSources = null;
+            }
+        }
+        if (planKey != null) {
+            Map<String, String> attributes = null;
+            File submitDir = new File(mPOptions.getSubmitDirectory());
+            try {
+                attributes = planCache.materialize(planKey, submitDir, planTokens);
+            } catch (IOException ioe) {
+                throw new RuntimeException(
+                        "Unable to reuse cached plan " + planKey + " in " + submitDir, ioe);
+            }
+            if (attributes != null) {
+                result = new LinkedList();
+                String files = attributes.get(CPlanner.PLAN_CACHE_FILES_ATTRIBUTE);
+                if (files != null && !files.isEmpty()) {
+                    for (String file : files.split(",")) {
+                        result.add(new File(submitDir, file));
+                    }
+                }
+                this.completePlanning(
+                        Boolean.parse(
+                                attributes.get(CPlanner.PLAN_CACHE_EMPTY_WORKFLOW_ATTRIBUTE),
+                                false));
+                return result;
+            }
+        }
+
         // before starting the refinement process load
         // the stampede event generator and generate events for the dax
         generateStampedeEventsForAbstractWorkflow(orgDag, mBag);
@@ -594,6 +803,15 @@ public class CPlanner extends Executable {
         // the planner metrics
         mPMetrics.setWorkflowMetrics(finalDag.getWorkflowMetrics());
 
+        // sub workflows that can be planned right away are planned
+        // in process once the code for this workflow is generated
+        SubWorkflowPlanner subWorkflowPlanner = null;
+        if (mProps.planSubWorkflowsInProcess()) {
+            subWorkflowPlanner =
+                    new SubWorkflowPlanner(mLogger, mProps.getSubWorkflowPlannerThreads());
+            cwmain.getPegasusBag().add(PegasusBag.SUBWORKFLOW_PLANNER, subWorkflowPlanner);
+        }
+
         CodeGenerator codeGenerator = null;
         codeGenerator = CodeGeneratorFactory.loadInstance(cwmain.getPegasusBag());
 
@@ -629,6 +847,61 @@ public class CPlanner extends Executable {
         // PM-1003 update metrics with whether pmc was used or not.
         mPMetrics.setUsesPMC(Braindump.plannerUsedPMC(mBag));
 
+        Collection<File> dependencies = new LinkedList();
+        if (subWorkflowPlanner != null) {
+            subWorkflowPlanner.planAll();
+            // the sub workflows planned in process are part of the plan
+            Collection<File> sources = subWorkflowPlanner.getPlanSources();
+            if (sources == null) {
+                dependencies = null;
+            } else {
+                String submitDir = new File(mPOptions.getSubmitDirectory()).getAbsolutePath();
+                for (File source : sources) {
+                    // files in the submit directory are generated by this plan
+                    if (!source.getAbsolutePath().startsWith(submitDir + File.separator)) {
+                        dependencies.add(source);
+                    }
+                }
+            }
+            if (mPlanSources != null) {
+                if (sources == null) {
+                    mPlanSources = null;
+                } else {
+                    mPlanSources.addAll(sources);
+                }
+            }
+        }
+
+        if (planKey != null && dependencies == null) {
+            mLogger.log(
+                    "Plan is not cached as a sub workflow planned in process is not file based",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+        } else if (planKey != null) {
+            Map<String, String> attributes = new HashMap();
+            attributes.put(
+                    CPlanner.PLAN_CACHE_EMPTY_WORKFLOW_ATTRIBUTE, String.valueOf(emptyWorkflow));
+            attributes.put(
+                    CPlanner.PLAN_CACHE_FILES_ATTRIBUTE,
+                    this.toRelativePaths(result, mPOptions.getSubmitDirectory()));
+            planCache.store(
+                    planKey,
+                    new File(mPOptions.getSubmitDirectory()),
+                    planTokens,
+                    attributes,
+                    dependencies);
+        }
+
+        this.completePlanning(emptyWorkflow);
+        return result;
+    }
+
+    /**
+     * Completes the planning once the executable workflow has been written out to the submit
+     * directory, either by the code generators or from the plan cache.
+     *
+     * @param emptyWorkflow whether the workflow was empty
+     */
+    private void completePlanning(boolean emptyWorkflow) {
         checkMasterDatabaseForVersionCompatibility();
 
         // PM-1549 create an output replica catalog for the workflow if required
@@ -656,9 +929,226 @@ public class CPlanner extends Executable {
         if (mProps.logMemoryUsage()) {
             this.logMemoryUsage();
         }
+    }
+
+    /**
+     * Stops profiling the planner phases, writes out the timings to the submit directory and logs
+     * the hot phases if required.
+     */
+    private void completeProfiling() {
+        if (mProfiler == null) {
+            return;
+        }
+        mLogger.removeEventListener(mProfiler);
+        mProfiler.close();
+        try {
+            if (mProfilerFile != null) {
+                mProfiler.writeOut(mProfilerFile);
+                mLogger.log(
+                        "Written out planner phase timings to " + mProfilerFile,
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+        } catch (IOException ioe) {
+            mLogger.log(
+                    "Unable to write out planner phase timings to "
+                            + mProfilerFile
+                            + " "
+                            + ioe.getMessage(),
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        }
+        if (mProps.logPlannerPhasesSummary()) {
+            mLogger.log(mProfiler.getHotPhaseSummary(), LogManager.CONSOLE_MESSAGE_LEVEL);
+        }
+    }
+
+    /**
+     * Computes the key for the plan cache from the workflow file, the catalog files, the properties
+     * and the planner options.
+     *
+     * @param dax the path to the workflow file
+     * @param dag the parsed workflow
+     * @param options the planner options
+     * @return the key, or null if the plan cannot be cached
+     */
+    private String computePlanCacheKey(String dax, ADag dag, PlannerOptions options) {
+        if (options.partOfDeferredRun()) {
+            mLogger.log(
+                    "Plan cache is not used for sub workflows planned at runtime",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            return null;
+        }
+        mLogger.logEventStart(
+                LoggingKeys.EVENT_PEGASUS_PLAN_CACHE,
+                LoggingKeys.DAX_ID,
+                dag.getAbstractWorkflowName());
+        PlanCache.Key key = new PlanCache.Key();
+        key.add("version", Version.instance().toString());
+        key.add("options", options.getOriginalArgString());
+        // all the properties that end up as profiles or select sites and replicas
+        for (Profiles.NAMESPACES namespace : Profiles.NAMESPACES.values()) {
+            List properties = mProps.getMatchingProperties(namespace + ".", false);
+            if (properties != null) {
+                for (Iterator it = properties.iterator(); it.hasNext(); ) {
+                    NameValue nv = (NameValue) it.next();
+                    key.add((String) nv.getKey(), (String) nv.getValue());
+                }
+            }
+        }
+        if (Stampede.DATABASE_OUTPUT.equals(mProps.getStampedeEventsOutput())) {
+            // the cached plan does not populate the workflow database
+            key.markUncacheable("stampede events loaded into the workflow database");
+        }
+
+        Collection<String> uncacheable = new LinkedList();
+        for (File source : this.getPlanSources(dax, dag, options, uncacheable)) {
+            key.add("source", source);
+        }
+        for (String reason : uncacheable) {
+            key.markUncacheable(reason);
+        }
+        mLogger.logEventCompletion();
+
+        if (!key.getUncacheableReasons().isEmpty()) {
+            mLogger.log(
+                    "Plan cannot be cached because of " + key.getUncacheableReasons(),
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            return null;
+        }
+        String result = key.toString();
+        mLogger.log("Plan cache key for the workflow is " + result, LogManager.DEBUG_MESSAGE_LEVEL);
         return result;
     }
 
+    /**
+     * Returns the files a plan for the workflow is computed from: the workflow file and the files
+     * backing the site, transformation and replica catalogs.
+     *
+     * @param dax the path to the workflow file
+     * @param dag the parsed workflow
+     * @param options the planner options
+     * @param uncacheable the reasons why the plan cannot be cached are added to it
+     * @return the files
+     */
+    private List<File> getPlanSources(
+            String dax, ADag dag, PlannerOptions options, Collection<String> uncacheable) {
+        List<File> sources = new LinkedList();
+        sources.add(new File(dax));
+        File sc = mBag.getHandleToSiteStore().getFileSource();
+        if (sc != null) {
+            sources.add(sc);
+        }
+        TransformationCatalog catalog = mBag.getHandleToTransformationCatalog();
+        File tc = (catalog == null) ? null : catalog.getFileSource();
+        if (tc != null) {
+            sources.add(tc);
+        }
+        if (options.getInputDirectories() != null && !options.getInputDirectories().isEmpty()) {
+            uncacheable.add("input directories " + options.getInputDirectories());
+        }
+        Set<String> lfns = dag.getDAGInfo().getLFNs(options.getForce());
+        if (lfns != null && !lfns.isEmpty()) {
+            // the replica catalog is only queried if there are files to look up
+            File rc = this.getReplicaCatalogFileSource();
+            if (rc == null) {
+                uncacheable.add("replica catalog is not file based");
+            } else {
+                sources.add(rc);
+            }
+        }
+        for (String source : options.getCacheFiles()) {
+            sources.add(new File(source));
+        }
+        for (String source : options.getInheritedRCFiles()) {
+            sources.add(new File(source));
+        }
+        return sources;
+    }
+
+    /**
+     * Returns the files outside the submit directory the plan for a sub workflow planned in process
+     * was computed from, including the ones of its own sub workflows planned in process.
+     *
+     * @return the files, or null if one of the sources is not file based
+     */
+    public Collection<File> getPlanSources() {
+        return mPlanSources;
+    }
+
+    /**
+     * Returns the file backing the replica catalog, determined from the properties the same way as
+     * the replica factory does, without connecting to the catalog.
+     *
+     * @return the file, or null if the replica catalog is not file based
+     */
+    private File getReplicaCatalogFileSource() {
+        String implementor = mProps.getProperty(ReplicaCatalog.c_prefix);
+        String file = mProps.getProperty(ReplicaCatalog.c_prefix + ".file");
+        if (implementor == null && file == null) {
+            // the default files picked up from the directory the planner is invoked from
+            File dir = mBag.getPlannerDirectory();
+            for (String basename :
+                    new String[] {
+                        ReplicaFactory.DEFAULT_YAML_REPLICA_CATALOG_BASENAME,
+                        ReplicaFactory.DEFAULT_FILE_REPLICA_CATALOG_BASENAME
+                    }) {
+                File candidate = new File(dir, basename);
+                if (candidate.isFile()) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+        if (implementor != null
+                && !CPlanner.FILE_BASED_REPLICA_CATALOGS.contains(
+                        implementor.substring(implementor.lastIndexOf('.') + 1))) {
+            return null;
+        }
+        return (file == null) ? null : new File(file);
+    }
+
+    /**
+     * Returns the run specific tokens that need to be replaced when a cached plan is reused.
+     *
+     * @param dag the workflow
+     * @param relativeExecDir the relative execution directory
+     * @return map of token names to values
+     */
+    private Map<String, String> getPlanCacheTokens(ADag dag, String relativeExecDir) {
+        Map<String, String> tokens = new HashMap();
+        tokens.put(PlanCache.SUBMIT_DIRECTORY_TOKEN, mPOptions.getSubmitDirectory());
+        tokens.put(PlanCache.EXECUTION_DIRECTORY_TOKEN, relativeExecDir);
+        tokens.put(PlanCache.WORKFLOW_UUID_TOKEN, dag.getWorkflowUUID());
+        tokens.put(PlanCache.ROOT_WORKFLOW_UUID_TOKEN, dag.getRootWorkflowUUID());
+        tokens.put(PlanCache.WORKFLOW_TIMESTAMP_TOKEN, dag.getFlowTimestamp());
+        String properties = mProps.getPropertiesInSubmitDirectory();
+        if (properties != null) {
+            tokens.put(PlanCache.PROPERTIES_FILE_TOKEN, new File(properties).getName());
+        }
+        return tokens;
+    }
+
+    /**
+     * Converts the files to a comma separated list of paths relative to a directory.
+     *
+     * @param files the files
+     * @param directory the directory
+     * @return the comma separated list
+     */
+    private String toRelativePaths(Collection<File> files, String directory) {
+        StringBuilder sb = new StringBuilder();
+        if (files == null) {
+            return sb.toString();
+        }
+        java.nio.file.Path base = new File(directory).getAbsoluteFile().toPath();
+        for (File file : files) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(base.relativize(file.getAbsoluteFile().toPath()).toString());
+        }
+        return sb.toString();
+    }
+
     /**
      * Returns the name of the noop job.
      *
@@ -1627,7 +2117,27 @@ public class CPlanner extends Executable {
                     LogManager.DEBUG_MESSAGE_LEVEL);
         }
 
-        if (catalog != null) {
+        // the site catalog entries may have already been loaded by the
+        // planner for another sub workflow that is planned in process
+        File source = (catalog == null) ? null : catalog.getFileSource();
+        List<SiteCatalogEntry> shared =
+                (mParentPlanner == null || source == null)
+                        ? null
+                        : mParentPlanner.getSiteCatalogEntries(source);
+        if (shared != null) {
+            mLogger.log(
+                    "Reusing sites loaded from site catalog " + source,
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            for (SiteCatalogEntry s : shared) {
+                if (result.lookup(s.getSiteHandle()) == null) {
+                    result.addEntry(s);
+                }
+            }
+            try {
+                catalog.close();
+            } catch (Exception e) {
+            }
+        } else if (catalog != null) {
             // PM-1515 make sure catalog was instantiated
             Set<String> toLoad = new HashSet<String>();
             mLogger.log(
@@ -1647,14 +2157,21 @@ public class CPlanner extends Executable {
                     // we need to load all sites into the site store
                     toLoad.addAll(catalog.list());
                 }
+                List<SiteCatalogEntry> loaded = new LinkedList();
                 for (Iterator<String> it = toLoad.iterator(); it.hasNext(); ) {
                     SiteCatalogEntry s = catalog.lookup(it.next());
+                    if (s != null) {
+                        loaded.add(s);
+                    }
                     if (s != null && result.lookup(s.getSiteHandle()) == null) {
                         // PM-1515 prefer entries from DAX SiteStore.
                         // Only load from catalog if not in DAX SiteStore
                         result.addEntry(s);
                     }
                 }
+                if (mParentPlanner != null && source != null) {
+                    mParentPlanner.addSiteCatalogEntries(source, loaded);
+                }
             } catch (SiteCatalogException e) {
                 throw new RuntimeException("Unable to load from site catalog ", e);
             } finally {
@@ -1884,6 +2401,31 @@ public class CPlanner extends Executable {
         }
     }
 
+    /**
+     * Waits for the transformation catalog being loaded in the background. Any exception thrown
+     * while loading is rethrown as is, as if the catalog was loaded in the calling thread.
+     *
+     * @param future the future for the catalog being loaded
+     * @return the transformation catalog
+     */
+    private TransformationCatalog getTransformationCatalog(Future<TransformationCatalog> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Unable to load the transformation catalog", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading the transformation catalog", e);
+        }
+    }
+
     /**
      * Loads the transformation catalog. Throws an exception encountered while loading only if the
      * daxStore is null or empty
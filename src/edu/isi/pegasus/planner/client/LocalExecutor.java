@@ -0,0 +1,612 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import gnu.getopt.Getopt;
+import gnu.getopt.LongOpt;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executes a workflow planned with the ParallelShell code generator on the submit host, in a single
+ * process. A job is launched as soon as all its parents have finished successfully, with at most a
+ * fixed number of jobs running at a time.
+ *
+ * <p>The jobs are launched, their postscripts invoked and the exitcodes checked in the same manner
+ * as the functions in shell-runner-functions.sh that the script generated by the Shell code
+ * generator uses, and the same events are logged to the jobstate.log file. On the first failure no
+ * further jobs are launched, and the executor exits with the status of the failed job once the jobs
+ * already running finish.
+ */
+public class LocalExecutor {
+
+    /** The default name of the jobstate log file. */
+    public static final String JOBSTATE_LOG = "jobstate.log";
+
+    /** The key in the jobs file for the ID of a job. */
+    public static final String ID_KEY = "id";
+
+    /** The key in the jobs file for the directory in which the job is launched. */
+    public static final String DIRECTORY_KEY = "directory";
+
+    /** The key in the jobs file for the directory to which the job stdout and stderr go. */
+    public static final String SUBMIT_DIRECTORY_KEY = "submit_dir";
+
+    /** The key in the jobs file for the executable. */
+    public static final String EXECUTABLE_KEY = "executable";
+
+    /** The key in the jobs file for the arguments. */
+    public static final String ARGUMENTS_KEY = "arguments";
+
+    /** The key in the jobs file for the path to the stdin file. */
+    public static final String STDIN_KEY = "stdin";
+
+    /** The key in the jobs file for the environment variables. */
+    public static final String ENVIRONMENT_KEY = "env";
+
+    /** The key in the jobs file for the IDs of the parent jobs. */
+    public static final String PARENTS_KEY = "parents";
+
+    /** The key in the jobs file for the postscript of a job. */
+    public static final String POSTSCRIPT_KEY = "postscript";
+
+    /** The prefix for events associated with job in jobstate.log file */
+    private static final String JOBSTATE_JOB_PREFIX = "JOB";
+
+    /** The prefix for events associated with POST_SCRIPT in jobstate.log file */
+    private static final String JOBSTATE_POST_SCRIPT_PREFIX = "POST_SCRIPT";
+
+    /** The exitcode for a job whose executable could not be launched. */
+    private static final int LAUNCH_FAILURE_EXITCODE = 127;
+
+    /** The jobs to execute, indexed by ID, in the order they appear in the jobs file. */
+    private final Map<String, Task> mTasks;
+
+    /** The handle to the jobstate.log file. */
+    private final PrintWriter mJobstate;
+
+    /** The maximum number of jobs running at a time. */
+    private final int mMaxJobs;
+
+    /** The stream to which progress messages are written. */
+    private final PrintStream mOut;
+
+    /** Set once a job fails, to stop launching further jobs. */
+    private final AtomicBoolean mFailed;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param tasks the jobs to execute
+     * @param jobstate the writer for the jobstate.log file
+     * @param maxJobs the maximum number of jobs running at a time
+     * @param out the stream to which progress messages are written
+     */
+    public LocalExecutor(List<Task> tasks, Writer jobstate, int maxJobs, PrintStream out) {
+        mTasks = new LinkedHashMap<String, Task>();
+        for (Task task : tasks) {
+            mTasks.put(task.getID(), task);
+        }
+        mJobstate = new PrintWriter(jobstate, true);
+        mMaxJobs = Math.max(1, maxJobs);
+        mOut = out;
+        mFailed = new AtomicBoolean(false);
+    }
+
+    /**
+     * Executes all the jobs.
+     *
+     * @return the exitcode of the first job that failed, else 0
+     * @throws IllegalArgumentException if a job refers to a parent that is not in the workflow
+     */
+    public int execute() {
+        // the number of unfinished parents and the children of each job
+        Map<String, Integer> pending = new HashMap<String, Integer>();
+        Map<String, List<Task>> children = new HashMap<String, List<Task>>();
+        List<Task> ready = new LinkedList<Task>();
+        for (Task task : mTasks.values()) {
+            for (String parent : task.getParents()) {
+                if (!mTasks.containsKey(parent)) {
+                    throw new IllegalArgumentException(
+                            "Parent " + parent + " of job " + task.getID() + " does not exist");
+                }
+                List<Task> c = children.get(parent);
+                if (c == null) {
+                    c = new LinkedList<Task>();
+                    children.put(parent, c);
+                }
+                c.add(task);
+            }
+            pending.put(task.getID(), task.getParents().size());
+            if (task.getParents().isEmpty()) {
+                ready.add(task);
+            }
+        }
+
+        mJobstate.println("INTERNAL *** SHELL_SCRIPT_STARTED ***");
+        int status = 0;
+        int finished = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(mMaxJobs);
+        try {
+            CompletionService<Result> completion = new ExecutorCompletionService<Result>(pool);
+            int running = 0;
+            for (Task task : ready) {
+                submit(completion, task);
+                running++;
+            }
+            while (running > 0) {
+                Result result;
+                try {
+                    result = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Error while executing the workflow", e.getCause());
+                }
+                running--;
+                if (result == null) {
+                    // job skipped as a previous job failed
+                    continue;
+                }
+                finished++;
+                if (result.mStatus != 0) {
+                    if (status == 0) {
+                        status = result.mStatus;
+                        System.err.println(
+                                "ERROR: "
+                                        + result.mPrefix
+                                        + " "
+                                        + result.mTask.getID()
+                                        + " failed with status "
+                                        + result.mStatus);
+                    }
+                    continue;
+                }
+                if (status != 0) {
+                    continue;
+                }
+                List<Task> c = children.get(result.mTask.getID());
+                if (c == null) {
+                    continue;
+                }
+                for (Task child : c) {
+                    int remaining = pending.get(child.getID()) - 1;
+                    pending.put(child.getID(), remaining);
+                    if (remaining == 0) {
+                        submit(completion, child);
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mFailed.set(true);
+            status = 1;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (status == 0 && finished != mTasks.size()) {
+            // can only happen if the jobs form a cycle
+            System.err.println(
+                    "ERROR: Only "
+                            + finished
+                            + " of "
+                            + mTasks.size()
+                            + " jobs could be executed as the remaining jobs form a cycle");
+            status = 1;
+        }
+        mJobstate.println("INTERNAL *** SHELL_SCRIPT_FINISHED " + status + " ***");
+        return status;
+    }
+
+    /**
+     * Submits a job for execution to the pool.
+     *
+     * @param completion the completion service for the pool
+     * @param task the job
+     */
+    private void submit(CompletionService<Result> completion, final Task task) {
+        completion.submit(() -> run(task));
+    }
+
+    /**
+     * Runs a single job along with its postscript, logging the events to the jobstate.log file.
+     *
+     * @param task the job
+     * @return the result, else null if the job is skipped as another job has failed
+     * @throws InterruptedException if interrupted while waiting for the job to finish
+     */
+    protected Result run(Task task) throws InterruptedException {
+        if (mFailed.get()) {
+            return null;
+        }
+
+        String id = task.getID();
+        createJobstateLogEntry(id, "SUBMIT");
+        createJobstateLogEntry(id, "EXECUTE");
+        mOut.println("Executing JOB " + task.getExecutable() + " " + task.getArguments());
+        int status =
+                launch(
+                        task,
+                        task.getDirectory(),
+                        new File(task.getSubmitDirectory(), id + ".out"),
+                        new File(task.getSubmitDirectory(), id + ".err"));
+        mOut.println("JOB " + id + " Returned with " + status);
+
+        String prefix = JOBSTATE_JOB_PREFIX;
+        Task postscript = task.getPostScript();
+        if (postscript != null) {
+            createJobstateLogEntry(id, "POST_SCRIPT_STARTED");
+            mOut.println(
+                    "Executing POSTSCRIPT "
+                            + postscript.getExecutable()
+                            + " "
+                            + postscript.getArguments());
+            status =
+                    launch(
+                            postscript,
+                            postscript.getDirectory(),
+                            new File(postscript.getDirectory(), id + ".post.out"),
+                            new File(postscript.getDirectory(), id + ".post.err"));
+            mOut.println("POSTSCRIPT FOR JOB " + id + " Returned with " + status);
+            prefix = JOBSTATE_POST_SCRIPT_PREFIX;
+        }
+
+        // check the exitcode
+        createJobstateLogEntry(id, prefix + "_TERMINATED");
+        if (status != 0) {
+            mFailed.set(true);
+            createJobstateLogEntry(id, prefix + "_FAILURE");
+        } else {
+            createJobstateLogEntry(id, prefix + "_SUCCESS");
+        }
+        return new Result(task, prefix, status);
+    }
+
+    /**
+     * Resolves a relative path against the directory a job is launched in, as the shell does after
+     * changing to the directory. Executables without a path separator are left as is, so that they
+     * are searched for in the PATH.
+     *
+     * @param path the path to resolve
+     * @param directory the directory in which the job is launched
+     * @param executable whether the path is of an executable
+     * @return the resolved path
+     */
+    private static String resolve(String path, String directory, boolean executable) {
+        if (new File(path).isAbsolute() || (executable && path.indexOf(File.separatorChar) == -1)) {
+            return path;
+        }
+        return new File(directory, path).getPath();
+    }
+
+    /**
+     * Launches an executable and waits for it to finish. The arguments are split on whitespace, the
+     * same as the unquoted expansion of the arguments in shell-runner-functions.sh.
+     *
+     * @param task the job or postscript to launch
+     * @param directory the directory in which to launch it
+     * @param stdout the file to which the stdout goes
+     * @param stderr the file to which the stderr goes
+     * @return the exitcode
+     * @throws InterruptedException if interrupted while waiting for the job to finish
+     */
+    private int launch(Task task, String directory, File stdout, File stderr)
+            throws InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(resolve(task.getExecutable(), directory, true));
+        for (String arg : task.getArguments().trim().split("\\s+")) {
+            if (arg.length() > 0) {
+                command.add(arg);
+            }
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(new File(directory));
+        builder.environment().putAll(task.getEnvironment());
+        builder.redirectOutput(stdout);
+        builder.redirectError(stderr);
+        if (task.getStdIn() != null) {
+            builder.redirectInput(new File(resolve(task.getStdIn(), directory, false)));
+        }
+
+        Process p;
+        try {
+            p = builder.start();
+        } catch (IOException e) {
+            try (PrintWriter pw = new PrintWriter(new FileWriter(stderr, true))) {
+                pw.println(task.getExecutable() + ": " + e.getMessage());
+            } catch (IOException ioe) {
+                // ignore
+            }
+            return LAUNCH_FAILURE_EXITCODE;
+        }
+        try {
+            if (task.getStdIn() == null) {
+                p.getOutputStream().close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+        try {
+            return p.waitFor();
+        } catch (InterruptedException e) {
+            p.destroy();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an entry in the jobstate.log file.
+     *
+     * @param id the ID of the job
+     * @param state the state in which the job is
+     */
+    private void createJobstateLogEntry(String id, String state) {
+        // 1239666049 create_dir_blackdiamond_0_isi_viz SUBMIT - local
+        String entry = (System.currentTimeMillis() / 1000) + " " + id + " " + state + " - local";
+        synchronized (mJobstate) {
+            mJobstate.println(entry);
+        }
+    }
+
+    /**
+     * Parses the jobs file written out by the ParallelShell code generator.
+     *
+     * @param reader the reader for the jobs file
+     * @return the jobs in the order in the file
+     */
+    public static List<Task> parse(Reader reader) {
+        List<Task> tasks = new LinkedList<Task>();
+        JsonArray jobs = new JsonParser().parse(reader).getAsJsonArray();
+        for (JsonElement element : jobs) {
+            tasks.add(toTask(element.getAsJsonObject()));
+        }
+        return tasks;
+    }
+
+    /**
+     * Converts a job entry in the jobs file to a task.
+     *
+     * @param job the job entry
+     * @return the task
+     */
+    private static Task toTask(JsonObject job) {
+        Task task = new Task(getString(job, ID_KEY));
+        task.setDirectory(getString(job, DIRECTORY_KEY));
+        task.setSubmitDirectory(getString(job, SUBMIT_DIRECTORY_KEY));
+        task.setExecutable(getString(job, EXECUTABLE_KEY));
+        String arguments = getString(job, ARGUMENTS_KEY);
+        task.setArguments(arguments == null ? "" : arguments);
+        task.setStdIn(getString(job, STDIN_KEY));
+        if (job.has(ENVIRONMENT_KEY)) {
+            for (Map.Entry<String, JsonElement> entry :
+                    job.getAsJsonObject(ENVIRONMENT_KEY).entrySet()) {
+                task.addEnvironment(entry.getKey(), entry.getValue().getAsString());
+            }
+        }
+        if (job.has(PARENTS_KEY)) {
+            for (JsonElement parent : job.getAsJsonArray(PARENTS_KEY)) {
+                task.addParent(parent.getAsString());
+            }
+        }
+        if (job.has(POSTSCRIPT_KEY)) {
+            JsonObject postscript = job.getAsJsonObject(POSTSCRIPT_KEY);
+            postscript.addProperty(ID_KEY, task.getID());
+            task.setPostScript(toTask(postscript));
+        }
+        return task;
+    }
+
+    private static String getString(JsonObject object, String key) {
+        JsonElement element = object.get(key);
+        return (element == null || element.isJsonNull()) ? null : element.getAsString();
+    }
+
+    /**
+     * The main program.
+     *
+     * @param args the arguments passed
+     */
+    public static void main(String[] args) {
+        LongOpt[] longOptions = new LongOpt[4];
+        longOptions[0] = new LongOpt("jobs", LongOpt.REQUIRED_ARGUMENT, null, 'j');
+        longOptions[1] = new LongOpt("max-jobs", LongOpt.REQUIRED_ARGUMENT, null, 'n');
+        longOptions[2] = new LongOpt("jobstate-log", LongOpt.REQUIRED_ARGUMENT, null, 'l');
+        longOptions[3] = new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h');
+        Getopt g = new Getopt("LocalExecutor", args, "j:n:l:h", longOptions, false);
+
+        String jobs = null;
+        String jobstate = JOBSTATE_LOG;
+        int maxJobs = Runtime.getRuntime().availableProcessors();
+        int option;
+        while ((option = g.getopt()) != -1) {
+            switch (option) {
+                case 'j':
+                    jobs = g.getOptarg();
+                    break;
+                case 'n':
+                    maxJobs = Integer.parseInt(g.getOptarg());
+                    break;
+                case 'l':
+                    jobstate = g.getOptarg();
+                    break;
+                case 'h':
+                default:
+                    printUsage();
+                    System.exit(option == 'h' ? 0 : 1);
+            }
+        }
+        if (jobs == null) {
+            printUsage();
+            System.exit(1);
+        }
+
+        int status;
+        try (Reader reader = new FileReader(jobs);
+                Writer writer = new FileWriter(jobstate, true)) {
+            status = new LocalExecutor(parse(reader), writer, maxJobs, System.out).execute();
+        } catch (Exception e) {
+            System.err.println("ERROR: " + Executable.convertException(e));
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    /** Prints out the usage. */
+    private static void printUsage() {
+        System.out.println(
+                "Usage: LocalExecutor --jobs <jobs file> [--max-jobs <n>] [--jobstate-log <file>]");
+    }
+
+    /** The outcome of running a job. */
+    protected static class Result {
+
+        private final Task mTask;
+
+        private final String mPrefix;
+
+        private final int mStatus;
+
+        Result(Task task, String prefix, int status) {
+            mTask = task;
+            mPrefix = prefix;
+            mStatus = status;
+        }
+    }
+
+    /** A job, or the postscript of a job, to be executed. */
+    public static class Task {
+
+        private final String mID;
+
+        private String mDirectory;
+
+        private String mSubmitDirectory;
+
+        private String mExecutable;
+
+        private String mArguments;
+
+        private String mStdIn;
+
+        private final Map<String, String> mEnvironment;
+
+        private final List<String> mParents;
+
+        private Task mPostScript;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param id the ID of the job
+         */
+        public Task(String id) {
+            mID = id;
+            mArguments = "";
+            mEnvironment = new LinkedHashMap<String, String>();
+            mParents = new LinkedList<String>();
+        }
+
+        public String getID() {
+            return mID;
+        }
+
+        public String getDirectory() {
+            return mDirectory;
+        }
+
+        public void setDirectory(String directory) {
+            mDirectory = directory;
+        }
+
+        public String getSubmitDirectory() {
+            return mSubmitDirectory;
+        }
+
+        public void setSubmitDirectory(String directory) {
+            mSubmitDirectory = directory;
+        }
+
+        public String getExecutable() {
+            return mExecutable;
+        }
+
+        public void setExecutable(String executable) {
+            mExecutable = executable;
+        }
+
+        public String getArguments() {
+            return mArguments;
+        }
+
+        public void setArguments(String arguments) {
+            mArguments = arguments;
+        }
+
+        public String getStdIn() {
+            return mStdIn;
+        }
+
+        public void setStdIn(String stdin) {
+            mStdIn = stdin;
+        }
+
+        public Map<String, String> getEnvironment() {
+            return Collections.unmodifiableMap(mEnvironment);
+        }
+
+        public void addEnvironment(String key, String value) {
+            mEnvironment.put(key, value);
+        }
+
+        public List<String> getParents() {
+            return Collections.unmodifiableList(mParents);
+        }
+
+        public void addParent(String parent) {
+            mParents.add(parent);
+        }
+
+        public Task getPostScript() {
+            return mPostScript;
+        }
+
+        public void setPostScript(Task postscript) {
+            mPostScript = postscript;
+        }
+    }
+}
@@ -22,6 +22,8 @@ import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogException;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
 import edu.isi.pegasus.planner.catalog.replica.classes.ReplicaStore;
+import edu.isi.pegasus.planner.catalog.replica.impl.JDBCRC;
+import edu.isi.pegasus.planner.catalog.replica.impl.NegativeLookupCache;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.ReplicaLocation;
 import edu.isi.pegasus.planner.common.PegasusProperties;
@@ -94,6 +96,15 @@ public class RCClient extends Toolkit {
     /** Indication of batch mode. */
     private boolean m_batch;
 
+    /** The number of threads to insert the mappings in batch mode with. */
+    private int m_threads;
+
+    /** The time in milliseconds taken to work on the input file in batch mode. */
+    private long m_batch_time;
+
+    /** The bag of objects used to connect to the replica catalog backend. */
+    private PegasusBag m_bag;
+
     /** The object holding all the properties pertaining to Pegasus. */
     protected PegasusProperties m_pegasus_props;
 
@@ -175,6 +186,8 @@ public class RCClient extends Toolkit {
         m_rc = null;
         m_prefs = new HashMap();
         m_batch = false;
+        m_threads = 1;
+        m_batch_time = 0;
         m_total_lines_worked = 0;
         m_total_lines_succ_worked = 0;
         // private logger
@@ -233,6 +246,19 @@ public class RCClient extends Toolkit {
                         + linefeed
                         + "                Each line in the file denotes one mapping of format <LFN> <PFN> [k=v [..]]."
                         + linefeed
+                        + " -t|--threads n number of threads to insert the mappings from the -i file with."
+                        + linefeed
+                        + "                Only supported for database backed catalogs. defaults to 1"
+                        + linefeed
+                        + " -s|--chunk-size n the number of lines of the -i|-d|-l file to work on together."
+                        + linefeed
+                        + "                defaults to the "
+                        + ReplicaCatalog.c_prefix
+                        + "."
+                        + ReplicaCatalog.BATCH_KEY
+                        + " property, or "
+                        + DEFAULT_CHUNK_FACTOR
+                        + linefeed
                         + " -l|--lookup fn the path to the file containing the LFN's to be looked up."
                         + linefeed
                         + "                Each line in the file denotes one LFN"
@@ -262,7 +288,7 @@ public class RCClient extends Toolkit {
      * @return an initialized array with the options
      */
     protected LongOpt[] generateValidOptions() {
-        LongOpt[] lo = new LongOpt[11];
+        LongOpt[] lo = new LongOpt[13];
 
         lo[0] = new LongOpt("help", LongOpt.NO_ARGUMENT, null, 'h');
         lo[1] = new LongOpt("version", LongOpt.NO_ARGUMENT, null, 'V');
@@ -275,6 +301,8 @@ public class RCClient extends Toolkit {
         lo[8] = new LongOpt("conf", LongOpt.REQUIRED_ARGUMENT, null, 'c');
         lo[9] = new LongOpt("meta", LongOpt.REQUIRED_ARGUMENT, null, 'm');
         lo[10] = new LongOpt("prefix", LongOpt.REQUIRED_ARGUMENT, null, 'P');
+        lo[11] = new LongOpt("threads", LongOpt.REQUIRED_ARGUMENT, null, 't');
+        lo[12] = new LongOpt("chunk-size", LongOpt.REQUIRED_ARGUMENT, null, 's');
         return lo;
     }
 
@@ -331,11 +359,11 @@ public class RCClient extends Toolkit {
                     ReplicaCatalog.c_prefix + "." + ReplicaCatalog.PREFIX_KEY, propertyPrefix);
         }
 
-        PegasusBag bag = new PegasusBag();
-        bag.add(PegasusBag.PEGASUS_LOGMANAGER, m_pegasus_logger);
+        m_bag = new PegasusBag();
+        m_bag.add(PegasusBag.PEGASUS_LOGMANAGER, m_pegasus_logger);
 
-        bag.add(PegasusBag.PEGASUS_PROPERTIES, properties);
-        m_rc = ReplicaFactory.loadInstance(bag, file);
+        m_bag.add(PegasusBag.PEGASUS_PROPERTIES, properties);
+        m_rc = ReplicaFactory.loadInstance(m_bag, file);
 
         // auto-disconnect, should we forget it, or die in an orderly fashion
         Runtime.getRuntime()
@@ -354,6 +382,14 @@ public class RCClient extends Toolkit {
                                                 "#Worked on total number of : "
                                                         + m_total_lines_worked
                                                         + " lines.");
+                                        System.err.println(
+                                                "#Throughput                : "
+                                                        + String.format(
+                                                                "%.1f",
+                                                                m_total_lines_succ_worked
+                                                                        * 1000.0
+                                                                        / Math.max(m_batch_time, 1))
+                                                        + " lines per second.");
                                     }
                                     // disconnect from the replica catalog
                                     close();
@@ -507,58 +543,9 @@ public class RCClient extends Toolkit {
 
         String c_argnum = "Illegal number of arguments, ignoring!";
         int result = 0;
-        // a map indexed by lfn
-        Map entries = new HashMap();
         if (command.equals("insert") || command.equals("delete")) {
-            for (Iterator it = lines.iterator(); it.hasNext(); ) {
-                List words = (List) it.next();
-                if (words.size() < 2) {
-                    m_log.warn(c_argnum);
-                } else {
-                    Iterator i = words.listIterator();
-                    String lfn = (String) i.next();
-                    ReplicaCatalogEntry rce = new ReplicaCatalogEntry(noquote((String) i.next()));
-
-                    while (i.hasNext()) {
-                        String attr = (String) i.next();
-                        int pos = attr.indexOf('=');
-                        if (pos == -1) {
-                            m_log.error(
-                                    "attribute \""
-                                            + attr
-                                            + "\" without assignment, "
-                                            + "assuming resource handle");
-                            rce.setResourceHandle(attr);
-                        } else {
-                            rce.setAttribute(
-                                    attr.substring(0, pos),
-                                    unescape(noquote(attr.substring(pos + 1))));
-                        }
-                    }
-                    rce.checkAndUpdateForPoolAttribute();
-
-                    // PM-1582 merge metadata attributes in to the rce
-                    if (this.mMetadataStore.containsLFN(lfn)) {
-                        ReplicaLocation rl = this.mMetadataStore.getReplicaLocation(lfn);
-                        if (rl.getPFNCount() != 1) {
-                            m_log.error(
-                                    "multiple metadata containing replica entries for "
-                                            + rl
-                                            + " entries");
-                        }
-                        rce.addAttribute(rl.getAllMetadata());
-                    }
-
-                    // check to see if the lfn is already there
-                    // not doing a contains check as most of
-                    // the times lfn is expected to be unique
-                    // add all the old pfn's to the existing collection
-                    Collection c = new ArrayList(1);
-                    c.add(rce);
-                    Object old = entries.put(lfn, c);
-                    if (old != null) c.addAll((Collection) old);
-                }
-            } // end of iteration over the lines
+            // a map indexed by lfn
+            Map entries = this.toEntries(lines);
             if (command.equals("insert")) {
                 result = m_rc.insert(entries);
                 m_log.info("inserted " + result + " entries");
@@ -605,6 +592,81 @@ public class RCClient extends Toolkit {
         return result;
     }
 
+    /**
+     * Submits the mappings for a lane of a bulk insert. The mappings are converted to entries on
+     * the worker thread of the lane.
+     *
+     * @param bulk the bulk insert
+     * @param lane the lane the mappings belong to
+     * @param lines the mappings, each a list of words
+     * @throws InterruptedException if interrupted while waiting for pending batches
+     */
+    private void submit(BulkInsert bulk, int lane, List lines) throws InterruptedException {
+        bulk.submit(lane, () -> toEntries(lines));
+    }
+
+    /**
+     * Converts a chunk of lines with mappings into entries for the replica catalog.
+     *
+     * @param lines is a list of lines with each line being a list of words that is split
+     *     appropriately
+     * @return a map indexed by the LFN. Each value is a collection of replica catalog entries for
+     *     the LFN.
+     */
+    private Map toEntries(List lines) {
+        String c_argnum = "Illegal number of arguments, ignoring!";
+        Map entries = new HashMap();
+        for (Iterator it = lines.iterator(); it.hasNext(); ) {
+            List words = (List) it.next();
+            if (words.size() < 2) {
+                m_log.warn(c_argnum);
+            } else {
+                Iterator i = words.listIterator();
+                String lfn = (String) i.next();
+                ReplicaCatalogEntry rce = new ReplicaCatalogEntry(noquote((String) i.next()));
+
+                while (i.hasNext()) {
+                    String attr = (String) i.next();
+                    int pos = attr.indexOf('=');
+                    if (pos == -1) {
+                        m_log.error(
+                                "attribute \""
+                                        + attr
+                                        + "\" without assignment, "
+                                        + "assuming resource handle");
+                        rce.setResourceHandle(attr);
+                    } else {
+                        rce.setAttribute(
+                                attr.substring(0, pos), unescape(noquote(attr.substring(pos + 1))));
+                    }
+                }
+                rce.checkAndUpdateForPoolAttribute();
+
+                // PM-1582 merge metadata attributes in to the rce
+                if (this.mMetadataStore.containsLFN(lfn)) {
+                    ReplicaLocation rl = this.mMetadataStore.getReplicaLocation(lfn);
+                    if (rl.getPFNCount() != 1) {
+                        m_log.error(
+                                "multiple metadata containing replica entries for "
+                                        + rl
+                                        + " entries");
+                    }
+                    rce.addAttribute(rl.getAllMetadata());
+                }
+
+                // check to see if the lfn is already there
+                // not doing a contains check as most of
+                // the times lfn is expected to be unique
+                // add all the old pfn's to the existing collection
+                Collection c = new ArrayList(1);
+                c.add(rce);
+                Object old = entries.put(lfn, c);
+                if (old != null) c.addAll((Collection) old);
+            }
+        } // end of iteration over the lines
+        return entries;
+    }
+
     /**
      * Works on the command contained within one line.
      *
@@ -855,11 +917,36 @@ public class RCClient extends Toolkit {
 
         // set the batch mode to true
         m_batch = true;
+        long start = System.currentTimeMillis();
+
+        // in parallel mode the lines are parsed on this thread, while the
+        // mappings are built and inserted by the pool of workers
+        BulkInsert bulk = null;
+        if (command.equals("insert") && m_threads > 1) {
+            if (this.supportsParallelInsert()) {
+                m_log.info("Inserting mappings with " + m_threads + " threads");
+                bulk =
+                        new BulkInsert(
+                                () -> ReplicaFactory.loadInstance(m_bag, m_conf_property_file),
+                                m_threads,
+                                m_pegasus_logger);
+            } else {
+                m_log.warn(
+                        "Parallel insert is only supported for database backed catalogs. "
+                                + "Inserting mappings with one thread");
+            }
+        }
 
         // contains the number of valid lines read so far in the current block
         int counter = 0;
         List mappings = new ArrayList(chunk);
 
+        // the mappings read, but not yet submitted, for each lane of the bulk insert
+        List[] lanes = new List[(bulk == null) ? 0 : bulk.getLanes()];
+        for (int lane = 0; lane < lanes.length; lane++) {
+            lanes[lane] = new ArrayList(chunk);
+        }
+
         while (true) {
             while (counter < chunk && (line = lnr.readLine()) != null) {
                 // do away with superflous whitespaces and comments
@@ -881,6 +968,39 @@ public class RCClient extends Toolkit {
                 mappings.add(words);
             }
 
+            if (bulk != null) {
+                // route the mappings to the lane of their lfn, so that the
+                // mappings for an lfn are never inserted concurrently. full
+                // batches are handed off to the workers, and a new list is
+                // required as the mappings are worked on asynchronously
+                try {
+                    for (Object mapping : mappings) {
+                        String lfn = (String) ((List) mapping).get(0);
+                        int lane = bulk.getLane(lfn);
+                        lanes[lane].add(mapping);
+                        if (lanes[lane].size() >= chunk) {
+                            this.submit(bulk, lane, lanes[lane]);
+                            lanes[lane] = new ArrayList(chunk);
+                        }
+                    }
+                    if (line == null) {
+                        for (int lane = 0; lane < lanes.length; lane++) {
+                            if (!lanes[lane].isEmpty()) {
+                                this.submit(bulk, lane, lanes[lane]);
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while inserting mappings", e);
+                }
+                mappings.clear();
+                m_log.debug("Submitted mappings till line " + m_total_lines_worked);
+                if (line == null) break;
+                counter = 0;
+                continue;
+            }
+
             // hand off the mappings for work
             try {
                 lines_succ_worked = work(mappings, command);
@@ -910,10 +1030,46 @@ public class RCClient extends Toolkit {
         // done
         lnr.close();
 
+        if (bulk != null) {
+            try {
+                m_total_lines_succ_worked += bulk.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while inserting mappings", e);
+            }
+            if (bulk.getFailedBatches() > 0) {
+                RCClient.log(
+                        Level.ERROR,
+                        "Unable to insert "
+                                + bulk.getFailedBatches()
+                                + " of "
+                                + bulk.getBatches()
+                                + " chunks");
+                result = 1;
+            }
+            m_log.info("Successfully worked on " + m_total_lines_succ_worked + " lines.");
+        }
+        m_batch_time = System.currentTimeMillis() - start;
+
         // telmi, if something went wrong
         if (result == 1) throw new RuntimeException("Errors while processing input file");
     }
 
+    /**
+     * Returns whether the replica catalog backend supports inserting mappings over multiple
+     * connections in parallel. Only database backed catalogs do, as the file based catalogs write
+     * back the whole file on close.
+     *
+     * @return boolean
+     */
+    private boolean supportsParallelInsert() {
+        ReplicaCatalog rc = m_rc;
+        if (rc instanceof NegativeLookupCache) {
+            rc = ((NegativeLookupCache) rc).getWrappedCatalog();
+        }
+        return rc instanceof JDBCRC;
+    }
+
     /**
      * Looks up for the conf property in the command line arguments passed to the RCClient
      *
@@ -1023,7 +1179,7 @@ public class RCClient extends Toolkit {
                     new Getopt(
                             me.m_application,
                             args,
-                            "f:hp:vVi:d:l:c:m:P:",
+                            "f:hp:vVi:d:l:c:m:P:t:s:",
                             me.generateValidOptions());
             opts.setOpterr(false);
 
@@ -1031,6 +1187,8 @@ public class RCClient extends Toolkit {
             String filename = null;
             String metaFiles = null;
             String property_prefix = null;
+            String threads = null;
+            String chunkSize = null;
             int pos, option = -1;
             boolean interactive = false;
             String command = null;
@@ -1075,6 +1233,12 @@ public class RCClient extends Toolkit {
                     case 'c': // conf
                         // do nothing
                         break;
+                    case 't': // threads
+                        threads = opts.getOptarg();
+                        break;
+                    case 's': // chunk-size
+                        chunkSize = opts.getOptarg();
+                        break;
                     case 'm': // meta
                         arg = opts.getOptarg();
                         if (arg != null) metaFiles = arg;
@@ -1088,6 +1252,12 @@ public class RCClient extends Toolkit {
 
             // Set verbosity level
             me.setLevel(level);
+            if (threads != null) {
+                me.m_threads = me.parsePositiveInt(threads, "threads");
+            }
+            if (chunkSize != null) {
+                me.m_chunk_factor = me.parsePositiveInt(chunkSize, "chunk-size");
+            }
             // now work with me
             me.connect(me.m_pegasus_props, property_prefix, me.m_conf_property_file);
             RCClient.log(Level.DEBUG, "connected to backend");
@@ -1167,6 +1337,31 @@ public class RCClient extends Toolkit {
         }
     }
 
+    /**
+     * Parses the value of a command line option that needs to be a positive integer.
+     *
+     * @param value the value
+     * @param option the name of the option
+     * @return the parsed value
+     */
+    private int parsePositiveInt(String value, String option) {
+        int result = -1;
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        if (result < 1) {
+            throw new RuntimeException(
+                    "Invalid value for --"
+                            + option
+                            + " "
+                            + value
+                            + ". Needs to be a positive integer");
+        }
+        return result;
+    }
+
     /** Sets the chunk factor for chunking up large input files. */
     private void determineChunkFactor() {
         int size = RCClient.DEFAULT_CHUNK_FACTOR;
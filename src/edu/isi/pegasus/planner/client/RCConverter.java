@@ -55,9 +55,12 @@ public class RCConverter extends Executable {
     /** REGEX Format */
     private static String REGEX_FORMAT = "Regex";
 
+    /** The compiled format, with a sorted memory mapped index of LFNs */
+    private static String INDEXED_FORMAT = "Indexed";
+
     /** The supported replica formats. */
     private static final String[] SUPPORTED_REPLICA_FORMATS = {
-        FILE_FORMAT, REGEX_FORMAT, YAML_FORMAT
+        FILE_FORMAT, REGEX_FORMAT, YAML_FORMAT, INDEXED_FORMAT
     };
 
     /** The input files. */
@@ -408,8 +411,9 @@ public class RCConverter extends Executable {
         text.append("\n Mandatory Options ");
         text.append("\n");
         text.append(
-                "\n -I |--iformat        the input format for the files . Can be [File, YAML] ");
-        text.append("\n -O |--oformat        the output format of the file. Can be [File, YAML] ");
+                "\n -I |--iformat        the input format for the files . Can be [File, YAML, Indexed] ");
+        text.append(
+                "\n -O |--oformat        the output format of the file. Can be [File, YAML, Indexed] ");
         text.append(
                 "\n -i |--input          comma separated list of input files to convert.This option is mandatory when input format is File or file ");
         text.append(
@@ -434,6 +438,8 @@ public class RCConverter extends Executable {
         text.append("\n Example Usage ");
         text.append("\n File to file format conversion :- ");
         text.append("  pegasus-rc-converter  -i cc.txt -I File -o rc.yml -v");
+        text.append("\n File to compiled indexed format conversion :- ");
+        text.append("  pegasus-rc-converter  -i rc.txt -I File -o rc.idx -O Indexed -v");
 
         System.out.println(text.toString());
     }
@@ -449,7 +455,9 @@ public class RCConverter extends Executable {
     private void convert(ReplicaStore output, String format, String filename) throws IOException {
         ReplicaCatalog catalog = null;
         PegasusProperties props = (PegasusProperties) mProps.clone();
-        if (format.equals(FILE_FORMAT) || format.equals(YAML_FORMAT)) {
+        if (format.equals(FILE_FORMAT)
+                || format.equals(YAML_FORMAT)
+                || format.equals(INDEXED_FORMAT)) {
 
             if (filename == null) {
                 throw new IOException(
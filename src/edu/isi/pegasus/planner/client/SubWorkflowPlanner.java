@@ -0,0 +1,422 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.common.logging.logger.Default;
+import edu.isi.pegasus.common.util.Version;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStoreCache;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plans the sub workflows referred to by the DAX jobs of a workflow within the JVM of the planner
+ * for the outer level workflow, instead of launching a pegasus-plan invocation for each of them in
+ * the prescript of the corresponding DAG job.
+ *
+ * <p>The sub workflows are planned on a bounded pool of threads, or on the calling thread if only
+ * one thread is to be used. A sub workflow is planned only after the sub workflows of its parent
+ * DAX jobs have been planned, as the cache files generated by the parents are passed to it. Each
+ * sub workflow is planned with its own properties, logger and catalogs, and logs to the same file
+ * as the prescript would have. The logger for the sub workflow is returned to the components that
+ * load the singleton logger on the thread planning it. The site catalog entries, and the
+ * transformations parsed from transformation catalog files are shared between the sub workflows
+ * planned by an instance. Copies are handed out, as the planner updates the catalogs it loads.
+ */
+public class SubWorkflowPlanner {
+
+    /** The logger for the outer level workflow. */
+    private final LogManager mLogger;
+
+    /** The maximum number of sub workflows planned at a time. */
+    private final int mThreads;
+
+    /** The sub workflows to be planned indexed by the ID of the DAX job, in the order added. */
+    private final Map<String, SubWorkflow> mSubWorkflows;
+
+    /** The site catalog entries loaded, indexed by the site catalog file they were loaded from. */
+    private final Map<File, List<SiteCatalogEntry>> mSiteCatalogEntries;
+
+    /** The transformations parsed from transformation catalog files. */
+    private final TransformationStoreCache mTransformationStores;
+
+    /** The files the sub workflows were planned from. Null if one of them is not file based. */
+    private Collection<File> mPlanSources;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param logger the logger for the outer level workflow
+     * @param threads the maximum number of sub workflows planned at a time
+     */
+    public SubWorkflowPlanner(LogManager logger, int threads) {
+        mLogger = logger;
+        mThreads = Math.max(1, threads);
+        mSubWorkflows = new LinkedHashMap();
+        mSiteCatalogEntries = new HashMap();
+        mTransformationStores = new TransformationStoreCache();
+        mPlanSources = new LinkedHashSet();
+    }
+
+    /**
+     * Adds a sub workflow to be planned. The sub workflows of the parent DAX jobs should already
+     * have been added.
+     *
+     * @param jobID the ID of the DAX job referring to the sub workflow
+     * @param options the options with which the sub workflow is planned
+     * @param conf the properties file with which the sub workflow is planned
+     * @param properties the properties that are passed to pegasus-plan as jvm options
+     * @param log the file to which the planner for the sub workflow logs
+     * @param plannerDirectory the directory from which the prescript would have been launched
+     * @param parents the IDs of the parent DAX jobs
+     */
+    public synchronized void add(
+            String jobID,
+            PlannerOptions options,
+            String conf,
+            Properties properties,
+            String log,
+            File plannerDirectory,
+            Collection<String> parents) {
+        for (String parent : parents) {
+            if (!mSubWorkflows.containsKey(parent)) {
+                throw new IllegalArgumentException(
+                        "Sub workflow for parent DAX job "
+                                + parent
+                                + " of "
+                                + jobID
+                                + " is not planned in process");
+            }
+        }
+        mSubWorkflows.put(
+                jobID,
+                new SubWorkflow(
+                        jobID,
+                        options,
+                        conf,
+                        properties,
+                        log,
+                        plannerDirectory,
+                        new LinkedList(parents)));
+    }
+
+    /**
+     * Returns whether the sub workflow for a DAX job is planned in process.
+     *
+     * @param jobID the ID of the DAX job
+     * @return boolean
+     */
+    public synchronized boolean contains(String jobID) {
+        return mSubWorkflows.containsKey(jobID);
+    }
+
+    /**
+     * Returns the number of sub workflows to be planned.
+     *
+     * @return the number of sub workflows
+     */
+    public synchronized int size() {
+        return mSubWorkflows.size();
+    }
+
+    /**
+     * Plans all the sub workflows added, and waits for the planning to complete.
+     *
+     * @throws RuntimeException if planning of any of the sub workflows fails
+     */
+    public void planAll() {
+        List<SubWorkflow> subWorkflows;
+        synchronized (this) {
+            subWorkflows = new LinkedList(mSubWorkflows.values());
+        }
+        if (subWorkflows.isEmpty()) {
+            return;
+        }
+
+        int threads = Math.min(mThreads, subWorkflows.size());
+        mLogger.log(
+                "Planning "
+                        + subWorkflows.size()
+                        + " sub workflows in process using "
+                        + threads
+                        + " threads",
+                LogManager.INFO_MESSAGE_LEVEL);
+
+        if (threads == 1) {
+            // parents are added before their children
+            for (SubWorkflow subWorkflow : subWorkflows) {
+                try {
+                    plan(subWorkflow);
+                } catch (Exception e) {
+                    throw new RuntimeException(
+                            "Unable to plan the sub workflow for DAX job "
+                                    + subWorkflow.mJobID
+                                    + " . Details in "
+                                    + subWorkflow.mLog,
+                            e);
+                }
+            }
+            return;
+        }
+
+        // the sub workflows are submitted in the order added, that ensures
+        // the parents are queued before the children and a child blocks
+        // only on parents already picked up by the pool
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final Map<String, Future<Void>> futures = new HashMap();
+        try {
+            for (final SubWorkflow subWorkflow : subWorkflows) {
+                final List<Future<Void>> parents = new LinkedList();
+                for (String parent : subWorkflow.mParents) {
+                    parents.add(futures.get(parent));
+                }
+                futures.put(
+                        subWorkflow.mJobID,
+                        executor.submit(
+                                () -> {
+                                    for (Future<Void> parent : parents) {
+                                        parent.get();
+                                    }
+                                    plan(subWorkflow);
+                                    return null;
+                                }));
+            }
+
+            for (SubWorkflow subWorkflow : subWorkflows) {
+                try {
+                    futures.get(subWorkflow.mJobID).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    while (cause instanceof ExecutionException) {
+                        cause = cause.getCause();
+                    }
+                    throw new RuntimeException(
+                            "Unable to plan the sub workflow for DAX job "
+                                    + subWorkflow.mJobID
+                                    + " . Details in "
+                                    + subWorkflow.mLog,
+                            cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while planning the sub workflows", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Plans a single sub workflow in the calling thread.
+     *
+     * @param subWorkflow the sub workflow to be planned
+     * @throws IOException in case of being unable to open the log file
+     */
+    protected void plan(SubWorkflow subWorkflow) throws IOException {
+        mLogger.log(
+                "Planning sub workflow for DAX job " + subWorkflow.mJobID + " in process",
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        long start = System.currentTimeMillis();
+
+        // the logger for the sub workflow is configured from the properties
+        // it is planned with, but logs to the prescript log file
+        PegasusProperties properties = PegasusProperties.getInstance(subWorkflow.mConf);
+        LogManager logger = LogManagerFactory.loadNonSingletonInstance(properties);
+        OutputStream log = new FileOutputStream(subWorkflow.mLog, true);
+        // components that load the singleton logger on this thread should
+        // log to the sub workflow log, and not to the log of the outer workflow
+        LogManager outer = LogManagerFactory.setThreadInstance(logger);
+        try {
+            if (logger instanceof Default) {
+                ((Default) logger).setOutputWriter(log);
+                ((Default) logger).setErrorWriter(log);
+            }
+            logger.logEventStart(
+                    "event.pegasus.planner", "planner.version", Version.instance().toString());
+
+            CPlanner planner = new CPlanner(logger);
+            try {
+                planner.planSubWorkflow(
+                        subWorkflow.mConf,
+                        subWorkflow.mProperties,
+                        subWorkflow.mOptions,
+                        subWorkflow.mPlannerDirectory,
+                        this);
+                this.addPlanSources(new File(subWorkflow.mConf), planner.getPlanSources());
+            } catch (RuntimeException e) {
+                logger.log(
+                        CPlanner.convertException(e, logger.getLevel()),
+                        LogManager.FATAL_MESSAGE_LEVEL);
+                throw e;
+            } finally {
+                logger.logEventCompletion();
+            }
+        } finally {
+            LogManagerFactory.setThreadInstance(outer);
+            log.close();
+        }
+
+        mLogger.log(
+                "Planned sub workflow for DAX job "
+                        + subWorkflow.mJobID
+                        + " in "
+                        + (System.currentTimeMillis() - start) / 1000.0
+                        + " seconds",
+                LogManager.INFO_MESSAGE_LEVEL);
+    }
+
+    /**
+     * Returns the files the sub workflows were planned from, such as their workflow files,
+     * properties and catalogs.
+     *
+     * @return the files, or null if one of them is not file based
+     */
+    public synchronized Collection<File> getPlanSources() {
+        return (mPlanSources == null) ? null : new LinkedList(mPlanSources);
+    }
+
+    /**
+     * Records the files a sub workflow was planned from.
+     *
+     * @param conf the properties file the sub workflow was planned with
+     * @param sources the other files, or null if one of them is not file based
+     */
+    private synchronized void addPlanSources(File conf, Collection<File> sources) {
+        if (mPlanSources == null) {
+            return;
+        }
+        if (sources == null) {
+            mPlanSources = null;
+            return;
+        }
+        mPlanSources.add(conf);
+        mPlanSources.addAll(sources);
+    }
+
+    /**
+     * Returns copies of the site catalog entries previously loaded from a site catalog file, by the
+     * planner for another sub workflow.
+     *
+     * @param source the site catalog file
+     * @return the cloned entries, else null if the catalog has not been loaded
+     */
+    public List<SiteCatalogEntry> getSiteCatalogEntries(File source) {
+        List<SiteCatalogEntry> entries;
+        synchronized (mSiteCatalogEntries) {
+            entries = mSiteCatalogEntries.get(source);
+        }
+        return (entries == null) ? null : cloneEntries(entries);
+    }
+
+    /**
+     * Records the site catalog entries loaded from a site catalog file, for the planners of the
+     * other sub workflows to reuse. The entries are cloned, as the planner updates the entries it
+     * loads.
+     *
+     * @param source the site catalog file
+     * @param entries the entries loaded from the file
+     */
+    public void addSiteCatalogEntries(File source, Collection<SiteCatalogEntry> entries) {
+        List<SiteCatalogEntry> copies = cloneEntries(entries);
+        synchronized (mSiteCatalogEntries) {
+            if (!mSiteCatalogEntries.containsKey(source)) {
+                mSiteCatalogEntries.put(source, copies);
+            }
+        }
+    }
+
+    /**
+     * Returns the cache of the transformations parsed from transformation catalog files, by the
+     * planners for the sub workflows.
+     *
+     * @return the cache
+     */
+    public TransformationStoreCache getTransformationStoreCache() {
+        return mTransformationStores;
+    }
+
+    /**
+     * Clones a collection of site catalog entries.
+     *
+     * @param entries the entries
+     * @return list of cloned entries
+     */
+    private List<SiteCatalogEntry> cloneEntries(Collection<SiteCatalogEntry> entries) {
+        List<SiteCatalogEntry> result = new LinkedList();
+        for (SiteCatalogEntry entry : entries) {
+            result.add((SiteCatalogEntry) entry.clone());
+        }
+        return result;
+    }
+
+    /** A sub workflow that needs to be planned. */
+    protected static class SubWorkflow {
+
+        /** The ID of the DAX job */
+        protected final String mJobID;
+
+        /** The options for the planner */
+        protected final PlannerOptions mOptions;
+
+        /** The properties file */
+        protected final String mConf;
+
+        /** The properties passed as jvm options */
+        protected final Properties mProperties;
+
+        /** The log file */
+        protected final String mLog;
+
+        /** The planner directory */
+        protected final File mPlannerDirectory;
+
+        /** The IDs of the parent DAX jobs */
+        protected final List<String> mParents;
+
+        SubWorkflow(
+                String jobID,
+                PlannerOptions options,
+                String conf,
+                Properties properties,
+                String log,
+                File plannerDirectory,
+                List<String> parents) {
+            mJobID = jobID;
+            mOptions = options;
+            mConf = conf;
+            mProperties = properties;
+            mLog = log;
+            mPlannerDirectory = plannerDirectory;
+            mParents = parents;
+        }
+    }
+}
@@ -133,9 +133,6 @@ public class AWSBatch extends Abstract {
             JsonFactory factory = new JsonFactory();
             JsonGenerator generator = factory.createGenerator(writer);
             generator.setPrettyPrinter(new DefaultPrettyPrinter());
-            // traverse throught the jobs to determine input/output files
-            // and merge the profiles for the jobs
-            int taskid = 1;
 
             /*
                 "jobDefinition": "XXXX",
@@ -161,39 +158,7 @@ public class AWSBatch extends Abstract {
 
             generator.writeStartObject();
             generator.writeArrayFieldStart("SubmitJob");
-            for (Iterator<GraphNode> it = job.nodeIterator(); it.hasNext(); taskid++) {
-                GraphNode node = it.next();
-                Job constitutentJob = (Job) node.getContent();
-
-                // handle stdin
-                if (constitutentJob instanceof AggregatedJob) {
-                    // slurp in contents of it's stdin
-                    throw new RuntimeException(
-                            "Clustering of clustered jobs not supported with "
-                                    + AWSBatch.COLLAPSE_LOGICAL_NAME);
-                }
-                generator.writeStartObject();
-                generator.writeStringField("jobName", constitutentJob.getID());
-                generator.writeStringField("executable", constitutentJob.getRemoteExecutable());
-                generator.writeStringField("arguments", constitutentJob.getArguments());
-
-                if (!constitutentJob.envVariables.isEmpty()) {
-                    generator.writeArrayFieldStart("environment");
-                    for (Iterator<String> envIT =
-                                    constitutentJob.envVariables.getProfileKeyIterator();
-                            envIT.hasNext(); ) {
-                        String key = envIT.next();
-                        generator.writeStartObject();
-                        generator.writeStringField("name", key);
-                        generator.writeStringField(
-                                "value", (String) constitutentJob.envVariables.get(key));
-                        generator.writeEndObject();
-                    }
-                    generator.writeEndArray();
-                }
-
-                generator.writeEndObject();
-            }
+            this.writeOutBatchJobs(job, generator);
             generator.writeEndArray();
             generator.writeEndObject();
             generator.close();
@@ -208,6 +173,49 @@ public class AWSBatch extends Abstract {
         return stdIn;
     }
 
+    /**
+     * Writes out the batch job for each constituent job of a graph. Constituent jobs that are
+     * clustered jobs themselves are expanded in place.
+     *
+     * @param job the graph for which the batch jobs are written out
+     * @param generator the generator for the input file
+     * @throws IOException in case of error while writing out
+     */
+    private void writeOutBatchJobs(Graph job, JsonGenerator generator) throws IOException {
+        for (Iterator<GraphNode> it = job.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            Job constitutentJob = (Job) node.getContent();
+
+            if (constitutentJob instanceof AggregatedJob) {
+                // recursive clustering case
+                AggregatedJob clusteredJob = (AggregatedJob) constitutentJob;
+                this.writeOutBatchJobs(clusteredJob, generator);
+                this.deleteInputFileForJobAggregator(clusteredJob);
+                continue;
+            }
+            generator.writeStartObject();
+            generator.writeStringField("jobName", constitutentJob.getID());
+            generator.writeStringField("executable", constitutentJob.getRemoteExecutable());
+            generator.writeStringField("arguments", constitutentJob.getArguments());
+
+            if (!constitutentJob.envVariables.isEmpty()) {
+                generator.writeArrayFieldStart("environment");
+                for (Iterator<String> envIT = constitutentJob.envVariables.getProfileKeyIterator();
+                        envIT.hasNext(); ) {
+                    String key = envIT.next();
+                    generator.writeStartObject();
+                    generator.writeStringField("name", key);
+                    generator.writeStringField(
+                            "value", (String) constitutentJob.envVariables.get(key));
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+
+            generator.writeEndObject();
+        }
+    }
+
     /**
      * Returns the logical name of the transformation that is used to collapse the jobs.
      *
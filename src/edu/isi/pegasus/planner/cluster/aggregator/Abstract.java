@@ -30,12 +30,11 @@ import edu.isi.pegasus.planner.code.GridStartFactory;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.namespace.ENV;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -578,88 +577,13 @@ public abstract class Abstract implements JobAggregator {
      * @return path to the input file
      */
     protected File writeOutInputFileForJobAggregator(AggregatedJob job) {
-        return this.writeOutInputFileForJobAggregator(job, 1);
-    }
-
-    /**
-     * Writes out the input file for the aggregated job
-     *
-     * @param job the aggregated job
-     * @return path to the input file
-     */
-    protected File writeOutInputFileForJobAggregator(AggregatedJob job, Integer taskid) {
         File stdin = null;
         try {
-            BufferedWriter writer;
-            String name = job.getID() + ".in";
-
             // PM-833 the .in file should be in the same directory where all job submit files go
             File directory = new File(this.mDirectory, job.getRelativeSubmitDirectory());
-            stdin = new File(directory, name);
-            writer = new BufferedWriter(new FileWriter(stdin));
-
-            // traverse throught the jobs to determine input/output files
-            // and merge the profiles for the jobs
-            // int taskid = 1;
-
-            for (Iterator it =
-                            this.topologicalOrderingRequired()
-                                    ? job.topologicalSortIterator()
-                                    : // we care about order
-                                    job.nodeIterator(); // dont care about order
-                    it.hasNext(); ) {
-                GraphNode node = (GraphNode) it.next();
-                Job constitutentJob = (Job) node.getContent();
-
-                // handle stdin
-                if (constitutentJob instanceof AggregatedJob) {
-                    // PM-817 recursive clustering case, we need to
-                    // write out merge_XXXX.in file for constitutent job
-                    // that is a clustered job itself
-                    File file =
-                            this.writeOutInputFileForJobAggregator(
-                                    (AggregatedJob) constitutentJob, taskid);
-                    // slurp in contents of it's stdin
-                    // taking care of the taskid increments across recursion
-                    BufferedReader reader = new BufferedReader(new FileReader(file));
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        // ignore comment out lines
-                        if (line.startsWith(MONITORD_COMMENT_MARKER)) {
-                            String[] split = line.split("\\s+");
-                            // System.out.println(Arrays.toString(split));
-                            // taskid = Integer.parseInt( split[1] );
-                            writer.write(getCommentString(taskid, split[2], split[3]) + "\n");
-                            continue;
-                        }
-                        writer.write(line);
-                        writer.write("\n");
-                        taskid++;
-                    }
-                    reader.close();
-                    // delete the previous stdin file
-                    file.delete();
-                } else {
-                    // write out the argument string to the
-                    // stdin file for the fat job
-
-                    // genereate the comment string that has the
-                    // taskid transformation derivation
-                    writer.write(getCommentString(constitutentJob, taskid) + "\n");
-
-                    // the arguments are no longer set as condor profiles
-                    // they are now set to the corresponding profiles in
-                    // the Condor Code Generator only.
-                    writer.write(
-                            constitutentJob.getRemoteExecutable()
-                                    + " "
-                                    + constitutentJob.getArguments()
-                                    + "\n");
-                    taskid++;
-                }
-            }
-
-            // closing the handle to the writer
+            stdin = new File(directory, job.getID() + ".in");
+            Writer writer = new BufferedWriter(new FileWriter(stdin));
+            this.writeOutTasksForJobAggregator(job, writer, 1);
             writer.close();
         } catch (IOException e) {
             mLogger.log(
@@ -670,4 +594,63 @@ public abstract class Abstract implements JobAggregator {
 
         return stdin;
     }
+
+    /**
+     * Writes out the tasks for the constituent jobs of an aggregated job to the input file of the
+     * aggregated job. Constituent jobs that are clustered jobs themselves are expanded in place,
+     * with the task ids continuing across the recursion.
+     *
+     * @param job the aggregated job
+     * @param writer the writer for the input file
+     * @param taskid the task id to assign to the first task
+     * @return the task id to assign to the next task
+     * @throws IOException in case of error while writing out
+     */
+    protected int writeOutTasksForJobAggregator(AggregatedJob job, Writer writer, int taskid)
+            throws IOException {
+        for (Iterator it =
+                        this.topologicalOrderingRequired()
+                                ? job.topologicalSortIterator()
+                                : // we care about order
+                                job.nodeIterator(); // dont care about order
+                it.hasNext(); ) {
+            GraphNode node = (GraphNode) it.next();
+            Job constitutentJob = (Job) node.getContent();
+
+            if (constitutentJob instanceof AggregatedJob) {
+                // PM-817 recursive clustering case
+                AggregatedJob clusteredJob = (AggregatedJob) constitutentJob;
+                taskid = this.writeOutTasksForJobAggregator(clusteredJob, writer, taskid);
+                this.deleteInputFileForJobAggregator(clusteredJob);
+                continue;
+            }
+
+            // genereate the comment string that has the
+            // taskid transformation derivation
+            writer.write(getCommentString(constitutentJob, taskid) + "\n");
+
+            // the arguments are no longer set as condor profiles
+            // they are now set to the corresponding profiles in
+            // the Condor Code Generator only.
+            writer.write(
+                    constitutentJob.getRemoteExecutable()
+                            + " "
+                            + constitutentJob.getArguments()
+                            + "\n");
+            taskid++;
+        }
+        return taskid;
+    }
+
+    /**
+     * Deletes the input file written out for a clustered job, that is a constituent of another
+     * clustered job. The tasks of the constituent clustered job are part of the input file of the
+     * enclosing clustered job, and the job itself is never submitted.
+     *
+     * @param job the constituent clustered job
+     */
+    protected void deleteInputFileForJobAggregator(AggregatedJob job) {
+        File directory = new File(this.mDirectory, job.getRelativeSubmitDirectory());
+        new File(directory, job.getID() + ".in").delete();
+    }
 }
@@ -22,13 +22,15 @@ import edu.isi.pegasus.planner.namespace.Globus;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * This class aggregates the smaller jobs in a manner such that they are launched at remote end, by
@@ -149,93 +151,9 @@ public class MPIExec extends Abstract {
             stdIn = new File(directory, name);
             writer = new BufferedWriter(new FileWriter(stdIn));
 
-            // traverse throught the jobs to determine input/output files
-            // and merge the profiles for the jobs
-            int taskid = 1;
-            for (Iterator<GraphNode> it = job.nodeIterator(); it.hasNext(); taskid++) {
-                GraphNode node = it.next();
-                Job constitutentJob = (Job) node.getContent();
-
-                // handle stdin
-                if (constitutentJob instanceof AggregatedJob) {
-                    // slurp in contents of it's stdin
-                    File file = new File(mDirectory, constitutentJob.getStdIn());
-                    BufferedReader reader = new BufferedReader(new FileReader(file));
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        // ignore comment out lines
-                        if (line.startsWith("#")) {
-                            continue;
-                        }
-                        writer.write(line);
-                        writer.write("\n");
-                        taskid++;
-                    }
-                    reader.close();
-                    // delete the previous stdin file
-                    file.delete();
-                } else {
-                    // write out the argument string to the
-                    // stdin file for the fat job
-
-                    // genereate the comment string that has the
-                    // taskid transformation derivation
-                    writer.write(getCommentString(constitutentJob, taskid) + "\n");
-
-                    // the id associated with the task is dependant on whether
-                    // the input file is generated for the whole workflow or
-                    // a clustered job. PM-660
-                    StringBuffer task = new StringBuffer();
-                    task.append("TASK")
-                            .append(" ")
-                            .append(
-                                    isClustered
-                                            ? constitutentJob.getLogicalID()
-                                            : // for file generation for a clustered job we want the
-                                            // ID in the DAX
-                                            constitutentJob
-                                                    .getID() // for file generation as part of PMC
-                                    // code generator we want the pegasus
-                                    // assigned job id
-                                    )
-                            .append(" ");
-
-                    // check and add if a job has requested any memory or cpus
-                    // JIRA PM-601, PM-620 and PM-621
-                    task.append(getMemoryRequirementsArgument(constitutentJob));
-                    task.append(getCPURequirementsArgument(constitutentJob));
-                    task.append(getPriorityArgument(constitutentJob));
-
-                    // PM-654 post add the arguments if any specified by pmc_arguments
-                    // This needs to go after all other arguments
-                    task.append(getExtraArguments(constitutentJob));
-
-                    task.append(constitutentJob.getRemoteExecutable())
-                            .append(" ")
-                            .append(constitutentJob.getArguments())
-                            .append("\n");
-                    writer.write(task.toString());
-                }
-            }
-
+            this.writeOutPMCTasks(job, writer, isClustered, true, 1);
             writer.write("\n");
-
-            // lets write out the edges
-            for (Iterator<GraphNode> it = job.nodeIterator(); it.hasNext(); ) {
-                GraphNode gn = (GraphNode) it.next();
-
-                // get a list of parents of the node
-                for (GraphNode child : gn.getChildren()) {
-                    StringBuffer edge = new StringBuffer();
-                    edge.append("EDGE")
-                            .append(" ")
-                            .append(gn.getID())
-                            .append(" ")
-                            .append(child.getID())
-                            .append("\n");
-                    writer.write(edge.toString());
-                }
-            }
+            this.writeOutPMCEdges(job, writer, isClustered);
 
             // closing the handle to the writer
             writer.close();
@@ -249,6 +167,149 @@ public class MPIExec extends Abstract {
         return stdIn;
     }
 
+    /**
+     * Writes out the TASK lines for the constituent jobs of a graph. Constituent jobs that are
+     * clustered jobs themselves are expanded in place, followed by the EDGE lines connecting their
+     * constituent jobs.
+     *
+     * @param job the graph for which the tasks are written out
+     * @param writer the writer for the input file
+     * @param isClustered a boolean indicating whether the graph belongs to a clustered job or not.
+     * @param comments whether to write out the comment string for each task
+     * @param taskid the task id to assign to the first task
+     * @return the task id to assign to the next task
+     * @throws IOException in case of error while writing out
+     */
+    private int writeOutPMCTasks(
+            Graph job, Writer writer, boolean isClustered, boolean comments, int taskid)
+            throws IOException {
+        for (Iterator<GraphNode> it = job.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            Job constitutentJob = (Job) node.getContent();
+
+            if (constitutentJob instanceof AggregatedJob) {
+                // recursive clustering case. the tasks of the constituent
+                // clustered job are written out without the comment strings
+                AggregatedJob clusteredJob = (AggregatedJob) constitutentJob;
+                taskid = this.writeOutPMCTasks(clusteredJob, writer, true, false, taskid);
+                writer.write("\n");
+                this.writeOutPMCEdges(clusteredJob, writer, true);
+                this.deleteInputFileForJobAggregator(clusteredJob);
+                continue;
+            }
+
+            // write out the argument string to the
+            // stdin file for the fat job
+
+            // genereate the comment string that has the
+            // taskid transformation derivation
+            if (comments) {
+                writer.write(getCommentString(constitutentJob, taskid) + "\n");
+            }
+
+            // the id associated with the task is dependant on whether
+            // the input file is generated for the whole workflow or
+            // a clustered job. PM-660
+            StringBuffer task = new StringBuffer();
+            task.append("TASK")
+                    .append(" ")
+                    .append(this.getPMCTaskID(constitutentJob, isClustered))
+                    .append(" ");
+
+            // check and add if a job has requested any memory or cpus
+            // JIRA PM-601, PM-620 and PM-621
+            task.append(getMemoryRequirementsArgument(constitutentJob));
+            task.append(getCPURequirementsArgument(constitutentJob));
+            task.append(getPriorityArgument(constitutentJob));
+
+            // PM-654 post add the arguments if any specified by pmc_arguments
+            // This needs to go after all other arguments
+            task.append(getExtraArguments(constitutentJob));
+
+            task.append(constitutentJob.getRemoteExecutable())
+                    .append(" ")
+                    .append(constitutentJob.getArguments())
+                    .append("\n");
+            writer.write(task.toString());
+            taskid++;
+        }
+        return taskid;
+    }
+
+    /**
+     * Writes out the EDGE lines for the edges in a graph. An edge to or from a constituent job that
+     * is a clustered job itself is expanded to edges from its leaf tasks, or to its root tasks.
+     *
+     * @param job the graph for which the edges are written out
+     * @param writer the writer for the input file
+     * @param isClustered a boolean indicating whether the graph belongs to a clustered job or not.
+     * @throws IOException in case of error while writing out
+     */
+    private void writeOutPMCEdges(Graph job, Writer writer, boolean isClustered)
+            throws IOException {
+        for (Iterator<GraphNode> it = job.nodeIterator(); it.hasNext(); ) {
+            GraphNode gn = (GraphNode) it.next();
+            if (gn.getChildren().isEmpty()) {
+                continue;
+            }
+            List<String> parents = new LinkedList();
+            this.collectPMCTaskIDs(gn, isClustered, true, parents);
+
+            for (GraphNode child : gn.getChildren()) {
+                List<String> children = new LinkedList();
+                this.collectPMCTaskIDs(child, isClustered, false, children);
+                for (String parent : parents) {
+                    for (String childID : children) {
+                        StringBuffer edge = new StringBuffer();
+                        edge.append("EDGE")
+                                .append(" ")
+                                .append(parent)
+                                .append(" ")
+                                .append(childID)
+                                .append("\n");
+                        writer.write(edge.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the ids of the tasks a node is written out as. For a clustered job these are the ids
+     * of its leaf or root tasks, expanding nested clustered jobs recursively.
+     *
+     * @param node the node
+     * @param isClustered a boolean indicating whether the node belongs to a clustered job or not.
+     * @param leaves true to collect the leaf tasks, false for the root tasks
+     * @param ids the collection to add the ids to
+     */
+    private void collectPMCTaskIDs(
+            GraphNode node, boolean isClustered, boolean leaves, Collection<String> ids) {
+        Job job = (Job) node.getContent();
+        if (!(job instanceof AggregatedJob)) {
+            ids.add(this.getPMCTaskID(job, isClustered));
+            return;
+        }
+        for (Iterator<GraphNode> it = ((AggregatedJob) job).nodeIterator(); it.hasNext(); ) {
+            GraphNode constituent = it.next();
+            if (leaves ? constituent.getChildren().isEmpty() : constituent.getParents().isEmpty()) {
+                this.collectPMCTaskIDs(constituent, true, leaves, ids);
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the TASK line for a job. The id depends on whether the input file is
+     * generated for a clustered job or for the whole workflow. PM-660
+     *
+     * @param job the job
+     * @param isClustered a boolean indicating whether the job belongs to a clustered job or not.
+     * @return the logical id in the DAX for a clustered job, else the pegasus assigned job id
+     */
+    private String getPMCTaskID(Job job, boolean isClustered) {
+        return isClustered ? job.getLogicalID() : job.getID();
+    }
+
     /**
      * Returns the logical name of the transformation that is used to collapse the jobs.
      *
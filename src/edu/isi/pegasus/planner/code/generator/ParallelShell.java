@@ -0,0 +1,242 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.code.generator;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.client.LocalExecutor;
+import edu.isi.pegasus.planner.code.CodeGeneratorException;
+import edu.isi.pegasus.planner.namespace.Dagman;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * A code generator that generates a shell script, that executes the workflow on the submit host
+ * using the LocalExecutor. Unlike the Shell code generator, where the jobs are executed one at a
+ * time in topological order, the LocalExecutor executes a job as soon as all its parents have
+ * finished, with at most <code>pegasus.code.generator.shell.maxjobs</code> jobs running at a time.
+ *
+ * <p>The jobs are written out to a JSON file alongside the script, that the LocalExecutor reads.
+ * The jobs are launched in the same directories, with the same environment and logged to the
+ * jobstate.log file in the same manner as the script generated by the Shell code generator.
+ *
+ * <p>To use this code generator set the following property
+ *
+ * <pre>
+ * pegasus.code.generator ParallelShell
+ * </pre>
+ */
+public class ParallelShell extends Shell {
+
+    /** The suffix for the file to which the jobs are written out. */
+    public static final String JOBS_FILE_SUFFIX = ".jobs.json";
+
+    /** The main class of the executor invoked by the generated script. */
+    public static final String EXECUTOR_CLASS = "edu.isi.pegasus.planner.client.LocalExecutor";
+
+    /** The jobs written out to the jobs file. */
+    private JsonArray mJobs;
+
+    /** The maximum number of jobs running at a time. */
+    private int mMaxJobs;
+
+    /** The path to the jobs file for the workflow being generated. */
+    private String mJobsFile;
+
+    /** The default constructor. */
+    public ParallelShell() {
+        super();
+    }
+
+    /**
+     * Initializes the Code Generator implementation.
+     *
+     * @param bag the bag of initialization objects.
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    public void initialize(PegasusBag bag) throws CodeGeneratorException {
+        super.initialize(bag);
+        mMaxJobs = mProps.getShellMaxJobs();
+    }
+
+    /**
+     * Generates the shell script and the jobs file for the workflow.
+     *
+     * @param dag the concrete workflow.
+     * @return handles to the shell script and the jobs file.
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    public Collection<File> generateCode(ADag dag) throws CodeGeneratorException {
+        mJobs = new JsonArray();
+        mJobsFile = this.getPathToJobsFile(dag);
+
+        Collection<File> result = super.generateCode(dag);
+
+        try (Writer writer = new FileWriter(mJobsFile)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(mJobs, writer);
+        } catch (IOException e) {
+            throw new CodeGeneratorException("Unable to write to file " + mJobsFile, e);
+        }
+        mLogger.log(
+                "Written out " + mJobs.size() + " jobs to " + mJobsFile,
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        result.add(new File(mJobsFile));
+        return result;
+    }
+
+    /**
+     * Adds a single job to the jobs file.
+     *
+     * @param dag the dag of which the job is a part of.
+     * @param job the <code>Job</code> object holding the information about that particular job.
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    public void generateCode(ADag dag, Job job) throws CodeGeneratorException {
+        mLogger.log("Generating code for job " + job.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+
+        String execDir = this.prepareJob(dag, job);
+        boolean constructed = this.enableJob(dag, job);
+
+        // PM-833 the job stdout and stderr go to the job submit directory
+        String submitDirectory = new File(job.getFileFullPath(mSubmitFileDir, ".in")).getParent();
+
+        JsonObject entry = new JsonObject();
+        entry.addProperty(LocalExecutor.ID_KEY, job.getID());
+        entry.addProperty(
+                LocalExecutor.DIRECTORY_KEY, job.runInWorkDirectory() ? execDir : submitDirectory);
+        entry.addProperty(LocalExecutor.SUBMIT_DIRECTORY_KEY, submitDirectory);
+        entry.addProperty(LocalExecutor.EXECUTABLE_KEY, job.getRemoteExecutable());
+        entry.addProperty(LocalExecutor.ARGUMENTS_KEY, this.getArguments(job));
+        String stdin = this.getStdIn(job, submitDirectory);
+        if (stdin != null) {
+            entry.addProperty(LocalExecutor.STDIN_KEY, stdin);
+        }
+
+        JsonObject env = new JsonObject();
+        for (Iterator it = job.envVariables.getProfileKeyIterator(); it.hasNext(); ) {
+            String key = (String) it.next();
+            env.addProperty(key, (String) job.envVariables.get(key));
+        }
+        entry.add(LocalExecutor.ENVIRONMENT_KEY, env);
+
+        if (constructed) {
+            JsonObject postscript = new JsonObject();
+            postscript.addProperty(LocalExecutor.DIRECTORY_KEY, submitDirectory);
+            postscript.addProperty(
+                    LocalExecutor.EXECUTABLE_KEY,
+                    (String) job.dagmanVariables.get(Dagman.POST_SCRIPT_KEY));
+            postscript.addProperty(LocalExecutor.ARGUMENTS_KEY, this.getPostScriptArguments(job));
+            entry.add(LocalExecutor.POSTSCRIPT_KEY, postscript);
+        }
+
+        JsonArray parents = new JsonArray();
+        for (GraphNode parent : dag.getNode(job.getID()).getParents()) {
+            parents.add(new JsonPrimitive(parent.getID()));
+        }
+        entry.add(LocalExecutor.PARENTS_KEY, parents);
+
+        mJobs.add(entry);
+    }
+
+    /**
+     * Returns the header for the generated shell script. The header sets up the environment to
+     * launch the LocalExecutor in the same manner as the pegasus-plan script.
+     *
+     * @param submitDirectory the submit directory for the workflow.
+     * @return the script header
+     */
+    protected String getScriptHeader(String submitDirectory) {
+        File bin = mProps.getBinDir();
+        String config =
+                (bin == null)
+                        ? "pegasus-config"
+                        : bin.getAbsolutePath() + File.separator + "pegasus-config";
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("#!/bin/bash")
+                .append("\n")
+                .append("#")
+                .append("\n")
+                .append("# executes the workflow in parallel shell mode ")
+                .append("\n")
+                .append("#")
+                .append("\n")
+                .append("\n");
+
+        sb.append("PEGASUS_CONFIG=")
+                .append(config)
+                .append("\n")
+                .append("eval `$PEGASUS_CONFIG --sh-dump`")
+                .append("\n")
+                .append(". $PEGASUS_SHARE_DIR/sh/java.sh")
+                .append("\n")
+                .append("\n");
+
+        sb.append("PEGASUS_SUBMIT_DIR")
+                .append("=")
+                .append(submitDirectory)
+                .append("\n")
+                .append("cd $PEGASUS_SUBMIT_DIR")
+                .append("\n")
+                .append("\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the footer for the generated shell script, that launches the LocalExecutor on the
+     * jobs file.
+     *
+     * @return the script footer.
+     */
+    protected String getScriptFooter() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("exec ${JAVA} $addon ")
+                .append(EXECUTOR_CLASS)
+                .append(" --jobs ")
+                .append(mJobsFile)
+                .append(" --max-jobs ")
+                .append(mMaxJobs)
+                .append(" --jobstate-log ")
+                .append(LocalExecutor.JOBSTATE_LOG);
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns path to the jobs file that is generated
+     *
+     * @param dag the workflow
+     * @return path
+     */
+    protected String getPathToJobsFile(ADag dag) {
+        StringBuilder file = new StringBuilder();
+        file.append(this.mSubmitFileDir)
+                .append(File.separator)
+                .append(dag.getLabel())
+                .append(JOBS_FILE_SUFFIX);
+        return file.toString();
+    }
+}
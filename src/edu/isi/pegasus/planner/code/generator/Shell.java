@@ -19,7 +19,6 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.util.DefaultStreamGobblerCallback;
 import edu.isi.pegasus.common.util.StreamGobbler;
 import edu.isi.pegasus.common.util.StreamGobblerCallback;
-import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
@@ -66,7 +65,7 @@ public class Shell extends Abstract {
     public static final String JOBSTATE_PRE_SCRIPT_PREFIX = "PRE_SCRIPT";
 
     /** The handle to the output file that is being written to. */
-    private PrintWriter mWriteHandle;
+    protected PrintWriter mWriteHandle;
 
     /** Handle to the Site Store. */
     private SiteStore mSiteStore;
@@ -168,6 +167,38 @@ public class Shell extends Abstract {
     public void generateCode(ADag dag, Job job) throws CodeGeneratorException {
         mLogger.log("Generating code for job " + job.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
 
+        String execDir = this.prepareJob(dag, job);
+        boolean constructed = this.enableJob(dag, job);
+
+        // PM-833 determine the job submit directory and use it for the
+        // calls to execute job and postscript
+        String submitDirectory = new File(job.getFileFullPath(mSubmitFileDir, ".in")).getParent();
+
+        // generate call to executeJob
+        writeString(generateCallToExecuteJob(job, execDir, submitDirectory));
+        if (constructed) {
+            // execute postscript and check for exitcode
+            writeString(generateCallToExecutePostScript(job, submitDirectory));
+            writeString(generateCallToCheckExitcode(job, JOBSTATE_POST_SCRIPT_PREFIX));
+        } else {
+            // no postscript generated
+            // generate the call to check_exitcode
+            // check_exitcode  test1 JOB $?
+            writeString(generateCallToCheckExitcode(job, JOBSTATE_JOB_PREFIX));
+        }
+        writeString("");
+    }
+
+    /**
+     * Prepares a job for execution on the submit host. Sets up the credentials, and the directory
+     * in which the job executes.
+     *
+     * @param dag the dag of which the job is a part of.
+     * @param job the job
+     * @return the directory in which the job is executed
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    protected String prepareJob(ADag dag, Job job) throws CodeGeneratorException {
         // sanity check
         if (!job.getSiteHandle().equals("local")) {
             throw new CodeGeneratorException(
@@ -208,8 +239,19 @@ public class Shell extends Abstract {
         job.condorVariables.construct("initialdir", execDir);
         job.condorVariables.construct("universe", "local");
 
-        SiteCatalogEntry site = mSiteStore.lookup(job.getSiteHandle());
+        return execDir;
+    }
 
+    /**
+     * Enables a job using the GridStart associated with it, and constructs the postscript for the
+     * job.
+     *
+     * @param dag the dag of which the job is a part of.
+     * @param job the job
+     * @return boolean indicating whether a postscript was constructed for the job
+     * @throws CodeGeneratorException in case of any error occuring code generation.
+     */
+    protected boolean enableJob(ADag dag, Job job) throws CodeGeneratorException {
         // JIRA PM-491 . Path to kickstart should not be passed
         // to the factory.
         GridStart gridStart = mGridStartFactory.loadGridStart(job, null);
@@ -229,25 +271,7 @@ public class Shell extends Abstract {
 
         // apply the appropriate POSTScript
         POSTScript ps = mGridStartFactory.loadPOSTScript(job, gridStart);
-        boolean constructed = ps.construct(job, Dagman.POST_SCRIPT_KEY);
-
-        // PM-833 determine the job submit directory and use it for the
-        // calls to execute job and postscript
-        String submitDirectory = new File(job.getFileFullPath(mSubmitFileDir, ".in")).getParent();
-
-        // generate call to executeJob
-        writeString(generateCallToExecuteJob(job, execDir, submitDirectory));
-        if (constructed) {
-            // execute postscript and check for exitcode
-            writeString(generateCallToExecutePostScript(job, submitDirectory));
-            writeString(generateCallToCheckExitcode(job, JOBSTATE_POST_SCRIPT_PREFIX));
-        } else {
-            // no postscript generated
-            // generate the call to check_exitcode
-            // check_exitcode  test1 JOB $?
-            writeString(generateCallToCheckExitcode(job, JOBSTATE_JOB_PREFIX));
-        }
-        writeString("");
+        return ps.construct(job, Dagman.POST_SCRIPT_KEY);
     }
 
     /**
@@ -299,15 +323,7 @@ public class Shell extends Abstract {
         // and arguments as condor profiles. Should be fixed.
         // This setting should happen only in Condor Generator
         String executable = (String) job.dagmanVariables.get(Dagman.POST_SCRIPT_KEY);
-        StringBuilder args = new StringBuilder();
-        String jobStdout = (String) job.dagmanVariables.get(Dagman.OUTPUT_KEY);
-        // PM-833 we take the basename as job is run in the exact submit directory
-        jobStdout = new File(jobStdout).getName();
-        args.append((String) job.dagmanVariables.get(Dagman.POST_SCRIPT_ARGUMENTS_KEY))
-                .append(" ")
-                .append(jobStdout);
-
-        String arguments = args.toString();
+        String arguments = this.getPostScriptArguments(job);
 
         // generate the call to execute job function
         // execute_job $jobstate test1 /tmp /bin/echo "Karan Vahi" "stdin file" "k=v" "g=m"
@@ -358,12 +374,7 @@ public class Shell extends Abstract {
                String arguments = (String)job.condorVariables.get( Condor.ARGUMENTS_KEY );
         */
         String executable = job.getRemoteExecutable();
-        String arguments =
-                job.getJobType() == Job.DAX_JOB
-                        ? job.getPreScriptPath() + job.getPreScriptArguments() + " --submit"
-                        : job.getArguments();
-        arguments = (arguments == null) ? "" : arguments;
-        // arguments = job.getJobType() == Job.DAX_JOB ? arguments + " --submit" : arguments;
+        String arguments = this.getArguments(job);
 
         String directory = job.runInWorkDirectory() ? scratchDirectory : submitDirectory;
 
@@ -389,16 +400,8 @@ public class Shell extends Abstract {
                 .append(" "); // the arguments
 
         // handle stdin for jobs
-        String stdin = job.getStdIn();
-        if (stdin == null || stdin.length() == 0) {
-            sb.append("\"\"");
-        } else {
-            if (stdin.startsWith(File.separator)) {
-                sb.append(stdin);
-            } else {
-                sb.append(submitDirectory).append(File.separator).append(stdin);
-            }
-        }
+        String stdin = this.getStdIn(job, submitDirectory);
+        sb.append(stdin == null ? "\"\"" : stdin);
         sb.append(" ");
 
         // add the environment variables
@@ -415,6 +418,54 @@ public class Shell extends Abstract {
         return sb.toString();
     }
 
+    /**
+     * Returns the arguments with which the executable for a job is invoked.
+     *
+     * @param job the job
+     * @return the arguments, empty string if the job has none
+     */
+    protected String getArguments(Job job) {
+        String arguments =
+                job.getJobType() == Job.DAX_JOB
+                        ? job.getPreScriptPath() + job.getPreScriptArguments() + " --submit"
+                        : job.getArguments();
+        arguments = (arguments == null) ? "" : arguments;
+        // arguments = job.getJobType() == Job.DAX_JOB ? arguments + " --submit" : arguments;
+        return arguments;
+    }
+
+    /**
+     * Returns the arguments with which the postscript for a job is invoked.
+     *
+     * @param job the job
+     * @return the arguments
+     */
+    protected String getPostScriptArguments(Job job) {
+        StringBuilder args = new StringBuilder();
+        String jobStdout = (String) job.dagmanVariables.get(Dagman.OUTPUT_KEY);
+        // PM-833 we take the basename as job is run in the exact submit directory
+        jobStdout = new File(jobStdout).getName();
+        args.append((String) job.dagmanVariables.get(Dagman.POST_SCRIPT_ARGUMENTS_KEY))
+                .append(" ")
+                .append(jobStdout);
+        return args.toString();
+    }
+
+    /**
+     * Returns the path to the file that is the stdin for a job.
+     *
+     * @param job the job
+     * @param submitDirectory the submit directory of the job
+     * @return the path, else null if the job has no stdin
+     */
+    protected String getStdIn(Job job, String submitDirectory) {
+        String stdin = job.getStdIn();
+        if (stdin == null || stdin.length() == 0) {
+            return null;
+        }
+        return stdin.startsWith(File.separator) ? stdin : submitDirectory + File.separator + stdin;
+    }
+
     /**
      * Returns the header for the generated shell script. The header contains the code block that
      * sources the common plan script from $PEGASUS_HOME/bin and initializes the jobstate.log file.
@@ -528,7 +579,7 @@ public class Shell extends Abstract {
      *
      * @param filename the name of the file to which you want the write handle.
      */
-    private void initializeWriteHandle(String filename) throws CodeGeneratorException {
+    protected void initializeWriteHandle(String filename) throws CodeGeneratorException {
         try {
             File f = new File(filename);
             mWriteHandle = new PrintWriter(new FileWriter(f));
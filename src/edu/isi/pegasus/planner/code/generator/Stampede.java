@@ -24,6 +24,7 @@ import edu.isi.pegasus.planner.classes.PegasusFile;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
 import edu.isi.pegasus.planner.code.CodeGenerator;
 import edu.isi.pegasus.planner.code.CodeGeneratorException;
+import edu.isi.pegasus.planner.common.PegasusDBAdmin;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.namespace.Dagman;
 import edu.isi.pegasus.planner.namespace.Metadata;
@@ -36,7 +37,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 /**
  * A Stampede Events Code Generator that generates events in netlogger format for the exectuable
@@ -59,8 +62,21 @@ public class Stampede implements CodeGenerator {
     /** The suffix to use while constructing the name of the metrics file */
     public static final String NETLOGGER_BP_FILE_SUFFIX = ".static.bp";
 
+    /**
+     * The suffix for the file written instead of the .static.bp file, when the events are loaded
+     * into the database. It contains the url of the database, and tells monitord to not load the
+     * static events and the workflow again.
+     */
+    public static final String STATIC_LOADED_FILE_SUFFIX = ".static.loaded";
+
     public static final String NETLOGGER_LOG_FORMATTER_IMPLEMENTOR = "Netlogger";
 
+    /** The value for the stampede output property to write the events to the .static.bp file. */
+    public static final String FILE_OUTPUT = "file";
+
+    /** The value for the stampede output property to load the events into the database. */
+    public static final String DATABASE_OUTPUT = "database";
+
     /** The attribute key for workflow id. */
     public static final String WORKFLOW_ID_KEY = "xwf.id";
 
@@ -196,23 +212,16 @@ public class Stampede implements CodeGenerator {
      */
     public Collection<File> generateCode(ADag dag) throws CodeGeneratorException {
 
-        PrintWriter writer = null;
-        File f = this.getStampedeFile(dag);
+        EventSink sink = this.getEventSink(dag);
         boolean generateCodeForExecutableWorkflow = dag.hasWorkflowRefinementStarted();
         String uuid = dag.getWorkflowUUID();
-        try {
-            writer = new PrintWriter(new BufferedWriter(new FileWriter(f, true)));
-        } catch (IOException ioe) {
-            throw new CodeGeneratorException(
-                    "Unable to intialize writer to stampede file " + f.getAbsolutePath(), ioe);
-        }
 
         if (generateCodeForExecutableWorkflow) {
             // events generation for executable workflow
             for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
                 GraphNode node = it.next();
                 Job job = (Job) node.getContent();
-                generateEventsForExecutableJob(writer, dag, job);
+                generateEventsForExecutableJob(sink, dag, job);
             }
 
             // monte wants the task map events generated separately
@@ -220,7 +229,7 @@ public class Stampede implements CodeGenerator {
             for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
                 GraphNode node = it.next();
                 Job job = (Job) node.getContent();
-                generateTaskMapEvents(writer, dag, job);
+                generateTaskMapEvents(sink, dag, job);
             }
 
             // write out the edge informatiom for the workflow
@@ -229,14 +238,12 @@ public class Stampede implements CodeGenerator {
 
                 // get a list of parents of the node
                 for (GraphNode child : gn.getChildren()) {
-                    mLogFormatter.addEvent(
-                            Stampede.JOB_EDGE_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, uuid);
+                    Map<String, String> attributes = new LinkedHashMap();
 
-                    mLogFormatter.add(Stampede.PARENT_JOB_ID_KEY, gn.getID());
-                    mLogFormatter.add(Stampede.CHILD_JOB_ID_KEY, child.getID());
+                    attributes.put(Stampede.PARENT_JOB_ID_KEY, gn.getID());
+                    attributes.put(Stampede.CHILD_JOB_ID_KEY, child.getID());
 
-                    writer.println(mLogFormatter.createLogMessage());
-                    mLogFormatter.popEvent();
+                    sink.addEvent(Stampede.JOB_EDGE_EVENT_NAME, uuid, attributes);
                 }
             }
 
@@ -245,7 +252,7 @@ public class Stampede implements CodeGenerator {
             for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
                 GraphNode node = it.next();
                 Job job = (Job) node.getContent();
-                generateEventsForDAXTask(writer, dag, job);
+                generateEventsForDAXTask(sink, dag, job);
             }
 
             // write out the edge informatiom for the workflow
@@ -254,17 +261,15 @@ public class Stampede implements CodeGenerator {
 
                 // get a list of parents of the node
                 for (GraphNode child : parent.getChildren()) {
-                    mLogFormatter.addEvent(
-                            Stampede.TASK_EDGE_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, uuid);
+                    Map<String, String> attributes = new LinkedHashMap();
 
-                    mLogFormatter.add(
+                    attributes.put(
                             Stampede.PARENT_TASK_ID_KEY,
                             ((Job) parent.getContent()).getLogicalID());
-                    mLogFormatter.add(
+                    attributes.put(
                             Stampede.CHILD_TASK_ID_KEY, ((Job) child.getContent()).getLogicalID());
 
-                    writer.println(mLogFormatter.createLogMessage());
-                    mLogFormatter.popEvent();
+                    sink.addEvent(Stampede.TASK_EDGE_EVENT_NAME, uuid, attributes);
                 }
             }
 
@@ -272,25 +277,23 @@ public class Stampede implements CodeGenerator {
             // for efficiency while loading in monitord we write them
             // after all wf and task events.
             // metadata events can only be written out after site selection.
-            // generateMetadataEventsForWF( dag, writer );
+            // generateMetadataEventsForWF( dag, sink );
 
         }
 
-        writer.close();
-
         Collection<File> result = new LinkedList();
-        result.add(f);
+        result.add(this.close(sink, dag));
         return result;
     }
 
     /**
      * Generates stampede events corresponding to jobs/tasks in the DAX
      *
-     * @param writer the writer stream to write the events too
+     * @param sink the sink to write the events to
      * @param workflow the workflow.
      * @param job the job for which to generate the events.
      */
-    protected void generateEventsForDAXTask(PrintWriter writer, ADag workflow, Job job)
+    protected void generateEventsForDAXTask(EventSink sink, ADag workflow, Job job)
             throws CodeGeneratorException {
 
         String wfuuid = workflow.getWorkflowUUID();
@@ -307,77 +310,76 @@ public class Stampede implements CodeGenerator {
                             + workflow.getAbstractWorkflowName());
         }
 
-        mLogFormatter.addEvent(Stampede.TASK_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
+        Map<String, String> attributes = new LinkedHashMap();
 
-        mLogFormatter.add(Stampede.TASK_ID_KEY, job.getLogicalID());
+        attributes.put(Stampede.TASK_ID_KEY, job.getLogicalID());
 
-        mLogFormatter.add(Stampede.TYPE_KEY, Integer.toString(job.getJobType()));
-        mLogFormatter.add(Stampede.TYPE_DESCRIPTION_KEY, job.getJobTypeDescription());
+        attributes.put(Stampede.TYPE_KEY, Integer.toString(job.getJobType()));
+        attributes.put(Stampede.TYPE_DESCRIPTION_KEY, job.getJobTypeDescription());
 
-        mLogFormatter.add(Stampede.TASK_TRANSFORMATION_KEY, job.getCompleteTCName());
+        attributes.put(Stampede.TASK_TRANSFORMATION_KEY, job.getCompleteTCName());
 
         // only add arguments attribute if arguments are not
         // null and length > 0 . Job constructor initializes arguments to ""
         if (job.getArguments() != null && job.getArguments().length() > 0) {
-            mLogFormatter.add(Stampede.ARGUMENTS_KEY, job.getArguments());
+            attributes.put(Stampede.ARGUMENTS_KEY, job.getArguments());
         }
 
-        writer.println(mLogFormatter.createLogMessage());
-        mLogFormatter.popEvent();
+        sink.addEvent(Stampede.TASK_EVENT_NAME, wfuuid, attributes);
     }
 
     /**
      * Generates stampede events corresponding to an executable job
      *
-     * @param writer the writer stream to write the events too
+     * @param sink the sink to write the events to
      * @param dag the workflow.
      * @param job the job for which to generate the events.
      */
-    protected void generateEventsForExecutableJob(PrintWriter writer, ADag dag, Job job)
+    protected void generateEventsForExecutableJob(EventSink sink, ADag dag, Job job)
             throws CodeGeneratorException {
 
         String wfuuid = dag.getWorkflowUUID();
-        mLogFormatter.addEvent(Stampede.JOB_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
+        Map<String, String> attributes = new LinkedHashMap();
 
-        mLogFormatter.add(Stampede.JOB_ID_KEY, job.getID());
+        attributes.put(Stampede.JOB_ID_KEY, job.getID());
         // PM-1244 generate the relative path for the submit file to be populated into stampede
         // database
-        mLogFormatter.add(Stampede.JOB_SUBMIT_FILE_KEY, job.getFileRelativePath(".sub"));
-        mLogFormatter.add(Stampede.TYPE_KEY, Integer.toString(job.getJobType()));
-        mLogFormatter.add(Stampede.TYPE_DESCRIPTION_KEY, job.getJobTypeDescription());
+        attributes.put(Stampede.JOB_SUBMIT_FILE_KEY, job.getFileRelativePath(".sub"));
+        attributes.put(Stampede.TYPE_KEY, Integer.toString(job.getJobType()));
+        attributes.put(Stampede.TYPE_DESCRIPTION_KEY, job.getJobTypeDescription());
 
-        mLogFormatter.add(Stampede.JOB_CLUSTERED_KEY, booleanToInt(job instanceof AggregatedJob));
-        mLogFormatter.add(
+        attributes.put(Stampede.JOB_CLUSTERED_KEY, booleanToInt(job instanceof AggregatedJob));
+        attributes.put(
                 Stampede.JOB_MAX_RETRIES_KEY,
                 job.dagmanVariables.containsKey(Dagman.RETRY_KEY)
                         ? (String) job.dagmanVariables.get(Dagman.RETRY_KEY)
                         : "0");
 
-        mLogFormatter.add(Stampede.JOB_EXECUTABLE_KEY, job.getRemoteExecutable());
+        attributes.put(Stampede.JOB_EXECUTABLE_KEY, job.getRemoteExecutable());
 
         // only add arguments attribute if arguments are not
         // null and length > 0 . Job constructor initializes arguments to ""
         if (job.getArguments() != null && job.getArguments().length() > 0) {
-            mLogFormatter.add(Stampede.ARGUMENTS_KEY, job.getArguments());
+            attributes.put(Stampede.ARGUMENTS_KEY, job.getArguments());
         }
 
         // determine count of jobs
         int taskCount = getTaskCount(job);
 
-        mLogFormatter.add(Stampede.JOB_TASK_COUNT_KEY, Integer.toString(taskCount));
-        writer.println(mLogFormatter.createLogMessage());
-        mLogFormatter.popEvent();
+        attributes.put(Stampede.JOB_TASK_COUNT_KEY, Integer.toString(taskCount));
+        sink.addEvent(Stampede.JOB_EVENT_NAME, wfuuid, attributes);
     }
 
     /**
      * Generates the task.map events that link the jobs in the DAX with the jobs in the executable
      * workflow
      *
-     * @param writer the writer stream to write the events too
+     * @param sink the sink to write the events to
      * @param dag the workflow.
      * @param job the job for which to generate the events.
      */
-    protected void generateTaskMapEvents(PrintWriter writer, ADag dag, Job job) {
+    protected void generateTaskMapEvents(EventSink sink, ADag dag, Job job)
+            throws CodeGeneratorException {
 
         String wfuuid = dag.getWorkflowUUID();
         // add task map events
@@ -405,19 +407,17 @@ public class Stampede implements CodeGenerator {
             }
 
             if (job instanceof AggregatedJob) {
-                generateTaskMapEvents(writer, dag, (AggregatedJob) job, job.getID());
+                generateTaskMapEvents(sink, dag, (AggregatedJob) job, job.getID());
             } else {
                 // create a single task.map event that maps compute job
                 // to the job in the DAX
-                mLogFormatter.addEvent(
-                        Stampede.TASK_MAP_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
+                Map<String, String> attributes = new LinkedHashMap();
 
                 // to be retrieved
-                mLogFormatter.add(Stampede.JOB_ID_KEY, job.getID());
-                mLogFormatter.add(Stampede.TASK_ID_KEY, job.getLogicalID());
+                attributes.put(Stampede.JOB_ID_KEY, job.getID());
+                attributes.put(Stampede.TASK_ID_KEY, job.getLogicalID());
 
-                writer.println(mLogFormatter.createLogMessage());
-                mLogFormatter.popEvent();
+                sink.addEvent(Stampede.TASK_MAP_EVENT_NAME, wfuuid, attributes);
             }
         }
     }
@@ -426,33 +426,32 @@ public class Stampede implements CodeGenerator {
      * Generates the task.map events that link the jobs in the DAX with the jobs in the executable
      * workflow
      *
-     * @param writer the writer stream to write the events too
+     * @param sink the sink to write the events to
      * @param dag the workflow.
      * @param job the clustered job for which to generate the events.
      * @param rootJobId the id of the root clustered job to associate the events with.
      */
     protected void generateTaskMapEvents(
-            PrintWriter writer, ADag dag, AggregatedJob job, String rootJobId) {
+            EventSink sink, ADag dag, AggregatedJob job, String rootJobId)
+            throws CodeGeneratorException {
         String wfuuid = dag.getWorkflowUUID();
         // go through the job constituents and task.map events
         for (Iterator<Job> cit = job.constituentJobsIterator(); cit.hasNext(); ) {
             Job constituentJob = cit.next();
             if (constituentJob instanceof AggregatedJob) {
                 // PM-817 recurse in the recursive clustering case to get the mappings generated.
-                this.generateTaskMapEvents(writer, dag, (AggregatedJob) constituentJob, rootJobId);
+                this.generateTaskMapEvents(sink, dag, (AggregatedJob) constituentJob, rootJobId);
             } else if (constituentJob.getJobType() == Job.COMPUTE_JOB) {
                 // create task.map event
                 // to the job in the DAX
-                mLogFormatter.addEvent(
-                        Stampede.TASK_MAP_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
+                Map<String, String> attributes = new LinkedHashMap();
 
                 // to be retrieved
-                mLogFormatter.add(Stampede.JOB_ID_KEY, rootJobId);
-                // mLogFormatter.add( "exec_job.id", job.getID() );
-                mLogFormatter.add(Stampede.TASK_ID_KEY, constituentJob.getLogicalID());
-                writer.println(mLogFormatter.createLogMessage());
-                // writer.write( "\n" );
-                mLogFormatter.popEvent();
+                attributes.put(Stampede.JOB_ID_KEY, rootJobId);
+                // attributes.put( "exec_job.id", job.getID() );
+                attributes.put(Stampede.TASK_ID_KEY, constituentJob.getLogicalID());
+
+                sink.addEvent(Stampede.TASK_MAP_EVENT_NAME, wfuuid, attributes);
 
             } else {
                 // for time being lets warn
@@ -473,49 +472,38 @@ public class Stampede implements CodeGenerator {
      */
     public Collection<File> generateMetadataEventsForWF(ADag workflow)
             throws CodeGeneratorException {
-        PrintWriter writer = null;
-        File f = this.getStampedeFile(workflow);
-        try {
-            writer = new PrintWriter(new BufferedWriter(new FileWriter(f, true)));
-        } catch (IOException ioe) {
-            throw new CodeGeneratorException(
-                    "Unable to intialize writer to stampede file " + f.getAbsolutePath(), ioe);
-        }
-        this.generateMetadataEventsForWF(workflow, writer);
-        writer.close();
+        EventSink sink = this.getEventSink(workflow);
+        this.generateMetadataEventsForWF(workflow, sink);
 
         Collection<File> result = new LinkedList();
-        result.add(f);
+        result.add(this.close(sink, workflow));
         return result;
     }
 
     /**
      * Generates metadata events for the workflow
      *
-     * @param writer
+     * @param sink the sink to write the events to
      * @param workflow
      */
-    protected void generateMetadataEventsForWF(ADag workflow, PrintWriter writer) {
+    protected void generateMetadataEventsForWF(ADag workflow, EventSink sink)
+            throws CodeGeneratorException {
         String wfuuid = workflow.getWorkflowUUID();
 
         // static.meta.start event to indicate start of metadata events
-        mLogFormatter.addEvent(Stampede.WF_META_START_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
-        writer.println(mLogFormatter.createLogMessage());
-        mLogFormatter.popEvent();
+        sink.addEvent(Stampede.WF_META_START_EVENT_NAME, wfuuid, new LinkedHashMap());
 
         if (!workflow.getAllMetadata().isEmpty()) {
             // generate workflow related metadata events.
             Metadata m = workflow.getAllMetadata();
             for (Iterator it = m.getProfileKeyIterator(); it.hasNext(); ) {
                 String key = (String) it.next();
-                mLogFormatter.addEvent(
-                        Stampede.WF_META_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
+                Map<String, String> attributes = new LinkedHashMap();
 
-                mLogFormatter.add(Stampede.METADATA_KEY, key);
-                mLogFormatter.add(Stampede.METADATA_VALUE_KEY, (String) m.get(key));
+                attributes.put(Stampede.METADATA_KEY, key);
+                attributes.put(Stampede.METADATA_VALUE_KEY, (String) m.get(key));
 
-                writer.println(mLogFormatter.createLogMessage());
-                mLogFormatter.popEvent();
+                sink.addEvent(Stampede.WF_META_EVENT_NAME, wfuuid, attributes);
             }
         }
 
@@ -529,43 +517,40 @@ public class Stampede implements CodeGenerator {
                 Metadata m = (Metadata) job.getMetadata();
                 for (Iterator it = m.getProfileKeyIterator(); it.hasNext(); ) {
                     String key = (String) it.next();
-                    mLogFormatter.addEvent(
-                            Stampede.TASK_META_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
-                    mLogFormatter.add(Stampede.TASK_ID_KEY, job.getLogicalID());
-                    mLogFormatter.add(Stampede.METADATA_KEY, key);
-                    mLogFormatter.add(Stampede.METADATA_VALUE_KEY, (String) m.get(key));
-
-                    writer.println(mLogFormatter.createLogMessage());
-                    mLogFormatter.popEvent();
+                    Map<String, String> attributes = new LinkedHashMap();
+                    attributes.put(Stampede.TASK_ID_KEY, job.getLogicalID());
+                    attributes.put(Stampede.METADATA_KEY, key);
+                    attributes.put(Stampede.METADATA_VALUE_KEY, (String) m.get(key));
+
+                    sink.addEvent(Stampede.TASK_META_EVENT_NAME, wfuuid, attributes);
                 }
 
                 // generate file metadata events
-                generateMetadataEventsForFiles(writer, workflow, job, job.getInputFiles(), false);
-                generateMetadataEventsForFiles(writer, workflow, job, job.getOutputFiles(), true);
+                generateMetadataEventsForFiles(sink, workflow, job, job.getInputFiles(), false);
+                generateMetadataEventsForFiles(sink, workflow, job, job.getOutputFiles(), true);
             }
         }
 
         // static.meta.end event to indicate start of metadata events
-        mLogFormatter.addEvent(Stampede.WF_META_END_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
-        writer.println(mLogFormatter.createLogMessage());
-        mLogFormatter.popEvent();
+        sink.addEvent(Stampede.WF_META_END_EVENT_NAME, wfuuid, new LinkedHashMap());
     }
 
     /**
      * Generates the required events for the files
      *
-     * @param writer the writer
+     * @param sink the sink to write the events to
      * @param workflow the workflow
      * @param job the job in the abstract workflow.
      * @param files
      * @param areOutput if files are output or not
      */
     protected void generateMetadataEventsForFiles(
-            PrintWriter writer,
+            EventSink sink,
             ADag workflow,
             Job job,
             Collection<PegasusFile> files,
-            boolean areOutput) {
+            boolean areOutput)
+            throws CodeGeneratorException {
         String wfuuid = workflow.getWorkflowUUID();
         for (Iterator<PegasusFile> pit = files.iterator(); pit.hasNext(); ) {
             PegasusFile file = pit.next();
@@ -575,25 +560,21 @@ public class Stampede implements CodeGenerator {
                 hasMetadata = true;
                 for (Iterator it = m.getProfileKeyIterator(); it.hasNext(); ) {
                     String key = (String) it.next();
-                    mLogFormatter.addEvent(
-                            Stampede.FILE_META_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
-                    mLogFormatter.add(Stampede.LFN_ID_KEY, file.getLFN());
-                    mLogFormatter.add(Stampede.METADATA_KEY, key);
-                    mLogFormatter.add(Stampede.METADATA_VALUE_KEY, (String) m.get(key));
-
-                    writer.println(mLogFormatter.createLogMessage());
-                    mLogFormatter.popEvent();
+                    Map<String, String> attributes = new LinkedHashMap();
+                    attributes.put(Stampede.LFN_ID_KEY, file.getLFN());
+                    attributes.put(Stampede.METADATA_KEY, key);
+                    attributes.put(Stampede.METADATA_VALUE_KEY, (String) m.get(key));
+
+                    sink.addEvent(Stampede.FILE_META_EVENT_NAME, wfuuid, attributes);
                 }
             }
             // generate the file map event if metadata was associated with the job
             // or the register flag is set to true
             if (hasMetadata || (areOutput && !file.getTransientRegFlag())) {
-                mLogFormatter.addEvent(
-                        Stampede.FILE_MAP_EVENT_NAME, Stampede.WORKFLOW_ID_KEY, wfuuid);
-                mLogFormatter.add(Stampede.TASK_ID_KEY, job.getLogicalID());
-                mLogFormatter.add(Stampede.LFN_ID_KEY, file.getLFN());
-                writer.println(mLogFormatter.createLogMessage());
-                mLogFormatter.popEvent();
+                Map<String, String> attributes = new LinkedHashMap();
+                attributes.put(Stampede.TASK_ID_KEY, job.getLogicalID());
+                attributes.put(Stampede.LFN_ID_KEY, file.getLFN());
+                sink.addEvent(Stampede.FILE_MAP_EVENT_NAME, wfuuid, attributes);
             }
         }
     }
@@ -659,6 +640,81 @@ public class Stampede implements CodeGenerator {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    /**
+     * Returns the sink to which the events for a workflow are written. By default the events are
+     * appended to the .static.bp file in the submit directory. If the property
+     * pegasus.code.generator.stampede.output is set to database, the events for a root workflow are
+     * loaded directly into its SQLite stampede database. The events for sub workflows are always
+     * written to the .static.bp file, as only monitord links them to the parent workflow.
+     *
+     * @param dag the workflow
+     * @return the sink
+     * @throws CodeGeneratorException
+     */
+    protected EventSink getEventSink(ADag dag) throws CodeGeneratorException {
+        if (Stampede.DATABASE_OUTPUT.equals(mProps.getStampedeEventsOutput())) {
+            String url = PegasusDBAdmin.getWorkflowDatabaseURL(mBag, dag);
+            if (!dag.getWorkflowUUID().equals(dag.getRootWorkflowUUID())) {
+                mLogger.log(
+                        "Writing stampede events for sub workflow "
+                                + dag.getLabel()
+                                + " to the .static.bp file",
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            } else if (!StampedeDatabase.isSupported(url)) {
+                mLogger.log(
+                        "Only SQLite workflow databases can be loaded by the planner. "
+                                + "Writing stampede events to the .static.bp file instead for "
+                                + url,
+                        LogManager.WARNING_MESSAGE_LEVEL);
+            } else {
+                if (!StampedeDatabase.getDatabaseFile(url).exists()) {
+                    new PegasusDBAdmin(mLogger).createWorkflowDatabase(url);
+                }
+                Braindump braindump = new Braindump();
+                braindump.initialize(mBag);
+                Map<String, String> entries = braindump.defaultBrainDumpEntries(dag);
+                entries.put(
+                        StampedeDatabase.DAG_FILE_KEY,
+                        Abstract.getDAGFilename(mPOptions, dag.getLabel(), dag.getIndex(), ".dag"));
+                return new StampedeDatabase(url, entries);
+            }
+        }
+        return new NetloggerEventSink(this.getStampedeFile(dag));
+    }
+
+    /**
+     * Closes a sink after all the events for a workflow have been added. For events loaded into the
+     * database, the .static.loaded file is written to the submit directory, so that monitord does
+     * not load them again when it starts tracking the workflow.
+     *
+     * @param sink the sink
+     * @param dag the workflow
+     * @return the .static.bp file, or the .static.loaded file if the events were loaded into the
+     *     database
+     * @throws CodeGeneratorException
+     */
+    private File close(EventSink sink, ADag dag) throws CodeGeneratorException {
+        sink.close();
+        if (!(sink instanceof StampedeDatabase)) {
+            return sink.getFile();
+        }
+        File loaded =
+                new File(
+                        mSubmitFileDir,
+                        Abstract.getDAGFilename(
+                                this.mPOptions,
+                                dag.getLabel(),
+                                dag.getIndex(),
+                                Stampede.STATIC_LOADED_FILE_SUFFIX));
+        try (PrintWriter writer = new PrintWriter(new FileWriter(loaded))) {
+            writer.println(((StampedeDatabase) sink).getURL());
+        } catch (IOException ioe) {
+            throw new CodeGeneratorException(
+                    "Unable to write out stampede file " + loaded.getAbsolutePath(), ioe);
+        }
+        return loaded;
+    }
+
     /**
      * Returns the file to which the events are to be written out.
      *
@@ -674,4 +730,69 @@ public class Stampede implements CodeGenerator {
                         dag.getIndex(),
                         Stampede.NETLOGGER_BP_FILE_SUFFIX));
     }
+
+    /** A sink for the static stampede events generated for a workflow. */
+    public interface EventSink {
+
+        /**
+         * Adds an event for a workflow.
+         *
+         * @param name the name of the event
+         * @param wfUUID the uuid of the workflow
+         * @param attributes the attributes of the event, in the order they are written out
+         * @throws CodeGeneratorException
+         */
+        public void addEvent(String name, String wfUUID, Map<String, String> attributes)
+                throws CodeGeneratorException;
+
+        /**
+         * Closes the sink, after all the events added have been written out.
+         *
+         * @throws CodeGeneratorException
+         */
+        public void close() throws CodeGeneratorException;
+
+        /**
+         * Returns the file to which the events are written out.
+         *
+         * @return the file
+         */
+        public File getFile();
+    }
+
+    /** Writes out the events in netlogger format to the .static.bp file. */
+    private class NetloggerEventSink implements EventSink {
+
+        private final File mFile;
+
+        private final PrintWriter mWriter;
+
+        NetloggerEventSink(File file) throws CodeGeneratorException {
+            mFile = file;
+            try {
+                mWriter = new PrintWriter(new BufferedWriter(new FileWriter(file, true)));
+            } catch (IOException ioe) {
+                throw new CodeGeneratorException(
+                        "Unable to intialize writer to stampede file " + file.getAbsolutePath(),
+                        ioe);
+            }
+        }
+
+        public void addEvent(String name, String wfUUID, Map<String, String> attributes) {
+            mLogFormatter.addEvent(name, Stampede.WORKFLOW_ID_KEY, wfUUID);
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                mLogFormatter.add(attribute.getKey(), attribute.getValue());
+            }
+            mWriter.println(mLogFormatter.createLogMessage());
+            mLogFormatter.popEvent();
+        }
+
+        public void close() {
+            mWriter.close();
+        }
+
+        public File getFile() {
+            return mFile;
+        }
+    }
 }
@@ -0,0 +1,527 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.code.generator;
+
+import edu.isi.pegasus.planner.code.CodeGeneratorException;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the static stampede events for a workflow directly into its SQLite stampede database,
+ * instead of writing them to the .static.bp file that monitord parses and loads event by event.
+ * Each event populates the same table and columns as the monitord loader does for it.
+ *
+ * <p>The rows are inserted with batched prepared statements, in a single transaction that is
+ * committed when the sink is closed. Lookups of the jobs, tasks and LFN's referred to by an event
+ * are done in the statements themselves, so that events of a type can be batched together. The
+ * workflow row is inserted from the braindump entries if not already present, and is picked up by
+ * monitord when it starts tracking the workflow.
+ *
+ * <p>Only root workflows with a SQLite database are supported. The workflow is always inserted as
+ * its own root, as only monitord can link a sub workflow to its parent. The statements are written
+ * for SQLite, and other databases are not connected to.
+ */
+public class StampedeDatabase implements Stampede.EventSink {
+
+    /** The JDBC driver for SQLite. */
+    public static final String SQLITE_DRIVER = "org.sqlite.JDBC";
+
+    /** The prefix for SQLAlchemy style SQLite urls used for the workflow database. */
+    public static final String SQLITE_URL_PREFIX = "sqlite:///";
+
+    /** The prefix for JDBC SQLite urls. */
+    public static final String JDBC_SQLITE_URL_PREFIX = "jdbc:sqlite:";
+
+    /** The maximum number of rows inserted in a single batch. */
+    public static final int BATCH_SIZE = 1000;
+
+    /** The key in the workflow entries for the name of the DAG file. */
+    public static final String DAG_FILE_KEY = "dag";
+
+    private static final String SELECT_WORKFLOW = "SELECT wf_id FROM workflow WHERE wf_uuid = ?";
+
+    private static final String INSERT_WORKFLOW =
+            "INSERT INTO workflow(wf_uuid, dag_file_name, timestamp, submit_hostname, submit_dir,"
+                    + " planner_arguments, user, grid_dn, planner_version, dax_label, dax_version,"
+                    + " dax_file) VALUES (?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    private static final String UPDATE_ROOT_WORKFLOW =
+            "UPDATE workflow SET root_wf_id = wf_id WHERE wf_id = ?";
+
+    private static final String INSERT_TASK =
+            "INSERT INTO task(wf_id, abs_task_id, transformation, argv, type_desc)"
+                    + " VALUES (?,?,?,?,?)";
+
+    private static final String INSERT_TASK_EDGE =
+            "INSERT INTO task_edge(wf_id, parent_abs_task_id, child_abs_task_id) VALUES (?,?,?)";
+
+    private static final String INSERT_JOB =
+            "INSERT INTO job(wf_id, exec_job_id, submit_file, type_desc, clustered, max_retries,"
+                    + " executable, argv, task_count) VALUES (?,?,?,?,?,?,?,?,?)";
+
+    private static final String INSERT_JOB_EDGE =
+            "INSERT INTO job_edge(wf_id, parent_exec_job_id, child_exec_job_id) VALUES (?,?,?)";
+
+    private static final String UPDATE_TASK_JOB =
+            "UPDATE task SET job_id = (SELECT job_id FROM job WHERE wf_id = ? AND exec_job_id = ?)"
+                    + " WHERE wf_id = ? AND abs_task_id = ?";
+
+    private static final String INSERT_WORKFLOW_META =
+            "INSERT INTO workflow_meta(wf_id, key, value) VALUES (?,?,?)";
+
+    private static final String INSERT_TASK_META =
+            "INSERT INTO task_meta(task_id, key, value) SELECT task_id, ?, ? FROM task"
+                    + " WHERE wf_id = ? AND abs_task_id = ?";
+
+    private static final String INSERT_LFN = "INSERT OR IGNORE INTO rc_lfn(lfn) VALUES (?)";
+
+    /** The metadata of a file is generated for each job using it, the last value is kept. */
+    private static final String INSERT_FILE_META =
+            "INSERT OR REPLACE INTO rc_meta(lfn_id, key, value) SELECT lfn_id, ?, ? FROM rc_lfn"
+                    + " WHERE lfn = ?";
+
+    private static final String INSERT_WORKFLOW_FILE =
+            "INSERT INTO workflow_files(wf_id, task_id, lfn_id) SELECT ?, t.task_id, l.lfn_id"
+                    + " FROM task t, rc_lfn l WHERE t.wf_id = ? AND t.abs_task_id = ? AND l.lfn = ?";
+
+    /** The file for the database. */
+    private final File mFile;
+
+    /** The url of the database, as passed to the planner. */
+    private String mURL;
+
+    /** The connection to the database. */
+    private final Connection mConnection;
+
+    /** The prepared statements indexed by the SQL. */
+    private final Map<String, PreparedStatement> mStatements;
+
+    /** The statements with rows pending execution, in the order the rows were first added. */
+    private final Set<PreparedStatement> mPending;
+
+    /** The number of rows in the current batch. */
+    private int mPendingCount;
+
+    /** The wf_id of the workflow in the database. */
+    private final long mWorkflowID;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param url the SQLAlchemy or JDBC url of the SQLite workflow database
+     * @param workflow the braindump entries for the workflow
+     * @throws CodeGeneratorException in case of being unable to connect to the database
+     */
+    public StampedeDatabase(String url, Map<String, String> workflow)
+            throws CodeGeneratorException {
+        this(StampedeDatabase.getDatabaseFile(url), connect(url), workflow);
+        mURL = url;
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param file the file for the database
+     * @param connection the connection to the database
+     * @param workflow the braindump entries for the workflow
+     * @throws CodeGeneratorException in case of being unable to insert the workflow
+     */
+    protected StampedeDatabase(File file, Connection connection, Map<String, String> workflow)
+            throws CodeGeneratorException {
+        mFile = file;
+        mConnection = connection;
+        mStatements = new HashMap<String, PreparedStatement>();
+        mPending = new LinkedHashSet<PreparedStatement>();
+        mPendingCount = 0;
+        try {
+            mConnection.setAutoCommit(false);
+            mWorkflowID = this.getWorkflowID(workflow);
+        } catch (SQLException e) {
+            this.abort();
+            throw new CodeGeneratorException(
+                    "Unable to insert workflow " + workflow.get(Braindump.UUID_KEY), e);
+        }
+    }
+
+    /**
+     * Returns whether a workflow database url can be loaded into.
+     *
+     * @param url the url
+     * @return boolean
+     */
+    public static boolean isSupported(String url) {
+        return url != null
+                && (url.startsWith(SQLITE_URL_PREFIX) || url.startsWith(JDBC_SQLITE_URL_PREFIX));
+    }
+
+    /**
+     * Returns the file for a SQLite database url.
+     *
+     * @param url the SQLAlchemy or JDBC url
+     * @return the file
+     */
+    public static File getDatabaseFile(String url) {
+        if (!isSupported(url)) {
+            throw new IllegalArgumentException("Not a SQLite database url " + url);
+        }
+        String path =
+                url.startsWith(SQLITE_URL_PREFIX)
+                        ? url.substring(SQLITE_URL_PREFIX.length())
+                        : url.substring(JDBC_SQLITE_URL_PREFIX.length());
+        int query = path.indexOf('?');
+        return new File(query == -1 ? path : path.substring(0, query));
+    }
+
+    /**
+     * Adds an event, mapping it to the rows the monitord loader would populate for it.
+     *
+     * @param name the name of the event
+     * @param wfUUID the uuid of the workflow
+     * @param attributes the attributes of the event
+     * @throws CodeGeneratorException in case of an error while inserting
+     */
+    public void addEvent(String name, String wfUUID, Map<String, String> attributes)
+            throws CodeGeneratorException {
+        try {
+            switch (name) {
+                case Stampede.TASK_EVENT_NAME:
+                    add(
+                            INSERT_TASK,
+                            mWorkflowID,
+                            attributes.get(Stampede.TASK_ID_KEY),
+                            attributes.get(Stampede.TASK_TRANSFORMATION_KEY),
+                            escape(attributes.get(Stampede.ARGUMENTS_KEY)),
+                            attributes.get(Stampede.TYPE_DESCRIPTION_KEY));
+                    break;
+
+                case Stampede.TASK_EDGE_EVENT_NAME:
+                    add(
+                            INSERT_TASK_EDGE,
+                            mWorkflowID,
+                            attributes.get(Stampede.PARENT_TASK_ID_KEY),
+                            attributes.get(Stampede.CHILD_TASK_ID_KEY));
+                    break;
+
+                case Stampede.JOB_EVENT_NAME:
+                    add(
+                            INSERT_JOB,
+                            mWorkflowID,
+                            attributes.get(Stampede.JOB_ID_KEY),
+                            attributes.get(Stampede.JOB_SUBMIT_FILE_KEY),
+                            attributes.get(Stampede.TYPE_DESCRIPTION_KEY),
+                            Integer.parseInt(attributes.get(Stampede.JOB_CLUSTERED_KEY)),
+                            Integer.parseInt(attributes.get(Stampede.JOB_MAX_RETRIES_KEY)),
+                            attributes.get(Stampede.JOB_EXECUTABLE_KEY),
+                            escape(attributes.get(Stampede.ARGUMENTS_KEY)),
+                            Integer.parseInt(attributes.get(Stampede.JOB_TASK_COUNT_KEY)));
+                    break;
+
+                case Stampede.JOB_EDGE_EVENT_NAME:
+                    add(
+                            INSERT_JOB_EDGE,
+                            mWorkflowID,
+                            attributes.get(Stampede.PARENT_JOB_ID_KEY),
+                            attributes.get(Stampede.CHILD_JOB_ID_KEY));
+                    break;
+
+                case Stampede.TASK_MAP_EVENT_NAME:
+                    add(
+                            UPDATE_TASK_JOB,
+                            mWorkflowID,
+                            attributes.get(Stampede.JOB_ID_KEY),
+                            mWorkflowID,
+                            attributes.get(Stampede.TASK_ID_KEY));
+                    break;
+
+                case Stampede.WF_META_EVENT_NAME:
+                    add(
+                            INSERT_WORKFLOW_META,
+                            mWorkflowID,
+                            attributes.get(Stampede.METADATA_KEY),
+                            attributes.get(Stampede.METADATA_VALUE_KEY));
+                    break;
+
+                case Stampede.TASK_META_EVENT_NAME:
+                    add(
+                            INSERT_TASK_META,
+                            attributes.get(Stampede.METADATA_KEY),
+                            attributes.get(Stampede.METADATA_VALUE_KEY),
+                            mWorkflowID,
+                            attributes.get(Stampede.TASK_ID_KEY));
+                    break;
+
+                case Stampede.FILE_META_EVENT_NAME:
+                    add(INSERT_LFN, attributes.get(Stampede.LFN_ID_KEY));
+                    add(
+                            INSERT_FILE_META,
+                            attributes.get(Stampede.METADATA_KEY),
+                            attributes.get(Stampede.METADATA_VALUE_KEY),
+                            attributes.get(Stampede.LFN_ID_KEY));
+                    break;
+
+                case Stampede.FILE_MAP_EVENT_NAME:
+                    add(INSERT_LFN, attributes.get(Stampede.LFN_ID_KEY));
+                    add(
+                            INSERT_WORKFLOW_FILE,
+                            mWorkflowID,
+                            mWorkflowID,
+                            attributes.get(Stampede.TASK_ID_KEY),
+                            attributes.get(Stampede.LFN_ID_KEY));
+                    break;
+
+                case Stampede.WF_META_START_EVENT_NAME:
+                case Stampede.WF_META_END_EVENT_NAME:
+                    // markers for monitord. nothing to load
+                    break;
+
+                default:
+                    this.abort();
+                    throw new CodeGeneratorException("Unsupported stampede event " + name);
+            }
+        } catch (SQLException e) {
+            this.abort();
+            throw new CodeGeneratorException(
+                    "Unable to load stampede event " + name + " into " + mFile, e);
+        }
+    }
+
+    /**
+     * Executes the pending batches and commits the transaction.
+     *
+     * @throws CodeGeneratorException in case of an error while committing
+     */
+    public void close() throws CodeGeneratorException {
+        try {
+            this.flush();
+            mConnection.commit();
+        } catch (SQLException e) {
+            this.abort();
+            throw new CodeGeneratorException("Unable to commit stampede events into " + mFile, e);
+        }
+        this.release();
+    }
+
+    /**
+     * Returns the file for the database.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Returns the url of the database.
+     *
+     * @return the url, or null if connected to directly
+     */
+    public String getURL() {
+        return mURL;
+    }
+
+    /**
+     * Returns the wf_id of the workflow, inserting the workflow if it does not exist.
+     *
+     * @param workflow the braindump entries for the workflow
+     * @return the wf_id
+     * @throws SQLException
+     */
+    private long getWorkflowID(Map<String, String> workflow) throws SQLException {
+        String uuid = workflow.get(Braindump.UUID_KEY);
+        Long id = this.lookupWorkflowID(uuid);
+        if (id != null) {
+            return id;
+        }
+
+        PreparedStatement ps = mConnection.prepareStatement(INSERT_WORKFLOW);
+        try {
+            bind(
+                    ps,
+                    uuid,
+                    workflow.get(DAG_FILE_KEY),
+                    System.currentTimeMillis() / 1000.0,
+                    workflow.get(Braindump.SUBMIT_HOSTNAME_KEY),
+                    workflow.get(Braindump.SUBMIT_DIR_KEY),
+                    escape(unquote(workflow.get(Braindump.PLANNER_ARGUMENTS_KEY))),
+                    workflow.get(Braindump.USER_KEY),
+                    workflow.get(Braindump.GRID_DN_KEY),
+                    workflow.get(Braindump.PLANNER_VERSION_KEY),
+                    workflow.get(Braindump.DAX_LABEL_KEY),
+                    workflow.get(Braindump.DAX_VERRSION_KEY),
+                    workflow.get("dax"));
+            ps.executeUpdate();
+        } finally {
+            ps.close();
+        }
+        id = this.lookupWorkflowID(uuid);
+        if (id == null) {
+            throw new SQLException("Workflow " + uuid + " not found after insert");
+        }
+
+        // only root workflows are loaded directly
+        ps = mConnection.prepareStatement(UPDATE_ROOT_WORKFLOW);
+        try {
+            bind(ps, id);
+            ps.executeUpdate();
+        } finally {
+            ps.close();
+        }
+        return id;
+    }
+
+    private Long lookupWorkflowID(String uuid) throws SQLException {
+        PreparedStatement ps = mConnection.prepareStatement(SELECT_WORKFLOW);
+        try {
+            bind(ps, uuid);
+            ResultSet rs = ps.executeQuery();
+            try {
+                return rs.next() ? rs.getLong(1) : null;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            ps.close();
+        }
+    }
+
+    /**
+     * Adds a row to the batch for a statement. The batches are executed in the order the statements
+     * were first added to, so that the rows referred to by a later event, such as the LFN for a
+     * rc.meta event or the job for a task map event, are inserted first.
+     *
+     * @param sql the statement
+     * @param values the values to bind
+     * @throws SQLException
+     */
+    private void add(String sql, Object... values) throws SQLException {
+        PreparedStatement ps = mStatements.get(sql);
+        if (ps == null) {
+            ps = mConnection.prepareStatement(sql);
+            mStatements.put(sql, ps);
+        }
+        bind(ps, values);
+        ps.addBatch();
+        mPending.add(ps);
+        if (++mPendingCount >= BATCH_SIZE) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Executes the pending batches.
+     *
+     * @throws SQLException
+     */
+    private void flush() throws SQLException {
+        for (PreparedStatement ps : mPending) {
+            ps.executeBatch();
+        }
+        mPending.clear();
+        mPendingCount = 0;
+    }
+
+    /** Rolls back the transaction and releases the connection. */
+    private void abort() {
+        try {
+            mConnection.rollback();
+        } catch (SQLException e) {
+            // ignore rollback problems
+        }
+        this.release();
+    }
+
+    /** Closes the statements and the connection. */
+    private void release() {
+        for (PreparedStatement ps : mStatements.values()) {
+            try {
+                ps.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+        mStatements.clear();
+        try {
+            mConnection.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Object... values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                ps.setNull(i + 1, Types.VARCHAR);
+            } else if (value instanceof String) {
+                ps.setString(i + 1, (String) value);
+            } else if (value instanceof Integer) {
+                ps.setInt(i + 1, (Integer) value);
+            } else if (value instanceof Long) {
+                ps.setLong(i + 1, (Long) value);
+            } else {
+                ps.setDouble(i + 1, ((Number) value).doubleValue());
+            }
+        }
+    }
+
+    /**
+     * Escapes the backslashes and the single quotes in arguments, as the monitord loader does
+     * before inserting them.
+     *
+     * @param argv the arguments, can be null
+     * @return the escaped arguments
+     */
+    private static String escape(String argv) {
+        return (argv == null) ? null : argv.replace("\\", "\\\\").replace("'", "\\'");
+    }
+
+    private static String unquote(String value) {
+        if (value != null
+                && value.length() >= 2
+                && value.startsWith("\"")
+                && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * Connects to a SQLite database.
+     *
+     * @param url the SQLAlchemy or JDBC url of the database
+     * @return the connection
+     * @throws CodeGeneratorException
+     */
+    private static Connection connect(String url) throws CodeGeneratorException {
+        String jdbc = JDBC_SQLITE_URL_PREFIX + getDatabaseFile(url).getAbsolutePath();
+        try {
+            Class.forName(SQLITE_DRIVER);
+            return DriverManager.getConnection(jdbc);
+        } catch (ClassNotFoundException e) {
+            throw new CodeGeneratorException(
+                    "Unable to load the SQLite driver " + SQLITE_DRIVER, e);
+        } catch (SQLException e) {
+            throw new CodeGeneratorException("Unable to connect to " + jdbc, e);
+        }
+    }
+}
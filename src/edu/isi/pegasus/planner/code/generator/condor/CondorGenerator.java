@@ -148,7 +148,7 @@ public class CondorGenerator extends Abstract {
     private static Map<String, String> mDefaultMaxJobsCategoryValues = null;
 
     /** Map that maps job type to corresponding condor concurrency limits */
-    private static Map<Integer, String> jobTypeToCondorConcurrencyLimits() {
+    private static synchronized Map<Integer, String> jobTypeToCondorConcurrencyLimits() {
         if (mJobTypeToCondorConcurrencyLimits == null) {
             // PM-933
             mJobTypeToCondorConcurrencyLimits = new HashMap();
@@ -175,7 +175,7 @@ public class CondorGenerator extends Abstract {
     }
 
     /** Map that maps job type to corresponding condor concurrency limits */
-    private static Map<String, String> defaultMaxJobsCategoryValues() {
+    private static synchronized Map<String, String> defaultMaxJobsCategoryValues() {
         if (mDefaultMaxJobsCategoryValues == null) {
             // PM-1212
             mDefaultMaxJobsCategoryValues = new HashMap();
@@ -69,7 +69,7 @@ public class CondorStyleFactory {
      *
      * @return a Map indexed by Pegasus styles, and values as names of implementing classes.
      */
-    private static Map<String, String> implementingClassNameTable() {
+    private static synchronized Map<String, String> implementingClassNameTable() {
         if (mImplementingClassNameTable == null) {
             mImplementingClassNameTable = new HashMap<String, String>(8);
             mImplementingClassNameTable.put(Pegasus.CONDOR_STYLE, CONDOR_STYLE_IMPLEMENTING_CLASS);
@@ -30,8 +30,10 @@ import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.DAXJob;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
 import edu.isi.pegasus.planner.client.CPlanner;
+import edu.isi.pegasus.planner.client.SubWorkflowPlanner;
 import edu.isi.pegasus.planner.code.GridStart;
 import edu.isi.pegasus.planner.code.GridStartFactory;
 import edu.isi.pegasus.planner.code.generator.DAXReplicaStore;
@@ -64,6 +66,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 /**
@@ -178,6 +181,9 @@ public class SUBDAXGenerator {
     /** The path to pegasus-lite-common.sh */
     private File mPegasusLiteCommon;
 
+    /** The LFN's of the files generated by the jobs in the workflow. */
+    private Set<String> mGeneratedLFNs;
+
     /** The default constructor. */
     public SUBDAXGenerator() {
         mNumFormatter = new DecimalFormat("0000");
@@ -206,6 +212,7 @@ public class SUBDAXGenerator {
         mCurrentDAGCacheFile =
                 this.getCacheFile(mPegasusPlanOptions, dag.getLabel(), dag.getIndex());
         mDAXJobIDToSubmitDirectoryCacheFile = new HashMap();
+        mGeneratedLFNs = null;
 
         mUser = mProps.getProperty("user.name");
         if (mUser == null) {
@@ -559,6 +566,31 @@ public class SUBDAXGenerator {
                         job, options, mDAG.getRootWorkflowUUID(), propertiesFile, log.toString());
         job.setPreScript(prescript[0], prescript[1]);
 
+        // check if the sub workflow can be planned in process right away
+        // instead of the prescript for the DAG job
+        SubWorkflowPlanner subWorkflowPlanner =
+                (SubWorkflowPlanner) mBag.get(PegasusBag.SUBWORKFLOW_PLANNER);
+        boolean plannedInProcess = false;
+        if (!GENERATE_SUBDAG_KEYWORD
+                && subWorkflowPlanner != null
+                && this.canPlanInProcess(job, options, subWorkflowPlanner)) {
+            Properties properties = options.getJVMProperties();
+            properties.setProperty(
+                    PegasusProperties.ROOT_WORKFLOW_UUID_PROPERTY_KEY, mDAG.getRootWorkflowUUID());
+            subWorkflowPlanner.add(
+                    job.getID(),
+                    (PlannerOptions) options.clone(),
+                    (options.getConfFile() == null) ? propertiesFile : options.getConfFile(),
+                    properties,
+                    log.toString(),
+                    new File(mPegasusPlanOptions.getSubmitDirectory()),
+                    this.getParentDAXJobs(job));
+            plannedInProcess = true;
+            mLogger.log(
+                    "Sub workflow for DAX job " + job.getID() + " will be planned in process",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+        }
+
         // job.setPreScript( prescript );
 
         // determine the path to the dag file that will be constructed
@@ -608,6 +640,11 @@ public class SUBDAXGenerator {
             // PM-846 add a +pegasus_execution_sites classad
             insertExecutionSitesClassAd(job, options.getExecutionSites());
 
+            if (plannedInProcess) {
+                // the sub workflow is already planned when the dag job runs
+                return dagJob;
+            }
+
             File wrapper =
                     constructPlannerPrescriptWrapper(
                             dagJob,
@@ -1689,6 +1726,73 @@ public class SUBDAXGenerator {
         return s;
     }
 
+    /**
+     * Returns whether the sub workflow for a DAX job can be planned in process, while the code for
+     * the workflow containing the DAX job is generated. That is the case only if the DAX file
+     * exists and is not generated by a job in the workflow, the sub workflows of all the parent DAX
+     * jobs are planned in process, and the sub workflow is not to be replanned on retries.
+     *
+     * @param job the DAX job
+     * @param options the options for the sub workflow
+     * @param planner the planner for the sub workflows planned in process
+     * @return boolean
+     */
+    protected boolean canPlanInProcess(
+            Job job, PlannerOptions options, SubWorkflowPlanner planner) {
+        if (mPegasusPlanOptions.getForceReplan() || options.getForceReplan()) {
+            return false;
+        }
+        if (!new File(options.getDAX()).exists()) {
+            return false;
+        }
+        String lfn = (job instanceof DAXJob) ? ((DAXJob) job).getDAXLFN() : null;
+        if (lfn != null && this.getGeneratedLFNs().contains(lfn)) {
+            return false;
+        }
+        for (String parent : this.getParentDAXJobs(job)) {
+            if (!planner.contains(parent)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the IDs of the parent DAX jobs of a job.
+     *
+     * @param job the job
+     * @return the IDs of the parent DAX jobs
+     */
+    private Set<String> getParentDAXJobs(Job job) {
+        Set<String> s = new HashSet();
+        GraphNode node = this.mDAG.getNode(job.getID());
+        for (GraphNode parent : node.getParents()) {
+            if (parent.getContent() instanceof DAXJob) {
+                s.add(parent.getID());
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Returns the LFN's of the files generated by the jobs in the workflow, computed the first time
+     * it is called.
+     *
+     * @return the set of LFN's
+     */
+    private Set<String> getGeneratedLFNs() {
+        if (mGeneratedLFNs == null) {
+            mGeneratedLFNs = new HashSet();
+            for (Iterator<GraphNode> it = mDAG.nodeIterator(); it.hasNext(); ) {
+                Job j = (Job) it.next().getContent();
+                for (PegasusFile output : j.getOutputFiles()) {
+                    mGeneratedLFNs.add(output.getLFN());
+                }
+            }
+        }
+        return mGeneratedLFNs;
+    }
+
     /**
      * Updates the job with a class add designating the execution sites
      *
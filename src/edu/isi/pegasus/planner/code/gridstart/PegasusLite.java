@@ -26,6 +26,7 @@ import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.catalog.transformation.Mapper;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
+import edu.isi.pegasus.planner.catalog.transformation.classes.Container;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.AggregatedJob;
 import edu.isi.pegasus.planner.classes.DAXJob;
@@ -47,7 +48,9 @@ import edu.isi.pegasus.planner.namespace.Namespace;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.refiner.DeployWorkerPackage;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
 import edu.isi.pegasus.planner.selector.ReplicaSelector;
+import edu.isi.pegasus.planner.selector.fileserver.FileServerSelectorFactory;
 import edu.isi.pegasus.planner.transfer.SLS;
 import edu.isi.pegasus.planner.transfer.sls.SLSFactory;
 import java.io.BufferedWriter;
@@ -163,6 +166,9 @@ public class PegasusLite implements GridStart {
     /** The object holding all the properties pertaining to Pegasus. */
     protected PegasusProperties mProps;
 
+    /** The selector for the file servers on the shared scratch of the staging site. */
+    protected FileServerSelector mFileServerSelector;
+
     /** The submit directory where the submit files are being generated for the workflow. */
     protected String mSubmitDir;
 
@@ -252,6 +258,12 @@ public class PegasusLite implements GridStart {
     /** Whether to do any integrity checking or not. */
     protected boolean mDoIntegrityChecking;
 
+    /**
+     * Whether a warning has been logged about container images not being cached, because of
+     * integrity checking being disabled.
+     */
+    protected boolean mWarnedContainerCache;
+
     /** integrity handler for containers * */
     protected Integrity mContainerIntegrityHandler;
 
@@ -269,6 +281,7 @@ public class PegasusLite implements GridStart {
         mPOptions = bag.getPlannerOptions();
         mSubmitDir = mPOptions.getSubmitDirectory();
         mProps = bag.getPegasusProperties();
+        mFileServerSelector = FileServerSelectorFactory.loadInstance(mProps);
         mGenerateLOF = mProps.generateLOFFiles();
         mTCHandle = bag.getHandleToTransformationCatalog();
 
@@ -713,7 +726,7 @@ public class PegasusLite implements GridStart {
             }
             stagingSiteServerForRetrieval =
                     stagingSiteEntry.selectHeadNodeScratchSharedFileServer(
-                            FileServer.OPERATION.get);
+                            FileServer.OPERATION.get, mFileServerSelector, job, null);
             if (stagingSiteServerForRetrieval == null) {
                 this.complainForHeadNodeFileServer(job.getID(), job.getStagingSiteHandle());
             }
@@ -861,6 +874,8 @@ public class PegasusLite implements GridStart {
                 sb.append('\n');
             }
 
+            // the container whose image is cached on the worker node, if any
+            Container cachedContainer = null;
             if (isCompute
                     && // PM-971 for non compute jobs we don't do any sls transfers
                     sls.needsSLSInputTransfers(job)) {
@@ -892,12 +907,26 @@ public class PegasusLite implements GridStart {
                 if (!containerFiles.isEmpty()) {
                     appendStderrFragment(sb, "Staging in container");
                     sb.append("# stage in container file ").append('\n');
+                    cachedContainer = this.getCachedContainer(job);
+                    if (cachedContainer != null) {
+                        // only transfer if not found in the worker node cache
+                        this.setupContainerCache(sb, job);
+                        sb.append("if ! container_cache_fetch ")
+                                .append(cachedContainer.getLFN())
+                                .append(" ")
+                                .append(cachedContainer.getCheckSum())
+                                .append("; then")
+                                .append('\n');
+                    }
                     sb.append(sls.invocationString(job, null));
                     sb.append(" 1>&2").append(" << 'EOF'").append('\n');
                     sb.append(
                             convertToTransferInputFormat(
                                     containerFiles, PegasusFile.LINKAGE.input));
                     sb.append("EOF").append('\n');
+                    if (cachedContainer != null) {
+                        sb.append("fi").append('\n');
+                    }
                     sb.append('\n');
                 }
 
@@ -933,6 +962,12 @@ public class PegasusLite implements GridStart {
                     appendStderrFragment(
                             sb, "Checking file integrity for transferred container files");
                     sb.append("# do file integrity checks").append('\n');
+                    if (cachedContainer != null) {
+                        // images from the cache were verified when added to it
+                        sb.append(
+                                        "if [ \"X$pegasus_lite_container_cache_hit\" != \"Xtrue\" ]; then")
+                                .append('\n');
+                    }
                     StringBuilder invocation = new StringBuilder();
                     String filesToVerify =
                             mContainerIntegrityHandler.addIntegrityCheckInvocation(
@@ -944,9 +979,23 @@ public class PegasusLite implements GridStart {
                         sb.append('\n');
                         sb.append("eof").append('\n');
                     }
+                    if (cachedContainer != null) {
+                        sb.append("fi").append('\n');
+                    }
                 }
             }
 
+            if (cachedContainer != null) {
+                // add the transferred and verified image to the worker node cache
+                sb.append("container_cache_store ")
+                        .append(cachedContainer.getLFN())
+                        .append(" ")
+                        .append(cachedContainer.getCheckSum())
+                        .append(" || true")
+                        .append('\n');
+                sb.append('\n');
+            }
+
             writer.print(sb.toString());
             writer.flush();
 
@@ -988,7 +1037,7 @@ public class PegasusLite implements GridStart {
 
                 FileServer stagingSiteServerForStore =
                         stagingSiteEntry.selectHeadNodeScratchSharedFileServer(
-                                FileServer.OPERATION.put);
+                                FileServer.OPERATION.put, mFileServerSelector, job, null);
                 if (stagingSiteServerForStore == null) {
                     this.complainForHeadNodeFileServer(job.getID(), job.getStagingSiteHandle());
                 }
@@ -1097,6 +1146,55 @@ public class PegasusLite implements GridStart {
         return shellWrapper;
     }
 
+    /**
+     * Returns the container for a job, if the container image is to be cached on the worker node.
+     * The image is cached only if a cache directory is associated with the job, and a checksum with
+     * the container, that the cache is keyed by. Since images fetched from the cache are not
+     * verified again, the image is cached only if integrity checking is enabled, so that only
+     * verified images are added to the cache.
+     *
+     * @param job the job
+     * @return the container, else null
+     */
+    protected Container getCachedContainer(Job job) {
+        Container c = job.getContainer();
+        if (c == null
+                || job.vdsNS.getStringValue(Pegasus.CONTAINER_CACHE_DIR_KEY) == null
+                || !c.hasCheckSum()) {
+            return null;
+        }
+        if (!mDoIntegrityChecking) {
+            if (!mWarnedContainerCache) {
+                mLogger.log(
+                        "Container images will not be cached on the worker nodes, as integrity checking is disabled. Ignoring profile "
+                                + Pegasus.CONTAINER_CACHE_DIR_KEY
+                                + " for job "
+                                + job.getID()
+                                + " and others",
+                        LogManager.WARNING_MESSAGE_LEVEL);
+                mWarnedContainerCache = true;
+            }
+            return null;
+        }
+        return c;
+    }
+
+    /**
+     * Appends the variables used by the container cache functions in pegasus-lite-common.sh
+     *
+     * @param sb the buffer to append to
+     * @param job the job
+     */
+    protected void setupContainerCache(StringBuffer sb, Job job) {
+        sb.append("pegasus_lite_container_cache_dir=")
+                .append(job.vdsNS.getStringValue(Pegasus.CONTAINER_CACHE_DIR_KEY))
+                .append('\n');
+        String maxsize = job.vdsNS.getStringValue(Pegasus.CONTAINER_CACHE_MAXSIZE_KEY);
+        if (maxsize != null) {
+            sb.append("pegasus_lite_container_cache_maxsize=").append(maxsize).append('\n');
+        }
+    }
+
     /**
      * Convers the collection of files into an input format suitable for the transfer executable
      *
@@ -35,7 +35,9 @@ import edu.isi.pegasus.planner.code.gridstart.Integrity;
 import edu.isi.pegasus.planner.code.gridstart.PegasusLite;
 import edu.isi.pegasus.planner.code.gridstart.container.ContainerShellWrapper;
 import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
 import edu.isi.pegasus.planner.selector.ReplicaSelector;
+import edu.isi.pegasus.planner.selector.fileserver.FileServerSelectorFactory;
 import edu.isi.pegasus.planner.transfer.SLS;
 import edu.isi.pegasus.planner.transfer.sls.SLSFactory;
 import java.io.BufferedReader;
@@ -66,6 +68,9 @@ public abstract class Abstract implements ContainerShellWrapper {
     /** The object holding all the properties pertaining to Pegasus. */
     protected PegasusProperties mProps;
 
+    /** The selector for the file servers on the shared scratch of the staging site. */
+    protected FileServerSelector mFileServerSelector;
+
     /** The submit directory where the submit files are being generated for the workflow. */
     protected String mSubmitDir;
 
@@ -137,6 +142,7 @@ public abstract class Abstract implements ContainerShellWrapper {
     public void initialize(PegasusBag bag, ADag dag) {
         mLogger = bag.getLogger();
         mProps = bag.getPegasusProperties();
+        mFileServerSelector = FileServerSelectorFactory.loadInstance(mProps);
         mPOptions = bag.getPlannerOptions();
         mSiteStore = bag.getHandleToSiteStore();
         mTCHandle = bag.getHandleToTransformationCatalog();
@@ -268,7 +274,7 @@ public abstract class Abstract implements ContainerShellWrapper {
             }
             stagingSiteServerForRetrieval =
                     stagingSiteEntry.selectHeadNodeScratchSharedFileServer(
-                            FileServer.OPERATION.get);
+                            FileServer.OPERATION.get, mFileServerSelector, job, null);
             if (stagingSiteServerForRetrieval == null) {
                 this.complainForHeadNodeFileServer(job.getID(), job.getStagingSiteHandle());
             }
@@ -379,7 +385,7 @@ public abstract class Abstract implements ContainerShellWrapper {
             }
             stagingSiteServerForRetrieval =
                     stagingSiteEntry.selectHeadNodeScratchSharedFileServer(
-                            FileServer.OPERATION.get);
+                            FileServer.OPERATION.get, mFileServerSelector, job, null);
             if (stagingSiteServerForRetrieval == null) {
                 this.complainForHeadNodeFileServer(job.getID(), job.getStagingSiteHandle());
             }
@@ -396,7 +402,7 @@ public abstract class Abstract implements ContainerShellWrapper {
 
             FileServer stagingSiteServerForStore =
                     stagingSiteEntry.selectHeadNodeScratchSharedFileServer(
-                            FileServer.OPERATION.put);
+                            FileServer.OPERATION.put, mFileServerSelector, job, null);
             if (stagingSiteServerForStore == null) {
                 this.complainForHeadNodeFileServer(job.getID(), job.getStagingSiteHandle());
             }
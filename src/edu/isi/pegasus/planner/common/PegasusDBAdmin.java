@@ -56,12 +56,12 @@ public class PegasusDBAdmin {
 
     private static enum DB_ADMIN_BACKEND {
         master,
+        workflow,
         jdbcrc
     };
     /** */
     public static void updateProperties(PegasusBag bag, ADag workflow) {
         PegasusProperties properties = bag.getPegasusProperties();
-        PlannerOptions options = bag.getPlannerOptions();
         String url = properties.getProperty(MASTER_DATABASE_PROPERTY_KEY);
         if (url == null) {
             // check for deprecated
@@ -85,7 +85,23 @@ public class PegasusDBAdmin {
         properties.setProperty(MASTER_DATABASE_PROPERTY_KEY, url);
 
         // update the workflow database url property
-        url = properties.getProperty(WORKFLOW_DATABASE_PROPERTY_KEY);
+        url = getWorkflowDatabaseURL(bag, workflow);
+        // set the property back
+        properties.setProperty(WORKFLOW_DATABASE_PROPERTY_KEY, url);
+    }
+
+    /**
+     * Returns the URL of the workflow database. If not specified in the properties, the default is
+     * the sqlite database in the submit directory named after the workflow label and index.
+     *
+     * @param bag the bag of initialization objects
+     * @param workflow the workflow
+     * @return the database url
+     */
+    public static String getWorkflowDatabaseURL(PegasusBag bag, ADag workflow) {
+        PegasusProperties properties = bag.getPegasusProperties();
+        PlannerOptions options = bag.getPlannerOptions();
+        String url = properties.getProperty(WORKFLOW_DATABASE_PROPERTY_KEY);
         if (url == null) {
             // check for deprecated
             url = properties.getProperty(WORKFLOW_DATABASE_DEPRECATED_PROPERTY_KEY);
@@ -114,8 +130,7 @@ public class PegasusDBAdmin {
                     .append(workflowDBBasename);
             url = sb.toString();
         }
-        // set the property back
-        properties.setProperty(WORKFLOW_DATABASE_PROPERTY_KEY, url);
+        return url;
     }
 
     private LogManager mLogger;
@@ -170,6 +185,20 @@ public class PegasusDBAdmin {
                 DB_ADMIN_COMMAND.create.name(), arguments.toString(), DB_ADMIN_BACKEND.jdbcrc);
     }
 
+    /**
+     * Calls out to the pegasus-db-admin tool to create a workflow database
+     *
+     * @param url the database url
+     * @return
+     */
+    public boolean createWorkflowDatabase(String url) {
+        StringBuilder arguments = new StringBuilder();
+        arguments.append("-t workflow ").append(url);
+
+        return this.checkDatabase(
+                DB_ADMIN_COMMAND.create.name(), arguments.toString(), DB_ADMIN_BACKEND.workflow);
+    }
+
     /**
      * Calls out to the pegasus-db-admin tool to check for jdbrc compatibility.
      *
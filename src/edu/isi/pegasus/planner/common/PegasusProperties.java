@@ -153,6 +153,43 @@ public class PegasusProperties implements Cloneable {
     /** Default properties that applies priorities to all kinds of transfer jobs. */
     public static final String ALL_TRANSFER_PRIORITY_PROPERTY_KEY = "pegasus.transfer.*.priority";
 
+    /** The property key to enable the reuse of previous plans. */
+    public static final String PLAN_CACHE_PROPERTY_KEY = "pegasus.plan.cache";
+
+    /** The property key for the directory holding the plan cache. */
+    public static final String PLAN_CACHE_DIRECTORY_PROPERTY_KEY = "pegasus.plan.cache.dir";
+
+    /** The property key for the maximum size of the plan cache in megabytes. */
+    public static final String PLAN_CACHE_MAX_SIZE_PROPERTY_KEY = "pegasus.plan.cache.maxsize";
+
+    /** The property key to hard link the files of a cached plan instead of copying them. */
+    public static final String PLAN_CACHE_LINK_PROPERTY_KEY = "pegasus.plan.cache.link";
+
+    /** The default maximum size of the plan cache in megabytes. */
+    public static final String DEFAULT_PLAN_CACHE_MAX_SIZE = "1024";
+
+    /** The property key to plan the sub workflows within the planner for the outer workflow. */
+    public static final String PLAN_SUBWORKFLOWS_IN_PROCESS_PROPERTY_KEY =
+            "pegasus.plan.subworkflows.inprocess";
+
+    /** The property key for the number of threads used to plan the sub workflows in process. */
+    public static final String PLAN_SUBWORKFLOWS_THREADS_PROPERTY_KEY =
+            "pegasus.plan.subworkflows.inprocess.threads";
+
+    /** The property key to load the site and transformation catalogs at the same time. */
+    public static final String CATALOG_PARALLEL_LOAD_PROPERTY_KEY = "pegasus.catalog.parallel.load";
+
+    /** The property key for the maximum number of jobs the parallel shell runs at a time. */
+    public static final String SHELL_MAXJOBS_PROPERTY_KEY = "pegasus.code.generator.shell.maxjobs";
+
+    /** The property key for the number of threads used to compute the transfers for the jobs. */
+    public static final String TRANSFER_ENGINE_THREADS_PROPERTY_KEY =
+            "pegasus.transfer.engine.threads";
+
+    /** The property key designating where the static stampede events are written to. */
+    public static final String STAMPEDE_OUTPUT_PROPERTY_KEY =
+            "pegasus.code.generator.stampede.output";
+
     /** The property key designated the root workflow uuid. */
     public static final String ROOT_WORKFLOW_UUID_PROPERTY_KEY = "pegasus.workflow.root.uuid";
 
@@ -1336,6 +1373,18 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.selector.replica");
     }
 
+    /**
+     * Returns the name of the selector to be used for selection amongst the various file servers
+     * associated with a directory on a site.
+     *
+     * <p>Referred to by the "pegasus.selector.fileserver" property.
+     *
+     * @return the name of the selector if the property is specified, else null
+     */
+    public String getFileServerSelector() {
+        return mProps.getProperty("pegasus.selector.fileserver");
+    }
+
     /**
      * Returns a comma separated list of sites, that are restricted in terms of data movement from
      * the site.
@@ -1888,6 +1937,148 @@ public class PegasusProperties implements Cloneable {
         return Boolean.parse(mProps.getProperty("pegasus.log.memory.usage"), false);
     }
 
+    /**
+     * Returns a boolean indicating whether to profile the phases of the planner, and write out the
+     * timings to the submit directory.
+     *
+     * <p>Referred to by the "pegasus.metrics.phases" property.
+     *
+     * @return boolean value specified in properties else false.
+     */
+    public boolean profilePlannerPhases() {
+        return Boolean.parse(mProps.getProperty("pegasus.metrics.phases"), false)
+                || this.logPlannerPhasesSummary();
+    }
+
+    /**
+     * Returns a boolean indicating whether to log a summary of the planner phases ranked by the
+     * time spent in them. Implies profiling of the planner phases.
+     *
+     * <p>Referred to by the "pegasus.metrics.phases.summary" property.
+     *
+     * @return boolean value specified in properties else false.
+     */
+    public boolean logPlannerPhasesSummary() {
+        return Boolean.parse(mProps.getProperty("pegasus.metrics.phases.summary"), false);
+    }
+
+    // PLAN CACHE RELATED PROPERTIES
+
+    /**
+     * Returns a boolean indicating whether the planner should reuse the submit directory of a
+     * previous plan, if the workflow, catalogs, properties and options are unchanged.
+     *
+     * <p>Referred to by the "pegasus.plan.cache" property.
+     *
+     * @return boolean value specified in properties else false.
+     */
+    public boolean usePlanCache() {
+        return Boolean.parse(mProps.getProperty(PegasusProperties.PLAN_CACHE_PROPERTY_KEY), false);
+    }
+
+    /**
+     * Returns the directory in which the plan cache is maintained.
+     *
+     * <p>Referred to by the "pegasus.plan.cache.dir" property.
+     *
+     * @return the directory specified in properties, else $HOME/.pegasus/plan-cache
+     */
+    public String getPlanCacheDirectory() {
+        return mProps.getProperty(
+                PegasusProperties.PLAN_CACHE_DIRECTORY_PROPERTY_KEY,
+                System.getProperty("user.home")
+                        + File.separator
+                        + ".pegasus"
+                        + File.separator
+                        + "plan-cache");
+    }
+
+    /**
+     * Returns a boolean indicating whether the files of a cached plan that need no replacements are
+     * hard linked into the submit directory, instead of being copied.
+     *
+     * <p>Referred to by the "pegasus.plan.cache.link" property.
+     *
+     * @return boolean value specified in properties else false.
+     */
+    public boolean linkPlanCacheFiles() {
+        return Boolean.parse(
+                mProps.getProperty(PegasusProperties.PLAN_CACHE_LINK_PROPERTY_KEY), false);
+    }
+
+    /**
+     * Returns the maximum size of the plan cache in megabytes. Least recently used plans are
+     * evicted once the cache grows beyond it.
+     *
+     * <p>Referred to by the "pegasus.plan.cache.maxsize" property.
+     *
+     * @return the value specified in properties, else DEFAULT_PLAN_CACHE_MAX_SIZE
+     * @see #DEFAULT_PLAN_CACHE_MAX_SIZE
+     */
+    public long getPlanCacheMaxSize() {
+        long value = Long.parseLong(PegasusProperties.DEFAULT_PLAN_CACHE_MAX_SIZE);
+        String st =
+                mProps.getProperty(
+                        PegasusProperties.PLAN_CACHE_MAX_SIZE_PROPERTY_KEY,
+                        PegasusProperties.DEFAULT_PLAN_CACHE_MAX_SIZE);
+        try {
+            value = Long.parseLong(st);
+        } catch (Exception e) {
+            // ignore malformed values from
+            // the property file
+        }
+        return value;
+    }
+
+    /**
+     * Returns a boolean indicating whether the transformation catalog is loaded in the background,
+     * while the site catalog is loaded at the start of planning.
+     *
+     * <p>Referred to by the "pegasus.catalog.parallel.load" property.
+     *
+     * @return boolean value specified in properties else true.
+     */
+    public boolean loadCatalogsInParallel() {
+        return Boolean.parse(
+                mProps.getProperty(PegasusProperties.CATALOG_PARALLEL_LOAD_PROPERTY_KEY), true);
+    }
+
+    /**
+     * Returns a boolean indicating whether the sub workflows whose DAX files exist at planning
+     * time, are planned within the planner for the outer level workflow instead of a separate
+     * pegasus-plan invocation in the prescript of the corresponding DAG jobs.
+     *
+     * <p>Referred to by the "pegasus.plan.subworkflows.inprocess" property.
+     *
+     * @return boolean value specified in properties else false.
+     */
+    public boolean planSubWorkflowsInProcess() {
+        return Boolean.parse(
+                mProps.getProperty(PegasusProperties.PLAN_SUBWORKFLOWS_IN_PROCESS_PROPERTY_KEY),
+                false);
+    }
+
+    /**
+     * Returns the number of threads used to plan the sub workflows in process.
+     *
+     * <p>Referred to by the "pegasus.plan.subworkflows.inprocess.threads" property.
+     *
+     * @return the value specified in properties, else 1
+     */
+    public int getSubWorkflowPlannerThreads() {
+        int value = 1;
+        String st = mProps.getProperty(PegasusProperties.PLAN_SUBWORKFLOWS_THREADS_PROPERTY_KEY);
+        try {
+            if (st != null) {
+                value = Math.max(1, Integer.parseInt(st));
+            }
+        } catch (Exception e) {
+            // ignore malformed values from
+            // the property file
+        }
+        return value;
+    }
+
     // SOME MISCELLANEOUS PROPERTIES
 
     /**
@@ -2031,6 +2222,64 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty("pegasus.code.generator", "condor");
     }
 
+    /**
+     * Returns the number of threads used to compute the transfers for the jobs in the workflow.
+     *
+     * <p>Referred to by the "pegasus.transfer.engine.threads" property.
+     *
+     * @return the value specified in properties, else the number of available processors
+     */
+    public int getTransferEngineThreads() {
+        int value = Runtime.getRuntime().availableProcessors();
+        String st = mProps.getProperty(PegasusProperties.TRANSFER_ENGINE_THREADS_PROPERTY_KEY);
+        try {
+            if (st != null) {
+                value = Math.max(1, Integer.parseInt(st));
+            }
+        } catch (Exception e) {
+            // ignore malformed values from
+            // the property file
+        }
+        return value;
+    }
+
+    /**
+     * Returns the maximum number of jobs that are run at a time, when the workflow is executed
+     * locally by the ParallelShell code generator.
+     *
+     * <p>Referred to by the "pegasus.code.generator.shell.maxjobs" property.
+     *
+     * @return the value specified in properties, else the number of available processors
+     */
+    public int getShellMaxJobs() {
+        int value = Runtime.getRuntime().availableProcessors();
+        String st = mProps.getProperty(PegasusProperties.SHELL_MAXJOBS_PROPERTY_KEY);
+        try {
+            if (st != null) {
+                value = Math.max(1, Integer.parseInt(st));
+            }
+        } catch (Exception e) {
+            // ignore malformed values from
+            // the property file
+        }
+        return value;
+    }
+
+    /**
+     * Returns where the static stampede events for the workflow are written to. The events are
+     * either written to the .static.bp file for monitord to load, or loaded directly into the
+     * workflow database.
+     *
+     * <p>Referred to by the "pegasus.code.generator.stampede.output" property.
+     *
+     * @return the value specified in the property file, else the default i.e file.
+     */
+    public String getStampedeEventsOutput() {
+        return mProps.getProperty(PegasusProperties.STAMPEDE_OUTPUT_PROPERTY_KEY, "file")
+                .trim()
+                .toLowerCase();
+    }
+
     /**
      * Returns the mode for parsing the dax while writing out the partitioned daxes.
      *
@@ -0,0 +1,653 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.common;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A content addressed cache of submit directories generated by the planner. A plan is keyed by a
+ * digest of everything that goes into planning a workflow: the workflow file, the catalog files,
+ * the properties and the planner options. Each entry holds a copy of the submit directory along
+ * with the values of run specific tokens (like the submit directory path and the workflow uuid).
+ * When a plan is reused, the tokens of the cached plan are replaced with the ones of the current
+ * run in the file names and contents of all text files, and the timestamps of the events in the
+ * netlogger files are set to the time the plan is reused. Files that need no replacements can be
+ * hard linked instead of copied.
+ *
+ * <p>An entry can also record the digests of files outside the submit directory, that were read
+ * while planning but are not part of the key, such as the workflow files and catalogs of sub
+ * workflows planned in process. The entry is reused only if they are unchanged.
+ *
+ * <p>The cache is bounded in size, and the least recently used entries are evicted first.
+ */
+public class PlanCache {
+
+    /** The token name for the absolute path to the submit directory */
+    public static final String SUBMIT_DIRECTORY_TOKEN = "submit.dir";
+
+    /** The token name for the relative execution directory */
+    public static final String EXECUTION_DIRECTORY_TOKEN = "exec.dir";
+
+    /** The token name for the workflow uuid */
+    public static final String WORKFLOW_UUID_TOKEN = "wf.uuid";
+
+    /** The token name for the root workflow uuid */
+    public static final String ROOT_WORKFLOW_UUID_TOKEN = "root.wf.uuid";
+
+    /** The token name for the timestamp of the workflow */
+    public static final String WORKFLOW_TIMESTAMP_TOKEN = "wf.timestamp";
+
+    /** The token name for the basename of the properties file in the submit directory */
+    public static final String PROPERTIES_FILE_TOKEN = "properties";
+
+    /** The name of the manifest file in each cache entry */
+    public static final String MANIFEST_FILE = "manifest.properties";
+
+    /** The name of the directory in each cache entry holding the submit directory contents */
+    public static final String SUBMIT_DIRECTORY = "submit";
+
+    /** The prefix for the tokens in the manifest */
+    private static final String TOKEN_PREFIX = "token.";
+
+    /** The prefix for the attributes in the manifest */
+    private static final String ATTRIBUTE_PREFIX = "attribute.";
+
+    /** The prefix for the digests of the files the plan depends on in the manifest */
+    private static final String DEPENDENCY_PREFIX = "dependency.";
+
+    /** The suffix of the netlogger files, whose event timestamps are updated on reuse */
+    private static final String NETLOGGER_FILE_SUFFIX = ".bp";
+
+    /** The pattern for the timestamp of an event in a netlogger file */
+    private static final Pattern NETLOGGER_TIMESTAMP = Pattern.compile("(?m)^ts=\\S+");
+
+    /** The format of the timestamps in the netlogger files */
+    private static final DateTimeFormatter NETLOGGER_TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'").withZone(ZoneOffset.UTC);
+
+    /** The key in the manifest for the size of the entry in bytes */
+    private static final String SIZE_KEY = "size";
+
+    /** The prefix for the temporary directories used while storing an entry */
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    /** The number of bytes inspected to determine whether a file is a text file */
+    private static final int TEXT_PROBE_LENGTH = 8192;
+
+    /** The directory holding the cache */
+    private final File mDirectory;
+
+    /** The maximum size of the cache in bytes */
+    private final long mMaxSize;
+
+    /** The handle to the logger */
+    private final LogManager mLogger;
+
+    /** Whether files that need no replacements are hard linked instead of copied on reuse */
+    private final boolean mLink;
+
+    /**
+     * The overloaded constructor. Cached files are copied on reuse.
+     *
+     * @param directory the directory holding the cache
+     * @param maxSize the maximum size of the cache in megabytes
+     * @param logger the logger to use
+     */
+    public PlanCache(File directory, long maxSize, LogManager logger) {
+        this(directory, maxSize, logger, false);
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param directory the directory holding the cache
+     * @param maxSize the maximum size of the cache in megabytes
+     * @param logger the logger to use
+     * @param link whether files that need no replacements are hard linked on reuse
+     */
+    public PlanCache(File directory, long maxSize, LogManager logger, boolean link) {
+        mDirectory = directory;
+        mMaxSize = maxSize * 1024 * 1024;
+        mLogger = logger;
+        mLink = link;
+    }
+
+    /**
+     * Copies a cached plan into the submit directory, replacing the tokens of the cached plan with
+     * the tokens passed. Files already existing in the submit directory are overwritten. A plan
+     * whose dependencies changed since it was stored is treated as not being in the cache.
+     *
+     * @param key the key for the plan
+     * @param submitDir the submit directory to populate
+     * @param tokens map of token names to their values for the current run
+     * @return the attributes stored with the plan, or null if the plan is not in the cache
+     * @throws IOException in case of error while copying the plan
+     */
+    public Map<String, String> materialize(String key, File submitDir, Map<String, String> tokens)
+            throws IOException {
+        File entry = new File(mDirectory, key);
+        File manifestFile = new File(entry, PlanCache.MANIFEST_FILE);
+        if (!manifestFile.exists()) {
+            mLogger.log("Plan cache miss for key " + key, LogManager.DEBUG_MESSAGE_LEVEL);
+            return null;
+        }
+
+        Properties manifest = new Properties();
+        try (InputStream is = new FileInputStream(manifestFile)) {
+            manifest.load(is);
+        }
+
+        // map the old token values to the new ones
+        Map<String, String> replacements = new HashMap();
+        Map<String, String> attributes = new HashMap();
+        for (String name : manifest.stringPropertyNames()) {
+            String value = manifest.getProperty(name);
+            if (name.startsWith(PlanCache.DEPENDENCY_PREFIX)) {
+                File dependency = new File(name.substring(PlanCache.DEPENDENCY_PREFIX.length()));
+                String digest = PlanCache.digest(dependency);
+                if (!value.equals(digest)) {
+                    mLogger.log(
+                            "Plan cache entry for key "
+                                    + key
+                                    + " is stale, as "
+                                    + dependency
+                                    + " changed",
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                    return null;
+                }
+            } else if (name.startsWith(PlanCache.TOKEN_PREFIX)) {
+                String current = tokens.get(name.substring(PlanCache.TOKEN_PREFIX.length()));
+                if (current != null && !value.isEmpty() && !value.equals(current)) {
+                    replacements.put(value, current);
+                }
+            } else if (name.startsWith(PlanCache.ATTRIBUTE_PREFIX)) {
+                attributes.put(name.substring(PlanCache.ATTRIBUTE_PREFIX.length()), value);
+            }
+        }
+        Replacer replacer = new Replacer(replacements);
+        String now = NETLOGGER_TIMESTAMP_FORMAT.format(Instant.now());
+
+        Path source = new File(entry, PlanCache.SUBMIT_DIRECTORY).toPath();
+        Path destination = submitDir.toPath();
+        List<Path> paths;
+        try (Stream<Path> stream = Files.walk(source)) {
+            paths = stream.collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            String relative = replacer.replace(source.relativize(path).toString());
+            Path target = destination.resolve(relative);
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectories(target);
+            } else if (Files.isSymbolicLink(path)) {
+                Files.deleteIfExists(target);
+                Files.createSymbolicLink(
+                        target,
+                        new File(replacer.replace(Files.readSymbolicLink(path).toString()))
+                                .toPath());
+            } else {
+                byte[] contents = Files.readAllBytes(path);
+                String text =
+                        isText(contents) ? new String(contents, StandardCharsets.UTF_8) : null;
+                String replaced = (text == null) ? null : replacer.replace(text);
+                if (replaced != null && path.toString().endsWith(NETLOGGER_FILE_SUFFIX)) {
+                    replaced =
+                            NETLOGGER_TIMESTAMP
+                                    .matcher(replaced)
+                                    .replaceAll(Matcher.quoteReplacement("ts=" + now));
+                }
+                if (replaced != null && !replaced.equals(text)) {
+                    // never write through a link to a cached file
+                    Files.deleteIfExists(target);
+                    Files.write(target, replaced.getBytes(StandardCharsets.UTF_8));
+                } else if (mLink && link(path, target)) {
+                    // the link shares the permissions of the cached file
+                    continue;
+                } else {
+                    Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                // preserve the permissions of executables like pre scripts
+                target.toFile().setExecutable(path.toFile().canExecute(), false);
+            }
+        }
+
+        // mark the entry as recently used
+        entry.setLastModified(System.currentTimeMillis());
+        mLogger.log(
+                "Plan cache hit for key " + key + ". Materialized plan in " + submitDir,
+                LogManager.INFO_MESSAGE_LEVEL);
+        return attributes;
+    }
+
+    /**
+     * Stores the contents of a submit directory in the cache, and evicts least recently used
+     * entries if the cache grows too large. Failures are logged and do not fail the planner.
+     *
+     * @param key the key for the plan
+     * @param submitDir the submit directory to store
+     * @param tokens map of token names to their values for the current run
+     * @param attributes additional attributes to store with the plan
+     */
+    public void store(
+            String key,
+            File submitDir,
+            Map<String, String> tokens,
+            Map<String, String> attributes) {
+        this.store(key, submitDir, tokens, attributes, Collections.EMPTY_LIST);
+    }
+
+    /**
+     * Stores the contents of a submit directory in the cache along with the digests of the files
+     * outside the submit directory that the plan depends on, and evicts least recently used entries
+     * if the cache grows too large. Failures are logged and do not fail the planner.
+     *
+     * @param key the key for the plan
+     * @param submitDir the submit directory to store
+     * @param tokens map of token names to their values for the current run
+     * @param attributes additional attributes to store with the plan
+     * @param dependencies the files the plan depends on, that are not part of the key
+     */
+    public void store(
+            String key,
+            File submitDir,
+            Map<String, String> tokens,
+            Map<String, String> attributes,
+            Collection<File> dependencies) {
+        File entry = new File(mDirectory, key);
+        if (entry.exists()) {
+            return;
+        }
+        File temp = null;
+        try {
+            if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                throw new IOException("Unable to create plan cache directory " + mDirectory);
+            }
+            temp = Files.createTempDirectory(mDirectory.toPath(), PlanCache.TEMP_PREFIX).toFile();
+            long size =
+                    copyDirectory(submitDir.toPath(), new File(temp, SUBMIT_DIRECTORY).toPath());
+
+            Properties manifest = new Properties();
+            for (Map.Entry<String, String> token : tokens.entrySet()) {
+                manifest.setProperty(PlanCache.TOKEN_PREFIX + token.getKey(), token.getValue());
+            }
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                manifest.setProperty(
+                        PlanCache.ATTRIBUTE_PREFIX + attribute.getKey(), attribute.getValue());
+            }
+            for (File dependency : dependencies) {
+                String digest = PlanCache.digest(dependency);
+                if (digest == null) {
+                    throw new IOException("Unable to read " + dependency);
+                }
+                manifest.setProperty(
+                        PlanCache.DEPENDENCY_PREFIX + dependency.getAbsolutePath(), digest);
+            }
+            manifest.setProperty(PlanCache.SIZE_KEY, Long.toString(size));
+            try (OutputStream os = new FileOutputStream(new File(temp, MANIFEST_FILE))) {
+                manifest.store(os, "Pegasus Plan Cache Entry");
+            }
+
+            try {
+                // atomic so that concurrent planners never see partial entries
+                Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                temp = null;
+            } catch (FileAlreadyExistsException e) {
+                // another planner stored the same plan
+            }
+            mLogger.log(
+                    "Stored plan in cache with key " + key + " of size " + size + " bytes",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+        } catch (IOException ioe) {
+            mLogger.log(
+                    "Unable to store plan in cache " + mDirectory + " " + ioe.getMessage(),
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        } finally {
+            if (temp != null) {
+                delete(temp);
+            }
+        }
+
+        this.evict();
+    }
+
+    /**
+     * Evicts the least recently used entries till the size of the cache is within the maximum size.
+     */
+    public void evict() {
+        File[] entries = mDirectory.listFiles();
+        if (entries == null) {
+            return;
+        }
+        List<File> plans = new ArrayList();
+        Map<File, Long> sizes = new HashMap();
+        long total = 0;
+        for (File entry : entries) {
+            File manifestFile = new File(entry, PlanCache.MANIFEST_FILE);
+            if (!manifestFile.exists()) {
+                continue;
+            }
+            long size;
+            Properties manifest = new Properties();
+            try (InputStream is = new FileInputStream(manifestFile)) {
+                manifest.load(is);
+                size = Long.parseLong(manifest.getProperty(PlanCache.SIZE_KEY));
+            } catch (IOException | NumberFormatException e) {
+                // entries with an unreadable manifest are evicted right away
+                mLogger.log(
+                        "Evicting plan with corrupt manifest from cache " + entry,
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                delete(entry);
+                continue;
+            }
+            plans.add(entry);
+            sizes.put(entry, size);
+            total += size;
+        }
+
+        // oldest first
+        Collections.sort(plans, Comparator.comparingLong(File::lastModified));
+        for (File plan : plans) {
+            if (total <= mMaxSize) {
+                break;
+            }
+            mLogger.log("Evicting plan from cache " + plan, LogManager.DEBUG_MESSAGE_LEVEL);
+            delete(plan);
+            total -= sizes.get(plan);
+        }
+    }
+
+    /**
+     * Copies a directory recursively.
+     *
+     * @param source the source directory
+     * @param destination the destination directory
+     * @return the number of bytes copied
+     * @throws IOException
+     */
+    private long copyDirectory(Path source, Path destination) throws IOException {
+        long size = 0;
+        List<Path> paths;
+        try (Stream<Path> stream = Files.walk(source)) {
+            paths = stream.collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Path target = destination.resolve(source.relativize(path).toString());
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectories(target);
+            } else {
+                Files.copy(
+                        path,
+                        target,
+                        StandardCopyOption.COPY_ATTRIBUTES,
+                        LinkOption.NOFOLLOW_LINKS);
+                size += Files.size(target);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Hard links a cached file into the submit directory. The link fails if the file systems do not
+     * support hard links, or the submit directory is on another file system.
+     *
+     * @param source the cached file
+     * @param target the file in the submit directory
+     * @return true if the file was linked, false if it needs to be copied
+     */
+    private boolean link(Path source, Path target) {
+        try {
+            Files.deleteIfExists(target);
+            Files.createLink(target, source);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            mLogger.log(
+                    "Unable to link " + source + " to " + target + " " + e.getMessage(),
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the digest of the contents of a file.
+     *
+     * @param file the file
+     * @return the digest, or null if the file cannot be read
+     */
+    private static String digest(File file) {
+        PlanCache.Key key = new PlanCache.Key().add("file", file);
+        return key.getUncacheableReasons().isEmpty() ? key.toString() : null;
+    }
+
+    /**
+     * Deletes a file or directory recursively, ignoring any errors.
+     *
+     * @param file the file to delete
+     */
+    private void delete(File file) {
+        File[] children = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Returns whether the contents are text, by checking for null bytes at the start.
+     *
+     * @param contents the file contents
+     * @return boolean
+     */
+    private boolean isText(byte[] contents) {
+        int length = Math.min(contents.length, PlanCache.TEXT_PROBE_LENGTH);
+        for (int i = 0; i < length; i++) {
+            if (contents[i] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the key for a plan by computing a SHA-256 digest over named values and file contents.
+     * The order in which values are added matters.
+     */
+    public static class Key {
+
+        private final MessageDigest mDigest;
+
+        /** Sources that cannot be digested and make the plan uncacheable */
+        private final Collection<String> mUncacheable;
+
+        /** The default constructor. */
+        public Key() {
+            try {
+                mDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("SHA-256 digest is not available", e);
+            }
+            mUncacheable = new LinkedList();
+        }
+
+        /**
+         * Adds a named value to the key.
+         *
+         * @param name the name of the value
+         * @param value the value, may be null
+         * @return this key
+         */
+        public Key add(String name, String value) {
+            update(name);
+            update(value == null ? "" : value);
+            return this;
+        }
+
+        /**
+         * Adds the contents of a file to the key. If the file cannot be read, the plan is marked
+         * uncacheable.
+         *
+         * @param name the name of the value
+         * @param file the file
+         * @return this key
+         */
+        public Key add(String name, File file) {
+            update(name);
+            update(file.getAbsolutePath());
+            byte[] buffer = new byte[PlanCache.TEXT_PROBE_LENGTH];
+            try (InputStream is = new FileInputStream(file)) {
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    mDigest.update(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                this.markUncacheable(name + " " + file);
+            }
+            return this;
+        }
+
+        /**
+         * Marks the plan as uncacheable, because one of its sources cannot be digested.
+         *
+         * @param reason the reason
+         */
+        public void markUncacheable(String reason) {
+            mUncacheable.add(reason);
+        }
+
+        /**
+         * Returns the reasons why the plan cannot be cached.
+         *
+         * @return the reasons, empty if the plan can be cached
+         */
+        public Collection<String> getUncacheableReasons() {
+            return mUncacheable;
+        }
+
+        /**
+         * Returns the key as a hex string.
+         *
+         * @return the key
+         */
+        public String toString() {
+            MessageDigest digest;
+            try {
+                // clone, so that more values can be added after
+                digest = (MessageDigest) mDigest.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new RuntimeException("Unable to clone digest", e);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+
+        private void update(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            // length prefix so that adjacent values cannot run into each other
+            mDigest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+            mDigest.update((byte) ':');
+            mDigest.update(bytes);
+        }
+    }
+
+    /**
+     * Replaces all token values in a single pass, preferring the longest match. A value is only
+     * replaced where it occurs as a whole token, i.e. not preceded or followed by a character that
+     * could be part of a name, so that run0001 is not replaced within run00012.
+     */
+    private static class Replacer {
+
+        /** The characters that can continue a name on either side of a token value */
+        private static final String NAME_CHARACTER = "[A-Za-z0-9_\\-]";
+
+        private final Map<String, String> mReplacements;
+
+        private final Pattern mPattern;
+
+        public Replacer(Map<String, String> replacements) {
+            mReplacements = replacements;
+            if (replacements.isEmpty()) {
+                mPattern = null;
+                return;
+            }
+            List<String> values = new ArrayList(replacements.keySet());
+            Collections.sort(values, Comparator.comparingInt(String::length).reversed());
+            StringBuilder regex = new StringBuilder();
+            for (String value : values) {
+                if (regex.length() > 0) {
+                    regex.append("|");
+                }
+                regex.append(Pattern.quote(value));
+            }
+            mPattern =
+                    Pattern.compile(
+                            "(?<!"
+                                    + Replacer.NAME_CHARACTER
+                                    + ")(?:"
+                                    + regex
+                                    + ")(?!"
+                                    + Replacer.NAME_CHARACTER
+                                    + ")");
+        }
+
+        public boolean isEmpty() {
+            return mPattern == null;
+        }
+
+        public String replace(String text) {
+            if (mPattern == null) {
+                return text;
+            }
+            Matcher m = mPattern.matcher(text);
+            StringBuffer sb = new StringBuffer();
+            while (m.find()) {
+                m.appendReplacement(sb, Matcher.quoteReplacement(mReplacements.get(m.group())));
+            }
+            m.appendTail(sb);
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder event emitted by the {@link PlannerProfiler} for each planner phase. The
+ * event is only recorded when a flight recording is in progress, for e.g. when the planner JVM is
+ * started with -XX:StartFlightRecording.
+ */
+@Name("edu.isi.pegasus.planner.Phase")
+@Label("Planner Phase")
+@Category({"Pegasus", "Planner"})
+@Description("A phase of the planner, as delimited by the events logged by the planner")
+public class PlannerPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Peak Heap")
+    @DataAmount
+    long peakHeap;
+}
@@ -0,0 +1,576 @@
+/**
+ * Copyright 2007-2008 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.common;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import edu.isi.pegasus.common.logging.EventListener;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Profiles the phases of the planner. Each event logged via the LogManager, for e.g. parsing the
+ * DAX, data reuse, site selection, clustering, adding transfer nodes, creating directories, cleanup
+ * and code generation, is a phase. For each phase the profiler records the wall time, the self time
+ * excluding nested phases, the CPU time and the bytes allocated by the thread running the phase,
+ * and the peak heap used while the phase was running.
+ *
+ * <p>Additionally, if the JVM supports it, a {@link PlannerPhaseEvent} is emitted for each phase to
+ * the Java Flight Recorder.
+ *
+ * <p>Phases with the same name are aggregated. Phases can be logged from multiple threads, as each
+ * thread has its own stack of running phases.
+ */
+public class PlannerProfiler implements EventListener {
+
+    /** The suffix for the file in the submit directory to which the timings are written out. */
+    public static final String TIMINGS_FILE_SUFFIX = ".phases.json";
+
+    /** The number of nanoseconds in a second */
+    private static final double NANOSECONDS_PER_SECOND = 1000 * 1000 * 1000;
+
+    /** The number of bytes in a MB */
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    /** Whether Java Flight Recorder events can be emitted in this JVM */
+    private static final boolean JFR_AVAILABLE = PlannerProfiler.classExists("jdk.jfr.Event");
+
+    /** The aggregated phases, indexed by name in the order they were first started. */
+    private final Map<String, Phase> mPhases;
+
+    /** The stack of running phases for each thread. */
+    private final ThreadLocal<Deque<Frame>> mStacks;
+
+    /** All the phases currently running across all threads. */
+    private final Set<Frame> mRunning;
+
+    /** The names of the heap memory pools */
+    private final Set<String> mHeapPools;
+
+    /** The garbage collectors the profiler listens to. */
+    private final List<NotificationEmitter> mCollectors;
+
+    /** The listener for garbage collection notifications. */
+    private final NotificationListener mGCListener;
+
+    /** The handle to the thread management bean */
+    private final ThreadMXBean mThreadBean;
+
+    /** The wall time in nanoseconds spent in phases that were not nested in other phases */
+    private long mTotalWallTime;
+
+    /** The default constructor. */
+    public PlannerProfiler() {
+        mPhases = new LinkedHashMap();
+        mStacks =
+                new ThreadLocal<Deque<Frame>>() {
+                    @Override
+                    protected Deque<Frame> initialValue() {
+                        return new ArrayDeque();
+                    }
+                };
+        mRunning = Collections.synchronizedSet(new HashSet());
+        mHeapPools = new HashSet();
+        mCollectors = new LinkedList();
+        mThreadBean = ManagementFactory.getThreadMXBean();
+        mTotalWallTime = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                mHeapPools.add(pool.getName());
+            }
+        }
+
+        // the heap usage peaks just before a collection
+        mGCListener =
+                new NotificationListener() {
+                    @Override
+                    public void handleNotification(Notification notification, Object handback) {
+                        if (notification
+                                .getType()
+                                .equals(
+                                        GarbageCollectionNotificationInfo
+                                                .GARBAGE_COLLECTION_NOTIFICATION)) {
+                            GarbageCollectionNotificationInfo info =
+                                    GarbageCollectionNotificationInfo.from(
+                                            (CompositeData) notification.getUserData());
+                            updatePeakHeap(heapUsed(info.getGcInfo().getMemoryUsageBeforeGc()));
+                        }
+                    }
+                };
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) collector;
+                emitter.addNotificationListener(mGCListener, null, null);
+                mCollectors.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Callback for when an event is started.
+     *
+     * @param name the name of the event
+     */
+    @Override
+    public void eventStarted(String name) {
+        synchronized (this) {
+            if (!mPhases.containsKey(name)) {
+                mPhases.put(name, new Phase(name));
+            }
+        }
+        Frame frame = new Frame(name);
+        frame.mStartCPUTime = this.currentThreadCPUTime();
+        frame.mStartAllocated = this.currentThreadAllocatedBytes();
+        frame.mPeakHeap = this.currentHeapUsed();
+        if (JFR_AVAILABLE) {
+            frame.mJFREvent = JFR.begin(name);
+        }
+        mStacks.get().push(frame);
+        mRunning.add(frame);
+        frame.mStartWallTime = System.nanoTime();
+    }
+
+    /**
+     * Callback for when the most recently started event is completed.
+     *
+     * @param name the name of the event
+     */
+    @Override
+    public void eventCompleted(String name) {
+        long end = System.nanoTime();
+        Deque<Frame> stack = mStacks.get();
+        Frame frame = stack.poll();
+        if (frame == null) {
+            // event started before the profiler was added
+            return;
+        }
+        mRunning.remove(frame);
+
+        long wall = end - frame.mStartWallTime;
+        long cpu = PlannerProfiler.difference(frame.mStartCPUTime, this.currentThreadCPUTime());
+        long allocated =
+                PlannerProfiler.difference(
+                        frame.mStartAllocated, this.currentThreadAllocatedBytes());
+        long peak;
+        synchronized (frame) {
+            frame.mPeakHeap = Math.max(frame.mPeakHeap, this.currentHeapUsed());
+            peak = frame.mPeakHeap;
+        }
+        if (frame.mJFREvent != null) {
+            JFR.commit(frame.mJFREvent, cpu, allocated, peak);
+        }
+
+        Frame parent = stack.peek();
+        if (parent != null) {
+            parent.mChildWallTime += wall;
+            synchronized (parent) {
+                parent.mPeakHeap = Math.max(parent.mPeakHeap, peak);
+            }
+        }
+
+        synchronized (this) {
+            mPhases.get(frame.mName).add(wall, wall - frame.mChildWallTime, cpu, allocated, peak);
+            if (parent == null) {
+                mTotalWallTime += wall;
+            }
+        }
+    }
+
+    /**
+     * Returns the aggregated phases that completed at least once, in the order they were first
+     * started.
+     *
+     * @return the phases
+     */
+    public synchronized List<Phase> getPhases() {
+        List<Phase> result = new ArrayList(mPhases.size());
+        for (Phase phase : mPhases.values()) {
+            if (phase.mCount > 0) {
+                result.add(phase);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the phases ranked by their self time, the most expensive first.
+     *
+     * @return the ranked phases
+     */
+    public List<Phase> getHotPhases() {
+        List<Phase> phases = this.getPhases();
+        Collections.sort(
+                phases, (Phase a, Phase b) -> Long.compare(b.mSelfWallTime, a.mSelfWallTime));
+        return phases;
+    }
+
+    /**
+     * Returns the phase timings in JSON.
+     *
+     * @return the timings as JSON
+     */
+    public String toJson() {
+        Timings timings = new Timings();
+        synchronized (this) {
+            timings.mTotalWallTime = mTotalWallTime / NANOSECONDS_PER_SECOND;
+        }
+        timings.mPhases = this.getPhases();
+        return new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .setPrettyPrinting()
+                .create()
+                .toJson(timings);
+    }
+
+    /**
+     * Writes out the phase timings in JSON to a file.
+     *
+     * @param file the file to write to
+     * @throws IOException in case of error while writing out the file
+     */
+    public void writeOut(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            writer.println(this.toJson());
+        }
+    }
+
+    /**
+     * Returns a table of the phases ranked by their self time.
+     *
+     * @return the summary
+     */
+    public String getHotPhaseSummary() {
+        double total;
+        synchronized (this) {
+            total = mTotalWallTime;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Planner phases ranked by self time").append("\n");
+        sb.append(
+                String.format(
+                        "%4s %-45s %6s %10s %10s %10s %12s %12s %6s%n",
+                        "Rank",
+                        "Phase",
+                        "Count",
+                        "Self(s)",
+                        "Wall(s)",
+                        "CPU(s)",
+                        "Alloc(MB)",
+                        "PeakHeap(MB)",
+                        "Self%"));
+        int rank = 1;
+        for (Phase phase : this.getHotPhases()) {
+            sb.append(
+                    String.format(
+                            "%4d %-45s %6d %10.3f %10.3f %10.3f %12.1f %12.1f %6.1f%n",
+                            rank++,
+                            phase.mName,
+                            phase.mCount,
+                            phase.mSelfWallTime / NANOSECONDS_PER_SECOND,
+                            phase.mWallTime / NANOSECONDS_PER_SECOND,
+                            phase.mCPUTime / NANOSECONDS_PER_SECOND,
+                            phase.mAllocatedBytes / BYTES_PER_MB,
+                            phase.mPeakHeapBytes / BYTES_PER_MB,
+                            (total > 0) ? 100 * phase.mSelfWallTime / total : 0));
+        }
+        return sb.toString();
+    }
+
+    /** Stops listening for garbage collection notifications. */
+    public void close() {
+        for (NotificationEmitter emitter : mCollectors) {
+            try {
+                emitter.removeNotificationListener(mGCListener);
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+        mCollectors.clear();
+    }
+
+    /**
+     * Updates the peak heap of all the running phases.
+     *
+     * @param used the heap used in bytes
+     */
+    private void updatePeakHeap(long used) {
+        synchronized (mRunning) {
+            for (Frame frame : mRunning) {
+                synchronized (frame) {
+                    frame.mPeakHeap = Math.max(frame.mPeakHeap, used);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums up the usage of the heap memory pools.
+     *
+     * @param usage map indexed by pool name
+     * @return the heap used in bytes
+     */
+    private long heapUsed(Map<String, MemoryUsage> usage) {
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> entry : usage.entrySet()) {
+            if (mHeapPools.contains(entry.getKey())) {
+                used += entry.getValue().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Returns the heap currently used.
+     *
+     * @return bytes
+     */
+    private long currentHeapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Returns the CPU time of the current thread.
+     *
+     * @return nanoseconds, or -1 if not supported
+     */
+    private long currentThreadCPUTime() {
+        return mThreadBean.isCurrentThreadCpuTimeSupported()
+                ? mThreadBean.getCurrentThreadCpuTime()
+                : -1;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread.
+     *
+     * @return bytes, or -1 if not supported
+     */
+    private long currentThreadAllocatedBytes() {
+        if (mThreadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) mThreadBean;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the difference between two measurements, or 0 if a measurement is not supported.
+     *
+     * @param start the measurement at start
+     * @param end the measurement at end
+     * @return the difference
+     */
+    private static long difference(long start, long end) {
+        return (start < 0 || end < 0) ? 0 : end - start;
+    }
+
+    /**
+     * Returns whether a class can be loaded.
+     *
+     * @param name the fully qualified class name
+     * @return boolean
+     */
+    private static boolean classExists(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * Isolates the references to the Java Flight Recorder classes, so that the profiler works on
+     * JVMs that don't have them.
+     */
+    private static class JFR {
+
+        static Object begin(String name) {
+            PlannerPhaseEvent event = new PlannerPhaseEvent();
+            event.phase = name;
+            event.begin();
+            return event;
+        }
+
+        static void commit(Object o, long cpuTime, long allocated, long peakHeap) {
+            PlannerPhaseEvent event = (PlannerPhaseEvent) o;
+            event.end();
+            if (event.shouldCommit()) {
+                event.cpuTime = cpuTime;
+                event.allocated = allocated;
+                event.peakHeap = peakHeap;
+                event.commit();
+            }
+        }
+    }
+
+    /** A phase currently running on a thread. */
+    private static class Frame {
+
+        private final String mName;
+
+        private long mStartWallTime;
+
+        private long mStartCPUTime;
+
+        private long mStartAllocated;
+
+        /** The wall time of the nested phases that completed */
+        private long mChildWallTime;
+
+        /** Guarded by the frame, as it is updated from the GC notification thread */
+        private long mPeakHeap;
+
+        private Object mJFREvent;
+
+        Frame(String name) {
+            mName = name;
+            mChildWallTime = 0;
+        }
+    }
+
+    /** The timings written out to the JSON file. */
+    private static class Timings {
+
+        /** The total wall time in seconds spent in the phases. */
+        @Expose
+        @SerializedName("total_wall_time")
+        private double mTotalWallTime;
+
+        @Expose
+        @SerializedName("phases")
+        private List<Phase> mPhases;
+    }
+
+    /** The aggregated measurements for all the runs of a phase. */
+    public static class Phase {
+
+        /** The name of the phase */
+        @Expose
+        @SerializedName("name")
+        private final String mName;
+
+        /** The number of times the phase was run */
+        @Expose
+        @SerializedName("count")
+        private int mCount;
+
+        /** The wall time in nanoseconds, including nested phases */
+        @Expose
+        @SerializedName("wall_time_ns")
+        private long mWallTime;
+
+        /** The wall time in nanoseconds, excluding nested phases */
+        @Expose
+        @SerializedName("self_time_ns")
+        private long mSelfWallTime;
+
+        /** The CPU time in nanoseconds of the thread running the phase */
+        @Expose
+        @SerializedName("cpu_time_ns")
+        private long mCPUTime;
+
+        /** The bytes allocated by the thread running the phase */
+        @Expose
+        @SerializedName("allocated_bytes")
+        private long mAllocatedBytes;
+
+        /** The maximum heap used while the phase was running */
+        @Expose
+        @SerializedName("peak_heap_bytes")
+        private long mPeakHeapBytes;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param name the name of the phase
+         */
+        public Phase(String name) {
+            mName = name;
+        }
+
+        /**
+         * Adds the measurements of a run of the phase.
+         *
+         * @param wall the wall time
+         * @param self the self time
+         * @param cpu the cpu time
+         * @param allocated the allocated bytes
+         * @param peakHeap the peak heap
+         */
+        void add(long wall, long self, long cpu, long allocated, long peakHeap) {
+            mCount++;
+            mWallTime += wall;
+            mSelfWallTime += self;
+            mCPUTime += cpu;
+            mAllocatedBytes += allocated;
+            mPeakHeapBytes = Math.max(mPeakHeapBytes, peakHeap);
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+
+        public long getWallTime() {
+            return mWallTime;
+        }
+
+        public long getSelfTime() {
+            return mSelfWallTime;
+        }
+
+        public long getCPUTime() {
+            return mCPUTime;
+        }
+
+        public long getAllocatedBytes() {
+            return mAllocatedBytes;
+        }
+
+        public long getPeakHeapBytes() {
+            return mPeakHeapBytes;
+        }
+    }
+}
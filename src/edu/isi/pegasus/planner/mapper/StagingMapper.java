@@ -75,4 +75,12 @@ public interface StagingMapper extends Mapper {
     public String map(
             Job job, File addOn, SiteCatalogEntry site, FileServer.OPERATION operation, String lfn)
             throws MapperException;
+
+    /**
+     * Returns whether the mapper can be invoked from multiple threads at the same time, without the
+     * directories it maps files to depending on the order of invocation.
+     *
+     * @return boolean
+     */
+    public boolean isThreadSafe();
 }
@@ -24,6 +24,8 @@ import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
 import edu.isi.pegasus.planner.mapper.MapperException;
 import edu.isi.pegasus.planner.mapper.OutputMapper;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
+import edu.isi.pegasus.planner.selector.fileserver.FileServerSelectorFactory;
 import java.io.File;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -54,6 +56,9 @@ public abstract class AbstractFileFactoryBasedMapper implements OutputMapper {
     /** The stage out directories where the outputs are staged to indexed by site name */
     protected Map<String, Directory> mStageoutDirectoriesStore;
 
+    /** The selector used to select amongst the file servers for the storage directories. */
+    protected FileServerSelector mFileServerSelector;
+
     /** The default constructor. */
     public AbstractFileFactoryBasedMapper() {}
 
@@ -67,6 +72,7 @@ public abstract class AbstractFileFactoryBasedMapper implements OutputMapper {
         PlannerOptions options = bag.getPlannerOptions();
         mLogger = bag.getLogger();
         mSiteStore = bag.getHandleToSiteStore();
+        mFileServerSelector = FileServerSelectorFactory.loadInstance(bag.getPegasusProperties());
         mOutputSites = (Set<String>) options.getOutputSites();
         boolean stageOut = ((this.mOutputSites != null) && (!this.mOutputSites.isEmpty()));
 
@@ -177,7 +183,7 @@ public abstract class AbstractFileFactoryBasedMapper implements OutputMapper {
                         ? mStageoutDirectoriesStore.get(site)
                         : this.lookupStorageDirectory(site);
 
-        FileServer server = directory.selectFileServer(operation);
+        FileServer server = directory.selectFileServer(operation, mFileServerSelector, null, lfn);
         if (server == null) {
             this.complainForStorageFileServer(operation, site);
         }
@@ -22,14 +22,22 @@ import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
 import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.NameValue;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
 import edu.isi.pegasus.planner.mapper.MapperException;
 import edu.isi.pegasus.planner.mapper.OutputMapper;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -50,6 +58,14 @@ import java.util.Set;
  *                                          if using a file based RC
  * </pre>
  *
+ * <p>The mappings for the output files of the workflow are prefetched from the backend with bulk
+ * lookups, a window of output files at a time. The windows follow the order in which the workflow
+ * is traversed while adding the stage-out jobs, so that only the mappings for the current window
+ * are held in memory. The windows are looked up for the output site the files are mapped to, and an
+ * output file with no mapping for the site in its window is not looked up again. The size of the
+ * window can be set by the property pegasus.dir.storage.mapper.replica.prefetch.size . A value of 0
+ * disables the prefetch.
+ *
  * @author Karan Vahi
  */
 public class Replica implements OutputMapper {
@@ -72,6 +88,15 @@ public class Replica implements OutputMapper {
      */
     public static final String DISABLE_EXCEPTIONS_KEY = "disable.exceptions";
 
+    /**
+     * The name of the key that determines the number of output files whose mappings are prefetched
+     * at a time.
+     */
+    public static final String PREFETCH_SIZE_KEY = "prefetch.size";
+
+    /** The default number of output files whose mappings are prefetched at a time. */
+    public static final int DEFAULT_PREFETCH_SIZE = 10000;
+
     /** The short name for this backend. */
     private static final String SHORT_NAME = "Replica";
 
@@ -91,6 +116,21 @@ public class Replica implements OutputMapper {
 
     protected boolean mThrowExceptionInCaseOfReplicaNotFound;
 
+    /** The number of output files whose mappings are prefetched at a time. */
+    protected int mPrefetchSize;
+
+    /** The output LFN's of the workflow, in the order in which the workflow is traversed. */
+    protected List<String> mOutputLFNs;
+
+    /** Index from an output LFN to the prefetch window it belongs to. */
+    protected Map<String, Integer> mLFNToWindow;
+
+    /** The prefetch window whose mappings are currently held, indexed by the site. */
+    protected Map<String, Integer> mCurrentWindows;
+
+    /** The mappings prefetched for the current window indexed by the site, and then the LFN. */
+    protected Map<String, Map<String, Collection<ReplicaCatalogEntry>>> mPrefetched;
+
     /** The default constructor. */
     public Replica() {}
 
@@ -121,6 +161,23 @@ public class Replica implements OutputMapper {
                 !Boolean.parse(props.getProperty(Replica.DISABLE_EXCEPTIONS_KEY), false);
         String catalogImplementor = bag.getPegasusProperties().getProperty(Replica.PROPERTY_PREFIX);
 
+        mPrefetchSize = Replica.DEFAULT_PREFETCH_SIZE;
+        String value = (String) props.remove(Replica.PREFETCH_SIZE_KEY);
+        if (value != null) {
+            try {
+                mPrefetchSize = Integer.parseInt(value);
+            } catch (NumberFormatException nfe) {
+                throw new MapperException(
+                        this.getErrorMessagePrefix()
+                                + "Invalid value specified for "
+                                + Replica.PROPERTY_PREFIX
+                                + "."
+                                + Replica.PREFETCH_SIZE_KEY
+                                + " "
+                                + value);
+            }
+        }
+
         // we only are reading not inserting any entries
         props.setProperty(Replica.READ_ONLY_KEY, "true");
 
@@ -148,6 +205,73 @@ public class Replica implements OutputMapper {
                             + catalogImplementor,
                     e);
         }
+
+        this.indexOutputFiles(workflow);
+    }
+
+    /**
+     * Indexes the output files of the workflow into prefetch windows, in the order the workflow is
+     * traversed by the Transfer Engine.
+     *
+     * @param workflow the workflow
+     */
+    protected void indexOutputFiles(ADag workflow) {
+        mOutputLFNs = new ArrayList();
+        mLFNToWindow = new HashMap();
+        mCurrentWindows = new HashMap();
+        mPrefetched = new HashMap();
+        if (mPrefetchSize <= 0 || workflow == null) {
+            return;
+        }
+
+        for (Iterator<GraphNode> it = workflow.iterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            for (PegasusFile pf : job.getOutputFiles()) {
+                String lfn = pf.getLFN();
+                if (!mLFNToWindow.containsKey(lfn)) {
+                    mLFNToWindow.put(lfn, mOutputLFNs.size() / mPrefetchSize);
+                    mOutputLFNs.add(lfn);
+                }
+            }
+        }
+        mLogger.log(
+                "Output mapper will prefetch mappings for "
+                        + mOutputLFNs.size()
+                        + " output files in windows of "
+                        + mPrefetchSize,
+                LogManager.DEBUG_MESSAGE_LEVEL);
+    }
+
+    /**
+     * Returns the replica catalog entries for a LFN on a site. If the LFN is an output file of the
+     * workflow, the entries are served from the window the LFN belongs to, that is prefetched for
+     * the site with the same matching as a lookup on the LFN and the site.
+     *
+     * @param lfn the lfn
+     * @param site the site, null for the entries on all sites
+     * @return the entries, else null if the LFN is not an indexed output file
+     */
+    protected Collection<ReplicaCatalogEntry> lookupPrefetched(String lfn, String site) {
+        Integer window = (mLFNToWindow == null) ? null : mLFNToWindow.get(lfn);
+        if (window == null) {
+            return null;
+        }
+
+        Map<String, Collection<ReplicaCatalogEntry>> prefetched = mPrefetched.get(site);
+        if (!window.equals(mCurrentWindows.get(site))) {
+            int start = window * mPrefetchSize;
+            int end = Math.min(start + mPrefetchSize, mOutputLFNs.size());
+            Set<String> lfns = new HashSet(mOutputLFNs.subList(start, end));
+            prefetched = (site == null) ? mRCCatalog.lookup(lfns) : mRCCatalog.lookup(lfns, site);
+            if (prefetched == null) {
+                prefetched = new HashMap();
+            }
+            mPrefetched.put(site, prefetched);
+            mCurrentWindows.put(site, window);
+        }
+
+        Collection<ReplicaCatalogEntry> c = prefetched.get(lfn);
+        return (c == null) ? new LinkedList() : c;
     }
 
     /**
@@ -188,8 +312,10 @@ public class Replica implements OutputMapper {
             throws MapperException {
 
         String url = null;
+        Collection<ReplicaCatalogEntry> prefetched = this.lookupPrefetched(lfn, site);
         if (site == null) {
-            Collection<ReplicaCatalogEntry> c = mRCCatalog.lookup(lfn);
+            Collection<ReplicaCatalogEntry> c =
+                    (prefetched == null) ? mRCCatalog.lookup(lfn) : prefetched;
             if (c != null) {
                 for (ReplicaCatalogEntry rce : c) {
                     url = rce.getPFN();
@@ -199,7 +325,18 @@ public class Replica implements OutputMapper {
             }
         } else {
             // we just return the first matching URL
-            url = mRCCatalog.lookup(lfn, site);
+            if (prefetched == null) {
+                url = mRCCatalog.lookup(lfn, site);
+            } else {
+                // the window was looked up for the site, so
+                // no entry for the site means there is no mapping
+                for (ReplicaCatalogEntry rce : prefetched) {
+                    if (site.equals(rce.getResourceHandle())) {
+                        url = rce.getPFN();
+                        break;
+                    }
+                }
+            }
         }
 
         if (url == null && this.mThrowExceptionInCaseOfReplicaNotFound) {
@@ -232,7 +369,10 @@ public class Replica implements OutputMapper {
             String lfn, String site, FileServer.OPERATION operation) throws MapperException {
         List result = new LinkedList();
 
-        Collection<ReplicaCatalogEntry> c = mRCCatalog.lookup(lfn);
+        Collection<ReplicaCatalogEntry> c = this.lookupPrefetched(lfn, site);
+        if (c == null) {
+            c = mRCCatalog.lookup(lfn);
+        }
         if (c != null) {
             for (ReplicaCatalogEntry rce : c) {
                 String s = rce.getResourceHandle();
@@ -21,6 +21,8 @@ import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.mapper.MapperException;
 import edu.isi.pegasus.planner.mapper.StagingMapper;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
+import edu.isi.pegasus.planner.selector.fileserver.FileServerSelectorFactory;
 import java.io.File;
 import java.util.Properties;
 
@@ -32,6 +34,9 @@ public abstract class Abstract implements StagingMapper {
 
     protected SiteStore mSiteStore;
 
+    /** The selector used to select amongst the file servers for the shared scratch directory. */
+    protected FileServerSelector mFileServerSelector;
+
     public Abstract() {}
 
     /**
@@ -43,6 +48,10 @@ public abstract class Abstract implements StagingMapper {
     public void initialize(PegasusBag bag, Properties properties) {
         mLogger = bag.getLogger();
         mSiteStore = bag.getHandleToSiteStore();
+        mFileServerSelector = FileServerSelectorFactory.loadInstance(bag.getPegasusProperties());
+        mLogger.log(
+                "File Server Selector loaded is " + mFileServerSelector.description(),
+                LogManager.CONFIG_MESSAGE_LEVEL);
     }
 
     /**
@@ -62,7 +71,9 @@ public abstract class Abstract implements StagingMapper {
             throws MapperException {
         StringBuffer url = new StringBuffer();
 
-        FileServer getServer = site.selectHeadNodeScratchSharedFileServer(operation);
+        FileServer getServer =
+                site.selectHeadNodeScratchSharedFileServer(
+                        operation, mFileServerSelector, job, lfn);
         String siteHandle = site.getSiteHandle();
         if (getServer == null) {
             this.complainForScratchFileServer(job, operation, siteHandle);
@@ -82,6 +93,16 @@ public abstract class Abstract implements StagingMapper {
         return url.toString();
     }
 
+    /**
+     * Returns whether the mapper can be invoked from multiple threads at the same time. Defaults to
+     * false.
+     *
+     * @return boolean
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Complains for a missing head node file server on a site for a job
      *
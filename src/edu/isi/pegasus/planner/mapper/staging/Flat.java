@@ -68,7 +68,7 @@ public class Flat extends Abstract {
      * @param site the site at which the LFN resides
      * @return
      */
-    public File mapToRelativeDirectory(Job job, SiteCatalogEntry site, String lfn) {
+    public synchronized File mapToRelativeDirectory(Job job, SiteCatalogEntry site, String lfn) {
         // In the Flat hierarchy, all files are placed on the same directory.
         // we just let the factory create a new addOn space in the base directory
         // for the lfn
@@ -104,6 +104,16 @@ public class Flat extends Abstract {
         return new File(".");
     }
 
+    /**
+     * Returns true if the file server selector is thread safe, as all files are mapped to the same
+     * directory irrespective of the order in which the mapper is invoked.
+     *
+     * @return boolean
+     */
+    public boolean isThreadSafe() {
+        return mFileServerSelector.isThreadSafe();
+    }
+
     /**
      * Returns a short description of the mapper.
      *
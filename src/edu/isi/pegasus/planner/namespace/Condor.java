@@ -43,7 +43,7 @@ public class Condor extends Namespace {
      *
      * @return
      */
-    public static Map<String, String> classAdKeysToPegasusProfiles() {
+    public static synchronized Map<String, String> classAdKeysToPegasusProfiles() {
         if (mClassAdToPegasus == null) {
             mClassAdToPegasus = new HashMap();
             mClassAdToPegasus.put(Condor.REQUEST_MEMORY_KEY, Pegasus.MEMORY_KEY);
@@ -794,7 +794,7 @@ public class Condor extends Namespace {
             key = key.toLowerCase();
         }
 
-        mProfileMap.put(key, value);
+        getProfileMapForUpdate().put(key, value);
     }
 
     /**
@@ -841,11 +841,12 @@ public class Condor extends Namespace {
     }
 
     /**
-     * Returns a copy of the current namespace object.
+     * Returns a copy of the current namespace object. The copy shares the profiles with this
+     * namespace, until either of them is updated.
      *
      * @return the Cloned object
      */
     public Object clone() {
-        return new Condor(this.mProfileMap);
+        return super.clone();
     }
 }
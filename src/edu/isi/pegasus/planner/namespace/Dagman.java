@@ -228,7 +228,7 @@ public class Dagman extends Namespace {
      */
     public void construct(String key, String value) {
         // convert to uppercase the key
-        mProfileMap.put(key.toUpperCase(), value);
+        getProfileMapForUpdate().put(key.toUpperCase(), value);
     }
 
     /**
@@ -642,13 +642,12 @@ public class Dagman extends Namespace {
     }
 
     /**
-     * Returns a copy of the current namespace object.
+     * Returns a copy of the current namespace object. The copy shares the profiles with this
+     * namespace, until either of them is updated.
      *
      * @return the Cloned object
      */
     public Object clone() {
-        Dagman ns = (mProfileMap == null) ? new Dagman() : new Dagman(this.mProfileMap);
-        ns.mJobName = (mJobName == null) ? null : new String(this.mJobName);
-        return ns;
+        return super.clone();
     }
 }
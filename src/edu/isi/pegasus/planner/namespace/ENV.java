@@ -124,7 +124,7 @@ public class ENV extends Namespace {
      */
     public void construct(String key, String value) {
         if (mProfileMap == null) mProfileMap = new LinkedHashMap();
-        mProfileMap.put(key, value);
+        getProfileMapForUpdate().put(key, value);
     }
 
     /**
@@ -244,11 +244,12 @@ public class ENV extends Namespace {
     }
 
     /**
-     * Returns a copy of the current namespace object.
+     * Returns a copy of the current namespace object. The copy shares the profiles with this
+     * namespace, until either of them is updated.
      *
      * @return the Cloned object
      */
     public Object clone() {
-        return (mProfileMap == null ? new ENV() : new ENV(this.mProfileMap));
+        return super.clone();
     }
 }
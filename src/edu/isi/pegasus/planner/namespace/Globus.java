@@ -45,7 +45,7 @@ public class Globus extends Namespace {
      *
      * @return
      */
-    public static Map<String, String> rslToPegasusProfiles() {
+    public static synchronized Map<String, String> rslToPegasusProfiles() {
         if (mRSLToPegasus == null) {
             mRSLToPegasus = new HashMap();
             mRSLToPegasus.put(Globus.MAX_MEMORY_KEY, Pegasus.MEMORY_KEY);
@@ -66,7 +66,7 @@ public class Globus extends Namespace {
      *
      * @return
      */
-    public static Map<String, String> rslToEnvProfiles() {
+    public static synchronized Map<String, String> rslToEnvProfiles() {
         if (mRSLToENV == null) {
             mRSLToENV = new HashMap();
             mRSLToENV.put(Globus.MAX_MEMORY_KEY, "PEGASUS_MEMORY");
@@ -167,7 +167,7 @@ public class Globus extends Namespace {
      * @param value is the right hand side
      */
     public void construct(String key, String value) {
-        mProfileMap.put(key.toLowerCase(), value);
+        getProfileMapForUpdate().put(key.toLowerCase(), value);
     }
 
     /**
@@ -406,12 +406,13 @@ public class Globus extends Namespace {
     }
 
     /**
-     * Returns a copy of the current namespace object
+     * Returns a copy of the current namespace object. The copy shares the profiles with this
+     * namespace, until either of them is updated.
      *
      * @return the Cloned object
      */
     public Object clone() {
-        return new Globus(this.mProfileMap);
+        return super.clone();
     }
 
     /**
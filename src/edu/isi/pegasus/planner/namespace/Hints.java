@@ -107,7 +107,7 @@ public class Hints extends Namespace {
      */
     public void construct(String key, String value) {
         if (mProfileMap == null) mProfileMap = new TreeMap();
-        mProfileMap.put(key, value);
+        getProfileMapForUpdate().put(key, value);
     }
 
     /**
@@ -200,14 +200,16 @@ public class Hints extends Namespace {
      * @return Map
      */
     public java.util.Map deprecatedTable() {
-        if (mDeprecatedTable == null) {
-            // only initialize once and only once, as needed.
-            mDeprecatedTable = new java.util.HashMap();
-            mDeprecatedTable.put(DEPRECATED_EXECUTION_SITE_KEY, EXECUTION_SITE_KEY);
-            mDeprecatedTable.put(DEPRECATED_PFN_HINT_KEY, PFN_HINT_KEY);
-        }
+        synchronized (Hints.class) {
+            if (mDeprecatedTable == null) {
+                // only initialize once and only once, as needed.
+                mDeprecatedTable = new java.util.HashMap();
+                mDeprecatedTable.put(DEPRECATED_EXECUTION_SITE_KEY, EXECUTION_SITE_KEY);
+                mDeprecatedTable.put(DEPRECATED_PFN_HINT_KEY, PFN_HINT_KEY);
+            }
 
-        return mDeprecatedTable;
+            return mDeprecatedTable;
+        }
     }
 
     /**
@@ -252,11 +254,12 @@ public class Hints extends Namespace {
     }
 
     /**
-     * Returns a copy of the current namespace object.
+     * Returns a copy of the current namespace object. The copy shares the profiles with this
+     * namespace, until either of them is updated.
      *
      * @return the Cloned object
      */
     public Object clone() {
-        return (mProfileMap == null) ? new Hints() : new Hints(this.mProfileMap);
+        return super.clone();
     }
 }
@@ -101,7 +101,7 @@ public class Metadata extends Namespace {
      */
     public void construct(String key, String value) {
         if (mProfileMap == null) mProfileMap = new HashMap();
-        mProfileMap.put(key, value);
+        getProfileMapForUpdate().put(key, value);
     }
 
     /**
@@ -190,12 +190,13 @@ public class Metadata extends Namespace {
     }
 
     /**
-     * Returns a copy of the current namespace object.
+     * Returns a copy of the current namespace object. The copy shares the profiles with this
+     * namespace, until either of them is updated.
      *
      * @return the Cloned object
      */
     public Object clone() {
-        return (mProfileMap == null) ? new Metadata() : new Metadata(this.mProfileMap);
+        return super.clone();
     }
 
     /**
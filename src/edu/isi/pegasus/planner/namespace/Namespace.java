@@ -21,10 +21,15 @@ import edu.isi.pegasus.planner.catalog.classes.Profiles;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
 import edu.isi.pegasus.planner.classes.Profile;
 import edu.isi.pegasus.planner.common.PegasusProperties;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * The base namespace class that all the othernamepsace handling classes extend. Some constants are
@@ -34,7 +39,7 @@ import java.util.Set;
  * @author Gaurang Mehta
  * @version $Revision$
  */
-public abstract class Namespace /*extends Data*/ {
+public abstract class Namespace /*extends Data*/ implements Cloneable {
 
     /** The LogManager object which is used to log all the messages. */
     public LogManager mLogger = LogManagerFactory.loadSingletonInstance();
@@ -74,6 +79,16 @@ public abstract class Namespace /*extends Data*/ {
     @SerializedName("profiles")
     protected Map mProfileMap;
 
+    /**
+     * Whether the profile map is shared with clones of this namespace. A shared map is copied on
+     * the first update, so that the namespaces of cloned jobs share the profiles until either of
+     * them is updated. The flag is volatile, as jobs are cloned and then updated on different
+     * threads when the refiners run in parallel. A shared map is never updated in place, so the
+     * namespaces sharing it may be read and updated on different threads. A single namespace still
+     * must not be updated while another thread reads or clones it.
+     */
+    private transient volatile boolean mSharedProfileMap;
+
     /**
      * Checks if the namespace specified is valid or not.
      *
@@ -132,7 +147,7 @@ public abstract class Namespace /*extends Data*/ {
      * @return an iterator over the keys to walk the profile list.
      */
     public Iterator getProfileKeyIterator() {
-        return (mProfileMap == null) ? new EmptyIterator() : this.mProfileMap.keySet().iterator();
+        return (mProfileMap == null) ? new EmptyIterator() : this.keySet().iterator();
     }
 
     /**
@@ -314,7 +329,29 @@ public abstract class Namespace /*extends Data*/ {
      * @param value is the right hand side
      */
     public void construct(String key, String value) {
-        mProfileMap.put(key, value);
+        getProfileMapForUpdate().put(key, value);
+    }
+
+    /**
+     * Returns the profile map to be updated. If the map is shared with a clone of this namespace, a
+     * copy of the map is made first.
+     *
+     * @return the profile map that can be updated, null if the map is not populated.
+     */
+    protected Map getProfileMapForUpdate() {
+        if (mSharedProfileMap) {
+            Map map = mProfileMap;
+            if (map instanceof SortedMap) {
+                mProfileMap = new TreeMap((SortedMap) map);
+            } else if (map instanceof LinkedHashMap) {
+                mProfileMap = new LinkedHashMap(map);
+            } else {
+                mProfileMap = new HashMap(map);
+            }
+            // cleared only once the copy is in place
+            mSharedProfileMap = false;
+        }
+        return mProfileMap;
     }
 
     /**
@@ -324,17 +361,21 @@ public abstract class Namespace /*extends Data*/ {
      * @return the value object if it exists. null if the key does not exist in the namespace.
      */
     public Object removeKey(Object key) {
-        return mProfileMap.remove(key);
+        return getProfileMapForUpdate().remove(key);
     }
 
     /**
      * Returns the key set associated with the namespace.
      *
      * @return key set if the mProfileMap is populated. null if the associated mProfileMap is not
-     *     populated.
+     *     populated. The key set is unmodifiable if the map is shared with a clone.
      */
     public Set keySet() {
-        return (mProfileMap == null) ? null : mProfileMap.keySet();
+        return (mProfileMap == null)
+                ? null
+                : mSharedProfileMap
+                        ? Collections.unmodifiableSet(mProfileMap.keySet())
+                        : mProfileMap.keySet();
     }
 
     /**
@@ -517,12 +558,13 @@ public abstract class Namespace /*extends Data*/ {
     /** Resets the namespace, removing all profiles associated */
     public void reset() {
         if (this.mProfileMap != null) {
-            this.mProfileMap.clear();
+            this.getProfileMapForUpdate().clear();
         }
     }
 
     /**
-     * Returns the clone of the object.
+     * Returns the clone of the object. The clone shares the profile map with this namespace, until
+     * either of them is updated.
      *
      * @return the clone
      */
@@ -530,11 +572,10 @@ public abstract class Namespace /*extends Data*/ {
         Namespace obj;
         try {
             obj = (Namespace) super.clone();
-            for (Iterator it = this.getProfileKeyIterator(); it.hasNext(); ) {
-                String key = (String) it.next();
-                obj.construct(key, (String) this.get(key));
+            if (this.mProfileMap != null) {
+                this.mSharedProfileMap = true;
+                obj.mSharedProfileMap = true;
             }
-
         } catch (CloneNotSupportedException e) {
             // somewhere in the hierarch chain clone is not implemented
             throw new RuntimeException(
@@ -385,6 +385,21 @@ public class Pegasus extends Namespace {
     /** Users specified arguments the container invocation. */
     public static final String CONTAINER_ARGUMENTS_KEY = "container.arguments";
 
+    /**
+     * The directory on the worker node, where container images are cached across jobs, keyed by the
+     * checksum of the image.
+     */
+    public static final String CONTAINER_CACHE_DIR_KEY = "container.cache.dir";
+
+    /** The maximum size in MB of the container image cache on the worker node. */
+    public static final String CONTAINER_CACHE_MAXSIZE_KEY = "container.cache.maxsize";
+
+    /**
+     * The weight of a file server, used by the weighted file server selectors to select amongst the
+     * file servers associated with a directory.
+     */
+    public static final String FILESERVER_WEIGHT_KEY = "fileserver.weight";
+
     /** Profile key to determine condor quoting for a job. */
     public static final String CONDOR_QUOTE_ARGUMENTS_KEY = "condor.arguments.quote";
 
@@ -477,7 +492,7 @@ public class Pegasus extends Namespace {
      */
     public void construct(String key, String value) {
         if (mProfileMap == null) mProfileMap = new TreeMap();
-        mProfileMap.put(key.toLowerCase(), value);
+        getProfileMapForUpdate().put(key.toLowerCase(), value);
     }
 
     /**
@@ -537,7 +552,9 @@ public class Pegasus extends Namespace {
                         || (key.compareTo(Pegasus.CHECKPOINT_TIME_KEY) == 0)
                         || (key.compareTo(Pegasus.DEPRECATED_CHECKPOINT_TIME_KEY) == 0)
                         || (key.compareTo(Pegasus.CONDOR_QUOTE_ARGUMENTS_KEY) == 0)
-                        || (key.compareTo(Pegasus.CONTAINER_ARGUMENTS_KEY) == 0)) {
+                        || (key.compareTo(Pegasus.CONTAINER_ARGUMENTS_KEY) == 0)
+                        || (key.compareTo(Pegasus.CONTAINER_CACHE_DIR_KEY) == 0)
+                        || (key.compareTo(Pegasus.CONTAINER_CACHE_MAXSIZE_KEY) == 0)) {
                     res = VALID_KEY;
                 } else if (key.compareTo(DEPRECATED_CHANGE_DIR_KEY) == 0
                         || (key.compareTo(COLLAPSER_KEY) == 0)) {
@@ -567,6 +584,14 @@ public class Pegasus extends Namespace {
                 }
                 break;
 
+            case 'f':
+                if (key.compareTo(FILESERVER_WEIGHT_KEY) == 0) {
+                    res = VALID_KEY;
+                } else {
+                    res = UNKNOWN_KEY;
+                }
+                break;
+
             case 'g':
                 if (key.compareTo(GROUP_KEY) == 0
                         || key.compareTo(GRIDSTART_KEY) == 0
@@ -793,15 +818,17 @@ public class Pegasus extends Namespace {
      * @return Map
      */
     public java.util.Map deprecatedTable() {
-        if (mDeprecatedTable == null) {
-            // only initialize once and only once, as needed.
-            mDeprecatedTable = new java.util.TreeMap();
-            mDeprecatedTable.put(DEPRECATED_BUNDLE_STAGE_IN_KEY, BUNDLE_STAGE_IN_KEY);
-            mDeprecatedTable.put(DEPRECATED_CHANGE_DIR_KEY, CHANGE_DIR_KEY);
-            mDeprecatedTable.put(DEPRECATED_RUNTIME_KEY, RUNTIME_KEY);
+        synchronized (Pegasus.class) {
+            if (mDeprecatedTable == null) {
+                // only initialize once and only once, as needed.
+                mDeprecatedTable = new java.util.TreeMap();
+                mDeprecatedTable.put(DEPRECATED_BUNDLE_STAGE_IN_KEY, BUNDLE_STAGE_IN_KEY);
+                mDeprecatedTable.put(DEPRECATED_CHANGE_DIR_KEY, CHANGE_DIR_KEY);
+                mDeprecatedTable.put(DEPRECATED_RUNTIME_KEY, RUNTIME_KEY);
+            }
+
+            return mDeprecatedTable;
         }
-
-        return mDeprecatedTable;
     }
 
     /**
@@ -898,11 +925,12 @@ public class Pegasus extends Namespace {
     }
 
     /**
-     * Returns a copy of the current namespace object
+     * Returns a copy of the current namespace object. The copy shares the profiles with this
+     * namespace, until either of them is updated.
      *
      * @return the Cloned object
      */
     public Object clone() {
-        return (mProfileMap == null) ? new Pegasus() : new Pegasus(this.mProfileMap);
+        return super.clone();
     }
 }
@@ -97,7 +97,7 @@ public class Selector extends Namespace {
      */
     public void construct(String key, String value) {
         if (mProfileMap == null) mProfileMap = new TreeMap();
-        mProfileMap.put(key, value);
+        getProfileMapForUpdate().put(key, value);
     }
 
     /**
@@ -191,11 +191,12 @@ public class Selector extends Namespace {
     }
 
     /**
-     * Returns a copy of the current namespace object.
+     * Returns a copy of the current namespace object. The copy shares the profiles with this
+     * namespace, until either of them is updated.
      *
      * @return the Cloned object
      */
     public Object clone() {
-        return (mProfileMap == null ? new Selector() : new Selector(this.mProfileMap));
+        return super.clone();
     }
 }
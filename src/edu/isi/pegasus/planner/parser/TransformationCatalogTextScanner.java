@@ -23,6 +23,7 @@ import edu.isi.pegasus.planner.parser.tokens.TransformationCatalogReservedWord;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Reader;
+import java.util.function.IntPredicate;
 
 /**
  * Implements the scanner for reserved words and other tokens that are generated from the input
@@ -33,6 +34,28 @@ import java.io.Reader;
  */
 public class TransformationCatalogTextScanner {
 
+    /** The characters allowed in identifiers after the first. */
+    private static final IntPredicate IDENTIFIER_PART = c -> Character.isJavaIdentifierPart(c);
+
+    /** The characters allowed in transformation names after the first. PM-1377 allow + */
+    private static final IntPredicate TRANSFORMATION_PART =
+            c ->
+                    Character.isJavaIdentifierPart(c)
+                            || c == ':'
+                            || c == '.'
+                            || c == '-'
+                            || c == '/'
+                            || c == '\\'
+                            || c == '+';
+
+    /** The characters allowed in site and container names after the first. */
+    private static final IntPredicate SITE_PART =
+            c -> Character.isJavaIdentifierPart(c) || c == '-' || c == '.' || c == '@';
+
+    /** The characters in a quoted string, that are taken as is. */
+    private static final IntPredicate QUOTED_PART =
+            c -> c != '"' && c != '\\' && c != '\r' && c != '\n';
+
     /** Stores the stream from which we are currently scanning. */
     private ExpanderLineNumberReader mInputReader;
 
@@ -69,21 +92,16 @@ public class TransformationCatalogTextScanner {
      * or at any non-whitespace input character.
      */
     private void skipWhitespace() throws IOException {
-        // end of file?
-        if (mLookAhead == -1) {
-            return;
-        }
-
-        // skip over whitespace
-        while (mLookAhead != -1 && Character.isWhitespace((char) mLookAhead)) {
-            mLookAhead = mInputReader.read();
-        }
-
-        // skip over comments until eoln
-        if (mLookAhead == '#') {
-            mInputReader.readLine();
-            mLookAhead = mInputReader.read();
-            skipWhitespace(); // FIXME: reformulate end-recursion into loop
+        while (mLookAhead != -1) {
+            if (Character.isWhitespace((char) mLookAhead)) {
+                mLookAhead = mInputReader.skipWhitespace();
+            } else if (mLookAhead == '#') {
+                // skip over comments until eoln
+                mInputReader.skipLine();
+                mLookAhead = mInputReader.read();
+            } else {
+                break;
+            }
         }
     }
 
@@ -129,45 +147,17 @@ public class TransformationCatalogTextScanner {
 
         // are we parsing a reserved word or identifier
         if (Character.isJavaIdentifierStart((char) mLookAhead)) {
-            StringBuffer identifier = new StringBuffer(8);
-            identifier.append((char) mLookAhead);
+            // the remainder of the identifier is taken from the line in one go
+            IntPredicate part =
+                    previousTokenIsTR
+                            ? TRANSFORMATION_PART
+                            : previousTokenIsSiteOrCont ? SITE_PART : IDENTIFIER_PART;
+            String identifier = (char) mLookAhead + mInputReader.readWhile(part);
             mLookAhead = mInputReader.read();
 
-            if (previousTokenIsTR) {
-                // allow : - / \ and . for transformation names
-                while (mLookAhead != -1
-                        && (Character.isJavaIdentifierPart((char) mLookAhead)
-                                || mLookAhead == ':'
-                                || mLookAhead == '.'
-                                || mLookAhead == '-'
-                                || mLookAhead == '/'
-                                || mLookAhead == '\\'
-                                || mLookAhead == '+') // PM-1377 allow + in tr names
-                ) {
-                    identifier.append((char) mLookAhead);
-                    mLookAhead = mInputReader.read();
-                }
-            } else if (previousTokenIsSiteOrCont) {
-                // allow - . @ in site names or container name
-                while (mLookAhead != -1
-                        && (Character.isJavaIdentifierPart((char) mLookAhead)
-                                || mLookAhead == '-'
-                                || mLookAhead == '.'
-                                || mLookAhead == '@')) {
-                    identifier.append((char) mLookAhead);
-                    mLookAhead = mInputReader.read();
-                }
-            } else {
-                // be more restrictive while parsing
-                while (mLookAhead != -1 && Character.isJavaIdentifierPart((char) mLookAhead)) {
-                    identifier.append((char) mLookAhead);
-                    mLookAhead = mInputReader.read();
-                }
-            }
-
             // done parsing identifier or reserved word
             skipWhitespace();
-            String s = identifier.toString().toLowerCase();
+            String s = identifier.toLowerCase();
             if (TransformationCatalogReservedWord.symbolTable().containsKey(s)) {
                 // isa reserved word
                 mPreviousToken =
@@ -175,7 +165,7 @@ public class TransformationCatalogTextScanner {
                                 TransformationCatalogReservedWord.symbolTable().get(s);
             } else {
                 // non-reserved identifier
-                mPreviousToken = new Identifier(identifier.toString());
+                mPreviousToken = new Identifier(identifier);
             }
 
         } else if (mLookAhead == '{') {
@@ -188,9 +178,10 @@ public class TransformationCatalogTextScanner {
             mPreviousToken = new CloseBrace();
 
         } else if (mLookAhead == '"') {
-            // parser quoted string
-            StringBuffer result = new StringBuffer(16);
-            do {
+            // parser quoted string, taking the runs of plain characters in one go
+            StringBuilder result = new StringBuilder(16);
+            while (true) {
+                result.append(mInputReader.readWhile(QUOTED_PART));
                 mLookAhead = mInputReader.read();
                 if (mLookAhead == -1 || mLookAhead == '\r' || mLookAhead == '\n') {
                     // eof is an unterminated string
@@ -207,10 +198,11 @@ public class TransformationCatalogTextScanner {
                         // FIXME: We could to fancy C-string style \012 \n \r escapes here ;-P
                         result.append((char) temp);
                     }
-                } else if (mLookAhead != '"') {
-                    result.append((char) mLookAhead);
+                } else {
+                    // the closing quote
+                    break;
                 }
-            } while (mLookAhead != '"');
+            }
 
             // skip over final quote
             mLookAhead = mInputReader.read();
@@ -228,16 +220,25 @@ public class TransformationCatalogTextScanner {
 
     /**
      * A wrapper around line reader, that allows us to do variable expansion, as and when each line
-     * is read.
+     * is read. Besides reading character by character, the scanner can take runs of characters from
+     * the current line in one go, that saves a call per character for the long identifiers and
+     * quoted strings in large catalogs.
      */
     private static class ExpanderLineNumberReader {
 
+        /** The size of the buffer for the underlying reader. */
+        private static final int BUFFER_SIZE = 64 * 1024;
+
         private LineNumberReader mReader;
 
         /** Handle to pegasus variable expander */
         private VariableExpander mVariableExpander;
 
-        /** A StringBuffer on which we apply the expansion */
+        /**
+         * The current line on which we apply the expansion, without the line terminator. A \n is
+         * returned after the last character of the line, to ensure consistent semantics for read
+         * function w.r.t Reader class
+         */
         private String mBuffer;
 
         /** Current position in the buffer to be read */
@@ -256,7 +257,7 @@ public class TransformationCatalogTextScanner {
         public ExpanderLineNumberReader(
                 Reader reader, String commentPrefix, boolean doVariableExpansion)
                 throws IOException {
-            mReader = new LineNumberReader(reader);
+            mReader = new LineNumberReader(reader, BUFFER_SIZE);
             mVariableExpander = new VariableExpander();
             mCommentPrefix = commentPrefix;
             mDoVariableExpansion = doVariableExpansion;
@@ -264,33 +265,63 @@ public class TransformationCatalogTextScanner {
         }
 
         private int read() throws IOException {
-            if (mBuffer == null) {
-                return -1;
-            }
-
-            if (mPosition == mBuffer.length()) {
+            while (mBuffer != null) {
+                int length = mBuffer.length();
+                if (mPosition < length) {
+                    return mBuffer.charAt(mPosition++);
+                }
+                if (mPosition == length) {
+                    mPosition++;
+                    return '\n';
+                }
                 setBufferToNextLine();
-                return read();
             }
-            return mBuffer.charAt(mPosition++);
+            return -1;
         }
 
-        private String readLine() throws IOException {
+        /**
+         * Reads the characters that match, stopping at the first one that does not or at the end of
+         * the current line.
+         *
+         * @param predicate the predicate the characters have to match
+         * @return the characters read, an empty string if the next one does not match.
+         */
+        private String readWhile(IntPredicate predicate) {
             if (mBuffer == null) {
-                return null;
+                return "";
+            }
+            int start = mPosition;
+            int length = mBuffer.length();
+            while (mPosition < length && predicate.test(mBuffer.charAt(mPosition))) {
+                mPosition++;
             }
+            return (start < mPosition) ? mBuffer.substring(start, mPosition) : "";
+        }
 
-            String result = null;
-            if (mPosition < mBuffer.length()) {
-                // return substring from mPosition onwards
-                result = mBuffer.substring(mPosition);
-                setBufferToNextLine();
-            } else {
+        /**
+         * Skips over any white space, across lines.
+         *
+         * @return the first non-whitespace character, or -1 for EOF.
+         */
+        private int skipWhitespace() throws IOException {
+            while (mBuffer != null) {
+                int length = mBuffer.length();
+                while (mPosition < length && Character.isWhitespace(mBuffer.charAt(mPosition))) {
+                    mPosition++;
+                }
+                if (mPosition < length) {
+                    return mBuffer.charAt(mPosition++);
+                }
                 setBufferToNextLine();
-                result = mBuffer.substring(mPosition);
             }
+            return -1;
+        }
 
-            return result;
+        /** Skips the rest of the current line, including the line terminator. */
+        private void skipLine() throws IOException {
+            if (mBuffer != null) {
+                setBufferToNextLine();
+            }
         }
 
         private int getLineNumber() {
@@ -300,18 +331,11 @@ public class TransformationCatalogTextScanner {
         private void setBufferToNextLine() throws IOException {
             mPosition = 0;
             mBuffer = mReader.readLine();
-            // System.out.println("Buffer " + mBuffer );
 
             mCurrentLineNumber = mReader.getLineNumber();
             // we don't want expand anything in the comment string
-            if (mBuffer != null && !mBuffer.startsWith(mCommentPrefix)) {
-                mBuffer = mDoVariableExpansion ? mVariableExpander.expand(mBuffer) : mBuffer;
-            }
-
-            // always add \n to ensure consistent semantics for read function
-            // w.r.t Reader class
-            if (mBuffer != null) {
-                mBuffer = mBuffer + '\n';
+            if (mBuffer != null && mDoVariableExpansion && !mBuffer.startsWith(mCommentPrefix)) {
+                mBuffer = mVariableExpander.expand(mBuffer);
             }
         }
     }
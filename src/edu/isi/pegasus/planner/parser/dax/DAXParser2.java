@@ -84,7 +84,7 @@ public class DAXParser2 extends XMLParser implements DAXParser {
      * @param key the key in execution tag
      * @return corresponding key in hints namespace else null
      */
-    private static String executionToHintsNamespace(String key) {
+    private static synchronized String executionToHintsNamespace(String key) {
         if (mExecutionToHintsNamespace == null) {
             mExecutionToHintsNamespace = new HashMap<String, String>();
             mExecutionToHintsNamespace.put("site", Hints.EXECUTION_SITE_KEY);
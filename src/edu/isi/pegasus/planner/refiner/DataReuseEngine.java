@@ -15,18 +15,26 @@ package edu.isi.pegasus.planner.refiner;
 
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.common.logging.LoggingKeys;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.classes.ReplicaLocation;
+import edu.isi.pegasus.planner.namespace.Metadata;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.partitioner.graph.Bag;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * The data reuse engine reduces the workflow on the basis of existing output files of the workflow
@@ -54,6 +62,27 @@ import java.util.Set;
  *  )
  * </pre>
  *
+ * <p>If the data reuse scope is set to provenance, a job found in the first pass is only reused if
+ * the provenance recorded for its files is consistent, in the manner of make. The modification time
+ * of a file is picked up from the mtime attribute ( seconds since the epoch ) of its replica
+ * catalog entries, or the file itself if the replica is on the local filesystem. A job is reused
+ * only if
+ *
+ * <pre>
+ *  - all it's output files found in the Replica Catalog have a modification time
+ *  - none of it's input files have been modified after the oldest output file
+ *  - the current checksums of it's input files match the ones recorded with it's output files,
+ *    when they were produced
+ * </pre>
+ *
+ * Files produced by the workflow that are not registered in the Replica Catalog carry forward the
+ * newest modification time and the current checksums of the inputs they were derived from, so that
+ * a modified input is detected even if the jobs consuming it directly have no registered outputs.
+ *
+ * <p>A job whose output files are stale is run, and the invalidation is then cascaded downwards to
+ * all it's descendants. Jobs whose output files are simply not in the Replica Catalog are not
+ * invalidated, and can still be deleted when the deletion is cascaded upwards.
+ *
  * @author Karan Vahi
  * @version $Revision$
  */
@@ -63,9 +92,23 @@ public class DataReuseEngine extends Engine implements Refiner {
     public static enum SCOPE {
         full,
         partial,
+        provenance,
         none
     };
 
+    /**
+     * The replica catalog entry attribute that records the modification time of a file in seconds
+     * since the epoch.
+     */
+    public static final String MODIFICATION_TIME_KEY = "mtime";
+
+    /**
+     * The prefix for the replica catalog entry attributes of an output file, that record the
+     * checksums of the input files of the job that produced it. The attribute for an input file is
+     * the prefix followed by the lfn of the input file.
+     */
+    public static final String INPUT_CHECKSUM_KEY_PREFIX = "input.checksum.";
+
     /** List of all deleted jobs during workflow reduction. */
     private List<Job> mAllDeletedJobs;
 
@@ -84,6 +127,21 @@ public class DataReuseEngine extends Engine implements Refiner {
     /** All files discovered in the replica catalog */
     private Set<String> mWorkflowFilesInRC;
 
+    /** The bridge to the replica catalog, to look up provenance of files. */
+    private ReplicaCatalogBridge mRCBridge;
+
+    /** Cache of the provenance looked up for each lfn, in case of provenance scope. */
+    private Map<String, Provenance> mProvenanceCache;
+
+    /**
+     * The provenance carried forward to files produced by the workflow that are not in the Replica
+     * Catalog, in case of provenance scope.
+     */
+    private Map<String, Provenance> mCarriedProvenance;
+
+    /** The nodes that are run, and hence invalidated in case of provenance scope. */
+    private Set<GraphNode> mInvalidatedNodes;
+
     /**
      * The constructor
      *
@@ -98,6 +156,9 @@ public class DataReuseEngine extends Engine implements Refiner {
         mWorkflow = orgDag;
         mDataReuseScope = getDataReuseScope(mProps.getDataReuseScope());
         mPartialDataReuse = mDataReuseScope.equals(SCOPE.partial);
+        mProvenanceCache = new HashMap();
+        mCarriedProvenance = new HashMap();
+        mInvalidatedNodes = new HashSet();
     }
 
     /**
@@ -146,6 +207,7 @@ public class DataReuseEngine extends Engine implements Refiner {
         // search for the replicas of the files. The search list
         // is already present in Replica Catalog Bridge
         mWorkflowFilesInRC = rcb.getFilesInReplica();
+        mRCBridge = rcb;
 
         // we reduce the dag only if the
         // force option is not specified.
@@ -229,6 +291,10 @@ public class DataReuseEngine extends Engine implements Refiner {
             return jobsInReplica;
         }
 
+        if (mDataReuseScope.equals(SCOPE.provenance)) {
+            carryProvenanceForward(workflow);
+        }
+
         mLogger.log("Jobs whose o/p files already exist", LogManager.DEBUG_MESSAGE_LEVEL);
         // iterate through all the nodes in the graph
         for (Iterator it = workflow.nodeIterator(); it.hasNext(); ) {
@@ -298,18 +364,297 @@ public class DataReuseEngine extends Engine implements Refiner {
             // we add a job to list of jobs whose output files already exist
             // only if noOfSuccessFulMatches is equal to the number of output
             // files in job
+            // in case of provenance scope, the output files should also
+            // not be stale w.r.t the inputs
             if (noOfOutputFilesInJob == noOfSuccessfulMatches) {
-                mLogger.log("\t" + jobName, LogManager.DEBUG_MESSAGE_LEVEL);
-                jobsInReplica.add(node);
+                if (mDataReuseScope.equals(SCOPE.provenance) && !hasValidProvenance(job)) {
+                    // the outputs are stale. the job is run and
+                    // invalidates all it's descendants
+                    mInvalidatedNodes.add(node);
+                } else {
+                    mLogger.log("\t" + jobName, LogManager.DEBUG_MESSAGE_LEVEL);
+                    jobsInReplica.add(node);
+                }
             }
             // reinitialise the variables
             noOfSuccessfulMatches = 0;
             noOfOutputFilesInJob = 0;
         }
         mLogger.log("Jobs whose o/p files already exist - DONE", LogManager.DEBUG_MESSAGE_LEVEL);
+
+        if (mDataReuseScope.equals(SCOPE.provenance)) {
+            jobsInReplica = cascadeInvalidationDownwards(workflow, jobsInReplica);
+        }
         return jobsInReplica;
     }
 
+    /**
+     * Cascades the invalidation of jobs downwards in the workflow, in case of provenance scope. We
+     * do a topological traversal of the workflow. A job whose output files are stale is run, and
+     * regenerates it's output files. Hence, none of it's descendants can be reused either, even
+     * though their own output files exist in the Replica Catalog. The invalidated nodes are not
+     * deleted when cascading the deletion upwards.
+     *
+     * @param workflow the workflow
+     * @param jobsInRC the nodes whose output files were found to be valid in the Replica Catalog
+     * @return the subset of jobsInRC that none of their ancestors invalidate
+     */
+    protected List<GraphNode> cascadeInvalidationDownwards(
+            Graph workflow, List<GraphNode> jobsInRC) {
+        for (Iterator<GraphNode> it = workflow.topologicalSortIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            if (mInvalidatedNodes.contains(node)) {
+                continue;
+            }
+            for (GraphNode parent : node.getParents()) {
+                if (mInvalidatedNodes.contains(parent)) {
+                    mLogger.log(
+                            "Cascaded Invalidation: Node "
+                                    + node.getID()
+                                    + " cannot be reused as parent "
+                                    + parent.getID()
+                                    + " is run ",
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                    mInvalidatedNodes.add(node);
+                    break;
+                }
+            }
+        }
+
+        List<GraphNode> result = new LinkedList();
+        for (GraphNode node : jobsInRC) {
+            if (!mInvalidatedNodes.contains(node)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Carries the provenance of the inputs of the workflow forward to the files produced by the
+     * workflow that are not in the Replica Catalog. We do a topological traversal of the workflow,
+     * and associate with each such output file the newest modification time and the current
+     * checksums of the inputs it was derived from.
+     *
+     * @param workflow the workflow
+     */
+    private void carryProvenanceForward(Graph workflow) {
+        for (Iterator<GraphNode> it = workflow.topologicalSortIterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            long newest = -1;
+            Map<String, String> checksums = new HashMap();
+            for (PegasusFile pf : job.getInputFiles()) {
+                Provenance input = getInputProvenance(pf);
+                newest = Math.max(newest, input.getModificationTime());
+                checksums.putAll(getCurrentChecksums(pf, input));
+            }
+            for (PegasusFile pf : job.getOutputFiles()) {
+                if (!mWorkflowFilesInRC.contains(pf.getLFN())) {
+                    mCarriedProvenance.put(pf.getLFN(), new Provenance(newest, null, checksums));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the provenance of an input file of a job, that is either carried forward from the
+     * inputs it was derived from, or looked up in the Replica Catalog.
+     *
+     * @param pf the input file
+     * @return the Provenance
+     */
+    private Provenance getInputProvenance(PegasusFile pf) {
+        Provenance p = mCarriedProvenance.get(pf.getLFN());
+        return (p == null) ? getProvenance(pf.getLFN()) : p;
+    }
+
+    /**
+     * Returns the current checksums of an input file of a job, indexed by lfn. For a file carried
+     * forward, these are the checksums of the inputs it was derived from.
+     *
+     * @param pf the input file
+     * @param input the provenance of the input file
+     * @return the checksums indexed by lfn
+     */
+    private Map<String, String> getCurrentChecksums(PegasusFile pf, Provenance input) {
+        if (mCarriedProvenance.containsKey(pf.getLFN())) {
+            return input.getInputChecksums();
+        }
+        Map<String, String> result = new HashMap();
+        String current = (String) pf.getMetadata(Metadata.CHECKSUM_VALUE_KEY);
+        if (current == null) {
+            current = input.getChecksum();
+        }
+        if (current != null) {
+            result.put(pf.getLFN(), current);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the provenance of the output files of a job found in the Replica Catalog is
+     * consistent with it's input files i.e the outputs have a modification time that is not older
+     * than any of the inputs, and the current checksums of the inputs match the ones recorded with
+     * the outputs when they were produced. The current checksum of an input is the one in the
+     * workflow, else the one in the Replica Catalog. Inputs not in the Replica Catalog are checked
+     * against the provenance carried forward from the inputs they were derived from.
+     *
+     * @param job the job whose output files are all in the Replica Catalog
+     * @return boolean
+     */
+    private boolean hasValidProvenance(Job job) {
+        long oldestOutput = Long.MAX_VALUE;
+        for (PegasusFile pf : job.getOutputFiles()) {
+            if (!mWorkflowFilesInRC.contains(pf.getLFN())) {
+                // transient output file not consumed by the children
+                continue;
+            }
+            long mtime = getProvenance(pf.getLFN()).getModificationTime();
+            if (mtime < 0) {
+                mLogger.log(
+                        "Job "
+                                + job.getID()
+                                + " cannot be reused as no modification time is recorded for output "
+                                + pf.getLFN(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                return false;
+            }
+            oldestOutput = Math.min(oldestOutput, mtime);
+        }
+
+        for (PegasusFile pf : job.getInputFiles()) {
+            Provenance input = getInputProvenance(pf);
+            if (input.getModificationTime() > oldestOutput) {
+                mLogger.log(
+                        "Job "
+                                + job.getID()
+                                + " cannot be reused as input "
+                                + pf.getLFN()
+                                + " or the inputs it is derived from are newer than its outputs",
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                return false;
+            }
+            for (Map.Entry<String, String> current : getCurrentChecksums(pf, input).entrySet()) {
+                for (PegasusFile output : job.getOutputFiles()) {
+                    if (!mWorkflowFilesInRC.contains(output.getLFN())) {
+                        continue;
+                    }
+                    String recorded =
+                            getProvenance(output.getLFN()).getInputChecksum(current.getKey());
+                    if (recorded != null && !current.getValue().equals(recorded)) {
+                        mLogger.log(
+                                "Job "
+                                        + job.getID()
+                                        + " cannot be reused as checksum for input "
+                                        + current.getKey()
+                                        + " does not match "
+                                        + recorded
+                                        + " recorded for output "
+                                        + output.getLFN(),
+                                LogManager.DEBUG_MESSAGE_LEVEL);
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the provenance for a lfn, looking it up in the Replica Catalog if not already cached.
+     * If multiple replicas are found, the latest modification time is used.
+     *
+     * @param lfn the lfn
+     * @return the Provenance, with unknown values if nothing is recorded.
+     */
+    private Provenance getProvenance(String lfn) {
+        Provenance p = mProvenanceCache.get(lfn);
+        if (p != null) {
+            return p;
+        }
+        long mtime = -1;
+        String checksum = null;
+        Map<String, String> inputChecksums = new HashMap();
+        ReplicaLocation rl = (mRCBridge == null) ? null : mRCBridge.getFileLocs(lfn);
+        if (rl != null) {
+            // the attributes of the replicas end up as metadata
+            // of the location when retrieved from the catalog
+            Metadata metadata = rl.getAllMetadata();
+            checksum = (String) metadata.get(Metadata.CHECKSUM_VALUE_KEY);
+            addInputChecksums(inputChecksums, metadata.getProfileKeyIterator(), metadata::get);
+            for (Iterator it = rl.pfnIterator(); it.hasNext(); ) {
+                ReplicaCatalogEntry rce = (ReplicaCatalogEntry) it.next();
+                mtime =
+                        Math.max(
+                                mtime,
+                                getModificationTime(rce, metadata.get(MODIFICATION_TIME_KEY)));
+                if (checksum == null) {
+                    checksum = (String) rce.getAttribute(Metadata.CHECKSUM_VALUE_KEY);
+                }
+                addInputChecksums(inputChecksums, rce.getAttributeIterator(), rce::getAttribute);
+            }
+        }
+        p = new Provenance(mtime, checksum, inputChecksums);
+        mProvenanceCache.put(lfn, p);
+        return p;
+    }
+
+    /**
+     * Adds the checksums of input files recorded in a set of attributes.
+     *
+     * @param inputChecksums the map of input lfn to checksum to add to
+     * @param keys iterator over the attribute keys
+     * @param values the function to retrieve the value of an attribute
+     */
+    private void addInputChecksums(
+            Map<String, String> inputChecksums, Iterator keys, Function<String, Object> values) {
+        while (keys.hasNext()) {
+            String attribute = (String) keys.next();
+            if (attribute.startsWith(INPUT_CHECKSUM_KEY_PREFIX)) {
+                inputChecksums.putIfAbsent(
+                        attribute.substring(INPUT_CHECKSUM_KEY_PREFIX.length()),
+                        (String) values.apply(attribute));
+            }
+        }
+    }
+
+    /**
+     * Returns the modification time for a replica in seconds since the epoch. The mtime attribute
+     * is preferred, else the file is stat'ed if it is on the local filesystem.
+     *
+     * @param rce the replica catalog entry
+     * @param recorded the mtime recorded in the metadata for the file, can be null
+     * @return the modification time, else -1 if not known
+     */
+    private long getModificationTime(ReplicaCatalogEntry rce, Object recorded) {
+        Object value = rce.getAttribute(MODIFICATION_TIME_KEY);
+        value = (value == null) ? recorded : value;
+        if (value != null) {
+            try {
+                return Long.parseLong(value.toString().trim());
+            } catch (NumberFormatException e) {
+                mLogger.log(
+                        "Ignoring invalid modification time " + value + " for " + rce.getPFN(),
+                        LogManager.WARNING_MESSAGE_LEVEL);
+                return -1;
+            }
+        }
+        String pfn = rce.getPFN();
+        if (pfn == null) {
+            return -1;
+        }
+        if (pfn.startsWith("file://")) {
+            pfn = pfn.substring("file://".length());
+        }
+        if (pfn.startsWith(File.separator)) {
+            File f = new File(pfn);
+            if (f.exists()) {
+                return f.lastModified() / 1000;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Cascade the deletion of the jobs upwards in the workflow. We start a breadth first traversal
      * of the workflow bottom up. A node is marked for deletion if -
@@ -351,7 +696,8 @@ public class DataReuseEngine extends Engine implements Refiner {
 
             // System.out.println( "Traversing " + node.getID() );
             boolean markedForDeletion = ((BooleanBag) node.getBag()).getBooleanValue();
-            if (!markedForDeletion) {
+            // nodes invalidated in case of provenance scope are always run
+            if (!markedForDeletion && !mInvalidatedNodes.contains(node)) {
                 // If a node is not already marked for deletion , it  can be marked
                 // for deletion if
                 //    a) all it's children have been marked for deletion AND
@@ -466,6 +812,41 @@ public class DataReuseEngine extends Engine implements Refiner {
         return scope;
     }
 
+    /** The provenance recorded for a file, as used by the provenance data reuse scope. */
+    private static class Provenance {
+
+        /** The modification time in seconds since the epoch, or -1 if not known */
+        private final long mModificationTime;
+
+        /** The checksum recorded, or null if not known */
+        private final String mChecksum;
+
+        /** The checksums of the inputs the file was produced from, indexed by lfn */
+        private final Map<String, String> mInputChecksums;
+
+        Provenance(long mtime, String checksum, Map<String, String> inputChecksums) {
+            mModificationTime = mtime;
+            mChecksum = checksum;
+            mInputChecksums = inputChecksums;
+        }
+
+        long getModificationTime() {
+            return mModificationTime;
+        }
+
+        String getChecksum() {
+            return mChecksum;
+        }
+
+        String getInputChecksum(String lfn) {
+            return mInputChecksums.get(lfn);
+        }
+
+        Map<String, String> getInputChecksums() {
+            return mInputChecksums;
+        }
+    }
+
     /**
      * A bag implementation that cam be used to hold a boolean value associated with the graph node
      */
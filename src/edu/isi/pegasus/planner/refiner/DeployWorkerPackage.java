@@ -40,7 +40,9 @@ import edu.isi.pegasus.planner.common.PegasusConfiguration;
 import edu.isi.pegasus.planner.namespace.Dagman;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
 import edu.isi.pegasus.planner.selector.TransformationSelector;
+import edu.isi.pegasus.planner.selector.fileserver.FileServerSelectorFactory;
 import edu.isi.pegasus.planner.transfer.Implementation;
 import edu.isi.pegasus.planner.transfer.Refiner;
 import edu.isi.pegasus.planner.transfer.RemoteTransfer;
@@ -204,7 +206,7 @@ public class DeployWorkerPackage extends Engine {
      *
      * @return
      */
-    private static Set<String> supportedOSReleaseAndVersions() {
+    private static synchronized Set<String> supportedOSReleaseAndVersions() {
         if (mSupportedOSReleaseVersions == null) {
             mSupportedOSReleaseVersions = new HashSet();
             mSupportedOSReleaseVersions.add("rhel_7");
@@ -284,6 +286,9 @@ public class DeployWorkerPackage extends Engine {
     private Refiner mDefaultTransferRefiner;
     private File mSubmitHostWorkerPackage;
 
+    /** The selector for the file servers on the staging sites. */
+    private FileServerSelector mFileServerSelector;
+
     /**
      * A pratically nothing constructor !
      *
@@ -298,6 +303,7 @@ public class DeployWorkerPackage extends Engine {
         mJobPrefix = bag.getPlannerOptions().getJobnamePrefix();
 
         mTransferWorkerPackage = mProps.transferWorkerPackage();
+        mFileServerSelector = FileServerSelectorFactory.loadInstance(mProps);
 
         // mWorkerNodeExecution   = mProps.executeOnWorkerNode();
 
@@ -410,7 +416,7 @@ public class DeployWorkerPackage extends Engine {
                     this.getTCEntryForPegasusWorkerPackage(
                             mapper, selector, site, workerNodeExecution);
             mLogger.log(
-                    "Worker Package Entry used for site " + site + " " + entry,
+                    () -> "Worker Package Entry used for site " + site + " " + entry,
                     LogManager.DEBUG_MESSAGE_LEVEL);
             // register back into the transformation catalog
             // so that we do not need to worry about creating it again
@@ -466,7 +472,7 @@ public class DeployWorkerPackage extends Engine {
             // select the first entry from selector
             TransformationCatalogEntry selected =
                     (TransformationCatalogEntry) selectedEntries.get(0);
-            mLogger.log("Selected entry " + selected, LogManager.DEBUG_MESSAGE_LEVEL);
+            mLogger.log(() -> "Selected entry " + selected, LogManager.DEBUG_MESSAGE_LEVEL);
 
             FileServer destDirServer = this.getScratchFileServer(stagingSite);
             String destURLPrefix = destDirServer.getURLPrefix();
@@ -518,7 +524,7 @@ public class DeployWorkerPackage extends Engine {
                                     PEGASUS_WORKER_EXECUTABLES[i][0],
                                     PEGASUS_WORKER_EXECUTABLES[i][1]);
 
-                    mLogger.log("Entry constructed " + entry, LogManager.DEBUG_MESSAGE_LEVEL);
+                    mLogger.log(() -> "Entry constructed " + entry, LogManager.DEBUG_MESSAGE_LEVEL);
                 }
             } else {
                 // we insert entries into the transformation catalog for all worker
@@ -537,7 +543,7 @@ public class DeployWorkerPackage extends Engine {
                                     PEGASUS_WORKER_EXECUTABLES[i][0],
                                     PEGASUS_WORKER_EXECUTABLES[i][1]);
 
-                    mLogger.log("Entry constructed " + entry, LogManager.DEBUG_MESSAGE_LEVEL);
+                    mLogger.log(() -> "Entry constructed " + entry, LogManager.DEBUG_MESSAGE_LEVEL);
                 }
             }
 
@@ -832,7 +838,7 @@ public class DeployWorkerPackage extends Engine {
             for (Iterator<GraphNode> rIt = roots.iterator(); rIt.hasNext(); ) {
                 GraphNode n = (GraphNode) rIt.next();
                 mLogger.log(
-                        "Added edge " + untarNode.getID() + " -> " + n.getID(),
+                        () -> "Added edge " + untarNode.getID() + " -> " + n.getID(),
                         LogManager.DEBUG_MESSAGE_LEVEL);
                 untarNode.addChild(n);
                 n.addParent(untarNode);
@@ -975,7 +981,7 @@ public class DeployWorkerPackage extends Engine {
         for (Iterator rIt = roots.iterator(); rIt.hasNext(); ) {
             GraphNode n = (GraphNode) rIt.next();
             mLogger.log(
-                    "Added edge " + setupNode.getID() + " -> " + n.getID(),
+                    () -> "Added edge " + setupNode.getID() + " -> " + n.getID(),
                     LogManager.DEBUG_MESSAGE_LEVEL);
             setupNode.addChild(n);
             n.addParent(setupNode);
@@ -1673,7 +1679,7 @@ public class DeployWorkerPackage extends Engine {
                 (stagingSiteEntry == null)
                         ? null
                         : stagingSiteEntry.selectHeadNodeScratchSharedFileServer(
-                                FileServer.OPERATION.put);
+                                FileServer.OPERATION.put, mFileServerSelector, null, null);
         String destURLPrefix = (fileServer == null) ? null : fileServer.getURLPrefix();
         if (destURLPrefix == null) {
             this.complainForHeadNodeURLPrefix(REFINER_NAME, site, FileServer.OPERATION.put);
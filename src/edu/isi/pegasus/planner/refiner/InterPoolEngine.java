@@ -182,7 +182,7 @@ public class InterPoolEngine extends Engine implements Refiner {
                 // insert an entry into the transformation catalog
                 // for the mapper to pick up later on
                 mLogger.log(
-                        "Addding entry into transformation catalog " + entry,
+                        () -> "Addding entry into transformation catalog " + entry,
                         LogManager.DEBUG_MESSAGE_LEVEL);
 
                 if (mTCHandle.insert(entry, false) != 1) {
@@ -244,7 +244,8 @@ public class InterPoolEngine extends Engine implements Refiner {
 
         String site = job.getSiteHandle();
         mLogger.log(
-                "Setting up site mapping for job " + job.getName(), LogManager.DEBUG_MESSAGE_LEVEL);
+                () -> "Setting up site mapping for job " + job.getName(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
 
         if (site == null) {
             complainForFailedSiteMapping(job, sites);
@@ -266,7 +267,7 @@ public class InterPoolEngine extends Engine implements Refiner {
         }
 
         mLogger.log(
-                "Job was mapped to " + job.jobName + " to site " + site,
+                () -> "Job was mapped to " + job.jobName + " to site " + site,
                 LogManager.DEBUG_MESSAGE_LEVEL);
 
         // incorporate the profiles and
@@ -316,7 +317,11 @@ public class InterPoolEngine extends Engine implements Refiner {
         String siteHandle = job.getSiteHandle();
 
         mLogger.log(
-                "For job " + job.getName() + " updating profiles from site " + job.getSiteHandle(),
+                () ->
+                        "For job "
+                                + job.getName()
+                                + " updating profiles from site "
+                                + job.getSiteHandle(),
                 LogManager.TRACE_MESSAGE_LEVEL);
 
         // the profile information from the pool catalog needs to be
@@ -536,7 +541,7 @@ public class InterPoolEngine extends Engine implements Refiner {
             return null;
         }
         mLogger.log(
-                "Job " + job.getID() + " associated with container " + c.getLFN(),
+                () -> "Job " + job.getID() + " associated with container " + c.getLFN(),
                 LogManager.DEBUG_MESSAGE_LEVEL);
 
         FileTransfer fTx = new FileTransfer(c.getLFN(), job.jobName);
@@ -122,6 +122,7 @@ public class MainEngine extends Engine {
 
         String message = null;
         mRCBridge = new ReplicaCatalogBridge(mOriginalDag, mBag);
+        mBag.add(PegasusBag.REPLICA_CATALOG_BRIDGE, mRCBridge);
 
         // PM-1047 copy all catalog file sources to submit directory
         copyCatalogFiles(
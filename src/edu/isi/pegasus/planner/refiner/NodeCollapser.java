@@ -16,7 +16,6 @@ package edu.isi.pegasus.planner.refiner;
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
-import edu.isi.pegasus.planner.classes.PCRelation;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.cluster.Clusterer;
 import edu.isi.pegasus.planner.cluster.ClustererException;
@@ -24,12 +23,15 @@ import edu.isi.pegasus.planner.cluster.ClustererFactory;
 import edu.isi.pegasus.planner.parser.dax.DAX2LabelGraph;
 import edu.isi.pegasus.planner.partitioner.ClustererCallback;
 import edu.isi.pegasus.planner.partitioner.Partitioner;
+import edu.isi.pegasus.planner.partitioner.graph.Bag;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.LabelBag;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 /**
@@ -54,12 +56,6 @@ public class NodeCollapser extends Engine {
      */
     private String mDirectory;
 
-    /**
-     * The internal map that contains the adjacency list representation of the Graph referred to by
-     * the workflow. This is temporary till the main ADag data structure is corrected.
-     */
-    private Map mGraph;
-
     /** The bag of initialization objects. */
     private PegasusBag mBag;
 
@@ -72,7 +68,6 @@ public class NodeCollapser extends Engine {
         super(bag);
         mBag = bag;
         mLogger = bag.getLogger();
-        mGraph = new HashMap();
         mPOptions = bag.getPlannerOptions();
         setDirectory(mPOptions.getSubmitDirectory());
     }
@@ -137,50 +132,17 @@ public class NodeCollapser extends Engine {
      * @throws ClustererException in case of error while clustering
      */
     public ADag cluster(ADag dag, String type) throws ClustererException {
-        // convert the graph representation to a
-        // more manageable and traversal data structure that is sent
-        // to the partitioning stuff
-        Map<String, String> nameIDMap = new HashMap();
-        Job job;
-        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
-            // pass the jobs to the callback
-            GraphNode node = it.next();
-            job = (Job) node.getContent();
-            nameIDMap.put(job.getName(), job.getLogicalID());
-        }
-        mGraph = edgeList2Graph(dag, nameIDMap);
-
-        // we need to build up a partitioner graph structure to do
-        // the partitioning on the graph. Use the callback mechanism
-        // developed for the partiotioner stuff and populate it
-        // from the exisiting graph structure
-        DAX2LabelGraph d2g = new DAX2LabelGraph();
-        d2g.initialize(mBag, mPOptions.getDAX());
-
-        // set the appropriate key that is to be used for picking up the labels
-        d2g.setLabelKey(mProps.getClustererLabelKey());
-
-        // no need to pass any attributes
-        d2g.cbDocument(null);
-        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
-            // pass the jobs to the callback
-            GraphNode node = it.next();
-            d2g.cbJob((Job) node.getContent());
-        }
-        // pass the relations
-        for (Iterator it = mGraph.entrySet().iterator(); it.hasNext(); ) {
-            Map.Entry entry = (Map.Entry) it.next();
-            d2g.cbParents((String) entry.getKey(), (List) entry.getValue());
-        }
-        // finished populating
-        d2g.cbDone();
-        // get the graph map
-        mGraph = (Map) d2g.getConstructedObject();
+        // build the graph structure that the partitioner traverses
+        // directly from the nodes of the workflow. The partitioners
+        // record their state in the nodes, and the clusterers refer to
+        // the jobs by logical id, so they cannot traverse the workflow
+        // nodes themselves. The graph is only referenced for this pass
+        Map<String, GraphNode> graph = this.toLabelGraph(dag);
 
         // get the fake dummy root node
-        GraphNode root = (GraphNode) mGraph.get(DAX2LabelGraph.DUMMY_NODE_ID);
+        GraphNode root = graph.get(DAX2LabelGraph.DUMMY_NODE_ID);
 
-        Partitioner p = ClustererFactory.loadPartitioner(mProps, type, root, mGraph);
+        Partitioner p = ClustererFactory.loadPartitioner(mProps, type, root, graph);
         mLogger.log("Partitioner loaded is " + p.description(), LogManager.CONFIG_MESSAGE_LEVEL);
 
         Clusterer c = ClustererFactory.loadClusterer(dag, mBag, type);
@@ -205,61 +167,63 @@ public class NodeCollapser extends Engine {
     }
 
     /**
-     * Returns an adjacency list representation of the graph referred to by the list of edges. The
-     * map contains adjacency list with key as a child and value as the list of parents.
+     * Returns the graph that is traversed by the partitioners, constructed directly from the nodes
+     * of the workflow. The partitioners track their own state in the nodes they traverse, and refer
+     * to the jobs by their logical id's. Hence, a node is created for each job that is keyed by the
+     * logical id of the job, and has the label of the job associated with it. A dummy root node is
+     * added, that is the parent to all the root nodes of the workflow. The children of a node are
+     * ordered as the nodes of the workflow are iterated, so that the traversal by the partitioners
+     * is deterministic.
+     *
+     * <p>The graph earlier replayed through the DAX2LabelGraph callback ordered the children in the
+     * hash order of their logical id's. Hence, where a level has more jobs than go into one
+     * clustered job, the jobs that are clustered together can differ from that order, while the
+     * number and the sizes of the clustered jobs remain the same.
      *
      * @param dag the workflow
-     * @param nameIDMap map with the key as the jobname and value as the logical id
-     * @return Map.
+     * @return Map indexed by the logical id of the jobs, and each value being a <code>GraphNode
+     *     </code>.
      */
-    protected Map edgeList2Graph(ADag dag, Map nameIDMap) {
-        Map map = new HashMap();
+    protected Map<String, GraphNode> toLabelGraph(ADag dag) {
+        String labelKey = mProps.getClustererLabelKey();
+        labelKey = (labelKey == null) ? DAX2LabelGraph.DEFAULT_LABEL_KEY : labelKey;
+        LabelBag.setLabelKey(labelKey);
+
+        Map<String, GraphNode> graph = new HashMap();
+        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            GraphNode node = new GraphNode(job.logicalId, job.logicalName);
+            Bag bag = new LabelBag();
+            bag.add(labelKey, (String) job.vdsNS.get(labelKey));
+            node.setBag(bag);
+            node.setChildren(new LinkedHashSet());
+            graph.put(job.logicalId, node);
+        }
 
+        // link the nodes using the edges in the workflow
+        Set<GraphNode> roots = new LinkedHashSet();
         for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
             GraphNode node = it.next();
-            Job child = (Job) node.getContent();
-            List l = null;
-            for (GraphNode parentNode : node.getParents()) {
-                Job parent = (Job) parentNode.getContent();
-                if (map.containsKey(nameIDMap.get(child.getID()))) {
-                    l = (List) map.get(nameIDMap.get(child.getID()));
-                    l.add(nameIDMap.get(parent.getID()));
-                } else {
-                    l = new java.util.LinkedList();
-                    l.add(nameIDMap.get(parent.getID()));
-                    map.put(nameIDMap.get(child.getID()), l);
-                }
+            Collection<GraphNode> parents = node.getParents();
+            GraphNode child = graph.get(((Job) node.getContent()).getLogicalID());
+            if (parents.isEmpty()) {
+                roots.add(child);
+                continue;
             }
-        }
-
-        return map;
-    }
-
-    /**
-     * Returns an adjacency list representation of the graph referred to by the list of edges. The
-     * map contains adjacency list with key as a child and value as the list of parents.
-     *
-     * @param relations collection of <code>PCRelation</code> objects that does the conversion.
-     * @param nameIDMap map with the key as the jobname and value as the logical id
-     * @return Map.
-     * @deprecated as part of PM-747
-     */
-    protected Map edgeList2Graph(Collection<PCRelation> relations, Map nameIDMap) {
-        Map map = new HashMap();
-        List l = null;
-
-        for (Iterator it = relations.iterator(); it.hasNext(); ) {
-            PCRelation rel = (PCRelation) it.next();
-            if (map.containsKey(nameIDMap.get(rel.child))) {
-                l = (List) map.get(nameIDMap.get(rel.child));
-                l.add(nameIDMap.get(rel.parent));
-            } else {
-                l = new java.util.LinkedList();
-                l.add(nameIDMap.get(rel.parent));
-                map.put(nameIDMap.get(rel.child), l);
+            Set<GraphNode> parentList = new LinkedHashSet();
+            for (GraphNode parentNode : parents) {
+                GraphNode parent = graph.get(((Job) parentNode.getContent()).getLogicalID());
+                parentList.add(parent);
+                parent.addChild(child);
             }
+            child.setParents(parentList);
         }
 
-        return map;
+        GraphNode root = new GraphNode(DAX2LabelGraph.DUMMY_NODE_ID, DAX2LabelGraph.DUMMY_NODE_ID);
+        root.setChildren(roots);
+        root.setBag(new LabelBag());
+        graph.put(DAX2LabelGraph.DUMMY_NODE_ID, root);
+
+        return graph;
     }
 } // end of NodeCollapser
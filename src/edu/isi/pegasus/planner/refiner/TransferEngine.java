@@ -46,12 +46,15 @@ import edu.isi.pegasus.planner.namespace.Dagman;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
 import edu.isi.pegasus.planner.selector.ReplicaSelector;
+import edu.isi.pegasus.planner.selector.fileserver.FileServerSelectorFactory;
 import edu.isi.pegasus.planner.selector.replica.ReplicaSelectorFactory;
 import edu.isi.pegasus.planner.transfer.Refiner;
 import edu.isi.pegasus.planner.transfer.refiner.RefinerFactory;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -62,6 +65,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The transfer engine, which on the basis of the pools on which the jobs are to run, adds nodes to
@@ -79,6 +84,12 @@ public class TransferEngine extends Engine {
      */
     public static final int DELETED_JOBS_LEVEL = 1000;
 
+    /**
+     * The number of jobs below which the transfers are computed in the calling thread, instead of
+     * being split further across the pool.
+     */
+    private static final int COMPUTE_TRANSFERS_THRESHOLD = 16;
+
     /**
      * The name of the Replica Catalog Implementer that is used to write out the workflow cache file
      * in the submit directory.
@@ -150,6 +161,9 @@ public class TransferEngine extends Engine {
      */
     private StagingMapper mStagingMapper;
 
+    /** The selector for the file servers on the shared scratch of the staging site. */
+    private FileServerSelector mFileServerSelector;
+
     /**
      * The working directory relative to the mount point of the execution pool. It is populated from
      * the pegasus.dir.exec property from the properties file. If not specified then it work_dir is
@@ -177,6 +191,12 @@ public class TransferEngine extends Engine {
     /** The output site where files need to be staged to. */
     private final Set<String> mOutputSites;
 
+    /**
+     * Whether each job gets its own copy of the replica locations, while the transfers are computed
+     * in parallel.
+     */
+    private boolean mCopyFileLocs;
+
     /** The dial for integrity checking */
     protected PegasusProperties.INTEGRITY_DIAL mIntegrityDial;
 
@@ -201,6 +221,7 @@ public class TransferEngine extends Engine {
 
         mStagingMapper = StagingMapperFactory.loadInstance(bag);
         bag.add(PegasusBag.PEGASUS_STAGING_MAPPER, mStagingMapper);
+        mFileServerSelector = FileServerSelectorFactory.loadInstance(mProps);
 
         mUseSymLinks = mProps.getUseOfSymbolicLinks();
         mSRMServiceURLToMountPointMap = constructSiteToSRMServerMap(mProps);
@@ -225,6 +246,7 @@ public class TransferEngine extends Engine {
         }
 
         mOutputSites = (Set<String>) mPOptions.getOutputSites();
+        mCopyFileLocs = false;
         mOutputMapper = OutputMapperFactory.loadInstance(reducedDag, bag);
 
         // PM-1608 load a mapper if required
@@ -327,12 +349,13 @@ public class TransferEngine extends Engine {
                         // source site associated with file URL does
                         // not match the site attribute. remove the source url
                         mLogger.log(
-                                "Removing source url "
-                                        + sourceURL
-                                        + " associated with site "
-                                        + sourceSite
-                                        + " for job "
-                                        + job.getID(),
+                                () ->
+                                        "Removing source url "
+                                                + sourceURL
+                                                + " associated with site "
+                                                + sourceSite
+                                                + " for job "
+                                                + job.getID(),
                                 LogManager.TRACE_MESSAGE_LEVEL);
                         it.remove();
                         remove = true;
@@ -398,8 +421,6 @@ public class TransferEngine extends Engine {
         mPlannerCache = plannerCache;
 
         Job currentJob;
-        String currentJobName;
-        String msg;
 
         // convert the dax to a graph representation and walk it
         // in a top down manner
@@ -407,6 +428,7 @@ public class TransferEngine extends Engine {
         Graph workflow = mDag;
         boolean stageOut = ((this.mOutputSites != null) && (!this.mOutputSites.isEmpty()));
 
+        List<GraphNode> nodes = new ArrayList();
         for (Iterator it = workflow.iterator(); it.hasNext(); ) {
             GraphNode node = (GraphNode) it.next();
             currentJob = (Job) node.getContent();
@@ -417,60 +439,48 @@ public class TransferEngine extends Engine {
 
             // set the node depth as the level
             currentJob.setLevel(node.getDepth());
-            currentJobName = currentJob.getName();
-
-            mLogger.log("", LogManager.DEBUG_MESSAGE_LEVEL);
-            msg = "Job being traversed is " + currentJobName;
-            mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
-            msg = "To be run at " + currentJob.executionPool;
-            mLogger.log(msg, LogManager.DEBUG_MESSAGE_LEVEL);
-
-            // getting the parents of that node
-            Collection<GraphNode> parents = node.getParents();
-            mLogger.log("Parents of job:" + node.parentsToString(), LogManager.DEBUG_MESSAGE_LEVEL);
-            processParents(currentJob, parents);
-
-            // transfer the nodes output files
-            // to the output sites
-            if (stageOut) {
-                SiteCatalogEntry stagingSite = mSiteStore.lookup(currentJob.getStagingSiteHandle());
-                if (stagingSite == null) {
-                    mLogMsg = this.poolNotFoundMsg(currentJob.getSiteHandle(), "vanilla");
-                    mLogger.log(mLogMsg, LogManager.ERROR_MESSAGE_LEVEL);
-                    throw new RuntimeException(mLogMsg);
-                }
+            nodes.add(node);
+        }
 
-                // PM-590 Stricter checks
-                String stagingSiteURLPrefix =
-                        stagingSite.selectHeadNodeScratchSharedFileServerURLPrefix(
-                                FileServer.OPERATION.put);
-                if (stagingSiteURLPrefix == null) {
-                    this.complainForHeadNodeURLPrefix(
-                            REFINER_NAME,
-                            stagingSite.getSiteHandle(),
-                            FileServer.OPERATION.put,
-                            currentJob);
-                }
-                boolean localTransfer =
-                        runTransferOnLocalSite(
-                                stagingSite, stagingSiteURLPrefix, Job.STAGE_OUT_JOB);
-                Collection<FileTransfer> transfersToOutputSites = new LinkedList();
-                Set<String> outputSites = new HashSet();
-                outputSites.addAll(this.mOutputSites);
-                if (this.mParentScratchOutputMapper != null) {
-                    // PM-1608 special null site notation to indicate that mapper should return
-                    // locations of files without matching on site name
-                    outputSites.add(null);
-                }
-                for (String outputSite : outputSites) {
-                    transfersToOutputSites.addAll(getFileTX(outputSite, currentJob, localTransfer));
-                }
-                mTXRefiner.addStageOutXFERNodes(
-                        currentJob, transfersToOutputSites, rcb, localTransfer);
-            } else {
-                // create the cache file always
-                // Pegasus Bug PM-32 and PM-356
-                trackInCaches(currentJob);
+        int threads = mProps.getTransferEngineThreads();
+        if (threads > 1 && !mStagingMapper.isThreadSafe()) {
+            mLogger.log(
+                    "Computing transfers sequentially as staging mapper "
+                            + mStagingMapper.description()
+                            + " cannot be used by multiple threads",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            threads = 1;
+        }
+
+        if (threads > 1 && nodes.size() > COMPUTE_TRANSFERS_THRESHOLD) {
+            // compute the inter site and stage-in transfers for the jobs
+            // in parallel, and then hand them to the transfer refiner in
+            // the order the jobs were traversed
+            mLogger.log(
+                    "Computing transfers for "
+                            + nodes.size()
+                            + " jobs using "
+                            + threads
+                            + " threads",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            JobTransfers[] transfers = new JobTransfers[nodes.size()];
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            mCopyFileLocs = true;
+            try {
+                pool.invoke(new ComputeTransfers(nodes, transfers, 0, nodes.size()));
+            } finally {
+                mCopyFileLocs = false;
+                pool.shutdown();
+            }
+            for (int i = 0; i < transfers.length; i++) {
+                this.addStageOutTransfers(nodes.get(i), transfers[i], stageOut);
+                transfers[i].apply();
+            }
+        } else {
+            for (GraphNode node : nodes) {
+                JobTransfers transfers = this.computeTransfers(node);
+                this.addStageOutTransfers(node, transfers, stageOut);
+                transfers.apply();
             }
         }
 
@@ -521,6 +531,89 @@ public class TransferEngine extends Engine {
         this.mWorkflowCache.close();
     }
 
+    /**
+     * Computes the inter site and stage-in transfers for a job. The transfers, and the updates to
+     * the planner and workflow caches, are only recorded and not handed to the transfer refiner.
+     *
+     * @param node the node for the job
+     * @return the transfers for the job
+     */
+    private JobTransfers computeTransfers(GraphNode node) {
+        Job currentJob = (Job) node.getContent();
+        JobTransfers transfers = new JobTransfers(currentJob);
+
+        mLogger.log("", LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log(
+                () -> "Job being traversed is " + currentJob.getName(),
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log(
+                () -> "To be run at " + currentJob.executionPool, LogManager.DEBUG_MESSAGE_LEVEL);
+
+        // getting the parents of that node
+        Collection<GraphNode> parents = node.getParents();
+        mLogger.log(
+                () -> "Parents of job:" + node.parentsToString(), LogManager.DEBUG_MESSAGE_LEVEL);
+        processParents(currentJob, parents, transfers);
+        return transfers;
+    }
+
+    /**
+     * Computes the transfers of a job's output files to the output sites, and adds them to the
+     * transfers for the job. The output mappers assign locations in the order the files are mapped,
+     * so this is always called for the jobs in the order they are traversed.
+     *
+     * @param node the node for the job
+     * @param transfers the transfers computed for the job
+     * @param stageOut whether the outputs are to be transferred to output sites
+     */
+    private void addStageOutTransfers(GraphNode node, JobTransfers transfers, boolean stageOut) {
+        Job currentJob = (Job) node.getContent();
+        if (!stageOut) {
+            // create the cache file always
+            // Pegasus Bug PM-32 and PM-356
+            trackInCaches(currentJob, transfers);
+            return;
+        }
+
+        // transfer the nodes output files
+        // to the output sites
+        SiteCatalogEntry stagingSite = mSiteStore.lookup(currentJob.getStagingSiteHandle());
+        if (stagingSite == null) {
+            mLogMsg = this.poolNotFoundMsg(currentJob.getSiteHandle(), "vanilla");
+            mLogger.log(mLogMsg, LogManager.ERROR_MESSAGE_LEVEL);
+            throw new RuntimeException(mLogMsg);
+        }
+
+        // PM-590 Stricter checks
+        FileServer stagingSiteServer =
+                stagingSite.selectHeadNodeScratchSharedFileServer(
+                        FileServer.OPERATION.put, mFileServerSelector, currentJob, null);
+        String stagingSiteURLPrefix =
+                (stagingSiteServer == null) ? null : stagingSiteServer.getURLPrefix();
+        if (stagingSiteURLPrefix == null) {
+            this.complainForHeadNodeURLPrefix(
+                    REFINER_NAME,
+                    stagingSite.getSiteHandle(),
+                    FileServer.OPERATION.put,
+                    currentJob);
+        }
+        boolean localTransfer =
+                runTransferOnLocalSite(stagingSite, stagingSiteURLPrefix, Job.STAGE_OUT_JOB);
+        Collection<FileTransfer> transfersToOutputSites = new LinkedList();
+        Set<String> outputSites = new HashSet();
+        outputSites.addAll(this.mOutputSites);
+        if (this.mParentScratchOutputMapper != null) {
+            // PM-1608 special null site notation to indicate that mapper should return
+            // locations of files without matching on site name
+            outputSites.add(null);
+        }
+        for (String outputSite : outputSites) {
+            transfersToOutputSites.addAll(
+                    getFileTX(outputSite, currentJob, localTransfer, transfers));
+        }
+        transfers.addStageOutXFERNodes(transfersToOutputSites, localTransfer);
+    }
+
     /**
      * Returns the staging site to be used for a job. If a staging site is not determined from the
      * options it is set to be the execution site for the job
@@ -564,7 +657,7 @@ public class TransferEngine extends Engine {
                 continue;
             }
 
-            ReplicaLocation rl = mRCBridge.getFileLocs(lfn);
+            ReplicaLocation rl = this.getFileLocs(lfn);
             // sanity check
             if (rl == null) {
                 throw new RuntimeException(
@@ -627,8 +720,9 @@ public class TransferEngine extends Engine {
      * @param job the <code>Job</code> object containing all the details of the job.
      * @param parents list <code>GraphNode</code> ojbects corresponding to the parent jobs of the
      *     job.
+     * @param transfers the transfers computed for the job
      */
-    private void processParents(Job job, Collection<GraphNode> parents) {
+    private void processParents(Job job, Collection<GraphNode> parents, JobTransfers transfers) {
 
         Set nodeIpFiles = job.getInputFiles();
         Vector vRCSearchFiles = new Vector(); // vector of PegasusFile
@@ -638,16 +732,16 @@ public class TransferEngine extends Engine {
 
         // interpool transfer of the nodes parents
         // output files
-        Collection[] interSiteFileTX = this.getInterpoolFileTX(job, parents);
+        Collection[] interSiteFileTX = this.getInterpoolFileTX(job, parents, transfers);
         Collection localInterSiteTX = interSiteFileTX[0];
         Collection remoteInterSiteTX = interSiteFileTX[1];
 
         // only add if there are files to transfer
         if (!localInterSiteTX.isEmpty()) {
-            mTXRefiner.addInterSiteTXNodes(job, localInterSiteTX, true);
+            transfers.addInterSiteTXNodes(localInterSiteTX, true);
         }
         if (!remoteInterSiteTX.isEmpty()) {
-            mTXRefiner.addInterSiteTXNodes(job, remoteInterSiteTX, false);
+            transfers.addInterSiteTXNodes(remoteInterSiteTX, false);
         }
 
         // check if node ip files are in the parents out files
@@ -669,13 +763,13 @@ public class TransferEngine extends Engine {
         if (job instanceof DAXJob) {
             // for the DAX jobs we should always call the method
             // as DAX may just be referred as the LFN
-            getFilesFromRC((DAXJob) job, vRCSearchFiles);
+            getFilesFromRC((DAXJob) job, vRCSearchFiles, transfers);
         } else if (!vRCSearchFiles.isEmpty()) {
             if (job instanceof DAGJob) {
                 getFilesFromRC((DAGJob) job, vRCSearchFiles);
             } else {
                 // get the locations from the RC
-                getFilesFromRC(job, vRCSearchFiles);
+                getFilesFromRC(job, vRCSearchFiles, transfers);
             }
         }
     }
@@ -689,9 +783,11 @@ public class TransferEngine extends Engine {
      * @param job The <code>Job</code>object of the job whose output files are needed at the
      *     destination pool.
      * @param localTransfer boolean indicating that associated transfer job will run on local site.
+     * @param transfers the transfers computed for the job
      * @return Collection of <code>FileTransfer</code> objects
      */
-    private Collection<FileTransfer> getFileTX(String destPool, Job job, boolean localTransfer) {
+    private Collection<FileTransfer> getFileTX(
+            String destPool, Job job, boolean localTransfer, JobTransfers transfers) {
         Collection fileTransfers = new LinkedList();
 
         // check if there is a remote initialdir set
@@ -709,7 +805,7 @@ public class TransferEngine extends Engine {
             } else {
                 fts = new LinkedList();
                 // construct file transfer to output site
-                fts.add(this.constructFileTX(pf, job, destPool, path, localTransfer));
+                fts.add(this.constructFileTX(pf, job, destPool, path, localTransfer, transfers));
             }
 
             for (FileTransfer ft : fts) {
@@ -751,10 +847,16 @@ public class TransferEngine extends Engine {
      * @param path the path that a user specifies in the profile for key remote_initialdir that
      *     results in the workdir being changed for a job on a execution pool.
      * @param localTransfer boolean indicating that associated transfer job will run on local site.
+     * @param transfers the transfers computed for the job
      * @return the corresponding FileTransfer object
      */
     private FileTransfer constructFileTX(
-            PegasusFile pf, Job job, String destSiteHandle, String path, boolean localTransfer) {
+            PegasusFile pf,
+            Job job,
+            String destSiteHandle,
+            String path,
+            boolean localTransfer,
+            JobTransfers transfers) {
 
         String stagingSiteHandle = job.getStagingSiteHandle();
         String lfn = pf.getLFN();
@@ -763,12 +865,12 @@ public class TransferEngine extends Engine {
         SiteCatalogEntry stagingSite = mSiteStore.lookup(stagingSiteHandle);
         SiteCatalogEntry destinationSite = mSiteStore.lookup(destSiteHandle);
         if (stagingSite == null || destinationSite == null) {
-            mLogMsg =
+            String msg =
                     (stagingSite == null)
                             ? this.poolNotFoundMsg(stagingSiteHandle, "vanilla")
                             : this.poolNotFoundMsg(destSiteHandle, "vanilla");
-            mLogger.log(mLogMsg, LogManager.ERROR_MESSAGE_LEVEL);
-            throw new RuntimeException(mLogMsg);
+            mLogger.log(msg, LogManager.ERROR_MESSAGE_LEVEL);
+            throw new RuntimeException(msg);
         }
 
         // PM-833 figure out the addOn component just once per lfn
@@ -781,9 +883,9 @@ public class TransferEngine extends Engine {
                 this.getURLOnSharedScratch(stagingSite, job, OPERATION.put, addOn, lfn);
 
         // in the planner cache we track the output files put url on staging site
-        trackInPlannerCache(lfn, sharedScratchPutURL, stagingSiteHandle);
+        transfers.trackInPlannerCache(lfn, sharedScratchPutURL, stagingSiteHandle);
         // in the workflow cache we track the output files get url on staging site
-        trackInWorkflowCache(lfn, sharedScratchGetURL, stagingSiteHandle);
+        transfers.trackInWorkflowCache(lfn, sharedScratchGetURL, stagingSiteHandle);
 
         // if both transfer and registration
         // are transient return null
@@ -874,7 +976,7 @@ public class TransferEngine extends Engine {
                 FileTransfer scratchPutFT = new FileTransfer();
                 scratchPutFT.setLFN(lfn);
                 scratchPutFT.addDestination(stagingSiteHandle, sharedScratchPutURL);
-                ((DAXJob) job).addOutputFileLocation(mBag, scratchPutFT);
+                transfers.addOutputFileLocation((DAXJob) job, scratchPutFT);
             }
         }
 
@@ -900,9 +1002,9 @@ public class TransferEngine extends Engine {
         List<FileTransfer> result = new LinkedList<FileTransfer>();
         SiteCatalogEntry stagingSite = mSiteStore.lookup(stagingSiteHandle);
         if (stagingSite == null) {
-            mLogMsg = this.poolNotFoundMsg(stagingSiteHandle, "vanilla");
-            mLogger.log(mLogMsg, LogManager.ERROR_MESSAGE_LEVEL);
-            throw new RuntimeException(mLogMsg);
+            String msg = this.poolNotFoundMsg(stagingSiteHandle, "vanilla");
+            mLogger.log(msg, LogManager.ERROR_MESSAGE_LEVEL);
+            throw new RuntimeException(msg);
         }
 
         // PM-833 figure out the addOn component just once per lfn
@@ -984,9 +1086,11 @@ public class TransferEngine extends Engine {
      * @param job the job with reference to which interpool file transfers need to be determined.
      * @param parents Collection of <code>GraphNode</code> ojbects corresponding to the parent jobs
      *     of the job.
+     * @param transfers the transfers computed for the job
      * @return array of Collection of <code>FileTransfer</code> objects
      */
-    private Collection<FileTransfer>[] getInterpoolFileTX(Job job, Collection<GraphNode> parents) {
+    private Collection<FileTransfer>[] getInterpoolFileTX(
+            Job job, Collection<GraphNode> parents, JobTransfers transfers) {
         String destSiteHandle = job.getStagingSiteHandle();
         // contains the remote_initialdir if specified for the job
         String destRemoteDir = job.vdsNS.getStringValue(Pegasus.REMOTE_INITIALDIR_KEY);
@@ -1062,7 +1166,7 @@ public class TransferEngine extends Engine {
                     // for the cleanup algorithm
                     // only the destination is tracked as source will have been
                     // tracked for the parent jobs
-                    trackInPlannerCache(outFile, thirdPartyDestPutURL, destSiteHandle);
+                    transfers.trackInPlannerCache(outFile, thirdPartyDestPutURL, destSiteHandle);
 
                     if (pJob instanceof DAXJob) {
                         // PM-1608 we don't create inter site transfers instead we need
@@ -1070,14 +1174,15 @@ public class TransferEngine extends Engine {
                         // the output map should transfer files to the staging site of the compute
                         // job in question. we log in the output map file for the DAX job
                         mLogger.log(
-                                "Parent DAX job "
-                                        + pJob.getID()
-                                        + " will transfer output file to "
-                                        + ft.getDestURL()
-                                        + " which is required by "
-                                        + job.getID(),
+                                () ->
+                                        "Parent DAX job "
+                                                + pJob.getID()
+                                                + " will transfer output file to "
+                                                + ft.getDestURL()
+                                                + " which is required by "
+                                                + job.getID(),
                                 LogManager.DEBUG_MESSAGE_LEVEL);
-                        ((DAXJob) pJob).addOutputFileLocation(mBag, ft);
+                        transfers.addOutputFileLocation((DAXJob) pJob, ft);
 
                         // PM-1608 explicitly disable integrity checking as we don't
                         // know which job in the sub workflow referred to by the parent DAX job pJob
@@ -1090,7 +1195,7 @@ public class TransferEngine extends Engine {
                     String thirdPartyDestGetURL =
                             this.getURLOnSharedScratch(
                                     destSite, job, OPERATION.get, addOn, outFile);
-                    trackInWorkflowCache(outFile, thirdPartyDestGetURL, destSiteHandle);
+                    transfers.trackInWorkflowCache(outFile, thirdPartyDestGetURL, destSiteHandle);
 
                     // add all the possible source urls iterating through
                     // the list of grid ftp servers associated with the dest pool.
@@ -1147,11 +1252,12 @@ public class TransferEngine extends Engine {
             if (integrityDisabledFiles.contains(ip)) {
                 ip.setForIntegrityChecking(false);
                 mLogger.log(
-                        "Disabled file "
-                                + ip.getLFN()
-                                + " for job "
-                                + job.getID()
-                                + " for integrity checking",
+                        () ->
+                                "Disabled file "
+                                        + ip.getLFN()
+                                        + " for job "
+                                        + job.getID()
+                                        + " for integrity checking",
                         LogManager.TRACE_MESSAGE_LEVEL);
             }
         }
@@ -1183,7 +1289,7 @@ public class TransferEngine extends Engine {
         }
 
         String lfn = job.getDAGLFN();
-        ReplicaLocation rl = mRCBridge.getFileLocs(lfn);
+        ReplicaLocation rl = this.getFileLocs(lfn);
 
         if (rl == null) { // flag an error
             throw new RuntimeException(
@@ -1217,8 +1323,9 @@ public class TransferEngine extends Engine {
      *
      * @param job the DAXJob
      * @param searchFiles file that need to be looked in the Replica Catalog.
+     * @param transfers the transfers computed for the job
      */
-    private void getFilesFromRC(DAXJob job, Collection searchFiles) {
+    private void getFilesFromRC(DAXJob job, Collection searchFiles, JobTransfers transfers) {
         // dax appears in adag element
         String dax = null;
         String lfn = job.getDAXLFN();
@@ -1236,7 +1343,7 @@ public class TransferEngine extends Engine {
         // if present locally. This is to ensure that SUBDAXGenerator
         // can figure out the path to the dag file that will be created for the
         // job. Else the dax job needs to have a --basename option passed.
-        ReplicaLocation rl = mRCBridge.getFileLocs(lfn);
+        ReplicaLocation rl = this.getFileLocs(lfn);
 
         if (rl != null) {
 
@@ -1274,10 +1381,10 @@ public class TransferEngine extends Engine {
         job.setArguments(arguments.toString());
 
         mLogger.log(
-                "Set arguments for DAX job " + job.getID() + " to " + arguments.toString(),
+                () -> "Set arguments for DAX job " + job.getID() + " to " + arguments.toString(),
                 LogManager.DEBUG_MESSAGE_LEVEL);
 
-        this.getFilesFromRC((Job) job, searchFiles);
+        this.getFilesFromRC((Job) job, searchFiles, transfers);
     }
 
     /**
@@ -1289,8 +1396,9 @@ public class TransferEngine extends Engine {
      *     for.
      * @param searchFiles Vector containing the PegasusFile objects corresponding to the files that
      *     need to have their mapping looked up from the Replica Mechanism.
+     * @param transfers the transfers computed for the job
      */
-    private void getFilesFromRC(Job job, Collection searchFiles) {
+    private void getFilesFromRC(Job job, Collection searchFiles, JobTransfers transfers) {
         // Vector fileTransfers = new Vector();
         // Collection<FileTransfer> symLinkFileTransfers = new LinkedList();
         Collection<FileTransfer> localFileTransfers = new LinkedList();
@@ -1382,7 +1490,7 @@ public class TransferEngine extends Engine {
                 destGetURL = destPutURL;
             } else {
                 // query the replica services and get hold of pfn
-                rl = mRCBridge.getFileLocs(lfn);
+                rl = this.getFileLocs(lfn);
                 pfns = (rl == null) ? null : rl.getPFNList();
             }
 
@@ -1584,12 +1692,12 @@ public class TransferEngine extends Engine {
                     // PM-698 . we have to clone since original site attribute will be different
                     ReplicaCatalogEntry rce = (ReplicaCatalogEntry) selLoc.clone();
                     rce.setResourceHandle(executionSiteHandle);
-                    trackInPlannerCache(lfn, rce, OPERATION.get);
+                    transfers.trackInPlannerCache(lfn, rce, OPERATION.get);
 
                     if (candidateNum == 1) {
                         // PM-1014 we only track the first candidate in the workflow cache
                         // i.e the cache file written out in the submit directory
-                        trackInWorkflowCache(lfn, sourceURL, selLoc.getResourceHandle());
+                        transfers.trackInWorkflowCache(lfn, sourceURL, selLoc.getResourceHandle());
                     }
                     // ensure the input file does not get cleaned up by the
                     // InPlace cleanup algorithm
@@ -1601,13 +1709,13 @@ public class TransferEngine extends Engine {
                     // part of the first level staging
                     // we always store the thirdparty url
                     // trackInCaches( lfn, destPutURL, job.getSiteHandle() );
-                    trackInPlannerCache(lfn, destPutURL, job.getStagingSiteHandle());
+                    transfers.trackInPlannerCache(lfn, destPutURL, job.getStagingSiteHandle());
 
                     if (candidateNum == 1) {
                         // PM-1014 we only track the first candidate in the workflow cache
                         // i.e the cache file written out in the submit directory
 
-                        trackInWorkflowCache(lfn, destGetURL, job.getStagingSiteHandle());
+                        transfers.trackInWorkflowCache(lfn, destGetURL, job.getStagingSiteHandle());
                     }
                 }
 
@@ -1670,7 +1778,7 @@ public class TransferEngine extends Engine {
 
         // call addTransferNode
         if (!localFileTransfers.isEmpty() || !remoteFileTransfers.isEmpty()) {
-            mTXRefiner.addStageInXFERNodes(job, localFileTransfers, remoteFileTransfers);
+            transfers.addStageInXFERNodes(localFileTransfers, remoteFileTransfers);
         }
     }
 
@@ -1704,7 +1812,7 @@ public class TransferEngine extends Engine {
                 newPFN.append(nv.getValue());
                 newPFN.append(pfn.substring(urlPrefix.length(), pfn.length()));
                 mLogger.log(
-                        "Replaced pfn " + pfn + " with " + newPFN.toString(),
+                        () -> "Replaced pfn " + pfn + " with " + newPFN.toString(),
                         LogManager.TRACE_MESSAGE_LEVEL);
             }
         }
@@ -1849,8 +1957,9 @@ public class TransferEngine extends Engine {
      * cache stores the put URL's and the GET URL is stored in the workflow cache.
      *
      * @param job the job whose input files need to be tracked.
+     * @param transfers the transfers computed for the job
      */
-    private void trackInCaches(Job job) {
+    private void trackInCaches(Job job, JobTransfers transfers) {
 
         // check if there is a remote initialdir set
         String path = job.vdsNS.getStringValue(Pegasus.REMOTE_INITIALDIR_KEY);
@@ -1872,11 +1981,12 @@ public class TransferEngine extends Engine {
             // construct the URL to track in planner cache
             String stagingSitePutURL =
                     this.getURLOnSharedScratch(stagingSiteEntry, job, OPERATION.put, addOn, lfn);
-            trackInPlannerCache(lfn, stagingSitePutURL, stagingSiteEntry.getSiteHandle());
+            transfers.trackInPlannerCache(lfn, stagingSitePutURL, stagingSiteEntry.getSiteHandle());
 
             String stagingSiteGetURL =
                     this.getURLOnSharedScratch(stagingSiteEntry, job, OPERATION.get, addOn, lfn);
-            trackInWorkflowCache(lfn, stagingSiteGetURL, stagingSiteEntry.getSiteHandle());
+            transfers.trackInWorkflowCache(
+                    lfn, stagingSiteGetURL, stagingSiteEntry.getSiteHandle());
         }
     }
 
@@ -1960,7 +2070,9 @@ public class TransferEngine extends Engine {
 
         StringBuffer url = new StringBuffer();
 
-        FileServer getServer = entry.selectHeadNodeScratchSharedFileServer(operation);
+        FileServer getServer =
+                entry.selectHeadNodeScratchSharedFileServer(
+                        operation, mFileServerSelector, job, lfn);
 
         if (getServer == null) {
             this.complainForScratchFileServer(job, operation, entry.getSiteHandle());
@@ -2145,7 +2257,7 @@ public class TransferEngine extends Engine {
         try {
             File f = mSubmitDirMapper.getRelativeDir(job);
             mLogger.log(
-                    "Directory for job " + job.getID() + " is " + f,
+                    () -> "Directory for job " + job.getID() + " is " + f,
                     LogManager.DEBUG_MESSAGE_LEVEL);
             relative = f.getPath();
         } catch (Exception ex) {
@@ -2239,4 +2351,180 @@ public class TransferEngine extends Engine {
 
         return OutputMapperFactory.loadInstance(dag, b);
     }
+
+    /**
+     * The transfers computed for a job, along with the updates to the planner and workflow caches
+     * and the output maps of sub workflows they require. These are recorded while the transfers are
+     * computed, and applied in the same order when the job's turn in the traversal comes.
+     */
+    private class JobTransfers {
+
+        /** The job for which the transfers are computed. */
+        private final Job mJob;
+
+        /** The recorded updates, in the order they were recorded. */
+        private final List<Runnable> mUpdates;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param job the job for which the transfers are computed
+         */
+        JobTransfers(Job job) {
+            mJob = job;
+            mUpdates = new LinkedList();
+        }
+
+        /**
+         * Records inter site transfers for the job.
+         *
+         * @param files collection of <code>FileTransfer</code> objects
+         * @param localTransfer whether the transfer jobs run on the local site
+         */
+        void addInterSiteTXNodes(Collection<FileTransfer> files, boolean localTransfer) {
+            mUpdates.add(() -> mTXRefiner.addInterSiteTXNodes(mJob, files, localTransfer));
+        }
+
+        /**
+         * Records the stage-in transfers for the job.
+         *
+         * @param localFileTransfers transfers that run on the local site
+         * @param remoteFileTransfers transfers that run on the remote site
+         */
+        void addStageInXFERNodes(
+                Collection<FileTransfer> localFileTransfers,
+                Collection<FileTransfer> remoteFileTransfers) {
+            mUpdates.add(
+                    () ->
+                            mTXRefiner.addStageInXFERNodes(
+                                    mJob, localFileTransfers, remoteFileTransfers));
+        }
+
+        /**
+         * Records the stage-out transfers for the job.
+         *
+         * @param files collection of <code>FileTransfer</code> objects
+         * @param localTransfer whether the transfer jobs run on the local site
+         */
+        void addStageOutXFERNodes(Collection<FileTransfer> files, boolean localTransfer) {
+            mUpdates.add(
+                    () -> mTXRefiner.addStageOutXFERNodes(mJob, files, mRCBridge, localTransfer));
+        }
+
+        /**
+         * Records an entry to be inserted into the planner cache as a put URL.
+         *
+         * @param lfn the logical name of the file.
+         * @param pfn the pfn
+         * @param site the site handle
+         */
+        void trackInPlannerCache(String lfn, String pfn, String site) {
+            mUpdates.add(() -> TransferEngine.this.trackInPlannerCache(lfn, pfn, site));
+        }
+
+        /**
+         * Records an entry to be inserted into the planner cache.
+         *
+         * @param lfn the logical name of the file.
+         * @param rce replica catalog entry
+         * @param type the type of url
+         */
+        void trackInPlannerCache(String lfn, ReplicaCatalogEntry rce, OPERATION type) {
+            mUpdates.add(() -> TransferEngine.this.trackInPlannerCache(lfn, rce, type));
+        }
+
+        /**
+         * Records an entry to be inserted into the workflow cache.
+         *
+         * @param lfn the logical name of the file.
+         * @param pfn the pfn
+         * @param site the site handle
+         */
+        void trackInWorkflowCache(String lfn, String pfn, String site) {
+            mUpdates.add(() -> TransferEngine.this.trackInWorkflowCache(lfn, pfn, site));
+        }
+
+        /**
+         * Records a location to be added to the output map of a sub workflow job.
+         *
+         * @param job the sub workflow job, can be a parent of the job
+         * @param ft the file transfer with the location
+         */
+        void addOutputFileLocation(DAXJob job, FileTransfer ft) {
+            mUpdates.add(() -> job.addOutputFileLocation(mBag, ft));
+        }
+
+        /** Applies the recorded updates. */
+        void apply() {
+            for (Runnable update : mUpdates) {
+                update.run();
+            }
+        }
+    }
+
+    /**
+     * Returns the locations of a file in the replica catalog. The replica selectors annotate the
+     * replica catalog entries with their priority for the job the locations are selected for, and
+     * the entries end up as sources of the file transfers of that job. When the transfers are
+     * computed in parallel, each job gets its own copy, so that the selection for a job in another
+     * thread does not change them. Otherwise the entries are shared, and the selection for the last
+     * job is the one seen by all of them.
+     *
+     * @param lfn the logical file name
+     * @return the locations, else null if the file is not in the replica catalog
+     */
+    private ReplicaLocation getFileLocs(String lfn) {
+        ReplicaLocation rl = mRCBridge.getFileLocs(lfn);
+        if (rl == null || !mCopyFileLocs) {
+            return rl;
+        }
+        ReplicaLocation copy = (ReplicaLocation) rl.clone();
+        copy.getPFNList().replaceAll(rce -> (ReplicaCatalogEntry) rce.clone());
+        return copy;
+    }
+
+    /** Computes the transfers for a range of jobs, splitting the range across the pool. */
+    private class ComputeTransfers extends RecursiveAction {
+
+        /** The nodes in the order they are traversed. */
+        private final List<GraphNode> mNodes;
+
+        /** The transfers computed for the nodes. */
+        private final JobTransfers[] mTransfers;
+
+        /** The start of the range, inclusive. */
+        private final int mStart;
+
+        /** The end of the range, exclusive. */
+        private final int mEnd;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param nodes the nodes in the order they are traversed
+         * @param transfers the transfers computed for the nodes
+         * @param start the start of the range, inclusive
+         * @param end the end of the range, exclusive
+         */
+        ComputeTransfers(List<GraphNode> nodes, JobTransfers[] transfers, int start, int end) {
+            mNodes = nodes;
+            mTransfers = transfers;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart <= COMPUTE_TRANSFERS_THRESHOLD) {
+                for (int i = mStart; i < mEnd; i++) {
+                    mTransfers[i] = computeTransfers(mNodes.get(i));
+                }
+                return;
+            }
+            int middle = (mStart + mEnd) >>> 1;
+            invokeAll(
+                    new ComputeTransfers(mNodes, mTransfers, mStart, middle),
+                    new ComputeTransfers(mNodes, mTransfers, middle, mEnd));
+        }
+    }
 }
@@ -20,6 +20,7 @@ import edu.isi.pegasus.planner.classes.TransferJob;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.Choice;
+import edu.isi.pegasus.planner.refiner.cleanup.constraint.ChoiceQueue;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.FloatingFile;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.OutOfSpaceError;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.Utilities;
@@ -28,6 +29,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -35,8 +37,21 @@ import java.util.NavigableMap;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
+ * A cleanup strategy that adds cleanup jobs to the workflow so that the storage used on each site
+ * stays within a storage constraint. The execution of the jobs on a site is simulated, and cleanup
+ * jobs are added whenever the simulated execution would run out of space.
+ *
+ * <p>The choices associated with executing the current heads of the simulation are kept in a
+ * priority queue. The choice for a head is recomputed only when a job it depends on executes, or
+ * when a cleanup job is added next to it. Sites whose simulations do not touch the same jobs are
+ * simulated in parallel.
+ *
  * @author Sudarshan Srinivasan
  * @author Rafael Ferreira da Silva
  */
@@ -48,35 +63,26 @@ public class Constraint extends AbstractCleanupStrategy {
     /** The property suffix for determining the max space available for a site x. */
     private static final String PROPERTY_MAXSPACE_SUFFIX = "maxspace";
 
+    /** The property for the maximum number of sites that are simulated in parallel. */
+    private static final String PROPERTY_THREADS = PROPERTY_PREFIX + ".threads";
+
     /** Default maximum space per site. */
     private static final String DEFAULT_MAX_SPACE = "10737418240";
 
-    /** Maximum available space per site. */
-    private static long maxSpacePerSite;
+    /** Default maximum number of sites that are simulated in parallel. */
+    private static final int DEFAULT_THREADS = 4;
 
-    /** Map of max available space per site. */
-    private static Map<String, Long> maxAvailableSpacePerSite;
+    /** Maximum available space per site. */
+    private long mMaxSpacePerSite;
 
-    /** Maps of how much space is still available per site. */
-    private static Map<String, Long> availableSpacePerSite;
+    /** Whether stage in jobs are deferred, instead of being marked as executing on the site. */
+    private boolean mDeferStageins;
 
-    /** */
-    private static boolean deferStageins;
+    /** The file sizes read from a CSV file, if any. Maps from file name to file size. */
+    private Map<String, Long> mFileSizes;
 
     /** Dependency list. Maps from a node to the set of nodes dependent on it. */
-    private static Map<GraphNode, Set<GraphNode>> dependencies;
-
-    /** Set of current heads (jobs that can be run immediately. */
-    private static Set<GraphNode> heads;
-
-    /** Set of jobs that have finished execution. */
-    private static Set<GraphNode> executed;
-
-    /** List of files that are pending cleanup. */
-    private static NavigableMap<Long, List<FloatingFile>> floatingFiles;
-
-    /** Set of external stage-ins for which space is reserved in advance. */
-    private static HashSet<Job> reservations;
+    private Map<GraphNode, Set<GraphNode>> mDependencies;
 
     /**
      * Adds cleanup jobs to the workflow.
@@ -101,17 +107,16 @@ public class Constraint extends AbstractCleanupStrategy {
                             + " bytes",
                     LogManager.WARNING_MESSAGE_LEVEL);
         }
-        maxSpacePerSite = Long.parseLong(maxSpace);
-        availableSpacePerSite = new HashMap<String, Long>();
-        maxAvailableSpacePerSite = new HashMap<String, Long>();
-        deferStageins =
+        mMaxSpacePerSite = Long.parseLong(maxSpace);
+        mDeferStageins =
                 (mProps.getProperty("pegasus.file.cleanup.constraint.deferstageins") != null);
 
         // read file sizes from a CSV file
+        mFileSizes = null;
         String CSVName = System.getProperty("pegasus.file.cleanup.constraint.csv");
         if (CSVName != null) {
             try {
-                Utilities.loadHashMap(CSVName);
+                mFileSizes = Utilities.loadHashMap(CSVName);
             } catch (IOException e) {
                 mLogger.log(
                         "Falling back to the old mechanism due to IOException while reading CSV: "
@@ -119,12 +124,27 @@ public class Constraint extends AbstractCleanupStrategy {
                         LogManager.WARNING_MESSAGE_LEVEL);
             }
         }
-        dependencies = Utilities.calculateDependencies(workflow, mLogger);
+        mDependencies = Utilities.calculateDependencies(workflow, mLogger);
 
-        // for each site do the process of adding cleanup jobs
+        // set up the simulation for each site, before any cleanup jobs are added
+        List<Simulation> simulations = new LinkedList<Simulation>();
         for (Iterator it = mResMap.entrySet().iterator(); it.hasNext(); ) {
             Map.Entry entry = (Map.Entry) it.next();
-            addCleanUpJobs((String) entry.getKey(), (Set) entry.getValue(), workflow);
+            simulations.add(
+                    new Simulation(workflow, (String) entry.getKey(), (Set) entry.getValue()));
+        }
+
+        List<List<Simulation>> groups = groupIndependentSites(simulations);
+        int threads = Math.min(groups.size(), this.getThreads());
+        if (threads <= 1) {
+            for (Simulation simulation : simulations) {
+                simulation.run();
+            }
+        } else {
+            mLogger.log(
+                    "Simulating " + groups.size() + " independent groups of sites in parallel",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            simulateInParallel(groups, threads);
         }
 
         mLogger.log(
@@ -137,645 +157,901 @@ public class Constraint extends AbstractCleanupStrategy {
     }
 
     /**
-     * Adds cleanup jobs for the workflow scheduled to a particular site a breadth first search
-     * strategy is implemented based on the depth of the job in the workflow
+     * Groups the simulations for the sites, such that simulations in different groups do not read
+     * or update the same jobs in the workflow. The groups, and the simulations in each group, are
+     * in the order of the sites passed.
      *
-     * @param site the site ID
-     * @param leaves the leaf jobs that are scheduled to site
-     * @param workflow the Graph into which new cleanup jobs can be added
+     * @param simulations the simulations for the sites
+     * @return the groups of simulations
      */
-    private void addCleanUpJobs(String site, Set<GraphNode> leaves, Graph workflow) {
-
-        mLogger.log(site + " " + leaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
-
-        for (GraphNode currentNode : leaves) {
-            mLogger.log("Found node " + currentNode.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+    private List<List<Simulation>> groupIndependentSites(List<Simulation> simulations) {
+        int[] group = new int[simulations.size()];
+        for (int i = 0; i < group.length; i++) {
+            group[i] = i;
         }
 
-        simulatedExecute(workflow, site, leaves);
-    }
-
-    /**
-     * Function to estimate size of files. Stub that uses Pegasus reported file sizes for now.
-     *
-     * @param workflow the workflow to add cleanup jobs to
-     * @param site
-     * @param currentSiteJobs
-     */
-    private void simulatedExecute(Graph workflow, String site, Set<GraphNode> currentSiteJobs) {
-        heads = new HashSet<GraphNode>();
-        executed = new HashSet<GraphNode>();
-        floatingFiles = new TreeMap<Long, List<FloatingFile>>();
-        reservations = new HashSet<Job>();
-
-        // Set available space from the property
-        String maxSiteSpace = mProps.getProperty(getPropertyName(site, PROPERTY_MAXSPACE_SUFFIX));
-        if (maxSiteSpace == null) {
-            availableSpacePerSite.put(site, maxSpacePerSite);
-            maxAvailableSpacePerSite.put(site, maxSpacePerSite);
-        } else {
-            availableSpacePerSite.put(site, Long.parseLong(maxSiteSpace));
-            maxAvailableSpacePerSite.put(site, Long.parseLong(maxSiteSpace));
-        }
-        mLogger.log(
-                "Performing constraint optimization on site "
-                        + site
-                        + " with maximum storage limit "
-                        + maxAvailableSpacePerSite.get(site),
-                LogManager.INFO_MESSAGE_LEVEL);
-
-        // if stage in jobs should not be deferred,
-        // locate all stage in jobs whose output
-        // site is the current site and mark them as
-        // executing on this site
-        if (!deferStageins) {
-            currentSiteJobs = new HashSet<GraphNode>(currentSiteJobs);
-            markStageIns(workflow, site, currentSiteJobs);
-        }
-
-        // locate initial set of heads
-        locateInitialHeads(site, currentSiteJobs);
-        mLogger.log(
-                site
-                        + ": All jobs processed, "
-                        + availableSpacePerSite.get(site)
-                        + "/"
-                        + maxAvailableSpacePerSite.get(site)
-                        + " space left",
-                LogManager.DEBUG_MESSAGE_LEVEL);
-
-        // we should have a list of heads for this site by this point
-        for (GraphNode currentNode : heads) {
-            mLogger.log("Found head " + currentNode.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
-        }
-
-        while (true) {
-            List<Choice> choices = getCurrentChoices(site);
-            Choice selected = choose(choices);
-            if (selected == null) {
-                if (!floatingFiles.isEmpty()) {
-                    // we have to remove the last few floating files
-                    Choice dummy =
-                            new Choice(
-                                    0,
-                                    0,
-                                    new ArrayList<GraphNode>(
-                                            floatingFiles
-                                                    .firstEntry()
-                                                    .getValue()
-                                                    .iterator()
-                                                    .next()
-                                                    .dependencies),
-                                    null);
-                    freeSpace(workflow, site, dummy, 0);
+        Map<GraphNode, Integer> owners = new HashMap<GraphNode, Integer>();
+        int i = 0;
+        for (Simulation simulation : simulations) {
+            for (GraphNode node : simulation.getTouchedNodes()) {
+                Integer owner = owners.get(node);
+                if (owner == null) {
+                    owners.put(node, i);
+                } else {
+                    int a = find(group, owner);
+                    int b = find(group, i);
+                    group[Math.max(a, b)] = Math.min(a, b);
                 }
-                break;
             }
-            execute(workflow, site, selected, currentSiteJobs);
+            i++;
         }
-    }
 
-    /** @param currentSiteJobs */
-    private void markStageIns(Graph workflow, String site, Set<GraphNode> currentSiteJobs) {
-        for (GraphNode node : workflow.getRoots()) {
-            // we only deal with create dir jobs or stage in jobs
-            Job j = (Job) node.getContent();
-            switch (j.getJobType()) {
-                case Job.CREATE_DIR_JOB:
-                    // search for child jobs that are stage in
-                    // jobs that also execute here
-                    for (GraphNode child : node.getChildren()) {
-                        Job childJob = (Job) child.getContent();
-                        if (childJob.getJobType() == Job.STAGE_IN_JOB) {
-                            TransferJob transferJob = (TransferJob) childJob;
-                            if (transferJob.getNonThirdPartySite().equals(site)) {
-                                currentSiteJobs.add(child);
-                            }
-                        }
-                    }
-                    break;
-                case Job.STAGE_IN_JOB:
-                    // if this job's non third party site is the current
-                    // site, then mark it as executing here
-                    TransferJob transferJob = (TransferJob) j;
-                    if (transferJob.getNonThirdPartySite() != null
-                            && transferJob.getNonThirdPartySite().equals(site)) {
-                        currentSiteJobs.add(node);
-                    }
-                    break;
-                default:
-                    // other job types are ignored
+        Map<Integer, List<Simulation>> result = new LinkedHashMap<Integer, List<Simulation>>();
+        i = 0;
+        for (Simulation simulation : simulations) {
+            int root = find(group, i++);
+            List<Simulation> members = result.get(root);
+            if (members == null) {
+                members = new LinkedList<Simulation>();
+                result.put(root, members);
             }
+            members.add(simulation);
         }
+        return new LinkedList<List<Simulation>>(result.values());
     }
 
     /**
-     * Locate the head nodes for the current site, simultaneously reserving space for stage-ins from
-     * other sites.
+     * Returns the group a simulation belongs to, compressing the path along the way.
      *
-     * <p>The algorithm used is based on the logic that if all dependencies are elsewhere too the
-     * node is a head. Space is reserved for stage ins from other sites to this site
+     * @param group the parent pointers of the groups
+     * @param i the index of the simulation
+     * @return the index of the group
+     */
+    private int find(int[] group, int i) {
+        while (group[i] != i) {
+            group[i] = group[group[i]];
+            i = group[i];
+        }
+        return i;
+    }
+
+    /**
+     * Runs the groups of simulations in parallel. The simulations within a group are run one after
+     * the other.
      *
-     * @param site Site name
-     * @param currentSiteJobs The set of jobs at the current site
+     * @param groups the groups of simulations
+     * @param threads the number of threads to use
      */
-    private void locateInitialHeads(String site, Set<GraphNode> currentSiteJobs) {
-        for (GraphNode currentNode : currentSiteJobs) {
-            // assume all nodes are head nodes
-            boolean currentNodeIsHead = true;
-            // iterate over all dependencies
-            Set<GraphNode> dependenciesForNode = dependencies.get(currentNode);
-            for (GraphNode dependency : dependenciesForNode) {
-                // if we find a dependency thats running here this is not a head job
-                if (currentSiteJobs.contains(dependency)) {
-                    // the dependency is scheduled to run here
-                    currentNodeIsHead = false;
-                } else {
-                    // this dependency node is running elsewhere
-                    // we must check if it is an inter-site stage-in and reserve space if so
-                    Job j = (Job) dependency.getContent();
-                    int type = j.getJobType();
-                    if ((type == Job.STAGE_IN_JOB || type == Job.INTER_POOL_JOB)
-                            && !reservations.contains(j)) {
-                        reservations.add(j);
-                        mLogger.log(
-                                "Input stage in job " + j.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
-                        // figure out sizes and reserve that much space
-                        Set<PegasusFile> outputs = j.getOutputFiles();
-                        for (PegasusFile currentOutput : outputs) {
-                            long currentOutputFileSize = Utilities.getFileSize(currentOutput);
-                            mLogger.log(
-                                    "Found stage in of file "
-                                            + currentOutput.getLFN()
-                                            + " of size "
-                                            + currentOutputFileSize,
-                                    LogManager.DEBUG_MESSAGE_LEVEL);
-                            availableSpacePerSite.put(
-                                    site, availableSpacePerSite.get(site) - currentOutputFileSize);
-                        }
-                    }
-                }
+    private void simulateInParallel(List<List<Simulation>> groups, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new LinkedList<Future<?>>();
+            for (final List<Simulation> group : groups) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    for (Simulation simulation : group) {
+                                        simulation.run();
+                                    }
+                                }));
             }
-            if (currentNodeIsHead) {
-                if (((Job) currentNode.getContent()).getJobType() == Job.CREATE_DIR_JOB) {
-                    mLogger.log(
-                            "Job " + currentNode.getID() + " is a create dir.",
-                            LogManager.DEBUG_MESSAGE_LEVEL);
-                    // when create dir, add immediate children if they are scheduled to run here
-                    executed.add(currentNode);
-                    for (GraphNode child : currentNode.getChildren()) {
-                        if (currentSiteJobs.contains(child)) {
-                            heads.add(child);
-                        }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
                     }
-                } else {
-                    // It may still not be a head if its indirect dependencies run on this node
-                    for (GraphNode dependency : dependencies.get(currentNode)) {
-                        if (currentSiteJobs.contains(dependency)) {
-                            currentNodeIsHead = false;
-                            break;
-                        }
-                    }
-                    if (currentNodeIsHead) {
-                        heads.add(currentNode);
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
                     }
+                    throw new RuntimeException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(
+                            "Interrupted while simulating the storage constraints", e);
                 }
             }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    /** @return */
-    private List<Choice> getCurrentChoices(String site) {
-        List<Choice> choices = new LinkedList<Choice>();
-        // Look at the execution of each head to decide how to proceed
-        for (GraphNode currentHead : heads) {
-            Choice c = calcSpaceFreedBy(site, currentHead);
-            choices.add(c);
+    /**
+     * Returns the maximum number of sites to simulate in parallel.
+     *
+     * @return the number of threads
+     */
+    private int getThreads() {
+        int threads = Math.min(DEFAULT_THREADS, Runtime.getRuntime().availableProcessors());
+        String value = mProps.getProperty(PROPERTY_THREADS);
+        if (value != null) {
+            try {
+                threads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                // ignore and use the default
+            }
         }
-        return choices;
+        return Math.max(1, threads);
     }
 
     /**
-     * @param site
-     * @param toExecute
-     * @return
+     * Returns the name of the property, for a particular site X.
+     *
+     * @param site the site X.
+     * @param suffix the property suffix to be applied.
+     * @return the name of the property.
      */
-    private Choice calcSpaceFreedBy(String site, GraphNode toExecute) {
-        // to calculate which files can be removed on running this head
-        Job currentJob = (Job) toExecute.getContent();
-        Map<Long, List<FloatingFile>> floatsForChoice = new HashMap<Long, List<FloatingFile>>();
-        long intermediateRequirement;
-
-        // Special case for stage out jobs:
-        // No intermediate space, space freed is equal to sum of outputs
-        if (currentJob.getJobType() == Job.STAGE_OUT_JOB && noChildrenRunHere(site, toExecute)) {
-            intermediateRequirement = 0;
-            for (PegasusFile outputFile : (Set<PegasusFile>) currentJob.getOutputFiles()) {
-                if (mDoNotClean.contains(outputFile)) {
-                    mLogger.log(
-                            "Cannot clean file " + outputFile.getLFN() + "!",
-                            LogManager.WARNING_MESSAGE_LEVEL);
-                } else {
-                    mLogger.log(
-                            "We can free file '"
-                                    + outputFile.getLFN()
-                                    + "' on executing '"
-                                    + currentJob.getID(),
-                            LogManager.DEBUG_MESSAGE_LEVEL);
-                    final long fileSize = Utilities.getFileSize(outputFile);
-                    if (!floatsForChoice.containsKey(fileSize)) {
-                        List<FloatingFile> floats = new ArrayList<FloatingFile>(1);
-                        floats.add(
-                                new FloatingFile(
-                                        new HashSet<GraphNode>(toExecute.getParents()),
-                                        outputFile));
-                        floatsForChoice.put(fileSize, floats);
-                    } else {
-                        // floatsForChoice contains a key, append to it
-                        floatsForChoice
-                                .get(fileSize)
-                                .add(
-                                        new FloatingFile(
-                                                new HashSet<GraphNode>(toExecute.getParents()),
-                                                outputFile));
+    private String getPropertyName(String site, String suffix) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(PROPERTY_PREFIX).append('.').append(site).append('.').append(suffix);
+        return sb.toString();
+    }
+
+    /** The jobs that consume a file generated by a parent job. */
+    private static class Consumers {
+
+        /** The children of the parent that take the file as input, in iteration order. */
+        private final List<GraphNode> mNodes = new ArrayList<GraphNode>();
+
+        /** The number of consumers that are yet to execute. */
+        private int mUnexecuted = 0;
+    }
+
+    /** The simulated execution of the jobs on a single site. */
+    private class Simulation {
+
+        /** The workflow to add cleanup jobs to. */
+        private final Graph mWorkflow;
+
+        /** The site ID. */
+        private final String mSite;
+
+        /** The set of jobs at the site. */
+        private final Set<GraphNode> mSiteJobs;
+
+        /** Maximum available space on the site. */
+        private long mMaxAvailableSpace;
+
+        /** How much space is still available on the site. */
+        private long mAvailableSpace;
+
+        /** Set of current heads (jobs that can be run immediately. */
+        private final Set<GraphNode> mHeads;
+
+        /** Set of jobs that have finished execution. */
+        private final Set<GraphNode> mExecuted;
+
+        /** List of files that are pending cleanup. */
+        private final NavigableMap<Long, List<FloatingFile>> mFloatingFiles;
+
+        /** Set of external stage-ins for which space is reserved in advance. */
+        private final Set<Job> mReservations;
+
+        /** The choices for the current heads. */
+        private final ChoiceQueue mChoices;
+
+        /** The heads whose choices need to be recomputed. */
+        private final Set<GraphNode> mStale;
+
+        /** The consumers of the output files of a parent, indexed by parent and file. */
+        private final Map<GraphNode, Map<PegasusFile, Consumers>> mConsumers;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param workflow the workflow to add cleanup jobs to
+         * @param site the site ID
+         * @param leaves the leaf jobs that are scheduled to site
+         */
+        Simulation(Graph workflow, String site, Set<GraphNode> leaves) {
+            mWorkflow = workflow;
+            mSite = site;
+            mHeads = new HashSet<GraphNode>();
+            mExecuted = new HashSet<GraphNode>();
+            mFloatingFiles = new TreeMap<Long, List<FloatingFile>>();
+            mReservations = new HashSet<Job>();
+            mChoices = new ChoiceQueue();
+            mStale = new HashSet<GraphNode>();
+            mConsumers = new HashMap<GraphNode, Map<PegasusFile, Consumers>>();
+
+            mLogger.log(site + " " + leaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
+            for (GraphNode currentNode : leaves) {
+                mLogger.log("Found node " + currentNode.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+
+            // if stage in jobs should not be deferred,
+            // locate all stage in jobs whose output
+            // site is the current site and mark them as
+            // executing on this site
+            if (!mDeferStageins) {
+                leaves = new HashSet<GraphNode>(leaves);
+                markStageIns(leaves);
+            }
+            mSiteJobs = leaves;
+        }
+
+        /**
+         * Returns the jobs whose parents or children the simulation may read or update. These are
+         * the jobs at the site, their parents and the other children of the parents, along with the
+         * stage out jobs of any of those and the children of the stage out jobs.
+         *
+         * @return the set of jobs
+         */
+        Set<GraphNode> getTouchedNodes() {
+            Set<GraphNode> nodes = new HashSet<GraphNode>();
+            for (GraphNode job : mSiteJobs) {
+                addTouchedNode(nodes, job);
+                for (GraphNode parent : job.getParents()) {
+                    addTouchedNode(nodes, parent);
+                    for (GraphNode peer : parent.getChildren()) {
+                        addTouchedNode(nodes, peer);
                     }
                 }
             }
-        } else if (currentJob.getJobType() == Job.STAGE_IN_JOB
-                || currentJob.getJobType() == Job.INTER_POOL_JOB) {
-            if (reservations.contains(currentJob)) {
-                // space has been reserved for the stage in already
-                // however we can't free any files after running this
-                intermediateRequirement = 0;
-            } else {
-                // we must check whether the target site of the stage in is this site or not
-                TransferJob transferJob = (TransferJob) currentJob;
-                if (transferJob.getNonThirdPartySite() != null
-                        && !transferJob.getNonThirdPartySite().equals(site)) {
-                    intermediateRequirement = 0;
-                } else {
-                    intermediateRequirement = Utilities.getIntermediateRequirement(currentJob);
+            return nodes;
+        }
+
+        /**
+         * Adds a node and its stage out children, along with their children to a set.
+         *
+         * @param nodes the set
+         * @param node the node
+         */
+        private void addTouchedNode(Set<GraphNode> nodes, GraphNode node) {
+            if (!nodes.add(node)) {
+                return;
+            }
+            for (GraphNode child : node.getChildren()) {
+                if (((Job) child.getContent()).getJobType() == Job.STAGE_OUT_JOB) {
+                    nodes.add(child);
+                    nodes.addAll(child.getChildren());
                 }
             }
-        } else {
-            // Not a stage out job
-            // Iterate one by one over all the parents
-            for (GraphNode currentParent : toExecute.getParents()) {
-                // Get the Job object corresponding to the parent
-                Job currentParentJob = (Job) currentParent.getContent();
+        }
 
-                mLogger.log(
-                        "Analysing parent " + currentParentJob.getID(),
-                        LogManager.DEBUG_MESSAGE_LEVEL);
+        /** Simulates the execution of the jobs on the site, adding cleanup jobs as required. */
+        void run() {
+            // Set available space from the property
+            String maxSiteSpace =
+                    mProps.getProperty(getPropertyName(mSite, PROPERTY_MAXSPACE_SUFFIX));
+            mMaxAvailableSpace =
+                    (maxSiteSpace == null) ? mMaxSpacePerSite : Long.parseLong(maxSiteSpace);
+            mAvailableSpace = mMaxAvailableSpace;
+            mLogger.log(
+                    "Performing constraint optimization on site "
+                            + mSite
+                            + " with maximum storage limit "
+                            + mMaxAvailableSpace,
+                    LogManager.INFO_MESSAGE_LEVEL);
+
+            // locate initial set of heads
+            locateInitialHeads();
+            mLogger.log(
+                    mSite
+                            + ": All jobs processed, "
+                            + mAvailableSpace
+                            + "/"
+                            + mMaxAvailableSpace
+                            + " space left",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+
+            // we should have a list of heads for this site by this point
+            for (GraphNode currentNode : mHeads) {
+                mLogger.log("Found head " + currentNode.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+                mStale.add(currentNode);
+            }
 
-                // Iterate over each output file of this parent
-                for (PegasusFile candidateFile :
-                        (Set<PegasusFile>) currentParentJob.getOutputFiles()) {
-
-                    // If this  output is used only by this job it can be removed
-                    if (currentJob.getInputFiles().contains(candidateFile)) {
-                        // current job takes this file as input
-                        // Populate the floaters table
-                        Set<GraphNode> dependenciesForFile = new HashSet<GraphNode>();
-
-                        // ensure that any other job that takes this file as input has already been
-                        // executed
-                        // have we seen another yet-to-execute job that needs this file?
-                        boolean candidateFileUsed = false;
-
-                        // Iterate over all jobs that could potentially use this file
-                        for (GraphNode currentPeer : currentParent.getChildren()) {
-
-                            // Get the Job object corresponding to this file
-                            Job currentPeerJob = (Job) currentPeer.getContent();
-
-                            if (currentPeerJob.getInputFiles().contains(candidateFile)) {
-                                // current peer job has to be run to delete the candidate file
-                                dependenciesForFile.add(currentPeer);
-
-                                // We know that the current job uses this file and has not yet run
-                                // So we're only interested in other jobs that use this file
-                                // (and that too only if they are yet to run)
-                                if ((!executed.contains(currentPeer)) // job yet to run
-                                        && currentPeerJob != currentJob) {
-                                    candidateFileUsed = true;
+            while (true) {
+                Choice selected = choose();
+                if (selected == null) {
+                    if (!mFloatingFiles.isEmpty()) {
+                        // we have to remove the last few floating files
+                        Choice dummy =
+                                new Choice(
+                                        0,
+                                        0,
+                                        new ArrayList<GraphNode>(
+                                                mFloatingFiles
+                                                        .firstEntry()
+                                                        .getValue()
+                                                        .iterator()
+                                                        .next()
+                                                        .dependencies),
+                                        null);
+                        freeSpace(dummy, 0);
+                    }
+                    break;
+                }
+                execute(selected);
+            }
+        }
+
+        /**
+         * Marks the stage in jobs whose output site is this site as executing on this site.
+         *
+         * @param currentSiteJobs the set of jobs at the current site
+         */
+        private void markStageIns(Set<GraphNode> currentSiteJobs) {
+            for (GraphNode node : mWorkflow.getRoots()) {
+                // we only deal with create dir jobs or stage in jobs
+                Job j = (Job) node.getContent();
+                switch (j.getJobType()) {
+                    case Job.CREATE_DIR_JOB:
+                        // search for child jobs that are stage in
+                        // jobs that also execute here
+                        for (GraphNode child : node.getChildren()) {
+                            Job childJob = (Job) child.getContent();
+                            if (childJob.getJobType() == Job.STAGE_IN_JOB) {
+                                TransferJob transferJob = (TransferJob) childJob;
+                                if (transferJob.getNonThirdPartySite().equals(mSite)) {
+                                    currentSiteJobs.add(child);
                                 }
                             }
                         }
+                        break;
+                    case Job.STAGE_IN_JOB:
+                        // if this job's non third party site is the current
+                        // site, then mark it as executing here
+                        TransferJob transferJob = (TransferJob) j;
+                        if (transferJob.getNonThirdPartySite() != null
+                                && transferJob.getNonThirdPartySite().equals(mSite)) {
+                            currentSiteJobs.add(node);
+                        }
+                        break;
+                    default:
+                        // other job types are ignored
+                }
+            }
+        }
 
-                        // If no one else uses the current file, we can free it
-                        if (!candidateFileUsed) {
-                            if (mDoNotClean.contains(candidateFile)) {
-                                mLogger.log(
-                                        "Cannot clean file " + candidateFile.getLFN(),
-                                        LogManager.DEBUG_MESSAGE_LEVEL);
-                            } else {
+        /**
+         * Locate the head nodes for the current site, simultaneously reserving space for stage-ins
+         * from other sites.
+         *
+         * <p>The algorithm used is based on the logic that if all dependencies are elsewhere too
+         * the node is a head. Space is reserved for stage ins from other sites to this site
+         */
+        private void locateInitialHeads() {
+            for (GraphNode currentNode : mSiteJobs) {
+                // assume all nodes are head nodes
+                boolean currentNodeIsHead = true;
+                // iterate over all dependencies
+                Set<GraphNode> dependenciesForNode = mDependencies.get(currentNode);
+                for (GraphNode dependency : dependenciesForNode) {
+                    // if we find a dependency thats running here this is not a head job
+                    if (mSiteJobs.contains(dependency)) {
+                        // the dependency is scheduled to run here
+                        currentNodeIsHead = false;
+                    } else {
+                        // this dependency node is running elsewhere
+                        // we must check if it is an inter-site stage-in and reserve space if so
+                        Job j = (Job) dependency.getContent();
+                        int type = j.getJobType();
+                        if ((type == Job.STAGE_IN_JOB || type == Job.INTER_POOL_JOB)
+                                && !mReservations.contains(j)) {
+                            mReservations.add(j);
+                            mLogger.log(
+                                    "Input stage in job " + j.getID(),
+                                    LogManager.DEBUG_MESSAGE_LEVEL);
+                            // figure out sizes and reserve that much space
+                            Set<PegasusFile> outputs = j.getOutputFiles();
+                            for (PegasusFile currentOutput : outputs) {
+                                long currentOutputFileSize =
+                                        Utilities.getFileSize(currentOutput, mFileSizes);
                                 mLogger.log(
-                                        "We can free file '"
-                                                + candidateFile.getLFN()
-                                                + "' on executing '"
-                                                + currentJob.getID(),
+                                        "Found stage in of file "
+                                                + currentOutput.getLFN()
+                                                + " of size "
+                                                + currentOutputFileSize,
                                         LogManager.DEBUG_MESSAGE_LEVEL);
-                                final long fileSize = Utilities.getFileSize(candidateFile);
-                                if (!floatsForChoice.containsKey(fileSize)) {
-                                    List<FloatingFile> files = new ArrayList<FloatingFile>(1);
-                                    files.add(new FloatingFile(dependenciesForFile, candidateFile));
-                                    floatsForChoice.put(fileSize, files);
-                                } else {
-                                    floatsForChoice
-                                            .get(fileSize)
-                                            .add(
-                                                    new FloatingFile(
-                                                            dependenciesForFile, candidateFile));
-                                }
+                                mAvailableSpace -= currentOutputFileSize;
                             }
                         }
                     }
                 }
-            }
-            // There may also be output files created by this job that are not used by any of its
-            // children
-            if (currentJob.getJobType() != Job.STAGE_OUT_JOB) {
-                for (PegasusFile outputFile : (Set<PegasusFile>) currentJob.getOutputFiles()) {
-                    // check if any children use this file
-                    boolean outputFileUsed = false;
-                    for (GraphNode child : toExecute.getChildren()) {
-                        // check if this child uses this file
-                        Job childJob = (Job) child.getContent();
-                        if (childJob.getInputFiles().contains(outputFile)) {
-                            outputFileUsed = true;
+                if (currentNodeIsHead) {
+                    if (((Job) currentNode.getContent()).getJobType() == Job.CREATE_DIR_JOB) {
+                        mLogger.log(
+                                "Job " + currentNode.getID() + " is a create dir.",
+                                LogManager.DEBUG_MESSAGE_LEVEL);
+                        // when create dir, add immediate children if they are scheduled to run
+                        // here
+                        mExecuted.add(currentNode);
+                        for (GraphNode child : currentNode.getChildren()) {
+                            if (mSiteJobs.contains(child)) {
+                                mHeads.add(child);
+                            }
+                        }
+                    } else {
+                        // It may still not be a head if its indirect dependencies run on this node
+                        for (GraphNode dependency : mDependencies.get(currentNode)) {
+                            if (mSiteJobs.contains(dependency)) {
+                                currentNodeIsHead = false;
+                                break;
+                            }
+                        }
+                        if (currentNodeIsHead) {
+                            mHeads.add(currentNode);
                         }
                     }
-                    if (!outputFileUsed) {
+                }
+            }
+        }
+
+        /**
+         * Computes the choice associated with executing a head.
+         *
+         * @param toExecute the head
+         * @return the choice
+         */
+        private Choice calcSpaceFreedBy(GraphNode toExecute) {
+            // to calculate which files can be removed on running this head
+            Job currentJob = (Job) toExecute.getContent();
+            Map<Long, List<FloatingFile>> floatsForChoice = new HashMap<Long, List<FloatingFile>>();
+            long intermediateRequirement;
+
+            // Special case for stage out jobs:
+            // No intermediate space, space freed is equal to sum of outputs
+            if (currentJob.getJobType() == Job.STAGE_OUT_JOB && noChildrenRunHere(toExecute)) {
+                intermediateRequirement = 0;
+                for (PegasusFile outputFile : (Set<PegasusFile>) currentJob.getOutputFiles()) {
+                    if (mDoNotClean.contains(outputFile)) {
+                        mLogger.log(
+                                "Cannot clean file " + outputFile.getLFN() + "!",
+                                LogManager.WARNING_MESSAGE_LEVEL);
+                    } else {
                         mLogger.log(
                                 "We can free file '"
                                         + outputFile.getLFN()
                                         + "' on executing '"
-                                        + toExecute.getID()
-                                        + "' since no children need",
+                                        + currentJob.getID(),
                                 LogManager.DEBUG_MESSAGE_LEVEL);
-                        Set<GraphNode> dependenciesForFile = new HashSet<GraphNode>(1);
-                        dependenciesForFile.add(toExecute);
-                        Long fileSize = Utilities.getFileSize(outputFile);
+                        final long fileSize = Utilities.getFileSize(outputFile, mFileSizes);
                         if (!floatsForChoice.containsKey(fileSize)) {
-                            List<FloatingFile> files = new ArrayList<FloatingFile>(1);
-                            files.add(new FloatingFile(dependenciesForFile, outputFile));
-                            floatsForChoice.put(fileSize, files);
+                            List<FloatingFile> floats = new ArrayList<FloatingFile>(1);
+                            floats.add(
+                                    new FloatingFile(
+                                            new HashSet<GraphNode>(toExecute.getParents()),
+                                            outputFile));
+                            floatsForChoice.put(fileSize, floats);
                         } else {
+                            // floatsForChoice contains a key, append to it
                             floatsForChoice
                                     .get(fileSize)
-                                    .add(new FloatingFile(dependenciesForFile, outputFile));
+                                    .add(
+                                            new FloatingFile(
+                                                    new HashSet<GraphNode>(toExecute.getParents()),
+                                                    outputFile));
                         }
                     }
                 }
-            }
-            intermediateRequirement = Utilities.getIntermediateRequirement(currentJob);
-        }
-        // The list of jobs run on executing this file is a singleton containing only this job
-        LinkedList<GraphNode> list = new LinkedList<GraphNode>();
-        list.add(toExecute);
+            } else if (currentJob.getJobType() == Job.STAGE_IN_JOB
+                    || currentJob.getJobType() == Job.INTER_POOL_JOB) {
+                if (mReservations.contains(currentJob)) {
+                    // space has been reserved for the stage in already
+                    // however we can't free any files after running this
+                    intermediateRequirement = 0;
+                } else {
+                    // we must check whether the target site of the stage in is this site or not
+                    TransferJob transferJob = (TransferJob) currentJob;
+                    if (transferJob.getNonThirdPartySite() != null
+                            && !transferJob.getNonThirdPartySite().equals(mSite)) {
+                        intermediateRequirement = 0;
+                    } else {
+                        intermediateRequirement =
+                                Utilities.getIntermediateRequirement(currentJob, mFileSizes);
+                    }
+                }
+            } else {
+                // Not a stage out job
+                // Iterate one by one over all the parents
+                for (GraphNode currentParent : toExecute.getParents()) {
+                    // Get the Job object corresponding to the parent
+                    Job currentParentJob = (Job) currentParent.getContent();
 
-        long spaceFreedByRunningCurrentHead = 0;
-        for (Long entry : floatsForChoice.keySet()) {
-            spaceFreedByRunningCurrentHead += entry;
-        }
+                    mLogger.log(
+                            "Analysing parent " + currentParentJob.getID(),
+                            LogManager.DEBUG_MESSAGE_LEVEL);
 
-        // Note: we are interested in the 'balance' of a job i.e. the overall effect of running the
-        // job
-        // Balance = size(outputs) - size(inputs)
-        // We look for jobs with negative balance
-        // Therefore, the 'balance' is calculated as:
-        //		intermediateRequirement - spaceFreedByRunningCurrentHead
-        // intermediateRequirement represents the output size
-        // spaceFreedByRunningCurrentHead represents the deletable inputs
-        return new Choice(
-                intermediateRequirement,
-                intermediateRequirement - spaceFreedByRunningCurrentHead,
-                list,
-                floatsForChoice);
-    }
+                    // Iterate over each output file of this parent
+                    for (PegasusFile candidateFile :
+                            (Set<PegasusFile>) currentParentJob.getOutputFiles()) {
 
-    /**
-     * @param parent
-     * @return
-     */
-    private boolean noChildrenRunHere(String site, GraphNode parent) {
-        for (GraphNode child : parent.getChildren()) {
-            Job j = (Job) child.getContent();
-            // If we find even one child who runs here return false
-            if (!j.getSiteHandle().equals(site)) {
-                return false;
+                        // If this  output is used only by this job it can be removed
+                        if (currentJob.getInputFiles().contains(candidateFile)) {
+                            // current job takes this file as input.
+                            // ensure that any other job that takes this file as input has
+                            // already been executed. the current job is one of the consumers
+                            // and is yet to run
+                            Consumers consumers = consumersOf(currentParent, candidateFile);
+                            boolean candidateFileUsed =
+                                    consumers.mUnexecuted - (mExecuted.contains(toExecute) ? 0 : 1)
+                                            > 0;
+
+                            // If no one else uses the current file, we can free it
+                            if (!candidateFileUsed) {
+                                if (mDoNotClean.contains(candidateFile)) {
+                                    mLogger.log(
+                                            "Cannot clean file " + candidateFile.getLFN(),
+                                            LogManager.DEBUG_MESSAGE_LEVEL);
+                                } else {
+                                    mLogger.log(
+                                            "We can free file '"
+                                                    + candidateFile.getLFN()
+                                                    + "' on executing '"
+                                                    + currentJob.getID(),
+                                            LogManager.DEBUG_MESSAGE_LEVEL);
+                                    // all the consumers have to be run to delete the file
+                                    Set<GraphNode> dependenciesForFile = new HashSet<GraphNode>();
+                                    for (GraphNode consumer : consumers.mNodes) {
+                                        dependenciesForFile.add(consumer);
+                                    }
+                                    final long fileSize =
+                                            Utilities.getFileSize(candidateFile, mFileSizes);
+                                    if (!floatsForChoice.containsKey(fileSize)) {
+                                        List<FloatingFile> files = new ArrayList<FloatingFile>(1);
+                                        files.add(
+                                                new FloatingFile(
+                                                        dependenciesForFile, candidateFile));
+                                        floatsForChoice.put(fileSize, files);
+                                    } else {
+                                        floatsForChoice
+                                                .get(fileSize)
+                                                .add(
+                                                        new FloatingFile(
+                                                                dependenciesForFile,
+                                                                candidateFile));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+                // There may also be output files created by this job that are not used by any of
+                // its children
+                if (currentJob.getJobType() != Job.STAGE_OUT_JOB) {
+                    for (PegasusFile outputFile : (Set<PegasusFile>) currentJob.getOutputFiles()) {
+                        // check if any children use this file
+                        boolean outputFileUsed = false;
+                        for (GraphNode child : toExecute.getChildren()) {
+                            // check if this child uses this file
+                            Job childJob = (Job) child.getContent();
+                            if (childJob.getInputFiles().contains(outputFile)) {
+                                outputFileUsed = true;
+                                break;
+                            }
+                        }
+                        if (!outputFileUsed) {
+                            mLogger.log(
+                                    "We can free file '"
+                                            + outputFile.getLFN()
+                                            + "' on executing '"
+                                            + toExecute.getID()
+                                            + "' since no children need",
+                                    LogManager.DEBUG_MESSAGE_LEVEL);
+                            Set<GraphNode> dependenciesForFile = new HashSet<GraphNode>(1);
+                            dependenciesForFile.add(toExecute);
+                            Long fileSize = Utilities.getFileSize(outputFile, mFileSizes);
+                            if (!floatsForChoice.containsKey(fileSize)) {
+                                List<FloatingFile> files = new ArrayList<FloatingFile>(1);
+                                files.add(new FloatingFile(dependenciesForFile, outputFile));
+                                floatsForChoice.put(fileSize, files);
+                            } else {
+                                floatsForChoice
+                                        .get(fileSize)
+                                        .add(new FloatingFile(dependenciesForFile, outputFile));
+                            }
+                        }
+                    }
+                }
+                intermediateRequirement =
+                        Utilities.getIntermediateRequirement(currentJob, mFileSizes);
             }
+            // The list of jobs run on executing this file is a singleton containing only this job
+            LinkedList<GraphNode> list = new LinkedList<GraphNode>();
+            list.add(toExecute);
+
+            long spaceFreedByRunningCurrentHead = 0;
+            for (Long entry : floatsForChoice.keySet()) {
+                spaceFreedByRunningCurrentHead += entry;
+            }
+
+            // Note: we are interested in the 'balance' of a job i.e. the overall effect of running
+            // the job
+            // Balance = size(outputs) - size(inputs)
+            // We look for jobs with negative balance
+            // Therefore, the 'balance' is calculated as:
+            //		intermediateRequirement - spaceFreedByRunningCurrentHead
+            // intermediateRequirement represents the output size
+            // spaceFreedByRunningCurrentHead represents the deletable inputs
+            return new Choice(
+                    intermediateRequirement,
+                    intermediateRequirement - spaceFreedByRunningCurrentHead,
+                    list,
+                    floatsForChoice);
         }
-        return true;
-    }
 
-    /**
-     * @param choices
-     * @return
-     */
-    private Choice choose(Iterable<Choice> choices) {
-        final Choice placeholder = new Choice(Long.MAX_VALUE, Long.MAX_VALUE, null, null);
-        Choice candidateChoice = placeholder;
-        mLogger.log("Current choices are:", LogManager.DEBUG_MESSAGE_LEVEL);
-
-        for (Choice currentChoice : choices) {
-            mLogger.log(currentChoice.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-            // We're interested in the choice (amongst the choices that free) space with the least
-            // intermediate requirement
-            if (currentChoice.balance <= 0) {
-
-                // We're interested in the job with the least intermediate space requirement
-                if (currentChoice.intermediateSpaceRequirement
-                        < candidateChoice.intermediateSpaceRequirement) {
-                    candidateChoice = currentChoice;
+        /**
+         * Returns the children of a parent that take a file generated by the parent as input. The
+         * consumers are computed the first time they are required, and the number of consumers yet
+         * to execute is updated as the consumers execute.
+         *
+         * @param parent the parent
+         * @param file the output file of the parent
+         * @return the consumers
+         */
+        private Consumers consumersOf(GraphNode parent, PegasusFile file) {
+            Map<PegasusFile, Consumers> files = mConsumers.get(parent);
+            if (files == null) {
+                files = new HashMap<PegasusFile, Consumers>();
+                mConsumers.put(parent, files);
+            }
+            Consumers consumers = files.get(file);
+            if (consumers == null) {
+                consumers = new Consumers();
+                // Iterate over all jobs that could potentially use this file
+                for (GraphNode peer : parent.getChildren()) {
+                    Job peerJob = (Job) peer.getContent();
+                    if (peerJob.getInputFiles().contains(file)) {
+                        consumers.mNodes.add(peer);
+                        if (!mExecuted.contains(peer)) {
+                            consumers.mUnexecuted++;
+                        }
+                    }
                 }
+                files.put(file, consumers);
             }
+            return consumers;
         }
-        if (candidateChoice == placeholder) {
-            // There was no choice that released space. So, select the choice with least balance
-            // from all the choices
-            for (Choice currentChoice : choices) {
-                if (currentChoice.balance < candidateChoice.balance) {
-                    candidateChoice = currentChoice;
+
+        /**
+         * @param parent
+         * @return
+         */
+        private boolean noChildrenRunHere(GraphNode parent) {
+            for (GraphNode child : parent.getChildren()) {
+                Job j = (Job) child.getContent();
+                // If we find even one child who runs here return false
+                if (!j.getSiteHandle().equals(mSite)) {
+                    return false;
                 }
             }
+            return true;
         }
-        Choice selectedChoice = (candidateChoice == placeholder ? null : candidateChoice);
-        return selectedChoice;
-    }
 
-    /**
-     * @param workflow
-     * @param site
-     * @param selected
-     * @param requiredSpace
-     */
-    private void freeSpace(Graph workflow, String site, Choice selected, long requiredSpace) {
-        List<PegasusFile> listOfFiles = new ArrayList<PegasusFile>();
-        // temporarily use the checkpoint method
-        Set<GraphNode> parents = new HashSet<GraphNode>();
-        Iterator<Map.Entry<Long, List<FloatingFile>>> i = floatingFiles.entrySet().iterator();
-        if (i.hasNext()) {
-            for (Map.Entry<Long, List<FloatingFile>> entry; i.hasNext(); ) {
-                entry = i.next();
-                for (FloatingFile f : entry.getValue()) {
-                    parents.addAll(f.dependencies);
-                    availableSpacePerSite.put(
-                            site, availableSpacePerSite.get(site) + entry.getKey());
-                    requiredSpace -= entry.getKey();
-                    listOfFiles.add(f.file);
+        /**
+         * Selects the next choice to execute, after recomputing the choices of the heads whose
+         * choices may have changed.
+         *
+         * @return the selected choice, else null if there are no more heads
+         */
+        private Choice choose() {
+            for (GraphNode head : mStale) {
+                if (mHeads.contains(head)) {
+                    mChoices.put(head, calcSpaceFreedBy(head));
                 }
-                i.remove();
             }
+            mStale.clear();
+            return mChoices.select(mHeads);
         }
-        if (requiredSpace > 0) {
-            throw new OutOfSpaceError(
-                    "The storage provided is insufficient ("
-                            + maxAvailableSpacePerSite.get(site)
-                            + "), need "
-                            + requiredSpace
-                            + " more space on site '"
-                            + site
-                            + "'.");
+
+        /**
+         * Marks the choice of a node as requiring recomputation, if the node is a current head.
+         *
+         * @param node the node
+         */
+        private void markStale(GraphNode node) {
+            if (mHeads.contains(node)) {
+                mStale.add(node);
+            }
         }
-        // For 1 cleanup job
-        String id = CLEANUP_JOB_PREFIX + new Random().nextInt(Integer.MAX_VALUE);
-        if (!parents.isEmpty()) {
-            GraphNode node =
-                    new GraphNode(
-                            id,
+
+        /**
+         * @param selected
+         * @param requiredSpace
+         */
+        private void freeSpace(Choice selected, long requiredSpace) {
+            List<PegasusFile> listOfFiles = new ArrayList<PegasusFile>();
+            // temporarily use the checkpoint method
+            Set<GraphNode> parents = new HashSet<GraphNode>();
+            Iterator<Map.Entry<Long, List<FloatingFile>>> i = mFloatingFiles.entrySet().iterator();
+            if (i.hasNext()) {
+                for (Map.Entry<Long, List<FloatingFile>> entry; i.hasNext(); ) {
+                    entry = i.next();
+                    for (FloatingFile f : entry.getValue()) {
+                        parents.addAll(f.dependencies);
+                        mAvailableSpace += entry.getKey();
+                        requiredSpace -= entry.getKey();
+                        listOfFiles.add(f.file);
+                    }
+                    i.remove();
+                }
+            }
+            if (requiredSpace > 0) {
+                throw new OutOfSpaceError(
+                        "The storage provided is insufficient ("
+                                + mMaxAvailableSpace
+                                + "), need "
+                                + requiredSpace
+                                + " more space on site '"
+                                + mSite
+                                + "'.");
+            }
+            // For 1 cleanup job
+            String id = CLEANUP_JOB_PREFIX + new Random().nextInt(Integer.MAX_VALUE);
+            if (!parents.isEmpty()) {
+                Job cleanupJob;
+                synchronized (mWorkflow) {
+                    cleanupJob =
                             mImpl.createCleanupJob(
-                                    id, listOfFiles, (Job) parents.iterator().next().getContent()));
-            for (GraphNode parent : parents) {
-                boolean hasStageOut = false;
-                for (GraphNode child : parent.getChildren()) {
-                    Job currentJob = (Job) child.getContent();
-                    if (currentJob.getJobType() == Job.STAGE_OUT_JOB) {
-                        for (GraphNode gc : child.getChildren()) {
-                            node.addChild(gc);
-                            gc.addParent(node);
+                                    id, listOfFiles, (Job) parents.iterator().next().getContent());
+                }
+                GraphNode node = new GraphNode(id, cleanupJob);
+
+                // the nodes that get the cleanup job as child or parent
+                Set<GraphNode> extended = new HashSet<GraphNode>();
+                Set<GraphNode> grandChildren = new HashSet<GraphNode>();
+                for (GraphNode parent : parents) {
+                    boolean hasStageOut = false;
+                    for (GraphNode child : parent.getChildren()) {
+                        Job currentJob = (Job) child.getContent();
+                        if (currentJob.getJobType() == Job.STAGE_OUT_JOB) {
+                            for (GraphNode gc : child.getChildren()) {
+                                node.addChild(gc);
+                                gc.addParent(node);
+                                grandChildren.add(gc);
+                            }
+                            child.addChild(node);
+                            node.addParent(child);
+                            extended.add(child);
+                            hasStageOut = true;
                         }
-                        child.addChild(node);
-                        node.addParent(child);
-                        hasStageOut = true;
+                    }
+                    if (!hasStageOut) {
+                        parent.addChild(node);
+                        node.addParent(parent);
+                        extended.add(parent);
                     }
                 }
-                if (!hasStageOut) {
-                    parent.addChild(node);
-                    node.addParent(parent);
+                // prevent loops
+                node.removeChild(node);
+                node.removeParent(node);
+
+                mLogger.log(
+                        Utilities.cleanUpJobToString(parents, mHeads, listOfFiles, mFileSizes),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                synchronized (mWorkflow) {
+                    mWorkflow.addNode(node);
+                }
+
+                // the cleanup job is a new peer for the children of the nodes
+                // it was added to, and a new parent for the grand children
+                for (GraphNode n : extended) {
+                    mConsumers.remove(n);
+                    markStale(n);
+                    for (GraphNode child : n.getChildren()) {
+                        markStale(child);
+                    }
+                }
+                for (GraphNode gc : grandChildren) {
+                    markStale(gc);
                 }
             }
-            // prevent loops
-            node.removeChild(node);
-            node.removeParent(node);
 
             mLogger.log(
-                    Utilities.cleanUpJobToString(parents, heads, listOfFiles),
+                    mSite + ": Space available is now " + mAvailableSpace,
                     LogManager.DEBUG_MESSAGE_LEVEL);
-            workflow.addNode(node);
         }
 
-        mLogger.log(
-                site + ": Space available is now " + availableSpacePerSite.get(site),
-                LogManager.DEBUG_MESSAGE_LEVEL);
-    }
+        /**
+         * Add all jobs in selected list of jobs to the executed set and update the list of heads.
+         *
+         * @param selected
+         */
+        private void execute(Choice selected) {
+            // We must add all the jobs in selected's list of jobs to the executed set
+            // and also update the list of heads
+            Set<GraphNode> candidateHeads = new HashSet<GraphNode>();
+
+            if (mAvailableSpace < selected.intermediateSpaceRequirement) {
+                final long requiredSpace = selected.intermediateSpaceRequirement - mAvailableSpace;
+                mLogger.log(
+                        "Require " + requiredSpace + " more space, creating cleanup job",
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                freeSpace(selected, requiredSpace);
+            }
+            mAvailableSpace -= selected.intermediateSpaceRequirement;
 
-    /**
-     * Add all jobs in selected list of jobs to the executed set and update the list of heads.
-     *
-     * @param workflow
-     * @param site
-     * @param selected
-     * @param currentSiteJobs
-     */
-    private void execute(
-            Graph workflow, String site, Choice selected, Set<GraphNode> currentSiteJobs) {
-        // We must add all the jobs in selected's list of jobs to the executed set
-        // and also update the list of heads
-        Set<GraphNode> candidateHeads = new HashSet<GraphNode>();
-
-        if (availableSpacePerSite.get(site) < selected.intermediateSpaceRequirement) {
-            final long requiredSpace =
-                    selected.intermediateSpaceRequirement - availableSpacePerSite.get(site);
             mLogger.log(
-                    "Require " + requiredSpace + " more space, creating cleanup job",
+                    mSite
+                            + ": Selected choice ("
+                            + mAvailableSpace
+                            + "/"
+                            + mMaxAvailableSpace
+                            + " free after exec): "
+                            + selected,
                     LogManager.DEBUG_MESSAGE_LEVEL);
-            freeSpace(workflow, site, selected, requiredSpace);
-        }
-        availableSpacePerSite.put(
-                site, availableSpacePerSite.get(site) - selected.intermediateSpaceRequirement);
 
-        mLogger.log(
-                site
-                        + ": Selected choice ("
-                        + availableSpacePerSite.get(site)
-                        + "/"
-                        + maxAvailableSpacePerSite.get(site)
-                        + " free after exec): "
-                        + selected,
-                LogManager.DEBUG_MESSAGE_LEVEL);
+            // Phase I: Mark nodes as executed and remove them from head
+            for (GraphNode node : selected.listOfJobs) {
+                if (mExecuted.add(node)) {
+                    updateConsumers(node);
+                }
+                mHeads.remove(node);
+                mChoices.remove(node);
+                candidateHeads.addAll(node.getChildren());
+            }
+
+            // Phase II:Examine candidate heads and add if necessary
+            for (GraphNode candidateHead : candidateHeads) {
+                boolean unsatisfiedDependency = false;
+                if (mDependencies.containsKey(candidateHead)) {
+                    for (GraphNode dependency : mDependencies.get(candidateHead)) {
+                        if (!mExecuted.contains(dependency) && mSiteJobs.contains(dependency)) {
+                            unsatisfiedDependency = true;
+                            break;
+                        }
+                    }
+                }
+                if (!unsatisfiedDependency && mSiteJobs.contains(candidateHead)) {
+                    mLogger.log(
+                            "Can now execute " + candidateHead.getID(),
+                            LogManager.DEBUG_MESSAGE_LEVEL);
+                    mHeads.add(candidateHead);
+                    mStale.add(candidateHead);
+                }
+            }
 
-        // Phase I: Mark nodes as executed and remove them from head
-        for (GraphNode node : selected.listOfJobs) {
-            executed.add(node);
-            heads.remove(node);
-            candidateHeads.addAll(node.getChildren());
+            // finally update the floating file list
+            updateFloats(selected.floatingFiles);
         }
 
-        // Phase II:Examine candidate heads and add if necessary
-        for (GraphNode candidateHead : candidateHeads) {
-            boolean unsatisfiedDependency = false;
-            if (dependencies.containsKey(candidateHead)) {
-                for (GraphNode dependency : dependencies.get(candidateHead)) {
-                    if (!executed.contains(dependency) && currentSiteJobs.contains(dependency)) {
-                        unsatisfiedDependency = true;
-                        break;
+        /**
+         * Updates the number of consumers yet to execute for the files a job takes as input. Heads
+         * whose files can now be freed are marked for recomputation of their choices.
+         *
+         * @param executed the job that has been executed
+         */
+        private void updateConsumers(GraphNode executed) {
+            Job job = (Job) executed.getContent();
+            for (GraphNode parent : executed.getParents()) {
+                Map<PegasusFile, Consumers> files = mConsumers.get(parent);
+                if (files == null) {
+                    continue;
+                }
+                for (PegasusFile input : (Set<PegasusFile>) job.getInputFiles()) {
+                    Consumers consumers = files.get(input);
+                    if (consumers != null && --consumers.mUnexecuted <= 1) {
+                        // the remaining consumer can free the file now
+                        for (GraphNode consumer : consumers.mNodes) {
+                            markStale(consumer);
+                        }
                     }
                 }
             }
-            if (!unsatisfiedDependency && currentSiteJobs.contains(candidateHead)) {
-                mLogger.log(
-                        "Can now execute " + candidateHead.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
-                heads.add(candidateHead);
-            }
         }
 
-        // finally update the floating file list
-        updateFloats(selected.floatingFiles);
-    }
-
-    /**
-     * Safely merge a new floating file list into the internal floating files list.
-     *
-     * @param floatingFiles the list to be merged into the internal floating files list
-     */
-    private void updateFloats(Map<Long, List<FloatingFile>> floatingFilesList) {
-        for (Map.Entry<Long, List<FloatingFile>> entry : floatingFilesList.entrySet()) {
-            // for each key, iterate over values
-            for (FloatingFile f : entry.getValue()) {
-                if (floatingFiles.containsKey(entry.getKey())) {
-                    // insert 'f' into the corresponding list
-                    floatingFiles.get(entry.getKey()).add(f);
-                } else {
-                    // insert list directly
-                    floatingFiles.put(entry.getKey(), entry.getValue());
-                    break;
+        /**
+         * Safely merge a new floating file list into the internal floating files list.
+         *
+         * @param floatingFilesList the list to be merged into the internal floating files list
+         */
+        private void updateFloats(Map<Long, List<FloatingFile>> floatingFilesList) {
+            for (Map.Entry<Long, List<FloatingFile>> entry : floatingFilesList.entrySet()) {
+                // for each key, iterate over values
+                for (FloatingFile f : entry.getValue()) {
+                    if (mFloatingFiles.containsKey(entry.getKey())) {
+                        // insert 'f' into the corresponding list
+                        mFloatingFiles.get(entry.getKey()).add(f);
+                    } else {
+                        // insert list directly
+                        mFloatingFiles.put(entry.getKey(), entry.getValue());
+                        break;
+                    }
                 }
             }
         }
     }
-
-    /**
-     * Returns the name of the property, for a particular site X.
-     *
-     * @param site the site X.
-     * @param suffix the property suffix to be applied.
-     * @return the name of the property.
-     */
-    private String getPropertyName(String site, String suffix) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(PROPERTY_PREFIX).append('.').append(site).append('.').append(suffix);
-        return sb.toString();
-    }
 }
@@ -21,14 +21,23 @@ import edu.isi.pegasus.planner.namespace.Condor;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNodeContent;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This generates cleanup jobs in the workflow itself.
@@ -44,7 +53,17 @@ public class InPlace extends AbstractCleanupStrategy {
     public static final float NUM_JOBS_PER_LEVEL_PER_CLEANUP_JOB = 5;
 
     /**
-     * Adds cleanup jobs to the workflow.
+     * The property for the maximum number of sites for which cleanup jobs are computed in parallel.
+     */
+    private static final String PROPERTY_THREADS = "pegasus.file.cleanup.inplace.threads";
+
+    /** Default maximum number of sites for which cleanup jobs are computed in parallel. */
+    private static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Adds cleanup jobs to the workflow. The cleanup jobs for each site are computed independently,
+     * and in parallel if there are multiple sites. The workflow itself is only modified afterwards,
+     * one site at a time in the sorted order of the sites.
      *
      * @param workflow the workflow to add cleanup jobs to.
      * @return the workflow with cleanup jobs added to it.
@@ -54,10 +73,29 @@ public class InPlace extends AbstractCleanupStrategy {
         // invoke addCleanupJobs from super class.
         workflow = super.addCleanupJobs(workflow);
 
-        // for each site do the process of adding cleanup jobs
-        for (Iterator it = mResMap.entrySet().iterator(); it.hasNext(); ) {
-            Map.Entry entry = (Map.Entry) it.next();
-            addCleanUpJobs((String) entry.getKey(), (Set) entry.getValue(), workflow);
+        List<String> sites = new ArrayList(mResMap.keySet());
+        Collections.sort(sites);
+        List<SiteCleanup> cleanups = new LinkedList();
+        for (String site : sites) {
+            cleanups.add(new SiteCleanup(site, (Set) mResMap.get(site)));
+        }
+
+        // for each site compute the cleanup jobs that need to be added
+        int threads = Math.min(cleanups.size(), this.getThreads());
+        if (threads <= 1) {
+            for (SiteCleanup cleanup : cleanups) {
+                cleanup.run();
+            }
+        } else {
+            mLogger.log(
+                    "Computing cleanup jobs for " + cleanups.size() + " sites in parallel",
+                    LogManager.DEBUG_MESSAGE_LEVEL);
+            computeInParallel(cleanups, threads);
+        }
+
+        // add the cleanup jobs and their edges to the workflow
+        for (SiteCleanup cleanup : cleanups) {
+            cleanup.addToWorkflow(workflow);
         }
 
         //        mLogger.log( "The resultant workflow with cleanup jobs " + workflow,
@@ -66,228 +104,56 @@ public class InPlace extends AbstractCleanupStrategy {
     }
 
     /**
-     * Adds cleanup jobs for the workflow scheduled to a particular site a breadth first search
-     * strategy is implemented based on the depth of the job in the workflow
+     * Computes the cleanup jobs for the sites in parallel.
      *
-     * @param site the site ID
-     * @param leaves the leaf jobs that are scheduled to site
-     * @param workflow the Graph into which new cleanup jobs can be added
+     * @param cleanups the cleanup computations for the sites
+     * @param threads the number of threads to use
      */
-    private void addCleanUpJobs(String site, Set leaves, Graph workflow) {
-
-        mLogger.log(site + " " + leaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
-        HashMap cleanedBy = new HashMap();
-
-        // the below in case we get rid of the primitive java 1.4
-        // PriorityQueue<GraphNode> pQ=new
-        // PriorityQueue<GraphNode>(resMap.get(site).size(),GraphNode_ORDER);
-        StringBuffer message = new StringBuffer();
-        message.append("Leaf  jobs scheduled at site ").append(site).append(" are ");
-        for (Iterator it = leaves.iterator(); it.hasNext(); ) {
-            message.append(((GraphNode) it.next()).getID());
-            message.append(",");
-        }
-        mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-
-        // its a Set of GraphNode's
-        Set[] pQA = new Set[mMaxDepth + 1];
-        for (int i = 0; i < pQA.length; i++) {
-            pQA[i] = new HashSet();
-        }
-
-        // populate the priority Array pQA with all the leaf nodes
-        for (Iterator it = leaves.iterator(); it.hasNext(); ) {
-            GraphNode gN = (GraphNode) it.next();
-            pQA[gN.getDepth()].add(gN);
-        }
-
-        List<GraphNode> wfCleanupNodes =
-                new LinkedList(); // stores all the cleanup nodes added for the workflow
-        // start the breadth first cleanup job addition
-        for (int curP = mMaxDepth; curP >= 0; curP--) {
-            List<GraphNode> cleanupNodesPerLevel = new LinkedList();
-
-            // process all elements in the current priority
-            while (pQA[curP].size() >= 1) {
-                GraphNode curGN = (GraphNode) pQA[curP].iterator().next();
-                pQA[curP].remove(curGN);
-                Job curGN_SI = (Job) curGN.getContent();
-
-                if (!typeNeedsCleanUp(curGN)) {
-                    continue;
-                }
-
-                //              Leads to corruption of input files for the job.
-                //                Set fileSet = curGN_SI.getInputFiles();
-                Set<PegasusFile> fileSet = new HashSet(curGN_SI.getInputFiles());
-
-                // PM-698 traverse through the input files and unset those
-                // that have cleanup flag set to false
-                for (Iterator<PegasusFile> it = fileSet.iterator(); it.hasNext(); ) {
-                    PegasusFile pf = it.next();
-                    if (!pf.canBeCleanedup()) {
-                        // PM-969 we only consider the cleanup attribute and not the transfer flag
-                        // itself
-                        it.remove();
-                        mLogger.log(
-                                "File "
-                                        + pf.getLFN()
-                                        + " will not be cleaned up for job "
-                                        + curGN_SI.getID(),
-                                LogManager.DEBUG_MESSAGE_LEVEL);
-                    }
-                }
-
-                for (Object obj : curGN_SI.getOutputFiles()) {
-                    PegasusFile pf = (PegasusFile) obj;
-                    if (pf.canBeCleanedup()) {
-                        // PM-739 only add if the cleanup flag is set to true
-                        fileSet.add(pf);
-                    } else {
-                        mLogger.log(
-                                "File "
-                                        + pf.getLFN()
-                                        + " will not be cleaned up for job "
-                                        + curGN_SI.getID(),
-                                LogManager.DEBUG_MESSAGE_LEVEL);
-                    }
-                }
-
-                // remove the files in fileSet that are in this.mDoNotClean
-                Set fileSet2 = new HashSet(fileSet);
-                for (Iterator itfs2 = fileSet2.iterator(); itfs2.hasNext(); ) {
-                    Object _dum_pf = itfs2.next();
-                    if (this.mDoNotClean.contains(_dum_pf)) {
-                        fileSet.remove(_dum_pf);
-                    }
-                }
-
-                // create new GraphNode with MLogicalID=mLogicalName , mParents
-                // mContent ID ,Name , jobtype
-                // the files it cleans up are specified in mContent.inputFiles
-                // create a dummy GraphNode .first create Job object and then add it to GraphNode
-                GraphNode nuGN = new GraphNode(generateCleanupID(curGN_SI), curGN_SI.getTXName());
-
-                List<PegasusFile> cleanupFiles = new LinkedList();
-                for (Iterator it = fileSet.iterator(); it.hasNext(); ) {
-                    PegasusFile file = (PegasusFile) it.next();
-
-                    // check if its already set up to be cleaned up
-                    if (cleanedBy.containsKey(file.getLFN())) {
-                        GraphNode child = (GraphNode) cleanedBy.get(file.getLFN());
-                        if (!child.getParents().contains(curGN)) {
-                            child.addParent(curGN);
-                        }
-                        if (!curGN.getChildren().contains(child)) {
-                            curGN.addChild(child);
-                        }
-                    } else {
-
-                        cleanupFiles.add(file);
-                    }
-                } // all the files
-
-                // create a cleanup job if the cleanup cleanupNode has any files to delete
-                //                if( nuGN.getParents().size() >= 1 ){
-                if (!cleanupFiles.isEmpty()) {
-                    mLogger.log(
-                            "Adding stub cleanup node with ID "
-                                    + nuGN.getID()
-                                    + " to the level list for level "
-                                    + curP,
-                            LogManager.DEBUG_MESSAGE_LEVEL);
-
-                    // PM-663, we need to store the compute job
-                    // with the cleanupNode but do with a copy
-                    CleanupJobContent cleanupContent = new CleanupJobContent(curGN, cleanupFiles);
-                    nuGN.setContent(cleanupContent);
-                    cleanupNodesPerLevel.add(nuGN);
-                }
-            } // end of while loop .  //process all elements in the current priority
-
-            // we now have a list of cleanup jobs for this level
-            List<GraphNode> clusteredCleanupGraphNodes =
-                    clusterCleanupGraphNodes(cleanupNodesPerLevel, cleanedBy, site, curP);
-            // for each clustered cleanup cleanupNode , add the associated cleanup job
-            for (GraphNode cleanupNode : clusteredCleanupGraphNodes) {
-                // We have always pass the associated compute job. Since now
-                // a cleanup job can be associated with stageout jobs also, we
-                // need to make sure that for the stageout job the cleanup job
-                // is passed. Karan Jan 9, 2008
-                Job computeJob;
-
-                CleanupJobContent cleanupJobContent = (CleanupJobContent) cleanupNode.getContent();
-                GraphNode curGN = cleanupJobContent.getNode();
-                Job curGN_SI = (Job) curGN.getContent();
-                if (typeStageOut(curGN_SI.getJobType())) {
-
-                    // find a compute job that is parent of this
-                    // GraphNode node = (GraphNode)curGN.getParents().get( 0 );
-                    GraphNode node = null;
-                    for (GraphNode n : curGN.getParents()) {
-                        node = n;
-                        break;
+    private void computeInParallel(List<SiteCleanup> cleanups, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new LinkedList<Future<?>>();
+            for (SiteCleanup cleanup : cleanups) {
+                futures.add(executor.submit(cleanup));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
                     }
-                    if (node == null) {
-                        throw new RuntimeException(
-                                "Cleanup job does not have a compute job as it's parent "
-                                        + cleanupNode.getID());
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
                     }
-                    computeJob = (Job) node.getContent();
-                    message = new StringBuffer();
-                    message.append("For cleanup job ")
-                            .append(cleanupNode.getID())
-                            .append(" the associated compute job is ")
-                            .append(computeJob.getID());
-
-                    mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-
-                } else {
-                    computeJob = curGN_SI;
+                    throw new RuntimeException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while computing the cleanup jobs", e);
                 }
-                Job cleanupJob =
-                        mImpl.createCleanupJob(
-                                cleanupNode.getID(),
-                                cleanupJobContent.getListOfFilesToDelete(),
-                                computeJob);
-
-                // add the job as a content to the graphnode
-                // and the cleanupNode itself to the Graph
-                cleanupNode.setContent(cleanupJob);
-                workflow.addNode(cleanupNode);
-                // add all the cleanup node to wf wide list to
-                // use it for reducing the dependencies
-                wfCleanupNodes.add(cleanupNode);
             }
-        } // end of for loop
-
-        // output whats file is cleaned by what ?
-        mLogger.log("", LogManager.DEBUG_MESSAGE_LEVEL);
-        mLogger.log(
-                "For site: " + site + " number of files cleaned up - " + cleanedBy.keySet().size(),
-                LogManager.INFO_MESSAGE_LEVEL);
-        mLogger.log("CLEANUP LIST", LogManager.DEBUG_MESSAGE_LEVEL);
-        for (Iterator it = cleanedBy.keySet().iterator(); it.hasNext(); ) {
-            String lfn = (String) it.next();
-            GraphNode cl_GN = (GraphNode) cleanedBy.get(lfn);
-            Job cl_si = (Job) cl_GN.getContent();
-            // Arun please use a StringBuffer first
-            // Karan March 13, 2007
-            mLogger.log(
-                    "file:" + lfn + "  site:" + cl_si.getSiteHandle() + " " + cl_GN.getID(),
-                    LogManager.DEBUG_MESSAGE_LEVEL);
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
-        // reduce dependencies. for each cleanup job X, look at the parents of
-        // the job. For each parent Y see if there is a path to any other parent Z of X.
-        // If a path exists, then the edge from Z to cleanup job can
-        // be removed.
-        for (GraphNode cleanupNode : wfCleanupNodes) {
-            mLogger.log(
-                    "Reducing edges for the cleanup node " + cleanupNode.getID(),
-                    mLogger.DEBUG_MESSAGE_LEVEL);
-            reduceDependency(cleanupNode);
+    /**
+     * Returns the maximum number of sites for which cleanup jobs are computed in parallel.
+     *
+     * @return the number of threads
+     */
+    private int getThreads() {
+        int threads = Math.min(DEFAULT_THREADS, Runtime.getRuntime().availableProcessors());
+        String value = mProps.getProperty(PROPERTY_THREADS);
+        if (value != null) {
+            try {
+                threads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                // ignore and use the default
+            }
         }
+        return Math.max(1, threads);
     }
 
     /**
@@ -306,14 +172,28 @@ public class InPlace extends AbstractCleanupStrategy {
             return;
         }
 
+        // remove all redundant nodes that were found
+        for (GraphNode r_GN : getRedundantParents(node.getParents())) {
+            node.removeParent(r_GN);
+            r_GN.removeChild(node);
+        }
+    }
+
+    /**
+     * Returns the parents of a node that are redundant, as there is a path to them from another
+     * parent of the node. Only the parents of the nodes are traversed.
+     *
+     * @param parents the parents of the node
+     * @return the redundant parents
+     */
+    private List<GraphNode> getRedundantParents(Collection<GraphNode> parents) {
         // reduce dependencies. for each cleanup job X, look at the parents of
         // the job. For each parent Y see if there is a path to any other parent Z of X.
         // If a path exists, then the edge from Z to cleanup job can
         // be removed.
-        Collection<GraphNode> parents = node.getParents();
         List redundant = new LinkedList();
         HashSet visit = new HashSet();
-        for (Iterator itp = node.getParents().iterator(); itp.hasNext(); ) {
+        for (Iterator itp = parents.iterator(); itp.hasNext(); ) {
             LinkedList mque = new LinkedList();
             mque.add(itp.next());
 
@@ -343,13 +223,7 @@ public class InPlace extends AbstractCleanupStrategy {
                 }
             }
         }
-
-        // remove all redundant nodes that were found
-        for (Iterator itr = redundant.iterator(); itr.hasNext(); ) {
-            GraphNode r_GN = (GraphNode) itr.next();
-            node.removeParent(r_GN);
-            r_GN.removeChild(node);
-        }
+        return redundant;
     }
 
     /**
@@ -462,219 +336,496 @@ public class InPlace extends AbstractCleanupStrategy {
     }
 
     /**
-     * Takes in a list of cleanup nodes ,one per cleanupNode(compute/stageout job) whose files need
-     * to be deleted) and clusters them into a smaller set of cleanup nodes.
+     * Returns the number of cleanup jobs clustered into one job per level.
      *
-     * @param cleanupNodes List of stub cleanup nodes created corresponding to a job in the workflow
-     *     that needs cleanup. the cleanup jobs have content as a CleanupJobContent
-     * @param cleanedBy a map that tracks which file was deleted by which cleanup job
-     * @param site the site associated with the cleanup jobs
-     * @param level the level of the workflow
-     * @return a set of clustered cleanup nodes
+     * @param size the number of cleanup jobs created by the algorithm before clustering for the
+     *     level.
+     * @param num number of cleanup jobs to be created for level
+     * @return the number of cleanup jobs clustered into a bigger cleanup job
      */
-    private List<GraphNode> clusterCleanupGraphNodes(
-            List<GraphNode> cleanupNodes, HashMap cleanedBy, String site, int level) {
-        List<GraphNode> clusteredCleanupJobs = new LinkedList();
+    private int getClusterSize(int size, int num) {
 
-        // sanity check for empty list
-        int size = cleanupNodes.size();
-        if (size == 0) {
-            return clusteredCleanupJobs;
+        int result;
+
+        if (this.mUseSizeFactor) {
+            return this.mCleanupJobsSize;
+
+        } else {
+            // it is the ceiling ( x + y -1 )/y
+            // we use the fixed number of cleanup jobs per level
+            // result = (size + mCleanupJobsPerLevel - 1) / mCleanupJobsPerLevel;
+            result = (size + num - 1) / num;
         }
 
-        // cluster size is how many nodes are clustered into one cleanup cleanupNode
-        int numCleanup = this.mCleanupJobsPerLevel;
-        if (mCleanupJobsPerLevel == NO_PROFILE_VALUE) {
-            // PM-1212 if a user has not specified anything in properties
-            // we determine based on number of jobs on a level
-            // divisor = this.mCleanupJobsPerLevelMap.get( level );
-            numCleanup = (int) Math.ceil(size / InPlace.NUM_JOBS_PER_LEVEL_PER_CLEANUP_JOB);
+        return result;
+    }
+
+    /**
+     * Computes the cleanup jobs for the workflow scheduled to a particular site. The computation
+     * does not modify the workflow, and only reads the edges between the jobs in the workflow. This
+     * allows the cleanup jobs for different sites to be computed in parallel. The cleanup jobs and
+     * their edges are added to the workflow later, by calling {@link #addToWorkflow(Graph)}.
+     */
+    private class SiteCleanup implements Runnable {
+
+        /** The site ID */
+        private final String mSite;
+
+        /** The leaf jobs that are scheduled to site */
+        private final Set mLeaves;
+
+        /** A map that tracks which file was deleted by which cleanup node. */
+        private final Map<String, GraphNode> mCleanedBy;
+
+        /**
+         * The parents for each cleanup node added for the site, in the order the nodes are created.
+         */
+        private final Map<GraphNode, Set<GraphNode>> mParents;
+
+        /** The jobs with which the cleanup nodes are associated. */
+        private final Map<GraphNode, Job> mComputeJobs;
+
+        /** Maps the LFN's seen at the site to an index in the bitset. */
+        private final Map<String, Integer> mLFNIndex;
+
+        /** The files already picked for cleanup for the job being processed. */
+        private final BitSet mPicked;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param site the site ID
+         * @param leaves the leaf jobs that are scheduled to site
+         */
+        SiteCleanup(String site, Set leaves) {
+            mSite = site;
+            mLeaves = leaves;
+            mCleanedBy = new HashMap();
+            mParents = new LinkedHashMap();
+            mComputeJobs = new LinkedHashMap();
+            mLFNIndex = new HashMap();
+            mPicked = new BitSet();
         }
-        int clusterSize = getClusterSize(size, numCleanup);
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("Clustering ")
-                .append(size)
-                .append(" cleanup nodes at level ")
-                .append(level)
-                .append(" with cluster size ")
-                .append(clusterSize)
-                .append(" into MAX total of ")
-                .append(numCleanup);
-        mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-
-        // for the time being lets assume one to one mapping
-        Iterator<GraphNode> it = cleanupNodes.iterator();
-        int counter = 0;
-        while (it.hasNext()) {
-            List<GraphNode> clusteredConstitutents = new LinkedList();
-            for (int i = 1; i <= clusterSize && it.hasNext(); i++) {
-                GraphNode n = it.next();
-                clusteredConstitutents.add(n);
+        /**
+         * Computes the cleanup jobs for the site. A breadth first search strategy is implemented
+         * based on the depth of the job in the workflow
+         */
+        public void run() {
+            mLogger.log(mSite + " " + mLeaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
+
+            StringBuffer message = new StringBuffer();
+            message.append("Leaf  jobs scheduled at site ").append(mSite).append(" are ");
+            for (Iterator it = mLeaves.iterator(); it.hasNext(); ) {
+                message.append(((GraphNode) it.next()).getID());
+                message.append(",");
             }
+            mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
 
-            // we have our constituents. create a cleanup node out of this
-            GraphNode clusteredCleanupGraphNode =
-                    createClusteredCleanupGraphNode(
-                            clusteredConstitutents, cleanedBy, site, level, counter);
-            if (clusteredCleanupGraphNode != null) {
-                // we only add and increment counter only if the cleanup node
-                // is deleting at least one file.
-                clusteredCleanupJobs.add(clusteredCleanupGraphNode);
-                counter++;
+            // its a Set of GraphNode's
+            Set[] pQA = new Set[mMaxDepth + 1];
+            for (int i = 0; i < pQA.length; i++) {
+                pQA[i] = new HashSet();
             }
-        }
 
-        /* if we don't want any clustering to happen
-        * then use this and delete the rest of the function
-               for( Iterator<GraphNode> it = cleanupNodes.iterator(); it.hasNext();  ){
-                   GraphNode cleanupNode = it.next();
-                   CleanupJobContent content = (CleanupJobContent) cleanupNode.getContent();
-                   List<PegasusFile> filesToDelete = content.getListOfFilesToDelete();
+            // populate the priority Array pQA with all the leaf nodes
+            for (Iterator it = mLeaves.iterator(); it.hasNext(); ) {
+                GraphNode gN = (GraphNode) it.next();
+                pQA[gN.getDepth()].add(gN);
+            }
 
-                   GraphNode cleanupNode = cleanupNode; //same for time being
-                   GraphNode computeNode = content.getNode();
-                   //files to delete remains the same
+            // start the breadth first cleanup job addition
+            for (int curP = mMaxDepth; curP >= 0; curP--) {
+                List<GraphNode> cleanupNodesPerLevel = new LinkedList();
 
-                   for( PegasusFile file : filesToDelete ){
-                       cleanedBy.put( file.getLFN(), cleanupNode );
-                   }
+                // process all elements in the current priority
+                for (Iterator it = pQA[curP].iterator(); it.hasNext(); ) {
+                    GraphNode curGN = (GraphNode) it.next();
+                    Job curGN_SI = (Job) curGN.getContent();
 
-                   //add dependencies between the nodes accordingly
-                               if( !computeNode.getChildren().contains( cleanupNode ) ){
-                                   computeNode.addChild( cleanupNode );
-                               }
-                               if( ! cleanupNode.getParents().contains( computeNode ) ){
-                                   cleanupNode.addParent( computeNode );
-                               }
+                    if (!typeNeedsCleanUp(curGN)) {
+                        continue;
+                    }
 
+                    List<PegasusFile> cleanupFiles = new LinkedList();
+                    for (PegasusFile file : this.getFilesToCleanup(curGN_SI)) {
+                        // check if its already set up to be cleaned up
+                        GraphNode child = mCleanedBy.get(file.getLFN());
+                        if (child != null) {
+                            mParents.get(child).add(curGN);
+                        } else {
+                            cleanupFiles.add(file);
+                        }
+                    } // all the files
+
+                    // create a cleanup job if the cleanup cleanupNode has any files to delete
+                    if (!cleanupFiles.isEmpty()) {
+                        // create new GraphNode with MLogicalID=mLogicalName , mParents
+                        // mContent ID ,Name , jobtype
+                        // the files it cleans up are specified in mContent.inputFiles
+                        GraphNode nuGN =
+                                new GraphNode(generateCleanupID(curGN_SI), curGN_SI.getTXName());
+                        mLogger.log(
+                                "Adding stub cleanup node with ID "
+                                        + nuGN.getID()
+                                        + " to the level list for level "
+                                        + curP,
+                                LogManager.DEBUG_MESSAGE_LEVEL);
 
+                        // PM-663, we need to store the compute job
+                        // with the cleanupNode but do with a copy
+                        CleanupJobContent cleanupContent =
+                                new CleanupJobContent(curGN, cleanupFiles);
+                        nuGN.setContent(cleanupContent);
+                        cleanupNodesPerLevel.add(nuGN);
+                    }
+                } // end of for loop .  //process all elements in the current priority
+
+                // we now have a list of cleanup jobs for this level
+                List<GraphNode> clusteredCleanupGraphNodes =
+                        clusterCleanupGraphNodes(cleanupNodesPerLevel, curP);
+                // for each clustered cleanup cleanupNode , track the associated compute job
+                for (GraphNode cleanupNode : clusteredCleanupGraphNodes) {
+                    CleanupJobContent cleanupJobContent =
+                            (CleanupJobContent) cleanupNode.getContent();
+                    mComputeJobs.put(cleanupNode, getComputeJob(cleanupNode, cleanupJobContent));
+                }
+            } // end of for loop
 
-                   clusteredCleanupGraphNodes.add( cleanupNode );
-               }
-                */
-        return clusteredCleanupJobs;
-    }
+            // output whats file is cleaned by what ?
+            mLogger.log("", LogManager.DEBUG_MESSAGE_LEVEL);
+            mLogger.log(
+                    "For site: "
+                            + mSite
+                            + " number of files cleaned up - "
+                            + mCleanedBy.keySet().size(),
+                    LogManager.INFO_MESSAGE_LEVEL);
+            mLogger.log("CLEANUP LIST", LogManager.DEBUG_MESSAGE_LEVEL);
+            for (Map.Entry<String, GraphNode> entry : mCleanedBy.entrySet()) {
+                mLogger.log(
+                        "file:"
+                                + entry.getKey()
+                                + "  site:"
+                                + mSite
+                                + " "
+                                + entry.getValue().getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+            }
 
-    /**
-     * Creates a clustered cleanup graph node that aggregates multiple cleanup nodes into one node
-     *
-     * @param nodes list of cleanup nodes that are to be aggregated
-     * @param cleanedBy a map that tracks which file was deleted by which cleanup job
-     * @param site the site associated with the cleanup jobs
-     * @param level the level of the workflow
-     * @param index the index of the cleanup job for that level
-     * @return a clustered cleanup node with the appropriate linkages added to the workflow else,
-     *     null if the clustered cleanup node has no files to delete
-     */
-    private GraphNode createClusteredCleanupGraphNode(
-            List<GraphNode> nodes, HashMap cleanedBy, String site, int level, int index) {
-        GraphNode clusteredCleanupNode = new GraphNode(generateClusteredJobID(site, level, index));
-
-        // sanity check
-        if (nodes.isEmpty()) {
-            throw new RuntimeException(
-                    "Logic Error in the InPlace Cleanup Algorithm for level "
-                            + level
-                            + " "
-                            + index);
+            // reduce dependencies. for each cleanup job X, look at the parents of
+            // the job. For each parent Y see if there is a path to any other parent Z of X.
+            // If a path exists, then the edge from Z to cleanup job can
+            // be removed.
+            for (Map.Entry<GraphNode, Set<GraphNode>> entry : mParents.entrySet()) {
+                mLogger.log(
+                        "Reducing edges for the cleanup node " + entry.getKey().getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                entry.getValue().removeAll(getRedundantParents(entry.getValue()));
+            }
         }
 
-        // add some info
-        StringBuilder sb = new StringBuilder();
-        sb.append("\tCreating a clustered cleanup job named ")
-                .append(clusteredCleanupNode.getID())
-                .append(" consisting of ")
-                .append(nodes.size())
-                .append(" nodes ");
-        mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-
-        // the list of files to be deleted by the clustered cleanup job
-        List<PegasusFile> allFilesToDelete = new LinkedList();
-
-        // for each cleanup Node add the files and modify dependencies accordingly
-        GraphNode primaryNode = null; // the primary compute node associated with the cleanup job
-        for (GraphNode cleanupNode : nodes) {
-            CleanupJobContent content = (CleanupJobContent) cleanupNode.getContent();
-            List<PegasusFile> filesToDelete = content.getListOfFilesToDelete();
-            primaryNode = content.getNode();
-
-            for (PegasusFile file : filesToDelete) {
-                if (cleanedBy.containsKey(file.getLFN())) {
-                    // somewhere during the clustering of the cleanup nodes at this
-                    // level, the file was designated to cleaned up by a
-                    // clustered cleanup node
-                    GraphNode existingCleanupNode = (GraphNode) cleanedBy.get(file.getLFN());
-                    mLogger.log(
-                            "\t\tFile "
-                                    + file.getLFN()
-                                    + " already cleaned by clustered cleanup node "
-                                    + existingCleanupNode.getID(),
-                            LogManager.DEBUG_MESSAGE_LEVEL);
-
-                    if (!existingCleanupNode.getParents().contains(primaryNode)) {
-                        existingCleanupNode.addParent(primaryNode);
-                    }
-                    if (!primaryNode.getChildren().contains(existingCleanupNode)) {
-                        primaryNode.addChild(existingCleanupNode);
-                    }
-                } else {
-                    cleanedBy.put(file.getLFN(), clusteredCleanupNode);
-                    allFilesToDelete.add(file);
+        /**
+         * Adds the cleanup jobs computed for the site, and the edges to them, to the workflow.
+         *
+         * @param workflow the Graph into which new cleanup jobs are added
+         */
+        public void addToWorkflow(Graph workflow) {
+            for (Map.Entry<GraphNode, Job> entry : mComputeJobs.entrySet()) {
+                GraphNode cleanupNode = entry.getKey();
+                CleanupJobContent cleanupJobContent = (CleanupJobContent) cleanupNode.getContent();
+                Job cleanupJob =
+                        mImpl.createCleanupJob(
+                                cleanupNode.getID(),
+                                cleanupJobContent.getListOfFilesToDelete(),
+                                entry.getValue());
+
+                // add the job as a content to the graphnode
+                // and the cleanupNode itself to the Graph
+                cleanupNode.setContent(cleanupJob);
+                workflow.addNode(cleanupNode);
+                for (GraphNode parent : mParents.get(cleanupNode)) {
+                    parent.addChild(cleanupNode);
+                    cleanupNode.addParent(parent);
                 }
             }
+        }
 
-            // allFilesToDelete.addAll( filesToDelete );
-            if (!allFilesToDelete.isEmpty()) {
-                // add dependencies between the compute/stageout node and the clustered cleanup node
-                // as long as we know that we are creating a clustered cleanup job that is not empty
-                if (!primaryNode.getChildren().contains(clusteredCleanupNode)) {
-                    primaryNode.addChild(clusteredCleanupNode);
-                }
-                if (!clusteredCleanupNode.getParents().contains(primaryNode)) {
-                    clusteredCleanupNode.addParent(primaryNode);
-                }
+        /**
+         * Returns the files that a job's cleanup job should delete. These are the input and output
+         * files of the job that can be cleaned up, and are not in the do not clean list.
+         *
+         * @param job the job
+         * @return the files to delete, in the order they are listed in the job
+         */
+        private List<PegasusFile> getFilesToCleanup(Job job) {
+            List<PegasusFile> files = new LinkedList();
+            mPicked.clear();
+            for (PegasusFile pf : job.getInputFiles()) {
+                // PM-698 skip input files that have cleanup flag set to false
+                // PM-969 we only consider the cleanup attribute and not the transfer flag
+                this.pickFileToCleanup(job, pf, files);
+            }
+            for (PegasusFile pf : job.getOutputFiles()) {
+                // PM-739 only add if the cleanup flag is set to true
+                this.pickFileToCleanup(job, pf, files);
             }
+            return files;
         }
 
-        if (allFilesToDelete.isEmpty()) {
-            // the clustered cleanup job we are trying to create has
-            // no files to delete
-            mLogger.log(
-                    "\t\tClustered cleanup node is empty as files to be deleted are already deleted by other cleanup nodes "
-                            + clusteredCleanupNode.getID(),
-                    LogManager.DEBUG_MESSAGE_LEVEL);
-            return null;
+        /**
+         * Adds a file to the files to be cleaned up for a job, if it can be cleaned up and has not
+         * been picked already.
+         *
+         * @param job the job
+         * @param pf the file
+         * @param files the files to be cleaned up for the job
+         */
+        private void pickFileToCleanup(Job job, PegasusFile pf, List<PegasusFile> files) {
+            if (!pf.canBeCleanedup()) {
+                mLogger.log(
+                        "File " + pf.getLFN() + " will not be cleaned up for job " + job.getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                return;
+            }
+            String lfn = pf.getLFN();
+            Integer index = mLFNIndex.get(lfn);
+            if (index == null) {
+                index = mLFNIndex.size();
+                mLFNIndex.put(lfn, index);
+            }
+            if (mPicked.get(index)) {
+                return;
+            }
+            mPicked.set(index);
+            // remove the files that are in this.mDoNotClean
+            if (!mDoNotClean.contains(pf)) {
+                files.add(pf);
+            }
         }
 
-        clusteredCleanupNode.setContent(new CleanupJobContent(primaryNode, allFilesToDelete));
+        /**
+         * Returns the job that a cleanup node is associated with.
+         *
+         * @param cleanupNode the cleanup node
+         * @param content the content of the cleanup node
+         * @return the associated job
+         */
+        private Job getComputeJob(GraphNode cleanupNode, CleanupJobContent content) {
+            // We have always pass the associated compute job. Since now
+            // a cleanup job can be associated with stageout jobs also, we
+            // need to make sure that for the stageout job the cleanup job
+            // is passed. Karan Jan 9, 2008
+            GraphNode curGN = content.getNode();
+            Job curGN_SI = (Job) curGN.getContent();
+            if (!typeStageOut(curGN_SI.getJobType())) {
+                return curGN_SI;
+            }
 
-        return clusteredCleanupNode;
-    }
+            // find a compute job that is parent of this
+            GraphNode node = null;
+            for (GraphNode n : curGN.getParents()) {
+                node = n;
+                break;
+            }
+            if (node == null) {
+                throw new RuntimeException(
+                        "Cleanup job does not have a compute job as it's parent "
+                                + cleanupNode.getID());
+            }
+            Job computeJob = (Job) node.getContent();
+            StringBuffer message = new StringBuffer();
+            message.append("For cleanup job ")
+                    .append(cleanupNode.getID())
+                    .append(" the associated compute job is ")
+                    .append(computeJob.getID());
+
+            mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+            return computeJob;
+        }
 
-    /**
-     * Returns the number of cleanup jobs clustered into one job per level.
-     *
-     * @param size the number of cleanup jobs created by the algorithm before clustering for the
-     *     level.
-     * @param num number of cleanup jobs to be created for level
-     * @return the number of cleanup jobs clustered into a bigger cleanup job
-     */
-    private int getClusterSize(int size, int num) {
+        /**
+         * Takes in a list of cleanup nodes ,one per cleanupNode(compute/stageout job) whose files
+         * need to be deleted) and clusters them into a smaller set of cleanup nodes.
+         *
+         * @param cleanupNodes List of stub cleanup nodes created corresponding to a job in the
+         *     workflow that needs cleanup. the cleanup jobs have content as a CleanupJobContent
+         * @param level the level of the workflow
+         * @return a set of clustered cleanup nodes
+         */
+        private List<GraphNode> clusterCleanupGraphNodes(List<GraphNode> cleanupNodes, int level) {
+            List<GraphNode> clusteredCleanupJobs = new LinkedList();
+
+            // sanity check for empty list
+            int size = cleanupNodes.size();
+            if (size == 0) {
+                return clusteredCleanupJobs;
+            }
 
-        int result;
+            // cluster size is how many nodes are clustered into one cleanup cleanupNode
+            int numCleanup = mCleanupJobsPerLevel;
+            if (mCleanupJobsPerLevel == NO_PROFILE_VALUE) {
+                // PM-1212 if a user has not specified anything in properties
+                // we determine based on number of jobs on a level
+                // divisor = this.mCleanupJobsPerLevelMap.get( level );
+                numCleanup = (int) Math.ceil(size / InPlace.NUM_JOBS_PER_LEVEL_PER_CLEANUP_JOB);
+            }
+            int clusterSize = getClusterSize(size, numCleanup);
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("Clustering ")
+                    .append(size)
+                    .append(" cleanup nodes at level ")
+                    .append(level)
+                    .append(" with cluster size ")
+                    .append(clusterSize)
+                    .append(" into MAX total of ")
+                    .append(numCleanup);
+            mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+
+            // for the time being lets assume one to one mapping
+            Iterator<GraphNode> it = cleanupNodes.iterator();
+            int counter = 0;
+            while (it.hasNext()) {
+                List<GraphNode> clusteredConstitutents = new LinkedList();
+                for (int i = 1; i <= clusterSize && it.hasNext(); i++) {
+                    GraphNode n = it.next();
+                    clusteredConstitutents.add(n);
+                }
 
-        if (this.mUseSizeFactor) {
-            return this.mCleanupJobsSize;
+                // we have our constituents. create a cleanup node out of this
+                GraphNode clusteredCleanupGraphNode =
+                        createClusteredCleanupGraphNode(clusteredConstitutents, level, counter);
+                if (clusteredCleanupGraphNode != null) {
+                    // we only add and increment counter only if the cleanup node
+                    // is deleting at least one file.
+                    clusteredCleanupJobs.add(clusteredCleanupGraphNode);
+                    counter++;
+                }
+            }
 
-        } else {
-            // it is the ceiling ( x + y -1 )/y
-            // we use the fixed number of cleanup jobs per level
-            // result = (size + mCleanupJobsPerLevel - 1) / mCleanupJobsPerLevel;
-            result = (size + num - 1) / num;
+            /* if we don't want any clustering to happen
+            * then use this and delete the rest of the function
+                   for( Iterator<GraphNode> it = cleanupNodes.iterator(); it.hasNext();  ){
+                       GraphNode cleanupNode = it.next();
+                       CleanupJobContent content = (CleanupJobContent) cleanupNode.getContent();
+                       List<PegasusFile> filesToDelete = content.getListOfFilesToDelete();
+
+                       GraphNode cleanupNode = cleanupNode; //same for time being
+                       GraphNode computeNode = content.getNode();
+                       //files to delete remains the same
+
+                       for( PegasusFile file : filesToDelete ){
+                           cleanedBy.put( file.getLFN(), cleanupNode );
+                       }
+
+                       //add dependencies between the nodes accordingly
+                                   if( !computeNode.getChildren().contains( cleanupNode ) ){
+                                       computeNode.addChild( cleanupNode );
+                                   }
+                                   if( ! cleanupNode.getParents().contains( computeNode ) ){
+                                       cleanupNode.addParent( computeNode );
+                                   }
+
+
+
+                       clusteredCleanupGraphNodes.add( cleanupNode );
+                   }
+                    */
+            return clusteredCleanupJobs;
         }
 
-        return result;
+        /**
+         * Creates a clustered cleanup graph node that aggregates multiple cleanup nodes into one
+         * node
+         *
+         * @param nodes list of cleanup nodes that are to be aggregated
+         * @param level the level of the workflow
+         * @param index the index of the cleanup job for that level
+         * @return a clustered cleanup node with the parents it depends on tracked, else null if the
+         *     clustered cleanup node has no files to delete
+         */
+        private GraphNode createClusteredCleanupGraphNode(
+                List<GraphNode> nodes, int level, int index) {
+            GraphNode clusteredCleanupNode =
+                    new GraphNode(generateClusteredJobID(mSite, level, index));
+
+            // sanity check
+            if (nodes.isEmpty()) {
+                throw new RuntimeException(
+                        "Logic Error in the InPlace Cleanup Algorithm for level "
+                                + level
+                                + " "
+                                + index);
+            }
+
+            // add some info
+            StringBuilder sb = new StringBuilder();
+            sb.append("\tCreating a clustered cleanup job named ")
+                    .append(clusteredCleanupNode.getID())
+                    .append(" consisting of ")
+                    .append(nodes.size())
+                    .append(" nodes ");
+            mLogger.log(sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+
+            // the list of files to be deleted by the clustered cleanup job
+            List<PegasusFile> allFilesToDelete = new LinkedList();
+
+            // the parents of the clustered cleanup job
+            Set<GraphNode> parents = new LinkedHashSet();
+            mParents.put(clusteredCleanupNode, parents);
+
+            // for each cleanup Node add the files and modify dependencies accordingly
+            // the primary compute node associated with the cleanup job
+            GraphNode primaryNode = null;
+            for (GraphNode cleanupNode : nodes) {
+                CleanupJobContent content = (CleanupJobContent) cleanupNode.getContent();
+                List<PegasusFile> filesToDelete = content.getListOfFilesToDelete();
+                primaryNode = content.getNode();
+
+                for (PegasusFile file : filesToDelete) {
+                    GraphNode existingCleanupNode = mCleanedBy.get(file.getLFN());
+                    if (existingCleanupNode != null) {
+                        // somewhere during the clustering of the cleanup nodes at this
+                        // level, the file was designated to cleaned up by a
+                        // clustered cleanup node
+                        mLogger.log(
+                                "\t\tFile "
+                                        + file.getLFN()
+                                        + " already cleaned by clustered cleanup node "
+                                        + existingCleanupNode.getID(),
+                                LogManager.DEBUG_MESSAGE_LEVEL);
+
+                        mParents.get(existingCleanupNode).add(primaryNode);
+                    } else {
+                        mCleanedBy.put(file.getLFN(), clusteredCleanupNode);
+                        allFilesToDelete.add(file);
+                    }
+                }
+
+                // allFilesToDelete.addAll( filesToDelete );
+                if (!allFilesToDelete.isEmpty()) {
+                    // add dependencies between the compute/stageout node and the clustered
+                    // cleanup node as long as we know that we are creating a clustered cleanup
+                    // job that is not empty
+                    parents.add(primaryNode);
+                }
+            }
+
+            if (allFilesToDelete.isEmpty()) {
+                // the clustered cleanup job we are trying to create has
+                // no files to delete
+                mLogger.log(
+                        "\t\tClustered cleanup node is empty as files to be deleted are already deleted by other cleanup nodes "
+                                + clusteredCleanupNode.getID(),
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+                mParents.remove(clusteredCleanupNode);
+                return null;
+            }
+
+            clusteredCleanupNode.setContent(new CleanupJobContent(primaryNode, allFilesToDelete));
+
+            return clusteredCleanupNode;
+        }
     }
 }
 
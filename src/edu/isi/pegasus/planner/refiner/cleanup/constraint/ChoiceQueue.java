@@ -0,0 +1,283 @@
+/**
+ * Copyright 2007-2015 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup.constraint;
+
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An indexed priority queue of the choices for the current heads of the constraint simulation. The
+ * choice for a head can be updated or removed in logarithmic time, and the next choice to execute
+ * is selected without evaluating the choices of all the heads.
+ *
+ * <p>The selection is the same as a linear scan over the heads would make. Amongst the choices that
+ * free space, the one with the least intermediate space requirement is selected. If none of the
+ * choices free space, then the one with the least balance is selected. Ties are broken by the order
+ * in which the heads are iterated.
+ */
+public class ChoiceQueue {
+
+    /** Index of the heap containing the choices that free space. */
+    private static final int RELEASING = 0;
+
+    /** Index of the heap containing all the choices. */
+    private static final int ALL = 1;
+
+    /** The entries indexed by the head they are for. */
+    private final Map<GraphNode, Entry> mEntries;
+
+    /** The heap of choices that free space, ordered by intermediate space requirement. */
+    private final Heap mReleasing;
+
+    /** The heap of all choices, ordered by balance. */
+    private final Heap mAll;
+
+    /** The default constructor. */
+    public ChoiceQueue() {
+        mEntries = new HashMap<GraphNode, Entry>();
+        mReleasing = new Heap(RELEASING);
+        mAll = new Heap(ALL);
+    }
+
+    /**
+     * Adds or updates the choice for a head.
+     *
+     * @param head the head
+     * @param choice the choice associated with executing the head
+     */
+    public void put(GraphNode head, Choice choice) {
+        Entry entry = mEntries.get(head);
+        if (entry == null) {
+            entry = new Entry(head, choice);
+            mEntries.put(head, entry);
+            mAll.add(entry);
+        } else {
+            entry.mChoice = choice;
+            mAll.update(entry);
+        }
+
+        if (choice.balance <= 0) {
+            if (entry.mPosition[RELEASING] == -1) {
+                mReleasing.add(entry);
+            } else {
+                mReleasing.update(entry);
+            }
+        } else if (entry.mPosition[RELEASING] != -1) {
+            mReleasing.remove(entry);
+        }
+    }
+
+    /**
+     * Returns the choice for a head.
+     *
+     * @param head the head
+     * @return the choice, else null if there is none
+     */
+    public Choice get(GraphNode head) {
+        Entry entry = mEntries.get(head);
+        return (entry == null) ? null : entry.mChoice;
+    }
+
+    /**
+     * Removes the choice for a head.
+     *
+     * @param head the head
+     * @return the choice removed, else null if there is none
+     */
+    public Choice remove(GraphNode head) {
+        Entry entry = mEntries.remove(head);
+        if (entry == null) {
+            return null;
+        }
+        mAll.remove(entry);
+        if (entry.mPosition[RELEASING] != -1) {
+            mReleasing.remove(entry);
+        }
+        return entry.mChoice;
+    }
+
+    /**
+     * Returns the number of choices in the queue.
+     *
+     * @return the number of choices
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Selects the next choice to execute.
+     *
+     * @param order the heads in the order that is used to break ties
+     * @return the selected choice, else null if there is none
+     */
+    public Choice select(Iterable<GraphNode> order) {
+        Heap heap = mReleasing;
+        if (heap.isEmpty() || heap.minimum() == Long.MAX_VALUE) {
+            heap = mAll;
+            if (heap.isEmpty() || heap.minimum() == Long.MAX_VALUE) {
+                return null;
+            }
+        }
+
+        List<Entry> ties = heap.minima();
+        if (ties.size() == 1) {
+            return ties.get(0).mChoice;
+        }
+        Set<GraphNode> tied = new HashSet<GraphNode>();
+        for (Entry entry : ties) {
+            tied.add(entry.mHead);
+        }
+        for (GraphNode head : order) {
+            if (tied.contains(head)) {
+                return mEntries.get(head).mChoice;
+            }
+        }
+        return ties.get(0).mChoice;
+    }
+
+    /** A choice for a head, along with its position in the heaps. */
+    private static class Entry {
+
+        private final GraphNode mHead;
+
+        private Choice mChoice;
+
+        private final int[] mPosition = {-1, -1};
+
+        Entry(GraphNode head, Choice choice) {
+            mHead = head;
+            mChoice = choice;
+        }
+    }
+
+    /** A binary min heap of entries that tracks the position of each entry. */
+    private static class Heap {
+
+        private final int mType;
+
+        private final List<Entry> mHeap;
+
+        Heap(int type) {
+            mType = type;
+            mHeap = new ArrayList<Entry>();
+        }
+
+        boolean isEmpty() {
+            return mHeap.isEmpty();
+        }
+
+        long minimum() {
+            return key(mHeap.get(0));
+        }
+
+        void add(Entry entry) {
+            mHeap.add(entry);
+            entry.mPosition[mType] = mHeap.size() - 1;
+            siftUp(mHeap.size() - 1);
+        }
+
+        void update(Entry entry) {
+            int i = entry.mPosition[mType];
+            siftUp(i);
+            siftDown(entry.mPosition[mType]);
+        }
+
+        void remove(Entry entry) {
+            int i = entry.mPosition[mType];
+            int last = mHeap.size() - 1;
+            swap(i, last);
+            mHeap.remove(last);
+            entry.mPosition[mType] = -1;
+            if (i < last) {
+                Entry moved = mHeap.get(i);
+                siftUp(i);
+                siftDown(moved.mPosition[mType]);
+            }
+        }
+
+        /**
+         * Returns all the entries whose key is the minimum key in the heap.
+         *
+         * @return the entries
+         */
+        List<Entry> minima() {
+            List<Entry> result = new ArrayList<Entry>();
+            long minimum = minimum();
+            List<Integer> stack = new ArrayList<Integer>();
+            stack.add(0);
+            while (!stack.isEmpty()) {
+                int i = stack.remove(stack.size() - 1);
+                if (i >= mHeap.size() || key(mHeap.get(i)) != minimum) {
+                    continue;
+                }
+                result.add(mHeap.get(i));
+                stack.add(2 * i + 1);
+                stack.add(2 * i + 2);
+            }
+            return result;
+        }
+
+        private long key(Entry entry) {
+            return (mType == RELEASING)
+                    ? entry.mChoice.intermediateSpaceRequirement
+                    : entry.mChoice.balance;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (key(mHeap.get(parent)) <= key(mHeap.get(i))) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            int size = mHeap.size();
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && key(mHeap.get(left)) < key(mHeap.get(smallest))) {
+                    smallest = left;
+                }
+                if (right < size && key(mHeap.get(right)) < key(mHeap.get(smallest))) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    break;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            Entry a = mHeap.get(i);
+            Entry b = mHeap.get(j);
+            mHeap.set(i, b);
+            mHeap.set(j, a);
+            a.mPosition[mType] = j;
+            b.mPosition[mType] = i;
+        }
+    }
+}
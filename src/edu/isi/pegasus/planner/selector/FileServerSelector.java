@@ -0,0 +1,55 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector;
+
+import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
+import edu.isi.pegasus.planner.classes.Job;
+import java.util.List;
+
+/**
+ * The interface for selecting a file server amongst the file servers associated with a directory on
+ * a site, when constructing the URL for a file in the directory.
+ *
+ * @version $Revision$
+ */
+public interface FileServerSelector {
+
+    /** The version of this API. */
+    public static final String VERSION = "1.0";
+
+    /**
+     * Selects a file server for a file.
+     *
+     * @param servers the candidate file servers. Is not empty.
+     * @param job the job for which the URL is constructed, can be null
+     * @param lfn the lfn of the file, can be null if the URL is for the directory
+     * @return the selected file server
+     */
+    public FileServer selectFileServer(List<FileServer> servers, Job job, String lfn);
+
+    /**
+     * Returns whether the selector can be invoked from multiple threads at the same time, without
+     * the file servers selected depending on the order of invocation.
+     *
+     * @return boolean
+     */
+    public boolean isThreadSafe();
+
+    /**
+     * Returns a short description of the file server selector.
+     *
+     * @return description.
+     */
+    public String description();
+}
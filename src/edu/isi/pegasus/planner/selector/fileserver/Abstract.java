@@ -0,0 +1,83 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.fileserver;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
+import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Namespace;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.selector.FileServerSelector;
+
+/**
+ * An abstract base class for the file server selectors, that retrieves the weights associated with
+ * the file servers.
+ *
+ * @version $Revision$
+ */
+public abstract class Abstract implements FileServerSelector {
+
+    /** The weight assigned to a file server that does not have one associated. */
+    public static final int DEFAULT_WEIGHT = 1;
+
+    /** The handle to the properties object. */
+    protected PegasusProperties mProps;
+
+    /** The handle to the logger. */
+    protected LogManager mLogger;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param properties the properties passed to the planner
+     */
+    public Abstract(PegasusProperties properties) {
+        mProps = properties;
+        mLogger = LogManagerFactory.loadSingletonInstance(properties);
+    }
+
+    /**
+     * Returns the weight associated with a file server, as specified by the Pegasus profile key
+     * fileserver.weight associated with the file server.
+     *
+     * @param server the file server
+     * @return the weight if specified and valid, else the default weight
+     */
+    protected int getWeight(FileServer server) {
+        Profiles profiles = server.getProfiles();
+        Namespace n = (profiles == null) ? null : profiles.get(Profiles.NAMESPACES.pegasus);
+        Object value = (n == null) ? null : n.get(Pegasus.FILESERVER_WEIGHT_KEY);
+        if (value != null) {
+            try {
+                int weight = Integer.parseInt(((String) value).trim());
+                if (weight > 0) {
+                    return weight;
+                }
+            } catch (NumberFormatException e) {
+                // fall through to the default weight
+            }
+            mLogger.log(
+                    "Invalid "
+                            + Pegasus.FILESERVER_WEIGHT_KEY
+                            + " "
+                            + value
+                            + " for file server "
+                            + server.getURLPrefix(),
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        }
+        return DEFAULT_WEIGHT;
+    }
+}
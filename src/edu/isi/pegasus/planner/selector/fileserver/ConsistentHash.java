@@ -0,0 +1,169 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.fileserver;
+
+import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A file server selector that selects a file server by consistent hashing of either the lfn, or the
+ * ID of the job. The file servers associated with a directory are placed on a hash ring, each with
+ * a number of virtual nodes proportional to the weight of the file server. The weight of a file
+ * server is specified by associating the Pegasus profile key fileserver.weight with it, and
+ * defaults to 1.
+ *
+ * <p>As the ring only depends on the URL prefixes of the file servers, the same file is mapped to
+ * the same file server each time the workflow is planned. Adding or removing a file server, only
+ * remaps the files that hash to the virtual nodes of that file server.
+ *
+ * <p>In order to use the file server selector implemented by this class,
+ *
+ * <pre>
+ *        - the property pegasus.selector.fileserver must be set to value ConsistentHash
+ *        - the property pegasus.selector.fileserver.hash can be set to lfn (default)
+ *          or job to select what is hashed.
+ * </pre>
+ *
+ * @version $Revision$
+ */
+public class ConsistentHash extends Abstract {
+
+    /** The property that determines what is hashed to select a file server. */
+    public static final String HASH_PROPERTY_KEY = "pegasus.selector.fileserver.hash";
+
+    /** The number of virtual nodes on the ring for a file server with weight 1. */
+    public static final int VIRTUAL_NODES = 160;
+
+    /** A short description of the file server selector. */
+    private static final String DESCRIPTION = "Consistent Hashing File Server Selection";
+
+    /** Whether the job ID is hashed instead of the lfn. */
+    private final boolean mHashJob;
+
+    /** Map indexed by the list of file servers for a directory, and value as the hash ring. */
+    private final Map<List<FileServer>, TreeMap<Long, FileServer>> mRings;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param properties the properties passed to the planner
+     */
+    public ConsistentHash(PegasusProperties properties) {
+        super(properties);
+        String value = properties.getProperty(HASH_PROPERTY_KEY);
+        if (value == null || value.equalsIgnoreCase("lfn")) {
+            mHashJob = false;
+        } else if (value.equalsIgnoreCase("job")) {
+            mHashJob = true;
+        } else {
+            throw new IllegalArgumentException(
+                    "Invalid value " + value + " for property " + HASH_PROPERTY_KEY);
+        }
+        mRings = Collections.synchronizedMap(new IdentityHashMap());
+    }
+
+    /**
+     * Selects the file server whose virtual node follows the hash of the lfn, or the job ID, on the
+     * ring. If the key configured is not available, the other one is hashed instead. That is the
+     * case for the job ID with the output mappers, and for the lfn with URLs for directories.
+     * Without either, the first file server is selected.
+     *
+     * @param servers the candidate file servers. Is not empty.
+     * @param job the job for which the URL is constructed, can be null
+     * @param lfn the lfn of the file, can be null if the URL is for the directory
+     * @return the selected file server
+     */
+    public FileServer selectFileServer(List<FileServer> servers, Job job, String lfn) {
+        if (servers.size() == 1) {
+            return servers.get(0);
+        }
+        String jobID = (job == null) ? null : job.getID();
+        String key = mHashJob ? jobID : lfn;
+        if (key == null) {
+            key = mHashJob ? lfn : jobID;
+        }
+        if (key == null) {
+            return servers.get(0);
+        }
+
+        TreeMap<Long, FileServer> ring = mRings.computeIfAbsent(servers, this::createRing);
+        SortedMap<Long, FileServer> tail = ring.tailMap(hash(key));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * Returns true, as the file server selected only depends on the key hashed.
+     *
+     * @return true
+     */
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Returns a short description of the file server selector.
+     *
+     * @return description.
+     */
+    public String description() {
+        return DESCRIPTION;
+    }
+
+    /**
+     * Creates the hash ring for a list of file servers.
+     *
+     * @param servers the file servers
+     * @return the ring indexed by the hash of the virtual nodes
+     */
+    private TreeMap<Long, FileServer> createRing(List<FileServer> servers) {
+        TreeMap<Long, FileServer> ring = new TreeMap();
+        for (FileServer server : servers) {
+            int nodes = VIRTUAL_NODES * this.getWeight(server);
+            for (int i = 0; i < nodes; i++) {
+                ring.put(hash(server.getURLPrefix() + "#" + i), server);
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * Returns a 64 bit hash of a string, computed from the MD5 digest of the string.
+     *
+     * @param value the string
+     * @return the hash
+     */
+    private static long hash(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(value.getBytes(StandardCharsets.UTF_8));
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | (digest[i] & 0xff);
+            }
+            return result;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("MD5 digest is not available", e);
+        }
+    }
+}
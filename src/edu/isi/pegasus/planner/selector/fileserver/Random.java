@@ -0,0 +1,77 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.fileserver;
+
+import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.common.PegRandom;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import java.util.List;
+
+/**
+ * The default file server selector, that selects a file server randomly.
+ *
+ * <p>In order to use the file server selector implemented by this class,
+ *
+ * <pre>
+ *        - the property pegasus.selector.fileserver must be set to value Random, or
+ *          the property should be left undefined in the properties.
+ * </pre>
+ *
+ * @version $Revision$
+ */
+public class Random extends Abstract {
+
+    /** A short description of the file server selector. */
+    private static final String DESCRIPTION = "Random File Server Selection";
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param properties the properties passed to the planner
+     */
+    public Random(PegasusProperties properties) {
+        super(properties);
+    }
+
+    /**
+     * Selects a file server randomly.
+     *
+     * @param servers the candidate file servers. Is not empty.
+     * @param job the job for which the URL is constructed, can be null
+     * @param lfn the lfn of the file, can be null if the URL is for the directory
+     * @return the selected file server
+     */
+    public FileServer selectFileServer(List<FileServer> servers, Job job, String lfn) {
+        return servers.get(PegRandom.getInteger(servers.size() - 1));
+    }
+
+    /**
+     * Returns true, as the selection is random anyways.
+     *
+     * @return true
+     */
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Returns a short description of the file server selector.
+     *
+     * @return description.
+     */
+    public String description() {
+        return DESCRIPTION;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.fileserver;
+
+import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A file server selector that selects the file servers associated with a directory in a weighted
+ * round robin manner. The weight of a file server is specified by associating the Pegasus profile
+ * key fileserver.weight with it, and defaults to 1. The selection is smooth, in that the selections
+ * of a file server are spread out amongst the selections of the other file servers, instead of
+ * being made in a single burst.
+ *
+ * <p>In order to use the file server selector implemented by this class, the property
+ * pegasus.selector.fileserver must be set to value RoundRobin.
+ *
+ * @version $Revision$
+ */
+public class RoundRobin extends Abstract {
+
+    /** A short description of the file server selector. */
+    private static final String DESCRIPTION = "Weighted Round Robin File Server Selection";
+
+    /**
+     * Map indexed by the list of file servers for a directory, and value as the current weights of
+     * the file servers in the list.
+     */
+    private final Map<List<FileServer>, int[]> mCurrentWeights;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param properties the properties passed to the planner
+     */
+    public RoundRobin(PegasusProperties properties) {
+        super(properties);
+        mCurrentWeights = new IdentityHashMap();
+    }
+
+    /**
+     * Selects the file server next in the weighted round robin order. Each selection increments the
+     * current weight of every server by its weight, selects the server with the highest current
+     * weight, and decrements the current weight of the selected server by the total weight.
+     *
+     * @param servers the candidate file servers. Is not empty.
+     * @param job the job for which the URL is constructed, can be null
+     * @param lfn the lfn of the file, can be null if the URL is for the directory
+     * @return the selected file server
+     */
+    public synchronized FileServer selectFileServer(List<FileServer> servers, Job job, String lfn) {
+        int[] current = mCurrentWeights.get(servers);
+        if (current == null || current.length != servers.size()) {
+            current = new int[servers.size()];
+            mCurrentWeights.put(servers, current);
+        }
+
+        int total = 0;
+        int selected = 0;
+        for (int i = 0; i < current.length; i++) {
+            int weight = this.getWeight(servers.get(i));
+            current[i] += weight;
+            total += weight;
+            if (current[i] > current[selected]) {
+                selected = i;
+            }
+        }
+        current[selected] -= total;
+        return servers.get(selected);
+    }
+
+    /**
+     * Returns false, as the file server selected depends on the order of invocation.
+     *
+     * @return false
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Returns a short description of the file server selector.
+     *
+     * @return description.
+     */
+    public String description() {
+        return DESCRIPTION;
+    }
+}
@@ -59,6 +59,12 @@ public abstract class AbstractPerJob extends Abstract {
                                 + " will be mapped based on selector|hints profile key "
                                 + executionKey,
                         LogManager.DEBUG_MESSAGE_LEVEL);
+                String site =
+                        (String)
+                                (job.getSelectorProfiles().containsKey(executionKey)
+                                        ? job.getSelectorProfiles().get(executionKey)
+                                        : job.hints.get(executionKey));
+                mapJobFromHint(job, site);
             } else {
                 if (job instanceof DataFlowJob) {
                     // PM-1205 datalfows are clustered jobs
@@ -83,4 +89,14 @@ public abstract class AbstractPerJob extends Abstract {
      *     can be used.
      */
     public abstract void mapJob(Job job, List sites);
+
+    /**
+     * Callback for a job that is not mapped by the selector, as the execution site is specified for
+     * it in the selector or hints profile. The site is set on the job later by the Interpool
+     * Engine. The default implementation does nothing.
+     *
+     * @param job the job.
+     * @param site the execution site specified for the job.
+     */
+    protected void mapJobFromHint(Job job, String site) {}
 }
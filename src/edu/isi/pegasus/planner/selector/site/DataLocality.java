@@ -0,0 +1,247 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.site;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.classes.ReplicaLocation;
+import edu.isi.pegasus.planner.refiner.ReplicaCatalogBridge;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A site selector that maps a job to the candidate site where most of its input data already
+ * resides. An input file is considered resident on a site, if the replica catalog has a location
+ * for it on that site, or if it is generated by a job that has already been mapped to that site.
+ * The sites are scored by the number of bytes of the input files resident on them, as specified in
+ * the size metadata of the files. Ties are broken by the number of resident input files, and then
+ * by picking the site with the least number of jobs mapped to it so far.
+ *
+ * <p>The jobs are mapped in a top down manner, so the parents of a job are always mapped before the
+ * job.
+ *
+ * @version $Revision$
+ */
+public class DataLocality extends AbstractPerJob {
+
+    /** A short description of the site selector. */
+    public static final String DESCRIPTION = "Data Locality Site Selection";
+
+    /**
+     * The bridge to the replica catalogs, that is used to look up the locations of the input files.
+     */
+    private ReplicaCatalogBridge mRCBridge;
+
+    /**
+     * Map indexed by the logical name of the files generated by the jobs mapped so far, and value
+     * as the site the job was mapped to.
+     */
+    private Map<String, String> mGeneratedFileSites;
+
+    /** Map indexed by site handle, and value as the number of jobs mapped to the site so far. */
+    private Map<String, Integer> mSiteLoad;
+
+    /** The default constructor. */
+    public DataLocality() {}
+
+    /**
+     * Initializes the site selector.
+     *
+     * @param bag the bag of objects that is useful for initialization.
+     */
+    public void initialize(PegasusBag bag) {
+        super.initialize(bag);
+        mRCBridge = bag.getHandleToReplicaCatalogBridge();
+        if (mRCBridge == null) {
+            mLogger.log(
+                    "[Data Locality Selector] No replica catalog available. Only the files generated"
+                            + " by the workflow will be considered for locality",
+                    LogManager.WARNING_MESSAGE_LEVEL);
+        }
+        mGeneratedFileSites = new HashMap();
+        mSiteLoad = new HashMap();
+    }
+
+    /**
+     * Maps a job in the workflow to an execution site.
+     *
+     * @param job the job to be mapped.
+     * @param sites the list of <code>String</code> objects representing the execution sites that
+     *     can be used.
+     */
+    public void mapJob(Job job, List sites) {
+        List<String> rsites =
+                mTCMapper.getSiteList(
+                        job.getTXNamespace(), job.getTXName(), job.getTXVersion(), sites);
+
+        if (rsites == null || rsites.isEmpty()) {
+            job.setSiteHandle(null);
+            return;
+        }
+
+        Map<String, Residence> residence = this.getResidentInputs(job, rsites);
+        String selected = null;
+        Residence best = null;
+        for (String site : rsites) {
+            Residence r = residence.get(site);
+            if (best == null || r.compareTo(best) > 0) {
+                selected = site;
+                best = r;
+            }
+        }
+
+        job.setSiteHandle(selected);
+        this.recordMapping(job, selected);
+
+        StringBuffer message = new StringBuffer();
+        message.append("[Data Locality Selector] Mapped ")
+                .append(job.getID())
+                .append(" to ")
+                .append(selected)
+                .append(" with resident input bytes ")
+                .append(best.mBytes)
+                .append(" in files ")
+                .append(best.mFiles);
+        mLogger.log(message.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
+    }
+
+    /**
+     * Records the site specified for a job in the selector or hints profile, so that the outputs of
+     * the job are considered resident on that site when mapping its children.
+     *
+     * @param job the job.
+     * @param site the execution site specified for the job.
+     */
+    protected void mapJobFromHint(Job job, String site) {
+        if (site != null) {
+            this.recordMapping(job, site);
+        }
+    }
+
+    /**
+     * Returns a brief description of the site selection technique being used.
+     *
+     * @return String
+     */
+    public String description() {
+        return DataLocality.DESCRIPTION;
+    }
+
+    /**
+     * Determines the input files of a job that are resident on each of the candidate sites.
+     *
+     * @param job the job
+     * @param sites the candidate sites for the job
+     * @return Map indexed by the candidate site
+     */
+    private Map<String, Residence> getResidentInputs(Job job, List<String> sites) {
+        Map<String, Residence> result = new HashMap();
+        for (String site : sites) {
+            Integer load = mSiteLoad.get(site);
+            result.put(site, new Residence(load == null ? 0 : load));
+        }
+
+        for (PegasusFile pf : job.getInputFiles()) {
+            String lfn = pf.getLFN();
+            Set<String> locations = new HashSet();
+            String generatedOn = mGeneratedFileSites.get(lfn);
+            if (generatedOn != null) {
+                locations.add(generatedOn);
+            }
+            if (mRCBridge != null) {
+                ReplicaLocation rl = mRCBridge.getFileLocs(lfn);
+                if (rl != null) {
+                    for (ReplicaCatalogEntry rce : rl.getPFNList()) {
+                        locations.add(rce.getResourceHandle());
+                    }
+                }
+            }
+
+            // files with no size metadata only count towards
+            // the number of resident files
+            double size = Math.max(pf.getSize(), 0);
+            for (String site : locations) {
+                Residence r = result.get(site);
+                if (r != null) {
+                    r.mBytes += size;
+                    r.mFiles++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records the site a job is mapped to, incrementing the load on the site and marking the output
+     * files of the job as resident on it.
+     *
+     * @param job the job
+     * @param site the site the job is mapped to
+     */
+    private void recordMapping(Job job, String site) {
+        Integer load = mSiteLoad.get(site);
+        mSiteLoad.put(site, load == null ? 1 : load + 1);
+        for (PegasusFile pf : job.getOutputFiles()) {
+            mGeneratedFileSites.put(pf.getLFN(), site);
+        }
+    }
+
+    /** Tracks the input files of a job resident on a site, and the load on the site. */
+    private static class Residence implements Comparable<Residence> {
+
+        /** The number of bytes of the input files resident on the site. */
+        private double mBytes;
+
+        /** The number of input files resident on the site. */
+        private int mFiles;
+
+        /** The number of jobs mapped to the site so far. */
+        private final int mLoad;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param load the number of jobs mapped to the site so far.
+         */
+        Residence(int load) {
+            mBytes = 0;
+            mFiles = 0;
+            mLoad = load;
+        }
+
+        /**
+         * Compares the residence on two sites. A site with more resident bytes, then more resident
+         * files, and then less load is greater.
+         *
+         * @param other the residence to compare against
+         * @return a negative number, zero, or a positive number
+         */
+        public int compareTo(Residence other) {
+            int result = Double.compare(mBytes, other.mBytes);
+            if (result == 0) {
+                result = Integer.compare(mFiles, other.mFiles);
+            }
+            if (result == 0) {
+                result = Integer.compare(other.mLoad, mLoad);
+            }
+            return result;
+        }
+    }
+}
@@ -54,6 +54,12 @@ public class Definitions extends VDL implements Serializable {
      */
     private ArrayList m_definitionList;
 
+    /**
+     * The number of modifications made to the list of definitions, including the ones through its
+     * iterators. Allows views on the definitions to detect that they changed.
+     */
+    private transient long m_modifications;
+
     /**
      * ctor. It is strongly suggested that you set the namespace and version of the object before
      * adding any other {@link Definition} objects.
@@ -309,6 +315,7 @@ public class Definitions extends VDL implements Serializable {
     public void addDefinition(Definition d) throws IndexOutOfBoundsException {
         this.sanitizeDefinition(d);
         this.m_definitionList.add(d);
+        this.m_modifications++;
     }
 
     /**
@@ -327,6 +334,7 @@ public class Definitions extends VDL implements Serializable {
     public void addDefinition(int index, Definition d) throws IndexOutOfBoundsException {
         this.sanitizeDefinition(d);
         this.m_definitionList.add(index, d);
+        this.m_modifications++;
     }
 
     /**
@@ -414,6 +422,16 @@ public class Definitions extends VDL implements Serializable {
         return this.m_definitionList.size();
     }
 
+    /**
+     * Accessor: Obtains the number of modifications made to the definitions so far. The count
+     * changes whenever a {@link Definition} is added, removed or replaced.
+     *
+     * @return the modification count.
+     */
+    public long getModificationCount() {
+        return this.m_modifications;
+    }
+
     /**
      * Accessor: Obtains all {@link Definition}s available. This list is read-only.
      *
@@ -452,7 +470,7 @@ public class Definitions extends VDL implements Serializable {
      * @see java.util.ListIterator
      */
     public Iterator iterateDefinition() {
-        return this.m_definitionList.iterator();
+        return new CountingIterator(this.m_definitionList.listIterator());
     }
 
     /**
@@ -463,7 +481,7 @@ public class Definitions extends VDL implements Serializable {
      * @see java.util.ListIterator
      */
     public ListIterator listIterateDefinition() {
-        return this.m_definitionList.listIterator();
+        return new CountingIterator(this.m_definitionList.listIterator());
     }
 
     /**
@@ -475,7 +493,7 @@ public class Definitions extends VDL implements Serializable {
      * @see java.util.ListIterator
      */
     public ListIterator listIterateDefinition(int start) {
-        return this.m_definitionList.listIterator(start);
+        return new CountingIterator(this.m_definitionList.listIterator(start));
     }
 
     /**
@@ -485,6 +503,7 @@ public class Definitions extends VDL implements Serializable {
      */
     public void removeAllDefinition() {
         this.m_definitionList.clear();
+        this.m_modifications++;
     }
 
     /**
@@ -498,7 +517,9 @@ public class Definitions extends VDL implements Serializable {
      * @see Definition
      */
     public Definition removeDefinition(int index) {
-        return (Definition) this.m_definitionList.remove(index);
+        Definition result = (Definition) this.m_definitionList.remove(index);
+        this.m_modifications++;
+        return result;
     }
 
     /**
@@ -511,7 +532,9 @@ public class Definitions extends VDL implements Serializable {
      * @see Definition
      */
     public boolean removeDefinition(Definition d) {
-        return this.m_definitionList.remove(d);
+        boolean result = this.m_definitionList.remove(d);
+        if (result) this.m_modifications++;
+        return result;
     }
 
     /**
@@ -530,6 +553,7 @@ public class Definitions extends VDL implements Serializable {
         }
 
         this.sanitizeDefinition(d);
+        this.m_modifications++;
         return (Definition) this.m_definitionList.set(index, d);
     }
 
@@ -543,6 +567,7 @@ public class Definitions extends VDL implements Serializable {
     public void setDefinition(Definition[] definitionArray) {
         this.m_definitionList.clear();
         this.m_definitionList.addAll(Arrays.asList(definitionArray));
+        this.m_modifications++;
     }
 
     /**
@@ -554,6 +579,7 @@ public class Definitions extends VDL implements Serializable {
     public void setDefinition(Collection definitions) {
         this.m_definitionList.clear();
         this.m_definitionList.addAll(definitions);
+        this.m_modifications++;
     }
 
     /**
@@ -691,4 +717,58 @@ public class Definitions extends VDL implements Serializable {
         stream.write(System.getProperty("line.separator", "\r\n"));
         stream.flush(); // this is the only time we flush
     }
+
+    /** A list iterator over the definitions that counts the modifications made through it. */
+    private class CountingIterator implements ListIterator {
+        /** The iterator over the list of definitions. */
+        private ListIterator m_iterator;
+
+        /**
+         * ctor.
+         *
+         * @param iterator is the iterator over the list of definitions.
+         */
+        CountingIterator(ListIterator iterator) {
+            this.m_iterator = iterator;
+        }
+
+        public boolean hasNext() {
+            return this.m_iterator.hasNext();
+        }
+
+        public Object next() {
+            return this.m_iterator.next();
+        }
+
+        public boolean hasPrevious() {
+            return this.m_iterator.hasPrevious();
+        }
+
+        public Object previous() {
+            return this.m_iterator.previous();
+        }
+
+        public int nextIndex() {
+            return this.m_iterator.nextIndex();
+        }
+
+        public int previousIndex() {
+            return this.m_iterator.previousIndex();
+        }
+
+        public void remove() {
+            this.m_iterator.remove();
+            Definitions.this.m_modifications++;
+        }
+
+        public void set(Object o) {
+            this.m_iterator.set(o);
+            Definitions.this.m_modifications++;
+        }
+
+        public void add(Object o) {
+            this.m_iterator.add(o);
+            Definitions.this.m_modifications++;
+        }
+    }
 }
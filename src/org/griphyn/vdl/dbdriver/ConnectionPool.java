@@ -0,0 +1,269 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.griphyn.vdl.dbdriver;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.griphyn.vdl.util.Logging;
+
+/**
+ * A bounded pool of connections to the same database, that are leased to threads. A thread leases a
+ * connection on first use, and keeps it until it ends its transaction with a commit or rollback, or
+ * releases it explicitly. Leases may be scoped with {@link #acquire()}, in which case the
+ * connection is kept over any commits and rollbacks till the matching release. Prepared statements
+ * are tied to the connection they were prepared on, so each pooled connection keeps a cache of its
+ * own statements.
+ *
+ * <p>Connections are opened on demand, and never more than the size of the pool. A thread asking
+ * for a connection when all of them are leased waits till one is released, or fails once the
+ * timeout of the pool has passed.
+ *
+ * @see DatabaseDriver#acquire()
+ * @see DatabaseDriver#release()
+ */
+class ConnectionPool {
+    /** A pooled connection together with the statements prepared on it. */
+    static class Entry {
+        /** The JDBC handle for the connection. */
+        final Connection m_connection;
+
+        /** The prepared statements on the connection, by their id. */
+        final Map m_prepared;
+
+        /** The number of scoped leases the owning thread holds on the connection. */
+        int m_depth;
+
+        /**
+         * Constructs a pooled connection with an empty statement cache.
+         *
+         * @param connection is the JDBC connection.
+         */
+        Entry(Connection connection) {
+            this.m_connection = connection;
+            this.m_prepared = new HashMap();
+            this.m_depth = 0;
+        }
+
+        /**
+         * Predicate to tell, if the connection is held in a scoped lease.
+         *
+         * @return true if inside an acquire and release bracket.
+         */
+        boolean isScoped() {
+            return (this.m_depth > 0);
+        }
+    }
+
+    /** The contact string to the database. */
+    private final String m_url;
+
+    /** The properties to pass to the JDBC driver for each connection. */
+    private final Properties m_info;
+
+    /** The maximum number of connections to open. */
+    private final int m_size;
+
+    /** The milliseconds to wait for a connection, when all of them are leased. */
+    private final long m_timeout;
+
+    /** The connections opened, but not leased to any thread. */
+    private final BlockingQueue m_idle;
+
+    /** All the connections opened, guarded by the pool instance. */
+    private final List m_all;
+
+    /** The connection leased to the current thread, if any. */
+    private final ThreadLocal m_leased;
+
+    /** Set once the pool is closed. */
+    private volatile boolean m_closed;
+
+    /**
+     * Constructs a pool, without opening any connections.
+     *
+     * @param url is the contact string to the database.
+     * @param info are the properties to pass to the JDBC driver.
+     * @param size is the maximum number of connections to open.
+     * @param timeout is the milliseconds to wait for a connection, when all of them are leased.
+     */
+    ConnectionPool(String url, Properties info, int size, long timeout) {
+        if (size < 1) throw new IllegalArgumentException("Invalid connection pool size " + size);
+        this.m_url = url;
+        this.m_info = info;
+        this.m_size = size;
+        this.m_timeout = timeout;
+        this.m_idle = new LinkedBlockingQueue();
+        this.m_all = new ArrayList(size);
+        this.m_leased = new ThreadLocal();
+        this.m_closed = false;
+    }
+
+    /**
+     * Obtains the connection leased to the current thread, without leasing a new one.
+     *
+     * @return the leased connection, or <code>null</code> if the thread holds none.
+     */
+    Entry current() {
+        return (Entry) this.m_leased.get();
+    }
+
+    /**
+     * Obtains the connection leased to the current thread, leasing one if the thread holds none.
+     * Blocks if all connections are leased to other threads.
+     *
+     * @return the leased connection.
+     * @exception SQLException if no connection could be opened, none was released within the
+     *     timeout of the pool, or the thread was interrupted while waiting for a connection.
+     */
+    Entry lease() throws SQLException {
+        Entry result = this.current();
+        if (result == null) {
+            result = this.take();
+            this.m_leased.set(result);
+        }
+        return result;
+    }
+
+    /**
+     * Leases a connection to the current thread for the scope ending with the matching {@link
+     * #release(boolean)}. Scopes nest, and the connection is only returned to the pool once the
+     * outermost scope is released.
+     *
+     * @return the leased connection.
+     * @exception SQLException if no connection could be leased.
+     * @see #lease()
+     */
+    Entry acquire() throws SQLException {
+        Entry result = this.lease();
+        result.m_depth++;
+        return result;
+    }
+
+    /**
+     * Returns the connection leased to the current thread to the pool. Nothing happens, if the
+     * thread holds no connection. Inside a scoped lease, this only ends the innermost scope, and
+     * the connection is returned with the outermost one.
+     *
+     * @param rollback is true to discard any uncommitted work on the connection, false if the
+     *     transaction was already ended by the caller.
+     * @exception SQLException if the rollback failed. The connection is returned regardless.
+     */
+    void release(boolean rollback) throws SQLException {
+        Entry entry = this.current();
+        if (entry == null) return;
+        if (entry.m_depth > 0 && --entry.m_depth > 0) return;
+        this.m_leased.remove();
+
+        try {
+            if (rollback) entry.m_connection.rollback();
+        } finally {
+            if (!m_closed) this.m_idle.offer(entry);
+        }
+    }
+
+    /**
+     * Closes all the connections opened, regardless of any leases.
+     *
+     * @exception SQLException if closing any connection failed.
+     */
+    void close() throws SQLException {
+        this.m_closed = true;
+        this.m_idle.clear();
+
+        SQLException error = null;
+        synchronized (this) {
+            for (Iterator i = this.m_all.iterator(); i.hasNext(); ) {
+                Entry entry = (Entry) i.next();
+                try {
+                    // a slot may be reserved for a connection still being opened
+                    if (entry != null) entry.m_connection.close();
+                } catch (SQLException e) {
+                    error = e;
+                }
+            }
+            this.m_all.clear();
+        }
+        this.m_leased.remove();
+        if (error != null) throw error;
+    }
+
+    /**
+     * Takes an idle connection, opening a new one if none is idle and the pool is not full yet.
+     *
+     * @return a connection not leased to any thread.
+     * @exception SQLException if no connection could be opened or was released in time.
+     */
+    private Entry take() throws SQLException {
+        if (m_closed) throw new SQLException("connection pool is closed");
+        Entry result = (Entry) this.m_idle.poll();
+        if (result != null) return result;
+
+        // reserve a slot, but open the connection outside the lock
+        boolean open = false;
+        synchronized (this) {
+            if (this.m_all.size() < this.m_size) {
+                this.m_all.add(null);
+                open = true;
+            }
+        }
+
+        if (open) {
+            try {
+                result = this.open();
+            } finally {
+                synchronized (this) {
+                    this.m_all.remove(null);
+                    if (result != null) this.m_all.add(result);
+                }
+            }
+            return result;
+        }
+
+        try {
+            Logging.instance().log("xaction", 1, "START wait for pooled connection");
+            result = (Entry) this.m_idle.poll(this.m_timeout, TimeUnit.MILLISECONDS);
+            Logging.instance().log("xaction", 1, "FINAL wait for pooled connection");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a pooled connection");
+        }
+
+        // all connections are still leased, likely never to be released
+        if (result == null) {
+            throw new SQLException(
+                    "no pooled connection released within "
+                            + this.m_timeout
+                            + " ms, all "
+                            + this.m_size
+                            + " are leased");
+        }
+        return result;
+    }
+
+    /**
+     * Opens a new connection, with auto commit disabled as for the single connection of the driver.
+     *
+     * @return the new connection.
+     */
+    private Entry open() throws SQLException {
+        Logging.instance().log("xaction", 1, "START connect pooled connection to dbase");
+        Connection connection = DriverManager.getConnection(this.m_url, this.m_info);
+        connection.setAutoCommit(false);
+        Logging.instance().log("xaction", 1, "FINAL connected pooled connection to dbase");
+        return new Entry(connection);
+    }
+}
@@ -35,6 +35,12 @@ import org.griphyn.vdl.util.Logging;
  * <p>The separation of database driver and schema lowers the implementation cost, as only N driver
  * and M schemas need to be implemented, instead of N x M schema-specific database-specific drivers.
  *
+ * <p>By default, a driver talks to the database over a single connection, and must not be used from
+ * more than one thread. In pooled mode, each thread leases a connection of its own from a bounded
+ * pool, and keeps it till it commits, rolls back or releases it. Callers that may not end with a
+ * commit or rollback, such as queries, bracket their work with {@link #acquire()} and {@link
+ * #release()}. The prepared statements are prepared again on each pooled connection on first use.
+ *
  * @author Jens-S. Vöckler
  * @author Yong Zhao
  * @version $Revision$
@@ -50,6 +56,37 @@ public abstract class DatabaseDriver {
      */
     protected Map m_prepared;
 
+    /**
+     * The property key for the maximum number of pooled connections. If set to a positive number,
+     * the driver leases a connection from a pool to each thread using it. The key is removed from
+     * the properties passed to the JDBC driver.
+     */
+    public static final String POOL_SIZE_KEY = "pool.size";
+
+    /**
+     * The property key for the seconds a thread waits for a pooled connection, when all of them are
+     * leased, before failing. The key is removed from the properties passed to the JDBC driver.
+     */
+    public static final String POOL_TIMEOUT_KEY = "pool.timeout";
+
+    /** The default seconds to wait for a pooled connection. */
+    public static final long DEFAULT_POOL_TIMEOUT = 60;
+
+    /**
+     * The pool of connections shared by the threads using the driver, or <code>null</code> if all
+     * access goes through the single connection.
+     */
+    private volatile ConnectionPool m_pool = null;
+
+    /**
+     * The SQL of the prepared statements by their id, so that they can be prepared again on each
+     * pooled connection.
+     */
+    private Map m_statements;
+
+    /** The ids of the prepared statements that return auto-generated keys. */
+    private Set m_generated;
+
     //
     // class methods
     //
@@ -159,6 +196,8 @@ public abstract class DatabaseDriver {
     public DatabaseDriver() {
         this.m_connection = null;
         this.m_prepared = new TreeMap();
+        this.m_statements = Collections.synchronizedMap(new HashMap());
+        this.m_generated = Collections.synchronizedSet(new HashSet());
     }
 
     /**
@@ -169,9 +208,13 @@ public abstract class DatabaseDriver {
      * <p>Essentially, the deriving class will overwrite their connect method to fill in the
      * appropriate driver, and otherwise just call this method.
      *
+     * <p>If the parameters contain a positive {@link #POOL_SIZE_KEY}, the driver is put into pooled
+     * mode, and opens further connections with the same parameters as threads ask for them.
+     *
      * @param driver is the Java class name of the database driver package
      * @param url the contact string to database, or schema location
-     * @param info additional parameters, usually username and password
+     * @param info additional parameters, usually username and password, and optionally the pool
+     *     size
      * @param tables is a set of all table names in the schema. The existence of all tables will be
      *     checked to verify that the schema is active in the database.
      * @return true if the connection succeeded, false otherwise. Usually, false is returned, if the
@@ -187,6 +230,28 @@ public abstract class DatabaseDriver {
         // load specificed driver class into memory
         Class.forName(driver);
 
+        // the pool size and timeout are for us, not for the JDBC driver
+        int size = 0;
+        long timeout = DEFAULT_POOL_TIMEOUT;
+        String value = (info == null ? null : info.getProperty(POOL_SIZE_KEY));
+        if (value != null) {
+            String wait = info.getProperty(POOL_TIMEOUT_KEY);
+            try {
+                size = Integer.parseInt(value.trim());
+                if (wait != null) timeout = Long.parseLong(wait.trim());
+            } catch (NumberFormatException e) {
+                throw new SQLException(
+                        "invalid value for " + POOL_SIZE_KEY + " or " + POOL_TIMEOUT_KEY);
+            }
+            Properties temp = new Properties();
+            for (Iterator i = info.stringPropertyNames().iterator(); i.hasNext(); ) {
+                String key = (String) i.next();
+                if (!key.equals(POOL_SIZE_KEY) && !key.equals(POOL_TIMEOUT_KEY))
+                    temp.setProperty(key, info.getProperty(key));
+            }
+            info = temp;
+        }
+
         Logging.instance().log("xaction", 1, "START connect to dbase");
         m_connection = DriverManager.getConnection(url, info);
         DriverManager.setLogWriter(new PrintWriter(System.err));
@@ -200,6 +265,12 @@ public abstract class DatabaseDriver {
         m_connection.setAutoCommit(false);
         Logging.instance().log("xaction", 1, "FINAL disabled auto-commit");
 
+        // further connections are opened as threads ask for them
+        if (size > 0) {
+            Logging.instance().log("dbdriver", 2, "pooling up to " + size + " connections");
+            this.m_pool = new ConnectionPool(url, info, size, timeout * 1000);
+        }
+
         // auto-disconnect, should we forget it, or die in an orderly fashion
         Runtime.getRuntime()
                 .addShutdownHook(
@@ -265,22 +336,80 @@ public abstract class DatabaseDriver {
     }
 
     /**
-     * Close an established database connection.
+     * Close an established database connection, and all pooled connections.
      *
      * @exception if the driver threw up on the data.
      */
     public void disconnect() throws SQLException {
+        if (this.m_pool != null) {
+            ConnectionPool pool = this.m_pool;
+            this.m_pool = null;
+            pool.close();
+        }
         if (this.m_connection != null) {
             this.m_connection.close();
             this.m_connection = null;
         }
     }
 
+    /**
+     * Predicate to tell, if the driver leases pooled connections to the threads using it.
+     *
+     * @return true if in pooled mode, false if all access goes through the single connection.
+     * @see #POOL_SIZE_KEY
+     */
+    public boolean isPooled() {
+        return (this.m_pool != null);
+    }
+
+    /**
+     * Leases a pooled connection to the current thread till the matching {@link #release()}. Inside
+     * such a scope, commits and rollbacks end the transaction, but keep the connection. Scopes
+     * nest, so a schema method may call another one. Callers must release in a finally block, as
+     * the pool only has so many connections. Does nothing, if the driver is not in pooled mode.
+     *
+     * @exception SQLException if no pooled connection could be leased.
+     */
+    public void acquire() throws SQLException {
+        ConnectionPool pool = this.m_pool;
+        if (pool != null) pool.acquire();
+    }
+
+    /**
+     * Returns the pooled connection leased to the current thread to the pool, rolling back any
+     * changes not yet committed. Inside a scope opened by {@link #acquire()}, this ends the scope,
+     * and the connection is only returned with the outermost one. Result sets obtained over the
+     * connection must not be used after the release. Does nothing, if the driver is not in pooled
+     * mode, or the thread holds no connection.
+     *
+     * @exception SQLException is propagated from the rollback operation.
+     */
+    public void release() throws SQLException {
+        ConnectionPool pool = this.m_pool;
+        if (pool != null) pool.release(true);
+    }
+
+    /**
+     * Obtains the connection to use for the current thread. In pooled mode, this is the connection
+     * leased to the thread, leasing one if necessary.
+     *
+     * @return the connection to use.
+     * @exception SQLException if no pooled connection could be leased.
+     */
+    protected Connection connection() throws SQLException {
+        ConnectionPool pool = this.m_pool;
+        return (pool == null ? this.m_connection : pool.lease().m_connection);
+    }
+
     /**
      * Closes an open connection to the database whenever this object is destroyed. This is still
      * not foolproof.
      */
     protected void finalize() throws Throwable {
+        if (this.m_pool != null) {
+            this.m_pool.close();
+            this.m_pool = null;
+        }
         if (this.m_connection != null) {
             this.m_connection.close();
             this.m_connection = null;
@@ -309,22 +438,44 @@ public abstract class DatabaseDriver {
     }
 
     /**
-     * Commits the latest changes to the database.
+     * Commits the latest changes to the database. In pooled mode, this also returns the connection
+     * leased to the current thread to the pool, unless leased with {@link #acquire()}.
      *
      * @exception SQLException is propagated from the commit.
      */
     public void commit() throws SQLException {
-        this.m_connection.commit();
+        ConnectionPool pool = this.m_pool;
+        ConnectionPool.Entry entry = (pool == null ? null : pool.current());
+        if (pool == null) {
+            this.m_connection.commit();
+        } else if (entry != null && entry.isScoped()) {
+            // a failed commit is rolled back with the release of the scope
+            entry.m_connection.commit();
+        } else if (entry != null) {
+            boolean committed = false;
+            try {
+                entry.m_connection.commit();
+                committed = true;
+            } finally {
+                // a failed commit leaves a transaction to roll back
+                pool.release(!committed);
+            }
+        }
     }
 
     /**
      * Rolls back the latest changes to the database. Some databases may be incapable of rolling
-     * back.
+     * back. In pooled mode, this also returns the connection leased to the current thread to the
+     * pool, unless leased with {@link #acquire()}.
      *
      * @exception SQLException is propagated from the rollback operation.
      */
     public void rollback() throws SQLException {
-        this.m_connection.rollback();
+        ConnectionPool pool = this.m_pool;
+        ConnectionPool.Entry entry = (pool == null ? null : pool.current());
+        if (pool == null) this.m_connection.rollback();
+        else if (entry != null && entry.isScoped()) entry.m_connection.rollback();
+        else pool.release(true);
     }
 
     /**
@@ -332,7 +483,7 @@ public abstract class DatabaseDriver {
      * internal warnings are cleared until the next one occurs.
      */
     public void clearWarnings() throws SQLException {
-        this.m_connection.clearWarnings();
+        this.connection().clearWarnings();
     }
 
     /**
@@ -344,7 +495,7 @@ public abstract class DatabaseDriver {
      * @see java.sql.Connection#getWarnings
      */
     public SQLWarning getWarnings() throws SQLException {
-        return this.m_connection.getWarnings();
+        return this.connection().getWarnings();
     }
 
     /**
@@ -397,7 +548,7 @@ public abstract class DatabaseDriver {
         String query = request.toString();
         Logging.instance().log("sql", 2, query);
         Logging.instance().log("xaction", 1, "START DELETE in " + table);
-        int count = m_connection.createStatement().executeUpdate(query);
+        int count = connection().createStatement().executeUpdate(query);
         Logging.instance().log("xaction", 1, "FINAL DELETE in " + table + ": " + count);
 
         return count;
@@ -449,7 +600,7 @@ public abstract class DatabaseDriver {
         String query = request.toString() + " VALUES " + values.toString();
         Logging.instance().log("sql", 2, query);
         Logging.instance().log("xaction", 1, "START INSERT in " + table);
-        Statement st = m_connection.createStatement();
+        Statement st = connection().createStatement();
         long count = st.executeUpdate(query);
         Logging.instance().log("xaction", 1, "FINAL INSERT in " + table + ": " + count);
         return count;
@@ -493,7 +644,7 @@ public abstract class DatabaseDriver {
         String query = request.toString();
         Logging.instance().log("sql", 2, query);
         Logging.instance().log("xaction", 1, "START UPDATE in " + table);
-        int count = m_connection.createStatement().executeUpdate(query);
+        int count = connection().createStatement().executeUpdate(query);
         Logging.instance().log("xaction", 1, "FINAL UPDATE in " + table + ": " + count);
         return count;
     }
@@ -535,7 +686,7 @@ public abstract class DatabaseDriver {
         String query = request.toString();
         Logging.instance().log("sql", 2, query);
         Logging.instance().log("xaction", 1, "START SELECT FROM " + table);
-        ResultSet result = m_connection.createStatement().executeQuery(query);
+        ResultSet result = connection().createStatement().executeQuery(query);
         Logging.instance().log("xaction", 1, "FINAL SELECT FROM " + table);
         return result;
     }
@@ -586,7 +737,7 @@ public abstract class DatabaseDriver {
         String query = request.toString();
         l.log("sql", 2, query);
         l.log("xaction", 1, "START " + query);
-        ResultSet result = m_connection.createStatement().executeQuery(query);
+        ResultSet result = connection().createStatement().executeQuery(query);
         l.log("xaction", 1, "FINAL " + query);
         return result;
     }
@@ -600,7 +751,7 @@ public abstract class DatabaseDriver {
     public ResultSet backdoor(String query) throws SQLException {
         Logging.instance().log("sql", 2, query);
         Logging.instance().log("xaction", 1, "START " + query);
-        ResultSet result = m_connection.createStatement().executeQuery(query);
+        ResultSet result = connection().createStatement().executeQuery(query);
         Logging.instance().log("xaction", 1, "FINAL " + query);
         return result;
     }
@@ -667,6 +818,8 @@ public abstract class DatabaseDriver {
             System.exit(1);
         }
 
+        // remember for preparing on pooled connections
+        this.m_statements.put(id, statement);
         Logging.instance().log("xaction", 1, "FINAL prepare " + statement);
         return true;
     }
@@ -731,6 +884,9 @@ public abstract class DatabaseDriver {
             System.exit(1);
         }
 
+        // remember for preparing on pooled connections
+        this.m_statements.put(id, statement);
+        if (autoGeneratedKeys) this.m_generated.add(id);
         Logging.instance().log("xaction", 1, "FINAL prepare " + statement);
         return true;
     }
@@ -759,7 +915,8 @@ public abstract class DatabaseDriver {
 
     /**
      * Obtains a reference to a prepared statement to be used from the caller. This function will
-     * also reset the input values in the prepared statement.
+     * also reset the input values in the prepared statement. In pooled mode, the statement is taken
+     * from the connection leased to the current thread, and prepared on it on first use.
      *
      * @param id is the place of the statement to free up.
      * @exception SQLException if the database does not like the disconnect.
@@ -769,7 +926,27 @@ public abstract class DatabaseDriver {
      * @see #cancelPreparedStatement( String )
      */
     public PreparedStatement getPreparedStatement(String id) throws SQLException {
-        PreparedStatement result = (PreparedStatement) this.m_prepared.get(id);
+        PreparedStatement result = null;
+        ConnectionPool pool = this.m_pool;
+        if (pool == null) {
+            result = (PreparedStatement) this.m_prepared.get(id);
+        } else {
+            ConnectionPool.Entry entry = pool.lease();
+            String statement = (String) this.m_statements.get(id);
+            if (statement != null) result = (PreparedStatement) entry.m_prepared.get(id);
+            if (result == null && statement != null) {
+                Logging.instance().log("xaction", 1, "START prepare pooled " + id);
+                result =
+                        entry.m_connection.prepareStatement(
+                                statement,
+                                this.m_generated.contains(id)
+                                        ? Statement.RETURN_GENERATED_KEYS
+                                        : Statement.NO_GENERATED_KEYS);
+                entry.m_prepared.put(id, result);
+                Logging.instance().log("xaction", 1, "FINAL prepare pooled " + id);
+            }
+        }
+
         if (result != null) result.clearParameters();
         else throw new SQLException("unknown prepared statement " + id);
         return result;
@@ -786,6 +963,16 @@ public abstract class DatabaseDriver {
      * @see #cancelPreparedStatement( String )
      */
     public void removePreparedStatement(String id) throws SQLException {
+        this.m_statements.remove(id);
+        this.m_generated.remove(id);
+
+        // statements on connections leased to other threads are closed with the pool
+        ConnectionPool pool = this.m_pool;
+        if (pool != null && pool.current() != null) {
+            PreparedStatement ps = (PreparedStatement) pool.current().m_prepared.remove(id);
+            if (ps != null) ps.close();
+        }
+
         PreparedStatement ps = (PreparedStatement) this.m_prepared.remove(id);
         if (ps != null) ps.close();
     }
@@ -803,7 +990,14 @@ public abstract class DatabaseDriver {
      */
     public void cancelPreparedStatement(String id)
             throws SQLException, ArrayIndexOutOfBoundsException {
-        PreparedStatement ps = (PreparedStatement) this.m_prepared.get(id);
+        ConnectionPool pool = this.m_pool;
+        Map prepared = this.m_prepared;
+        if (pool != null) {
+            if (pool.current() == null) return;
+            prepared = pool.current().m_prepared;
+        }
+
+        PreparedStatement ps = (PreparedStatement) prepared.get(id);
         if (ps != null) {
             ps.cancel();
             ps.clearParameters();
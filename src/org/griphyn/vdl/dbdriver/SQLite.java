@@ -19,15 +19,12 @@ import java.util.*;
 import org.griphyn.vdl.util.*;
 
 /**
- * This class implements the driver API for the free, small, and fast file-based SQL Lite. This
- * class is currently an empty non-working stand-in. Refer to the <a
- * href="http://www.sqlite.org/">SQLite</a> site for details. We will fill this stand-in with life
- * at some later time.
+ * This class implements the driver API for the free, small, and fast file-based SQL Lite. Refer to
+ * the <a href="http://www.sqlite.org/">SQLite</a> site for details.
  *
- * <p>In order to use the SQLite driver, you must install the SQLite software first. Additionally,
- * it is necessary to install the Java SQLite wrapper, which comes in two part. The JAR file is
- * included with the VDS distribution. However, it is also necessary to either install the shared
- * JNI library into your Java runtime, or point your LD_LIBRARY_PATH to the shared library.
+ * <p>The driver uses the sqlite-jdbc JDBC driver that is included with the Pegasus distribution,
+ * and bundles the native SQLite library. The contact string is of the form
+ * <code>jdbc:sqlite:/path/to/file.db</code>.
  *
  * <p>
  *
@@ -64,7 +61,7 @@ public class SQLite extends DatabaseDriver {
     public boolean connect(String url, Properties info, Set tables)
             throws SQLException, ClassNotFoundException {
         // load JDBC driver class into memory
-        return this.connect("SQLite.JDBCDriver", url, info, tables);
+        return this.connect("org.sqlite.JDBC", url, info, tables);
     }
 
     /**
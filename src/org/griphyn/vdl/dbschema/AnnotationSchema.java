@@ -68,7 +68,7 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      *
      * @return a valid VDLx parser instance.
      */
-    private org.griphyn.vdl.parser.VDLxParser parserInstance() {
+    private synchronized org.griphyn.vdl.parser.VDLxParser parserInstance() {
         if (this.m_parser == null) {
             // obtain the schema location URL from the schema properties:
             // url is a list of strings representing schema locations. The
@@ -88,6 +88,21 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
         return this.m_parser;
     }
 
+    /**
+     * Parses the XML of a single definition. The parser is shared by all threads using the schema,
+     * thus parsing is serialized.
+     *
+     * @param source is the XML to parse.
+     * @param cb is the callback to receive the definition.
+     * @return true if the parsing succeeded.
+     */
+    private boolean parse(org.xml.sax.InputSource source, MyCallbackHandler cb) {
+        org.griphyn.vdl.parser.VDLxParser parser = parserInstance();
+        synchronized (parser) {
+            return parser.parse(source, cb);
+        }
+    }
+
     /**
      * Default constructor for the "chunk" schema.
      *
@@ -292,36 +307,39 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public Definition loadDefinition(String namespace, String name, String version, int type)
             throws SQLException {
-        Definition result = null;
-        Logging.instance().log("xaction", 1, "START load definition");
-
-        int i = 1;
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.xml");
-        ps.setInt(i++, type);
-        ps.setString(i++, makeNotNull(name));
-        ps.setString(i++, makeNotNull(namespace));
-        ps.setString(i++, makeNotNull(version));
-        Logging.instance().log("chunk", 2, "SELECT xml FROM anno_definition");
-
-        ResultSet rs = ps.executeQuery();
-        Logging.instance().log("xaction", 1, "INTER load definition");
-
-        if (rs.next()) {
-            MyCallbackHandler cb = new MyCallbackHandler();
-            Long lid = new Long(rs.getLong("id"));
-            // FIXME: multiple null handlings missing
-            parserInstance().parse(new org.xml.sax.InputSource(rs.getCharacterStream("xml")), cb);
-            result = cb.getDefinition();
-
-            // add to cache
-            if (m_cache != null) m_cache.set(lid, result);
-        } else {
-            Logging.instance().log("chunk", 0, "Definition not found");
-        }
+        return leased(
+                () -> {
+                    Definition result = null;
+                    Logging.instance().log("xaction", 1, "START load definition");
+
+                    int i = 1;
+                    PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.xml");
+                    ps.setInt(i++, type);
+                    ps.setString(i++, makeNotNull(name));
+                    ps.setString(i++, makeNotNull(namespace));
+                    ps.setString(i++, makeNotNull(version));
+                    Logging.instance().log("chunk", 2, "SELECT xml FROM anno_definition");
+
+                    ResultSet rs = ps.executeQuery();
+                    Logging.instance().log("xaction", 1, "INTER load definition");
+
+                    if (rs.next()) {
+                        MyCallbackHandler cb = new MyCallbackHandler();
+                        Long lid = new Long(rs.getLong("id"));
+                        // FIXME: multiple null handlings missing
+                        parse(new org.xml.sax.InputSource(rs.getCharacterStream("xml")), cb);
+                        result = cb.getDefinition();
+
+                        // add to cache
+                        if (m_cache != null) m_cache.set(lid, result);
+                    } else {
+                        Logging.instance().log("chunk", 0, "Definition not found");
+                    }
 
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL load definition");
-        return result;
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL load definition");
+                    return result;
+                });
     }
 
     /**
@@ -353,8 +371,7 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
                 MyCallbackHandler cb = new MyCallbackHandler();
 
                 // FIXME: multiple null handlings missing
-                parserInstance()
-                        .parse(new org.xml.sax.InputSource(rs.getCharacterStream("xml")), cb);
+                parse(new org.xml.sax.InputSource(rs.getCharacterStream("xml")), cb);
                 result = cb.getDefinition();
 
                 // add to cache
@@ -413,181 +430,218 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      * @see #loadDefinition( String, String, String, int )
      */
     public boolean saveDefinition(Definition definition, boolean overwrite) throws SQLException {
-        Logging.instance().log("chunk", 2, "SAVE DEFINITION started");
-
-        // figure out, if it already exists
-        long id = -1;
-        try {
-            Long temp = getDefinitionId(definition);
-            if (temp != null) id = temp.longValue();
-        } catch (SQLException e) {
-            String cause = e.getMessage();
-            Logging.instance()
-                    .log(
-                            "app",
-                            1,
-                            "Ignoring SQL exception"
-                                    + (cause == null ? "" : ": " + e.getMessage()));
-            m_dbdriver.clearWarnings();
-        }
-        boolean useInsert = (id == -1);
-
-        // if in insertion mode, complain and exit
-        if (!useInsert && !overwrite) {
-            Logging.instance()
-                    .log(
-                            "app",
-                            0,
-                            definition.shortID()
-                                    + " already exists (SQL anno_definition.id="
-                                    + id
-                                    + "), ignoring");
-            return false;
-        }
-
-        Logging.instance().log("app", 1, "Trying to add " + what(definition));
-        PreparedStatement ps =
-                m_dbdriver.getPreparedStatement(
-                        useInsert ? "stmt.save.definition" : "stmt.updt.definition");
-
-        if (useInsert) {
-            // INSERT
-            try {
-                id = m_dbdriver.sequence1("def_id_seq");
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "In " + definition.shortID() + ": " + e.toString().trim());
-                Logging.instance().log("xaction", 1, "START rollback");
-                m_dbdriver.cancelPreparedStatement("stmt.save.definition");
-                m_dbdriver.rollback();
-                Logging.instance().log("xaction", 1, "FINAL rollback");
-                return false;
-            }
-
-            // add ID explicitely from sequence to insertion
-            Logging.instance().log("xaction", 1, "START save definition");
-            int i = 1;
-            longOrNull(ps, i++, id);
-
-            ps.setInt(i++, definition.getType());
-            if (definition.getName() == null)
-                throw new SQLException("VDS inconsistency: " + "The name of a definition is null");
-            else ps.setString(i++, definition.getName());
-            ps.setString(i++, makeNotNull(definition.getNamespace()));
-            ps.setString(i++, makeNotNull(definition.getVersion()));
-            String xml = definition.toXML((String) null, (String) null);
-            ps.setCharacterStream(i++, new StringReader(xml), xml.length());
-
-            // save prepared values
-            Logging.instance().log("chunk", 2, "INSERT INTO Definition");
-            try {
-                ps.executeUpdate();
-                if (id == -1) id = m_dbdriver.sequence2(ps, "def_id_seq", 1);
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "In " + definition.shortID() + ": " + e.toString().trim());
-                Logging.instance().log("xaction", 1, "START rollback");
-                m_dbdriver.cancelPreparedStatement("stmt.save.definition");
-                m_dbdriver.rollback();
-                Logging.instance().log("xaction", 1, "FINAL rollback");
-                return false;
-            }
-            Logging.instance().log("xaction", 1, "FINAL save definition: ID=" + id);
-
-        } else {
-            // UPDATE
-            Logging.instance().log("xaction", 1, "START udpate definition");
-            int i = 1;
-            String xml = definition.toXML((String) null, (String) null);
-            ps.setCharacterStream(i++, new StringReader(xml), xml.length());
-            longOrNull(ps, i++, id);
-
-            // update prepared values
-            Logging.instance().log("chunk", 2, "UPDATE Definition");
-            try {
-                ps.executeUpdate();
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "In " + definition.shortID() + ": " + e.toString().trim());
-                Logging.instance().log("xaction", 1, "START rollback");
-                m_dbdriver.cancelPreparedStatement("stmt.updt.definition");
-                m_dbdriver.rollback();
-                Logging.instance().log("xaction", 1, "FINAL rollback");
-                return false;
-            }
-            Logging.instance().log("xaction", 1, "FINAL update definition: ID=" + id);
+        return leased(
+                () -> {
+                    Logging.instance().log("chunk", 2, "SAVE DEFINITION started");
+
+                    // figure out, if it already exists
+                    long id = -1;
+                    try {
+                        Long temp = getDefinitionId(definition);
+                        if (temp != null) id = temp.longValue();
+                    } catch (SQLException e) {
+                        String cause = e.getMessage();
+                        Logging.instance()
+                                .log(
+                                        "app",
+                                        1,
+                                        "Ignoring SQL exception"
+                                                + (cause == null ? "" : ": " + e.getMessage()));
+                        m_dbdriver.clearWarnings();
+                    }
+                    boolean useInsert = (id == -1);
+
+                    // if in insertion mode, complain and exit
+                    if (!useInsert && !overwrite) {
+                        Logging.instance()
+                                .log(
+                                        "app",
+                                        0,
+                                        definition.shortID()
+                                                + " already exists (SQL anno_definition.id="
+                                                + id
+                                                + "), ignoring");
+                        return false;
+                    }
 
-            // TODO: Drop all old LFNs
-            deleteLFNsForDefinitionId(id);
-        }
+                    Logging.instance().log("app", 1, "Trying to add " + what(definition));
+                    PreparedStatement ps =
+                            m_dbdriver.getPreparedStatement(
+                                    useInsert ? "stmt.save.definition" : "stmt.updt.definition");
+
+                    if (useInsert) {
+                        // INSERT
+                        try {
+                            id = m_dbdriver.sequence1("def_id_seq");
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "In "
+                                                    + definition.shortID()
+                                                    + ": "
+                                                    + e.toString().trim());
+                            Logging.instance().log("xaction", 1, "START rollback");
+                            m_dbdriver.cancelPreparedStatement("stmt.save.definition");
+                            m_dbdriver.rollback();
+                            Logging.instance().log("xaction", 1, "FINAL rollback");
+                            return false;
+                        }
+
+                        // add ID explicitely from sequence to insertion
+                        Logging.instance().log("xaction", 1, "START save definition");
+                        int i = 1;
+                        longOrNull(ps, i++, id);
+
+                        ps.setInt(i++, definition.getType());
+                        if (definition.getName() == null)
+                            throw new SQLException(
+                                    "VDS inconsistency: " + "The name of a definition is null");
+                        else ps.setString(i++, definition.getName());
+                        ps.setString(i++, makeNotNull(definition.getNamespace()));
+                        ps.setString(i++, makeNotNull(definition.getVersion()));
+                        String xml = definition.toXML((String) null, (String) null);
+                        ps.setCharacterStream(i++, new StringReader(xml), xml.length());
+
+                        // save prepared values
+                        Logging.instance().log("chunk", 2, "INSERT INTO Definition");
+                        try {
+                            ps.executeUpdate();
+                            if (id == -1) id = m_dbdriver.sequence2(ps, "def_id_seq", 1);
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "In "
+                                                    + definition.shortID()
+                                                    + ": "
+                                                    + e.toString().trim());
+                            Logging.instance().log("xaction", 1, "START rollback");
+                            m_dbdriver.cancelPreparedStatement("stmt.save.definition");
+                            m_dbdriver.rollback();
+                            Logging.instance().log("xaction", 1, "FINAL rollback");
+                            return false;
+                        }
+                        Logging.instance().log("xaction", 1, "FINAL save definition: ID=" + id);
+
+                    } else {
+                        // UPDATE
+                        Logging.instance().log("xaction", 1, "START udpate definition");
+                        int i = 1;
+                        String xml = definition.toXML((String) null, (String) null);
+                        ps.setCharacterStream(i++, new StringReader(xml), xml.length());
+                        longOrNull(ps, i++, id);
+
+                        // update prepared values
+                        Logging.instance().log("chunk", 2, "UPDATE Definition");
+                        try {
+                            ps.executeUpdate();
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "In "
+                                                    + definition.shortID()
+                                                    + ": "
+                                                    + e.toString().trim());
+                            Logging.instance().log("xaction", 1, "START rollback");
+                            m_dbdriver.cancelPreparedStatement("stmt.updt.definition");
+                            m_dbdriver.rollback();
+                            Logging.instance().log("xaction", 1, "FINAL rollback");
+                            return false;
+                        }
+                        Logging.instance().log("xaction", 1, "FINAL update definition: ID=" + id);
+
+                        // TODO: Drop all old LFNs
+                        deleteLFNsForDefinitionId(id);
+                    }
 
-        // batch save LFNs from Derivations
-        if (definition instanceof Derivation) {
-            Derivation derivation = (Derivation) definition;
-            Set alreadyKnown = new HashSet();
-            // ordering MUST MATCH classes.LFN constants!
-            PreparedStatement stmt[] = {
-                m_dbdriver.getPreparedStatement("stmt.save.lfn_i"),
-                m_dbdriver.getPreparedStatement("stmt.save.lfn_o"),
-                m_dbdriver.getPreparedStatement("stmt.save.lfn_b")
-            };
-            int[] count = new int[stmt.length];
-            for (int ii = 0; ii < count.length; ++ii) count[ii] = 0;
-
-            for (Iterator j = derivation.iteratePass(); j.hasNext(); ) {
-                Value value = ((Pass) j.next()).getValue();
-                if (value != null) {
-                    switch (value.getContainerType()) {
-                        case Value.SCALAR:
-                            // check Scalar contents for LFN
-                            saveScalar(id, (Scalar) value, alreadyKnown, stmt, count);
-                            break;
-                        case Value.LIST:
-                            // check List for Scalars for LFN
-                            for (Iterator k =
-                                            ((org.griphyn.vdl.classes.List) value).iterateScalar();
-                                    k.hasNext(); ) {
-                                saveScalar(id, (Scalar) k.next(), alreadyKnown, stmt, count);
+                    // batch save LFNs from Derivations
+                    if (definition instanceof Derivation) {
+                        Derivation derivation = (Derivation) definition;
+                        Set alreadyKnown = new HashSet();
+                        // ordering MUST MATCH classes.LFN constants!
+                        PreparedStatement stmt[] = {
+                            m_dbdriver.getPreparedStatement("stmt.save.lfn_i"),
+                            m_dbdriver.getPreparedStatement("stmt.save.lfn_o"),
+                            m_dbdriver.getPreparedStatement("stmt.save.lfn_b")
+                        };
+                        int[] count = new int[stmt.length];
+                        for (int ii = 0; ii < count.length; ++ii) count[ii] = 0;
+
+                        for (Iterator j = derivation.iteratePass(); j.hasNext(); ) {
+                            Value value = ((Pass) j.next()).getValue();
+                            if (value != null) {
+                                switch (value.getContainerType()) {
+                                    case Value.SCALAR:
+                                        // check Scalar contents for LFN
+                                        saveScalar(id, (Scalar) value, alreadyKnown, stmt, count);
+                                        break;
+                                    case Value.LIST:
+                                        // check List for Scalars for LFN
+                                        for (Iterator k =
+                                                        ((org.griphyn.vdl.classes.List) value)
+                                                                .iterateScalar();
+                                                k.hasNext(); ) {
+                                            saveScalar(
+                                                    id,
+                                                    (Scalar) k.next(),
+                                                    alreadyKnown,
+                                                    stmt,
+                                                    count);
+                                        }
+                                        break;
+                                    default:
+                                        throw new RuntimeException("unknown container type");
+                                }
                             }
-                            break;
-                        default:
-                            throw new RuntimeException("unknown container type");
+                        }
+
+                        for (int ii = 0; ii < stmt.length; ++ii) {
+                            // anything to do?
+                            if (count[ii] > 0) {
+                                // batch insert
+                                Logging.instance()
+                                        .log(
+                                                "chunk",
+                                                2,
+                                                "BATCH INSERT for "
+                                                        + count[ii]
+                                                        + ' '
+                                                        + c_lfn_names[ii]);
+
+                                Logging.instance()
+                                        .log(
+                                                "xaction",
+                                                1,
+                                                "START batch-add "
+                                                        + count[ii]
+                                                        + ' '
+                                                        + c_lfn_names[ii]);
+                                int[] update = stmt[ii].executeBatch();
+                                Logging.instance()
+                                        .log(
+                                                "xaction",
+                                                1,
+                                                "FINAL batch-add "
+                                                        + count[ii]
+                                                        + ' '
+                                                        + c_lfn_names[ii]);
+                            }
+                        }
                     }
-                }
-            }
 
-            for (int ii = 0; ii < stmt.length; ++ii) {
-                // anything to do?
-                if (count[ii] > 0) {
-                    // batch insert
-                    Logging.instance()
-                            .log(
-                                    "chunk",
-                                    2,
-                                    "BATCH INSERT for " + count[ii] + ' ' + c_lfn_names[ii]);
-
-                    Logging.instance()
-                            .log(
-                                    "xaction",
-                                    1,
-                                    "START batch-add " + count[ii] + ' ' + c_lfn_names[ii]);
-                    int[] update = stmt[ii].executeBatch();
-                    Logging.instance()
-                            .log(
-                                    "xaction",
-                                    1,
-                                    "FINAL batch-add " + count[ii] + ' ' + c_lfn_names[ii]);
-                }
-            }
-        }
-
-        // commit the changes
-        Logging.instance().log("xaction", 1, "START commit");
-        this.m_dbdriver.commit();
-        Logging.instance().log("xaction", 1, "FINAL commit");
+                    // commit the changes
+                    Logging.instance().log("xaction", 1, "START commit");
+                    this.m_dbdriver.commit();
+                    Logging.instance().log("xaction", 1, "FINAL commit");
 
-        // done
-        return true;
+                    // done
+                    return true;
+                });
     }
 
     /**
@@ -791,14 +845,17 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      * @return true, if the definition exists, false if not found
      */
     public boolean containsDefinition(Definition definition) throws SQLException {
-        boolean result = false;
-        try {
-            result = (getDefinitionId(definition) != null);
-        } catch (SQLException sql) {
-            // ignore
-            this.m_dbdriver.clearWarnings();
-        }
-        return result;
+        return leased(
+                () -> {
+                    boolean result = false;
+                    try {
+                        result = (getDefinitionId(definition) != null);
+                    } catch (SQLException sql) {
+                        // ignore
+                        this.m_dbdriver.clearWarnings();
+                    }
+                    return result;
+                });
     }
 
     /**
@@ -930,32 +987,36 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      * @see org.griphyn.vdl.classes.Definition#DERIVATION
      */
     public boolean deleteDefinition(Definition definition) throws SQLException {
-        int result = 0;
-        PreparedStatement ps = null;
-
-        //
-        // TODO: turn into a stored procedure call
-        //
-        Logging.instance().log("xaction", 1, "START delete definition");
-        Long defId = getDefinitionId(definition);
-        boolean preferString = m_dbdriver.preferString();
-        if (defId != null) {
-            long id = defId.longValue();
-            deleteAnnotationFromDefinition(id);
-            deleteLFNsForDefinitionId(id);
-
-            Logging.instance().log("xaction", 1, "START DELETE FROM definition");
-            ps = m_dbdriver.getPreparedStatement("stmt.delete.xml");
-            if (preferString) ps.setString(1, Long.toString(id));
-            else ps.setLong(1, id);
-            result = ps.executeUpdate();
-            Logging.instance().log("xaction", 1, "FINAL DELETE FROM definition: " + result);
-
-            if (!m_deferDeleteCommit) m_dbdriver.commit();
-        }
+        return leased(
+                () -> {
+                    int result = 0;
+                    PreparedStatement ps = null;
+
+                    //
+                    // TODO: turn into a stored procedure call
+                    //
+                    Logging.instance().log("xaction", 1, "START delete definition");
+                    Long defId = getDefinitionId(definition);
+                    boolean preferString = m_dbdriver.preferString();
+                    if (defId != null) {
+                        long id = defId.longValue();
+                        deleteAnnotationFromDefinition(id);
+                        deleteLFNsForDefinitionId(id);
+
+                        Logging.instance().log("xaction", 1, "START DELETE FROM definition");
+                        ps = m_dbdriver.getPreparedStatement("stmt.delete.xml");
+                        if (preferString) ps.setString(1, Long.toString(id));
+                        else ps.setLong(1, id);
+                        result = ps.executeUpdate();
+                        Logging.instance()
+                                .log("xaction", 1, "FINAL DELETE FROM definition: " + result);
+
+                        if (!m_deferDeleteCommit) m_dbdriver.commit();
+                    }
 
-        Logging.instance().log("xaction", 1, "FINAL delete definition");
-        return (result != 0);
+                    Logging.instance().log("xaction", 1, "FINAL delete definition");
+                    return (result != 0);
+                });
     }
 
     /**
@@ -973,62 +1034,65 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List deleteDefinition(String namespace, String name, String version, int type)
             throws SQLException {
-        java.util.List result = new ArrayList();
-        Logging.instance().log("xaction", 1, "START delete definitions");
-
-        java.util.List idlist = getDefinitionId(namespace, name, version, type);
-        if (idlist.size() == 0) return result;
-        // postcondition: contains all IDs, count(id)>0, to be deleted
-
-        // save old values
-        if (!m_deferDeleteCommit) {
-            // we come from saveDefinition, thus we won't need saved values
-            for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-                Definition d = loadDefinition(((Long) i.next()).longValue());
-                if (d != null) result.add(d);
-            }
-        }
-
-        // remove all affected annoations by walking through them
-        // yuk, this is probably extremely expensive
-        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-            long id = ((Long) i.next()).longValue();
-            deleteAnnotationFromDefinition(id);
-        }
+        return leased(
+                () -> {
+                    java.util.List result = new ArrayList();
+                    Logging.instance().log("xaction", 1, "START delete definitions");
+
+                    java.util.List idlist = getDefinitionId(namespace, name, version, type);
+                    if (idlist.size() == 0) return result;
+                    // postcondition: contains all IDs, count(id)>0, to be deleted
+
+                    // save old values
+                    if (!m_deferDeleteCommit) {
+                        // we come from saveDefinition, thus we won't need saved values
+                        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                            Definition d = loadDefinition(((Long) i.next()).longValue());
+                            if (d != null) result.add(d);
+                        }
+                    }
 
-        // list of all statements we need to access
-        PreparedStatement ps[] = {
-            this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_i"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_o"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_b"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.xml")
-        };
+                    // remove all affected annoations by walking through them
+                    // yuk, this is probably extremely expensive
+                    for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                        long id = ((Long) i.next()).longValue();
+                        deleteAnnotationFromDefinition(id);
+                    }
 
-        // prepare and batch all statements
-        boolean preferString = m_dbdriver.preferString();
-        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-            long id = ((Long) i.next()).longValue();
-            for (int j = 0; j < ps.length; ++j) {
-                if (preferString) ps[j].setString(1, Long.toString(id));
-                else ps[j].setLong(1, id);
-                ps[j].addBatch();
-            }
-        }
+                    // list of all statements we need to access
+                    PreparedStatement ps[] = {
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_i"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_o"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_b"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.xml")
+                    };
+
+                    // prepare and batch all statements
+                    boolean preferString = m_dbdriver.preferString();
+                    for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                        long id = ((Long) i.next()).longValue();
+                        for (int j = 0; j < ps.length; ++j) {
+                            if (preferString) ps[j].setString(1, Long.toString(id));
+                            else ps[j].setLong(1, id);
+                            ps[j].addBatch();
+                        }
+                    }
 
-        // run all batches
-        Logging.instance().log("xaction", 1, "INTER delete definitions");
-        for (int j = 0; j < ps.length; ++j) {
-            int[] status = new int[idlist.size()];
-            try {
-                status = ps[j].executeBatch();
-            } catch (NullPointerException npe) {
-                Logging.instance().log("app", 1, "tripped over NPE, ignoring!");
-            }
-        }
+                    // run all batches
+                    Logging.instance().log("xaction", 1, "INTER delete definitions");
+                    for (int j = 0; j < ps.length; ++j) {
+                        int[] status = new int[idlist.size()];
+                        try {
+                            status = ps[j].executeBatch();
+                        } catch (NullPointerException npe) {
+                            Logging.instance().log("app", 1, "tripped over NPE, ignoring!");
+                        }
+                    }
 
-        Logging.instance().log("xaction", 1, "FINAL delete definitions");
-        if (!m_deferDeleteCommit) m_dbdriver.commit();
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL delete definitions");
+                    if (!m_deferDeleteCommit) m_dbdriver.commit();
+                    return result;
+                });
     }
 
     /**
@@ -1046,15 +1110,18 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List searchDefinition(String namespace, String name, String version, int type)
             throws SQLException {
-        java.util.List idlist = getDefinitionId(namespace, name, version, type);
-
-        // TODO: make this a batch or sproc
-        java.util.List result = new ArrayList();
-        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-            Definition d = loadDefinition(((Long) i.next()).longValue());
-            if (d != null) result.add(d);
-        }
-        return result;
+        return leased(
+                () -> {
+                    java.util.List idlist = getDefinitionId(namespace, name, version, type);
+
+                    // TODO: make this a batch or sproc
+                    java.util.List result = new ArrayList();
+                    for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                        Definition d = loadDefinition(((Long) i.next()).longValue());
+                        if (d != null) result.add(d);
+                    }
+                    return result;
+                });
     }
 
     /**
@@ -1070,65 +1137,72 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      * @see org.griphyn.vdl.classes.LFN#INOUT
      */
     public java.util.List searchFilename(String lfn, int link) throws SQLException {
-        if (lfn == null) throw new NullPointerException("You must query for a filename");
-        Logging.instance().log("xaction", 1, "START select LFNs");
-        PreparedStatement ps = null;
-
-        if (link == -1) {
-            // wildcard match
-            ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_*");
-            for (int ii = 0; ii < c_lfn_names.length; ++ii) ps.setString(ii + 1, lfn);
-            Logging.instance()
-                    .log(
-                            "chunk",
-                            2,
-                            "SELECT distinct id FROM anno_lfn_*" + " WHERE name='" + lfn + "'");
-        } else if (LFN.isInRange(link)) {
-            // known linkage, one table only
-
-            // ordering MUST MATCH classes.LFN constants!
-            switch (link) {
-                case LFN.NONE:
-                    throw new RuntimeException("The linkage \"none\" is not permitted");
-                    // break;
-                case LFN.INPUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_i");
-                    break;
-                case LFN.OUTPUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_o");
-                    break;
-                case LFN.INOUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_b");
-                    break;
-            }
-            ;
-
-            ps.setString(1, lfn);
-            Logging.instance()
-                    .log(
-                            "chunk",
-                            2,
-                            "SELECT distinct id FROM "
-                                    + c_lfn_names[link - 1]
-                                    + " WHERE name='"
-                                    + lfn
-                                    + "'");
-        } else {
-            throw new RuntimeException("The linkage " + link + " is not permitted");
-        }
+        return leased(
+                () -> {
+                    if (lfn == null)
+                        throw new NullPointerException("You must query for a filename");
+                    Logging.instance().log("xaction", 1, "START select LFNs");
+                    PreparedStatement ps = null;
+
+                    if (link == -1) {
+                        // wildcard match
+                        ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_*");
+                        for (int ii = 0; ii < c_lfn_names.length; ++ii) ps.setString(ii + 1, lfn);
+                        Logging.instance()
+                                .log(
+                                        "chunk",
+                                        2,
+                                        "SELECT distinct id FROM anno_lfn_*"
+                                                + " WHERE name='"
+                                                + lfn
+                                                + "'");
+                    } else if (LFN.isInRange(link)) {
+                        // known linkage, one table only
+
+                        // ordering MUST MATCH classes.LFN constants!
+                        switch (link) {
+                            case LFN.NONE:
+                                throw new RuntimeException("The linkage \"none\" is not permitted");
+                                // break;
+                            case LFN.INPUT:
+                                ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_i");
+                                break;
+                            case LFN.OUTPUT:
+                                ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_o");
+                                break;
+                            case LFN.INOUT:
+                                ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_b");
+                                break;
+                        }
+                        ;
+
+                        ps.setString(1, lfn);
+                        Logging.instance()
+                                .log(
+                                        "chunk",
+                                        2,
+                                        "SELECT distinct id FROM "
+                                                + c_lfn_names[link - 1]
+                                                + " WHERE name='"
+                                                + lfn
+                                                + "'");
+                    } else {
+                        throw new RuntimeException("The linkage " + link + " is not permitted");
+                    }
 
-        ResultSet rs = ps.executeQuery();
+                    ResultSet rs = ps.executeQuery();
 
-        // TODO: make this a batch or sproc
-        java.util.List result = new ArrayList();
-        while (rs.next()) {
-            Definition d = loadDefinition(rs.getLong(1));
-            if (d != null) result.add(d);
-        }
+                    // TODO: make this a batch or sproc
+                    java.util.List result = new ArrayList();
+                    while (rs.next()) {
+                        Definition d = loadDefinition(rs.getLong(1));
+                        if (d != null) result.add(d);
+                    }
 
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL select LFNs");
-        return result;
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL select LFNs");
+                    return result;
+                });
     }
 
     //
@@ -1294,31 +1368,36 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public boolean deleteAnnotation(String primary, Object secondary, int kind, String key)
             throws SQLException, IllegalArgumentException {
-        boolean result = true;
-        switch (kind) {
-            case CLASS_TRANSFORMATION:
-                result = deleteAnnotationTransformation(primary, key);
-                break;
-            case CLASS_DERIVATION:
-                result = deleteAnnotationDerivation(primary, key);
-                break;
-            case CLASS_CALL:
-                // may throw ClassCastException
-                result = deleteAnnotationCall(primary, ((Integer) secondary).intValue(), key);
-                break;
-            case CLASS_DECLARE:
-                // may throw ClassCastException
-                result = deleteAnnotationDeclare(primary, ((String) secondary), key);
-                break;
-            case CLASS_FILENAME:
-                result = deleteAnnotationFilename(primary, key);
-                break;
-            default:
-                throw new IllegalArgumentException(
-                        "The class kind=" + kind + " cannot be annotated");
-        }
+        return leased(
+                () -> {
+                    boolean result = true;
+                    switch (kind) {
+                        case CLASS_TRANSFORMATION:
+                            result = deleteAnnotationTransformation(primary, key);
+                            break;
+                        case CLASS_DERIVATION:
+                            result = deleteAnnotationDerivation(primary, key);
+                            break;
+                        case CLASS_CALL:
+                            // may throw ClassCastException
+                            result =
+                                    deleteAnnotationCall(
+                                            primary, ((Integer) secondary).intValue(), key);
+                            break;
+                        case CLASS_DECLARE:
+                            // may throw ClassCastException
+                            result = deleteAnnotationDeclare(primary, ((String) secondary), key);
+                            break;
+                        case CLASS_FILENAME:
+                            result = deleteAnnotationFilename(primary, key);
+                            break;
+                        default:
+                            throw new IllegalArgumentException(
+                                    "The class kind=" + kind + " cannot be annotated");
+                    }
 
-        return result;
+                    return result;
+                });
     }
 
     /**
@@ -1450,20 +1529,25 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public boolean deleteAnnotationTransformation(String fqdi, String key)
             throws SQLException, IllegalArgumentException {
-        int kind = CLASS_TRANSFORMATION;
+        return leased(
+                () -> {
+                    int kind = CLASS_TRANSFORMATION;
 
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
 
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
 
-        // obtain possible existing anno_tr id
-        long id = getAnnotationIdTransformation(did.longValue(), key);
+                    // obtain possible existing anno_tr id
+                    long id = getAnnotationIdTransformation(did.longValue(), key);
 
-        // no such key, if the id is -1, handled by finalizer
-        return deleteAnnotationKey(id, kind);
+                    // no such key, if the id is -1, handled by finalizer
+                    return deleteAnnotationKey(id, kind);
+                });
     }
 
     /**
@@ -1476,20 +1560,25 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public boolean deleteAnnotationDerivation(String fqdi, String key)
             throws SQLException, IllegalArgumentException {
-        int kind = CLASS_DERIVATION;
+        return leased(
+                () -> {
+                    int kind = CLASS_DERIVATION;
 
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
 
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.DERIVATION);
-        if (did == null) throw new SQLException("Unknown DV " + fqdi);
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.DERIVATION);
+                    if (did == null) throw new SQLException("Unknown DV " + fqdi);
 
-        // obtain possible existing anno_dv id
-        long id = getAnnotationIdDerivation(did.longValue(), key);
+                    // obtain possible existing anno_dv id
+                    long id = getAnnotationIdDerivation(did.longValue(), key);
 
-        // no such key, if the id does not exist
-        return deleteAnnotationKey(id, kind);
+                    // no such key, if the id does not exist
+                    return deleteAnnotationKey(id, kind);
+                });
     }
 
     /**
@@ -1503,20 +1592,25 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public boolean deleteAnnotationDeclare(String fqdi, String farg, String key)
             throws SQLException, IllegalArgumentException {
-        int kind = CLASS_DECLARE;
+        return leased(
+                () -> {
+                    int kind = CLASS_DECLARE;
 
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
 
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
 
-        // obtain possible existing anno_call id
-        long id = getAnnotationIdDeclare(did.longValue(), farg, key);
+                    // obtain possible existing anno_call id
+                    long id = getAnnotationIdDeclare(did.longValue(), farg, key);
 
-        // no such key, if the id does not exist
-        return deleteAnnotationKey(id, kind);
+                    // no such key, if the id does not exist
+                    return deleteAnnotationKey(id, kind);
+                });
     }
 
     /**
@@ -1530,20 +1624,25 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public boolean deleteAnnotationCall(String fqdi, int index, String key)
             throws SQLException, IllegalArgumentException {
-        int kind = CLASS_CALL;
+        return leased(
+                () -> {
+                    int kind = CLASS_CALL;
 
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
 
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
 
-        // obtain possible existing anno_call id
-        long id = getAnnotationIdCall(did.longValue(), index, key);
+                    // obtain possible existing anno_call id
+                    long id = getAnnotationIdCall(did.longValue(), index, key);
 
-        // no such key, if the id does not exist
-        return deleteAnnotationKey(id, kind);
+                    // no such key, if the id does not exist
+                    return deleteAnnotationKey(id, kind);
+                });
     }
 
     /**
@@ -1556,13 +1655,16 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public boolean deleteAnnotationFilename(String filename, String key)
             throws SQLException, IllegalArgumentException {
-        int kind = CLASS_FILENAME;
+        return leased(
+                () -> {
+                    int kind = CLASS_FILENAME;
 
-        // obtain possible existing anno_lfn id
-        long id = getAnnotationIdFilename(filename, key);
+                    // obtain possible existing anno_lfn id
+                    long id = getAnnotationIdFilename(filename, key);
 
-        // no such key, if the id does not exist
-        return deleteAnnotationKey(id, kind);
+                    // no such key, if the id does not exist
+                    return deleteAnnotationKey(id, kind);
+                });
     }
 
     /**
@@ -1617,51 +1719,59 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public long saveAnnotationTransformation(String fqdi, Tuple annotation, boolean overwrite)
             throws SQLException, IllegalArgumentException {
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
-
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
-
-        // obtain possible existing anno_tr id
-        long id = getAnnotationIdTransformation(did.longValue(), annotation.getKey());
-
-        // insert into anno_tr with new id, if id does not exist
-        if (id == -1) {
-            // obtain new id
-            id = m_dbdriver.sequence1("anno_id_seq");
-
-            Logging.instance().log("xaction", 1, "START save anno_tr");
-            PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.anno_tr");
-
-            int i = 1;
-            longOrNull(ps, i++, id);
-
-            if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
-            else ps.setLong(i++, did.longValue());
-            ps.setString(i++, makeNotNull(annotation.getKey()));
-
-            // save prepared values
-            Logging.instance().log("chunk", 2, "INSERT INTO anno_tr");
-            try {
-                int rc = ps.executeUpdate();
-                if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "While inserting into anno_tr: " + e.toString().trim());
-                // rollback in saveInvocation()
-                m_dbdriver.cancelPreparedStatement("stmt.save.anno_tr");
-                throw e; // re-throw
-            }
-            Logging.instance().log("xaction", 1, "FINAL save anno_tr: ID=" + id);
-        } else {
-            // id does exist, nothing to do in anno_tr
-        }
+        return leased(
+                () -> {
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
+
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
+
+                    // obtain possible existing anno_tr id
+                    long id = getAnnotationIdTransformation(did.longValue(), annotation.getKey());
+
+                    // insert into anno_tr with new id, if id does not exist
+                    if (id == -1) {
+                        // obtain new id
+                        id = m_dbdriver.sequence1("anno_id_seq");
+
+                        Logging.instance().log("xaction", 1, "START save anno_tr");
+                        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.anno_tr");
+
+                        int i = 1;
+                        longOrNull(ps, i++, id);
+
+                        if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
+                        else ps.setLong(i++, did.longValue());
+                        ps.setString(i++, makeNotNull(annotation.getKey()));
+
+                        // save prepared values
+                        Logging.instance().log("chunk", 2, "INSERT INTO anno_tr");
+                        try {
+                            int rc = ps.executeUpdate();
+                            if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "While inserting into anno_tr: " + e.toString().trim());
+                            // rollback in saveInvocation()
+                            m_dbdriver.cancelPreparedStatement("stmt.save.anno_tr");
+                            throw e; // re-throw
+                        }
+                        Logging.instance().log("xaction", 1, "FINAL save anno_tr: ID=" + id);
+                    } else {
+                        // id does exist, nothing to do in anno_tr
+                    }
 
-        // delete before insert if overwrite mode
-        if (overwrite) deleteAnnotationValue(id, annotation);
-        return (saveAnnotationValue(id, annotation) ? id : -1);
+                    // delete before insert if overwrite mode
+                    if (overwrite) deleteAnnotationValue(id, annotation);
+                    return (saveAnnotationValue(id, annotation) ? id : -1);
+                });
     }
 
     /**
@@ -1675,49 +1785,57 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public long saveAnnotationDerivation(String fqdi, Tuple annotation, boolean overwrite)
             throws SQLException, IllegalArgumentException {
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
-
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.DERIVATION);
-        if (did == null) throw new SQLException("Unknown DV " + fqdi);
-
-        // obtain possible existing anno_dv id
-        long id = getAnnotationIdDerivation(did.longValue(), annotation.getKey());
-
-        // insert into anno_dv with new id, if id does not exist
-        if (id == -1) {
-            // obtain new id
-            id = m_dbdriver.sequence1("anno_id_seq");
-
-            Logging.instance().log("xaction", 1, "START save anno_dv");
-            PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.anno_dv");
-            int i = 1;
-            longOrNull(ps, i++, id);
-            if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
-            else ps.setLong(i++, did.longValue());
-            ps.setString(i++, makeNotNull(annotation.getKey()));
-
-            // save prepared values
-            Logging.instance().log("chunk", 2, "INSERT INTO anno_dv");
-            try {
-                int rc = ps.executeUpdate();
-                if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "While inserting into anno_tr: " + e.toString().trim());
-                // rollback in saveInvocation()
-                m_dbdriver.cancelPreparedStatement("stmt.save.anno_tr");
-                throw e; // re-throw
-            }
-            Logging.instance().log("xaction", 1, "FINAL save anno_dv: ID=" + id);
-        } else {
-            // id does exist, nothing to do in anno_tr
-        }
+        return leased(
+                () -> {
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
+
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.DERIVATION);
+                    if (did == null) throw new SQLException("Unknown DV " + fqdi);
+
+                    // obtain possible existing anno_dv id
+                    long id = getAnnotationIdDerivation(did.longValue(), annotation.getKey());
+
+                    // insert into anno_dv with new id, if id does not exist
+                    if (id == -1) {
+                        // obtain new id
+                        id = m_dbdriver.sequence1("anno_id_seq");
+
+                        Logging.instance().log("xaction", 1, "START save anno_dv");
+                        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.anno_dv");
+                        int i = 1;
+                        longOrNull(ps, i++, id);
+                        if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
+                        else ps.setLong(i++, did.longValue());
+                        ps.setString(i++, makeNotNull(annotation.getKey()));
+
+                        // save prepared values
+                        Logging.instance().log("chunk", 2, "INSERT INTO anno_dv");
+                        try {
+                            int rc = ps.executeUpdate();
+                            if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "While inserting into anno_tr: " + e.toString().trim());
+                            // rollback in saveInvocation()
+                            m_dbdriver.cancelPreparedStatement("stmt.save.anno_tr");
+                            throw e; // re-throw
+                        }
+                        Logging.instance().log("xaction", 1, "FINAL save anno_dv: ID=" + id);
+                    } else {
+                        // id does exist, nothing to do in anno_tr
+                    }
 
-        // delete before insert if overwrite mode
-        if (overwrite) deleteAnnotationValue(id, annotation);
-        return (saveAnnotationValue(id, annotation) ? id : -1);
+                    // delete before insert if overwrite mode
+                    if (overwrite) deleteAnnotationValue(id, annotation);
+                    return (saveAnnotationValue(id, annotation) ? id : -1);
+                });
     }
 
     /**
@@ -1733,62 +1851,76 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
     public long saveAnnotationDeclare(
             String fqdi, String formalname, Tuple annotation, boolean overwrite)
             throws SQLException, IllegalArgumentException {
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
-
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
-
-        Transformation tr = (Transformation) loadDefinition(did.longValue());
-        boolean found = false;
-        for (Iterator i = tr.iterateDeclare(); i.hasNext(); ) {
-            String arg = ((Declare) i.next()).getName();
-            if (arg.equals(formalname)) {
-                found = true;
-                break;
-            }
-        }
-
-        if (!found) throw new SQLException("Invalid argument " + formalname + " for TR " + fqdi);
-
-        // obtain possible existing anno_farg id
-        long id = getAnnotationIdDeclare(did.longValue(), formalname, annotation.getKey());
-
-        // insert into anno_dv with new id, if id does not exist
-        if (id == -1) {
-            // obtain new id
-            id = m_dbdriver.sequence1("anno_id_seq");
-
-            Logging.instance().log("xaction", 1, "START save anno_targ");
-            PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.anno_targ");
-            int i = 1;
-            longOrNull(ps, i++, id);
-            if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
-            else ps.setLong(i++, did.longValue());
-            ps.setString(i++, makeNotNull(formalname));
-            ps.setString(i++, makeNotNull(annotation.getKey()));
+        return leased(
+                () -> {
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
+
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
+
+                    Transformation tr = (Transformation) loadDefinition(did.longValue());
+                    boolean found = false;
+                    for (Iterator i = tr.iterateDeclare(); i.hasNext(); ) {
+                        String arg = ((Declare) i.next()).getName();
+                        if (arg.equals(formalname)) {
+                            found = true;
+                            break;
+                        }
+                    }
 
-            // save prepared values
-            Logging.instance().log("chunk", 2, "INSERT INTO anno_targ");
-            try {
-                int rc = ps.executeUpdate();
-                if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "While inserting into anno_targ: " + e.toString().trim());
-                // rollback in saveInvocation()
-                m_dbdriver.cancelPreparedStatement("stmt.save.anno_targ");
-                throw e; // re-throw
-            }
-            Logging.instance().log("xaction", 1, "FINAL save anno_targ: ID=" + id);
-        } else {
-            // id does exist, nothing to do in anno_targ
-        }
+                    if (!found)
+                        throw new SQLException(
+                                "Invalid argument " + formalname + " for TR " + fqdi);
+
+                    // obtain possible existing anno_farg id
+                    long id =
+                            getAnnotationIdDeclare(
+                                    did.longValue(), formalname, annotation.getKey());
+
+                    // insert into anno_dv with new id, if id does not exist
+                    if (id == -1) {
+                        // obtain new id
+                        id = m_dbdriver.sequence1("anno_id_seq");
+
+                        Logging.instance().log("xaction", 1, "START save anno_targ");
+                        PreparedStatement ps =
+                                m_dbdriver.getPreparedStatement("stmt.save.anno_targ");
+                        int i = 1;
+                        longOrNull(ps, i++, id);
+                        if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
+                        else ps.setLong(i++, did.longValue());
+                        ps.setString(i++, makeNotNull(formalname));
+                        ps.setString(i++, makeNotNull(annotation.getKey()));
+
+                        // save prepared values
+                        Logging.instance().log("chunk", 2, "INSERT INTO anno_targ");
+                        try {
+                            int rc = ps.executeUpdate();
+                            if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "While inserting into anno_targ: "
+                                                    + e.toString().trim());
+                            // rollback in saveInvocation()
+                            m_dbdriver.cancelPreparedStatement("stmt.save.anno_targ");
+                            throw e; // re-throw
+                        }
+                        Logging.instance().log("xaction", 1, "FINAL save anno_targ: ID=" + id);
+                    } else {
+                        // id does exist, nothing to do in anno_targ
+                    }
 
-        // delete before insert if overwrite mode
-        if (overwrite) deleteAnnotationValue(id, annotation);
-        return (saveAnnotationValue(id, annotation) ? id : -1);
+                    // delete before insert if overwrite mode
+                    if (overwrite) deleteAnnotationValue(id, annotation);
+                    return (saveAnnotationValue(id, annotation) ? id : -1);
+                });
     }
 
     /**
@@ -1803,59 +1935,69 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public long saveAnnotationCall(String fqdi, int index, Tuple annotation, boolean overwrite)
             throws SQLException, IllegalArgumentException {
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
-
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
-
-        Transformation tr = (Transformation) loadDefinition(did.longValue());
-        if (index <= 0 || tr.getCallCount() < index)
-            throw new SQLException("Invalid position " + index + " for TR " + fqdi);
-
-        // obtain possible existing anno_call id
-        long id = getAnnotationIdCall(did.longValue(), index, annotation.getKey());
-
-        // insert into anno_dv with new id, if id does not exist
-        if (id == -1) {
-            // obtain new id
-            id = m_dbdriver.sequence1("anno_id_seq");
-
-            Logging.instance().log("xaction", 1, "START save anno_call");
-            PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.anno_call");
-            int i = 1;
-            longOrNull(ps, i++, id);
-
-            if (m_dbdriver.preferString()) {
-                ps.setString(i++, did.toString());
-                ps.setString(i++, Integer.toString(index));
-            } else {
-                ps.setLong(i++, did.longValue());
-                ps.setInt(i++, index);
-            }
-            ps.setString(i++, makeNotNull(annotation.getKey()));
-
-            // save prepared values
-            Logging.instance().log("chunk", 2, "INSERT INTO anno_call");
-            try {
-                int rc = ps.executeUpdate();
-                if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "While inserting into anno_call: " + e.toString().trim());
-                // rollback in saveInvocation()
-                m_dbdriver.cancelPreparedStatement("stmt.save.anno_call");
-                throw e; // re-throw
-            }
-            Logging.instance().log("xaction", 1, "FINAL save anno_targ: ID=" + id);
-        } else {
-            // id does exist, nothing to do in anno_targ
-        }
+        return leased(
+                () -> {
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
+
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
+
+                    Transformation tr = (Transformation) loadDefinition(did.longValue());
+                    if (index <= 0 || tr.getCallCount() < index)
+                        throw new SQLException("Invalid position " + index + " for TR " + fqdi);
+
+                    // obtain possible existing anno_call id
+                    long id = getAnnotationIdCall(did.longValue(), index, annotation.getKey());
+
+                    // insert into anno_dv with new id, if id does not exist
+                    if (id == -1) {
+                        // obtain new id
+                        id = m_dbdriver.sequence1("anno_id_seq");
+
+                        Logging.instance().log("xaction", 1, "START save anno_call");
+                        PreparedStatement ps =
+                                m_dbdriver.getPreparedStatement("stmt.save.anno_call");
+                        int i = 1;
+                        longOrNull(ps, i++, id);
+
+                        if (m_dbdriver.preferString()) {
+                            ps.setString(i++, did.toString());
+                            ps.setString(i++, Integer.toString(index));
+                        } else {
+                            ps.setLong(i++, did.longValue());
+                            ps.setInt(i++, index);
+                        }
+                        ps.setString(i++, makeNotNull(annotation.getKey()));
+
+                        // save prepared values
+                        Logging.instance().log("chunk", 2, "INSERT INTO anno_call");
+                        try {
+                            int rc = ps.executeUpdate();
+                            if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "While inserting into anno_call: "
+                                                    + e.toString().trim());
+                            // rollback in saveInvocation()
+                            m_dbdriver.cancelPreparedStatement("stmt.save.anno_call");
+                            throw e; // re-throw
+                        }
+                        Logging.instance().log("xaction", 1, "FINAL save anno_targ: ID=" + id);
+                    } else {
+                        // id does exist, nothing to do in anno_targ
+                    }
 
-        // delete before insert if overwrite mode
-        if (overwrite) deleteAnnotationValue(id, annotation);
-        return (saveAnnotationValue(id, annotation) ? id : -1);
+                    // delete before insert if overwrite mode
+                    if (overwrite) deleteAnnotationValue(id, annotation);
+                    return (saveAnnotationValue(id, annotation) ? id : -1);
+                });
     }
 
     /**
@@ -1869,41 +2011,49 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public long saveAnnotationFilename(String filename, Tuple annotation, boolean overwrite)
             throws SQLException, IllegalArgumentException {
-        // obtain possible existing anno_lfn id
-        long id = getAnnotationIdFilename(filename, annotation.getKey());
-
-        // insert into anno_dv with new id, if id does not exist
-        if (id == -1) {
-            // obtain new id
-            id = m_dbdriver.sequence1("anno_id_seq");
-
-            Logging.instance().log("xaction", 1, "START save anno_lfn");
-            PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.anno_lfn");
-            int i = 1;
-            longOrNull(ps, i++, id);
-            ps.setString(i++, makeNotNull(filename));
-            ps.setString(i++, makeNotNull(annotation.getKey()));
-
-            // save prepared values
-            Logging.instance().log("chunk", 2, "INSERT INTO anno_lfn");
-            try {
-                int rc = ps.executeUpdate();
-                if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "While inserting into anno_lfn: " + e.toString().trim());
-                // rollback in saveInvocation()
-                m_dbdriver.cancelPreparedStatement("stmt.save.anno_lfn");
-                throw e; // re-throw
-            }
-            Logging.instance().log("xaction", 1, "FINAL save anno_lfn: ID=" + id);
-        } else {
-            // id does exist, nothing to do in anno_targ
-        }
+        return leased(
+                () -> {
+                    // obtain possible existing anno_lfn id
+                    long id = getAnnotationIdFilename(filename, annotation.getKey());
+
+                    // insert into anno_dv with new id, if id does not exist
+                    if (id == -1) {
+                        // obtain new id
+                        id = m_dbdriver.sequence1("anno_id_seq");
+
+                        Logging.instance().log("xaction", 1, "START save anno_lfn");
+                        PreparedStatement ps =
+                                m_dbdriver.getPreparedStatement("stmt.save.anno_lfn");
+                        int i = 1;
+                        longOrNull(ps, i++, id);
+                        ps.setString(i++, makeNotNull(filename));
+                        ps.setString(i++, makeNotNull(annotation.getKey()));
+
+                        // save prepared values
+                        Logging.instance().log("chunk", 2, "INSERT INTO anno_lfn");
+                        try {
+                            int rc = ps.executeUpdate();
+                            if (id == -1) id = m_dbdriver.sequence2(ps, "anno_id_seq", 1);
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "While inserting into anno_lfn: "
+                                                    + e.toString().trim());
+                            // rollback in saveInvocation()
+                            m_dbdriver.cancelPreparedStatement("stmt.save.anno_lfn");
+                            throw e; // re-throw
+                        }
+                        Logging.instance().log("xaction", 1, "FINAL save anno_lfn: ID=" + id);
+                    } else {
+                        // id does exist, nothing to do in anno_targ
+                    }
 
-        // delete before insert if overwrite mode
-        if (overwrite) deleteAnnotationValue(id, annotation);
-        return (saveAnnotationValue(id, annotation) ? id : -1);
+                    // delete before insert if overwrite mode
+                    if (overwrite) deleteAnnotationValue(id, annotation);
+                    return (saveAnnotationValue(id, annotation) ? id : -1);
+                });
     }
 
     /**
@@ -1928,35 +2078,42 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
     public long saveAnnotation(
             String primary, Object secondary, int kind, Tuple annotation, boolean overwrite)
             throws SQLException, IllegalArgumentException {
-        long result = -1;
-        switch (kind) {
-            case CLASS_TRANSFORMATION:
-                result = saveAnnotationTransformation(primary, annotation, overwrite);
-                break;
-            case CLASS_DERIVATION:
-                result = saveAnnotationDerivation(primary, annotation, overwrite);
-                break;
-            case CLASS_CALL:
-                // may throw ClassCastException
-                result =
-                        saveAnnotationCall(
-                                primary, ((Integer) secondary).intValue(), annotation, overwrite);
-                break;
-            case CLASS_DECLARE:
-                // may throw ClassCastException
-                result =
-                        saveAnnotationDeclare(primary, ((String) secondary), annotation, overwrite);
-                break;
-            case CLASS_FILENAME:
-                result = saveAnnotationFilename(primary, annotation, overwrite);
-                break;
-            default:
-                throw new IllegalArgumentException(
-                        "The class kind=" + kind + " cannot be annotated");
-        }
-        if (result != -1) if (!m_deferDeleteCommit) m_dbdriver.commit();
+        return leased(
+                () -> {
+                    long result = -1;
+                    switch (kind) {
+                        case CLASS_TRANSFORMATION:
+                            result = saveAnnotationTransformation(primary, annotation, overwrite);
+                            break;
+                        case CLASS_DERIVATION:
+                            result = saveAnnotationDerivation(primary, annotation, overwrite);
+                            break;
+                        case CLASS_CALL:
+                            // may throw ClassCastException
+                            result =
+                                    saveAnnotationCall(
+                                            primary,
+                                            ((Integer) secondary).intValue(),
+                                            annotation,
+                                            overwrite);
+                            break;
+                        case CLASS_DECLARE:
+                            // may throw ClassCastException
+                            result =
+                                    saveAnnotationDeclare(
+                                            primary, ((String) secondary), annotation, overwrite);
+                            break;
+                        case CLASS_FILENAME:
+                            result = saveAnnotationFilename(primary, annotation, overwrite);
+                            break;
+                        default:
+                            throw new IllegalArgumentException(
+                                    "The class kind=" + kind + " cannot be annotated");
+                    }
+                    if (result != -1) if (!m_deferDeleteCommit) m_dbdriver.commit();
 
-        return result;
+                    return result;
+                });
     }
 
     /**
@@ -2132,18 +2289,23 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public Tuple loadAnnotationTransformation(String fqdi, String key)
             throws SQLException, IllegalArgumentException {
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
+        return leased(
+                () -> {
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
 
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
 
-        // obtain possible existing anno_tr id
-        long id = getAnnotationIdTransformation(did.longValue(), key);
+                    // obtain possible existing anno_tr id
+                    long id = getAnnotationIdTransformation(did.longValue(), key);
 
-        // no such key, if the id is -1, handled by finalizer
-        return loadAnnotationFinal(id, key);
+                    // no such key, if the id is -1, handled by finalizer
+                    return loadAnnotationFinal(id, key);
+                });
     }
 
     /**
@@ -2156,18 +2318,23 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public Tuple loadAnnotationDerivation(String fqdi, String key)
             throws SQLException, IllegalArgumentException {
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
+        return leased(
+                () -> {
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
 
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.DERIVATION);
-        if (did == null) throw new SQLException("Unknown DV " + fqdi);
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.DERIVATION);
+                    if (did == null) throw new SQLException("Unknown DV " + fqdi);
 
-        // obtain possible existing anno_dv id
-        long id = getAnnotationIdDerivation(did.longValue(), key);
+                    // obtain possible existing anno_dv id
+                    long id = getAnnotationIdDerivation(did.longValue(), key);
 
-        // no such key, if the id does not exist
-        return loadAnnotationFinal(id, key);
+                    // no such key, if the id does not exist
+                    return loadAnnotationFinal(id, key);
+                });
     }
 
     /**
@@ -2181,18 +2348,23 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public Tuple loadAnnotationDeclare(String fqdi, String farg, String key)
             throws SQLException, IllegalArgumentException {
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
+        return leased(
+                () -> {
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
 
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
 
-        // obtain possible existing anno_call id
-        long id = getAnnotationIdDeclare(did.longValue(), farg, key);
+                    // obtain possible existing anno_call id
+                    long id = getAnnotationIdDeclare(did.longValue(), farg, key);
 
-        // no such key, if the id does not exist
-        return loadAnnotationFinal(id, key);
+                    // no such key, if the id does not exist
+                    return loadAnnotationFinal(id, key);
+                });
     }
 
     /**
@@ -2206,18 +2378,23 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public Tuple loadAnnotationCall(String fqdi, int index, String key)
             throws SQLException, IllegalArgumentException {
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
+        return leased(
+                () -> {
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
 
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
 
-        // obtain possible existing anno_call id
-        long id = getAnnotationIdCall(did.longValue(), index, key);
+                    // obtain possible existing anno_call id
+                    long id = getAnnotationIdCall(did.longValue(), index, key);
 
-        // no such key, if the id does not exist
-        return loadAnnotationFinal(id, key);
+                    // no such key, if the id does not exist
+                    return loadAnnotationFinal(id, key);
+                });
     }
 
     /**
@@ -2230,11 +2407,14 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public Tuple loadAnnotationFilename(String filename, String key)
             throws SQLException, IllegalArgumentException {
-        // obtain possible existing anno_lfn id
-        long id = getAnnotationIdFilename(filename, key);
+        return leased(
+                () -> {
+                    // obtain possible existing anno_lfn id
+                    long id = getAnnotationIdFilename(filename, key);
 
-        // no such key, if the id does not exist
-        return loadAnnotationFinal(id, key);
+                    // no such key, if the id does not exist
+                    return loadAnnotationFinal(id, key);
+                });
     }
 
     /**
@@ -2257,31 +2437,36 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public Tuple loadAnnotation(String primary, Object secondary, int kind, String key)
             throws SQLException, IllegalArgumentException {
-        Tuple result = null;
-        switch (kind) {
-            case CLASS_TRANSFORMATION:
-                result = loadAnnotationTransformation(primary, key);
-                break;
-            case CLASS_DERIVATION:
-                result = loadAnnotationDerivation(primary, key);
-                break;
-            case CLASS_CALL:
-                // may throw ClassCastException
-                result = loadAnnotationCall(primary, ((Integer) secondary).intValue(), key);
-                break;
-            case CLASS_DECLARE:
-                // may throw ClassCastException
-                result = loadAnnotationDeclare(primary, ((String) secondary), key);
-                break;
-            case CLASS_FILENAME:
-                result = loadAnnotationFilename(primary, key);
-                break;
-            default:
-                throw new IllegalArgumentException(
-                        "The class kind=" + kind + " cannot be annotated");
-        }
+        return leased(
+                () -> {
+                    Tuple result = null;
+                    switch (kind) {
+                        case CLASS_TRANSFORMATION:
+                            result = loadAnnotationTransformation(primary, key);
+                            break;
+                        case CLASS_DERIVATION:
+                            result = loadAnnotationDerivation(primary, key);
+                            break;
+                        case CLASS_CALL:
+                            // may throw ClassCastException
+                            result =
+                                    loadAnnotationCall(
+                                            primary, ((Integer) secondary).intValue(), key);
+                            break;
+                        case CLASS_DECLARE:
+                            // may throw ClassCastException
+                            result = loadAnnotationDeclare(primary, ((String) secondary), key);
+                            break;
+                        case CLASS_FILENAME:
+                            result = loadAnnotationFilename(primary, key);
+                            break;
+                        default:
+                            throw new IllegalArgumentException(
+                                    "The class kind=" + kind + " cannot be annotated");
+                    }
 
-        return result;
+                    return result;
+                });
     }
 
     /**
@@ -2293,32 +2478,37 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List loadAnnotationTransformation(String fqdi)
             throws SQLException, IllegalArgumentException {
-        java.util.List result = new java.util.ArrayList();
-
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
-
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
-
-        // obtain all anno_tr ids
-        Logging.instance().log("xaction", 1, "START select anno_tr2");
-        int i = 1;
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.anno_tr2");
-        if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
-        else ps.setLong(i++, did.longValue());
-
-        Logging.instance().log("chunk", 2, "SELECT id FROM anno_tr");
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
-            if (temp != null) result.add(temp);
-        }
-        rs.close();
+        return leased(
+                () -> {
+                    java.util.List result = new java.util.ArrayList();
+
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
+
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
+
+                    // obtain all anno_tr ids
+                    Logging.instance().log("xaction", 1, "START select anno_tr2");
+                    int i = 1;
+                    PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.anno_tr2");
+                    if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
+                    else ps.setLong(i++, did.longValue());
+
+                    Logging.instance().log("chunk", 2, "SELECT id FROM anno_tr");
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
+                        if (temp != null) result.add(temp);
+                    }
+                    rs.close();
 
-        Logging.instance().log("xaction", 1, "FINAL select anno_tr2");
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL select anno_tr2");
+                    return result;
+                });
     }
 
     /**
@@ -2330,32 +2520,37 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List loadAnnotationDerivation(String fqdi)
             throws SQLException, IllegalArgumentException {
-        java.util.List result = new java.util.ArrayList();
-
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
-
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.DERIVATION);
-        if (did == null) throw new SQLException("Unknown DV " + fqdi);
-
-        // obtain all anno_tr ids
-        Logging.instance().log("xaction", 1, "START select anno_dv2");
-        int i = 1;
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.anno_dv2");
-        if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
-        else ps.setLong(i++, did.longValue());
-
-        Logging.instance().log("chunk", 2, "SELECT id FROM anno_dv");
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
-            if (temp != null) result.add(temp);
-        }
-        rs.close();
+        return leased(
+                () -> {
+                    java.util.List result = new java.util.ArrayList();
+
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
+
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.DERIVATION);
+                    if (did == null) throw new SQLException("Unknown DV " + fqdi);
+
+                    // obtain all anno_tr ids
+                    Logging.instance().log("xaction", 1, "START select anno_dv2");
+                    int i = 1;
+                    PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.anno_dv2");
+                    if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
+                    else ps.setLong(i++, did.longValue());
+
+                    Logging.instance().log("chunk", 2, "SELECT id FROM anno_dv");
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
+                        if (temp != null) result.add(temp);
+                    }
+                    rs.close();
 
-        Logging.instance().log("xaction", 1, "FINAL select anno_dv2");
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL select anno_dv2");
+                    return result;
+                });
     }
 
     /**
@@ -2368,33 +2563,39 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List loadAnnotationDeclare(String fqdi, String farg)
             throws SQLException, IllegalArgumentException {
-        java.util.List result = new java.util.ArrayList();
-
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
-
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
-
-        // obtain all anno_tr ids
-        Logging.instance().log("xaction", 1, "START select anno_targ2");
-        int i = 1;
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.anno_targ2");
-        if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
-        else ps.setLong(i++, did.longValue());
-        ps.setString(i++, farg);
-
-        Logging.instance().log("chunk", 2, "SELECT id FROM anno_targ");
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
-            if (temp != null) result.add(temp);
-        }
-        rs.close();
+        return leased(
+                () -> {
+                    java.util.List result = new java.util.ArrayList();
+
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
+
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
+
+                    // obtain all anno_tr ids
+                    Logging.instance().log("xaction", 1, "START select anno_targ2");
+                    int i = 1;
+                    PreparedStatement ps =
+                            m_dbdriver.getPreparedStatement("stmt.select.anno_targ2");
+                    if (m_dbdriver.preferString()) ps.setString(i++, did.toString());
+                    else ps.setLong(i++, did.longValue());
+                    ps.setString(i++, farg);
+
+                    Logging.instance().log("chunk", 2, "SELECT id FROM anno_targ");
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
+                        if (temp != null) result.add(temp);
+                    }
+                    rs.close();
 
-        Logging.instance().log("xaction", 1, "FINAL select anno_targ2");
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL select anno_targ2");
+                    return result;
+                });
     }
 
     /**
@@ -2407,37 +2608,43 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List loadAnnotationCall(String fqdi, int index)
             throws SQLException, IllegalArgumentException {
-        java.util.List result = new java.util.ArrayList();
-
-        // split FQDI
-        String[] names = Separator.split(fqdi); // may throw IAE
-
-        // obtain DID for FQDI
-        Long did = getSpecificDefinitionId(names[0], names[1], names[2], Definition.TRANSFORMATION);
-        if (did == null) throw new SQLException("Unknown TR " + fqdi);
-
-        // obtain all anno_tr ids
-        Logging.instance().log("xaction", 1, "START select anno_call2");
-        int i = 1;
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.anno_call2");
-        if (m_dbdriver.preferString()) {
-            ps.setString(i++, did.toString());
-            ps.setString(i++, Integer.toString(index));
-        } else {
-            ps.setLong(i++, did.longValue());
-            ps.setInt(i++, index);
-        }
+        return leased(
+                () -> {
+                    java.util.List result = new java.util.ArrayList();
+
+                    // split FQDI
+                    String[] names = Separator.split(fqdi); // may throw IAE
+
+                    // obtain DID for FQDI
+                    Long did =
+                            getSpecificDefinitionId(
+                                    names[0], names[1], names[2], Definition.TRANSFORMATION);
+                    if (did == null) throw new SQLException("Unknown TR " + fqdi);
+
+                    // obtain all anno_tr ids
+                    Logging.instance().log("xaction", 1, "START select anno_call2");
+                    int i = 1;
+                    PreparedStatement ps =
+                            m_dbdriver.getPreparedStatement("stmt.select.anno_call2");
+                    if (m_dbdriver.preferString()) {
+                        ps.setString(i++, did.toString());
+                        ps.setString(i++, Integer.toString(index));
+                    } else {
+                        ps.setLong(i++, did.longValue());
+                        ps.setInt(i++, index);
+                    }
 
-        Logging.instance().log("chunk", 2, "SELECT id FROM anno_call");
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
-            if (temp != null) result.add(temp);
-        }
-        rs.close();
+                    Logging.instance().log("chunk", 2, "SELECT id FROM anno_call");
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
+                        if (temp != null) result.add(temp);
+                    }
+                    rs.close();
 
-        Logging.instance().log("xaction", 1, "FINAL select anno_call2");
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL select anno_call2");
+                    return result;
+                });
     }
 
     /**
@@ -2449,24 +2656,27 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List loadAnnotationFilename(String filename)
             throws SQLException, IllegalArgumentException {
-        java.util.List result = new java.util.ArrayList();
-
-        // obtain all anno_tr ids
-        Logging.instance().log("xaction", 1, "START select anno_lfn2");
-        int i = 1;
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.anno_lfn2");
-        ps.setString(i++, filename);
-
-        Logging.instance().log("chunk", 2, "SELECT id FROM anno_lfn");
-        ResultSet rs = ps.executeQuery();
-        while (rs.next()) {
-            Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
-            if (temp != null) result.add(temp);
-        }
-        rs.close();
+        return leased(
+                () -> {
+                    java.util.List result = new java.util.ArrayList();
+
+                    // obtain all anno_tr ids
+                    Logging.instance().log("xaction", 1, "START select anno_lfn2");
+                    int i = 1;
+                    PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.anno_lfn2");
+                    ps.setString(i++, filename);
+
+                    Logging.instance().log("chunk", 2, "SELECT id FROM anno_lfn");
+                    ResultSet rs = ps.executeQuery();
+                    while (rs.next()) {
+                        Tuple temp = loadAnnotationFinal(rs.getLong(1), rs.getString(2));
+                        if (temp != null) result.add(temp);
+                    }
+                    rs.close();
 
-        Logging.instance().log("xaction", 1, "FINAL select anno_lfn2");
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL select anno_lfn2");
+                    return result;
+                });
     }
 
     /**
@@ -2488,24 +2698,26 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List loadAnnotation(String primary, Object secondary, int kind)
             throws SQLException, IllegalArgumentException {
-
-        switch (kind) {
-            case CLASS_TRANSFORMATION:
-                return loadAnnotationTransformation(primary);
-            case CLASS_DERIVATION:
-                return loadAnnotationDerivation(primary);
-            case CLASS_CALL:
-                // may throw ClassCastException
-                return loadAnnotationCall(primary, ((Integer) secondary).intValue());
-            case CLASS_DECLARE:
-                // may throw ClassCastException
-                return loadAnnotationDeclare(primary, ((String) secondary));
-            case CLASS_FILENAME:
-                return loadAnnotationFilename(primary);
-            default:
-                throw new IllegalArgumentException(
-                        "The class kind=" + kind + " cannot be annotated");
-        }
+        return leased(
+                () -> {
+                    switch (kind) {
+                        case CLASS_TRANSFORMATION:
+                            return loadAnnotationTransformation(primary);
+                        case CLASS_DERIVATION:
+                            return loadAnnotationDerivation(primary);
+                        case CLASS_CALL:
+                            // may throw ClassCastException
+                            return loadAnnotationCall(primary, ((Integer) secondary).intValue());
+                        case CLASS_DECLARE:
+                            // may throw ClassCastException
+                            return loadAnnotationDeclare(primary, ((String) secondary));
+                        case CLASS_FILENAME:
+                            return loadAnnotationFilename(primary);
+                        default:
+                            throw new IllegalArgumentException(
+                                    "The class kind=" + kind + " cannot be annotated");
+                    }
+                });
     }
 
     /**
@@ -2521,31 +2733,34 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List searchAnnotation(int kind, Object arg, QueryTree tree)
             throws SQLException {
-        java.util.List result = new java.util.ArrayList();
-
-        if (tree == null) return result;
-
-        String sql = tree.toSQL(kind, arg);
-        if (sql == null || sql.equals("")) return result;
-
-        // obtain all anno_tr ids
-        Logging.instance().log("xaction", 1, "START search annotation");
-
-        // use backdoor, why don't we change this into some nicer name???
-        ResultSet rs = backdoor(sql);
-        while (rs.next()) {
-            if (kind == Annotation.CLASS_FILENAME) {
-                String fn = rs.getString(1);
-                result.add(fn);
-            } else {
-                Definition d = loadDefinition(rs.getLong(1));
-                if (d != null) result.add(d);
-            }
-        }
-        rs.close();
+        return leased(
+                () -> {
+                    java.util.List result = new java.util.ArrayList();
+
+                    if (tree == null) return result;
+
+                    String sql = tree.toSQL(kind, arg);
+                    if (sql == null || sql.equals("")) return result;
+
+                    // obtain all anno_tr ids
+                    Logging.instance().log("xaction", 1, "START search annotation");
+
+                    // use backdoor, why don't we change this into some nicer name???
+                    ResultSet rs = backdoor(sql);
+                    while (rs.next()) {
+                        if (kind == Annotation.CLASS_FILENAME) {
+                            String fn = rs.getString(1);
+                            result.add(fn);
+                        } else {
+                            Definition d = loadDefinition(rs.getLong(1));
+                            if (d != null) result.add(d);
+                        }
+                    }
+                    rs.close();
 
-        Logging.instance().log("xaction", 1, "FINAL search annotation");
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL search annotation");
+                    return result;
+                });
     }
 
     /**
@@ -2586,62 +2801,65 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List deleteDefinitionEx(
             String namespace, String name, String version, int type) throws SQLException {
-        java.util.List result = new ArrayList();
-        Logging.instance().log("xaction", 1, "START delete definitions");
-
-        java.util.List idlist = getDefinitionIdEx(namespace, name, version, type);
-        if (idlist.size() == 0) return result;
-        // postcondition: contains all IDs, count(id)>0, to be deleted
-
-        // save old values
-        if (!m_deferDeleteCommit) {
-            // we come from saveDefinition, thus we won't need saved values
-            for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-                Definition d = loadDefinition(((Long) i.next()).longValue());
-                if (d != null) result.add(d);
-            }
-        }
-
-        // remove all affected annoations by walking through them
-        // yuk, this is probably extremely expensive
-        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-            long id = ((Long) i.next()).longValue();
-            deleteAnnotationFromDefinition(id);
-        }
+        return leased(
+                () -> {
+                    java.util.List result = new ArrayList();
+                    Logging.instance().log("xaction", 1, "START delete definitions");
+
+                    java.util.List idlist = getDefinitionIdEx(namespace, name, version, type);
+                    if (idlist.size() == 0) return result;
+                    // postcondition: contains all IDs, count(id)>0, to be deleted
+
+                    // save old values
+                    if (!m_deferDeleteCommit) {
+                        // we come from saveDefinition, thus we won't need saved values
+                        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                            Definition d = loadDefinition(((Long) i.next()).longValue());
+                            if (d != null) result.add(d);
+                        }
+                    }
 
-        // list of all statements we need to access
-        PreparedStatement ps[] = {
-            this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_i"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_o"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_b"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.xml")
-        };
+                    // remove all affected annoations by walking through them
+                    // yuk, this is probably extremely expensive
+                    for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                        long id = ((Long) i.next()).longValue();
+                        deleteAnnotationFromDefinition(id);
+                    }
 
-        // prepare and batch all statements
-        boolean preferString = m_dbdriver.preferString();
-        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-            long id = ((Long) i.next()).longValue();
-            for (int j = 0; j < ps.length; ++j) {
-                if (preferString) ps[j].setString(1, Long.toString(id));
-                else ps[j].setLong(1, id);
-                ps[j].addBatch();
-            }
-        }
+                    // list of all statements we need to access
+                    PreparedStatement ps[] = {
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_i"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_o"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.lfn_b"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.xml")
+                    };
+
+                    // prepare and batch all statements
+                    boolean preferString = m_dbdriver.preferString();
+                    for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                        long id = ((Long) i.next()).longValue();
+                        for (int j = 0; j < ps.length; ++j) {
+                            if (preferString) ps[j].setString(1, Long.toString(id));
+                            else ps[j].setLong(1, id);
+                            ps[j].addBatch();
+                        }
+                    }
 
-        // run all batches
-        Logging.instance().log("xaction", 1, "INTER delete definitions");
-        for (int j = 0; j < ps.length; ++j) {
-            int[] status = new int[idlist.size()];
-            try {
-                status = ps[j].executeBatch();
-            } catch (NullPointerException npe) {
-                Logging.instance().log("app", 1, "tripped over NPE, ignoring!");
-            }
-        }
+                    // run all batches
+                    Logging.instance().log("xaction", 1, "INTER delete definitions");
+                    for (int j = 0; j < ps.length; ++j) {
+                        int[] status = new int[idlist.size()];
+                        try {
+                            status = ps[j].executeBatch();
+                        } catch (NullPointerException npe) {
+                            Logging.instance().log("app", 1, "tripped over NPE, ignoring!");
+                        }
+                    }
 
-        Logging.instance().log("xaction", 1, "FINAL delete definitions");
-        if (!m_deferDeleteCommit) m_dbdriver.commit();
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL delete definitions");
+                    if (!m_deferDeleteCommit) m_dbdriver.commit();
+                    return result;
+                });
     }
 
     /**
@@ -2660,15 +2878,18 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      */
     public java.util.List searchDefinitionEx(
             String namespace, String name, String version, int type) throws SQLException {
-        java.util.List idlist = getDefinitionIdEx(namespace, name, version, type);
-
-        // TODO: make this a batch or sproc
-        java.util.List result = new ArrayList();
-        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-            Definition d = loadDefinition(((Long) i.next()).longValue());
-            if (d != null) result.add(d);
-        }
-        return result;
+        return leased(
+                () -> {
+                    java.util.List idlist = getDefinitionIdEx(namespace, name, version, type);
+
+                    // TODO: make this a batch or sproc
+                    java.util.List result = new ArrayList();
+                    for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                        Definition d = loadDefinition(((Long) i.next()).longValue());
+                        if (d != null) result.add(d);
+                    }
+                    return result;
+                });
     }
 
     /**
@@ -2684,64 +2905,77 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      * @see org.griphyn.vdl.classes.LFN#INOUT
      */
     public java.util.List searchLFN(String lfn, int link) throws SQLException {
-        if (lfn == null) throw new NullPointerException("You must query for a filename");
-        Logging.instance().log("xaction", 1, "START select LFNs");
-        PreparedStatement ps = null;
-
-        if (link == -1) {
-            // wildcard match
-            ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_*.name.ex");
-            for (int ii = 0; ii < c_lfn_names.length; ++ii) ps.setString(ii + 1, lfn);
-            Logging.instance()
-                    .log(
-                            "chunk",
-                            2,
-                            "SELECT distinct name FROM lfn_*" + " WHERE name LIKE '" + lfn + "'");
-        } else if (LFN.isInRange(link)) {
-            // known linkage, one table only
-
-            // ordering MUST MATCH classes.LFN constants!
-            switch (link) {
-                case LFN.NONE:
-                    throw new RuntimeException("The linkage \"none\" is not permitted");
-                    // break;
-                case LFN.INPUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_i.name.ex");
-                    break;
-                case LFN.OUTPUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_o.name.ex");
-                    break;
-                case LFN.INOUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_b.name.ex");
-                    break;
-            }
-            ;
-
-            ps.setString(1, lfn);
-            Logging.instance()
-                    .log(
-                            "chunk",
-                            2,
-                            "SELECT distinct name FROM "
-                                    + c_lfn_names[link - 1]
-                                    + " WHERE name LIKE '"
-                                    + lfn
-                                    + "'");
-        } else {
-            throw new RuntimeException("The linkage " + link + " is not permitted");
-        }
+        return leased(
+                () -> {
+                    if (lfn == null)
+                        throw new NullPointerException("You must query for a filename");
+                    Logging.instance().log("xaction", 1, "START select LFNs");
+                    PreparedStatement ps = null;
+
+                    if (link == -1) {
+                        // wildcard match
+                        ps = this.m_dbdriver.getPreparedStatement("stmt.select.lfn_*.name.ex");
+                        for (int ii = 0; ii < c_lfn_names.length; ++ii) ps.setString(ii + 1, lfn);
+                        Logging.instance()
+                                .log(
+                                        "chunk",
+                                        2,
+                                        "SELECT distinct name FROM lfn_*"
+                                                + " WHERE name LIKE '"
+                                                + lfn
+                                                + "'");
+                    } else if (LFN.isInRange(link)) {
+                        // known linkage, one table only
+
+                        // ordering MUST MATCH classes.LFN constants!
+                        switch (link) {
+                            case LFN.NONE:
+                                throw new RuntimeException("The linkage \"none\" is not permitted");
+                                // break;
+                            case LFN.INPUT:
+                                ps =
+                                        this.m_dbdriver.getPreparedStatement(
+                                                "stmt.select.lfn_i.name.ex");
+                                break;
+                            case LFN.OUTPUT:
+                                ps =
+                                        this.m_dbdriver.getPreparedStatement(
+                                                "stmt.select.lfn_o.name.ex");
+                                break;
+                            case LFN.INOUT:
+                                ps =
+                                        this.m_dbdriver.getPreparedStatement(
+                                                "stmt.select.lfn_b.name.ex");
+                                break;
+                        }
+                        ;
+
+                        ps.setString(1, lfn);
+                        Logging.instance()
+                                .log(
+                                        "chunk",
+                                        2,
+                                        "SELECT distinct name FROM "
+                                                + c_lfn_names[link - 1]
+                                                + " WHERE name LIKE '"
+                                                + lfn
+                                                + "'");
+                    } else {
+                        throw new RuntimeException("The linkage " + link + " is not permitted");
+                    }
 
-        ResultSet rs = ps.executeQuery();
+                    ResultSet rs = ps.executeQuery();
 
-        // TODO: make this a batch or sproc
-        java.util.List result = new ArrayList();
-        while (rs.next()) {
-            result.add(rs.getString("name"));
-        }
+                    // TODO: make this a batch or sproc
+                    java.util.List result = new ArrayList();
+                    while (rs.next()) {
+                        result.add(rs.getString("name"));
+                    }
 
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL select LFNs");
-        return result;
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL select LFNs");
+                    return result;
+                });
     }
 
     /**
@@ -2753,25 +2987,28 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      * @see org.griphyn.vdl.classes.Definition#DERIVATION
      */
     public java.util.List getNamespaceList(int type) throws SQLException {
-        java.util.List result = new ArrayList();
-        Logging.instance().log("xaction", 1, "START select namespaces from DEFINITION");
+        return leased(
+                () -> {
+                    java.util.List result = new ArrayList();
+                    Logging.instance().log("xaction", 1, "START select namespaces from DEFINITION");
 
-        java.util.List select = new ArrayList(1);
-        select.add(new String("distinct namespace"));
+                    java.util.List select = new ArrayList(1);
+                    select.add(new String("distinct namespace"));
 
-        java.util.Map where = new TreeMap();
+                    java.util.Map where = new TreeMap();
 
-        if (type != -1) where.put("type", Integer.toString(type));
+                    if (type != -1) where.put("type", Integer.toString(type));
 
-        String order = " ORDER BY namespace";
-        Logging.instance().log("xaction", 1, "START select namespaces");
-        ResultSet rs = m_dbdriver.select(select, "anno_definition", where, order);
+                    String order = " ORDER BY namespace";
+                    Logging.instance().log("xaction", 1, "START select namespaces");
+                    ResultSet rs = m_dbdriver.select(select, "anno_definition", where, order);
 
-        while (rs.next()) result.add(new String(rs.getString("namespace")));
+                    while (rs.next()) result.add(new String(rs.getString("namespace")));
 
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL select namespaces from DEFINITION");
-        return result;
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL select namespaces from DEFINITION");
+                    return result;
+                });
     }
 
     /**
@@ -2784,31 +3021,34 @@ public class AnnotationSchema extends DatabaseSchema implements Advanced, Annota
      * @see org.griphyn.vdl.classes.Definition#DERIVATION
      */
     public java.util.List getFQDNList(int type) throws SQLException {
-        java.util.List result = new ArrayList();
-        Logging.instance().log("xaction", 1, "START select triplets from DEFINITION");
-
-        java.util.List select = new ArrayList(1);
-        select.add(new String("namespace, name, version"));
-
-        java.util.Map where = new TreeMap();
-
-        if (type != -1) where.put("type", Integer.toString(type));
-
-        String order = " ORDER BY namespace, name, version";
-        Logging.instance().log("xaction", 1, "START select triplets");
-        ResultSet rs = m_dbdriver.select(select, "anno_definition", where, order);
-
-        while (rs.next())
-            result.add(
-                    new String(
-                            Separator.combine(
-                                    rs.getString("namespace"),
-                                    rs.getString("name"),
-                                    rs.getString("version"))));
-
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL select triplets from DEFINITION");
-        return result;
+        return leased(
+                () -> {
+                    java.util.List result = new ArrayList();
+                    Logging.instance().log("xaction", 1, "START select triplets from DEFINITION");
+
+                    java.util.List select = new ArrayList(1);
+                    select.add(new String("namespace, name, version"));
+
+                    java.util.Map where = new TreeMap();
+
+                    if (type != -1) where.put("type", Integer.toString(type));
+
+                    String order = " ORDER BY namespace, name, version";
+                    Logging.instance().log("xaction", 1, "START select triplets");
+                    ResultSet rs = m_dbdriver.select(select, "anno_definition", where, order);
+
+                    while (rs.next())
+                        result.add(
+                                new String(
+                                        Separator.combine(
+                                                rs.getString("namespace"),
+                                                rs.getString("name"),
+                                                rs.getString("version"))));
+
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL select triplets from DEFINITION");
+                    return result;
+                });
     }
 
     /**
@@ -36,7 +36,10 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
     /** Name of the four parameter tables in human readable format. */
     protected static final String[] c_lfn_names = {"VDC_NLFN", "VDC_ILFN", "VDC_OLFN", "VDC_BLFN"};
 
-    /** Communication between saveDefinition and deleteDefinition in update mode. */
+    /**
+     * Defers the commit of deletions to the caller. Saving a definition in update mode defers the
+     * commit of the deletion without this flag, so that the schema can be shared across threads.
+     */
     protected boolean m_deferDeleteCommit;
 
     /** An instance of the VDLx XML parser. */
@@ -51,7 +54,7 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
      *
      * @return a valid VDLx parser instance.
      */
-    private org.griphyn.vdl.parser.VDLxParser parserInstance() {
+    private synchronized org.griphyn.vdl.parser.VDLxParser parserInstance() {
         if (this.m_parser == null) {
             // obtain the schema location URL from the schema properties:
             // url is a list of strings representing schema locations. The
@@ -71,6 +74,21 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
         return this.m_parser;
     }
 
+    /**
+     * Parses the XML of a single definition. The parser is shared by all threads using the schema,
+     * thus parsing is serialized.
+     *
+     * @param source is the XML to parse.
+     * @param cb is the callback to receive the definition.
+     * @return true if the parsing succeeded.
+     */
+    private boolean parse(org.xml.sax.InputSource source, MyCallbackHandler cb) {
+        org.griphyn.vdl.parser.VDLxParser parser = parserInstance();
+        synchronized (parser) {
+            return parser.parse(source, cb);
+        }
+    }
+
     /**
      * Default constructor for the "chunk" schema.
      *
@@ -156,36 +174,39 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
      */
     public Definition loadDefinition(String namespace, String name, String version, int type)
             throws SQLException {
-        Definition result = null;
-        Logging.instance().log("xaction", 1, "START load definition");
-
-        int i = 1;
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.xml");
-        ps.setInt(i++, type);
-        ps.setString(i++, makeNotNull(name));
-        ps.setString(i++, makeNotNull(namespace));
-        ps.setString(i++, makeNotNull(version));
-        Logging.instance().log("chunk", 2, "SELECT xml FROM definition");
-
-        ResultSet rs = ps.executeQuery();
-        Logging.instance().log("xaction", 1, "INTER load definition");
-
-        if (rs.next()) {
-            MyCallbackHandler cb = new MyCallbackHandler();
-            Long lid = new Long(rs.getLong("id"));
-            // FIXME: multiple null handlings missing
-            parserInstance().parse(new org.xml.sax.InputSource(rs.getCharacterStream("xml")), cb);
-            result = cb.getDefinition();
-
-            // add to cache
-            if (m_cache != null) m_cache.set(lid, result);
-        } else {
-            Logging.instance().log("chunk", 0, "Definition not found");
-        }
+        return leased(
+                () -> {
+                    Definition result = null;
+                    Logging.instance().log("xaction", 1, "START load definition");
+
+                    int i = 1;
+                    PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.xml");
+                    ps.setInt(i++, type);
+                    ps.setString(i++, makeNotNull(name));
+                    ps.setString(i++, makeNotNull(namespace));
+                    ps.setString(i++, makeNotNull(version));
+                    Logging.instance().log("chunk", 2, "SELECT xml FROM definition");
+
+                    ResultSet rs = ps.executeQuery();
+                    Logging.instance().log("xaction", 1, "INTER load definition");
+
+                    if (rs.next()) {
+                        MyCallbackHandler cb = new MyCallbackHandler();
+                        Long lid = new Long(rs.getLong("id"));
+                        // FIXME: multiple null handlings missing
+                        parse(new org.xml.sax.InputSource(rs.getCharacterStream("xml")), cb);
+                        result = cb.getDefinition();
+
+                        // add to cache
+                        if (m_cache != null) m_cache.set(lid, result);
+                    } else {
+                        Logging.instance().log("chunk", 0, "Definition not found");
+                    }
 
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL load definition");
-        return result;
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL load definition");
+                    return result;
+                });
     }
 
     /**
@@ -217,8 +238,7 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
                 MyCallbackHandler cb = new MyCallbackHandler();
 
                 // FIXME: multiple null handlings missing
-                parserInstance()
-                        .parse(new org.xml.sax.InputSource(rs.getCharacterStream("xml")), cb);
+                parse(new org.xml.sax.InputSource(rs.getCharacterStream("xml")), cb);
                 result = cb.getDefinition();
 
                 // add to cache
@@ -274,175 +294,205 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
      * @see #loadDefinition( String, String, String, int )
      */
     public boolean saveDefinition(Definition definition, boolean overwrite) throws SQLException {
-        Logging.instance().log("chunk", 2, "SAVE DEFINITION started");
-
-        // figure out, if it already exists
-        long probe = -1;
-        try {
-            Long temp = getDefinitionId(definition);
-            if (temp != null) probe = temp.longValue();
-        } catch (SQLException e) {
-            String cause = e.getMessage();
-            Logging.instance()
-                    .log("app", 1, "Ignoring SQL exception" + (cause == null ? "" : ": " + cause));
-            m_dbdriver.clearWarnings();
-        }
+        return leased(
+                () -> {
+                    Logging.instance().log("chunk", 2, "SAVE DEFINITION started");
+
+                    // figure out, if it already exists
+                    long probe = -1;
+                    try {
+                        Long temp = getDefinitionId(definition);
+                        if (temp != null) probe = temp.longValue();
+                    } catch (SQLException e) {
+                        String cause = e.getMessage();
+                        Logging.instance()
+                                .log(
+                                        "app",
+                                        1,
+                                        "Ignoring SQL exception"
+                                                + (cause == null ? "" : ": " + cause));
+                        m_dbdriver.clearWarnings();
+                    }
 
-        if (probe != -1) {
-            if (overwrite) {
-                // in overwrite mode, remove old version
-                Logging.instance().log("app", 1, "Deleting old " + definition.shortID());
-
-                // remove old definition from database (delete-before-insert)
-                try {
-                    this.m_deferDeleteCommit = true;
-                    deleteDefinition(definition);
-                } catch (SQLException e) {
-                    String cause = e.getMessage();
-                    Logging.instance()
-                            .log(
-                                    "app",
-                                    1,
-                                    "Ignoring SQL exception"
-                                            + (cause == null ? "" : ": " + e.getMessage()));
-                } finally {
-                    this.m_deferDeleteCommit = false;
-                }
-            } else {
-                // not overwriting, tell user
-                Logging.instance()
-                        .log(
-                                "app",
-                                0,
-                                definition.shortID()
-                                        + " already exists (SQL vdc_definition.id="
-                                        + probe
-                                        + "), ignoring");
-                return false;
-            }
-        }
+                    if (probe != -1) {
+                        if (overwrite) {
+                            // in overwrite mode, remove old version
+                            Logging.instance()
+                                    .log("app", 1, "Deleting old " + definition.shortID());
+
+                            // remove old definition from database (delete-before-insert)
+                            try {
+                                deleteDefinition(definition, false);
+                            } catch (SQLException e) {
+                                String cause = e.getMessage();
+                                Logging.instance()
+                                        .log(
+                                                "app",
+                                                1,
+                                                "Ignoring SQL exception"
+                                                        + (cause == null
+                                                                ? ""
+                                                                : ": " + e.getMessage()));
+                            }
+                        } else {
+                            // not overwriting, tell user
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            definition.shortID()
+                                                    + " already exists (SQL vdc_definition.id="
+                                                    + probe
+                                                    + "), ignoring");
+                            return false;
+                        }
+                    }
 
-        // Definition is prestine (now)
-        Logging.instance().log("app", 1, "Trying to add " + what(definition));
-
-        long id = -1;
-        try {
-            id = m_dbdriver.sequence1("def_id_seq");
-        } catch (SQLException e) {
-            Logging.instance()
-                    .log("app", 0, "In " + definition.shortID() + ": " + e.toString().trim());
-            Logging.instance().log("xaction", 1, "START rollback");
-            m_dbdriver.cancelPreparedStatement("stmt.save.definition");
-            m_dbdriver.rollback();
-            Logging.instance().log("xaction", 1, "FINAL rollback");
-            return false;
-        }
+                    // Definition is prestine (now)
+                    Logging.instance().log("app", 1, "Trying to add " + what(definition));
+
+                    long id = -1;
+                    try {
+                        id = m_dbdriver.sequence1("def_id_seq");
+                    } catch (SQLException e) {
+                        Logging.instance()
+                                .log(
+                                        "app",
+                                        0,
+                                        "In " + definition.shortID() + ": " + e.toString().trim());
+                        Logging.instance().log("xaction", 1, "START rollback");
+                        m_dbdriver.cancelPreparedStatement("stmt.save.definition");
+                        m_dbdriver.rollback();
+                        Logging.instance().log("xaction", 1, "FINAL rollback");
+                        return false;
+                    }
 
-        // add ID explicitely from sequence to insertion -- -1 is autoinc
-        Logging.instance().log("xaction", 1, "START save definition");
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.definition");
-        int i = 1;
-        longOrNull(ps, i++, id);
-        ps.setInt(i++, definition.getType());
-        if (definition.getName() == null)
-            throw new SQLException("VDS inconsistency: The name of a definition is null");
-        else ps.setString(i++, definition.getName());
-        ps.setString(i++, makeNotNull(definition.getNamespace()));
-        ps.setString(i++, makeNotNull(definition.getVersion()));
-        String xml = definition.toXML((String) null, (String) null);
-        ps.setCharacterStream(i++, new StringReader(xml), xml.length());
-
-        // save prepared values
-        Logging.instance().log("chunk", 2, "INSERT INTO Definition");
-        try {
-            ps.executeUpdate();
-            if (id == -1) id = m_dbdriver.sequence2(ps, "def_id_seq", 1);
-        } catch (SQLException e) {
-            Logging.instance()
-                    .log("app", 0, "In " + definition.shortID() + ": " + e.toString().trim());
-            Logging.instance().log("xaction", 1, "START rollback");
-            m_dbdriver.cancelPreparedStatement("stmt.save.definition");
-            m_dbdriver.rollback();
-            Logging.instance().log("xaction", 1, "FINAL rollback");
-            return false;
-        }
-        Logging.instance().log("xaction", 1, "FINAL save definition: ID=" + id);
-
-        /* NOT YET
-         *
-        // add to cache
-        if ( m_cache != null ) m_cache.set( new Long(id), definition );
-         *
-         */
-
-        // batch save LFNs from Derivations
-        if (definition instanceof Derivation) {
-            Derivation derivation = (Derivation) definition;
-            Set alreadyKnown = new HashSet();
-            // ordering MUST MATCH classes.LFN constants!
-            PreparedStatement stmt[] = {
-                m_dbdriver.getPreparedStatement("stmt.save.nlfn"),
-                m_dbdriver.getPreparedStatement("stmt.save.ilfn"),
-                m_dbdriver.getPreparedStatement("stmt.save.olfn"),
-                m_dbdriver.getPreparedStatement("stmt.save.blfn")
-            };
-            int[] count = new int[stmt.length];
-            for (int ii = 0; ii < count.length; ++ii) count[ii] = 0;
-
-            for (Iterator j = derivation.iteratePass(); j.hasNext(); ) {
-                Value value = ((Pass) j.next()).getValue();
-                if (value != null) {
-                    switch (value.getContainerType()) {
-                        case Value.SCALAR:
-                            // check Scalar contents for LFN
-                            saveScalar(id, (Scalar) value, alreadyKnown, stmt, count);
-                            break;
-                        case Value.LIST:
-                            // check List for Scalars for LFN
-                            for (Iterator k =
-                                            ((org.griphyn.vdl.classes.List) value).iterateScalar();
-                                    k.hasNext(); ) {
-                                saveScalar(id, (Scalar) k.next(), alreadyKnown, stmt, count);
+                    // add ID explicitely from sequence to insertion -- -1 is autoinc
+                    Logging.instance().log("xaction", 1, "START save definition");
+                    PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.definition");
+                    int i = 1;
+                    longOrNull(ps, i++, id);
+                    ps.setInt(i++, definition.getType());
+                    if (definition.getName() == null)
+                        throw new SQLException(
+                                "VDS inconsistency: The name of a definition is null");
+                    else ps.setString(i++, definition.getName());
+                    ps.setString(i++, makeNotNull(definition.getNamespace()));
+                    ps.setString(i++, makeNotNull(definition.getVersion()));
+                    String xml = definition.toXML((String) null, (String) null);
+                    ps.setCharacterStream(i++, new StringReader(xml), xml.length());
+
+                    // save prepared values
+                    Logging.instance().log("chunk", 2, "INSERT INTO Definition");
+                    try {
+                        ps.executeUpdate();
+                        if (id == -1) id = m_dbdriver.sequence2(ps, "def_id_seq", 1);
+                    } catch (SQLException e) {
+                        Logging.instance()
+                                .log(
+                                        "app",
+                                        0,
+                                        "In " + definition.shortID() + ": " + e.toString().trim());
+                        Logging.instance().log("xaction", 1, "START rollback");
+                        m_dbdriver.cancelPreparedStatement("stmt.save.definition");
+                        m_dbdriver.rollback();
+                        Logging.instance().log("xaction", 1, "FINAL rollback");
+                        return false;
+                    }
+                    Logging.instance().log("xaction", 1, "FINAL save definition: ID=" + id);
+
+                    /* NOT YET
+                     *
+                    // add to cache
+                    if ( m_cache != null ) m_cache.set( new Long(id), definition );
+                     *
+                     */
+
+                    // batch save LFNs from Derivations
+                    if (definition instanceof Derivation) {
+                        Derivation derivation = (Derivation) definition;
+                        Set alreadyKnown = new HashSet();
+                        // ordering MUST MATCH classes.LFN constants!
+                        PreparedStatement stmt[] = {
+                            m_dbdriver.getPreparedStatement("stmt.save.nlfn"),
+                            m_dbdriver.getPreparedStatement("stmt.save.ilfn"),
+                            m_dbdriver.getPreparedStatement("stmt.save.olfn"),
+                            m_dbdriver.getPreparedStatement("stmt.save.blfn")
+                        };
+                        int[] count = new int[stmt.length];
+                        for (int ii = 0; ii < count.length; ++ii) count[ii] = 0;
+
+                        for (Iterator j = derivation.iteratePass(); j.hasNext(); ) {
+                            Value value = ((Pass) j.next()).getValue();
+                            if (value != null) {
+                                switch (value.getContainerType()) {
+                                    case Value.SCALAR:
+                                        // check Scalar contents for LFN
+                                        saveScalar(id, (Scalar) value, alreadyKnown, stmt, count);
+                                        break;
+                                    case Value.LIST:
+                                        // check List for Scalars for LFN
+                                        for (Iterator k =
+                                                        ((org.griphyn.vdl.classes.List) value)
+                                                                .iterateScalar();
+                                                k.hasNext(); ) {
+                                            saveScalar(
+                                                    id,
+                                                    (Scalar) k.next(),
+                                                    alreadyKnown,
+                                                    stmt,
+                                                    count);
+                                        }
+                                        break;
+                                    default:
+                                        throw new RuntimeException("unknown container type");
+                                }
                             }
-                            break;
-                        default:
-                            throw new RuntimeException("unknown container type");
+                        }
+
+                        for (int ii = 0; ii < stmt.length; ++ii) {
+                            // anything to do?
+                            if (count[ii] > 0) {
+                                // batch insert
+                                Logging.instance()
+                                        .log(
+                                                "chunk",
+                                                2,
+                                                "BATCH INSERT for "
+                                                        + count[ii]
+                                                        + ' '
+                                                        + c_lfn_names[ii]
+                                                        + 's');
+
+                                Logging.instance()
+                                        .log(
+                                                "xaction",
+                                                1,
+                                                "START batch-add "
+                                                        + count[ii]
+                                                        + ' '
+                                                        + c_lfn_names[ii]);
+                                int[] update = stmt[ii].executeBatch();
+                                Logging.instance()
+                                        .log(
+                                                "xaction",
+                                                1,
+                                                "FINAL batch-add "
+                                                        + count[ii]
+                                                        + ' '
+                                                        + c_lfn_names[ii]);
+                            }
+                        }
                     }
-                }
-            }
-
-            for (int ii = 0; ii < stmt.length; ++ii) {
-                // anything to do?
-                if (count[ii] > 0) {
-                    // batch insert
-                    Logging.instance()
-                            .log(
-                                    "chunk",
-                                    2,
-                                    "BATCH INSERT for " + count[ii] + ' ' + c_lfn_names[ii] + 's');
-
-                    Logging.instance()
-                            .log(
-                                    "xaction",
-                                    1,
-                                    "START batch-add " + count[ii] + ' ' + c_lfn_names[ii]);
-                    int[] update = stmt[ii].executeBatch();
-                    Logging.instance()
-                            .log(
-                                    "xaction",
-                                    1,
-                                    "FINAL batch-add " + count[ii] + ' ' + c_lfn_names[ii]);
-                }
-            }
-        }
 
-        // commit the changes
-        Logging.instance().log("xaction", 1, "START commit");
-        this.m_dbdriver.commit();
-        Logging.instance().log("xaction", 1, "FINAL commit");
+                    // commit the changes
+                    Logging.instance().log("xaction", 1, "START commit");
+                    this.m_dbdriver.commit();
+                    Logging.instance().log("xaction", 1, "FINAL commit");
 
-        // done
-        return true;
+                    // done
+                    return true;
+                });
     }
 
     /**
@@ -571,13 +621,16 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
      * @return true, if the definition exists, false if not found
      */
     public boolean containsDefinition(Definition definition) throws SQLException {
-        boolean result = false;
-        try {
-            result = (getDefinitionId(definition) != null);
-        } catch (SQLException sql) {
-            // ignore
-        }
-        return result;
+        return leased(
+                () -> {
+                    boolean result = false;
+                    try {
+                        result = (getDefinitionId(definition) != null);
+                    } catch (SQLException sql) {
+                        // ignore
+                    }
+                    return result;
+                });
     }
 
     /**
@@ -590,6 +643,18 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
      * @see org.griphyn.vdl.classes.Definition#DERIVATION
      */
     public boolean deleteDefinition(Definition definition) throws SQLException {
+        return deleteDefinition(definition, !m_deferDeleteCommit);
+    }
+
+    /**
+     * Deletes a single definition from the backend database.
+     *
+     * @param definition is the definition specification to delete
+     * @param commit is true to commit the deletion, false to leave it to the caller.
+     * @return true is something was deleted, false if non existent.
+     * @see #deleteDefinition( Definition )
+     */
+    private boolean deleteDefinition(Definition definition, boolean commit) throws SQLException {
         int result = 0;
         PreparedStatement ps = null;
 
@@ -637,7 +702,7 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
             result = ps.executeUpdate();
             Logging.instance().log("xaction", 1, "FINAL DELETE FROM definition: " + result);
 
-            if (!m_deferDeleteCommit) m_dbdriver.commit();
+            if (commit) m_dbdriver.commit();
         }
 
         Logging.instance().log("xaction", 1, "FINAL delete definition");
@@ -659,56 +724,59 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
      */
     public java.util.List deleteDefinition(String namespace, String name, String version, int type)
             throws SQLException {
-        java.util.List result = new ArrayList();
-        Logging.instance().log("xaction", 1, "START delete definitions");
-
-        java.util.List idlist = getDefinitionId(namespace, name, version, type);
-        if (idlist.size() == 0) return result;
-        // postcondition: contains all IDs, count(id)>0, to be deleted
-
-        // save old values
-        if (!m_deferDeleteCommit) {
-            // we come from saveDefinition, thus we won't need saved values
-            for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-                Definition d = loadDefinition(((Long) i.next()).longValue());
-                if (d != null) result.add(d);
-            }
-        }
-
-        // list of all statements we need to access
-        PreparedStatement ps[] = {
-            this.m_dbdriver.getPreparedStatement("stmt.delete.nlfn"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.ilfn"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.olfn"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.blfn"),
-            this.m_dbdriver.getPreparedStatement("stmt.delete.xml")
-        };
+        return leased(
+                () -> {
+                    java.util.List result = new ArrayList();
+                    Logging.instance().log("xaction", 1, "START delete definitions");
+
+                    java.util.List idlist = getDefinitionId(namespace, name, version, type);
+                    if (idlist.size() == 0) return result;
+                    // postcondition: contains all IDs, count(id)>0, to be deleted
+
+                    // save old values
+                    if (!m_deferDeleteCommit) {
+                        // we come from saveDefinition, thus we won't need saved values
+                        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                            Definition d = loadDefinition(((Long) i.next()).longValue());
+                            if (d != null) result.add(d);
+                        }
+                    }
 
-        // prepare and batch all statements
-        boolean preferString = m_dbdriver.preferString();
-        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-            long id = ((Long) i.next()).longValue();
-            for (int j = 0; j < ps.length; ++j) {
-                if (preferString) ps[j].setString(1, Long.toString(id));
-                else ps[j].setLong(1, id);
-                ps[j].addBatch();
-            }
-        }
+                    // list of all statements we need to access
+                    PreparedStatement ps[] = {
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.nlfn"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.ilfn"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.olfn"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.blfn"),
+                        this.m_dbdriver.getPreparedStatement("stmt.delete.xml")
+                    };
+
+                    // prepare and batch all statements
+                    boolean preferString = m_dbdriver.preferString();
+                    for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                        long id = ((Long) i.next()).longValue();
+                        for (int j = 0; j < ps.length; ++j) {
+                            if (preferString) ps[j].setString(1, Long.toString(id));
+                            else ps[j].setLong(1, id);
+                            ps[j].addBatch();
+                        }
+                    }
 
-        // run all batches
-        Logging.instance().log("xaction", 1, "INTER delete definitions");
-        for (int j = 0; j < ps.length; ++j) {
-            int[] status = new int[idlist.size()];
-            try {
-                status = ps[j].executeBatch();
-            } catch (NullPointerException npe) {
-                Logging.instance().log("app", 1, "tripped over NPE, ignoring!");
-            }
-        }
+                    // run all batches
+                    Logging.instance().log("xaction", 1, "INTER delete definitions");
+                    for (int j = 0; j < ps.length; ++j) {
+                        int[] status = new int[idlist.size()];
+                        try {
+                            status = ps[j].executeBatch();
+                        } catch (NullPointerException npe) {
+                            Logging.instance().log("app", 1, "tripped over NPE, ignoring!");
+                        }
+                    }
 
-        Logging.instance().log("xaction", 1, "FINAL delete definitions");
-        if (!m_deferDeleteCommit) m_dbdriver.commit();
-        return result;
+                    Logging.instance().log("xaction", 1, "FINAL delete definitions");
+                    if (!m_deferDeleteCommit) m_dbdriver.commit();
+                    return result;
+                });
     }
 
     /**
@@ -726,15 +794,18 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
      */
     public java.util.List searchDefinition(String namespace, String name, String version, int type)
             throws SQLException {
-        java.util.List idlist = getDefinitionId(namespace, name, version, type);
-
-        // TODO: make this a batch or sproc
-        java.util.List result = new ArrayList();
-        for (Iterator i = idlist.iterator(); i.hasNext(); ) {
-            Definition d = loadDefinition(((Long) i.next()).longValue());
-            if (d != null) result.add(d);
-        }
-        return result;
+        return leased(
+                () -> {
+                    java.util.List idlist = getDefinitionId(namespace, name, version, type);
+
+                    // TODO: make this a batch or sproc
+                    java.util.List result = new ArrayList();
+                    for (Iterator i = idlist.iterator(); i.hasNext(); ) {
+                        Definition d = loadDefinition(((Long) i.next()).longValue());
+                        if (d != null) result.add(d);
+                    }
+                    return result;
+                });
     }
 
     /**
@@ -750,61 +821,68 @@ public class ChunkSchema extends DatabaseSchema implements VDC {
      * @see org.griphyn.vdl.classes.LFN#INOUT
      */
     public java.util.List searchFilename(String lfn, int link) throws SQLException {
-        if (lfn == null) throw new NullPointerException("You must query for a filename");
-
-        PreparedStatement ps = null;
-        if (link == -1) {
-            // wildcard match
-            ps = this.m_dbdriver.getPreparedStatement("stmt.select.all.lfn");
-            for (int ii = 0; ii < c_lfn_names.length; ++ii) ps.setString(ii + 1, lfn);
-            Logging.instance()
-                    .log(
-                            "chunk",
-                            2,
-                            "SELECT distinct id FROM all lfn" + " WHERE name='" + lfn + "'");
-        } else if (LFN.isInRange(link)) {
-            // known linkage, one table only
-            switch (link) {
-                case LFN.NONE:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.nlfn");
-                    break;
-                case LFN.INPUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.ilfn");
-                    break;
-                case LFN.OUTPUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.olfn");
-                    break;
-                case LFN.INOUT:
-                    ps = this.m_dbdriver.getPreparedStatement("stmt.select.blfn");
-                    break;
-            }
-            ;
-
-            ps.setString(1, lfn);
-            Logging.instance()
-                    .log(
-                            "chunk",
-                            2,
-                            "SELECT distinct id FROM "
-                                    + c_lfn_names[link]
-                                    + " WHERE name='"
-                                    + lfn
-                                    + "'");
-        } else {
-            throw new RuntimeException("Unknown linkage value " + link);
-        }
+        return leased(
+                () -> {
+                    if (lfn == null)
+                        throw new NullPointerException("You must query for a filename");
+
+                    PreparedStatement ps = null;
+                    if (link == -1) {
+                        // wildcard match
+                        ps = this.m_dbdriver.getPreparedStatement("stmt.select.all.lfn");
+                        for (int ii = 0; ii < c_lfn_names.length; ++ii) ps.setString(ii + 1, lfn);
+                        Logging.instance()
+                                .log(
+                                        "chunk",
+                                        2,
+                                        "SELECT distinct id FROM all lfn"
+                                                + " WHERE name='"
+                                                + lfn
+                                                + "'");
+                    } else if (LFN.isInRange(link)) {
+                        // known linkage, one table only
+                        switch (link) {
+                            case LFN.NONE:
+                                ps = this.m_dbdriver.getPreparedStatement("stmt.select.nlfn");
+                                break;
+                            case LFN.INPUT:
+                                ps = this.m_dbdriver.getPreparedStatement("stmt.select.ilfn");
+                                break;
+                            case LFN.OUTPUT:
+                                ps = this.m_dbdriver.getPreparedStatement("stmt.select.olfn");
+                                break;
+                            case LFN.INOUT:
+                                ps = this.m_dbdriver.getPreparedStatement("stmt.select.blfn");
+                                break;
+                        }
+                        ;
+
+                        ps.setString(1, lfn);
+                        Logging.instance()
+                                .log(
+                                        "chunk",
+                                        2,
+                                        "SELECT distinct id FROM "
+                                                + c_lfn_names[link]
+                                                + " WHERE name='"
+                                                + lfn
+                                                + "'");
+                    } else {
+                        throw new RuntimeException("Unknown linkage value " + link);
+                    }
 
-        ResultSet rs = ps.executeQuery();
+                    ResultSet rs = ps.executeQuery();
 
-        // TODO: make this a batch or sproc
-        java.util.List result = new ArrayList();
-        while (rs.next()) {
-            Definition d = loadDefinition(rs.getLong(1));
-            if (d != null) result.add(d);
-        }
+                    // TODO: make this a batch or sproc
+                    java.util.List result = new ArrayList();
+                    while (rs.next()) {
+                        Definition d = loadDefinition(rs.getLong(1));
+                        if (d != null) result.add(d);
+                    }
 
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL select LFNs");
-        return result;
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL select LFNs");
+                    return result;
+                });
     }
 }
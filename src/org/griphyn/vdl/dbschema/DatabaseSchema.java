@@ -355,6 +355,53 @@ public abstract class DatabaseSchema implements Catalog {
         return this.m_dbdriver.cachingMakesSense();
     }
 
+    /**
+     * Returns the database connection used by the current thread to the pool, if the driver pools
+     * its connections. The schema methods lease and release their connection themselves, so this is
+     * only required after using the driver directly, e.g. through the backdoor.
+     *
+     * @exception SQLException is propagated from the driver.
+     * @see org.griphyn.vdl.dbdriver.DatabaseDriver#release()
+     */
+    public void release() throws SQLException {
+        if (this.m_dbdriver != null) this.m_dbdriver.release();
+    }
+
+    /**
+     * A unit of work of a schema method against the database.
+     *
+     * @see #leased(Work)
+     */
+    protected interface Work<T> {
+        /**
+         * Does the work.
+         *
+         * @return the result of the work.
+         * @exception SQLException is propagated from the driver.
+         */
+        T run() throws SQLException;
+    }
+
+    /**
+     * Does the work of a schema method with the database connection leased to the current thread,
+     * if the driver pools its connections. The connection is returned to the pool once the
+     * outermost schema method returns, rolling back anything not committed. Nested schema calls
+     * share the lease of the outermost call.
+     *
+     * @param work the work to do.
+     * @return the result of the work.
+     * @exception SQLException is propagated from the driver and the work.
+     * @see org.griphyn.vdl.dbdriver.DatabaseDriver#acquire()
+     */
+    protected <T> T leased(Work<T> work) throws SQLException {
+        this.m_dbdriver.acquire();
+        try {
+            return work.run();
+        } finally {
+            this.m_dbdriver.release();
+        }
+    }
+
     /**
      * Disassociate from the database driver before finishing. Mind that performing this action may
      * throw NullPointerException in later stages!
@@ -41,10 +41,51 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
      */
     protected Definitions m_memory;
 
+    /**
+     * Index of all definitions in {@link #m_memory} by their name. The name is the most selective
+     * part of the secondary key, and all routing queries specify it. Each bucket is kept in the
+     * order in which the definitions are stored.
+     */
+    private Map m_nameIndex;
+
+    /**
+     * Inverted index from a logical filename to all its usages in derivations. Each value is a list
+     * of {@link LFNUsage} instances.
+     */
+    private Map m_lfnIndex;
+
+    /**
+     * The number of definitions that were indexed. If it differs from the number of definitions in
+     * {@link #m_memory}, the in-memory structure was changed behind our back, and the indices are
+     * rebuilt.
+     */
+    private int m_indexed;
+
+    /**
+     * The modification count of {@link #m_memory} when it was indexed. Catches the changes behind
+     * our back that keep the number of definitions, like replacing one of them.
+     */
+    private long m_modifications;
+
+    /**
+     * The position of each indexed definition in {@link #m_memory}, as an increasing sequence
+     * number. A definition that overwrites another one takes over its sequence number. The
+     * derivations found in the inverted LFN index are sorted by it, to return them in the order
+     * they are stored.
+     */
+    private Map m_sequence;
+
+    /** The sequence number for the next definition added to {@link #m_memory}. */
+    private long m_nextSequence;
+
     /** Default ctor does nothing. */
     protected InMemorySchema() {
         super();
         this.m_memory = null;
+        this.m_nameIndex = null;
+        this.m_lfnIndex = null;
+        this.m_indexed = -1;
+        this.m_sequence = null;
     }
 
     /**
@@ -71,6 +112,10 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
                     IllegalAccessException, InvocationTargetException, SQLException, IOException {
         super(); // call minimalistic c'tor
         this.m_memory = memory;
+        this.m_nameIndex = null;
+        this.m_lfnIndex = null;
+        this.m_indexed = -1;
+        this.m_sequence = null;
         this.m_dbschemaprops =
                 ChimeraProperties.instance().getDatabaseSchemaProperties(PROPERTY_PREFIX);
     }
@@ -106,9 +151,9 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
      */
     public Definition loadDefinition(String namespace, String name, String version, int type)
             throws SQLException {
-        // walk main memory
+        // only the definitions sharing the name can match
         Definition result = null;
-        for (Iterator i = this.m_memory.iterateDefinition(); i.hasNext(); ) {
+        for (Iterator i = this.bucket(name).iterator(); i.hasNext(); ) {
             Definition d = (Definition) i.next();
             if (d.match(type, namespace, name, version)) {
                 result = d;
@@ -134,12 +179,15 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
      * @see #deleteDefinition( String, String, String, int )
      */
     public boolean saveDefinition(Definition definition, boolean overwrite) throws SQLException {
-        int position = this.m_memory.positionOfDefinition(definition);
-        if (position != -1) {
+        Definition existing = this.lookup(definition);
+        if (existing != null) {
             // definition already exists
             if (overwrite) {
                 Logging.instance().log("app", 1, "Modifying " + definition.shortID());
+                int position = this.m_memory.positionOfDefinition(existing);
                 this.m_memory.setDefinition(position, definition);
+                this.reindex(existing, definition);
+                this.markIndexed();
                 return true;
             } else {
                 Logging.instance().log("app", 1, "Rejecting " + definition.shortID());
@@ -149,6 +197,8 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
             // definition does not exist
             Logging.instance().log("app", 1, "Adding " + definition.shortID());
             this.m_memory.addDefinition(definition);
+            this.index(definition);
+            this.markIndexed();
             return true;
         }
     }
@@ -164,7 +214,7 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
      * @return true, if the Definition exists, false if not found
      */
     public boolean containsDefinition(Definition definition) throws SQLException {
-        return (this.m_memory.positionOfDefinition(definition) != -1);
+        return (this.lookup(definition) != null);
     }
 
     /**
@@ -179,7 +229,13 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
      * @see org.griphyn.vdl.classes.Definition#DERIVATION
      */
     public boolean deleteDefinition(Definition definition) throws SQLException {
-        return this.m_memory.removeDefinition(definition);
+        Definition existing = this.lookup(definition);
+        boolean result = this.m_memory.removeDefinition(definition);
+        if (result && existing != null) {
+            this.unindex(existing);
+            this.markIndexed();
+        }
+        return result;
     }
 
     /**
@@ -225,6 +281,12 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
             }
         }
 
+        if (!result.isEmpty() && this.m_nameIndex != null) {
+            for (Iterator i = result.iterator(); i.hasNext(); ) {
+                this.unindex((Definition) i.next());
+            }
+            this.markIndexed();
+        }
         return result;
     }
 
@@ -248,8 +310,10 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
             throws SQLException {
         java.util.List result = new ArrayList();
 
-        // walk the database
-        for (ListIterator i = this.m_memory.listIterateDefinition(); i.hasNext(); ) {
+        // with a known name, only walk the definitions sharing it
+        Iterator i =
+                (name == null) ? this.m_memory.iterateDefinition() : this.bucket(name).iterator();
+        while (i.hasNext()) {
             Definition d = (Definition) i.next();
             if (type == -1 || d.getType() == type) {
                 // yes, type matches, let's continue
@@ -289,77 +353,279 @@ public class InMemorySchema extends DatabaseSchema implements VDC {
     public java.util.List searchFilename(String lfn, int link) throws SQLException {
         java.util.List result = new ArrayList();
 
-        // check all Derivations (this may be time consuming!)
-        for (Iterator i = this.m_memory.iterateDefinition(); i.hasNext(); ) {
+        // the inverted index knows all derivations mentioning the LFN
+        java.util.List usages = (java.util.List) this.lfnIndex().get(lfn);
+        if (usages != null) {
+            Derivation previous = null;
+            for (Iterator i = usages.iterator(); i.hasNext(); ) {
+                LFNUsage usage = (LFNUsage) i.next();
+                // usages of one derivation are adjacent, report it only once
+                if (usage.m_derivation != previous && (link == -1 || usage.m_link == link)) {
+                    result.add(usage.m_derivation);
+                    previous = usage.m_derivation;
+                }
+            }
+        }
+
+        return this.inStorageOrder(result);
+    }
+
+    /**
+     * Obtains the definitions with the given name from the name index. The indices are (re-)built
+     * on demand.
+     *
+     * @param name is the name of the definitions
+     * @return a list of definitions with that name, which may be empty.
+     */
+    private java.util.List bucket(String name) {
+        this.ensureIndices();
+        java.util.List result = (java.util.List) this.m_nameIndex.get(name);
+        return (result == null) ? Collections.EMPTY_LIST : result;
+    }
+
+    /**
+     * Obtains the inverted LFN index. The indices are (re-)built on demand.
+     *
+     * @return the map from LFN to a list of {@link LFNUsage}s.
+     */
+    private Map lfnIndex() {
+        this.ensureIndices();
+        return this.m_lfnIndex;
+    }
+
+    /**
+     * Finds the indexed definition with the same type and primary key as the argument.
+     *
+     * @param definition is the definition to search for
+     * @return the selfsame definition in main memory, or null if not found.
+     */
+    private Definition lookup(Definition definition) {
+        for (Iterator i = this.bucket(definition.getName()).iterator(); i.hasNext(); ) {
             Definition d = (Definition) i.next();
-            if (d instanceof Derivation) {
-                Derivation dv = (Derivation) d;
-                for (Iterator j = dv.iteratePass(); j.hasNext(); ) {
-                    boolean found = false;
-                    Value actual = ((Pass) j.next()).getValue();
-                    switch (actual.getContainerType()) {
-                        case Value.SCALAR:
-                            // this is a regular SCALAR
-                            if (scalarContainsLfn((Scalar) actual, lfn, link)) {
-                                // Logging.instance().log("search", 2, "found " + dv.shortID());
-                                result.add(dv);
-                                found = true;
-                            }
-                            break;
-                        case Value.LIST:
-                            // a LIST is a list of SCALARs
-                            org.griphyn.vdl.classes.List list =
-                                    (org.griphyn.vdl.classes.List) actual;
-                            for (Iterator f = list.iterateScalar(); f.hasNext(); ) {
-                                if (scalarContainsLfn((Scalar) f.next(), lfn, link)) {
-                                    // Logging.instance().log("search", 2, "found " + dv.shortID());
-                                    result.add(dv);
-                                    found = true;
-
-                                    // skip all other scalars
-                                    break;
-                                }
-                            }
-                            break;
-                        default:
-                            // this should not happen
-                            Logging.instance()
-                                    .log(
-                                            "default",
-                                            0,
-                                            "WARNING: An actual argument \""
-                                                    + actual.toString()
-                                                    + "\" is neither SCALAR nor LIST");
-                            break;
-                    }
+            if (definition.equals(d)) return d;
+        }
+        return null;
+    }
+
+    /**
+     * Builds the indices from scratch, if they were not built yet, or if the in-memory structure
+     * was modified without going through this schema.
+     */
+    private void ensureIndices() {
+        if (this.m_nameIndex != null
+                && this.m_indexed == this.m_memory.getDefinitionCount()
+                && this.m_modifications == this.m_memory.getModificationCount()) {
+            return;
+        }
+
+        this.m_nameIndex = new HashMap();
+        this.m_lfnIndex = new HashMap();
+        this.m_sequence = new IdentityHashMap();
+        this.m_nextSequence = 0;
+        for (Iterator i = this.m_memory.iterateDefinition(); i.hasNext(); ) {
+            this.index((Definition) i.next());
+        }
+        this.markIndexed();
+        Logging.instance().log("dbschema", 3, "indexed " + this.m_indexed + " definitions");
+    }
+
+    /** Records that the indices are in sync with the in-memory structure. */
+    private void markIndexed() {
+        this.m_indexed = this.m_memory.getDefinitionCount();
+        this.m_modifications = this.m_memory.getModificationCount();
+    }
 
-                    // if found in one Pass, skip all the others
-                    if (found) break;
+    /**
+     * Adds a definition to the name index, and derivations also to the inverted LFN index.
+     *
+     * @param d is the definition to add
+     */
+    private void index(Definition d) {
+        this.index(d, this.m_nextSequence++);
+    }
+
+    /**
+     * Adds a definition to the indices with the given sequence number.
+     *
+     * @param d is the definition to add
+     * @param sequence is the position of the definition in main memory
+     */
+    private void index(Definition d, long sequence) {
+        if (this.m_nameIndex == null) {
+            // indices will be built on first use
+            return;
+        }
+        this.m_sequence.put(d, Long.valueOf(sequence));
+
+        java.util.List bucket = (java.util.List) this.m_nameIndex.get(d.getName());
+        if (bucket == null) {
+            bucket = new ArrayList(1);
+            this.m_nameIndex.put(d.getName(), bucket);
+        }
+        bucket.add(d);
+
+        if (d instanceof Derivation) {
+            Derivation dv = (Derivation) d;
+            for (Iterator i = this.collectLfns(dv).iterator(); i.hasNext(); ) {
+                LFN lfn = (LFN) i.next();
+                java.util.List usages = (java.util.List) this.m_lfnIndex.get(lfn.getFilename());
+                if (usages == null) {
+                    usages = new ArrayList(1);
+                    this.m_lfnIndex.put(lfn.getFilename(), usages);
+                }
+                usages.add(new LFNUsage(dv, lfn.getLink()));
+            }
+        }
+    }
+
+    /**
+     * Replaces a definition in the indices with the definition that overwrote it in main memory.
+     * The replacement takes over the position of the definition in its name bucket, and its
+     * sequence number.
+     *
+     * @param existing is the definition that was overwritten
+     * @param replacement is the definition with the same primary key that overwrote it
+     */
+    private void reindex(Definition existing, Definition replacement) {
+        if (this.m_nameIndex == null) {
+            return;
+        }
+
+        java.util.List bucket = (java.util.List) this.m_nameIndex.get(existing.getName());
+        int position = 0;
+        while (bucket.get(position) != existing) position++;
+        long sequence = ((Long) this.m_sequence.get(existing)).longValue();
+        this.unindex(existing);
+        this.index(replacement, sequence);
+
+        // move the replacement from the end of the bucket
+        bucket = (java.util.List) this.m_nameIndex.get(replacement.getName());
+        bucket.remove(bucket.size() - 1);
+        bucket.add(position, replacement);
+    }
+
+    /**
+     * Removes a definition from the indices. The definition is identified by reference, since it
+     * must have originated from the in-memory structure.
+     *
+     * @param d is the definition to remove
+     */
+    private void unindex(Definition d) {
+        if (this.m_nameIndex == null) {
+            return;
+        }
+        this.m_sequence.remove(d);
+
+        java.util.List bucket = (java.util.List) this.m_nameIndex.get(d.getName());
+        if (bucket != null) {
+            for (Iterator i = bucket.iterator(); i.hasNext(); ) {
+                if (i.next() == d) {
+                    i.remove();
+                    break;
+                }
+            }
+            if (bucket.isEmpty()) this.m_nameIndex.remove(d.getName());
+        }
+
+        if (d instanceof Derivation) {
+            for (Iterator i = this.collectLfns((Derivation) d).iterator(); i.hasNext(); ) {
+                String lfn = ((LFN) i.next()).getFilename();
+                java.util.List usages = (java.util.List) this.m_lfnIndex.get(lfn);
+                if (usages == null) continue;
+                for (Iterator j = usages.iterator(); j.hasNext(); ) {
+                    if (((LFNUsage) j.next()).m_derivation == d) j.remove();
                 }
+                if (usages.isEmpty()) this.m_lfnIndex.remove(lfn);
             }
         }
+    }
+
+    /**
+     * Sorts definitions obtained from the indices in the order they are stored in main memory.
+     *
+     * @param definitions is the list of indexed definitions to sort
+     * @return the sorted list
+     */
+    private java.util.List inStorageOrder(java.util.List definitions) {
+        if (definitions.size() > 1) {
+            Collections.sort(
+                    definitions,
+                    new Comparator() {
+                        public int compare(Object a, Object b) {
+                            return ((Long) m_sequence.get(a)).compareTo((Long) m_sequence.get(b));
+                        }
+                    });
+        }
+        return definitions;
+    }
 
+    /**
+     * Collects all LFN instances in the actual arguments of a derivation.
+     *
+     * @param dv is the derivation to walk
+     * @return a list of LFN instances, in the order of the actual arguments.
+     */
+    private java.util.List collectLfns(Derivation dv) {
+        java.util.List result = new ArrayList();
+        for (Iterator j = dv.iteratePass(); j.hasNext(); ) {
+            Value actual = ((Pass) j.next()).getValue();
+            switch (actual.getContainerType()) {
+                case Value.SCALAR:
+                    // this is a regular SCALAR
+                    this.collectLfns((Scalar) actual, result);
+                    break;
+                case Value.LIST:
+                    // a LIST is a list of SCALARs
+                    org.griphyn.vdl.classes.List list = (org.griphyn.vdl.classes.List) actual;
+                    for (Iterator f = list.iterateScalar(); f.hasNext(); ) {
+                        this.collectLfns((Scalar) f.next(), result);
+                    }
+                    break;
+                default:
+                    // this should not happen
+                    Logging.instance()
+                            .log(
+                                    "default",
+                                    0,
+                                    "WARNING: An actual argument \""
+                                            + actual.toString()
+                                            + "\" is neither SCALAR nor LIST");
+                    break;
+            }
+        }
         return result;
     }
 
     /**
-     * This helper function checks, if a given Scalar instance contains the specified logical
-     * filename as LFN instance anywhere in its sub-structures.
+     * Collects all LFN instances from the leaves of a Scalar.
      *
-     * @param scalar is a Scalar instance to check
-     * @param lfn is a logical filename string to check for
-     * @param link is the linkage type of the lfn. if -1, do not check the linkage type.
-     * @return true, if the file was found
+     * @param scalar is a Scalar instance to walk
+     * @param result is the list to add the LFN instances to
      */
-    protected boolean scalarContainsLfn(Scalar scalar, String lfn, int link) {
+    private void collectLfns(Scalar scalar, java.util.List result) {
         for (Iterator e = scalar.iterateLeaf(); e.hasNext(); ) {
             org.griphyn.vdl.classes.Leaf leaf = (org.griphyn.vdl.classes.Leaf) e.next();
-            if (leaf instanceof LFN) {
-                LFN local = (LFN) leaf;
-                if ((link == -1 || local.getLink() == link)
-                        && lfn.compareTo(local.getFilename()) == 0) return true;
-            }
+            if (leaf instanceof LFN) result.add(leaf);
+        }
+    }
+
+    /** Records that a derivation uses a logical filename with a certain linkage. */
+    private static class LFNUsage {
+        /** The derivation that uses the logical filename. */
+        private final Derivation m_derivation;
+
+        /** The linkage type of the logical filename within the derivation. */
+        private final int m_link;
+
+        /**
+         * C'tor.
+         *
+         * @param derivation is the derivation that uses the logical filename
+         * @param link is the linkage of the logical filename
+         */
+        LFNUsage(Derivation derivation, int link) {
+            this.m_derivation = derivation;
+            this.m_link = link;
         }
-        return false;
     }
 }
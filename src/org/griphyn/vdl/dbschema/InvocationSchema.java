@@ -114,22 +114,25 @@ public class InvocationSchema extends DatabaseSchema implements PTC {
      */
     public long getInvocationID(java.util.Date start, InetAddress host, int pid)
             throws SQLException {
-        long result = -1;
-        Logging.instance().log("xaction", 1, "START select invocation id");
-
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.ivr.sk");
-
-        int i = 1;
-        ps.setTimestamp(i++, toStamp(start));
-        ps.setString(i++, host.getHostAddress());
-        ps.setInt(i++, pid);
-
-        Logging.instance().log("chunk", 2, "SELECT id FROM invocation");
-        ResultSet rs = ps.executeQuery();
-        if (rs.next()) result = rs.getLong(1);
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL select invocation id");
-        return result;
+        return leased(
+                () -> {
+                    long result = -1;
+                    Logging.instance().log("xaction", 1, "START select invocation id");
+
+                    PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.ivr.sk");
+
+                    int i = 1;
+                    ps.setTimestamp(i++, toStamp(start));
+                    ps.setString(i++, host.getHostAddress());
+                    ps.setInt(i++, pid);
+
+                    Logging.instance().log("chunk", 2, "SELECT id FROM invocation");
+                    ResultSet rs = ps.executeQuery();
+                    if (rs.next()) result = rs.getLong(1);
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL select invocation id");
+                    return result;
+                });
     }
 
     /**
@@ -139,83 +142,94 @@ public class InvocationSchema extends DatabaseSchema implements PTC {
      * @return the id of the architecture, either new or existing.
      */
     public long saveArchitecture(Architecture arch) throws SQLException {
-        long result = -1;
-        Logging.instance().log("xaction", 1, "START select uname id");
-
-        int i = 1;
-        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.uname.sk");
-        stringOrNull(ps, i++, arch.getArchMode());
-        stringOrNull(ps, i++, arch.getSystemName());
-        stringOrNull(ps, i++, arch.getRelease());
-        stringOrNull(ps, i++, arch.getMachine());
-
-        Logging.instance().log("chunk", 2, "SELECT id FROM uname");
-        ResultSet rs = ps.executeQuery();
-        if (rs.next()) result = rs.getLong(1);
-        rs.close();
-        Logging.instance().log("xaction", 1, "FINAL select uname id");
-
-        if (result == -1) {
-            // nothing found, need to really insert things
-            Logging.instance().log("xaction", 1, "START save uname");
-
-            try {
-                result = m_dbdriver.sequence1("uname_id_seq");
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "During rusage sequence number: " + e.toString().trim());
-                Logging.instance().log("xaction", 1, "START rollback");
-                m_dbdriver.rollback();
-                Logging.instance().log("xaction", 1, "FINAL rollback");
-                throw e; // re-throw
-            }
-
-            // add ID explicitely from sequence to insertion
-            ps = m_dbdriver.getPreparedStatement("stmt.save.uname");
-            i = 1;
-            longOrNull(ps, i++, result);
-
-            stringOrNull(ps, i++, arch.getArchMode());
-            stringOrNull(ps, i++, arch.getSystemName());
-            stringOrNull(ps, i++, arch.getRelease());
-            stringOrNull(ps, i++, arch.getMachine());
-
-            // save prepared values
-            Logging.instance().log("chunk", 2, "INSERT INTO uname");
-            try {
-                int rc = ps.executeUpdate();
-                if (result == -1) result = m_dbdriver.sequence2(ps, "uname_id_seq", 1);
-            } catch (SQLException e) {
-                // race condition possibility: try once more to find info
-                result = -1;
-                Logging.instance().log("xaction", 1, "START select uname id");
-
-                i = 1;
-                ps = m_dbdriver.getPreparedStatement("stmt.select.uname.sk");
-                stringOrNull(ps, i++, arch.getArchMode());
-                stringOrNull(ps, i++, arch.getSystemName());
-                stringOrNull(ps, i++, arch.getRelease());
-                stringOrNull(ps, i++, arch.getMachine());
-
-                Logging.instance().log("chunk", 2, "SELECT id FROM uname");
-                rs = ps.executeQuery();
-                if (rs.next()) result = rs.getLong(1);
-                rs.close();
-                Logging.instance().log("xaction", 1, "FINAL select uname id");
-
-                if (result == -1) {
-                    Logging.instance()
-                            .log("app", 0, "While inserting into rusage: " + e.toString().trim());
-                    // rollback in saveInvocation()
-                    m_dbdriver.cancelPreparedStatement("stmt.save.uname");
-                    throw e; // re-throw
-                }
-            }
-            Logging.instance().log("xaction", 1, "FINAL save uname: ID=" + result);
-        }
-
-        // done
-        return result;
+        return leased(
+                () -> {
+                    long result = -1;
+                    Logging.instance().log("xaction", 1, "START select uname id");
+
+                    int i = 1;
+                    PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.select.uname.sk");
+                    stringOrNull(ps, i++, arch.getArchMode());
+                    stringOrNull(ps, i++, arch.getSystemName());
+                    stringOrNull(ps, i++, arch.getRelease());
+                    stringOrNull(ps, i++, arch.getMachine());
+
+                    Logging.instance().log("chunk", 2, "SELECT id FROM uname");
+                    ResultSet rs = ps.executeQuery();
+                    if (rs.next()) result = rs.getLong(1);
+                    rs.close();
+                    Logging.instance().log("xaction", 1, "FINAL select uname id");
+
+                    if (result == -1) {
+                        // nothing found, need to really insert things
+                        Logging.instance().log("xaction", 1, "START save uname");
+
+                        try {
+                            result = m_dbdriver.sequence1("uname_id_seq");
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "During rusage sequence number: "
+                                                    + e.toString().trim());
+                            Logging.instance().log("xaction", 1, "START rollback");
+                            m_dbdriver.rollback();
+                            Logging.instance().log("xaction", 1, "FINAL rollback");
+                            throw e; // re-throw
+                        }
+
+                        // add ID explicitely from sequence to insertion
+                        ps = m_dbdriver.getPreparedStatement("stmt.save.uname");
+                        i = 1;
+                        longOrNull(ps, i++, result);
+
+                        stringOrNull(ps, i++, arch.getArchMode());
+                        stringOrNull(ps, i++, arch.getSystemName());
+                        stringOrNull(ps, i++, arch.getRelease());
+                        stringOrNull(ps, i++, arch.getMachine());
+
+                        // save prepared values
+                        Logging.instance().log("chunk", 2, "INSERT INTO uname");
+                        try {
+                            int rc = ps.executeUpdate();
+                            if (result == -1) result = m_dbdriver.sequence2(ps, "uname_id_seq", 1);
+                        } catch (SQLException e) {
+                            // race condition possibility: try once more to find info
+                            result = -1;
+                            Logging.instance().log("xaction", 1, "START select uname id");
+
+                            i = 1;
+                            ps = m_dbdriver.getPreparedStatement("stmt.select.uname.sk");
+                            stringOrNull(ps, i++, arch.getArchMode());
+                            stringOrNull(ps, i++, arch.getSystemName());
+                            stringOrNull(ps, i++, arch.getRelease());
+                            stringOrNull(ps, i++, arch.getMachine());
+
+                            Logging.instance().log("chunk", 2, "SELECT id FROM uname");
+                            rs = ps.executeQuery();
+                            if (rs.next()) result = rs.getLong(1);
+                            rs.close();
+                            Logging.instance().log("xaction", 1, "FINAL select uname id");
+
+                            if (result == -1) {
+                                Logging.instance()
+                                        .log(
+                                                "app",
+                                                0,
+                                                "While inserting into rusage: "
+                                                        + e.toString().trim());
+                                // rollback in saveInvocation()
+                                m_dbdriver.cancelPreparedStatement("stmt.save.uname");
+                                throw e; // re-throw
+                            }
+                        }
+                        Logging.instance().log("xaction", 1, "FINAL save uname: ID=" + result);
+                    }
+
+                    // done
+                    return result;
+                });
     }
 
     /**
@@ -225,119 +239,125 @@ public class InvocationSchema extends DatabaseSchema implements PTC {
      * @return true, if insertion was successful, false otherwise.
      */
     public boolean saveInvocation(InvocationRecord ivr) throws SQLException {
-        // big outer try
-        try {
-            long id = -1;
-            try {
-                id = m_dbdriver.sequence1("invocation_id_seq");
-            } catch (SQLException e) {
-                Logging.instance()
-                        .log("app", 0, "During IVR sequence number: " + e.toString().trim());
-                throw e; // re-throw
-            }
-
-            // add ID explicitely from sequence to insertion
-            Logging.instance().log("xaction", 1, "START save invocation");
-            PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.ivr");
-            int i = 1;
-            longOrNull(ps, i++, id);
-
-            // current_user()
-            stringOrNull(ps, i++, System.getProperty("user.name"));
-
-            // now()
-            ps.setTimestamp(i++, toStamp(new java.util.Date()));
-
-            // wf_label, wf_time: not available at the moment...
-            if (ivr.getWorkflowLabel() == null) ps.setNull(i++, Types.VARCHAR);
-            else ps.setString(i++, ivr.getWorkflowLabel());
-
-            if (ivr.getWorkflowTimestamp() == null) ps.setNull(i++, Types.TIMESTAMP);
-            else ps.setTimestamp(i++, toStamp(ivr.getWorkflowTimestamp()));
-
-            // version
-            ps.setString(i++, ivr.getVersion());
-
-            // start, duration
-            ps.setTimestamp(i++, toStamp(ivr.getStart()));
-            ps.setDouble(i++, ivr.getDuration());
-
-            // TR
-            i = splitDefinition(ps, ivr.getTransformation(), i);
-
-            // DV: not available at the moment
-            i = splitDefinition(ps, ivr.getDerivation(), i);
-
-            // resource (site handle)
-            if (ivr.getResource() == null) ps.setNull(i++, Types.VARCHAR);
-            else ps.setString(i++, ivr.getResource());
-
-            // host
-            ps.setString(i++, ivr.getHostAddress().getHostAddress());
-
-            // [pug]id
-            ps.setInt(i++, ivr.getPID());
-            ps.setInt(i++, ivr.getUID());
-            ps.setInt(i++, ivr.getGID());
-
-            // cwd
-            stringOrNull(ps, i++, ivr.getWorkingDirectory().getValue());
-
-            // uname
-            ps.setLong(i++, saveArchitecture(ivr.getArchitecture()));
-
-            // save usage and remember id
-            ps.setLong(i++, saveUsage(ivr.getUsage()));
-
-            // save prepared values
-            Logging.instance().log("chunk", 2, "INSERT INTO invocation");
-
-            int rc = ps.executeUpdate();
-            if (id == -1) id = m_dbdriver.sequence2(ps, "invocation_id_seq", 1);
-            Logging.instance().log("xaction", 1, "FINAL save invocation: ID=" + id);
-
-            // save jobs belonging to invocation
-            for (Iterator j = ivr.iterateJob(); j.hasNext(); ) {
-                saveJob(id, ((Job) j.next()));
-            }
-
-            // jsv 20050815: more stat info for Prophesy
-            for (Iterator j = ivr.iterateStatCall(); j.hasNext(); ) {
-                StatCall s = (StatCall) j.next();
-                String sch = s.getHandle().toLowerCase();
-                if (sch.equals("initial") || sch.equals("final")) {
-                    saveLFN(id, s);
-                }
-            }
-
-            // done
-            m_dbdriver.commit();
-            return true;
-        } catch (SQLException e) {
-            // show complete exception chain
-            for (SQLException walk = e; walk != null; walk = walk.getNextException()) {
-                Logging.instance()
-                        .log(
-                                "app",
-                                0,
-                                walk.getSQLState()
-                                        + ": "
-                                        + walk.getErrorCode()
-                                        + ": "
-                                        + walk.getMessage().trim());
-
-                StackTraceElement[] ste = walk.getStackTrace();
-                for (int n = 0; n < 5 && n < ste.length; ++n) {
-                    Logging.instance().log("app", 0, ste[n].toString());
-                }
-            }
-
-            Logging.instance().log("xaction", 1, "START rollback");
-            m_dbdriver.cancelPreparedStatement("stmt.save.ivr");
-            m_dbdriver.rollback();
-            Logging.instance().log("xaction", 1, "FINAL rollback");
-            throw e; // re-throw
-        }
+        return leased(
+                () -> {
+                    // big outer try
+                    try {
+                        long id = -1;
+                        try {
+                            id = m_dbdriver.sequence1("invocation_id_seq");
+                        } catch (SQLException e) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            "During IVR sequence number: " + e.toString().trim());
+                            throw e; // re-throw
+                        }
+
+                        // add ID explicitely from sequence to insertion
+                        Logging.instance().log("xaction", 1, "START save invocation");
+                        PreparedStatement ps = m_dbdriver.getPreparedStatement("stmt.save.ivr");
+                        int i = 1;
+                        longOrNull(ps, i++, id);
+
+                        // current_user()
+                        stringOrNull(ps, i++, System.getProperty("user.name"));
+
+                        // now()
+                        ps.setTimestamp(i++, toStamp(new java.util.Date()));
+
+                        // wf_label, wf_time: not available at the moment...
+                        if (ivr.getWorkflowLabel() == null) ps.setNull(i++, Types.VARCHAR);
+                        else ps.setString(i++, ivr.getWorkflowLabel());
+
+                        if (ivr.getWorkflowTimestamp() == null) ps.setNull(i++, Types.TIMESTAMP);
+                        else ps.setTimestamp(i++, toStamp(ivr.getWorkflowTimestamp()));
+
+                        // version
+                        ps.setString(i++, ivr.getVersion());
+
+                        // start, duration
+                        ps.setTimestamp(i++, toStamp(ivr.getStart()));
+                        ps.setDouble(i++, ivr.getDuration());
+
+                        // TR
+                        i = splitDefinition(ps, ivr.getTransformation(), i);
+
+                        // DV: not available at the moment
+                        i = splitDefinition(ps, ivr.getDerivation(), i);
+
+                        // resource (site handle)
+                        if (ivr.getResource() == null) ps.setNull(i++, Types.VARCHAR);
+                        else ps.setString(i++, ivr.getResource());
+
+                        // host
+                        ps.setString(i++, ivr.getHostAddress().getHostAddress());
+
+                        // [pug]id
+                        ps.setInt(i++, ivr.getPID());
+                        ps.setInt(i++, ivr.getUID());
+                        ps.setInt(i++, ivr.getGID());
+
+                        // cwd
+                        stringOrNull(ps, i++, ivr.getWorkingDirectory().getValue());
+
+                        // uname
+                        ps.setLong(i++, saveArchitecture(ivr.getArchitecture()));
+
+                        // save usage and remember id
+                        ps.setLong(i++, saveUsage(ivr.getUsage()));
+
+                        // save prepared values
+                        Logging.instance().log("chunk", 2, "INSERT INTO invocation");
+
+                        int rc = ps.executeUpdate();
+                        if (id == -1) id = m_dbdriver.sequence2(ps, "invocation_id_seq", 1);
+                        Logging.instance().log("xaction", 1, "FINAL save invocation: ID=" + id);
+
+                        // save jobs belonging to invocation
+                        for (Iterator j = ivr.iterateJob(); j.hasNext(); ) {
+                            saveJob(id, ((Job) j.next()));
+                        }
+
+                        // jsv 20050815: more stat info for Prophesy
+                        for (Iterator j = ivr.iterateStatCall(); j.hasNext(); ) {
+                            StatCall s = (StatCall) j.next();
+                            String sch = s.getHandle().toLowerCase();
+                            if (sch.equals("initial") || sch.equals("final")) {
+                                saveLFN(id, s);
+                            }
+                        }
+
+                        // done
+                        m_dbdriver.commit();
+                        return true;
+                    } catch (SQLException e) {
+                        // show complete exception chain
+                        for (SQLException walk = e; walk != null; walk = walk.getNextException()) {
+                            Logging.instance()
+                                    .log(
+                                            "app",
+                                            0,
+                                            walk.getSQLState()
+                                                    + ": "
+                                                    + walk.getErrorCode()
+                                                    + ": "
+                                                    + walk.getMessage().trim());
+
+                            StackTraceElement[] ste = walk.getStackTrace();
+                            for (int n = 0; n < 5 && n < ste.length; ++n) {
+                                Logging.instance().log("app", 0, ste[n].toString());
+                            }
+                        }
+
+                        Logging.instance().log("xaction", 1, "START rollback");
+                        m_dbdriver.cancelPreparedStatement("stmt.save.ivr");
+                        m_dbdriver.rollback();
+                        Logging.instance().log("xaction", 1, "FINAL rollback");
+                        throw e; // re-throw
+                    }
+                });
     }
 
     /**
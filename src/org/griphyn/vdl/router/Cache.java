@@ -63,6 +63,11 @@ public class Cache {
     public Cache(int ttl) {
         this.m_ttl = 1000 * ttl;
         this.m_cache = new java.util.HashMap();
+        Cache.init();
+    }
+
+    /** Initializes the statistics counters shared by all caches, and their reporting at exit. */
+    private static synchronized void init() {
         if (m_stats == null) {
             // Singleton:
             Cache.m_stats = new long[5]; // insert, update, miss, expired, hit
@@ -95,9 +100,9 @@ public class Cache {
      * @param value is the object to be cached.
      * @return <code>null</code> for a fresh object, or the old CacheEntry.
      */
-    public Object set(Object key, Object value) {
+    public synchronized Object set(Object key, Object value) {
         CacheEntry ce = (CacheEntry) this.m_cache.put(key, new CacheEntry(value));
-        this.m_stats[ce == null ? 0 : 1]++; // count insert or update
+        Cache.count(ce == null ? 0 : 1); // count insert or update
         return (ce == null ? null : ce.m_value);
     }
 
@@ -106,27 +111,37 @@ public class Cache {
      *
      * @param key is the descriptor of the object.
      */
-    public Object get(Object key) {
+    public synchronized Object get(Object key) {
         CacheEntry ce = (CacheEntry) this.m_cache.get(key);
 
         // new object?
         if (ce == null) {
-            this.m_stats[2]++; // count MISS
+            Cache.count(2); // count MISS
             return null;
         }
 
         // expired object?
         if (ce.m_expire < System.currentTimeMillis()) {
-            this.m_stats[3]++; // count EXPIRED
+            Cache.count(3); // count EXPIRED
             this.m_cache.remove(key);
             return null;
         }
 
         // known object!
-        this.m_stats[4]++;
+        Cache.count(4);
         return ce.m_value;
     }
 
+    /**
+     * Increments a statistics counter. The counters are shared by all caches, which may be used
+     * from different threads.
+     *
+     * @param which is the index of the counter.
+     */
+    private static synchronized void count(int which) {
+        Cache.m_stats[which]++;
+    }
+
     /**
      * Requests a copy of the statistics counters.
      *
@@ -134,7 +149,9 @@ public class Cache {
      */
     public long[] getStatistics() {
         long[] result = new long[5];
-        System.arraycopy(this.m_stats, 0, result, 0, 5);
+        synchronized (Cache.class) {
+            System.arraycopy(Cache.m_stats, 0, result, 0, 5);
+        }
         return result;
     }
 }
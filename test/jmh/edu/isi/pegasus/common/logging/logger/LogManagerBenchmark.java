@@ -0,0 +1,169 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.logging.logger;
+
+import edu.isi.pegasus.common.logging.LogFormatterFactory;
+import edu.isi.pegasus.common.logging.LogManager;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the Default, Async and Log4j loggers, when logging enabled messages to a file from one
+ * or more threads, and when logging disabled debug messages that are either concatenated eagerly or
+ * supplied lazily. Each iteration logs a fixed number of messages per thread, so that the log file
+ * stays bounded. The messages still queued by the Async logger are flushed at the end of each
+ * iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = LogManagerBenchmark.MESSAGES)
+@Measurement(iterations = 5, batchSize = LogManagerBenchmark.MESSAGES)
+@Fork(1)
+public class LogManagerBenchmark {
+
+    /** The number of messages logged per thread in an iteration. */
+    static final int MESSAGES = 100000;
+
+    /** The logger implementation. */
+    @Param({"Default", "Async", "Log4j"})
+    public String logger;
+
+    /** The file the enabled messages are logged to. */
+    private File mFile;
+
+    private LogManager mLogger;
+
+    /** The number of the message logged next by a thread. */
+    @State(Scope.Thread)
+    public static class Counter {
+        private int mNext;
+
+        int next() {
+            return mNext++;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("benchmark-" + logger + "-", ".log");
+        mLogger = load(logger, mFile);
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        if (mLogger instanceof Async) {
+            ((Async) mLogger).flush();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public void enabled(Counter counter) {
+        mLogger.log(message(counter.next()), LogManager.INFO_MESSAGE_LEVEL);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void enabledConcurrent(Counter counter) {
+        mLogger.log(message(counter.next()), LogManager.INFO_MESSAGE_LEVEL);
+    }
+
+    @Benchmark
+    public void disabledEager(Counter counter) {
+        mLogger.log(message(counter.next()), LogManager.DEBUG_MESSAGE_LEVEL);
+    }
+
+    @Benchmark
+    public void disabledSupplier(Counter counter) {
+        int n = counter.next();
+        mLogger.log(() -> message(n), LogManager.DEBUG_MESSAGE_LEVEL);
+    }
+
+    private static String message(int i) {
+        return "Job being traversed is job_"
+                + i
+                + " with input file f.b"
+                + i
+                + " to be run at local";
+    }
+
+    /**
+     * Loads a logger that logs INFO messages to a file.
+     *
+     * @param name the name of the logger implementation
+     * @param file the file to log to
+     * @return the logger
+     * @throws IOException in case of error while opening the file
+     */
+    private static LogManager load(String name, File file) throws IOException {
+        LogManager logger;
+        switch (name) {
+            case "Async":
+                logger = new Async();
+                break;
+
+            case "Log4j":
+                logger = new Log4j();
+                Logger log4j = Logger.getLogger("pegasus");
+                log4j.removeAllAppenders();
+                log4j.setAdditivity(false);
+                WriterAppender appender =
+                        new WriterAppender(
+                                new PatternLayout("%d{yyyy-MM-dd HH:mm:ss.SSS} %-5p [%c{1}] %m%n"),
+                                new OutputStreamWriter(new FileOutputStream(file)));
+                appender.setImmediateFlush(true);
+                log4j.addAppender(appender);
+                break;
+
+            default:
+                logger = new Default();
+        }
+        logger.initialize(LogFormatterFactory.loadInstance("Simple"), new Properties());
+        if (logger instanceof Default) {
+            ((Default) logger)
+                    .setOutputWriter(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+        logger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        logger.logEventStart("benchmark.logging." + name, "logger", name);
+        return logger;
+    }
+}
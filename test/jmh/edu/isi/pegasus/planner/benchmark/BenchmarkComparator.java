@@ -0,0 +1,118 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files in the JSON format, and reports the change in the score for each
+ * benchmark and parameter combination present in both. A benchmark has regressed, if its score got
+ * worse by more than the threshold, and by more than the sum of the errors of the two scores.
+ *
+ * <p>Usage: BenchmarkComparator baseline.json current.json [threshold percent]
+ *
+ * <p>The exit code is 1 if any benchmark regressed, else 0.
+ */
+public class BenchmarkComparator {
+
+    /** The default threshold in percent beyond which a change is a regression. */
+    public static final double DEFAULT_THRESHOLD = 10;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(
+                    "Usage: BenchmarkComparator baseline.json current.json [threshold percent]");
+            System.exit(2);
+        }
+        double threshold = (args.length > 2) ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println(String.format("%-100s %12s", entry.getKey(), "new"));
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            double oldScore = score(before, "score");
+            double newScore = score(after, "score");
+            double error = score(before, "scoreError") + score(after, "scoreError");
+            // for throughput higher is better, for the time based modes lower is better
+            double worse =
+                    after.get("mode").asText().equals("thrpt")
+                            ? oldScore - newScore
+                            : newScore - oldScore;
+            double change = (oldScore == 0) ? 0 : 100 * (newScore - oldScore) / oldScore;
+            boolean regressed = worse > error && 100 * worse / oldScore > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.println(
+                    String.format(
+                            "%-100s %12.3f %12.3f %-8s %+8.1f%% %s",
+                            entry.getKey(),
+                            oldScore,
+                            newScore,
+                            after.get("primaryMetric").get("scoreUnit").asText(),
+                            change,
+                            regressed ? "REGRESSION" : ""));
+        }
+        System.out.println(
+                regressions
+                        + " of "
+                        + current.size()
+                        + " benchmarks regressed by more than "
+                        + threshold
+                        + "%");
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * Loads the results from a JMH JSON result file.
+     *
+     * @param file the result file
+     * @return map indexed by the benchmark name and parameters
+     * @throws IOException in case of error while reading
+     */
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> result = new LinkedHashMap();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder();
+            key.append(run.get("benchmark").asText());
+            JsonNode params = run.get("params");
+            if (params != null) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> param = it.next();
+                    key.append(" ").append(param.getKey()).append("=");
+                    key.append(param.getValue().asText());
+                }
+            }
+            result.put(key.toString(), run);
+        }
+        return result;
+    }
+
+    private static double score(JsonNode run, String key) {
+        double value = run.get("primaryMetric").get(key).asDouble();
+        return Double.isNaN(value) ? 0 : value;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.SiteCatalog;
+import edu.isi.pegasus.planner.catalog.TransformationCatalog;
+import edu.isi.pegasus.planner.catalog.site.SiteFactory;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationFactory;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the loading of the site and transformation catalogs at the start of planning, one
+ * after the other or at the same time as the planner does with pegasus.catalog.parallel.load. The
+ * catalogs are written out once per trial, with a text transformation catalog that has a number of
+ * transformations each installed on a few sites, and a YAML site catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CatalogLoadBenchmark {
+
+    /** The number of sites each transformation is installed on. */
+    private static final int SITES_PER_TRANSFORMATION = 3;
+
+    /** The number of transformations in the transformation catalog. */
+    @Param({"1000", "50000"})
+    public int transformations;
+
+    /** The number of sites in the site catalog. */
+    @Param({"100", "5000"})
+    public int sites;
+
+    /** Whether the transformation catalog is loaded while the site catalog is loaded. */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    /** The bag of initialization objects, with the properties pointing to the catalogs. */
+    private PegasusBag mBag;
+
+    /** The text transformation catalog. */
+    private File mTC;
+
+    /** The YAML site catalog. */
+    private File mSC;
+
+    /** Loads the transformation catalog in the background. */
+    private ExecutorService mExecutor;
+
+    @Setup
+    public void setUp() throws IOException {
+        mTC = File.createTempFile("benchmark-tc-", ".txt");
+        mSC = File.createTempFile("benchmark-sites-", ".yml");
+        this.writeTC(mTC);
+        this.writeSC(mSC);
+
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty(
+                PegasusProperties.PEGASUS_TRANSFORMATION_CATALOG_PROPERTY,
+                TransformationFactory.TEXT_CATALOG_IMPLEMENTOR);
+        props.setProperty(
+                PegasusProperties.PEGASUS_TRANSFORMATION_CATALOG_FILE_PROPERTY,
+                mTC.getAbsolutePath());
+        props.setProperty(PegasusProperties.PEGASUS_SITE_CATALOG_PROPERTY, "YAML");
+        props.setProperty(
+                PegasusProperties.PEGASUS_SITE_CATALOG_FILE_PROPERTY, mSC.getAbsolutePath());
+
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart(
+                "benchmark." + this.getClass().getSimpleName(),
+                "transformations",
+                "" + transformations);
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        mBag.add(PegasusBag.PLANNER_OPTIONS, new PlannerOptions());
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mBag.getLogger().logEventCompletion();
+        mTC.delete();
+        mSC.delete();
+    }
+
+    @Benchmark
+    public int load() throws Exception {
+        Future<TransformationCatalog> future =
+                parallel ? mExecutor.submit(() -> TransformationFactory.loadInstance(mBag)) : null;
+        SiteCatalog sc = SiteFactory.loadInstance(mBag);
+        int result = sc.load(Collections.singletonList("*"));
+        sc.close();
+
+        TransformationCatalog tc =
+                parallel ? future.get() : TransformationFactory.loadInstance(mBag);
+        result += tc.getTCLogicalNames(null, null).size();
+        tc.close();
+        return result;
+    }
+
+    /**
+     * Writes out the transformation catalog in the text format.
+     *
+     * @param file the file to write to
+     * @throws IOException in case of error while writing
+     */
+    private void writeTC(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < transformations; i++) {
+                writer.write("# transformation " + i + "\n");
+                writer.write("tr " + WorkflowGenerator.NAMESPACE + "::process" + i + ":1.0 {\n");
+                writer.write("  profile env \"APP_HOME\" \"/opt/app/" + i + "\"\n");
+                for (int j = 0; j < SITES_PER_TRANSFORMATION; j++) {
+                    writer.write("  site site-" + ((i + j) % sites) + " {\n");
+                    writer.write("    profile condor \"request_memory\" \"1024\"\n");
+                    writer.write("    pfn \"/opt/app/" + i + "/bin/process\"\n");
+                    writer.write("    arch \"x86_64\"\n");
+                    writer.write("    os \"linux\"\n");
+                    writer.write("    type \"INSTALLED\"\n");
+                    writer.write("  }\n");
+                }
+                writer.write("}\n\n");
+            }
+        }
+    }
+
+    /**
+     * Writes out the site catalog in the 5.0 YAML format.
+     *
+     * @param file the file to write to
+     * @throws IOException in case of error while writing
+     */
+    private void writeSC(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("pegasus: \"5.0\"\n");
+            writer.write("sites:\n");
+            for (int i = 0; i < sites; i++) {
+                String name = (i == 0) ? "local" : "site-" + i;
+                writer.write("  - name: " + name + "\n");
+                writer.write("    arch: x86_64\n");
+                writer.write("    os.type: linux\n");
+                writer.write("    directories:\n");
+                writer.write("      - type: sharedScratch\n");
+                writer.write("        path: /scratch/" + name + "\n");
+                writer.write("        fileServers:\n");
+                writer.write("          - operation: all\n");
+                writer.write("            url: gsiftp://" + name + ".example.edu/scratch\n");
+                writer.write("    profiles:\n");
+                writer.write("      env:\n");
+                writer.write("        PEGASUS_HOME: /opt/pegasus\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.code.CodeGeneratorException;
+import edu.isi.pegasus.planner.code.generator.condor.CondorGenerator;
+import edu.isi.pegasus.planner.namespace.Dagman;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the parts of the code generation by the CondorGenerator that scale with the size of
+ * the workflow, and don't require the catalogs to be set up. These are the writing of the DAG file
+ * with the job and the edge entries, the DOT file and the metadata file. The condor submit files
+ * for the individual jobs are not generated.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CondorGeneratorBenchmark extends WorkflowState {
+
+    /** The number of jobs in the workflow. */
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    /** The directory to which the files are written. */
+    private File mDirectory;
+
+    /** The generator writing the files. */
+    private DAGFileWriter mWriter;
+
+    @Override
+    protected void setUpTrial() throws IOException {
+        mDirectory = Files.createTempDirectory("benchmark-condor").toFile();
+        mWriter = new DAGFileWriter(this, mDirectory);
+        for (Iterator<GraphNode> it = mDAG.nodeIterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            job.dagmanVariables.construct(
+                    Dagman.JOB_KEY, job.getFileRelativePath(CondorGenerator.SUBMIT_FILE_SUFFIX));
+        }
+    }
+
+    @Override
+    protected void tearDownTrial() {
+        for (File f : mDirectory.listFiles()) {
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public void writeDAGFile() throws CodeGeneratorException {
+        mWriter.writeDAGFile(mDAG);
+    }
+
+    @Benchmark
+    public void writeDOTFile() throws CodeGeneratorException {
+        mWriter.writeDOTFile(mDAG);
+    }
+
+    @Benchmark
+    public void writeMetadataFile() throws CodeGeneratorException {
+        mWriter.writeMetadataFile(mDAG);
+    }
+
+    /** Exposes the file writers of the CondorGenerator. */
+    private static class DAGFileWriter extends CondorGenerator {
+
+        DAGFileWriter(WorkflowState state, File directory) {
+            mBag = state.mBag;
+            mProps = mBag.getPegasusProperties();
+            mLogger = mBag.getLogger();
+            mSubmitFileDir = directory.getAbsolutePath();
+        }
+
+        void writeDAGFile(ADag dag) throws CodeGeneratorException {
+            this.initializeDagFileWriter(new File(mSubmitFileDir, dag.getLabel() + ".dag"), dag);
+            for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
+                Job job = (Job) it.next().getContent();
+                this.printDagString(job.dagmanVariables.toString(job.getName()));
+            }
+            this.writeDagFileTail(dag);
+        }
+
+        void writeDOTFile(ADag dag) throws CodeGeneratorException {
+            this.writeDOTFile(dag.getLabel() + ".dot", dag);
+        }
+
+        void writeMetadataFile(ADag dag) throws CodeGeneratorException {
+            this.writeMetadataFile(dag.getLabel() + ".metadata", dag);
+        }
+    }
+
+    protected int getNodes() {
+        return nodes;
+    }
+}
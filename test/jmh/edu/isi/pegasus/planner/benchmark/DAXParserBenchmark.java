@@ -0,0 +1,76 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.parser.DAXParserFactory;
+import edu.isi.pegasus.planner.parser.dax.Callback;
+import edu.isi.pegasus.planner.parser.dax.DAXParser;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the parsing of a workflow in the 5.0 YAML format into an ADag. The workflow is written
+ * out once per trial.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DAXParserBenchmark extends WorkflowState {
+
+    /** The number of jobs in the workflow. */
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    /** The workflow file to be parsed. */
+    private File mFile;
+
+    @Override
+    protected void setUpTrial() throws IOException {
+        mFile = File.createTempFile("benchmark-" + shape + "-" + nodes + "-", ".yml");
+        WorkflowGenerator.writeYAML(mDAG, mFile);
+        // only the file is required for the benchmark
+        mDAG = null;
+    }
+
+    @Override
+    protected void tearDownTrial() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public ADag parse() {
+        String dax = mFile.getAbsolutePath();
+        DAXParser parser =
+                DAXParserFactory.loadDAXParser(mBag, DAXParserFactory.DEFAULT_CALLBACK_CLASS, dax);
+        Callback callback = parser.getDAXCallback();
+        parser.parse(dax);
+        return (ADag) callback.getConstructedObject();
+    }
+
+    protected int getNodes() {
+        return nodes;
+    }
+}
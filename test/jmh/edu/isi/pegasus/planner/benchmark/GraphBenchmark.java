@@ -0,0 +1,92 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the traversals of the workflow graph that the refiners rely on, and the cloning of the
+ * jobs in the workflow.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphBenchmark extends WorkflowState {
+
+    /** The number of jobs in the workflow. */
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    @Benchmark
+    public int topologicalSort() {
+        int count = 0;
+        for (Iterator<GraphNode> it = mDAG.topologicalSortIterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int bottomUp() {
+        int count = 0;
+        for (Iterator<GraphNode> it = mDAG.bottomUpIterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int breadthFirst() {
+        int count = 0;
+        for (Iterator<GraphNode> it = mDAG.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int edges() {
+        int count = 0;
+        for (Iterator<GraphNode> it = mDAG.jobIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            count += node.getParents().size() + node.getChildren().size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void cloneJobs(Blackhole blackhole) {
+        for (Iterator<GraphNode> it = mDAG.nodeIterator(); it.hasNext(); ) {
+            blackhole.consume(((Job) it.next().getContent()).clone());
+        }
+    }
+
+    protected int getNodes() {
+        return nodes;
+    }
+}
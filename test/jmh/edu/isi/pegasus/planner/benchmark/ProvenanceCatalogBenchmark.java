@@ -0,0 +1,232 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.invocation.Architecture;
+import edu.isi.pegasus.planner.invocation.InvocationRecord;
+import edu.isi.pegasus.planner.invocation.Usage;
+import java.io.File;
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.griphyn.vdl.dbdriver.DatabaseDriver;
+import org.griphyn.vdl.dbschema.InvocationSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks concurrent inserts and lookups of invocation records in the provenance catalog, with
+ * the single connection of the database driver against a pool of connections. With a single
+ * connection, the threads take turns on the shared schema.
+ *
+ * <p>By default, the benchmark runs against an embedded SQLite database, that is created with the
+ * provenance tables in a temporary file for each trial. SQLite allows a single writer at a time, so
+ * against SQLite the inserts take turns with the pool as well, and only the lookups run
+ * concurrently. Other databases have to be set up with the provenance tables beforehand, and are
+ * passed with the driver as parameters, together with any other connection properties e.g.
+ *
+ * <pre>
+ * -p driver=MySQL -p url=jdbc:mysql://localhost/ptc -jvmArgsAppend -Dpegasus.catalog.provenance.db.user=ptc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class ProvenanceCatalogBenchmark {
+
+    /** The prefix for the properties of the provenance catalog database. */
+    private static final String PREFIX = "pegasus.catalog.provenance.db";
+
+    /** The database driver to connect with. */
+    @Param({"SQLite"})
+    public String driver;
+
+    /** The contact string for the database, empty for an embedded SQLite database. */
+    @Param({""})
+    public String url;
+
+    /** The maximum number of pooled connections, or 0 for the single connection. */
+    @Param({"0", "4"})
+    public int pool;
+
+    /** The schema shared by all the benchmark threads. */
+    private InvocationSchema mSchema;
+
+    /** The invocation record looked up, that is inserted at the start of the trial. */
+    private InvocationRecord mRecord;
+
+    /** Gives each invocation record inserted a unique process id. */
+    private AtomicInteger mPID;
+
+    /** The embedded database created for the trial, else null. */
+    private File mDatabase;
+
+    /** Whether the database allows a single writer at a time. */
+    private boolean mSingleWriter;
+
+    @Setup
+    public void setUp() throws Exception {
+        String contact = url;
+        if (contact == null || contact.isEmpty()) {
+            mDatabase = this.createEmbeddedDatabase();
+            contact = "jdbc:sqlite:" + mDatabase.getAbsolutePath();
+            driver = "SQLite";
+            System.setProperty(PREFIX + ".busy_timeout", "30000");
+        }
+        mSingleWriter = driver.equalsIgnoreCase("SQLite");
+        System.setProperty(PREFIX + ".driver", driver);
+        System.setProperty(PREFIX + ".url", contact);
+        if (pool > 0) {
+            System.setProperty(PREFIX + "." + DatabaseDriver.POOL_SIZE_KEY, Integer.toString(pool));
+        }
+
+        mSchema = new InvocationSchema(null);
+        mPID = new AtomicInteger(0);
+        mRecord = this.record();
+        if (!mSchema.saveInvocation(mRecord)) {
+            throw new RuntimeException("Unable to insert invocation record into " + contact);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mSchema.close();
+        if (mDatabase != null) {
+            mDatabase.delete();
+        }
+    }
+
+    @Benchmark
+    public boolean insert() throws Exception {
+        InvocationRecord record = this.record();
+        if (pool > 0 && !mSingleWriter) {
+            return mSchema.saveInvocation(record);
+        }
+        synchronized (mSchema) {
+            return mSchema.saveInvocation(record);
+        }
+    }
+
+    @Benchmark
+    public long lookup() throws Exception {
+        if (pool > 0) {
+            return this.lookup(mRecord);
+        }
+        synchronized (mSchema) {
+            return this.lookup(mRecord);
+        }
+    }
+
+    /**
+     * Looks up the id of an invocation record.
+     *
+     * @param record the record to look up
+     * @return the id of the record
+     */
+    private long lookup(InvocationRecord record) throws Exception {
+        long id =
+                mSchema.getInvocationID(
+                        record.getStart(), record.getHostAddress(), record.getPID());
+        if (id == -1) {
+            throw new RuntimeException("Invocation record not found");
+        }
+        return id;
+    }
+
+    /**
+     * Creates a SQLite database with the provenance tables in a temporary file, with the ids
+     * generated by SQLite on insertion.
+     *
+     * @return the database file
+     */
+    private File createEmbeddedDatabase() throws Exception {
+        File database = File.createTempFile("ptc.", ".db");
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + database);
+                Statement s = c.createStatement()) {
+            s.executeUpdate(
+                    "CREATE TABLE ptc_uname(id INTEGER PRIMARY KEY, archmode TEXT, sysname TEXT,"
+                            + " os_release TEXT, machine TEXT)");
+            s.executeUpdate(
+                    "CREATE TABLE ptc_rusage(id INTEGER PRIMARY KEY, utime REAL, stime REAL,"
+                            + " minflt INTEGER, majflt INTEGER, nswaps INTEGER, nsignals INTEGER,"
+                            + " nvcsw INTEGER, nivcsw INTEGER)");
+            s.executeUpdate(
+                    "CREATE TABLE ptc_stat(id INTEGER PRIMARY KEY, errno INTEGER, fname TEXT,"
+                            + " fdesc INTEGER, size INTEGER, mode INTEGER, inode INTEGER,"
+                            + " atime TIMESTAMP, ctime TIMESTAMP, mtime TIMESTAMP, uid INTEGER,"
+                            + " gid INTEGER)");
+            s.executeUpdate(
+                    "CREATE TABLE ptc_invocation(id INTEGER PRIMARY KEY, creator TEXT,"
+                            + " creationtime TIMESTAMP, wf_label TEXT, wf_time TIMESTAMP,"
+                            + " version TEXT, start TIMESTAMP, duration REAL, tr_namespace TEXT,"
+                            + " tr_name TEXT, tr_version TEXT, dv_namespace TEXT, dv_name TEXT,"
+                            + " dv_version TEXT, resource TEXT, host TEXT, pid INTEGER,"
+                            + " uid INTEGER, gid INTEGER, cwd TEXT, arch INTEGER, total INTEGER)");
+            s.executeUpdate(
+                    "CREATE TABLE ptc_job(id INTEGER, type TEXT, start TIMESTAMP, duration REAL,"
+                            + " pid INTEGER, rusage INTEGER, stat INTEGER, exitcode INTEGER,"
+                            + " exit_msg TEXT, args TEXT)");
+            s.executeUpdate(
+                    "CREATE TABLE ptc_lfn(id INTEGER, stat INTEGER, initial TEXT, lfn TEXT)");
+        }
+        return database;
+    }
+
+    /**
+     * Creates a minimal invocation record, with a process id not used before in the trial.
+     *
+     * @return the invocation record
+     */
+    private InvocationRecord record() throws Exception {
+        InvocationRecord record = new InvocationRecord();
+        record.setVersion("2.0");
+        record.setStart(new Date());
+        record.setDuration(1.5);
+        record.setTransformation("benchmark::process:1.0");
+        record.setResource("local");
+        record.setHostAddress(InetAddress.getLoopbackAddress());
+        record.setPID(mPID.incrementAndGet());
+        record.setUID(1000);
+        record.setGID(1000);
+        record.setWorkingDirectory("/tmp");
+        record.setUsage(new Usage());
+
+        Architecture architecture = new Architecture();
+        architecture.setArchMode("IA64");
+        architecture.setSystemName("linux");
+        architecture.setRelease("5.4.0");
+        architecture.setMachine("x86_64");
+        record.setArchitecture(architecture);
+        return record;
+    }
+}
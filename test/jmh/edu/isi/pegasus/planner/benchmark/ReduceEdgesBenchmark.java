@@ -0,0 +1,64 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.refiner.ReduceEdges;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the removal of the redundant edges from the workflow. As the reduction modifies the
+ * workflow, a new workflow is generated before each invocation.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReduceEdgesBenchmark extends WorkflowState {
+
+    /**
+     * The number of jobs in the workflow. The reduction is superlinear in the number of edges, and
+     * takes close to a minute for the fanin and genome shapes with a thousand jobs.
+     */
+    @Param({"100", "1000"})
+    public int nodes;
+
+    /** The workflow to be reduced in the invocation. */
+    private ADag mWorkflow;
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        mWorkflow = this.generate();
+    }
+
+    @Benchmark
+    public ADag reduce() {
+        return new ReduceEdges().reduce(mWorkflow);
+    }
+
+    protected int getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.replica.impl.Indexed;
+import edu.isi.pegasus.planner.catalog.replica.impl.NegativeLookupCache;
+import edu.isi.pegasus.planner.catalog.replica.impl.SimpleFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the bulk lookup of all the files referred to in the workflow against a replica
+ * catalog, that has entries for the raw input files of the workflow, as the replica catalog bridge
+ * does at the start of planning.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReplicaCatalogBenchmark extends WorkflowState {
+
+    /** The number of jobs in the workflow. */
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    /** The replica catalog implementation to look up against. */
+    @Param({"SimpleFile", "Indexed", "NegativeLookupCache"})
+    public String catalog;
+
+    /** The catalog file. */
+    private File mFile;
+
+    /** The replica catalog connected to for the trial. */
+    private ReplicaCatalog mCatalog;
+
+    /** The LFNs to be looked up. */
+    private Set<String> mLFNs;
+
+    @Override
+    protected void setUpTrial() throws IOException {
+        Map<String, Collection<ReplicaCatalogEntry>> entries = new HashMap();
+        for (String lfn : WorkflowGenerator.getRawInputs(mDAG)) {
+            entries.put(
+                    lfn,
+                    Collections.singletonList(
+                            new ReplicaCatalogEntry("file:///data/" + lfn, "local")));
+        }
+        mLFNs = WorkflowGenerator.getLFNs(mDAG);
+        mDAG = null;
+
+        mFile = File.createTempFile("benchmark-rc-", ".txt");
+        if (catalog.equals("Indexed")) {
+            Indexed.write(mFile, entries, Indexed.DEFAULT_SEGMENT_SHIFT);
+            mCatalog = new Indexed();
+        } else {
+            SimpleFile file = new SimpleFile();
+            file.connect(mFile.getAbsolutePath());
+            file.insert(entries);
+            file.close();
+            mCatalog = new SimpleFile();
+        }
+
+        Properties props = new Properties();
+        props.setProperty("file", mFile.getAbsolutePath());
+        props.setProperty(ReplicaCatalog.READ_ONLY_KEY, "true");
+        if (!mCatalog.connect(props)) {
+            throw new RuntimeException("Unable to connect to " + catalog + " catalog " + mFile);
+        }
+        if (catalog.equals("NegativeLookupCache")) {
+            mCatalog = new NegativeLookupCache(mCatalog, mBag.getLogger());
+            mCatalog.connect(props);
+        }
+    }
+
+    @Override
+    protected void tearDownTrial() {
+        mCatalog.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public Map lookup() {
+        return mCatalog.lookup(mLFNs);
+    }
+
+    protected int getNodes() {
+        return nodes;
+    }
+}
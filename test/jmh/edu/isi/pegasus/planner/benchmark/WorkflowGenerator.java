@@ -0,0 +1,318 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates synthetic workflows of a given shape and size for the benchmarks. Each job generates
+ * one output file, that is consumed by all its children. The root jobs additionally consume a raw
+ * input file, that is not generated by any job in the workflow. The generated workflows are
+ * deterministic, so that results can be compared run over run.
+ */
+public class WorkflowGenerator {
+
+    /** The shapes of the workflows that can be generated. */
+    public static enum SHAPE {
+        /** One job with all the other jobs as children. */
+        fanout,
+        /** One job with all the other jobs as parents. */
+        fanin,
+        /** A fanout followed by a fanin. */
+        diamond,
+        /** Modeled on the Montage mosaicking workflow. */
+        montage,
+        /** Modeled on the 1000 Genome workflow. */
+        genome
+    };
+
+    /** The namespace for the transformations of the generated jobs. */
+    public static final String NAMESPACE = "benchmark";
+
+    /** The prefix for the raw input files. */
+    public static final String RAW_INPUT_PREFIX = "raw.";
+
+    /** The workflow being generated. */
+    private final ADag mDAG;
+
+    /** The number of jobs generated so far. */
+    private int mCount;
+
+    /**
+     * Generates a workflow.
+     *
+     * @param shape the shape of the workflow
+     * @param nodes the number of jobs in the workflow. For the montage and genome shapes, the
+     *     number of jobs is approximate.
+     * @return the workflow
+     */
+    public static ADag generate(SHAPE shape, int nodes) {
+        WorkflowGenerator generator = new WorkflowGenerator();
+        nodes = Math.max(nodes, 3);
+        switch (shape) {
+            case fanout:
+                {
+                    Job root = generator.add("split", Collections.EMPTY_LIST);
+                    generator.add("process", nodes - 1, Collections.singletonList(root));
+                    break;
+                }
+
+            case fanin:
+                {
+                    generator.add("merge", generator.add("process", nodes - 1, null));
+                    break;
+                }
+
+            case diamond:
+                {
+                    Job root = generator.add("preprocess", Collections.EMPTY_LIST);
+                    List<Job> findrange =
+                            generator.add("findrange", nodes - 2, Collections.singletonList(root));
+                    generator.add("analyze", findrange);
+                    break;
+                }
+
+            case montage:
+                generator.montage(Math.max((nodes - 6) / 4, 2));
+                break;
+
+            case genome:
+                generator.genome(nodes);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unsupported workflow shape " + shape);
+        }
+        return generator.mDAG;
+    }
+
+    /**
+     * Returns the LFNs of the raw input files of the workflow, that are not generated by any job.
+     *
+     * @param dag the workflow
+     * @return the raw input LFNs
+     */
+    public static Set<String> getRawInputs(ADag dag) {
+        Set<String> result = new LinkedHashSet();
+        for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+            for (PegasusFile pf : ((Job) it.next().getContent()).getInputFiles()) {
+                if (pf.getLFN().startsWith(RAW_INPUT_PREFIX)) {
+                    result.add(pf.getLFN());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the LFNs of all the files referred to in the workflow.
+     *
+     * @param dag the workflow
+     * @return the LFNs
+     */
+    public static Set<String> getLFNs(ADag dag) {
+        Set<String> result = new LinkedHashSet();
+        for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            for (PegasusFile pf : job.getInputFiles()) {
+                result.add(pf.getLFN());
+            }
+            for (PegasusFile pf : job.getOutputFiles()) {
+                result.add(pf.getLFN());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes out the workflow in the 5.0 YAML format, that is parsed by the DAXParser5.
+     *
+     * @param dag the workflow
+     * @param file the file to write to
+     * @throws IOException in case of error while writing
+     */
+    public static void writeYAML(ADag dag, File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("pegasus: \"5.0\"\n");
+            writer.write("name: " + dag.getLabel() + "\n");
+            writer.write("jobs:\n");
+            for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+                Job job = (Job) it.next().getContent();
+                writer.write("  - id: " + job.getLogicalID() + "\n");
+                writer.write("    namespace: " + job.getTXNamespace() + "\n");
+                writer.write("    name: " + job.getTXName() + "\n");
+                writer.write("    arguments: [\"" + job.getArguments() + "\"]\n");
+                writer.write("    uses:\n");
+                for (PegasusFile pf : job.getInputFiles()) {
+                    writer.write("      - lfn: " + pf.getLFN() + "\n");
+                    writer.write("        type: input\n");
+                }
+                for (PegasusFile pf : job.getOutputFiles()) {
+                    writer.write("      - lfn: " + pf.getLFN() + "\n");
+                    writer.write("        type: output\n");
+                    writer.write("        stageOut: false\n");
+                    writer.write("        registerReplica: false\n");
+                }
+            }
+            writer.write("jobDependencies:\n");
+            for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+                GraphNode node = it.next();
+                if (node.getChildren().isEmpty()) {
+                    continue;
+                }
+                writer.write("  - id: " + ((Job) node.getContent()).getLogicalID() + "\n");
+                writer.write("    children:\n");
+                for (GraphNode child : node.getChildren()) {
+                    writer.write("      - " + ((Job) child.getContent()).getLogicalID() + "\n");
+                }
+            }
+        }
+    }
+
+    /** The default constructor. */
+    private WorkflowGenerator() {
+        mDAG = new ADag();
+        mDAG.setLabel("benchmark");
+        mDAG.setIndex("0");
+        mCount = 0;
+    }
+
+    /**
+     * Generates a Montage like workflow, that mosaics a number of images.
+     *
+     * @param images the number of images
+     */
+    private void montage(int images) {
+        List<Job> project = this.add("mProject", images, null);
+        List<Job> diffFit = new ArrayList();
+        for (int i = 0; i < images; i++) {
+            // each image overlaps with the next two images
+            for (int j = 1; j <= 2; j++) {
+                List<Job> parents = new ArrayList(2);
+                parents.add(project.get(i));
+                parents.add(project.get((i + j) % images));
+                diffFit.add(this.add("mDiffFit", parents));
+            }
+        }
+        Job concatFit = this.add("mConcatFit", diffFit);
+        Job bgModel = this.add("mBgModel", Collections.singletonList(concatFit));
+        List<Job> background = new ArrayList();
+        for (int i = 0; i < images; i++) {
+            List<Job> parents = new ArrayList(2);
+            parents.add(project.get(i));
+            parents.add(bgModel);
+            background.add(this.add("mBackground", parents));
+        }
+        Job imgtbl = this.add("mImgtbl", background);
+        Job add = this.add("mAdd", Collections.singletonList(imgtbl));
+        Job shrink = this.add("mShrink", Collections.singletonList(add));
+        this.add("mJPEG", Collections.singletonList(shrink));
+    }
+
+    /**
+     * Generates a 1000 Genome like workflow, that processes a number of chromosomes.
+     *
+     * @param nodes the approximate number of jobs
+     */
+    private void genome(int nodes) {
+        int populations = 7;
+        int chromosomes = Math.min(Math.max(nodes / 1000, 1), 22);
+        int individuals = Math.max(nodes / chromosomes - 2 - 2 * populations, 1);
+        for (int c = 0; c < chromosomes; c++) {
+            Job merge = this.add("individuals_merge", this.add("individuals", individuals, null));
+            Job sifting = this.add("sifting", Collections.EMPTY_LIST);
+            List<Job> parents = new ArrayList(2);
+            parents.add(merge);
+            parents.add(sifting);
+            this.add("mutation_overlap", populations, parents);
+            this.add("frequency", populations, parents);
+        }
+    }
+
+    /**
+     * Adds a number of jobs with the same parents.
+     *
+     * @param transformation the transformation for the jobs
+     * @param count the number of jobs
+     * @param parents the parents of the jobs, or null if the jobs are roots
+     * @return the jobs added
+     */
+    private List<Job> add(String transformation, int count, List<Job> parents) {
+        List<Job> result = new ArrayList(count);
+        for (int i = 0; i < count; i++) {
+            result.add(
+                    this.add(transformation, parents == null ? Collections.EMPTY_LIST : parents));
+        }
+        return result;
+    }
+
+    /**
+     * Adds a job to the workflow. A job without parents reads a raw input file.
+     *
+     * @param transformation the transformation for the job
+     * @param parents the parents of the job
+     * @return the job added
+     */
+    private Job add(String transformation, List<Job> parents) {
+        String id = String.format("ID%07d", mCount++);
+        Job job = new Job();
+        job.setJobType(Job.COMPUTE_JOB);
+        job.setTXNamespace(NAMESPACE);
+        job.setTXName(transformation);
+        job.setLogicalID(id);
+        job.setName(transformation + "_" + id);
+
+        StringBuilder arguments = new StringBuilder();
+        arguments.append("-a ").append(transformation).append(" -i");
+        if (parents.isEmpty()) {
+            PegasusFile input = new PegasusFile(RAW_INPUT_PREFIX + id);
+            input.setLinkage(PegasusFile.LINKAGE.input);
+            job.addInputFile(input);
+            arguments.append(" ").append(input.getLFN());
+        }
+        for (Job parent : parents) {
+            for (PegasusFile pf : parent.getOutputFiles()) {
+                PegasusFile input = new PegasusFile(pf.getLFN());
+                input.setLinkage(PegasusFile.LINKAGE.input);
+                job.addInputFile(input);
+            }
+        }
+        PegasusFile output = new PegasusFile("f." + id);
+        output.setLinkage(PegasusFile.LINKAGE.output);
+        output.setSize(1024 * 1024);
+        job.addOutputFile(output);
+        arguments.append(" -o ").append(output.getLFN());
+        job.setArguments(arguments.toString());
+
+        mDAG.add(job);
+        for (Job parent : parents) {
+            mDAG.addEdge(parent.getID(), job.getID());
+        }
+        return job;
+    }
+}
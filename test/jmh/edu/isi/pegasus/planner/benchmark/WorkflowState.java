@@ -0,0 +1,115 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.benchmark;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The state shared by the benchmarks that work on a synthetic workflow. The shape and the size of
+ * the workflow are benchmark parameters, that can be restricted or extended on the command line
+ * e.g.
+ *
+ * <pre>
+ * -p shape=montage -p nodes=1000,1000000
+ * </pre>
+ *
+ * The sizes are declared by each benchmark, as the ones that scale superlinearly with the size of
+ * the workflow cannot be run on the sizes the others are.
+ */
+@State(Scope.Benchmark)
+public abstract class WorkflowState {
+
+    /** The shape of the workflow. */
+    @Param({"fanout", "fanin", "diamond", "montage", "genome"})
+    public WorkflowGenerator.SHAPE shape;
+
+    /** The workflow generated for the trial. */
+    protected ADag mDAG;
+
+    /** The bag of initialization objects. */
+    protected PegasusBag mBag;
+
+    /**
+     * Generates the workflow and sets up the bag for a trial.
+     *
+     * @throws Exception in case of error while setting up
+     */
+    @Setup
+    public void setUp() throws Exception {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        LogManager logger = LogManagerFactory.loadSingletonInstance(props);
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        logger.logEventStart(
+                "benchmark." + this.getClass().getSimpleName(), "jobs", "" + this.getNodes());
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        mBag.add(PegasusBag.PLANNER_OPTIONS, new PlannerOptions());
+        mDAG = this.generate();
+        this.setUpTrial();
+    }
+
+    /**
+     * Cleans up after a trial.
+     *
+     * @throws Exception in case of error while cleaning up
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        this.tearDownTrial();
+        mBag.getLogger().logEventCompletion();
+    }
+
+    /**
+     * Sets up the state specific to the benchmark, after the workflow is generated. JMH does not
+     * order the setup methods of a state and its super class, hence the benchmarks override this
+     * method instead of declaring their own trial setup.
+     *
+     * @throws Exception in case of error while setting up
+     */
+    protected void setUpTrial() throws Exception {}
+
+    /**
+     * Cleans up the state specific to the benchmark.
+     *
+     * @throws Exception in case of error while cleaning up
+     */
+    protected void tearDownTrial() throws Exception {}
+
+    /**
+     * Returns the number of jobs in the workflow, that is a parameter of the benchmark.
+     *
+     * @return the number of jobs
+     */
+    protected abstract int getNodes();
+
+    /**
+     * Generates a new instance of the workflow for the trial.
+     *
+     * @return the workflow
+     */
+    protected ADag generate() {
+        return WorkflowGenerator.generate(shape, this.getNodes());
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.cluster.aggregator;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.AggregatedJob;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the writing out of the input file by the job aggregators for a recursively clustered
+ * job, where each clustered job contains a chain of clustered jobs down to the depth, and the
+ * innermost ones contain a chain of tasks. The clustered job has fanout^depth tasks.
+ *
+ * <p>The benchmark lives in the package of the job aggregators, as writing out the input file is
+ * not public.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecursiveClusteringInputBenchmark {
+
+    /** The job aggregator writing out the input file. */
+    @Param({"SeqExec", "MPIExec"})
+    public String aggregator;
+
+    /** The depth of nesting of the clustered jobs. */
+    @Param({"3", "6"})
+    public int depth;
+
+    /** The number of jobs in each clustered job. */
+    @Param({"8"})
+    public int fanout;
+
+    /** The directory the input files are written to. */
+    private File mDirectory;
+
+    private Abstract mAggregator;
+
+    private AggregatedJob mJob;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("benchmark-recursive-cluster").toFile();
+        LogManager logger =
+                LogManagerFactory.loadSingletonInstance(PegasusProperties.nonSingletonInstance());
+        logger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        mAggregator = aggregator.equals("MPIExec") ? new MPIExec() : new SeqExec();
+        mAggregator.setDirectory(mDirectory.getAbsolutePath());
+        mAggregator.mLogger = logger;
+        mJob = clusteredJob("merge", depth);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File f : mDirectory.listFiles()) {
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public long write() {
+        File stdin = mAggregator.writeOutInputFileForJobAggregator(mJob);
+        long length = stdin.length();
+        stdin.delete();
+        return length;
+    }
+
+    /**
+     * Returns a clustered job nested to the depth passed, where each clustered job contains a chain
+     * of fanout jobs.
+     *
+     * @param id the id of the clustered job
+     * @param depth the depth of nesting. 1 means the clustered job contains only tasks
+     * @return the clustered job
+     */
+    private AggregatedJob clusteredJob(String id, int depth) {
+        AggregatedJob job = new AggregatedJob(fanout);
+        job.setName(id);
+        job.setLogicalID(id);
+        job.setJobType(Job.COMPUTE_JOB);
+        job.setRelativeSubmitDirectory(".");
+        GraphNode previous = null;
+        for (int i = 0; i < fanout; i++) {
+            String childID = id + "_" + i;
+            Job child;
+            if (depth > 1) {
+                child = clusteredJob(childID, depth - 1);
+            } else {
+                child = new Job();
+                child.setName(childID);
+                child.setLogicalID("ID" + childID);
+                child.setTransformation("pegasus", "preprocess", "4.0");
+                child.setRemoteExecutable("/usr/bin/preprocess");
+                child.setArguments("-i " + childID + ".in -o " + childID + ".out");
+                child.setJobType(Job.COMPUTE_JOB);
+            }
+            GraphNode node = new GraphNode(child.getLogicalID(), child);
+            job.addNode(node);
+            if (previous != null) {
+                job.addEdge(previous, node);
+            }
+            previous = node;
+        }
+        return job;
+    }
+}
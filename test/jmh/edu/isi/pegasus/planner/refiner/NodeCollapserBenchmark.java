@@ -0,0 +1,114 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.planner.benchmark.WorkflowState;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.parser.dax.DAX2LabelGraph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the construction of the graph that the partitioners traverse from the workflow, at the
+ * start of clustering, against the earlier construction that replayed the workflow through the
+ * DAX2LabelGraph callback. The memory allocated is reported with the gc profiler, e.g.
+ *
+ * <pre>
+ * ant benchmark-java -Dbenchmark.include=NodeCollapserBenchmark -Dbenchmark.args="-prof gc"
+ * </pre>
+ *
+ * The benchmark lives in the package of the NodeCollapser, as the construction is not public.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NodeCollapserBenchmark extends WorkflowState {
+
+    /** The number of jobs in the workflow. */
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    /** The node collapser constructing the graph. */
+    private NodeCollapser mCollapser;
+
+    protected void setUpTrial() {
+        mCollapser = new NodeCollapser(mBag);
+    }
+
+    @Benchmark
+    public Map<String, GraphNode> toLabelGraph() {
+        return mCollapser.toLabelGraph(mDAG);
+    }
+
+    /**
+     * Constructs the graph as the NodeCollapser did before, by building an adjacency list of the
+     * logical id's of the jobs, and replaying the jobs and the edges through the DAX2LabelGraph
+     * callback.
+     *
+     * @return Map indexed by the logical id of the jobs
+     */
+    @Benchmark
+    public Map toLabelGraphFromCallback() {
+        Map<String, String> nameIDMap = new HashMap();
+        for (Iterator<GraphNode> it = mDAG.jobIterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            nameIDMap.put(job.getName(), job.getLogicalID());
+        }
+        Map<String, List<String>> edges = new HashMap();
+        for (Iterator<GraphNode> it = mDAG.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            String child = nameIDMap.get(node.getID());
+            for (GraphNode parent : node.getParents()) {
+                List<String> parents = edges.get(child);
+                if (parents == null) {
+                    parents = new LinkedList();
+                    edges.put(child, parents);
+                }
+                parents.add(nameIDMap.get(parent.getID()));
+            }
+        }
+
+        DAX2LabelGraph d2g = new DAX2LabelGraph();
+        d2g.initialize(mBag, null);
+        d2g.setLabelKey(mBag.getPegasusProperties().getClustererLabelKey());
+        d2g.cbDocument(null);
+        for (Iterator<GraphNode> it = mDAG.jobIterator(); it.hasNext(); ) {
+            d2g.cbJob((Job) it.next().getContent());
+        }
+        for (Map.Entry<String, List<String>> entry : edges.entrySet()) {
+            d2g.cbParents(entry.getKey(), entry.getValue());
+        }
+        d2g.cbDone();
+        return (Map) d2g.getConstructedObject();
+    }
+
+    protected int getNodes() {
+        return nodes;
+    }
+}
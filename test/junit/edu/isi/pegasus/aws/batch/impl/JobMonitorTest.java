@@ -0,0 +1,153 @@
+/**
+ * Copyright 2007-2017 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.aws.batch.impl;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.aws.batch.classes.AWSJob;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+import software.amazon.awssdk.services.batch.BatchClient;
+import software.amazon.awssdk.services.batch.model.DescribeJobsRequest;
+import software.amazon.awssdk.services.batch.model.DescribeJobsResponse;
+import software.amazon.awssdk.services.batch.model.JobDetail;
+import software.amazon.awssdk.services.batch.model.JobStatus;
+
+/** Tests for the JobMonitor against an in process fake batch client. */
+public class JobMonitorTest {
+
+    private FakeBatchClient mClient;
+
+    private JobMonitor mMonitor;
+
+    @Before
+    public void setUp() {
+        mClient = new FakeBatchClient();
+        mMonitor = new JobMonitor(mClient, Logger.getLogger(JobMonitorTest.class), 10, 40, 160);
+    }
+
+    @Test
+    public void testDescribeInBatches() {
+        for (int i = 0; i < 250; i++) {
+            mClient.setStatus("id-" + i, JobStatus.SUBMITTED);
+            mMonitor.track("id-" + i);
+        }
+        assertEquals(250, mMonitor.outstanding());
+
+        List<JobDetail> changed = mMonitor.poll();
+        assertTrue(changed.isEmpty());
+        assertEquals(3, mClient.mDescribeCalls);
+        assertEquals(100, (int) mClient.mDescribeSizes.get(0));
+        assertEquals(100, (int) mClient.mDescribeSizes.get(1));
+        assertEquals(50, (int) mClient.mDescribeSizes.get(2));
+    }
+
+    @Test
+    public void testOnlyOutstandingJobsQueried() {
+        for (int i = 0; i < 150; i++) {
+            mClient.setStatus("id-" + i, JobStatus.RUNNING);
+            mMonitor.track("id-" + i);
+        }
+        List<JobDetail> changed = mMonitor.poll();
+        assertEquals(150, changed.size());
+        assertEquals(AWSJob.JOBSTATE.running, JobMonitor.toJobState(changed.get(0).status()));
+
+        // finish all but 10 of the jobs
+        for (int i = 10; i < 150; i++) {
+            mClient.setStatus("id-" + i, (i % 2 == 0) ? JobStatus.SUCCEEDED : JobStatus.FAILED);
+        }
+        changed = mMonitor.poll();
+        assertEquals(140, changed.size());
+        assertEquals(10, mMonitor.outstanding());
+
+        mClient.mDescribeSizes.clear();
+        changed = mMonitor.poll();
+        assertTrue(changed.isEmpty());
+        assertEquals(1, mClient.mDescribeSizes.size());
+        assertEquals(10, (int) mClient.mDescribeSizes.get(0));
+    }
+
+    @Test
+    public void testAdaptiveSleepTime() {
+        mClient.setStatus("a", JobStatus.SUBMITTED);
+        mMonitor.track("a");
+        assertEquals(40, mMonitor.getSleepTime());
+
+        // newly tracked job counts as activity
+        mMonitor.poll();
+        assertEquals(20, mMonitor.getSleepTime());
+
+        // nothing changes, back off up to the maximum
+        mMonitor.poll();
+        assertEquals(40, mMonitor.getSleepTime());
+        mMonitor.poll();
+        mMonitor.poll();
+        mMonitor.poll();
+        assertEquals(160, mMonitor.getSleepTime());
+
+        // changes speed polling up down to the minimum
+        JobStatus[] progression = {
+            JobStatus.PENDING, JobStatus.RUNNABLE, JobStatus.STARTING, JobStatus.RUNNING
+        };
+        for (JobStatus status : progression) {
+            mClient.setStatus("a", status);
+            mMonitor.poll();
+        }
+        assertEquals(10, mMonitor.getSleepTime());
+    }
+
+    /** A fake batch client that holds the job states in memory. */
+    private static class FakeBatchClient implements BatchClient {
+
+        private final Map<String, JobStatus> mJobs = new LinkedHashMap();
+
+        private final List<Integer> mDescribeSizes = new LinkedList();
+
+        private int mDescribeCalls = 0;
+
+        public void setStatus(String id, JobStatus status) {
+            mJobs.put(id, status);
+        }
+
+        @Override
+        public DescribeJobsResponse describeJobs(DescribeJobsRequest request) {
+            if (request.jobs().size() > JobMonitor.DESCRIBE_JOBS_BATCH_SIZE) {
+                throw new IllegalArgumentException("Too many jobs " + request.jobs().size());
+            }
+            mDescribeCalls++;
+            mDescribeSizes.add(request.jobs().size());
+            List<JobDetail> details = new LinkedList();
+            for (String id : request.jobs()) {
+                JobStatus status = mJobs.get(id);
+                if (status != null) {
+                    details.add(
+                            JobDetail.builder()
+                                    .jobId(id)
+                                    .jobName("name-" + id)
+                                    .status(status)
+                                    .build());
+                }
+            }
+            return DescribeJobsResponse.builder().jobs(details).build();
+        }
+
+        @Override
+        public void close() {}
+    }
+}
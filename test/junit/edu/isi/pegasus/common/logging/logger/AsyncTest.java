@@ -0,0 +1,138 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.common.logging.logger;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogFormatterFactory;
+import edu.isi.pegasus.common.logging.LogManager;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class to test the messages written out by the Async logger. */
+public class AsyncTest {
+
+    private ByteArrayOutputStream mOut;
+
+    private ByteArrayOutputStream mErr;
+
+    private Async mLogger;
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty(Async.BUFFER_SIZE_PROPERTY, "16");
+        mLogger = new Async();
+        mLogger.initialize(LogFormatterFactory.loadInstance("Simple"), properties);
+        mOut = new ByteArrayOutputStream();
+        mErr = new ByteArrayOutputStream();
+        mLogger.setOutputWriter(mOut);
+        mLogger.setErrorWriter(mErr);
+        mLogger.setLevel(LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.logEventStart("test.logging.Async", "test", "1");
+    }
+
+    @Test
+    public void testMessagesWrittenInOrder() {
+        for (int i = 0; i < 1000; i++) {
+            mLogger.log("message " + i, LogManager.DEBUG_MESSAGE_LEVEL);
+        }
+        mLogger.flush();
+
+        List<String> messages = this.messages(mOut);
+        assertEquals(1000, messages.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(messages.get(i), messages.get(i).contains("[DEBUG]"));
+            assertTrue(messages.get(i), messages.get(i).endsWith("message " + i));
+        }
+    }
+
+    @Test
+    public void testErrorWrittenBeforeReturn() {
+        mLogger.log("message failed", LogManager.ERROR_MESSAGE_LEVEL);
+        assertEquals(1, this.messages(mErr).size());
+        assertTrue(this.messages(mErr).get(0).contains("[ERROR]"));
+    }
+
+    @Test
+    public void testConcurrentLogging() throws InterruptedException {
+        List<Thread> threads = new ArrayList();
+        for (int t = 0; t < 4; t++) {
+            Thread thread =
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < 500; i++) {
+                                    mLogger.log("message " + i, LogManager.INFO_MESSAGE_LEVEL);
+                                }
+                            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        mLogger.flush();
+        assertEquals(2000, this.messages(mOut).size());
+    }
+
+    @Test
+    public void testDisabledMessagesNotConstructed() {
+        mLogger.setLevel(LogManager.WARNING_MESSAGE_LEVEL);
+        mLogger.log(
+                () -> {
+                    throw new AssertionError("message constructed for a disabled level");
+                },
+                LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log(() -> "message warned", LogManager.WARNING_MESSAGE_LEVEL);
+        mLogger.flush();
+        assertFalse(mLogger.isLoggable(LogManager.INFO_MESSAGE_LEVEL));
+        assertEquals(1, this.messages(mErr).size());
+    }
+
+    @Test
+    public void testWriterSurvivesFailedWrite() {
+        mLogger.setOutputWriter(
+                new OutputStream() {
+                    public void write(int b) {
+                        throw new IllegalStateException("stream closed");
+                    }
+                });
+        mLogger.log("message lost", LogManager.DEBUG_MESSAGE_LEVEL);
+        // returns once the failed message is accounted for
+        mLogger.flush();
+
+        mLogger.setOutputWriter(mOut);
+        mLogger.log("message written", LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.flush();
+        List<String> messages = this.messages(mOut);
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0), messages.get(0).endsWith("message written"));
+    }
+
+    /** Returns the lines logged with the message key, excluding the event messages. */
+    private List<String> messages(ByteArrayOutputStream stream) {
+        List<String> result = new ArrayList();
+        for (String line : stream.toString().split(System.lineSeparator())) {
+            if (line.contains("message ") || line.contains("message failed")) {
+                result.add(line.trim());
+            }
+        }
+        return result;
+    }
+}
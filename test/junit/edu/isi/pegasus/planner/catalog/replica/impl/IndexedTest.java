@@ -0,0 +1,160 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class to test the compiled replica catalog with a memory mapped index. */
+public class IndexedTest {
+
+    private File mFile;
+
+    private Indexed mCatalog;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("replica", ".idx");
+        mFile.delete();
+        mCatalog = null;
+    }
+
+    @After
+    public void tearDown() {
+        if (mCatalog != null && !mCatalog.isClosed()) {
+            mCatalog.close();
+        }
+        mFile.delete();
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        // small segments so that the records are spread across segments
+        Indexed.write(mFile, this.entries(200), 7);
+        this.connect(true);
+
+        for (int i = 0; i < 200; i++) {
+            Collection<ReplicaCatalogEntry> c = mCatalog.lookup("f." + i);
+            assertEquals("f." + i, 2, c.size());
+            ReplicaCatalogEntry rce = c.iterator().next();
+            assertEquals("file:///data/f." + i, rce.getPFN());
+            assertEquals("local", rce.getResourceHandle());
+            assertEquals(Integer.toString(i), rce.getAttribute("size"));
+        }
+        assertEquals("gsiftp://remote/f.7", mCatalog.lookup("f.7", "remote"));
+        assertTrue(mCatalog.lookup("f.200").isEmpty());
+        assertTrue(mCatalog.lookup("").isEmpty());
+
+        // non ascii lfns are sorted on their utf-8 bytes
+        assertEquals(1, mCatalog.lookup("été.txt").size());
+        assertEquals(1, mCatalog.lookup("z.txt").size());
+
+        Set<String> lfns = new HashSet(Arrays.asList("f.1", "f.42", "missing"));
+        Map<String, Collection<ReplicaCatalogEntry>> result = mCatalog.lookup(lfns, "remote");
+        assertEquals(2, result.size());
+        assertEquals(1, result.get("f.42").size());
+        assertEquals(202, mCatalog.list().size());
+    }
+
+    @Test
+    public void testInsertWritesCatalog() {
+        this.connect(false);
+        mCatalog.insert("b", new ReplicaCatalogEntry("file:///b", "local"));
+        mCatalog.insert("a", new ReplicaCatalogEntry("file:///a", "local"));
+        mCatalog.close();
+
+        this.connect(false);
+        assertEquals("file:///a", mCatalog.lookup("a", "local"));
+        assertEquals(Arrays.asList("a", "b"), new ArrayList(mCatalog.list()));
+
+        // modifications load the catalog in memory and rewrite it
+        assertEquals(1, mCatalog.remove("a"));
+        mCatalog.insert("c", new ReplicaCatalogEntry("file:///c", "local"));
+        mCatalog.close();
+
+        this.connect(true);
+        assertTrue(mCatalog.lookup("a").isEmpty());
+        assertEquals("file:///b", mCatalog.lookup("b", "local"));
+        assertEquals("file:///c", mCatalog.lookup("c", "local"));
+    }
+
+    @Test
+    public void testReadOnly() throws IOException {
+        Indexed.write(mFile, this.entries(1), Indexed.DEFAULT_SEGMENT_SHIFT);
+        long modified = mFile.lastModified();
+        long length = mFile.length();
+
+        this.connect(true);
+        mCatalog.insert("new", new ReplicaCatalogEntry("file:///new", "local"));
+        assertEquals(1, mCatalog.lookup("new").size());
+        mCatalog.close();
+
+        assertEquals(modified, mFile.lastModified());
+        assertEquals(length, mFile.length());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRecordLargerThanSegment() throws IOException {
+        Map<String, Collection<ReplicaCatalogEntry>> entries = new LinkedHashMap();
+        char[] lfn = new char[100];
+        Arrays.fill(lfn, 'x');
+        entries.put(new String(lfn), new ArrayList());
+        Indexed.write(mFile, entries, 6);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNotCompiledCatalog() throws IOException {
+        java.nio.file.Files.write(mFile.toPath(), "f.a file:///f.a site=local\n".getBytes());
+        this.connect(true);
+    }
+
+    private void connect(boolean readOnly) {
+        Properties props = new Properties();
+        props.setProperty("file", mFile.getAbsolutePath());
+        props.setProperty(ReplicaCatalog.READ_ONLY_KEY, Boolean.toString(readOnly));
+        mCatalog = new Indexed();
+        assertTrue(mCatalog.connect(props));
+    }
+
+    private Map<String, Collection<ReplicaCatalogEntry>> entries(int count) {
+        Map<String, Collection<ReplicaCatalogEntry>> entries = new LinkedHashMap();
+        for (int i = count - 1; i >= 0; i--) {
+            List<ReplicaCatalogEntry> rces = new ArrayList();
+            ReplicaCatalogEntry local = new ReplicaCatalogEntry("file:///data/f." + i, "local");
+            local.addAttribute("size", Integer.toString(i));
+            rces.add(local);
+            rces.add(new ReplicaCatalogEntry("gsiftp://remote/f." + i, "remote"));
+            entries.put("f." + i, rces);
+        }
+        entries.put("z.txt", Arrays.asList(new ReplicaCatalogEntry("file:///z.txt", "local")));
+        entries.put("été.txt", Arrays.asList(new ReplicaCatalogEntry("file:///ete.txt", "local")));
+        return entries;
+    }
+}
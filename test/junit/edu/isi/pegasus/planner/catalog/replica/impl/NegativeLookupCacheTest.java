@@ -0,0 +1,239 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.util.FindExecutable;
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class to test the negative lookup cache in front of the replica catalog backends. */
+public class NegativeLookupCacheTest {
+
+    private static final int CATALOG_LFNS = 200;
+
+    private static final int WORKFLOW_LFNS = 2000;
+
+    private LogManager mLogger;
+
+    private PegasusBag mBag;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        mLogger = new DefaultTestSetup().loadLogger(props);
+        mLogger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        mLogger.logEventStart("test.catalog.replica.impl.NegativeLookupCache", "setup", "0");
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
+        mFile = File.createTempFile("negative-cache", ".rc");
+    }
+
+    @Test
+    public void testMissesNotLookedUp() {
+        CountingCatalog backend = this.countingCatalog();
+        NegativeLookupCache cache = this.cache(backend, "0.01");
+
+        Map expected = backend.lookup(this.workflowLFNs());
+        backend.mLookedUp = 0;
+        Map actual = cache.lookup(this.workflowLFNs());
+        assertEquals(expected, actual);
+
+        // only the LFNs in the catalog and the false positives reach the backend
+        assertEquals(WORKFLOW_LFNS, cache.getLookups());
+        assertEquals(WORKFLOW_LFNS - cache.getFilteredLookups(), backend.mLookedUp);
+        assertTrue(backend.mLookedUp >= CATALOG_LFNS);
+        assertTrue(
+                "Too many false positives " + backend.mLookedUp,
+                backend.mLookedUp < CATALOG_LFNS + (WORKFLOW_LFNS - CATALOG_LFNS) / 20);
+    }
+
+    @Test
+    public void testSingleLookups() {
+        CountingCatalog backend = this.countingCatalog();
+        NegativeLookupCache cache = this.cache(backend, null);
+
+        assertEquals("file://f.0", cache.lookup("f.0", "local"));
+        assertEquals(1, cache.lookup("f.0").size());
+        assertEquals(1, cache.lookupNoAttributes("f.0").size());
+
+        backend.mLookedUp = 0;
+        for (int i = 0; i < WORKFLOW_LFNS; i++) {
+            String lfn = "intermediate." + i;
+            Collection c = cache.lookup(lfn);
+            assertTrue(c.isEmpty());
+        }
+        assertEquals(WORKFLOW_LFNS - cache.getFilteredLookups(), backend.mLookedUp);
+        assertTrue(cache.getFilteredLookups() > WORKFLOW_LFNS * 9 / 10);
+    }
+
+    @Test
+    public void testInsertedLFNsAreFound() {
+        NegativeLookupCache cache = this.cache(this.countingCatalog(), null);
+        assertTrue(cache.lookup("output.0").isEmpty());
+
+        cache.insert("output.0", new ReplicaCatalogEntry("file://output.0", "local"));
+        assertEquals("file://output.0", cache.lookup("output.0", "local"));
+
+        Set<String> lfns = new HashSet();
+        lfns.add("output.0");
+        lfns.add("output.1");
+        Map<String, Collection> result = cache.lookup(lfns);
+        assertEquals(2, result.size());
+        assertEquals(1, result.get("output.0").size());
+        assertTrue(result.get("output.1").isEmpty());
+    }
+
+    @Test
+    public void testFactoryWrapsCatalog() throws Exception {
+        this.countingCatalog().close();
+        Properties props = new Properties();
+        props.setProperty("file", mFile.getAbsolutePath());
+        props.setProperty(ReplicaCatalog.NEGATIVE_CACHE_KEY, "true");
+        props.setProperty(ReplicaCatalog.NEGATIVE_CACHE_FPP_KEY, "0.001");
+
+        ReplicaCatalog catalog = ReplicaFactory.loadInstance("File", mBag, props);
+        assertTrue(catalog instanceof NegativeLookupCache);
+        assertTrue(((NegativeLookupCache) catalog).getWrappedCatalog() instanceof SimpleFile);
+        assertEquals(CATALOG_LFNS, catalog.list().size());
+        catalog.close();
+
+        // regular expression lfns cannot be filtered
+        catalog = ReplicaFactory.loadInstance("Regex", mBag, props);
+        assertTrue(catalog instanceof Regex);
+        catalog.close();
+
+        props.remove(ReplicaCatalog.NEGATIVE_CACHE_KEY);
+        catalog = ReplicaFactory.loadInstance("File", mBag, props);
+        assertTrue(catalog instanceof SimpleFile);
+        catalog.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFalsePositiveProbability() {
+        this.cache(this.countingCatalog(), "1.5");
+    }
+
+    @Test
+    public void testSQLiteBackend() throws Exception {
+        File db = new File(mFile.getParentFile(), mFile.getName() + ".db");
+        Assume.assumeNotNull(FindExecutable.findExec("pegasus-db-admin"));
+        Properties props = new Properties();
+        props.setProperty("db.driver", "sqlite");
+        props.setProperty("db.url", "jdbc:sqlite:" + db.getAbsolutePath());
+        props.setProperty(ReplicaCatalog.NEGATIVE_CACHE_KEY, "true");
+
+        try {
+            ReplicaCatalog catalog = ReplicaFactory.loadInstance("JDBCRC", mBag, props);
+            assertTrue(catalog instanceof NegativeLookupCache);
+            for (int i = 0; i < CATALOG_LFNS; i++) {
+                catalog.insert("f." + i, "file://f." + i, "local");
+            }
+            Map result = catalog.lookup(this.workflowLFNs());
+            assertEquals(WORKFLOW_LFNS, result.size());
+            assertEquals(1, ((Collection) result.get("f.0")).size());
+
+            NegativeLookupCache cache = (NegativeLookupCache) catalog;
+            mLogger.log(
+                    "JDBCRC backend queried for "
+                            + (cache.getLookups() - cache.getFilteredLookups())
+                            + " of "
+                            + cache.getLookups()
+                            + " LFNs, saving "
+                            + cache.getFilteredLookups()
+                            + " queries",
+                    LogManager.INFO_MESSAGE_LEVEL);
+            assertTrue(cache.getFilteredLookups() > (WORKFLOW_LFNS - CATALOG_LFNS) * 9 / 10);
+            catalog.close();
+        } finally {
+            db.delete();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        mFile.delete();
+    }
+
+    /**
+     * Returns the LFNs referred to in a workflow, of which the first ones are in the catalog and
+     * the rest are intermediate files.
+     */
+    private Set<String> workflowLFNs() {
+        Set<String> lfns = new HashSet();
+        for (int i = 0; i < CATALOG_LFNS; i++) {
+            lfns.add("f." + i);
+        }
+        for (int i = CATALOG_LFNS; i < WORKFLOW_LFNS; i++) {
+            lfns.add("intermediate." + i);
+        }
+        return lfns;
+    }
+
+    private CountingCatalog countingCatalog() {
+        CountingCatalog catalog = new CountingCatalog();
+        catalog.connect(mFile.getAbsolutePath());
+        for (int i = 0; i < CATALOG_LFNS; i++) {
+            catalog.insert("f." + i, "file://f." + i, "local");
+        }
+        return catalog;
+    }
+
+    private NegativeLookupCache cache(ReplicaCatalog backend, String fpp) {
+        Properties props = new Properties();
+        if (fpp != null) {
+            props.setProperty(ReplicaCatalog.NEGATIVE_CACHE_FPP_KEY, fpp);
+        }
+        NegativeLookupCache cache = new NegativeLookupCache(backend, mLogger);
+        assertTrue(cache.connect(props));
+        return cache;
+    }
+
+    /** A file based catalog that counts the LFNs looked up in it. */
+    private static class CountingCatalog extends SimpleFile {
+
+        private int mLookedUp;
+
+        public Collection lookup(String lfn) {
+            mLookedUp++;
+            return super.lookup(lfn);
+        }
+
+        public Map lookup(Set lfns) {
+            mLookedUp += lfns.size();
+            return super.lookup(lfns);
+        }
+    }
+}
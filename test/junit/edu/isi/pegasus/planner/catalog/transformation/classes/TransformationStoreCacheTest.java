@@ -0,0 +1,81 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.transformation.classes;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class to test the caching of the transformation stores parsed from the catalog files. */
+public class TransformationStoreCacheTest {
+
+    private File mFile;
+
+    private TransformationStoreCache mCache;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("tc.", ".yml");
+        mCache = new TransformationStoreCache();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void testCopiesHandedOut() {
+        TransformationStore store = new TransformationStore();
+        store.addEntry(this.entry("preprocess"));
+        mCache.put(mFile, "YAML", store);
+
+        // updates to the parsed store, or to a copy handed out are not seen by the others
+        store.addEntry(this.entry("findrange"));
+        TransformationStore first = mCache.get(mFile, "YAML");
+        first.addEntry(this.entry("analyze"));
+        TransformationStore second = mCache.get(mFile, "YAML");
+
+        assertEquals(1, second.getAllEntries().size());
+        assertTrue(second.containsTransformation("pegasus::preprocess:4.0"));
+        assertNotSame(first.getAllEntries().get(0), second.getAllEntries().get(0));
+    }
+
+    @Test
+    public void testKeyedOnParser() {
+        mCache.put(mFile, "YAML", new TransformationStore());
+        assertNotNull(mCache.get(mFile, "YAML"));
+        assertNull(mCache.get(mFile, "Text:true:true"));
+    }
+
+    @Test
+    public void testModifiedFileIsMiss() {
+        mCache.put(mFile, "YAML", new TransformationStore());
+        assertTrue(mFile.setLastModified(mFile.lastModified() - 10000));
+        assertNull(mCache.get(mFile, "YAML"));
+    }
+
+    private TransformationCatalogEntry entry(String name) {
+        TransformationCatalogEntry entry = new TransformationCatalogEntry("pegasus", name, "4.0");
+        entry.setResourceId("condorpool");
+        entry.setPhysicalTransformation("/usr/bin/" + name);
+        entry.setType(TCType.INSTALLED);
+        return entry;
+    }
+}
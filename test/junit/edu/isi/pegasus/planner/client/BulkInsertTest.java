@@ -0,0 +1,330 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.replica.impl.JDBCRC;
+import edu.isi.pegasus.planner.catalog.replica.impl.SimpleFile;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/** A JUnit Test to test the parallel insertion of mappings into the replica catalog. */
+public class BulkInsertTest {
+
+    private static final int THREADS = 4;
+
+    private static final int BATCHES = 20;
+
+    private static final int BATCH_SIZE = 250;
+
+    private static final String SQLITE_DRIVER = "org.sqlite.JDBC";
+
+    private LogManager mLogger;
+
+    private PegasusBag mBag;
+
+    private File mFile;
+
+    /** The LFNs inserted across all the connections. */
+    private Set<String> mInserted;
+
+    /** The number of inserts in progress, and the maximum seen. */
+    private AtomicInteger mConcurrent;
+
+    private AtomicInteger mMaxConcurrent;
+
+    /** The LFNs of the inserts in progress, and the number of times an LFN was in two. */
+    private Set<String> mInProgress;
+
+    private AtomicInteger mOverlaps;
+
+    @Before
+    public void setUp() throws IOException {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        mLogger = new DefaultTestSetup().loadLogger(props);
+        mLogger.setLevel(LogManager.INFO_MESSAGE_LEVEL);
+        mLogger.logEventStart("test.planner.client.BulkInsert", "setup", "0");
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
+        mFile = File.createTempFile("bulk-insert", ".rc");
+        mInserted = ConcurrentHashMap.newKeySet();
+        mConcurrent = new AtomicInteger(0);
+        mMaxConcurrent = new AtomicInteger(0);
+        mInProgress = ConcurrentHashMap.newKeySet();
+        mOverlaps = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testInsertOverConnectionPerThread() throws Exception {
+        List<RecordingCatalog> connections = new ArrayList();
+        BulkInsert bulk =
+                new BulkInsert(
+                        () -> {
+                            RecordingCatalog catalog = new RecordingCatalog();
+                            synchronized (connections) {
+                                connections.add(catalog);
+                            }
+                            return catalog;
+                        },
+                        THREADS,
+                        mLogger);
+        for (int i = 0; i < BATCHES; i++) {
+            this.submit(bulk, this.batch(i));
+        }
+
+        assertEquals(BATCHES * BATCH_SIZE, bulk.close());
+        assertEquals(BATCHES * BATCH_SIZE, mInserted.size());
+        assertEquals(BATCHES * THREADS, bulk.getBatches());
+        assertEquals(0, bulk.getFailedBatches());
+
+        // a connection is never shared between inserts in progress
+        assertTrue(mMaxConcurrent.get() <= THREADS);
+        assertEquals(connections.size(), bulk.getConnections());
+        assertTrue(connections.size() <= THREADS);
+        for (RecordingCatalog catalog : connections) {
+            assertTrue(catalog.isClosed());
+        }
+    }
+
+    @Test
+    public void testFailedBatchesDoNotStopInsert() throws Exception {
+        BulkInsert bulk = new BulkInsert(() -> new RecordingCatalog(), THREADS, mLogger);
+        for (int i = 0; i < BATCHES; i++) {
+            final int batch = i;
+            bulk.submit(
+                    i % THREADS,
+                    () -> {
+                        if (batch == 3) {
+                            throw new IllegalArgumentException("Invalid mapping in batch " + batch);
+                        }
+                        return this.batch(batch);
+                    });
+        }
+
+        assertEquals((BATCHES - 1) * BATCH_SIZE, bulk.close());
+        assertEquals(1, bulk.getFailedBatches());
+        assertFalse(mInserted.contains("f.3.0"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSubmitAfterClose() throws Exception {
+        BulkInsert bulk = new BulkInsert(() -> new RecordingCatalog(), THREADS, mLogger);
+        bulk.close();
+        bulk.submit(0, () -> this.batch(0));
+    }
+
+    @Test
+    public void testSameLFNIsNeverInsertedConcurrently() throws Exception {
+        BulkInsert bulk = new BulkInsert(() -> new RecordingCatalog(), THREADS, mLogger);
+        // every batch maps the same lfns
+        for (int i = 0; i < BATCHES; i++) {
+            this.submit(bulk, this.batch(0));
+        }
+
+        assertEquals(BATCHES * BATCH_SIZE, bulk.close());
+        assertEquals(0, bulk.getFailedBatches());
+        assertEquals(0, mOverlaps.get());
+        // the lanes are still inserted in parallel
+        assertTrue(mMaxConcurrent.get() > 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        new BulkInsert(() -> new RecordingCatalog(), 0, mLogger);
+    }
+
+    @Test
+    public void testSQLiteBackend() throws Exception {
+        Assume.assumeTrue(isClassAvailable(SQLITE_DRIVER));
+        File db = new File(mFile.getParentFile(), mFile.getName() + ".db");
+        String url = "jdbc:sqlite:" + db.getAbsolutePath();
+        this.createReplicaCatalogSchema(url);
+        // the pragmas JDBCRC sets when connecting from properties
+        String connect = url + "?foreign_keys=true&busy_timeout=30000";
+
+        try {
+            BulkInsert bulk =
+                    new BulkInsert(
+                            () -> new JDBCRC(SQLITE_DRIVER, connect, null, null), THREADS, mLogger);
+            for (int i = 0; i < BATCHES; i++) {
+                this.submit(bulk, this.batch(i));
+            }
+            // the same mappings again, in other batches than the first time
+            for (int i = 0; i < BATCHES; i += 2) {
+                Map<String, Collection<ReplicaCatalogEntry>> entries = this.batch(i);
+                entries.putAll(this.batch(i + 1));
+                this.submit(bulk, entries);
+            }
+            assertEquals(2 * BATCHES * BATCH_SIZE, bulk.close());
+            assertEquals(0, bulk.getFailedBatches());
+            mLogger.log(
+                    "Inserted "
+                            + bulk.getInserted()
+                            + " entries in "
+                            + bulk.getElapsedTime()
+                            + " ms over "
+                            + bulk.getConnections()
+                            + " connections",
+                    LogManager.INFO_MESSAGE_LEVEL);
+
+            ReplicaCatalog catalog = new JDBCRC(SQLITE_DRIVER, connect, null, null);
+            assertEquals("file://f.7.42", catalog.lookup("f.7.42", "local"));
+            catalog.close();
+            try (Connection connection = DriverManager.getConnection(url);
+                    Statement st = connection.createStatement()) {
+                assertEquals(BATCHES * BATCH_SIZE, count(st, "rc_lfn"));
+                assertEquals(BATCHES * BATCH_SIZE, count(st, "rc_pfn"));
+            }
+        } finally {
+            db.delete();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        mFile.delete();
+    }
+
+    /**
+     * Submits the entries to the lanes of their LFNs, one batch per lane.
+     *
+     * @param bulk the bulk insert
+     * @param entries the entries indexed by LFN
+     */
+    private void submit(BulkInsert bulk, Map<String, Collection<ReplicaCatalogEntry>> entries)
+            throws InterruptedException {
+        List<Map<String, Collection<ReplicaCatalogEntry>>> lanes = new ArrayList();
+        for (int lane = 0; lane < bulk.getLanes(); lane++) {
+            lanes.add(new HashMap());
+        }
+        for (Map.Entry<String, Collection<ReplicaCatalogEntry>> entry : entries.entrySet()) {
+            lanes.get(bulk.getLane(entry.getKey())).put(entry.getKey(), entry.getValue());
+        }
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            Map<String, Collection<ReplicaCatalogEntry>> batch = lanes.get(lane);
+            if (!batch.isEmpty()) {
+                bulk.submit(lane, () -> batch);
+            }
+        }
+    }
+
+    /**
+     * Creates the tables of the replica catalog, as pegasus-db-admin does for SQLite.
+     *
+     * @param url the jdbc url of the database
+     */
+    private void createReplicaCatalogSchema(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement st = connection.createStatement()) {
+            st.executeUpdate(
+                    "CREATE TABLE rc_lfn (lfn_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + "lfn VARCHAR(245) NOT NULL, CONSTRAINT UNIQUE_LFN UNIQUE (lfn))");
+            st.executeUpdate(
+                    "CREATE TABLE rc_pfn (pfn_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + "lfn_id INTEGER NOT NULL REFERENCES rc_lfn(lfn_id) ON DELETE CASCADE, "
+                            + "pfn VARCHAR(245) NOT NULL, site VARCHAR(245), "
+                            + "CONSTRAINT UNIQUE_PFN UNIQUE (lfn_id, pfn, site))");
+            st.executeUpdate(
+                    "CREATE TABLE rc_meta (lfn_id INTEGER "
+                            + "REFERENCES rc_lfn(lfn_id) ON DELETE CASCADE, "
+                            + "`key` VARCHAR(245) NOT NULL, value VARCHAR(245) NOT NULL, "
+                            + "PRIMARY KEY (lfn_id, `key`))");
+        }
+    }
+
+    private static int count(Statement st, String table) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static boolean isClassAvailable(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private Map<String, Collection<ReplicaCatalogEntry>> batch(int batch) {
+        Map<String, Collection<ReplicaCatalogEntry>> entries = new HashMap();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            String lfn = "f." + batch + "." + i;
+            Collection<ReplicaCatalogEntry> c = new ArrayList();
+            c.add(new ReplicaCatalogEntry("file://" + lfn, "local"));
+            entries.put(lfn, c);
+        }
+        return entries;
+    }
+
+    /**
+     * An in memory catalog, that records the LFNs inserted and the number of inserts in progress.
+     */
+    private class RecordingCatalog extends SimpleFile {
+
+        RecordingCatalog() {
+            this.connect(mFile.getAbsolutePath());
+            this.setReadOnly(true);
+        }
+
+        public int insert(Map x) {
+            mMaxConcurrent.accumulateAndGet(mConcurrent.incrementAndGet(), Math::max);
+            for (Object lfn : x.keySet()) {
+                if (!mInProgress.add((String) lfn)) {
+                    mOverlaps.incrementAndGet();
+                }
+            }
+            try {
+                int result = super.insert(x);
+                mInserted.addAll(x.keySet());
+                // give the other workers a chance to overlap
+                Thread.sleep(5);
+                return result;
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                mInProgress.removeAll(x.keySet());
+                mConcurrent.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** A JUnit Test to test the execution of workflows by the LocalExecutor. */
+public class LocalExecutorTest {
+
+    private File mDirectory;
+
+    private PrintStream mOut;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("local-executor").toFile();
+        mOut = new PrintStream(new ByteArrayOutputStream());
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : mDirectory.listFiles()) {
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void testParentsExecutedBeforeChildren() throws IOException {
+        // diamond a -> b, a -> c, b -> d, c -> d
+        List<LocalExecutor.Task> tasks = new LinkedList<LocalExecutor.Task>();
+        tasks.add(task("a", "touch a.done"));
+        tasks.add(task("b", "test -e a.done && touch b.done", "a"));
+        tasks.add(task("c", "test -e a.done && touch c.done", "a"));
+        tasks.add(task("d", "test -e b.done -a -e c.done && touch d.done", "b", "c"));
+
+        StringWriter jobstate = new StringWriter();
+        assertEquals(0, new LocalExecutor(tasks, jobstate, 2, mOut).execute());
+        assertTrue(new File(mDirectory, "d.done").exists());
+
+        List<String> lines = Arrays.asList(jobstate.toString().split("\n"));
+        assertEquals("INTERNAL *** SHELL_SCRIPT_STARTED ***", lines.get(0));
+        assertEquals("INTERNAL *** SHELL_SCRIPT_FINISHED 0 ***", lines.get(lines.size() - 1));
+        // 4 events per job
+        assertEquals(18, lines.size());
+        for (String line : lines.subList(1, lines.size() - 1)) {
+            assertTrue(line, line.matches("\\d+ [abcd] [A-Z_]+ - local"));
+        }
+        assertTrue(indexOf(lines, "a JOB_SUCCESS") < indexOf(lines, "b SUBMIT"));
+        assertTrue(indexOf(lines, "c JOB_SUCCESS") < indexOf(lines, "d SUBMIT"));
+    }
+
+    @Test
+    public void testFailureStopsWorkflow() throws IOException {
+        List<LocalExecutor.Task> tasks = new LinkedList<LocalExecutor.Task>();
+        tasks.add(task("a", "exit 3"));
+        tasks.add(task("b", "touch b.done", "a"));
+
+        StringWriter jobstate = new StringWriter();
+        assertEquals(3, new LocalExecutor(tasks, jobstate, 2, mOut).execute());
+        assertFalse(new File(mDirectory, "b.done").exists());
+        String log = jobstate.toString();
+        assertTrue(log.contains(" a JOB_FAILURE - local"));
+        assertFalse(log.contains(" b SUBMIT"));
+        assertTrue(log.endsWith("INTERNAL *** SHELL_SCRIPT_FINISHED 3 ***\n"));
+    }
+
+    @Test
+    public void testPostScriptExitcodeChecked() throws IOException {
+        // job fails, but the postscript decides the outcome
+        LocalExecutor.Task a = task("a", "exit 1");
+        a.setPostScript(task("a", "echo post"));
+
+        StringWriter jobstate = new StringWriter();
+        assertEquals(0, new LocalExecutor(Arrays.asList(a), jobstate, 1, mOut).execute());
+        String log = jobstate.toString();
+        assertTrue(log.contains(" a POST_SCRIPT_STARTED - local"));
+        assertTrue(log.contains(" a POST_SCRIPT_SUCCESS - local"));
+        assertFalse(log.contains("JOB_TERMINATED"));
+        assertTrue(new File(mDirectory, "a.post.out").exists());
+    }
+
+    @Test
+    public void testRelativePathsResolvedAgainstJobDirectory() throws IOException {
+        LocalExecutor.Task a = task("a", "cat > a.done");
+        a.setExecutable("./a.sh");
+        a.setArguments("");
+        a.setStdIn("a.in");
+        Files.write(new File(mDirectory, "a.in").toPath(), "in".getBytes(StandardCharsets.UTF_8));
+
+        StringWriter jobstate = new StringWriter();
+        assertEquals(0, new LocalExecutor(Arrays.asList(a), jobstate, 1, mOut).execute());
+        assertEquals(
+                "in",
+                new String(
+                        Files.readAllBytes(new File(mDirectory, "a.done").toPath()),
+                        StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParse() {
+        String json =
+                "[{\"id\":\"a\",\"directory\":\"/tmp\",\"submit_dir\":\"/submit\","
+                        + "\"executable\":\"/bin/echo\",\"arguments\":\"x y\","
+                        + "\"env\":{\"K\":\"V\"},\"parents\":[],"
+                        + "\"postscript\":{\"directory\":\"/submit\",\"executable\":\"/bin/true\","
+                        + "\"arguments\":\"a.out\"}},"
+                        + "{\"id\":\"b\",\"directory\":\"/tmp\",\"submit_dir\":\"/submit\","
+                        + "\"executable\":\"/bin/echo\",\"stdin\":\"/submit/b.in\","
+                        + "\"parents\":[\"a\"]}]";
+        List<LocalExecutor.Task> tasks = LocalExecutor.parse(new StringReader(json));
+        assertEquals(2, tasks.size());
+        LocalExecutor.Task a = tasks.get(0);
+        assertEquals("a", a.getID());
+        assertEquals("x y", a.getArguments());
+        assertEquals("V", a.getEnvironment().get("K"));
+        assertNull(a.getStdIn());
+        assertEquals("a", a.getPostScript().getID());
+        assertEquals("/bin/true", a.getPostScript().getExecutable());
+        LocalExecutor.Task b = tasks.get(1);
+        assertEquals("", b.getArguments());
+        assertEquals("/submit/b.in", b.getStdIn());
+        assertEquals(Arrays.asList("a"), b.getParents());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownParent() {
+        new LocalExecutor(Arrays.asList(task("b", "true", "a")), new StringWriter(), 1, mOut)
+                .execute();
+    }
+
+    /**
+     * Creates a job that runs a shell command, written out to a script as the arguments are split
+     * on whitespace by the executor.
+     */
+    private LocalExecutor.Task task(String id, String command, String... parents) {
+        File script = new File(mDirectory, id + ".sh");
+        if (script.exists()) {
+            script = new File(mDirectory, id + ".post.sh");
+        }
+        try {
+            Files.write(
+                    script.toPath(),
+                    ("#!/bin/sh\n" + command + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        script.setExecutable(true);
+
+        LocalExecutor.Task task = new LocalExecutor.Task(id);
+        task.setDirectory(mDirectory.getAbsolutePath());
+        task.setSubmitDirectory(mDirectory.getAbsolutePath());
+        task.setExecutable("/bin/sh");
+        task.setArguments(script.getAbsolutePath());
+        for (String parent : parents) {
+            task.addParent(parent);
+        }
+        return task;
+    }
+
+    private int indexOf(List<String> lines, String suffix) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).contains(" " + suffix + " ")) {
+                return i;
+            }
+        }
+        fail("No entry for " + suffix);
+        return -1;
+    }
+}
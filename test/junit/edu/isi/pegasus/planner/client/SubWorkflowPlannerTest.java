@@ -0,0 +1,210 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** A JUnit Test to test the ordering of the sub workflows planned in process. */
+public class SubWorkflowPlannerTest {
+
+    private LogManager mLogger;
+
+    @Before
+    public void setUp() {
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.logEventStart("test.planner.subworkflow.planner", "setup", "0");
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testParentsPlannedBeforeChildren() {
+        RecordingPlanner planner = new RecordingPlanner(mLogger, 4, null);
+        // diamond a -> b, a -> c, b -> d, c -> d and an independent e
+        add(planner, "a");
+        add(planner, "b", "a");
+        add(planner, "c", "a");
+        add(planner, "e");
+        add(planner, "d", "b", "c");
+        assertEquals(5, planner.size());
+        assertTrue(planner.contains("d"));
+        assertFalse(planner.contains("f"));
+
+        planner.planAll();
+
+        assertEquals(5, planner.mCompleted.size());
+        assertBefore(planner, "a", "b");
+        assertBefore(planner, "a", "c");
+        assertBefore(planner, "b", "d");
+        assertBefore(planner, "c", "d");
+    }
+
+    @Test
+    public void testPlannedOnCallingThread() {
+        RecordingPlanner planner = new RecordingPlanner(mLogger, 1, null);
+        add(planner, "a");
+        add(planner, "b");
+        add(planner, "c", "a", "b");
+        planner.planAll();
+
+        assertEquals(Collections.singleton(Thread.currentThread()), planner.mThreads);
+        assertEquals(Arrays.asList("a", "b", "c"), planner.mCompleted);
+    }
+
+    @Test
+    public void testPlannedConcurrently() {
+        RecordingPlanner planner = new RecordingPlanner(mLogger, 2, null);
+        add(planner, "a");
+        add(planner, "b");
+        planner.planAll();
+
+        assertEquals(2, planner.mThreads.size());
+        assertFalse(planner.mThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void testThreadLogger() throws Exception {
+        final LogManager[] loaded = new LogManager[2];
+        final LogManager logger =
+                LogManagerFactory.loadNonSingletonInstance(
+                        PegasusProperties.nonSingletonInstance());
+        Thread thread =
+                new Thread(
+                        () -> {
+                            LogManagerFactory.setThreadInstance(logger);
+                            loaded[0] = LogManagerFactory.loadSingletonInstance();
+                            LogManagerFactory.setThreadInstance(null);
+                            loaded[1] = LogManagerFactory.loadSingletonInstance();
+                        });
+        thread.start();
+        thread.join();
+
+        // the logger set for a thread is not seen by the other threads
+        assertSame(logger, loaded[0]);
+        assertSame(mLogger, loaded[1]);
+        assertSame(mLogger, LogManagerFactory.loadSingletonInstance());
+    }
+
+    @Test
+    public void testFailurePropagated() {
+        RecordingPlanner planner = new RecordingPlanner(mLogger, 2, "b");
+        add(planner, "a");
+        add(planner, "b", "a");
+        add(planner, "c", "b");
+        try {
+            planner.planAll();
+            fail("Expected planning of sub workflow b to fail");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("DAX job b"));
+        }
+        // child of the failed sub workflow is not planned
+        assertFalse(planner.mCompleted.contains("c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownParent() {
+        RecordingPlanner planner = new RecordingPlanner(mLogger, 2, null);
+        add(planner, "b", "a");
+    }
+
+    @Test
+    public void testSiteCatalogEntriesCloned() {
+        SubWorkflowPlanner planner = new SubWorkflowPlanner(mLogger, 1);
+        File source = new File("sites.yml");
+        assertNull(planner.getSiteCatalogEntries(source));
+
+        SiteCatalogEntry entry = new SiteCatalogEntry("local");
+        planner.addSiteCatalogEntries(source, Collections.singletonList(entry));
+        List<SiteCatalogEntry> entries = planner.getSiteCatalogEntries(source);
+        assertEquals(1, entries.size());
+        assertEquals("local", entries.get(0).getSiteHandle());
+        assertNotSame(entry, entries.get(0));
+        assertNotSame(entries.get(0), planner.getSiteCatalogEntries(source).get(0));
+    }
+
+    private void add(SubWorkflowPlanner planner, String id, String... parents) {
+        planner.add(
+                id,
+                new PlannerOptions(),
+                "pegasus.properties",
+                new Properties(),
+                id + ".pre.log",
+                new File("."),
+                Arrays.asList(parents));
+    }
+
+    private void assertBefore(RecordingPlanner planner, String parent, String child) {
+        assertTrue(
+                parent + " should complete before " + child + " starts",
+                planner.mEnd.get(parent) <= planner.mStart.get(child));
+    }
+
+    /** Records the order in which the sub workflows are planned, instead of planning them. */
+    private static class RecordingPlanner extends SubWorkflowPlanner {
+
+        private final Map<String, Long> mStart = new ConcurrentHashMap();
+
+        private final Map<String, Long> mEnd = new ConcurrentHashMap();
+
+        private final List<String> mCompleted = new CopyOnWriteArrayList();
+
+        private final Set<Thread> mThreads = new CopyOnWriteArraySet();
+
+        private final String mFail;
+
+        RecordingPlanner(LogManager logger, int threads, String fail) {
+            super(logger, threads);
+            mFail = fail;
+        }
+
+        @Override
+        protected void plan(SubWorkflow subWorkflow) throws IOException {
+            mStart.put(subWorkflow.mJobID, System.nanoTime());
+            mThreads.add(Thread.currentThread());
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (subWorkflow.mJobID.equals(mFail)) {
+                throw new IOException("failed " + subWorkflow.mJobID);
+            }
+            mCompleted.add(subWorkflow.mJobID);
+            mEnd.put(subWorkflow.mJobID, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.cluster.aggregator;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.AggregatedJob;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class to test the input files generated by the job aggregators for clustered jobs, that
+ * contain other clustered jobs.
+ */
+public class RecursiveClusteringInputTest {
+
+    private File mDirectory;
+
+    private LogManager mLogger;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("recursive-cluster").toFile();
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        mLogger = new DefaultTestSetup().loadLogger(props);
+        mLogger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : mDirectory.listFiles()) {
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void testSeqExecNestedTasks() throws IOException {
+        SeqExec aggregator = this.load(new SeqExec());
+        AggregatedJob job = clusteredJob("merge", 2, 3);
+
+        // the tasks of the nested jobs in topological order, with the task
+        // ids renumbered across the nested jobs
+        List<String> expected = new LinkedList();
+        int taskid = 1;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                String id = "merge_" + i + "_" + j;
+                expected.add(
+                        Abstract.MONITORD_COMMENT_MARKER
+                                + " "
+                                + taskid++
+                                + " pegasus::preprocess:4.0 ID"
+                                + id
+                                + " ");
+                expected.add("/usr/bin/preprocess -i " + id + ".in -o " + id + ".out");
+            }
+        }
+        File stdin = aggregator.writeOutInputFileForJobAggregator(job);
+        assertEquals(expected, Files.readAllLines(stdin.toPath()));
+        assertEquals(1, mDirectory.listFiles().length);
+    }
+
+    @Test
+    public void testSeqExecDeeplyNestedTasks() throws IOException {
+        SeqExec aggregator = this.load(new SeqExec());
+        AggregatedJob job = clusteredJob("merge", 3, 3);
+
+        File stdin = aggregator.writeOutInputFileForJobAggregator(job);
+        List<String> lines = Files.readAllLines(stdin.toPath());
+        // two lines per task
+        assertEquals(2 * 27, lines.size());
+        assertEquals(
+                Abstract.MONITORD_COMMENT_MARKER + " 1 pegasus::preprocess:4.0 IDmerge_0_0_0 ",
+                lines.get(0));
+        assertEquals(
+                Abstract.MONITORD_COMMENT_MARKER + " 27 pegasus::preprocess:4.0 IDmerge_2_2_2 ",
+                lines.get(52));
+        assertEquals(1, mDirectory.listFiles().length);
+    }
+
+    @Test
+    public void testSeqExecDeletesNestedInputFiles() throws IOException {
+        SeqExec aggregator = this.load(new SeqExec());
+        AggregatedJob job = clusteredJob("merge", 2, 2);
+        // the input files written out when the nested clustered jobs are rendered
+        for (Iterator<GraphNode> it = job.nodeIterator(); it.hasNext(); ) {
+            new File(mDirectory, it.next().getID() + ".in").createNewFile();
+        }
+
+        aggregator.writeOutInputFileForJobAggregator(job);
+        assertArrayEquals(new String[] {"merge.in"}, mDirectory.list());
+    }
+
+    @Test
+    public void testPMCNestedTasks() throws IOException {
+        MPIExec aggregator = this.load(new MPIExec());
+        AggregatedJob job = clusteredJob("merge", 2, 3);
+
+        File stdin = aggregator.writeOutInputFileForJobAggregator(job);
+        List<String> lines = Files.readAllLines(stdin.toPath());
+        Set<String> tasks = tasks(lines);
+        List<String> edges = edges(lines);
+        assertEquals(9, tasks.size());
+        // the tasks of the nested clustered jobs have no comments
+        assertEquals(0, lines.stream().filter(l -> l.startsWith("#")).count());
+        // edges within the three nested jobs, and from the last task of a
+        // nested job to the first task of the next one
+        assertEquals(3 * 2 + 2, edges.size());
+        assertTrue(edges.contains("IDmerge_0_2 IDmerge_1_0"));
+        assertTrue(edges.contains("IDmerge_1_2 IDmerge_2_0"));
+        assertEdgesConnectTasks(tasks, edges);
+        assertEquals(1, mDirectory.listFiles().length);
+    }
+
+    @Test
+    public void testPMCEdgesFromNestedLeafTasks() throws IOException {
+        MPIExec aggregator = this.load(new MPIExec());
+        // a nested clustered job of two independent tasks, followed by a task
+        AggregatedJob nested = new AggregatedJob(2);
+        nested.setName("split");
+        nested.setLogicalID("split");
+        nested.add(task("split_0"));
+        nested.add(task("split_1"));
+        nested.setRelativeSubmitDirectory(".");
+        AggregatedJob job = new AggregatedJob(2);
+        job.setName("merge");
+        job.setLogicalID("merge");
+        job.add(nested);
+        job.add(task("merge_1"));
+        job.addEdge(nested.getLogicalID(), "IDmerge_1");
+        job.setRelativeSubmitDirectory(".");
+
+        File stdin = aggregator.writeOutInputFileForJobAggregator(job);
+        List<String> lines = Files.readAllLines(stdin.toPath());
+        Set<String> tasks = tasks(lines);
+        List<String> edges = edges(lines);
+        assertEquals(3, tasks.size());
+        assertEquals(2, edges.size());
+        assertTrue(edges.contains("IDsplit_0 IDmerge_1"));
+        assertTrue(edges.contains("IDsplit_1 IDmerge_1"));
+        assertEdgesConnectTasks(tasks, edges);
+    }
+
+    /** Asserts that both endpoints of every edge are ids of written out tasks. */
+    private static void assertEdgesConnectTasks(Set<String> tasks, List<String> edges) {
+        for (String edge : edges) {
+            for (String id : edge.split(" ")) {
+                assertTrue("EDGE " + edge + " refers to an unknown task " + id, tasks.contains(id));
+            }
+        }
+    }
+
+    /** Returns the ids of the TASK lines in a PMC input file. */
+    private static Set<String> tasks(List<String> lines) {
+        Set<String> tasks = new HashSet();
+        for (String line : lines) {
+            if (line.startsWith("TASK ")) {
+                assertTrue("Duplicate task " + line, tasks.add(line.split(" ")[1]));
+            }
+        }
+        return tasks;
+    }
+
+    /** Returns the parent and child ids of the EDGE lines in a PMC input file. */
+    private static List<String> edges(List<String> lines) {
+        List<String> edges = new LinkedList();
+        for (String line : lines) {
+            if (line.startsWith("EDGE ")) {
+                edges.add(line.substring("EDGE ".length()));
+            }
+        }
+        return edges;
+    }
+
+    private <T extends Abstract> T load(T aggregator) {
+        aggregator.setDirectory(mDirectory.getAbsolutePath());
+        aggregator.mLogger = mLogger;
+        return aggregator;
+    }
+
+    /**
+     * Returns a clustered job nested to the depth passed, where each clustered job contains a chain
+     * of fanout jobs.
+     *
+     * @param id the id of the clustered job
+     * @param depth the depth of nesting. 1 means the clustered job contains only tasks
+     * @param fanout the number of jobs in each clustered job
+     * @return the clustered job
+     */
+    static AggregatedJob clusteredJob(String id, int depth, int fanout) {
+        AggregatedJob job = new AggregatedJob(fanout);
+        job.setName(id);
+        job.setLogicalID(id);
+        job.setJobType(Job.COMPUTE_JOB);
+        GraphNode previous = null;
+        for (int i = 0; i < fanout; i++) {
+            String childID = id + "_" + i;
+            Job child = (depth > 1) ? clusteredJob(childID, depth - 1, fanout) : task(childID);
+            // the nodes are identified by logical id as in AggregatedJob.add(Job)
+            GraphNode node = new GraphNode(child.getLogicalID(), child);
+            job.addNode(node);
+            if (previous != null) {
+                job.addEdge(previous, node);
+            }
+            previous = node;
+        }
+        job.setRelativeSubmitDirectory(".");
+        return job;
+    }
+
+    /**
+     * Returns a compute job that is a task in a clustered job.
+     *
+     * @param id the id of the job
+     * @return the job
+     */
+    static Job task(String id) {
+        Job task = new Job();
+        task.setName(id);
+        task.setLogicalID("ID" + id);
+        task.setTransformation("pegasus", "preprocess", "4.0");
+        task.setRemoteExecutable("/usr/bin/preprocess");
+        task.setArguments("-i " + id + ".in -o " + id + ".out");
+        task.setJobType(Job.COMPUTE_JOB);
+        return task;
+    }
+}
@@ -0,0 +1,630 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.code.generator;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogFormatter;
+import edu.isi.pegasus.common.logging.LogFormatterFactory;
+import edu.isi.pegasus.planner.code.CodeGeneratorException;
+import java.io.File;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assume;
+import org.junit.Test;
+
+/** A JUnit Test to test the rows the static stampede events are loaded as. */
+public class StampedeDatabaseTest {
+
+    private static final String UUID = "0d8ea7ad-5b35-4b38-bd5f-dd7d9ef3e1c5";
+
+    /**
+     * Creates the workflow database, or loads a .static.bp file into it the way pegasus-monitord
+     * does, sending the wf.plan event built from the braindump entries first.
+     */
+    private static final String MONITORD_LOADER =
+            String.join(
+                    "\n",
+                    "import sys",
+                    "from Pegasus.db import connection",
+                    "from Pegasus.db.workflow_loader import WorkflowLoader",
+                    "from Pegasus.netlogger.parsers.base import NLSimpleParser",
+                    "from Pegasus.tools import utils",
+                    "if sys.argv[1] == 'create':",
+                    "    connection.connect(sys.argv[2], create=True).close()",
+                    "    sys.exit(0)",
+                    "wf = dict(arg.split('=', 1) for arg in sys.argv[4:])",
+                    "loader = WorkflowLoader(sys.argv[2], batch=True)",
+                    "fixed = {'xwf__id': wf['wf_uuid'], 'root__xwf__id': wf['wf_uuid']}",
+                    "def send(event, kwargs):",
+                    "    kwargs.update(fixed)",
+                    "    d = {'event': 'stampede.' + event}",
+                    "    for k, v in kwargs.items():",
+                    "        d[k.replace('__', '.')] = v",
+                    "    loader.process(d)",
+                    "send('wf.plan', {'dax__label': wf['dax_label'],",
+                    "    'dag__file__name': wf['dag'], 'ts': 1600000000.0,",
+                    "    'submit__hostname': wf['submit_hostname'],",
+                    "    'submit__dir': wf['submit_dir'], 'user': wf['user'],",
+                    "    'argv': wf['planner_arguments'].strip('\" \\t\\n\\r'),",
+                    "    'planner__version': wf['planner_version']})",
+                    "send('static.start', {})",
+                    "parser = NLSimpleParser(parse_date=False)",
+                    "for line in open(sys.argv[3]):",
+                    "    keys = parser.parseLine(line)",
+                    "    event = keys.pop('event')",
+                    "    keys['ts'] = utils.epochdate(keys['ts'])",
+                    "    send(event, {k.replace('.id', '__id'): v for k, v in keys.items()})",
+                    "send('static.end', {})",
+                    "loader.finish()");
+
+    /** The queries for the rows loaded, that refer to other rows by their natural keys. */
+    private static final String[] LOADED_ROWS = {
+        "SELECT wf_uuid, dag_file_name, submit_hostname, submit_dir, planner_arguments, user,"
+                + " planner_version, dax_label, parent_wf_id, root_wf_id = wf_id FROM workflow",
+        "SELECT t.abs_task_id, t.transformation, t.argv, t.type_desc, j.exec_job_id FROM task t"
+                + " LEFT JOIN job j ON j.job_id = t.job_id ORDER BY 1",
+        "SELECT parent_abs_task_id, child_abs_task_id FROM task_edge ORDER BY 1, 2",
+        "SELECT exec_job_id, submit_file, type_desc, clustered, max_retries, executable, argv,"
+                + " task_count FROM job ORDER BY 1",
+        "SELECT parent_exec_job_id, child_exec_job_id FROM job_edge ORDER BY 1, 2",
+        "SELECT key, value FROM workflow_meta ORDER BY 1",
+        "SELECT t.abs_task_id, m.key, m.value FROM task_meta m JOIN task t"
+                + " ON t.task_id = m.task_id ORDER BY 1, 2",
+        "SELECT lfn FROM rc_lfn ORDER BY 1",
+        "SELECT l.lfn, m.key, m.value FROM rc_meta m JOIN rc_lfn l ON l.lfn_id = m.lfn_id"
+                + " ORDER BY 1, 2",
+        "SELECT t.abs_task_id, l.lfn FROM workflow_files f JOIN task t ON t.task_id = f.task_id"
+                + " JOIN rc_lfn l ON l.lfn_id = f.lfn_id ORDER BY 1, 2"
+    };
+
+    @Test
+    public void testDatabaseFile() {
+        assertTrue(StampedeDatabase.isSupported("sqlite:////tmp/submit/diamond-0.stampede.db"));
+        assertTrue(StampedeDatabase.isSupported("jdbc:sqlite:/tmp/workflow.db"));
+        assertFalse(StampedeDatabase.isSupported("mysql://user@host/stampede"));
+        assertFalse(StampedeDatabase.isSupported(null));
+
+        assertEquals(
+                new File("/tmp/submit/diamond-0.stampede.db"),
+                StampedeDatabase.getDatabaseFile("sqlite:////tmp/submit/diamond-0.stampede.db"));
+        assertEquals(
+                new File("relative.db"), StampedeDatabase.getDatabaseFile("sqlite:///relative.db"));
+        assertEquals(
+                new File("/tmp/workflow.db"),
+                StampedeDatabase.getDatabaseFile("jdbc:sqlite:/tmp/workflow.db?timeout=10"));
+    }
+
+    @Test
+    public void testWorkflowInserted() throws CodeGeneratorException {
+        RecordingConnection recorder = new RecordingConnection(false);
+        StampedeDatabase db = new StampedeDatabase(null, recorder.proxy(), workflow());
+        db.close();
+
+        assertEquals(4, recorder.mExecuted.size());
+        assertTrue(recorder.mExecuted.get(0).mSQL.startsWith("SELECT wf_id"));
+        Execution insert = recorder.mExecuted.get(1);
+        assertTrue(insert.mSQL.startsWith("INSERT INTO workflow("));
+        List<Object> row = insert.mRows.get(0);
+        assertEquals(UUID, row.get(0));
+        assertEquals("diamond-0.dag", row.get(1));
+        // planner arguments are unquoted
+        assertEquals("--dax diamond.yml", row.get(5));
+        assertEquals("diamond", row.get(9));
+        assertTrue(recorder.mExecuted.get(2).mSQL.startsWith("SELECT wf_id"));
+        assertTrue(recorder.mExecuted.get(3).mSQL.startsWith("UPDATE workflow SET root_wf_id"));
+        assertEquals(Arrays.asList((Object) 7L), recorder.mExecuted.get(3).mRows.get(0));
+        assertTrue(recorder.mCommitted);
+        assertTrue(recorder.mClosed);
+    }
+
+    @Test
+    public void testEventsBatchedInOrder() throws CodeGeneratorException {
+        RecordingConnection recorder = new RecordingConnection(true);
+        StampedeDatabase db = new StampedeDatabase(null, recorder.proxy(), workflow());
+        recorder.mExecuted.clear();
+
+        db.addEvent(
+                Stampede.JOB_EVENT_NAME,
+                UUID,
+                attributes(
+                        Stampede.JOB_ID_KEY, "preprocess_ID1",
+                        Stampede.JOB_SUBMIT_FILE_KEY, "00/00/preprocess_ID1.sub",
+                        Stampede.TYPE_KEY, "1",
+                        Stampede.TYPE_DESCRIPTION_KEY, "compute",
+                        Stampede.JOB_CLUSTERED_KEY, "0",
+                        Stampede.JOB_MAX_RETRIES_KEY, "3",
+                        Stampede.JOB_EXECUTABLE_KEY, "/bin/preprocess",
+                        Stampede.JOB_TASK_COUNT_KEY, "1"));
+        db.addEvent(
+                Stampede.TASK_MAP_EVENT_NAME,
+                UUID,
+                attributes(Stampede.JOB_ID_KEY, "preprocess_ID1", Stampede.TASK_ID_KEY, "ID1"));
+        db.addEvent(
+                Stampede.FILE_META_EVENT_NAME,
+                UUID,
+                attributes(
+                        Stampede.LFN_ID_KEY, "f.a",
+                        Stampede.METADATA_KEY, "size",
+                        Stampede.METADATA_VALUE_KEY, "1024"));
+        db.addEvent(
+                Stampede.FILE_META_EVENT_NAME,
+                UUID,
+                attributes(
+                        Stampede.LFN_ID_KEY, "f.b",
+                        Stampede.METADATA_KEY, "size",
+                        Stampede.METADATA_VALUE_KEY, "2048"));
+        db.addEvent(Stampede.WF_META_END_EVENT_NAME, UUID, attributes());
+        // nothing executed till the batch is full or the sink is closed
+        assertTrue(recorder.mExecuted.isEmpty());
+        db.close();
+
+        assertEquals(4, recorder.mExecuted.size());
+        Execution jobs = recorder.mExecuted.get(0);
+        assertTrue(jobs.mSQL.startsWith("INSERT INTO job("));
+        assertEquals(
+                Arrays.asList(
+                        (Object) 7L,
+                        "preprocess_ID1",
+                        "00/00/preprocess_ID1.sub",
+                        "compute",
+                        0,
+                        3,
+                        "/bin/preprocess",
+                        null,
+                        1),
+                jobs.mRows.get(0));
+        assertTrue(recorder.mExecuted.get(1).mSQL.startsWith("UPDATE task SET job_id"));
+        // the lfns are inserted before their metadata
+        Execution lfns = recorder.mExecuted.get(2);
+        assertTrue(lfns.mSQL.startsWith("INSERT OR IGNORE INTO rc_lfn"));
+        assertEquals(2, lfns.mRows.size());
+        Execution meta = recorder.mExecuted.get(3);
+        assertTrue(meta.mSQL.startsWith("INSERT OR REPLACE INTO rc_meta"));
+        assertEquals(Arrays.asList((Object) "size", "2048", "f.b"), meta.mRows.get(1));
+        assertTrue(recorder.mCommitted);
+    }
+
+    @Test
+    public void testLoadedAsMonitordLoads() throws Exception {
+        Assume.assumeTrue(isClassAvailable(StampedeDatabase.SQLITE_DRIVER));
+        Assume.assumeTrue(python("-c", "import sqlalchemy, Pegasus.db.workflow_loader") == 0);
+
+        File dir = Files.createTempDirectory("stampede").toFile();
+        File direct = new File(dir, "direct.db");
+        File monitord = new File(dir, "monitord.db");
+        File bp = new File(dir, "diamond-0.static.bp");
+        Map<String, String> workflow = this.workflow();
+        workflow.put(Braindump.SUBMIT_HOSTNAME_KEY, "submit.example.edu");
+        workflow.put(Braindump.SUBMIT_DIR_KEY, dir.getAbsolutePath());
+        workflow.put(Braindump.USER_KEY, "pegasus");
+        workflow.put(Braindump.PLANNER_VERSION_KEY, "5.0.0dev");
+        try {
+            // the same events go directly into one database, and through
+            // the .static.bp file that monitord parses into the other
+            assertEquals(
+                    0,
+                    python(
+                            "-c",
+                            MONITORD_LOADER,
+                            "create",
+                            StampedeDatabase.SQLITE_URL_PREFIX + direct));
+            StampedeDatabase db =
+                    new StampedeDatabase(StampedeDatabase.SQLITE_URL_PREFIX + direct, workflow);
+            LogFormatter formatter = LogFormatterFactory.loadInstance("Netlogger");
+            try (PrintWriter writer = new PrintWriter(bp)) {
+                for (Object[] event : events()) {
+                    String name = (String) event[0];
+                    Map<String, String> attributes = attributes((String[]) event[1]);
+                    db.addEvent(name, UUID, attributes);
+
+                    formatter.addEvent(name, Stampede.WORKFLOW_ID_KEY, UUID);
+                    for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                        formatter.add(attribute.getKey(), attribute.getValue());
+                    }
+                    writer.println(formatter.createLogMessage());
+                    formatter.popEvent();
+                }
+            }
+            db.close();
+
+            List<String> args = new LinkedList();
+            args.addAll(
+                    Arrays.asList(
+                            "-c",
+                            MONITORD_LOADER,
+                            "load",
+                            StampedeDatabase.SQLITE_URL_PREFIX + monitord,
+                            bp.getAbsolutePath()));
+            for (Map.Entry<String, String> entry : workflow.entrySet()) {
+                args.add(entry.getKey() + "=" + entry.getValue());
+            }
+            assertEquals(0, python(args.toArray(new String[0])));
+
+            for (String query : LOADED_ROWS) {
+                List<List<String>> expected = rows(monitord, query);
+                assertFalse(query, expected.isEmpty());
+                assertEquals(query, expected, rows(direct, query));
+            }
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testUnsupportedEventRolledBack() throws CodeGeneratorException {
+        RecordingConnection recorder = new RecordingConnection(true);
+        StampedeDatabase db = new StampedeDatabase(null, recorder.proxy(), workflow());
+        try {
+            db.addEvent("xwf.start", UUID, attributes());
+            fail("Expected unsupported event to fail");
+        } catch (CodeGeneratorException e) {
+            assertTrue(e.getMessage().contains("xwf.start"));
+        }
+        assertFalse(recorder.mCommitted);
+        assertTrue(recorder.mRolledBack);
+        assertTrue(recorder.mClosed);
+    }
+
+    private Map<String, String> workflow() {
+        Map<String, String> workflow = new LinkedHashMap();
+        workflow.put(Braindump.UUID_KEY, UUID);
+        workflow.put(StampedeDatabase.DAG_FILE_KEY, "diamond-0.dag");
+        workflow.put(Braindump.PLANNER_ARGUMENTS_KEY, "\"--dax diamond.yml\"");
+        workflow.put(Braindump.DAX_LABEL_KEY, "diamond");
+        return workflow;
+    }
+
+    /**
+     * Returns the static events of a diamond workflow, in the order the generator adds them. The
+     * intermediate files have metadata generated for both the jobs that use them.
+     */
+    private static Object[][] events() {
+        List<Object[]> events = new LinkedList();
+        String[][] tasks = {
+            {"ID1", "preprocess", "-a preprocess -i f.a -o f.b1 f.b2"},
+            {"ID2", "findrange", "-a findrange -i f.b1 -o f.c1 -m 'fast'"},
+            {"ID3", "findrange", "-a findrange -i f.b2 -o f.c2 -m 'fast'"},
+            {"ID4", "analyze", "-a analyze -i f.c1 f.c2 -o f.d"}
+        };
+        for (String[] task : tasks) {
+            events.add(
+                    event(
+                            Stampede.TASK_EVENT_NAME,
+                            Stampede.TASK_ID_KEY,
+                            task[0],
+                            Stampede.TYPE_KEY,
+                            "1",
+                            Stampede.TYPE_DESCRIPTION_KEY,
+                            "compute",
+                            Stampede.TASK_TRANSFORMATION_KEY,
+                            "diamond::" + task[1] + ":4.0",
+                            Stampede.ARGUMENTS_KEY,
+                            task[2]));
+        }
+        String[][] edges = {{"ID1", "ID2"}, {"ID1", "ID3"}, {"ID2", "ID4"}, {"ID3", "ID4"}};
+        for (String[] edge : edges) {
+            events.add(
+                    event(
+                            Stampede.TASK_EDGE_EVENT_NAME,
+                            Stampede.PARENT_TASK_ID_KEY,
+                            edge[0],
+                            Stampede.CHILD_TASK_ID_KEY,
+                            edge[1]));
+        }
+        for (String[] task : tasks) {
+            String job = task[1] + "_" + task[0];
+            events.add(
+                    event(
+                            Stampede.JOB_EVENT_NAME,
+                            Stampede.JOB_ID_KEY,
+                            job,
+                            Stampede.JOB_SUBMIT_FILE_KEY,
+                            "00/00/" + job + ".sub",
+                            Stampede.TYPE_KEY,
+                            "1",
+                            Stampede.TYPE_DESCRIPTION_KEY,
+                            "compute",
+                            Stampede.JOB_CLUSTERED_KEY,
+                            "0",
+                            Stampede.JOB_MAX_RETRIES_KEY,
+                            "3",
+                            Stampede.JOB_EXECUTABLE_KEY,
+                            "/usr/bin/pegasus-keg",
+                            Stampede.ARGUMENTS_KEY,
+                            task[2],
+                            Stampede.JOB_TASK_COUNT_KEY,
+                            "1"));
+        }
+        for (String[] task : tasks) {
+            events.add(
+                    event(
+                            Stampede.TASK_MAP_EVENT_NAME,
+                            Stampede.JOB_ID_KEY,
+                            task[1] + "_" + task[0],
+                            Stampede.TASK_ID_KEY,
+                            task[0]));
+        }
+        for (String[] edge : edges) {
+            events.add(
+                    event(
+                            Stampede.JOB_EDGE_EVENT_NAME,
+                            Stampede.PARENT_JOB_ID_KEY,
+                            tasks[index(edge[0])][1] + "_" + edge[0],
+                            Stampede.CHILD_JOB_ID_KEY,
+                            tasks[index(edge[1])][1] + "_" + edge[1]));
+        }
+
+        events.add(event(Stampede.WF_META_START_EVENT_NAME));
+        events.add(
+                event(
+                        Stampede.WF_META_EVENT_NAME,
+                        Stampede.METADATA_KEY,
+                        "creator",
+                        Stampede.METADATA_VALUE_KEY,
+                        "pegasus"));
+        String[][] files = {{"ID1", "f.b1"}, {"ID2", "f.b1"}, {"ID3", "f.b2"}, {"ID4", "f.d"}};
+        for (String[] file : files) {
+            events.add(
+                    event(
+                            Stampede.TASK_META_EVENT_NAME,
+                            Stampede.TASK_ID_KEY,
+                            file[0],
+                            Stampede.METADATA_KEY,
+                            "time",
+                            Stampede.METADATA_VALUE_KEY,
+                            "60"));
+            events.add(
+                    event(
+                            Stampede.FILE_META_EVENT_NAME,
+                            Stampede.LFN_ID_KEY,
+                            file[1],
+                            Stampede.METADATA_KEY,
+                            "size",
+                            Stampede.METADATA_VALUE_KEY,
+                            "1024"));
+            events.add(
+                    event(
+                            Stampede.FILE_MAP_EVENT_NAME,
+                            Stampede.TASK_ID_KEY,
+                            file[0],
+                            Stampede.LFN_ID_KEY,
+                            file[1]));
+        }
+        events.add(event(Stampede.WF_META_END_EVENT_NAME));
+        return events.toArray(new Object[0][]);
+    }
+
+    private static Object[] event(String name, String... attributes) {
+        return new Object[] {name, attributes};
+    }
+
+    private static int index(String taskID) {
+        return Integer.parseInt(taskID.substring(2)) - 1;
+    }
+
+    /**
+     * Returns the rows for a query on a SQLite database, with the values as strings.
+     *
+     * @param database the database file
+     * @param query the query
+     * @return the rows
+     */
+    private static List<List<String>> rows(File database, String query) throws Exception {
+        List<List<String>> rows = new LinkedList();
+        try (Connection c =
+                        DriverManager.getConnection(
+                                StampedeDatabase.JDBC_SQLITE_URL_PREFIX
+                                        + database.getAbsolutePath());
+                Statement s = c.createStatement();
+                ResultSet rs = s.executeQuery(query)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                List<String> row = new LinkedList();
+                for (int i = 1; i <= columns; i++) {
+                    row.add(rs.getString(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Runs python with the Pegasus python modules of the source tree, and the externals they depend
+     * on, on its path.
+     *
+     * @param args the arguments
+     * @return the exit status, or -1 if python could not be run
+     */
+    private static int python(String... args) {
+        List<String> command = new LinkedList();
+        command.add("python3");
+        command.addAll(Arrays.asList(args));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        StringBuilder path = new StringBuilder();
+        path.append(new File("packages/pegasus-common/src").getAbsolutePath())
+                .append(File.pathSeparator)
+                .append(new File("packages/pegasus-python/src").getAbsolutePath());
+        String externals = System.getProperty("externals.python.path");
+        if (externals != null) {
+            path.append(File.pathSeparator).append(externals);
+        }
+        builder.environment().put("PYTHONPATH", path.toString());
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        try {
+            return builder.start().waitFor();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static boolean isClassAvailable(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private Map<String, String> attributes(String... pairs) {
+        Map<String, String> attributes = new LinkedHashMap();
+        for (int i = 0; i < pairs.length; i += 2) {
+            attributes.put(pairs[i], pairs[i + 1]);
+        }
+        return attributes;
+    }
+
+    /** A statement executed against the connection, along with the rows bound to it. */
+    private static class Execution {
+
+        private final String mSQL;
+
+        private final List<List<Object>> mRows;
+
+        Execution(String sql, List<List<Object>> rows) {
+            mSQL = sql;
+            mRows = rows;
+        }
+    }
+
+    /** Records the statements executed on a connection, instead of executing them. */
+    private static class RecordingConnection {
+
+        private final List<Execution> mExecuted = new LinkedList();
+
+        private boolean mWorkflowExists;
+
+        private boolean mCommitted;
+
+        private boolean mRolledBack;
+
+        private boolean mClosed;
+
+        RecordingConnection(boolean workflowExists) {
+            mWorkflowExists = workflowExists;
+        }
+
+        Connection proxy() {
+            return (Connection)
+                    Proxy.newProxyInstance(
+                            Connection.class.getClassLoader(),
+                            new Class[] {Connection.class},
+                            (proxy, method, args) -> {
+                                switch (method.getName()) {
+                                    case "prepareStatement":
+                                        return statement((String) args[0]);
+                                    case "commit":
+                                        mCommitted = true;
+                                        return null;
+                                    case "rollback":
+                                        mRolledBack = true;
+                                        return null;
+                                    case "close":
+                                        mClosed = true;
+                                        return null;
+                                    default:
+                                        return null;
+                                }
+                            });
+        }
+
+        private PreparedStatement statement(final String sql) {
+            final List<Object> current = new LinkedList();
+            final List<List<Object>> batch = new LinkedList();
+            return (PreparedStatement)
+                    Proxy.newProxyInstance(
+                            PreparedStatement.class.getClassLoader(),
+                            new Class[] {PreparedStatement.class},
+                            (proxy, method, args) -> {
+                                String name = method.getName();
+                                if (name.equals("hashCode")) {
+                                    return System.identityHashCode(proxy);
+                                } else if (name.equals("equals")) {
+                                    return proxy == args[0];
+                                } else if (name.equals("setNull")) {
+                                    set(current, (Integer) args[0], null);
+                                } else if (name.startsWith("set")) {
+                                    set(current, (Integer) args[0], args[1]);
+                                } else if (name.equals("addBatch")) {
+                                    batch.add(new LinkedList(current));
+                                    current.clear();
+                                } else if (name.equals("executeBatch")) {
+                                    mExecuted.add(new Execution(sql, new LinkedList(batch)));
+                                    batch.clear();
+                                    return new int[0];
+                                } else if (name.equals("executeUpdate")) {
+                                    mExecuted.add(
+                                            new Execution(
+                                                    sql, Arrays.asList(new LinkedList(current))));
+                                    current.clear();
+                                    if (sql.startsWith("INSERT INTO workflow(")) {
+                                        mWorkflowExists = true;
+                                    }
+                                    return 1;
+                                } else if (name.equals("executeQuery")) {
+                                    mExecuted.add(
+                                            new Execution(
+                                                    sql, Arrays.asList(new LinkedList(current))));
+                                    current.clear();
+                                    return resultSet(mWorkflowExists);
+                                }
+                                return null;
+                            });
+        }
+
+        private void set(List<Object> row, int index, Object value) {
+            while (row.size() < index) {
+                row.add(null);
+            }
+            row.set(index - 1, value);
+        }
+
+        private ResultSet resultSet(final boolean exists) {
+            final boolean[] returned = {false};
+            return (ResultSet)
+                    Proxy.newProxyInstance(
+                            ResultSet.class.getClassLoader(),
+                            new Class[] {ResultSet.class},
+                            (proxy, method, args) -> {
+                                switch (method.getName()) {
+                                    case "next":
+                                        boolean next = exists && !returned[0];
+                                        returned[0] = true;
+                                        return next;
+                                    case "getLong":
+                                        return 7L;
+                                    default:
+                                        return null;
+                                }
+                            });
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.code.gridstart;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.classes.Profiles;
+import edu.isi.pegasus.planner.catalog.transformation.classes.Container;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.Profile;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Metadata;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import org.junit.Before;
+import org.junit.Test;
+
+/** A JUnit Test to test which container images PegasusLite caches on the worker nodes. */
+public class PegasusLiteTest {
+
+    private PegasusLite mPegasusLite;
+
+    @Before
+    public void setUp() {
+        LogManager logger =
+                new DefaultTestSetup().loadLogger(PegasusProperties.nonSingletonInstance());
+        logger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        mPegasusLite = new PegasusLite();
+        mPegasusLite.mLogger = logger;
+        mPegasusLite.mDoIntegrityChecking = true;
+    }
+
+    @Test
+    public void testContainerWithChecksumIsCached() {
+        Job job = this.createJob("sha256-value", "/scratch/containers");
+        assertSame(job.getContainer(), mPegasusLite.getCachedContainer(job));
+    }
+
+    @Test
+    public void testContainerIsNotCachedWithoutIntegrityChecking() {
+        // images fetched from the cache are not verified again
+        mPegasusLite.mDoIntegrityChecking = false;
+        Job job = this.createJob("sha256-value", "/scratch/containers");
+        assertNull(mPegasusLite.getCachedContainer(job));
+        assertTrue(mPegasusLite.mWarnedContainerCache);
+    }
+
+    @Test
+    public void testContainerWithoutChecksumIsNotCached() {
+        Job job = this.createJob(null, "/scratch/containers");
+        assertNull(mPegasusLite.getCachedContainer(job));
+    }
+
+    @Test
+    public void testContainerIsNotCachedWithoutCacheDirectory() {
+        Job job = this.createJob("sha256-value", null);
+        assertNull(mPegasusLite.getCachedContainer(job));
+
+        job = this.createJob("sha256-value", null);
+        job.setContainer(null);
+        assertNull(mPegasusLite.getCachedContainer(job));
+    }
+
+    /**
+     * Creates a job with a container.
+     *
+     * @param checksum the checksum of the container image, can be null
+     * @param cacheDir the container cache directory profile of the job, can be null
+     * @return the job
+     */
+    private Job createJob(String checksum, String cacheDir) {
+        Container c = new Container("centos-base");
+        c.setImageURL("http://example.edu/containers/centos-base.tar.gz");
+        if (checksum != null) {
+            c.addProfile(
+                    new Profile(
+                            Profiles.NAMESPACES.metadata.toString(),
+                            Metadata.CHECKSUM_VALUE_KEY,
+                            checksum));
+        }
+        Job job = new Job();
+        job.setName("preprocess_ID1");
+        job.setContainer(c);
+        if (cacheDir != null) {
+            job.vdsNS.construct(Pegasus.CONTAINER_CACHE_DIR_KEY, cacheDir);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.common;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** A JUnit Test to test the storing and reuse of plans in the plan cache. */
+public class PlanCacheTest {
+
+    private TemporaryFolder mFolder;
+
+    private LogManager mLogger;
+
+    @Before
+    public void setUp() throws IOException {
+        mFolder = new TemporaryFolder();
+        mFolder.create();
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.logEventStart("test.planner.plan.cache", "setup", "0");
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        mFolder.delete();
+    }
+
+    @Test
+    public void testKeyIsStable() {
+        PlanCache.Key a = new PlanCache.Key().add("x", "1").add("y", "2");
+        PlanCache.Key b = new PlanCache.Key().add("x", "1").add("y", "2");
+        PlanCache.Key c = new PlanCache.Key().add("x", "12").add("y", "");
+        assertEquals(a.toString(), b.toString());
+        assertEquals(a.toString(), a.toString());
+        assertNotEquals(a.toString(), c.toString());
+    }
+
+    @Test
+    public void testMissingFileIsUncacheable() {
+        PlanCache.Key key = new PlanCache.Key();
+        key.add("dax", new File(mFolder.getRoot(), "does-not-exist.yml"));
+        assertEquals(1, key.getUncacheableReasons().size());
+    }
+
+    @Test
+    public void testStoreAndMaterialize() throws IOException {
+        File cache = mFolder.newFolder("cache");
+        File first = mFolder.newFolder("run0001");
+        write(new File(first, "diamond-0.dag"), "JOB a a.sub DIR " + first + "\n");
+        write(new File(first, "braindump.yml"), "wf_uuid: 1111\nsubmit_dir: " + first + "\n");
+        File pre = new File(first, "pre.sh");
+        write(pre, "#!/bin/sh\n");
+        pre.setExecutable(true);
+
+        PlanCache planCache = new PlanCache(cache, 10, mLogger);
+        assertNull(planCache.materialize("key", first, tokens(first, "1111")));
+
+        Map<String, String> attributes = new HashMap();
+        attributes.put("empty", "false");
+        planCache.store("key", first, tokens(first, "1111"), attributes);
+
+        File second = mFolder.newFolder("run0002");
+        Map<String, String> result = planCache.materialize("key", second, tokens(second, "2222"));
+        assertEquals(attributes, result);
+        assertEquals("JOB a a.sub DIR " + second + "\n", read(new File(second, "diamond-0.dag")));
+        assertEquals(
+                "wf_uuid: 2222\nsubmit_dir: " + second + "\n",
+                read(new File(second, "braindump.yml")));
+        assertTrue(new File(second, "pre.sh").canExecute());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        File cache = mFolder.newFolder("cache");
+        File submit = mFolder.newFolder("submit");
+        byte[] contents = new byte[700 * 1024];
+        Files.write(new File(submit, "large.bin").toPath(), contents);
+
+        PlanCache planCache = new PlanCache(cache, 1, mLogger);
+        planCache.store("old", submit, tokens(submit, "1"), new HashMap());
+        new File(cache, "old").setLastModified(System.currentTimeMillis() - 60 * 1000);
+        planCache.store("new", submit, tokens(submit, "1"), new HashMap());
+
+        assertFalse(new File(cache, "old").exists());
+        assertTrue(new File(cache, "new").exists());
+    }
+
+    @Test
+    public void testOnlyWholeTokensAreReplaced() throws IOException {
+        File cache = mFolder.newFolder("cache");
+        File first = mFolder.newFolder("run0001");
+        write(
+                new File(first, "braindump.yml"),
+                "wf_uuid: 1111\n"
+                        + "job_id: 11112\n"
+                        + "submit_dir: "
+                        + first
+                        + "\n"
+                        + "sibling: "
+                        + first
+                        + "2/run0001.log\n");
+
+        PlanCache planCache = new PlanCache(cache, 10, mLogger);
+        planCache.store("key", first, tokens(first, "1111"), new HashMap());
+
+        File second = mFolder.newFolder("run0002");
+        planCache.materialize("key", second, tokens(second, "2222"));
+        assertEquals(
+                "wf_uuid: 2222\n"
+                        + "job_id: 11112\n"
+                        + "submit_dir: "
+                        + second
+                        + "\n"
+                        + "sibling: "
+                        + first
+                        + "2/run0001.log\n",
+                read(new File(second, "braindump.yml")));
+    }
+
+    @Test
+    public void testCorruptEntryIsEvicted() throws IOException {
+        File cache = mFolder.newFolder("cache");
+        File corrupt = new File(cache, "corrupt");
+        corrupt.mkdirs();
+        write(new File(corrupt, PlanCache.MANIFEST_FILE), "size=not-a-number\n");
+        File submit = mFolder.newFolder("submit");
+        write(new File(submit, "diamond-0.dag"), "JOB a a.sub\n");
+
+        PlanCache planCache = new PlanCache(cache, 10, mLogger);
+        planCache.store("key", submit, tokens(submit, "1"), new HashMap());
+
+        assertFalse(corrupt.exists());
+        assertTrue(new File(cache, "key").exists());
+    }
+
+    @Test
+    public void testChangedDependencyIsMiss() throws IOException {
+        File cache = mFolder.newFolder("cache");
+        File first = mFolder.newFolder("run0001");
+        write(new File(first, "diamond-0.dag"), "JOB a a.sub\n");
+        File subDAX = mFolder.newFile("sub.yml");
+        write(subDAX, "jobs: []\n");
+
+        PlanCache planCache = new PlanCache(cache, 10, mLogger);
+        planCache.store(
+                "key",
+                first,
+                tokens(first, "1111"),
+                new HashMap(),
+                Collections.singletonList(subDAX));
+
+        File second = mFolder.newFolder("run0002");
+        assertNotNull(planCache.materialize("key", second, tokens(second, "2222")));
+
+        write(subDAX, "jobs: [a]\n");
+        File third = mFolder.newFolder("run0003");
+        assertNull(planCache.materialize("key", third, tokens(third, "3333")));
+        assertFalse(new File(third, "diamond-0.dag").exists());
+
+        subDAX.delete();
+        assertNull(planCache.materialize("key", third, tokens(third, "3333")));
+    }
+
+    @Test
+    public void testTimestampsAreReplaced() throws IOException {
+        File cache = mFolder.newFolder("cache");
+        File first = mFolder.newFolder("run0001");
+        Map<String, String> tokens = tokens(first, "1111");
+        tokens.put(PlanCache.WORKFLOW_TIMESTAMP_TOKEN, "20200101T000000+0000");
+        write(new File(first, "braindump.yml"), "timestamp: 20200101T000000+0000\n");
+        write(
+                new File(first, "diamond-0.static.bp"),
+                "ts=2020-01-01T00:00:00.000000Z event=stampede.wf.plan xwf.id=1111\n"
+                        + "ts=2020-01-01T00:00:00.000001Z event=task.info xwf.id=1111\n");
+
+        PlanCache planCache = new PlanCache(cache, 10, mLogger);
+        planCache.store("key", first, tokens, new HashMap());
+
+        File second = mFolder.newFolder("run0002");
+        tokens = tokens(second, "2222");
+        tokens.put(PlanCache.WORKFLOW_TIMESTAMP_TOKEN, "20210101T000000+0000");
+        planCache.materialize("key", second, tokens);
+        assertEquals("timestamp: 20210101T000000+0000\n", read(new File(second, "braindump.yml")));
+        String[] events = read(new File(second, "diamond-0.static.bp")).split("\n");
+        assertEquals(2, events.length);
+        for (String event : events) {
+            assertTrue(event, event.matches("ts=\\d{4}-.*Z event=.* xwf.id=2222"));
+            assertFalse(event, event.startsWith("ts=2020"));
+        }
+    }
+
+    @Test
+    public void testUnchangedFilesAreLinked() throws IOException {
+        File cache = mFolder.newFolder("cache");
+        File first = mFolder.newFolder("run0001");
+        write(new File(first, "a.sub"), "executable = /bin/true\n");
+        write(new File(first, "diamond-0.dag"), "JOB a a.sub DIR " + first + "\n");
+
+        PlanCache planCache = new PlanCache(cache, 10, mLogger, true);
+        planCache.store("key", first, tokens(first, "1111"), new HashMap());
+
+        File second = mFolder.newFolder("run0002");
+        planCache.materialize("key", second, tokens(second, "2222"));
+        File cached = new File(cache, "key/" + PlanCache.SUBMIT_DIRECTORY);
+        assertTrue(
+                Files.isSameFile(
+                        new File(cached, "a.sub").toPath(), new File(second, "a.sub").toPath()));
+        assertFalse(
+                Files.isSameFile(
+                        new File(cached, "diamond-0.dag").toPath(),
+                        new File(second, "diamond-0.dag").toPath()));
+
+        // materializing again does not write through the links into the cache
+        planCache.materialize("key", second, tokens(second, "2222"));
+        assertEquals("JOB a a.sub DIR " + first + "\n", read(new File(cached, "diamond-0.dag")));
+    }
+
+    private Map<String, String> tokens(File submitDir, String uuid) {
+        Map<String, String> tokens = new HashMap();
+        tokens.put(PlanCache.SUBMIT_DIRECTORY_TOKEN, submitDir.getAbsolutePath());
+        tokens.put(PlanCache.WORKFLOW_UUID_TOKEN, uuid);
+        return tokens;
+    }
+
+    private void write(File file, String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2007-2013 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.common;
+
+import static org.junit.Assert.*;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** A JUnit Test to test the profiling of the planner phases. */
+public class PlannerProfilerTest {
+
+    private PlannerProfiler mProfiler;
+
+    @Before
+    public void setUp() {
+        mProfiler = new PlannerProfiler();
+    }
+
+    @After
+    public void tearDown() {
+        mProfiler.close();
+    }
+
+    @Test
+    public void testNestedPhases() throws InterruptedException {
+        mProfiler.eventStarted("refinement");
+        mProfiler.eventStarted("siteselection");
+        Thread.sleep(20);
+        mProfiler.eventCompleted("siteselection");
+        mProfiler.eventStarted("cluster");
+        Thread.sleep(5);
+        mProfiler.eventCompleted("cluster");
+        mProfiler.eventStarted("cluster");
+        Thread.sleep(5);
+        mProfiler.eventCompleted("cluster");
+        mProfiler.eventCompleted("refinement");
+
+        List<PlannerProfiler.Phase> phases = mProfiler.getPhases();
+        assertEquals(3, phases.size());
+        assertEquals("refinement", phases.get(0).getName());
+
+        PlannerProfiler.Phase refinement = phases.get(0);
+        PlannerProfiler.Phase cluster = phases.get(2);
+        assertEquals(2, cluster.getCount());
+        assertTrue(refinement.getWallTime() >= phases.get(1).getWallTime() + cluster.getWallTime());
+        assertTrue(refinement.getSelfTime() < refinement.getWallTime());
+
+        // site selection slept the longest
+        assertEquals("siteselection", mProfiler.getHotPhases().get(0).getName());
+    }
+
+    @Test
+    public void testUnbalancedCompletionIgnored() {
+        mProfiler.eventCompleted("started.before.profiler");
+        assertTrue(mProfiler.getPhases().isEmpty());
+    }
+
+    @Test
+    public void testAllocationTracked() {
+        mProfiler.eventStarted("allocate");
+        byte[][] data = new byte[64][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new byte[16 * 1024];
+        }
+        mProfiler.eventCompleted("allocate");
+        assertEquals(64, data.length);
+
+        PlannerProfiler.Phase phase = mProfiler.getPhases().get(0);
+        assertTrue(phase.getAllocatedBytes() >= 64 * 16 * 1024);
+        assertTrue(phase.getPeakHeapBytes() > 0);
+    }
+
+    @Test
+    public void testJsonAndSummary() {
+        mProfiler.eventStarted("event.pegasus.parse.dax");
+        mProfiler.eventCompleted("event.pegasus.parse.dax");
+
+        JsonObject json = new JsonParser().parse(mProfiler.toJson()).getAsJsonObject();
+        assertTrue(json.has("total_wall_time"));
+        JsonArray phases = json.getAsJsonArray("phases");
+        assertEquals(1, phases.size());
+        JsonObject phase = phases.get(0).getAsJsonObject();
+        assertEquals("event.pegasus.parse.dax", phase.get("name").getAsString());
+        assertEquals(1, phase.get("count").getAsInt());
+        assertTrue(phase.has("cpu_time_ns"));
+        assertTrue(phase.has("allocated_bytes"));
+        assertTrue(phase.has("peak_heap_bytes"));
+
+        assertTrue(mProfiler.getHotPhaseSummary().contains("event.pegasus.parse.dax"));
+    }
+
+    @Test
+    public void testDrivenByLogManager() {
+        LogManager logger = LogManagerFactory.loadSingletonInstance();
+        logger.addEventListener(mProfiler);
+        try {
+            logger.logEventStart("test.planner.profiler", "test", "0");
+            logger.logEventCompletion();
+        } finally {
+            logger.removeEventListener(mProfiler);
+        }
+        assertEquals("test.planner.profiler", mProfiler.getPhases().get(0).getName());
+    }
+}
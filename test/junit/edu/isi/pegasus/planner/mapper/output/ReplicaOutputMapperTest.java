@@ -16,18 +16,27 @@ package edu.isi.pegasus.planner.mapper.output;
 import static org.junit.Assert.*;
 
 import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.replica.impl.Regex;
 import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.NameValue;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.mapper.OutputMapper;
 import edu.isi.pegasus.planner.mapper.OutputMapperFactory;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.test.TestSetup;
 import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -161,6 +170,148 @@ public class ReplicaOutputMapperTest {
         mLogger.logEventCompletion();
     }
 
+    @Test
+    public void testPrefetchedMappings() {
+        mLogger.logEventStart("test.output.mapper.Replica", "set", "prefetch");
+        mProps.setProperty(OutputMapperFactory.PROPERTY_KEY, "Replica");
+        mProps.removeProperty(ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY);
+        mProps.setProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY + ".prefetch.size", "3");
+
+        // workflow with jobs generating f.a1 to f.a10
+        ADag dag = new ADag();
+        for (int i = 1; i <= 10; i++) {
+            Job job = new Job();
+            job.setName("job" + i);
+            job.setLogicalID("ID" + i);
+            job.setJobType(Job.COMPUTE_JOB);
+            job.addOutputFile(new PegasusFile("f.a" + i));
+            dag.add(job);
+        }
+        OutputMapper mapper = OutputMapperFactory.loadInstance(dag, mBag);
+
+        // map in reverse to make sure windows are refetched as required
+        for (int i = 10; i >= 1; i--) {
+            String lfn = "f.a" + i;
+            String expected =
+                    (i == 1)
+                            ? "gsiftp://corbusier.isi.edu/Volumes/data/output/nonregex/" + lfn
+                            : "gsiftp://corbusier.isi.edu/Volumes/data/output/" + lfn;
+            NameValue<String, String> nv = mapper.map(lfn, "local", FileServer.OPERATION.put);
+            assertEquals("local", nv.getKey());
+            assertEquals(lfn + " not mapped to right location ", expected, nv.getValue());
+            assertEquals(expected, mapper.map(lfn, null, FileServer.OPERATION.get).getValue());
+            assertEquals(
+                    expected,
+                    mapper.mapAll(lfn, "local", FileServer.OPERATION.get).get(0).getValue());
+        }
+
+        // lfn not in the workflow is looked up directly
+        assertEquals(
+                "gsiftp://corbusier.isi.edu/Volumes/data/output/f.a11",
+                mapper.map("f.a11", "local", FileServer.OPERATION.put).getValue());
+        mProps.removeProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY + ".prefetch.size");
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testPrefetchBackendCalls() {
+        mLogger.logEventStart("test.output.mapper.Replica", "set", "prefetch-calls");
+        mProps.setProperty(OutputMapperFactory.PROPERTY_KEY, "Replica");
+        mProps.setProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY, CountingRegex.class.getName());
+        ADag dag = new ADag();
+        for (int i = 1; i <= 10; i++) {
+            Job job = new Job();
+            job.setName("job" + i);
+            job.setLogicalID("ID" + i);
+            job.setJobType(Job.COMPUTE_JOB);
+            job.addOutputFile(new PegasusFile("f.a" + i));
+            dag.add(job);
+        }
+
+        // windows of 3 files, so one bulk lookup per window for
+        // the local site, and one for the mappings on all sites
+        mProps.setProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY + ".prefetch.size", "3");
+        this.mapOutputs(dag);
+        assertEquals(8, CountingRegex.sBulkLookups);
+        assertEquals(0, CountingRegex.sLookups);
+
+        // prefetch disabled, so a lookup per call
+        mProps.setProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY + ".prefetch.size", "0");
+        this.mapOutputs(dag);
+        assertEquals(0, CountingRegex.sBulkLookups);
+        assertEquals(20, CountingRegex.sLookups);
+
+        mProps.removeProperty(ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY);
+        mProps.removeProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY + ".prefetch.size");
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testPrefetchedMissForSite() {
+        mLogger.logEventStart("test.output.mapper.Replica", "set", "prefetch-miss");
+        mProps.setProperty(OutputMapperFactory.PROPERTY_KEY, "Replica");
+        mProps.setProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY, CountingRegex.class.getName());
+        mProps.setProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY + ".disable.exceptions",
+                "true");
+        ADag dag = new ADag();
+        for (int i = 1; i <= 3; i++) {
+            Job job = new Job();
+            job.setName("job" + i);
+            job.setLogicalID("ID" + i);
+            job.setJobType(Job.COMPUTE_JOB);
+            job.addOutputFile(new PegasusFile("f.a" + i));
+            dag.add(job);
+        }
+        OutputMapper mapper = OutputMapperFactory.loadInstance(dag, mBag);
+        CountingRegex.sLookups = 0;
+        CountingRegex.sBulkLookups = 0;
+
+        // the window is looked up once for the site, and the files
+        // in it with no mapping for the site are not looked up again
+        for (int i = 1; i <= 3; i++) {
+            assertNull(mapper.map("f.a" + i, "nosuchsite", FileServer.OPERATION.put));
+            assertNull(mapper.mapAll("f.a" + i, "nosuchsite", FileServer.OPERATION.put));
+        }
+        assertEquals(1, CountingRegex.sBulkLookups);
+        assertEquals(0, CountingRegex.sLookups);
+
+        // files outside the workflow are looked up directly
+        assertNull(mapper.map("f.a11", "nosuchsite", FileServer.OPERATION.put));
+        assertEquals(1, CountingRegex.sLookups);
+
+        mProps.removeProperty(ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY);
+        mProps.removeProperty(
+                ReplicaOutputMapperTest.REPLICA_MAPPER_PROPERTY_KEY + ".disable.exceptions");
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Maps the outputs of a workflow to the local site in the order the workflow is traversed, with
+     * the counts of the backend calls reset.
+     *
+     * @param dag the workflow
+     */
+    private void mapOutputs(ADag dag) {
+        OutputMapper mapper = OutputMapperFactory.loadInstance(dag, mBag);
+        CountingRegex.sLookups = 0;
+        CountingRegex.sBulkLookups = 0;
+        for (Iterator<GraphNode> it = dag.iterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            for (PegasusFile pf : job.getOutputFiles()) {
+                assertNotNull(mapper.map(pf.getLFN(), "local", FileServer.OPERATION.put));
+                assertNotNull(mapper.map(pf.getLFN(), null, FileServer.OPERATION.get));
+            }
+        }
+    }
+
     @After
     public void tearDown() {
         mLogger = null;
@@ -180,4 +331,47 @@ public class ReplicaOutputMapperTest {
         keys.add(PegasusProperties.PEGASUS_SITE_CATALOG_FILE_PROPERTY);
         return keys;
     }
+
+    /** A Regex replica catalog that counts the lookups made against it. */
+    public static class CountingRegex extends Regex {
+
+        /** The number of single LFN lookups. */
+        static int sLookups;
+
+        /** The number of bulk lookups. */
+        static int sBulkLookups;
+
+        /** Whether a bulk lookup is in progress. */
+        private boolean mInBulk;
+
+        public Collection<ReplicaCatalogEntry> lookup(String lfn) {
+            sLookups += mInBulk ? 0 : 1;
+            return super.lookup(lfn);
+        }
+
+        public String lookup(String lfn, String handle) {
+            sLookups += mInBulk ? 0 : 1;
+            return super.lookup(lfn, handle);
+        }
+
+        public Map lookup(Set lfns) {
+            sBulkLookups++;
+            mInBulk = true;
+            try {
+                return super.lookup(lfns);
+            } finally {
+                mInBulk = false;
+            }
+        }
+
+        public Map lookup(Set lfns, String handle) {
+            sBulkLookups++;
+            mInBulk = true;
+            try {
+                return super.lookup(lfns, handle);
+            } finally {
+                mInBulk = false;
+            }
+        }
+    }
 }
@@ -19,6 +19,10 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.test.DefaultTestSetup;
 import edu.isi.pegasus.planner.test.TestSetup;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -326,6 +330,67 @@ public class PegasusTest {
         mLogger.logEventCompletion();
     }
 
+    @Test
+    public void testCloneCopyOnWrite() {
+        Pegasus original = new Pegasus();
+        original.construct(Pegasus.RUNTIME_KEY, "100");
+        original.construct(Pegasus.CORES_KEY, "2");
+
+        Pegasus copy = (Pegasus) original.clone();
+        assertEquals("100", copy.get(Pegasus.RUNTIME_KEY));
+
+        // update to the copy is not visible in the original
+        copy.construct(Pegasus.RUNTIME_KEY, "200");
+        copy.removeKey(Pegasus.CORES_KEY);
+        assertEquals("200", copy.get(Pegasus.RUNTIME_KEY));
+        assertNull(copy.get(Pegasus.CORES_KEY));
+        assertEquals("100", original.get(Pegasus.RUNTIME_KEY));
+        assertEquals("2", original.get(Pegasus.CORES_KEY));
+
+        // and vice versa
+        Pegasus second = (Pegasus) original.clone();
+        original.construct(Pegasus.MEMORY_KEY, "1024");
+        assertNull(second.get(Pegasus.MEMORY_KEY));
+        assertEquals(2, second.keySet().size());
+    }
+
+    @Test
+    public void testClonesUpdatedOnOtherThreads() throws Exception {
+        final Pegasus original = new Pegasus();
+        original.construct(Pegasus.RUNTIME_KEY, "100");
+        original.construct(Pegasus.CORES_KEY, "2");
+
+        // clones are made on the calling thread, and updated on the pool
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Pegasus>> futures = new LinkedList();
+            for (int i = 0; i < 100; i++) {
+                final Pegasus copy = (Pegasus) original.clone();
+                final String runtime = Integer.toString(i);
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    copy.construct(Pegasus.RUNTIME_KEY, runtime);
+                                    copy.removeKey(Pegasus.CORES_KEY);
+                                    return copy;
+                                }));
+            }
+            original.construct(Pegasus.MEMORY_KEY, "1024");
+
+            for (int i = 0; i < futures.size(); i++) {
+                Pegasus copy = futures.get(i).get();
+                assertEquals(Integer.toString(i), copy.get(Pegasus.RUNTIME_KEY));
+                assertNull(copy.get(Pegasus.CORES_KEY));
+                assertNull(copy.get(Pegasus.MEMORY_KEY));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("100", original.get(Pegasus.RUNTIME_KEY));
+        assertEquals("2", original.get(Pegasus.CORES_KEY));
+        assertEquals(3, original.keySet().size());
+    }
+
     @After
     public void tearDown() {
         mLogger = null;
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.parser;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.planner.parser.tokens.CloseBrace;
+import edu.isi.pegasus.planner.parser.tokens.Identifier;
+import edu.isi.pegasus.planner.parser.tokens.OpenBrace;
+import edu.isi.pegasus.planner.parser.tokens.QuotedString;
+import edu.isi.pegasus.planner.parser.tokens.Token;
+import edu.isi.pegasus.planner.parser.tokens.TransformationCatalogReservedWord;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * A JUnit Test to test the scanning of the textual format of the Transformation Catalog into
+ * tokens.
+ */
+public class TransformationCatalogTextScannerTest {
+
+    @Test
+    public void testTransformation() throws Exception {
+        List<Token> tokens =
+                this.scan(
+                        "# a comment\n"
+                                + "tr pegasus::keg:4.0+1 {\n"
+                                + "  site isi-condor.usc@edu {\n"
+                                + "    pfn \"/usr/bin/pegasus-keg\"\n"
+                                + "  }\n"
+                                + "}\n");
+        assertEquals(10, tokens.size());
+        assertReservedWord(TransformationCatalogReservedWord.TRANSFORMATION, tokens.get(0));
+        assertIdentifier("pegasus::keg:4.0+1", tokens.get(1));
+        assertTrue(tokens.get(2) instanceof OpenBrace);
+        assertReservedWord(TransformationCatalogReservedWord.SITE, tokens.get(3));
+        assertIdentifier("isi-condor.usc@edu", tokens.get(4));
+        assertTrue(tokens.get(5) instanceof OpenBrace);
+        assertReservedWord(TransformationCatalogReservedWord.PFN, tokens.get(6));
+        assertQuotedString("/usr/bin/pegasus-keg", tokens.get(7));
+        assertTrue(tokens.get(8) instanceof CloseBrace);
+        assertTrue(tokens.get(9) instanceof CloseBrace);
+    }
+
+    @Test
+    public void testIdentifierStopsAtRestrictedCharacters() throws Exception {
+        // outside tr, site and cont only java identifier characters are allowed
+        List<Token> tokens = this.scan("profile env{");
+        assertEquals(3, tokens.size());
+        assertReservedWord(TransformationCatalogReservedWord.PROFILE, tokens.get(0));
+        assertIdentifier("env", tokens.get(1));
+        assertTrue(tokens.get(2) instanceof OpenBrace);
+    }
+
+    @Test
+    public void testQuotedStringWithEscapes() throws Exception {
+        List<Token> tokens = this.scan("\"a \\\"quoted\\\" \\\\ value\"   \"\"");
+        assertEquals(2, tokens.size());
+        assertQuotedString("a \"quoted\" \\ value", tokens.get(0));
+        assertQuotedString("", tokens.get(1));
+    }
+
+    @Test
+    public void testCommentsAndBlankLines() throws Exception {
+        TransformationCatalogTextScanner scanner =
+                new TransformationCatalogTextScanner(
+                        new StringReader("\n# one\n   # two\n\n\t tr # trailing\n# three\n"),
+                        false);
+        assertTrue(scanner.hasMoreTokens());
+        assertReservedWord(TransformationCatalogReservedWord.TRANSFORMATION, scanner.nextToken());
+        assertFalse(scanner.hasMoreTokens());
+        assertNull(scanner.nextToken());
+    }
+
+    @Test
+    public void testLineNumberOfUnterminatedString() throws Exception {
+        TransformationCatalogTextScanner scanner =
+                new TransformationCatalogTextScanner(
+                        new StringReader("tr keg {\n pfn \"/usr/bin\n}\n"), false);
+        for (int i = 0; i < 4; i++) {
+            scanner.nextToken();
+        }
+        try {
+            scanner.nextToken();
+            fail("Expected an unterminated quoted string");
+        } catch (ScannerException e) {
+            assertEquals(2, e.getLineNumber());
+        }
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception {
+        assertTrue(this.scan("").isEmpty());
+        assertTrue(this.scan("  \n\n # only a comment").isEmpty());
+    }
+
+    private List<Token> scan(String input) throws IOException, ScannerException {
+        TransformationCatalogTextScanner scanner =
+                new TransformationCatalogTextScanner(new StringReader(input), false);
+        List<Token> tokens = new LinkedList();
+        for (Token token = scanner.nextToken(); token != null; token = scanner.nextToken()) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static void assertReservedWord(int expected, Token token) {
+        assertTrue(token instanceof TransformationCatalogReservedWord);
+        assertEquals(expected, ((TransformationCatalogReservedWord) token).getValue());
+    }
+
+    private static void assertIdentifier(String expected, Token token) {
+        assertTrue(token instanceof Identifier);
+        assertEquals(expected, ((Identifier) token).getValue());
+    }
+
+    private static void assertQuotedString(String expected, Token token) {
+        assertTrue(token instanceof QuotedString);
+        assertEquals(expected, ((QuotedString) token).getValue());
+    }
+}
@@ -16,13 +16,16 @@ package edu.isi.pegasus.planner.refiner;
 import static org.junit.Assert.*;
 
 import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.classes.PegasusFile;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.classes.ReplicaLocation;
 import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Metadata;
 import edu.isi.pegasus.planner.parser.DAXParserFactory;
 import edu.isi.pegasus.planner.parser.XMLParser;
 import edu.isi.pegasus.planner.parser.dax.Callback;
@@ -32,9 +35,11 @@ import edu.isi.pegasus.planner.test.DefaultTestSetup;
 import edu.isi.pegasus.planner.test.TestSetup;
 import java.io.File;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -308,6 +313,179 @@ public class DataReuseEngineTest {
         mProps.removeProperty("pegasus.data.reuse.scope");
     }
 
+    /** Test for provenance data reuse, where all outputs are newer than their inputs. */
+    @Test
+    public void testProvenanceDataReuse() {
+        String[] expectedDeletedJobs = {
+            "analyze_ID0000004",
+            "findrange_ID0000002",
+            "findrange_ID0000003",
+            "preprocess_ID0000001",
+        };
+        this.testProvenance(new HashMap(), null, null, expectedDeletedJobs);
+    }
+
+    /**
+     * Test for provenance data reuse, where the output of one findrange job is older than its
+     * input. Only that job and the analyze job consuming its output are rerun.
+     */
+    @Test
+    public void testProvenanceStaleSubWorkflow() {
+        Map<String, Long> mtimes = new HashMap();
+        mtimes.put("f.c1", 150L);
+        String[] expectedDeletedJobs = {
+            "findrange_ID0000003", "preprocess_ID0000001",
+        };
+        this.testProvenance(mtimes, null, null, expectedDeletedJobs);
+    }
+
+    /**
+     * Test for provenance data reuse, where the input to the workflow has been modified, and the
+     * invalidation cascades down to all the jobs.
+     */
+    @Test
+    public void testProvenanceModifiedInput() {
+        Map<String, Long> mtimes = new HashMap();
+        mtimes.put("f.a", 250L);
+        this.testProvenance(mtimes, null, null, new String[0]);
+    }
+
+    /**
+     * Test for provenance data reuse, where the checksum for the input to the workflow does not
+     * match the one recorded with the preprocess outputs when they were produced, and no
+     * modification time is recorded for the analyze output.
+     */
+    @Test
+    public void testProvenanceChecksumMismatch() {
+        Map<String, Long> mtimes = new HashMap();
+        mtimes.put("f.d", null);
+        this.testProvenance(mtimes, "abcd", null, new String[0]);
+    }
+
+    /**
+     * Test for provenance data reuse, where only the final output is registered, and the input to
+     * the workflow has been modified after it. The modification time of the input is carried
+     * forward through the unregistered intermediate files, and the analyze job is run.
+     */
+    @Test
+    public void testProvenanceUnregisteredIntermediates() {
+        Map<String, Long> mtimes = new HashMap();
+        mtimes.put("f.a", 450L);
+        this.testProvenance(mtimes, null, new HashSet(Arrays.asList("f.a", "f.d")), new String[0]);
+    }
+
+    /**
+     * Test for provenance data reuse, where only the final output is registered, and it is newer
+     * than the input to the workflow. The analyze job is deleted the same as for full data reuse.
+     */
+    @Test
+    public void testProvenanceUnregisteredIntermediatesUpToDate() {
+        String[] expectedDeletedJobs = {
+            "analyze_ID0000004",
+        };
+        this.testProvenance(
+                new HashMap(), null, new HashSet(Arrays.asList("f.a", "f.d")), expectedDeletedJobs);
+    }
+
+    /**
+     * Test for provenance data reuse, where only the final output is registered, and the checksum
+     * of the input to the workflow does not match the one recorded with it. The checksum is carried
+     * forward through the unregistered intermediate files, and the analyze job is run.
+     */
+    @Test
+    public void testProvenanceUnregisteredIntermediatesChecksumMismatch() {
+        this.testProvenance(
+                new HashMap(), "abcd", new HashSet(Arrays.asList("f.a", "f.d")), new String[0]);
+    }
+
+    /**
+     * Test for provenance data reuse, where the output of one findrange job is older than its
+     * input, and the analyze and one of the preprocess outputs are not registered. The stale
+     * findrange job and the analyze job are run, and hence the preprocess job too.
+     */
+    @Test
+    public void testProvenanceStaleWithUnregisteredIntermediates() {
+        Map<String, Long> mtimes = new HashMap();
+        mtimes.put("f.c1", 150L);
+        String[] expectedDeletedJobs = {
+            "findrange_ID0000003",
+        };
+        this.testProvenance(
+                mtimes,
+                null,
+                new HashSet(Arrays.asList("f.a", "f.b1", "f.c1", "f.c2", "f.c2'")),
+                expectedDeletedJobs);
+    }
+
+    /**
+     * Runs the data reuse engine with provenance scope on the blackdiamond workflow.
+     *
+     * @param mtimes the modification times to override the default ones, a null value removes it
+     * @param checksum the checksum recorded for f.a with the preprocess and analyze outputs, null
+     *     for the current checksum
+     * @param registered the lfns registered in the replica catalog, null for all files
+     * @param expectedDeletedJobs the jobs expected to be deleted
+     */
+    private void testProvenance(
+            Map<String, Long> mtimes,
+            String checksum,
+            Set<String> registered,
+            String[] expectedDeletedJobs) {
+        mLogger.logEventStart(
+                "test.refiner.datareuse.provenance", "set", Integer.toString(mTestNumber++));
+        ADag dax = ((DataReuseEngineTestSetup) mTestSetup).loadDAX(mBag, "blackdiamond.dax");
+        MyReplicaCatalogBridge rcb = new MyReplicaCatalogBridge(dax, mBag);
+        mProps.setProperty("pegasus.data.reuse.scope", "provenance");
+
+        // the workflow declares the checksum of f.a, and the preprocess
+        // and analyze outputs record the one f.a had when they were produced
+        Job preprocess = (Job) dax.getNode("preprocess_ID0000001").getContent();
+        for (PegasusFile pf : preprocess.getInputFiles()) {
+            pf.addMetadata(Metadata.CHECKSUM_VALUE_KEY, "1234");
+        }
+
+        Map<String, Long> defaults = new HashMap();
+        defaults.put("f.a", 100L);
+        defaults.put("f.b1", 200L);
+        defaults.put("f.b2", 200L);
+        defaults.put("f.c1", 300L);
+        defaults.put("f.c2", 300L);
+        defaults.put("f.c2'", 300L);
+        defaults.put("f.d", 400L);
+        defaults.putAll(mtimes);
+        if (registered != null) {
+            defaults.keySet().retainAll(registered);
+        }
+        for (Map.Entry<String, Long> entry : defaults.entrySet()) {
+            ReplicaCatalogEntry rce = new ReplicaCatalogEntry("gsiftp://remote/" + entry.getKey());
+            if (entry.getValue() != null) {
+                rce.addAttribute(
+                        DataReuseEngine.MODIFICATION_TIME_KEY, entry.getValue().toString());
+            }
+            if (entry.getKey().equals("f.a")) {
+                rce.addAttribute(Metadata.CHECKSUM_VALUE_KEY, "1234");
+            }
+            if (entry.getKey().startsWith("f.b") || entry.getKey().equals("f.d")) {
+                rce.addAttribute(
+                        DataReuseEngine.INPUT_CHECKSUM_KEY_PREFIX + "f.a",
+                        (checksum == null) ? "1234" : checksum);
+            }
+            rcb.addFileLocs(entry.getKey(), rce);
+        }
+        rcb.addFilesInReplica(new HashSet(defaults.keySet()));
+
+        DataReuseEngine engine = new DataReuseEngine(dax, mBag);
+        engine.reduceWorkflow(dax, rcb);
+        Job[] actualDeletedJobs = (Job[]) engine.getDeletedJobs().toArray(new Job[0]);
+
+        assertArrayEquals(
+                "Deleted Jobs don't match ",
+                expectedDeletedJobs,
+                toSortedStringArray(actualDeletedJobs));
+        mLogger.logEventCompletion();
+        mProps.removeProperty("pegasus.data.reuse.scope");
+    }
+
     @After
     public void tearDown() {
         mLogger = null;
@@ -346,9 +524,23 @@ public class DataReuseEngineTest {
         private final PegasusBag bag;
         private Set<String> mFiles;
 
+        private Map<String, ReplicaLocation> mLocations;
+
         public MyReplicaCatalogBridge(ADag dax, PegasusBag bag) {
             super(dax, bag);
             this.bag = bag;
+            this.mLocations = new HashMap();
+        }
+
+        public void addFileLocs(String lfn, ReplicaCatalogEntry rce) {
+            ReplicaLocation rl = new ReplicaLocation();
+            rl.setLFN(lfn);
+            rl.addPFN(rce);
+            mLocations.put(lfn, rl);
+        }
+
+        public ReplicaLocation getFileLocs(String lfn) {
+            return mLocations.get(lfn);
         }
 
         public void addFilesInReplica(Set<String> files) {
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.parser.dax.DAX2LabelGraph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.LabelBag;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class to test the graph that the NodeCollapser constructs for the partitioners. */
+public class NodeCollapserTest {
+
+    private PegasusBag mBag;
+
+    private LogManager mLogger;
+
+    @Before
+    public void setUp() {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mLogger = new DefaultTestSetup().loadLogger(props);
+        mLogger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        mLogger.logEventStart("test.refiner.NodeCollapser", "setup", "0");
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
+        mBag.add(PegasusBag.PLANNER_OPTIONS, new PlannerOptions());
+    }
+
+    @Test
+    public void testLabelGraph() {
+        NodeCollapser collapser = new NodeCollapser(mBag);
+        Map<String, GraphNode> graph = collapser.toLabelGraph(NodeCollapserTest.workflow(3, 4));
+
+        // one node per job and the dummy root
+        assertEquals(13, graph.size());
+        GraphNode root = graph.get(DAX2LabelGraph.DUMMY_NODE_ID);
+        assertEquals("[ID0000000, ID0000001, ID0000002, ID0000003]", sortedIDs(root.getChildren()));
+
+        GraphNode node = graph.get("ID0000005");
+        assertEquals("process_1", node.getName());
+        assertEquals("cluster_1", node.getBag().get(LabelBag.LABEL_KEY));
+        assertEquals("[ID0000001, ID0000002]", sortedIDs(node.getParents()));
+        assertEquals("[ID0000008, ID0000009]", sortedIDs(node.getChildren()));
+    }
+
+    @Test
+    public void testOrderFollowsWorkflow() {
+        NodeCollapser collapser = new NodeCollapser(mBag);
+        ADag dag = NodeCollapserTest.workflow(5, 20);
+        Map<String, GraphNode> graph = collapser.toLabelGraph(dag);
+
+        // the partitioners traverse the children in the order of the
+        // nodes in the workflow
+        Map<String, List<String>> children = new HashMap();
+        List<String> roots = new LinkedList();
+        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
+            children.put(((Job) it.next().getContent()).getLogicalID(), new LinkedList());
+        }
+        for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            String id = ((Job) node.getContent()).getLogicalID();
+            List<String> parents = new LinkedList();
+            for (GraphNode parent : node.getParents()) {
+                String parentID = ((Job) parent.getContent()).getLogicalID();
+                children.get(parentID).add(id);
+                parents.add(parentID);
+            }
+            if (parents.isEmpty()) {
+                roots.add(id);
+            }
+            assertEquals(parents.toString(), ids(graph.get(id).getParents()));
+        }
+
+        assertEquals(roots.toString(), ids(graph.get(DAX2LabelGraph.DUMMY_NODE_ID).getChildren()));
+        for (Map.Entry<String, List<String>> entry : children.entrySet()) {
+            assertEquals(
+                    entry.getKey(),
+                    entry.getValue().toString(),
+                    ids(graph.get(entry.getKey()).getChildren()));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Returns a workflow with the jobs laid out in levels. Each job, except the ones on the first
+     * level, is a child of two adjacent jobs on the previous level.
+     *
+     * @param levels the number of levels
+     * @param width the number of jobs on each level
+     * @return the workflow
+     */
+    static ADag workflow(int levels, int width) {
+        ADag dag = new ADag();
+        String[] previous = null;
+        int id = 0;
+        for (int level = 0; level < levels; level++) {
+            String[] current = new String[width];
+            for (int i = 0; i < width; i++, id++) {
+                Job job = new Job();
+                job.setJobType(Job.COMPUTE_JOB);
+                job.setTXName("process_" + level);
+                job.setLogicalID(String.format("ID%07d", id));
+                job.setName(job.getTXName() + "_" + job.getLogicalID());
+                job.vdsNS.construct(DAX2LabelGraph.DEFAULT_LABEL_KEY, "cluster_" + (i % 2));
+                dag.add(job);
+                current[i] = job.getID();
+                if (previous != null) {
+                    dag.addEdge(previous[i], job.getID());
+                    dag.addEdge(previous[(i + 1) % width], job.getID());
+                }
+            }
+            previous = current;
+        }
+        return dag;
+    }
+
+    private static String sortedIDs(Iterable<GraphNode> nodes) {
+        Set<String> ids = new TreeSet();
+        for (GraphNode node : nodes) {
+            ids.add(node.getID());
+        }
+        return ids.toString();
+    }
+
+    private static String ids(Iterable<GraphNode> nodes) {
+        List<String> ids = new LinkedList();
+        for (GraphNode node : nodes) {
+            ids.add(node.getID());
+        }
+        return ids.toString();
+    }
+}
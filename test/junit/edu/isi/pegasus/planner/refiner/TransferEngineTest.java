@@ -0,0 +1,251 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.SiteFactory;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.FileTransfer;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.classes.PlannerCache;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.selector.ReplicaSelector;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** A JUnit Test to test the computation of the transfers in the Transfer Engine. */
+public class TransferEngineTest {
+
+    /** The number of jobs, enough for the transfers to be computed by the pool. */
+    private static final int JOBS = 64;
+
+    /** The files registered at both sites in the replica catalog. */
+    private static final List<String> REFERENCE_FILES = Arrays.asList("ref.db", "ref.idx");
+
+    private TestSetup mTestSetup;
+
+    private LogManager mLogger;
+
+    private File mSubmitDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mTestSetup = new DefaultTestSetup();
+        mTestSetup.setInputDirectory(this.getClass());
+        mTestSetup.setInputDirectory(
+                new File(mTestSetup.getInputDirectory(), "transferengine").getAbsolutePath());
+        mSubmitDir = Files.createTempDirectory("pegasus-transfer-engine").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mSubmitDir);
+    }
+
+    @Test
+    public void testParallelTransfersMatchSerial() throws Exception {
+        Map<String, String> serial = this.computeTransfers(1);
+        Map<String, String> parallel = this.computeTransfers(4);
+
+        // a stage in job per compute job, and a transfer per file per site
+        assertEquals(JOBS + 2 * REFERENCE_FILES.size(), serial.size());
+        // computed serially, the jobs share the replica catalog entries,
+        // and the priorities are the ones selected for the last job
+        assertEquals(this.withoutPriorities(serial), this.withoutPriorities(parallel));
+    }
+
+    @Test
+    public void testReplicaPriorityIsPerJob() throws Exception {
+        // the reference files are at both sites, and the replica at the
+        // site a file is staged to should be preferred, even though the
+        // jobs at the other site select from the same replica catalog entries
+        Map<String, String> transfers = this.computeTransfers(4);
+        Map<String, String> expected = new TreeMap();
+        expected.put("siteA", "siteA=50 siteB=10");
+        expected.put("siteB", "siteA=10 siteB=50");
+        for (String site : expected.keySet()) {
+            for (String lfn : REFERENCE_FILES) {
+                String key =
+                        "transfer "
+                                + lfn
+                                + " -> gsiftp://"
+                                + site
+                                + ".example.edu/scratch/"
+                                + site
+                                + "/./"
+                                + lfn;
+                assertEquals(key, expected.get(site), transfers.get(key));
+            }
+        }
+    }
+
+    /**
+     * Plans the transfers for a workflow of jobs alternating between siteA and siteB, and returns
+     * the stage in transfers with the priority of their source URLs, and the parents of each
+     * compute job.
+     *
+     * @param threads the number of threads used by the transfer engine
+     * @return the transfers and parents
+     */
+    private Map<String, String> computeTransfers(int threads) throws Exception {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.catalog.replica", "File");
+        props.setProperty(
+                "pegasus.catalog.replica.file",
+                new File(mTestSetup.getInputDirectory(), "rc.txt").getAbsolutePath());
+        props.setProperty(
+                PegasusProperties.PEGASUS_SITE_CATALOG_FILE_PROPERTY,
+                new File(mTestSetup.getInputDirectory(), "sites.xml").getAbsolutePath());
+        props.setProperty("pegasus.data.configuration", "sharedfs");
+        props.setProperty("pegasus.integrity.checking", "none");
+        props.setProperty(
+                PegasusProperties.TRANSFER_ENGINE_THREADS_PROPERTY_KEY, Integer.toString(threads));
+
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mLogger = mTestSetup.loadLogger(props);
+        mLogger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        mLogger.logEventStart("test.refiner.transferengine", "threads", Integer.toString(threads));
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
+
+        PlannerOptions options = new PlannerOptions();
+        File submitDir = new File(mSubmitDir, "threads-" + threads);
+        submitDir.mkdirs();
+        options.setSubmitDirectory(submitDir.getAbsolutePath());
+        bag.add(PegasusBag.PLANNER_OPTIONS, options);
+
+        SiteStore store = SiteFactory.loadSiteStore(Arrays.asList("local", "siteA", "siteB"), bag);
+        store.setForPlannerUse(props, options);
+        bag.add(PegasusBag.SITE_STORE, store);
+
+        ADag dag = this.createWorkflow();
+        ReplicaCatalogBridge rcb = new ReplicaCatalogBridge(dag, bag);
+        PlannerCache plannerCache = new PlannerCache();
+        plannerCache.initialize(bag, dag);
+
+        TransferEngine engine = new TransferEngine(dag, bag, new LinkedList(), new LinkedList());
+        engine.addTransferNodes(rcb, plannerCache);
+        plannerCache.close();
+        rcb.closeConnection();
+
+        // the source url priorities of every stage in transfer, and
+        // the stage in jobs every compute job depends on
+        Map<String, String> result = new TreeMap();
+        for (Iterator<GraphNode> it = dag.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            Job job = (Job) node.getContent();
+            if (job.getJobType() == Job.COMPUTE_JOB) {
+                Set<String> parents = new TreeSet();
+                for (GraphNode parent : node.getParents()) {
+                    parents.add(parent.getID());
+                }
+                result.put(job.getID(), parents.toString());
+            }
+            if (job.getJobType() != Job.STAGE_IN_JOB) {
+                continue;
+            }
+            for (Object file : job.getOutputFiles()) {
+                FileTransfer ft = (FileTransfer) file;
+                StringBuilder priorities = new StringBuilder();
+                for (String site : new TreeSet<String>(ft.getSourceSites())) {
+                    for (ReplicaCatalogEntry rce : ft.getSourceURLs(site)) {
+                        priorities
+                                .append(priorities.length() == 0 ? "" : " ")
+                                .append(site)
+                                .append("=")
+                                .append(rce.getAttribute(ReplicaSelector.PRIORITY_KEY));
+                    }
+                }
+                result.put(
+                        "transfer " + ft.getLFN() + " -> " + ft.getDestURL().getValue(),
+                        priorities.toString());
+            }
+        }
+        mLogger.logEventCompletion();
+        return result;
+    }
+
+    /** Returns the transfers and parents, with only the sites of the source URLs. */
+    private Map<String, String> withoutPriorities(Map<String, String> transfers) {
+        Map<String, String> result = new TreeMap();
+        for (Map.Entry<String, String> entry : transfers.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().replaceAll("=\\S*", ""));
+        }
+        return result;
+    }
+
+    /**
+     * Creates a workflow of independent jobs alternating between siteA and siteB, each reading the
+     * reference files.
+     *
+     * @return the workflow
+     */
+    private ADag createWorkflow() {
+        ADag dag = new ADag();
+        dag.setLabel("transfers");
+        dag.setIndex("0");
+        for (int i = 0; i < JOBS; i++) {
+            String site = (i % 2 == 0) ? "siteA" : "siteB";
+            Job job = new Job();
+            job.setTransformation("pegasus", "process", "1.0");
+            job.setLogicalID("ID" + i);
+            job.setName("process_" + i + "_" + site.substring(4));
+            job.setJobType(Job.COMPUTE_JOB);
+            job.setSiteHandle(site);
+            job.setStagingSiteHandle(site);
+            job.setRemoteExecutable("/usr/bin/process");
+            for (String lfn : REFERENCE_FILES) {
+                PegasusFile pf = new PegasusFile(lfn);
+                pf.setLinkage(PegasusFile.LINKAGE.input);
+                job.addInputFile(pf);
+                dag.getDAGInfo().updateLFNMap(job.getLogicalID(), lfn, 'i');
+            }
+            dag.add(job);
+        }
+        // the transfer jobs are not tasks in the abstract workflow
+        dag.getWorkflowMetrics().lockTaskMetrics(true);
+        return dag;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
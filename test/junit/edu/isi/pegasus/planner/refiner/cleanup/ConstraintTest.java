@@ -0,0 +1,187 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.Test;
+
+/** Test class to test the cleanup jobs added by the Constraint cleanup strategy. */
+public class ConstraintTest {
+
+    private static final String[] SITES = {"staging_c", "staging_a", "staging_b", "staging_d"};
+
+    /** The size of each file in the workflow. */
+    private static final long FILE_SIZE = 4 * 1024 * 1024;
+
+    @Test
+    public void testCleanupJobsAdded() {
+        Map<String, Set<String>> edges = this.getEdges(this.addCleanupJobs(this.workflow(), "1"));
+        for (String site : SITES) {
+            // the intermediate files are deleted as soon as they are
+            // consumed, to make space for the outputs of the other jobs
+            for (String suffix : new String[] {"1", "2"}) {
+                assertTrue(
+                        edges.toString(),
+                        edges.get(site + "_findrange" + suffix)
+                                .contains("cleanup[" + site + ".b" + suffix + "]"));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        Map<String, Set<String>> sequential =
+                this.getEdges(this.addCleanupJobs(this.workflow(), "1"));
+        for (int i = 0; i < 5; i++) {
+            Map<String, Set<String>> parallel =
+                    this.getEdges(this.addCleanupJobs(this.workflow(), "4"));
+            assertEquals(sequential, parallel);
+        }
+    }
+
+    private Graph addCleanupJobs(Graph workflow, String threads) {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.file.cleanup.constraint.threads", threads);
+        props.setProperty("pegasus.file.cleanup.constraint.maxspace", Long.toString(3 * FILE_SIZE));
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        LogManager logger = new DefaultTestSetup().loadLogger(props);
+        logger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        logger.logEventStart("test.refiner.cleanup.Constraint", "threads", threads);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+
+        Constraint constraint = new Constraint();
+        constraint.initialize(bag, new StubCleanup());
+        workflow = constraint.addCleanupJobs(workflow);
+        logger.logEventCompletion();
+        return workflow;
+    }
+
+    /**
+     * Returns a workflow with a diamond per site, where the preprocess job generates two
+     * intermediate files, each consumed by a findrange job, whose outputs are consumed by the
+     * analyze job.
+     */
+    private Graph workflow() {
+        Graph workflow = new MapGraph();
+        for (String site : SITES) {
+            Job preprocess = this.job(site + "_preprocess", site);
+            preprocess.addInputFile(this.file(site + ".input"));
+            preprocess.addOutputFile(this.file(site + ".b1"));
+            preprocess.addOutputFile(this.file(site + ".b2"));
+
+            Job analyze = this.job(site + "_analyze", site);
+            analyze.addOutputFile(this.file(site + ".output"));
+
+            GraphNode p = new GraphNode(preprocess.getID(), preprocess);
+            GraphNode a = new GraphNode(analyze.getID(), analyze);
+            workflow.addNode(p);
+            workflow.addNode(a);
+            for (String suffix : new String[] {"1", "2"}) {
+                Job findrange = this.job(site + "_findrange" + suffix, site);
+                findrange.addInputFile(this.file(site + ".b" + suffix));
+                findrange.addOutputFile(this.file(site + ".c" + suffix));
+                analyze.addInputFile(this.file(site + ".c" + suffix));
+
+                GraphNode f = new GraphNode(findrange.getID(), findrange);
+                workflow.addNode(f);
+                workflow.addEdge(p, f);
+                workflow.addEdge(f, a);
+            }
+        }
+        return workflow;
+    }
+
+    private PegasusFile file(String lfn) {
+        PegasusFile pf = new PegasusFile(lfn);
+        pf.setSize(FILE_SIZE);
+        if (!lfn.endsWith(".output")) {
+            pf.setTransferFlag(PegasusFile.TRANSFER_NOT);
+        }
+        return pf;
+    }
+
+    private Job job(String id, String site) {
+        Job job = new Job();
+        job.setName(id);
+        job.setLogicalID(id);
+        job.setTXName(id);
+        job.setJobType(Job.COMPUTE_JOB);
+        job.setSiteHandle("compute");
+        job.setStagingSiteHandle(site);
+        return job;
+    }
+
+    /**
+     * Returns the edges of the workflow, with the cleanup jobs that are named randomly labeled by
+     * the files they delete.
+     */
+    private Map<String, Set<String>> getEdges(Graph workflow) {
+        Map<String, Set<String>> edges = new TreeMap();
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            Set<String> children = new TreeSet();
+            for (GraphNode child : node.getChildren()) {
+                children.add(this.getLabel(child));
+            }
+            assertNull(edges.put(this.getLabel(node), children));
+        }
+        return edges;
+    }
+
+    private String getLabel(GraphNode node) {
+        Job job = (Job) node.getContent();
+        if (job.getJobType() != Job.CLEANUP_JOB) {
+            return node.getID();
+        }
+        Set<String> lfns = new TreeSet();
+        for (PegasusFile pf : job.getInputFiles()) {
+            lfns.add(pf.getLFN());
+        }
+        return "cleanup" + lfns;
+    }
+
+    /** Creates cleanup jobs that list the files to be deleted as their inputs. */
+    private static class StubCleanup implements CleanupImplementation {
+
+        public void initialize(PegasusBag bag) {}
+
+        public Job createCleanupJob(String id, List files, Job job) {
+            Job cleanup = new Job();
+            cleanup.setName(id);
+            cleanup.setJobType(Job.CLEANUP_JOB);
+            cleanup.setSiteHandle(job.getStagingSiteHandle());
+            for (Object file : files) {
+                cleanup.addInputFile((PegasusFile) file);
+            }
+            return cleanup;
+        }
+    }
+}
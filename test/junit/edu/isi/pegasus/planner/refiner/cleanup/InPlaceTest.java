@@ -0,0 +1,174 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.Test;
+
+/** Test class to test the cleanup jobs added by the InPlace cleanup strategy. */
+public class InPlaceTest {
+
+    private static final String[] SITES = {"staging_c", "staging_a", "staging_b"};
+
+    @Test
+    public void testCleanupJobsPerSite() {
+        Graph workflow = this.addCleanupJobs(this.workflow(), "1");
+
+        for (String site : SITES) {
+            GraphNode inputCleanup = workflow.getNode("clean_up_" + site + "_level_1_0");
+            assertNotNull(inputCleanup);
+            assertEquals(
+                    "[" + site + "_preprocess]", this.getIDs(inputCleanup.getParents()).toString());
+            assertEquals("[" + site + ".input]", this.getLFNs(inputCleanup).toString());
+
+            // the edge from the preprocess job is redundant, as it is a parent of analyze
+            GraphNode intermediateCleanup = workflow.getNode("clean_up_" + site + "_level_2_0");
+            assertNotNull(intermediateCleanup);
+            assertEquals(
+                    "[" + site + "_analyze]",
+                    this.getIDs(intermediateCleanup.getParents()).toString());
+            assertEquals(
+                    "[" + site + ".intermediate]", this.getLFNs(intermediateCleanup).toString());
+            assertTrue(
+                    workflow.getNode(site + "_analyze")
+                            .getChildren()
+                            .contains(intermediateCleanup));
+            assertFalse(
+                    workflow.getNode(site + "_preprocess")
+                            .getChildren()
+                            .contains(intermediateCleanup));
+        }
+        // outputs that are not staged out are never cleaned up
+        assertEquals(SITES.length * 4, workflow.size());
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        Map<String, String> sequential = this.getEdges(this.addCleanupJobs(this.workflow(), "1"));
+        Map<String, String> parallel = this.getEdges(this.addCleanupJobs(this.workflow(), "3"));
+        assertEquals(sequential, parallel);
+    }
+
+    private Graph addCleanupJobs(Graph workflow, String threads) {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.file.cleanup.inplace.threads", threads);
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        LogManager logger = new DefaultTestSetup().loadLogger(props);
+        logger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        logger.logEventStart("test.refiner.cleanup.InPlace", "threads", threads);
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+
+        InPlace inplace = new InPlace();
+        inplace.initialize(bag, new StubCleanup());
+        workflow = inplace.addCleanupJobs(workflow);
+        logger.logEventCompletion();
+        return workflow;
+    }
+
+    /**
+     * Returns a workflow with two jobs per site, where the first job generates an intermediate file
+     * consumed by the second one.
+     */
+    private Graph workflow() {
+        Graph workflow = new MapGraph();
+        for (String site : SITES) {
+            Job preprocess = this.job(site + "_preprocess", site);
+            preprocess.addInputFile(new PegasusFile(site + ".input"));
+            PegasusFile intermediate = new PegasusFile(site + ".intermediate");
+            intermediate.setTransferFlag(PegasusFile.TRANSFER_NOT);
+            preprocess.addOutputFile(intermediate);
+
+            Job analyze = this.job(site + "_analyze", site);
+            analyze.addInputFile(new PegasusFile(site + ".intermediate"));
+            analyze.addOutputFile(new PegasusFile(site + ".output"));
+
+            GraphNode p = new GraphNode(preprocess.getID(), preprocess);
+            GraphNode a = new GraphNode(analyze.getID(), analyze);
+            workflow.addNode(p);
+            workflow.addNode(a);
+            workflow.addEdge(p, a);
+        }
+        return workflow;
+    }
+
+    private Job job(String id, String site) {
+        Job job = new Job();
+        job.setName(id);
+        job.setLogicalID(id);
+        job.setTXName(id);
+        job.setJobType(Job.COMPUTE_JOB);
+        job.setSiteHandle("compute");
+        job.setStagingSiteHandle(site);
+        return job;
+    }
+
+    private Map<String, String> getEdges(Graph workflow) {
+        Map<String, String> edges = new TreeMap();
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            edges.put(node.getID(), this.getIDs(node.getChildren()).toString());
+        }
+        return edges;
+    }
+
+    private Set<String> getIDs(Iterable<GraphNode> nodes) {
+        Set<String> ids = new TreeSet();
+        for (GraphNode node : nodes) {
+            ids.add(node.getID());
+        }
+        return ids;
+    }
+
+    private Set<String> getLFNs(GraphNode cleanup) {
+        Set<String> lfns = new TreeSet();
+        for (PegasusFile pf : ((Job) cleanup.getContent()).getInputFiles()) {
+            lfns.add(pf.getLFN());
+        }
+        return lfns;
+    }
+
+    /** Creates cleanup jobs that list the files to be deleted as their inputs. */
+    private static class StubCleanup implements CleanupImplementation {
+
+        public void initialize(PegasusBag bag) {}
+
+        public Job createCleanupJob(String id, List files, Job job) {
+            Job cleanup = new Job();
+            cleanup.setName(id);
+            cleanup.setJobType(Job.CLEANUP_JOB);
+            cleanup.setSiteHandle(job.getStagingSiteHandle());
+            for (Object file : files) {
+                cleanup.addInputFile((PegasusFile) file);
+            }
+            return cleanup;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2007-2015 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup.constraint;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/** A JUnit Test to test that the choice queue selects the same choice as a scan over the heads. */
+public class ChoiceQueueTest {
+
+    @Test
+    public void testReleasingChoicePreferred() {
+        ChoiceQueue queue = new ChoiceQueue();
+        GraphNode a = new GraphNode("a");
+        GraphNode b = new GraphNode("b");
+        GraphNode c = new GraphNode("c");
+        queue.put(a, choice(a, 50, 10));
+        queue.put(b, choice(b, 30, -5));
+        queue.put(c, choice(c, 20, 0));
+        assertSame(c, queue.select(Arrays.asList(a, b, c)).listOfJobs.get(0));
+
+        // c no longer frees space
+        queue.put(c, choice(c, 20, 5));
+        assertSame(b, queue.select(Arrays.asList(a, b, c)).listOfJobs.get(0));
+
+        // none free space, least balance wins
+        queue.remove(b);
+        assertSame(c, queue.select(Arrays.asList(a, c)).listOfJobs.get(0));
+        assertEquals(2, queue.size());
+        assertNull(queue.get(b));
+    }
+
+    @Test
+    public void testTiesBrokenByOrder() {
+        ChoiceQueue queue = new ChoiceQueue();
+        GraphNode a = new GraphNode("a");
+        GraphNode b = new GraphNode("b");
+        queue.put(a, choice(a, 0, 0));
+        queue.put(b, choice(b, 0, 0));
+        assertSame(b, queue.select(Arrays.asList(b, a)).listOfJobs.get(0));
+        assertSame(a, queue.select(Arrays.asList(a, b)).listOfJobs.get(0));
+    }
+
+    @Test
+    public void testEmpty() {
+        ChoiceQueue queue = new ChoiceQueue();
+        assertNull(queue.select(Collections.<GraphNode>emptyList()));
+    }
+
+    @Test
+    public void testRandomUpdatesMatchScan() {
+        Random random = new Random(42);
+        ChoiceQueue queue = new ChoiceQueue();
+        Set<GraphNode> heads = new HashSet<GraphNode>();
+        HashMap<GraphNode, Choice> choices = new HashMap<GraphNode, Choice>();
+        for (int i = 0; i < 2000; i++) {
+            GraphNode node = new GraphNode("n" + random.nextInt(50));
+            if (random.nextInt(4) == 0) {
+                heads.remove(node);
+                choices.remove(node);
+                queue.remove(node);
+            } else {
+                Choice choice = choice(node, random.nextInt(5) * 10, (random.nextInt(7) - 3) * 10);
+                heads.add(node);
+                choices.put(node, choice);
+                queue.put(node, choice);
+            }
+            assertSame(scan(heads, choices), queue.select(heads));
+        }
+    }
+
+    /** The selection as made by a scan over the heads. */
+    private Choice scan(Set<GraphNode> heads, HashMap<GraphNode, Choice> choices) {
+        Choice candidate = null;
+        for (GraphNode head : heads) {
+            Choice c = choices.get(head);
+            if (c.balance <= 0
+                    && (candidate == null
+                            || c.intermediateSpaceRequirement
+                                    < candidate.intermediateSpaceRequirement)) {
+                candidate = c;
+            }
+        }
+        if (candidate == null) {
+            for (GraphNode head : heads) {
+                Choice c = choices.get(head);
+                if (candidate == null || c.balance < candidate.balance) {
+                    candidate = c;
+                }
+            }
+        }
+        return candidate;
+    }
+
+    private Choice choice(GraphNode node, long intermediate, long balance) {
+        List<GraphNode> jobs = new LinkedList<GraphNode>();
+        jobs.add(node);
+        return new Choice(intermediate, balance, jobs, new HashMap());
+    }
+}
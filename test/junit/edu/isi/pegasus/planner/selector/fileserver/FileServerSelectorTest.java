@@ -0,0 +1,266 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.fileserver;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.site.classes.Directory;
+import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.classes.Profile;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.mapper.StagingMapper;
+import edu.isi.pegasus.planner.mapper.staging.Flat;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.Test;
+
+/**
+ * Test class to test the distribution of files amongst the shared scratch file servers of a site,
+ * by the file server selectors.
+ */
+public class FileServerSelectorTest {
+
+    private static final String SITE = "staging";
+
+    private static final int FILES = 20000;
+
+    private static final int FILES_PER_JOB = 10;
+
+    @Test
+    public void testDefaultSelector() {
+        StagingMapper mapper = this.loadMapper(null, null, new int[] {1, 1});
+        assertTrue(mapper.isThreadSafe());
+    }
+
+    @Test
+    public void testRoundRobinBalance() {
+        Map<String, Distribution> d = this.distribute("RoundRobin", null, new int[] {1, 1, 1, 1});
+        for (Distribution server : d.values()) {
+            assertEquals(FILES / 4, server.mFiles);
+        }
+        this.assertBytesBalanced(d, 0.05);
+    }
+
+    @Test
+    public void testWeightedRoundRobin() {
+        Map<String, Distribution> d = this.distribute("RoundRobin", null, new int[] {1, 1, 2, 4});
+        assertEquals(FILES / 8, d.get(this.server(0)).mFiles);
+        assertEquals(FILES / 8, d.get(this.server(1)).mFiles);
+        assertEquals(FILES / 4, d.get(this.server(2)).mFiles);
+        assertEquals(FILES / 2, d.get(this.server(3)).mFiles);
+        assertFalse(this.loadMapper("RoundRobin", null, new int[] {1}).isThreadSafe());
+    }
+
+    @Test
+    public void testConsistentHashBalance() {
+        Map<String, Distribution> d =
+                this.distribute("ConsistentHash", null, new int[] {1, 1, 1, 1});
+        this.assertBytesBalanced(d, 0.15);
+
+        d = this.distribute("ConsistentHash", null, new int[] {1, 1, 2, 4});
+        assertEquals(0.125, d.get(this.server(0)).mFiles / (double) FILES, 0.03);
+        assertEquals(0.5, d.get(this.server(3)).mFiles / (double) FILES, 0.05);
+    }
+
+    @Test
+    public void testConsistentHashStableAcrossPlans() {
+        StagingMapper first = this.loadMapper("ConsistentHash", null, new int[] {1, 1, 1, 1});
+        StagingMapper second = this.loadMapper("ConsistentHash", null, new int[] {1, 1, 1, 1});
+        SiteCatalogEntry site = this.site(new int[] {1, 1, 1, 1});
+        SiteCatalogEntry fewer = this.site(new int[] {1, 1, 1});
+        int moved = 0;
+        for (int i = 0; i < FILES; i++) {
+            Job job = this.job(i);
+            String lfn = this.lfn(i);
+            String url = this.map(first, job, site, lfn);
+            assertEquals(url, this.map(second, job, site, lfn));
+
+            // removing a file server only remaps the files on that server
+            String remapped = this.map(second, job, fewer, lfn);
+            if (!url.equals(remapped)) {
+                assertTrue(url.startsWith(this.server(3)));
+                moved++;
+            }
+        }
+        assertTrue(moved > 0);
+    }
+
+    @Test
+    public void testConsistentHashOnJob() {
+        StagingMapper mapper = this.loadMapper("ConsistentHash", "job", new int[] {1, 1, 1, 1});
+        SiteCatalogEntry site = this.site(new int[] {1, 1, 1, 1});
+        for (int i = 0; i < FILES; i += FILES_PER_JOB) {
+            Job job = this.job(i);
+            String prefix = this.urlPrefix(this.map(mapper, job, site, null));
+            for (int j = i; j < i + FILES_PER_JOB; j++) {
+                assertEquals(prefix, this.urlPrefix(this.map(mapper, job, site, this.lfn(j))));
+            }
+        }
+    }
+
+    @Test
+    public void testConsistentHashOnJobWithoutJob() {
+        // the output mappers select the file server without a job, and
+        // then the lfn is hashed instead of all files going to one server
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty(ConsistentHash.HASH_PROPERTY_KEY, "job");
+        ConsistentHash selector = new ConsistentHash(props);
+        ConsistentHash lfnSelector = new ConsistentHash(PegasusProperties.nonSingletonInstance());
+        List<FileServer> servers =
+                this.site(new int[] {1, 1, 1, 1})
+                        .getDirectory(Directory.TYPE.shared_scratch)
+                        .getFileServers(FileServer.OPERATION.all);
+        Set<String> selected = new HashSet();
+        for (int i = 0; i < 100; i++) {
+            FileServer server = selector.selectFileServer(servers, null, this.lfn(i));
+            assertSame(server, lfnSelector.selectFileServer(servers, null, this.lfn(i)));
+            selected.add(server.getURLPrefix());
+        }
+        assertEquals(4, selected.size());
+    }
+
+    /**
+     * Maps the synthetic files through the Flat staging mapper to a site with a shared scratch file
+     * server for each of the weights passed, and reports the per server distribution.
+     */
+    private Map<String, Distribution> distribute(String selector, String hash, int[] weights) {
+        StagingMapper mapper = this.loadMapper(selector, hash, weights);
+        SiteCatalogEntry site = this.site(weights);
+        Map<String, Distribution> result = new TreeMap();
+        for (int i = 0; i < weights.length; i++) {
+            result.put(this.server(i), new Distribution());
+        }
+        for (int i = 0; i < FILES; i++) {
+            String prefix = this.urlPrefix(this.map(mapper, this.job(i), site, this.lfn(i)));
+            Distribution d = result.get(prefix);
+            d.mFiles++;
+            d.mBytes += this.size(i);
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(selector).append(" weights ").append(java.util.Arrays.toString(weights));
+        for (Map.Entry<String, Distribution> entry : result.entrySet()) {
+            report.append("\n  ")
+                    .append(entry.getKey())
+                    .append(" files ")
+                    .append(entry.getValue().mFiles)
+                    .append(" bytes ")
+                    .append(entry.getValue().mBytes);
+        }
+        System.out.println(report);
+        return result;
+    }
+
+    private void assertBytesBalanced(Map<String, Distribution> d, double tolerance) {
+        long total = 0;
+        for (Distribution server : d.values()) {
+            total += server.mBytes;
+        }
+        double mean = total / (double) d.size();
+        for (Map.Entry<String, Distribution> entry : d.entrySet()) {
+            assertEquals(entry.getKey(), 1.0, entry.getValue().mBytes / mean, tolerance);
+        }
+    }
+
+    private StagingMapper loadMapper(String selector, String hash, int[] weights) {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        if (selector != null) {
+            props.setProperty("pegasus.selector.fileserver", selector);
+        }
+        if (hash != null) {
+            props.setProperty(ConsistentHash.HASH_PROPERTY_KEY, hash);
+        }
+        PegasusBag bag = new PegasusBag();
+        bag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        LogManager logger = new DefaultTestSetup().loadLogger(props);
+        logger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        logger.logEventStart("test.selector.fileserver", "selector", String.valueOf(selector));
+        bag.add(PegasusBag.PEGASUS_LOGMANAGER, logger);
+        SiteStore store = new SiteStore();
+        store.setForPlannerUse(props, new PlannerOptions());
+        store.addEntry(this.site(weights));
+        bag.add(PegasusBag.SITE_STORE, store);
+
+        StagingMapper mapper = new Flat();
+        mapper.initialize(bag, new Properties());
+        return mapper;
+    }
+
+    private String map(StagingMapper mapper, Job job, SiteCatalogEntry site, String lfn) {
+        return mapper.map(job, new File("."), site, FileServer.OPERATION.get, lfn);
+    }
+
+    /** Returns a site with a shared scratch file server for each of the weights passed. */
+    private SiteCatalogEntry site(int[] weights) {
+        SiteCatalogEntry site = new SiteCatalogEntry(SITE);
+        Directory scratch = new Directory();
+        scratch.setType(Directory.TYPE.shared_scratch);
+        for (int i = 0; i < weights.length; i++) {
+            FileServer server = new FileServer("gsiftp", this.server(i), "/scratch");
+            server.setSupportedOperation(FileServer.OPERATION.all);
+            server.addProfile(
+                    new Profile(
+                            Profile.VDS,
+                            Pegasus.FILESERVER_WEIGHT_KEY,
+                            Integer.toString(weights[i])));
+            scratch.addFileServer(server);
+        }
+        site.addDirectory(scratch);
+        return site;
+    }
+
+    private String server(int i) {
+        return "gsiftp://fs" + i + ".example.edu";
+    }
+
+    private String urlPrefix(String url) {
+        return url.substring(0, url.indexOf('/', "gsiftp://".length()));
+    }
+
+    private Job job(int i) {
+        Job job = new Job();
+        job.setName("job_" + (i / FILES_PER_JOB));
+        job.setJobType(Job.COMPUTE_JOB);
+        return job;
+    }
+
+    private String lfn(int i) {
+        return "f.b" + i + ".out";
+    }
+
+    /** Synthetic file sizes between 1 and 100 MB. */
+    private long size(int i) {
+        return ((i * 7919L) % 100 + 1) * 1024 * 1024;
+    }
+
+    private static class Distribution {
+
+        private int mFiles;
+
+        private long mBytes;
+    }
+}
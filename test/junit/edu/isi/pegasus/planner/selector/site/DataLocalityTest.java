@@ -0,0 +1,267 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.site;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.Mapper;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.classes.ReplicaLocation;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Selector;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.refiner.ReplicaCatalogBridge;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class to test the Data Locality site selector against a file based replica catalog. */
+public class DataLocalityTest {
+
+    private static final List<String> SITES = Arrays.asList("siteA", "siteB");
+
+    private static final double MB = 1024 * 1024;
+
+    private PegasusBag mBag;
+
+    private LogManager mLogger;
+
+    private ReplicaCatalogBridge mRCBridge;
+
+    @Before
+    public void setUp() {
+        TestSetup setup = new DefaultTestSetup();
+        setup.setInputDirectory(this.getClass());
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty("pegasus.catalog.replica", "File");
+        props.setProperty(
+                "pegasus.catalog.replica.file",
+                new File(setup.getInputDirectory(), "rc.txt").getAbsolutePath());
+
+        mBag = new PegasusBag();
+        mBag.add(PegasusBag.PEGASUS_PROPERTIES, props);
+        mLogger = setup.loadLogger(props);
+        mLogger.setLevel(LogManager.ERROR_MESSAGE_LEVEL);
+        mLogger.logEventStart("test.selector.site.DataLocality", "setup", "0");
+        mBag.add(PegasusBag.PEGASUS_LOGMANAGER, mLogger);
+        mBag.add(PegasusBag.PLANNER_OPTIONS, new PlannerOptions());
+        mBag.add(PegasusBag.SITE_STORE, new SiteStore());
+        mBag.add(PegasusBag.TRANSFORMATION_MAPPER, new AllSitesMapper(mBag));
+    }
+
+    @Test
+    public void testMapsJobsToResidentInputs() {
+        ADag dag = this.workflow();
+        this.mapWorkflow(dag);
+
+        assertEquals("siteA", this.getJob(dag, "align_a").getSiteHandle());
+        assertEquals("siteB", this.getJob(dag, "align_b").getSiteHandle());
+        // the output of align_a is bigger than the output of align_b
+        assertEquals("siteA", this.getJob(dag, "merge").getSiteHandle());
+        // ref.dat is on both sites, and has no size. The load breaks the tie
+        assertNotEquals(
+                this.getJob(dag, "qc_1").getSiteHandle(), this.getJob(dag, "qc_2").getSiteHandle());
+
+        // only the output of align_b needs to be staged
+        double[] staged = this.getStagedInputs(dag);
+        assertEquals(1, (int) staged[0]);
+        assertEquals(11 * MB, staged[1], 0);
+    }
+
+    @Test
+    public void testOutputsOfHintedJobsAreResident() {
+        ADag dag = this.workflow();
+        // align_a is pinned to the site that does not have its raw data
+        this.getJob(dag, "align_a")
+                .getSelectorProfiles()
+                .construct(Selector.EXECUTION_SITE_KEY, "siteB");
+        Job index = this.job(dag, "index", "a.bai", 1 * MB);
+        this.input(dag, index, "a.bam", 1024 * MB);
+        dag.addEdge("align_a", index.getID());
+        this.mapWorkflow(dag);
+
+        // align_b on siteB is the only job mapped by the selector before
+        // index, so the load alone would place index on siteA
+        assertEquals("siteB", index.getSiteHandle());
+        assertEquals("siteB", this.getJob(dag, "merge").getSiteHandle());
+    }
+
+    @Test
+    public void testTieOnBytesIsBrokenByResidentFiles() {
+        ADag dag = new ADag();
+        Job job = this.job(dag, "count", "count.txt", 1);
+        // no size metadata, so both sites have zero resident bytes
+        this.input(dag, job, "raw_a.dat", -1);
+        this.input(dag, job, "raw_b.dat", -1);
+        this.input(dag, job, "raw_c.dat", -1);
+        this.mapWorkflow(dag);
+
+        assertEquals("siteB", job.getSiteHandle());
+    }
+
+    @Test
+    public void testTieOnFilesIsBrokenByLoad() {
+        ADag dag = new ADag();
+        Job pinned = this.job(dag, "pinned", "pinned.txt", 1);
+        pinned.getSelectorProfiles().construct(Selector.EXECUTION_SITE_KEY, "siteA");
+        Job first = this.job(dag, "qc_1", "qc_1.txt", 1);
+        this.input(dag, first, "ref.dat", -1);
+        Job second = this.job(dag, "qc_2", "qc_2.txt", 1);
+        this.input(dag, second, "ref.dat", -1);
+        dag.addEdge(pinned.getID(), first.getID());
+        dag.addEdge(first.getID(), second.getID());
+        this.mapWorkflow(dag);
+
+        // the hinted job counts towards the load on siteA
+        assertEquals("siteB", first.getSiteHandle());
+        assertEquals("siteA", second.getSiteHandle());
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        if (mRCBridge != null) {
+            mRCBridge.closeConnection();
+        }
+    }
+
+    private void mapWorkflow(ADag dag) {
+        mRCBridge = new ReplicaCatalogBridge(dag, mBag);
+        mBag.add(PegasusBag.REPLICA_CATALOG_BRIDGE, mRCBridge);
+        DataLocality selector = new DataLocality();
+        selector.initialize(mBag);
+        selector.mapWorkflow(dag, SITES);
+    }
+
+    /**
+     * Returns the number of input files, and the bytes that need to be staged to the sites the jobs
+     * are mapped to.
+     */
+    private double[] getStagedInputs(ADag dag) {
+        Map<String, String> generated = new HashMap();
+        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            for (PegasusFile pf : job.getOutputFiles()) {
+                generated.put(pf.getLFN(), job.getSiteHandle());
+            }
+        }
+
+        double[] result = new double[2];
+        for (Iterator<GraphNode> it = dag.jobIterator(); it.hasNext(); ) {
+            Job job = (Job) it.next().getContent();
+            for (PegasusFile pf : job.getInputFiles()) {
+                Set<String> sites = new HashSet();
+                if (generated.containsKey(pf.getLFN())) {
+                    sites.add(generated.get(pf.getLFN()));
+                }
+                ReplicaLocation rl = mRCBridge.getFileLocs(pf.getLFN());
+                if (rl != null) {
+                    for (ReplicaCatalogEntry rce : rl.getPFNList()) {
+                        sites.add(rce.getResourceHandle());
+                    }
+                }
+                if (!sites.contains(job.getSiteHandle())) {
+                    result[0]++;
+                    result[1] += Math.max(pf.getSize(), 0);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a workflow where align_a and align_b process raw data resident on siteA and siteB,
+     * merge combines their outputs, and two qc jobs read reference data resident on both sites.
+     */
+    private ADag workflow() {
+        ADag dag = new ADag();
+        Job alignA = this.job(dag, "align_a", "a.bam", 1024 * MB);
+        this.input(dag, alignA, "raw_a.dat", 1024 * MB);
+        Job alignB = this.job(dag, "align_b", "b.bam", 11 * MB);
+        this.input(dag, alignB, "raw_b.dat", 1 * MB);
+        this.input(dag, alignB, "raw_c.dat", 10 * MB);
+        Job merge = this.job(dag, "merge", "merged.bam", 1035 * MB);
+        this.input(dag, merge, "a.bam", 1024 * MB);
+        this.input(dag, merge, "b.bam", 11 * MB);
+        dag.addEdge(alignA.getID(), merge.getID());
+        dag.addEdge(alignB.getID(), merge.getID());
+        for (String id : new String[] {"qc_1", "qc_2"}) {
+            Job qc = this.job(dag, id, id + ".txt", 1);
+            this.input(dag, qc, "ref.dat", -1);
+        }
+        return dag;
+    }
+
+    private Job job(ADag dag, String id, String output, double size) {
+        Job job = new Job();
+        job.setJobType(Job.COMPUTE_JOB);
+        job.setTXName(id);
+        job.setLogicalID(id);
+        job.setName(id);
+        PegasusFile pf = new PegasusFile(output);
+        pf.setSize(size);
+        job.addOutputFile(pf);
+        dag.getDAGInfo().updateLFNMap(id, output, 'o');
+        dag.add(job);
+        return job;
+    }
+
+    private void input(ADag dag, Job job, String lfn, double size) {
+        PegasusFile pf = new PegasusFile(lfn);
+        pf.setSize(size);
+        job.addInputFile(pf);
+        dag.getDAGInfo().updateLFNMap(job.getLogicalID(), lfn, 'i');
+    }
+
+    private Job getJob(ADag dag, String id) {
+        return (Job) dag.getNode(id).getContent();
+    }
+
+    /** A transformation mapper that deems all the sites valid for all transformations. */
+    private static class AllSitesMapper extends Mapper {
+
+        AllSitesMapper(PegasusBag bag) {
+            super(bag);
+        }
+
+        public List getSiteList(String namespace, String name, String version, List siteids) {
+            return siteids;
+        }
+
+        public Map getSiteMap(String namespace, String name, String version, List siteids) {
+            return null;
+        }
+
+        public String getMode() {
+            return "All Sites Mapper";
+        }
+    }
+}
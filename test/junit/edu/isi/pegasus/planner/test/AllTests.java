@@ -23,6 +23,7 @@ import org.junit.runners.Suite;
     edu.isi.pegasus.common.util.VersionTest.class,
     edu.isi.pegasus.common.util.PegasusURLTest.class,
     edu.isi.pegasus.common.util.FileDetectorTest.class,
+    edu.isi.pegasus.common.logging.logger.AsyncTest.class,
     edu.isi.pegasus.planner.namespace.PegasusTest.class,
     edu.isi.pegasus.planner.namespace.MetadataTest.class,
     edu.isi.pegasus.planner.catalog.replica.ReplicaFactoryTest.class,
@@ -31,7 +32,9 @@ import org.junit.runners.Suite;
     edu.isi.pegasus.planner.catalog.replica.impl.YAMLRCTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.MetaRCTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.JDBCRCTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.NegativeLookupCacheTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.SimpleFileTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.IndexedTest.class,
     edu.isi.pegasus.planner.catalog.site.SiteFactoryTest.class,
     edu.isi.pegasus.planner.catalog.site.impl.XMLTest.class,
     edu.isi.pegasus.planner.catalog.site.impl.YAMLTest.class,
@@ -43,6 +46,7 @@ import org.junit.runners.Suite;
     edu.isi.pegasus.planner.catalog.transformation.classes.TransformationCatalogEntryTest.class,
     edu.isi.pegasus.planner.catalog.transformation.classes.ContainerTest.class,
     edu.isi.pegasus.planner.catalog.transformation.classes.TransformationTest.class,
+    edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStoreCacheTest.class,
     edu.isi.pegasus.planner.catalog.transformation.mapper.AllTest.class,
     edu.isi.pegasus.planner.catalog.transformation.mapper.StagedTest.class,
     edu.isi.pegasus.planner.catalog.transformation.impl.TextTest.class,
@@ -52,6 +56,7 @@ import org.junit.runners.Suite;
     edu.isi.pegasus.planner.classes.NotificationsTest.class,
     edu.isi.pegasus.planner.cluster.RuntimeClusteringTest.class,
     edu.isi.pegasus.planner.code.GridStartTest.class,
+    edu.isi.pegasus.planner.code.gridstart.PegasusLiteTest.class,
     edu.isi.pegasus.planner.code.generator.condor.CondorEnvironmentEscapeTest.class,
     edu.isi.pegasus.planner.code.generator.condor.style.GliteTest.class,
     edu.isi.pegasus.planner.code.generator.condor.style.CondorTest.class,
@@ -62,12 +67,31 @@ import org.junit.runners.Suite;
     edu.isi.pegasus.planner.mapper.output.FixedOutputMapperTest.class,
     edu.isi.pegasus.planner.refiner.DataReuseEngineTest.class,
     edu.isi.pegasus.planner.refiner.InterPoolEngineTest.class,
+    edu.isi.pegasus.planner.refiner.NodeCollapserTest.class,
+    edu.isi.pegasus.planner.refiner.TransferEngineTest.class,
     edu.isi.pegasus.common.util.GLiteEscapeTest.class,
     edu.isi.pegasus.common.util.VariableExpanderTest.class,
     edu.isi.pegasus.planner.partitioner.graph.CycleCheckerTest.class,
     edu.isi.pegasus.planner.parser.DAXParserFactoryTest.class,
+    edu.isi.pegasus.planner.parser.TransformationCatalogTextScannerTest.class,
     edu.isi.pegasus.planner.parser.dax.DAXParser3Test.class,
     edu.isi.pegasus.planner.parser.dax.DAXParser5Test.class,
-    edu.isi.pegasus.planner.dax.ADAGTest.class
+    edu.isi.pegasus.planner.dax.ADAGTest.class,
+    edu.isi.pegasus.planner.common.PlanCacheTest.class,
+    edu.isi.pegasus.planner.common.PlannerProfilerTest.class,
+    edu.isi.pegasus.planner.client.SubWorkflowPlannerTest.class,
+    edu.isi.pegasus.planner.client.LocalExecutorTest.class,
+    edu.isi.pegasus.planner.client.BulkInsertTest.class,
+    edu.isi.pegasus.planner.code.generator.StampedeDatabaseTest.class,
+    edu.isi.pegasus.planner.refiner.cleanup.ConstraintTest.class,
+    edu.isi.pegasus.planner.refiner.cleanup.InPlaceTest.class,
+    edu.isi.pegasus.planner.refiner.cleanup.constraint.ChoiceQueueTest.class,
+    edu.isi.pegasus.planner.selector.site.DataLocalityTest.class,
+    edu.isi.pegasus.planner.selector.fileserver.FileServerSelectorTest.class,
+    edu.isi.pegasus.planner.cluster.aggregator.RecursiveClusteringInputTest.class,
+    org.griphyn.vdl.dbdriver.ConnectionPoolTest.class,
+    org.griphyn.vdl.dbschema.InMemorySchemaTest.class,
+    org.griphyn.vdl.dbschema.InvocationSchemaTest.class,
+    edu.isi.pegasus.aws.batch.impl.JobMonitorTest.class
 })
 public class AllTests {}
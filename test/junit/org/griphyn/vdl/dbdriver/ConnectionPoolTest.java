@@ -0,0 +1,318 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.griphyn.vdl.dbdriver;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A JUnit Test to test the leasing of pooled connections to threads, against a stub JDBC driver
+ * that only counts what is done with its connections.
+ */
+public class ConnectionPoolTest {
+
+    /** The contact string the stub JDBC driver accepts. */
+    private static final String URL = "jdbc:stub:pool";
+
+    /** The milliseconds to wait for a pooled connection in the tests. */
+    private static final long TIMEOUT = 200;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        StubDriver.register();
+        StubDriver.reset();
+        mExecutor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        // set by the database driver on connect
+        DriverManager.setLogWriter(null);
+    }
+
+    @Test
+    public void testLeaseIsPerThread() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, new Properties(), 2, TIMEOUT);
+        ConnectionPool.Entry entry = pool.lease();
+        assertSame(entry, pool.lease());
+        assertSame(entry, pool.current());
+
+        ConnectionPool.Entry other = mExecutor.submit(() -> pool.lease()).get();
+        assertNotSame(entry, other);
+        assertEquals(2, StubDriver.OPENED.get());
+        pool.close();
+    }
+
+    @Test
+    public void testLeaseTimesOutWhenPoolIsExhausted() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, new Properties(), 1, TIMEOUT);
+        pool.lease();
+        Future<ConnectionPool.Entry> other = mExecutor.submit(() -> pool.lease());
+        try {
+            other.get();
+            fail("Expected the lease to time out, as the only connection is leased");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+        assertEquals(1, StubDriver.OPENED.get());
+        pool.close();
+    }
+
+    @Test
+    public void testReleaseReturnsConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool(URL, new Properties(), 1, TIMEOUT);
+        ConnectionPool.Entry entry = pool.lease();
+        pool.release(true);
+        assertNull(pool.current());
+        assertEquals(1, StubDriver.ROLLBACKS.get());
+
+        // the next thread gets the same connection, without opening another one
+        assertSame(entry, mExecutor.submit(() -> pool.lease()).get());
+        assertEquals(1, StubDriver.OPENED.get());
+        pool.close();
+    }
+
+    @Test
+    public void testScopedLeaseIsKeptOverCommits() throws Exception {
+        DatabaseDriver driver = this.connect(1);
+        driver.acquire();
+        driver.acquire();
+        driver.getPreparedStatement("stmt.test");
+        driver.commit();
+        driver.rollback();
+        driver.release();
+        assertEquals(1, StubDriver.COMMITS.get());
+        assertEquals(1, StubDriver.ROLLBACKS.get());
+        assertFalse(this.canLease(driver));
+
+        // the outermost release returns the connection
+        driver.release();
+        assertTrue(this.canLease(driver));
+        driver.disconnect();
+    }
+
+    @Test
+    public void testUnscopedLeaseEndsWithCommit() throws Exception {
+        DatabaseDriver driver = this.connect(1);
+        driver.getPreparedStatement("stmt.test");
+        assertFalse(this.canLease(driver));
+        driver.commit();
+        assertTrue(this.canLease(driver));
+        driver.disconnect();
+    }
+
+    @Test
+    public void testConcurrentScopedLeases() throws Exception {
+        int size = 3;
+        DatabaseDriver driver = this.connect(size);
+        AtomicInteger leased = new AtomicInteger();
+        AtomicInteger most = new AtomicInteger();
+        List<Future<Integer>> futures = new ArrayList();
+        for (int t = 0; t < 8; t++) {
+            futures.add(
+                    mExecutor.submit(
+                            () -> {
+                                for (int i = 0; i < 50; i++) {
+                                    driver.acquire();
+                                    try {
+                                        most.accumulateAndGet(leased.incrementAndGet(), Math::max);
+                                        driver.getPreparedStatement("stmt.test");
+                                        Thread.yield();
+                                        leased.decrementAndGet();
+                                    } finally {
+                                        driver.release();
+                                    }
+                                }
+                                return 50;
+                            }));
+        }
+        for (Future<Integer> future : futures) {
+            assertEquals(50, future.get().intValue());
+        }
+        // the single connection of the driver, and the pooled ones
+        assertTrue(StubDriver.OPENED.get() <= size + 1);
+        assertTrue(most.get() <= size);
+        driver.disconnect();
+    }
+
+    /**
+     * Connects a driver to the stub database in pooled mode, with a single prepared statement.
+     *
+     * @param size the size of the pool
+     * @return the connected driver
+     */
+    private DatabaseDriver connect(int size) throws Exception {
+        Properties info = new Properties();
+        info.setProperty(DatabaseDriver.POOL_SIZE_KEY, Integer.toString(size));
+        info.setProperty(DatabaseDriver.POOL_TIMEOUT_KEY, "1");
+        DatabaseDriver driver = new StubDatabaseDriver();
+        driver.connect(URL, info, null);
+        assertTrue(driver.isPooled());
+        driver.addPreparedStatement("stmt.test", "SELECT 1");
+        return driver;
+    }
+
+    /**
+     * Checks if another thread can lease a connection from the pool of a driver.
+     *
+     * @param driver the driver to lease from
+     * @return true if a connection was leased, false if the lease timed out
+     */
+    private boolean canLease(DatabaseDriver driver) throws Exception {
+        Callable<Boolean> lease =
+                () -> {
+                    try {
+                        driver.connection();
+                        driver.release();
+                        return true;
+                    } catch (SQLException e) {
+                        return false;
+                    }
+                };
+        return mExecutor.submit(lease).get();
+    }
+
+    /** A database driver for the stub JDBC driver. */
+    private static class StubDatabaseDriver extends DatabaseDriver {
+        public boolean connect(String url, Properties info, Set tables)
+                throws SQLException, ClassNotFoundException {
+            return connect(StubDriver.class.getName(), url, info, tables);
+        }
+
+        public boolean cachingMakesSense() {
+            return false;
+        }
+
+        public long sequence1(String name) throws SQLException {
+            return -1;
+        }
+
+        public long sequence2(Statement s, String name, int pos) throws SQLException {
+            return -1;
+        }
+
+        public boolean preferString() {
+            return false;
+        }
+    }
+
+    /** A JDBC driver with connections that count the calls made to them. */
+    public static class StubDriver implements Driver {
+        static final AtomicInteger OPENED = new AtomicInteger();
+
+        static final AtomicInteger COMMITS = new AtomicInteger();
+
+        static final AtomicInteger ROLLBACKS = new AtomicInteger();
+
+        private static boolean sRegistered = false;
+
+        static synchronized void register() throws SQLException {
+            if (!sRegistered) {
+                DriverManager.registerDriver(new StubDriver());
+                sRegistered = true;
+            }
+        }
+
+        static void reset() {
+            OPENED.set(0);
+            COMMITS.set(0);
+            ROLLBACKS.set(0);
+        }
+
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) return null;
+            OPENED.incrementAndGet();
+            return (Connection) stub(Connection.class);
+        }
+
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:stub:");
+        }
+
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        /**
+         * Creates a stub for a JDBC interface. Connections count commits and rollbacks, and prepare
+         * stub statements. All other calls do nothing.
+         */
+        private static Object stub(Class type) {
+            InvocationHandler handler =
+                    (Object proxy, Method method, Object[] args) -> {
+                        switch (method.getName()) {
+                            case "commit":
+                                COMMITS.incrementAndGet();
+                                return null;
+                            case "rollback":
+                                ROLLBACKS.incrementAndGet();
+                                return null;
+                            case "prepareStatement":
+                                return stub(PreparedStatement.class);
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                return method.getReturnType() == boolean.class ? false : null;
+                        }
+                    };
+            return Proxy.newProxyInstance(
+                    StubDriver.class.getClassLoader(), new Class[] {type}, handler);
+        }
+    }
+}
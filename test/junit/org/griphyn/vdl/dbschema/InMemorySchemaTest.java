@@ -0,0 +1,264 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.griphyn.vdl.dbschema;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+import org.griphyn.vdl.classes.Definition;
+import org.griphyn.vdl.classes.Definitions;
+import org.griphyn.vdl.classes.Derivation;
+import org.griphyn.vdl.classes.LFN;
+import org.griphyn.vdl.classes.Leaf;
+import org.griphyn.vdl.classes.Pass;
+import org.griphyn.vdl.classes.Scalar;
+import org.griphyn.vdl.classes.Transformation;
+import org.griphyn.vdl.classes.Value;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A JUnit Test to test that the indexed searches of the in-memory schema return the same results as
+ * a linear scan of the definitions, while definitions are added, overwritten and deleted.
+ */
+public class InMemorySchemaTest {
+
+    private static final String[] NAMESPACES = {null, "diamond", "montage"};
+
+    private static final String[] NAMES = {"preprocess", "findrange", "analyze", "mProject"};
+
+    private static final String[] VERSIONS = {null, "1.0", "2.0"};
+
+    private static final String[] LFNS = {"f.a", "f.b", "f.c", "f.d", "f.e"};
+
+    private static final int[] TYPES = {-1, Definition.TRANSFORMATION, Definition.DERIVATION};
+
+    private static final int[] LINKS = {LFN.NONE, LFN.INPUT, LFN.OUTPUT, LFN.INOUT};
+
+    private Definitions mMemory;
+
+    private InMemorySchema mSchema;
+
+    private Random mRandom;
+
+    @Before
+    public void setUp() throws Exception {
+        mMemory = new Definitions();
+        mSchema = new InMemorySchema(mMemory);
+        mRandom = new Random(42);
+    }
+
+    @Test
+    public void testSearchesMatchLinearScan() throws Exception {
+        // populated before the indices are built on first use
+        for (int i = 0; i < 50; i++) {
+            mMemory.addDefinition(this.definition());
+        }
+        this.assertSearchesMatch();
+
+        for (int i = 0; i < 500; i++) {
+            int op = mRandom.nextInt(4);
+            if (op == 0 || mMemory.getDefinitionCount() == 0) {
+                mSchema.saveDefinition(this.definition(), false);
+            } else if (op == 1) {
+                // a new definition with the key of an existing one
+                Definition existing = this.existing();
+                Definition replacement =
+                        this.definition(
+                                existing.getType(),
+                                existing.getNamespace(),
+                                existing.getName(),
+                                existing.getVersion());
+                assertTrue(mSchema.saveDefinition(replacement, true));
+            } else if (op == 2) {
+                assertTrue(mSchema.deleteDefinition(this.existing()));
+            } else {
+                // a wildcard delete, that may not match anything
+                Definition existing = this.existing();
+                mSchema.deleteDefinition(
+                        pick(NAMESPACES), existing.getName(), null, existing.getType());
+            }
+            this.assertSearchesMatch();
+        }
+    }
+
+    @Test
+    public void testDefinitionsAddedBehindTheSchemaAreIndexed() throws Exception {
+        mSchema.saveDefinition(this.definition(), false);
+        this.assertSearchesMatch();
+
+        // the in-memory structure is shared, and may be added to directly
+        mMemory.addDefinition(this.definition());
+        mMemory.addDefinition(this.definition());
+        this.assertSearchesMatch();
+    }
+
+    @Test
+    public void testDefinitionsReplacedBehindTheSchemaAreIndexed() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            mSchema.saveDefinition(this.definition(), false);
+        }
+        this.assertSearchesMatch();
+
+        // changes that keep the number of definitions
+        for (int i = 0; i < 20; i++) {
+            mMemory.setDefinition(mRandom.nextInt(mMemory.getDefinitionCount()), this.definition());
+            this.assertSearchesMatch();
+        }
+        mMemory.removeDefinition(0);
+        mMemory.addDefinition(this.definition());
+        this.assertSearchesMatch();
+        ListIterator i = mMemory.listIterateDefinition();
+        i.next();
+        i.set(this.definition());
+        this.assertSearchesMatch();
+    }
+
+    /** Asserts that all the searches return the same definitions as a linear scan. */
+    private void assertSearchesMatch() throws Exception {
+        for (String name : NAMES) {
+            for (String namespace : NAMESPACES) {
+                for (String version : VERSIONS) {
+                    for (int type : TYPES) {
+                        assertEquals(
+                                namespace + "::" + name + ":" + version + " " + type,
+                                this.scanDefinitions(namespace, name, version, type),
+                                mSchema.searchDefinition(namespace, name, version, type));
+                    }
+                }
+            }
+            assertEquals(
+                    this.scanDefinitions(null, name, null, -1),
+                    mSchema.searchDefinition(null, name, null, -1));
+        }
+        assertEquals(
+                this.scanDefinitions(null, null, null, -1),
+                mSchema.searchDefinition(null, null, null, -1));
+
+        for (String lfn : LFNS) {
+            assertEquals(lfn, this.scanFilename(lfn, -1), mSchema.searchFilename(lfn, -1));
+            for (int link : LINKS) {
+                assertEquals(
+                        lfn + " " + link,
+                        this.scanFilename(lfn, link),
+                        mSchema.searchFilename(lfn, link));
+            }
+        }
+    }
+
+    /** Returns the definitions matching a key with wildcards, in the order they are stored. */
+    private List scanDefinitions(String namespace, String name, String version, int type) {
+        List result = new ArrayList();
+        for (Iterator i = mMemory.iterateDefinition(); i.hasNext(); ) {
+            Definition d = (Definition) i.next();
+            if ((type == -1 || d.getType() == type)
+                    && (namespace == null || namespace.equals(d.getNamespace()))
+                    && (name == null || name.equals(d.getName()))
+                    && (version == null || version.equals(d.getVersion()))) {
+                result.add(d);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the derivations using a LFN, in the order they are stored. */
+    private List scanFilename(String lfn, int link) {
+        List result = new ArrayList();
+        for (Iterator i = mMemory.iterateDefinition(); i.hasNext(); ) {
+            Definition d = (Definition) i.next();
+            if (!(d instanceof Derivation)) {
+                continue;
+            }
+            search:
+            for (Iterator j = ((Derivation) d).iteratePass(); j.hasNext(); ) {
+                Value actual = ((Pass) j.next()).getValue();
+                List<Scalar> scalars = new ArrayList();
+                if (actual.getContainerType() == Value.SCALAR) {
+                    scalars.add((Scalar) actual);
+                } else {
+                    for (Iterator f = ((org.griphyn.vdl.classes.List) actual).iterateScalar();
+                            f.hasNext(); ) {
+                        scalars.add((Scalar) f.next());
+                    }
+                }
+                for (Scalar scalar : scalars) {
+                    for (Iterator e = scalar.iterateLeaf(); e.hasNext(); ) {
+                        Leaf leaf = (Leaf) e.next();
+                        if (leaf instanceof LFN
+                                && lfn.equals(((LFN) leaf).getFilename())
+                                && (link == -1 || ((LFN) leaf).getLink() == link)) {
+                            result.add(d);
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns a random definition already stored. */
+    private Definition existing() {
+        return mMemory.getDefinition(mRandom.nextInt(mMemory.getDefinitionCount()));
+    }
+
+    /** Returns a definition with a random key, that may already be stored. */
+    private Definition definition() {
+        return this.definition(
+                mRandom.nextInt(4) == 0 ? Definition.TRANSFORMATION : Definition.DERIVATION,
+                pick(NAMESPACES),
+                pick(NAMES),
+                pick(VERSIONS));
+    }
+
+    /** Returns a definition with the key passed, and derivations with random actual arguments. */
+    private Definition definition(int type, String namespace, String name, String version) {
+        if (type == Definition.TRANSFORMATION) {
+            return new Transformation(namespace, name, version);
+        }
+        Derivation dv = new Derivation(namespace, name, version, null, name, null, null);
+        int passes = mRandom.nextInt(3);
+        for (int p = 0; p < passes; p++) {
+            Value value;
+            if (mRandom.nextBoolean()) {
+                value = this.scalar();
+            } else {
+                org.griphyn.vdl.classes.List list = new org.griphyn.vdl.classes.List();
+                for (int s = mRandom.nextInt(3); s >= 0; s--) {
+                    list.addScalar(this.scalar());
+                }
+                value = list;
+            }
+            dv.addPass(new Pass("arg" + p, value));
+        }
+        return dv;
+    }
+
+    /** Returns a scalar with one or two random LFNs. */
+    private Scalar scalar() {
+        Scalar scalar = new Scalar(new LFN(pick(LFNS), LINKS[mRandom.nextInt(LINKS.length)]));
+        if (mRandom.nextBoolean()) {
+            scalar.addLeaf(new LFN(pick(LFNS), LINKS[mRandom.nextInt(LINKS.length)]));
+        }
+        return scalar;
+    }
+
+    private String pick(String[] values) {
+        return values[mRandom.nextInt(values.length)];
+    }
+}
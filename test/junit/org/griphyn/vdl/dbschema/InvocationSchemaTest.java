@@ -0,0 +1,238 @@
+/**
+ * Copyright 2007-2020 University Of Southern California
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.griphyn.vdl.dbschema;
+
+import static org.junit.Assert.*;
+
+import edu.isi.pegasus.common.util.CommonProperties;
+import edu.isi.pegasus.planner.invocation.Architecture;
+import edu.isi.pegasus.planner.invocation.InvocationRecord;
+import edu.isi.pegasus.planner.invocation.Usage;
+import java.io.File;
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.griphyn.vdl.dbdriver.DatabaseDriver;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/** A JUnit Test to test the provenance tracking schema against a SQLite database. */
+public class InvocationSchemaTest {
+
+    private static final String SQLITE_DRIVER = "org.sqlite.JDBC";
+
+    /** The prefix for the properties of the provenance catalog database. */
+    private static final String PREFIX = "pegasus.catalog.provenance.db";
+
+    /** The provenance tables, with the ids generated by SQLite on insertion. */
+    private static final String[] TABLES = {
+        "CREATE TABLE ptc_uname(id INTEGER PRIMARY KEY, archmode TEXT, sysname TEXT,"
+                + " os_release TEXT, machine TEXT)",
+        "CREATE TABLE ptc_rusage(id INTEGER PRIMARY KEY, utime REAL, stime REAL, minflt INTEGER,"
+                + " majflt INTEGER, nswaps INTEGER, nsignals INTEGER, nvcsw INTEGER,"
+                + " nivcsw INTEGER)",
+        "CREATE TABLE ptc_stat(id INTEGER PRIMARY KEY, errno INTEGER, fname TEXT, fdesc INTEGER,"
+                + " size INTEGER, mode INTEGER, inode INTEGER, atime TIMESTAMP, ctime TIMESTAMP,"
+                + " mtime TIMESTAMP, uid INTEGER, gid INTEGER)",
+        "CREATE TABLE ptc_invocation(id INTEGER PRIMARY KEY, creator TEXT,"
+                + " creationtime TIMESTAMP, wf_label TEXT, wf_time TIMESTAMP, version TEXT,"
+                + " start TIMESTAMP, duration REAL, tr_namespace TEXT, tr_name TEXT,"
+                + " tr_version TEXT, dv_namespace TEXT, dv_name TEXT, dv_version TEXT,"
+                + " resource TEXT, host TEXT, pid INTEGER, uid INTEGER, gid INTEGER, cwd TEXT,"
+                + " arch INTEGER, total INTEGER)",
+        "CREATE TABLE ptc_job(id INTEGER, type TEXT, start TIMESTAMP, duration REAL, pid INTEGER,"
+                + " rusage INTEGER, stat INTEGER, exitcode INTEGER, exit_msg TEXT, args TEXT)",
+        "CREATE TABLE ptc_lfn(id INTEGER, stat INTEGER, initial TEXT, lfn TEXT)"
+    };
+
+    private File mDatabase;
+
+    private String mURL;
+
+    private int mPID;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(isClassAvailable(SQLITE_DRIVER));
+        mDatabase = File.createTempFile("ptc.", ".db");
+        mURL = "jdbc:sqlite:" + mDatabase.getAbsolutePath();
+        try (Connection c = DriverManager.getConnection(mURL);
+                Statement s = c.createStatement()) {
+            for (String table : TABLES) {
+                s.executeUpdate(table);
+            }
+        }
+        mPID = 0;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CommonProperties props = CommonProperties.instance();
+        for (String key :
+                new String[] {
+                    "driver",
+                    "url",
+                    "busy_timeout",
+                    DatabaseDriver.POOL_SIZE_KEY,
+                    DatabaseDriver.POOL_TIMEOUT_KEY
+                }) {
+            props.removeProperty(PREFIX + "." + key);
+        }
+        if (mDatabase != null) {
+            mDatabase.delete();
+        }
+    }
+
+    @Test
+    public void testSaveAndLookup() throws Exception {
+        InvocationSchema schema = this.connect(0);
+        try {
+            InvocationRecord first = this.record();
+            InvocationRecord second = this.record();
+            assertTrue(schema.saveInvocation(first));
+            assertTrue(schema.saveInvocation(second));
+
+            long id = this.lookup(schema, first);
+            assertTrue(id != -1);
+            assertTrue(this.lookup(schema, second) != id);
+            assertEquals(-1, this.lookup(schema, this.record()));
+        } finally {
+            schema.close();
+        }
+
+        assertEquals(2, this.count("ptc_invocation"));
+        assertEquals(2, this.count("ptc_rusage"));
+        // the architecture is saved once, and referred to by both records
+        assertEquals(1, this.count("ptc_uname"));
+    }
+
+    @Test
+    public void testPooledLookups() throws Exception {
+        final InvocationSchema schema = this.connect(2);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            final List<InvocationRecord> records = new ArrayList();
+            for (int i = 0; i < 3; i++) {
+                InvocationRecord record = this.record();
+                assertTrue(schema.saveInvocation(record));
+                records.add(record);
+            }
+            final long expected = this.lookup(schema, records.get(0));
+
+            // more threads than pooled connections, so the lookups
+            // only complete if each one returns its connection
+            List<Future<Long>> futures = new ArrayList();
+            for (int t = 0; t < 6; t++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    long id = -1;
+                                    for (int i = 0; i < 20; i++) {
+                                        for (InvocationRecord record : records) {
+                                            assertTrue(this.lookup(schema, record) != -1);
+                                        }
+                                        id = this.lookup(schema, records.get(0));
+                                    }
+                                    return id;
+                                }));
+            }
+            for (Future<Long> future : futures) {
+                assertEquals(expected, future.get().longValue());
+            }
+
+            // the lookups hold no locks that keep the writer waiting, and
+            // the records saved are seen on the other pooled connections
+            final InvocationRecord record = this.record();
+            assertTrue(schema.saveInvocation(record));
+            assertTrue(executor.submit(() -> this.lookup(schema, record)).get() != -1);
+        } finally {
+            executor.shutdownNow();
+            schema.close();
+        }
+        assertEquals(4, this.count("ptc_invocation"));
+    }
+
+    /**
+     * Connects the schema to the database.
+     *
+     * @param pool the maximum number of pooled connections, or 0 for a single connection
+     * @return the schema
+     */
+    private InvocationSchema connect(int pool) throws Exception {
+        CommonProperties props = CommonProperties.instance();
+        props.setProperty(PREFIX + ".driver", "SQLite");
+        props.setProperty(PREFIX + ".url", mURL);
+        props.setProperty(PREFIX + ".busy_timeout", "5000");
+        if (pool > 0) {
+            props.setProperty(PREFIX + "." + DatabaseDriver.POOL_SIZE_KEY, Integer.toString(pool));
+            props.setProperty(PREFIX + "." + DatabaseDriver.POOL_TIMEOUT_KEY, "10");
+        }
+        return new InvocationSchema(null);
+    }
+
+    private long lookup(InvocationSchema schema, InvocationRecord record) throws Exception {
+        return schema.getInvocationID(record.getStart(), record.getHostAddress(), record.getPID());
+    }
+
+    private int count(String table) throws Exception {
+        try (Connection c = DriverManager.getConnection(mURL);
+                Statement s = c.createStatement();
+                ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private InvocationRecord record() throws Exception {
+        InvocationRecord record = new InvocationRecord();
+        record.setVersion("2.0");
+        record.setStart(new Date(1600000000000L));
+        record.setDuration(1.5);
+        record.setTransformation("diamond::preprocess:4.0");
+        record.setResource("local");
+        record.setHostAddress(InetAddress.getLoopbackAddress());
+        record.setPID(++mPID);
+        record.setUID(1000);
+        record.setGID(1000);
+        record.setWorkingDirectory("/tmp");
+        record.setUsage(new Usage());
+
+        Architecture architecture = new Architecture();
+        architecture.setArchMode("IA64");
+        architecture.setSystemName("linux");
+        architecture.setRelease("5.4.0");
+        architecture.setMachine("x86_64");
+        record.setArchitecture(architecture);
+        return record;
+    }
+
+    private static boolean isClassAvailable(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+#!/bin/bash
+
+
+function run_test {
+    echo "Running" "$@"
+    "$@" >$TEST_DIR/test.out 2>$TEST_DIR/test.err
+    if [ $? -eq 0 ]; then
+        echo "OK"
+        rm -rf $TEST_DIR/test.err $TEST_DIR/test.out $TEST_DIR/work
+        return 0
+    else
+        cat $TEST_DIR/test.err $TEST_DIR/test.out
+        echo "ERROR"
+        rm -rf $TEST_DIR/test.err $TEST_DIR/test.out $TEST_DIR/work
+        exit 1
+    fi
+}
+
+function setup {
+    rm -rf $TEST_DIR/work
+    mkdir -p $TEST_DIR/work/job
+    cd $TEST_DIR/work/job
+    pegasus_lite_container_cache_dir=$TEST_DIR/work/cache
+    pegasus_lite_container_cache_maxsize=""
+    pegasus_lite_container_cache_hit=false
+}
+
+function image {
+    # writes out an image file of the size in MB passed
+    dd if=/dev/zero of=$1 bs=1048576 count=$2 2>/dev/null
+}
+
+function test_miss_then_hit {
+    setup
+    if container_cache_fetch centos.tar 1234; then
+        echo "ERROR: fetch from an empty cache succeeded"
+        return 1
+    fi
+    image centos.tar 1
+    container_cache_store centos.tar 1234
+    if [ ! -e $pegasus_lite_container_cache_dir/1234/.complete ]; then
+        echo "ERROR: image was not added to the cache"
+        return 1
+    fi
+
+    rm centos.tar
+    if ! container_cache_fetch centos.tar 1234; then
+        echo "ERROR: fetch of a cached image failed"
+        return 1
+    fi
+    if [ "X$pegasus_lite_container_cache_hit" != "Xtrue" -o ! -s centos.tar ]; then
+        echo "ERROR: cached image was not linked into the job directory"
+        return 1
+    fi
+    return 0
+}
+
+function test_hit_is_not_stored_again {
+    setup
+    image centos.tar 1
+    container_cache_store centos.tar 1234
+    container_cache_fetch centos.tar 1234
+    touch -d "1 hour ago" $pegasus_lite_container_cache_dir/1234/image
+    container_cache_store centos.tar 1234
+    if [ -z "`find $pegasus_lite_container_cache_dir/1234/image -mmin +30`" ]; then
+        echo "ERROR: cache entry was overwritten on a hit"
+        return 1
+    fi
+    return 0
+}
+
+function test_no_checksum_is_not_cached {
+    setup
+    image centos.tar 1
+    container_cache_store centos.tar ""
+    if [ -e $pegasus_lite_container_cache_dir ]; then
+        echo "ERROR: image without a checksum was cached"
+        return 1
+    fi
+    if container_cache_fetch centos.tar ""; then
+        echo "ERROR: fetch without a checksum succeeded"
+        return 1
+    fi
+    return 0
+}
+
+function test_locked_entry_is_skipped {
+    setup
+    image centos.tar 1
+    mkdir -p $pegasus_lite_container_cache_dir/1234.lock
+    container_cache_store centos.tar 1234
+    if [ -e $pegasus_lite_container_cache_dir/1234/.complete ]; then
+        echo "ERROR: entry locked by another job was populated"
+        return 1
+    fi
+    return 0
+}
+
+function test_least_recently_used_is_evicted {
+    setup
+    image a.tar 2
+    container_cache_store a.tar aaaa
+    image b.tar 2
+    container_cache_store b.tar bbbb
+    touch -d "1 hour ago" $pegasus_lite_container_cache_dir/aaaa/.complete
+    touch -d "2 hours ago" $pegasus_lite_container_cache_dir/bbbb/.complete
+
+    # the access refreshes b, so a is the least recently used
+    container_cache_fetch b.tar bbbb
+
+    # a later job stores another image in the full cache
+    pegasus_lite_container_cache_hit=false
+    pegasus_lite_container_cache_maxsize=5
+    image c.tar 2
+    container_cache_store c.tar cccc
+    if [ -e $pegasus_lite_container_cache_dir/aaaa ]; then
+        echo "ERROR: least recently used entry was not evicted"
+        return 1
+    fi
+    if [ ! -e $pegasus_lite_container_cache_dir/bbbb/.complete \
+         -o ! -e $pegasus_lite_container_cache_dir/cccc/.complete ]; then
+        echo "ERROR: recently used entries were evicted"
+        return 1
+    fi
+    return 0
+}
+
+export TEST_DIR=`pwd`
+
+if [ "x$1" = "x" ]; then
+    echo "Please specify the Pegasus share/pegasus/sh dir as the first argument" >&2
+    exit 1
+fi
+. $1/pegasus-lite-common.sh
+
+# RUN THE TESTS
+run_test test_miss_then_hit
+run_test test_hit_is_not_stored_again
+run_test test_no_checksum_is_not_cached
+run_test test_locked_entry_is_skipped
+run_test test_least_recently_used_is_evicted
+